@@ -61,10 +61,19 @@ public final class A implements AutoCloseable {
                         .setChunkCacheCapacity(environment.getChunkCacheCapacity())
                         .setIndexCacheCapacity(environment.getIndexCacheCapacity())
                         .setRangeCacheCapacity(environment.getRangeCacheCapacity())
+                        .setDustJournalSizeLimit(environment.getDustJournalSizeLimit())
+                        .setDirtySizeLimit(environment.getDirtySizeLimit())
+                        .setReadCacheSize(environment.getReadCacheSize())
+                        .setStorageMapping(environment.getStorageMapping())
                         .setPeerCapacity(environment.getPeerCapacity())
                         .setMaintenanceInterval(environment.getMaintenanceInterval())
+                        .setWorkerCount(environment.getWorkerCount())
+                        .setMailReaderCount(environment.getMailReaderCount())
                         .setSleepTime(environment.getSleepTime())
                         .setBackupInterval(environment.getBackupInterval())
+                        .setDigestBackup(environment.getDigestBackup())
+                        .setIterativeRouting(environment.getIterativeRouting())
+                        .setIncrementalHash(environment.getIncrementalHash())
                         .setConnectionTimeout(environment.getConnectionTimeout())
                         .setReceiveBufferSize(environment.getReceiveBufferSize())
                         .setSendBufferSize(environment.getSendBuffereSize())
@@ -76,6 +85,7 @@ public final class A implements AutoCloseable {
                         .setTrafficSizeLimit(environment.getTrafficSizeLimit())
                         .setTrafficCountLimit(environment.getTrafficCountLimit())
                         .setTrafficPenalty(environment.getTrafficPenalty())
+                        .setBucketTrafficLimiter(environment.getBucketTrafficLimiter())
                         .setOutlawDuration(environment.getOutlawDuration())
                         .setOutlawCountLimit(environment.getOutlawCountLimit())
                         .setBlacklistCapacity(environment.getBlacklistCapacity())
@@ -84,6 +94,9 @@ public final class A implements AutoCloseable {
                         .setOperationTimeout(environment.getOperationTimeout())
                         .setMessageSizeLimit(environment.getMessageSizeLimit())
                         .setUseHttpWrapper(environment.getUseHttpWrapper())
+                        .setConnectionExecutor(environment.getConnectionExecutor())
+                        .setHandlerExecutor(environment.getHandlerExecutor())
+                        .setBackupExecutor(environment.getBackupExecutor())
                         .setCacheLogCapacity(environment.getCacheLogCapacity())
                         .setCacheDuration(environment.getCacheDuration())
                         .setAddressedPeers(environment.loadAddressedPeers())
@@ -94,7 +107,8 @@ public final class A implements AutoCloseable {
                 );
 
         this.bbs = new BasicBbs(environment.getBbsPort(), environment.getBbsConnectionTimeout(), environment.getBbsInternalTimeout(), this.closet,
-                environment.getBbsUpdateThreshold(), environment.loadBbsMenu(), environment.getBbsTrafficDuration(), environment.getBbsTrafficCountLimit());
+                environment.getBbsUpdateThreshold(), environment.loadBbsMenu(), environment.getBbsTrafficDuration(), environment.getBbsTrafficCountLimit(),
+                environment.getBbsSelector(), environment.getBbsWorkerCount(), environment.getBbsExecutor(), environment.getTrafficLimiterType());
 
         if (environment.getGui()) {
             this.gui = new TrayGui(environment.getRootPath(), environment.getBbsPort(), environment.getGuiBootDuration(),
@@ -158,7 +172,6 @@ public final class A implements AutoCloseable {
         }
 
         LOG.log(Level.FINEST, "終了処理に入ります。");
-        this.environment.getExecutor().shutdownNow();
 
         // Windows ではなぜか失敗するのでやらない。
         // if (this.gui != null) {
@@ -171,7 +184,7 @@ public final class A implements AutoCloseable {
         // }
 
         try {
-            if (!this.environment.getExecutor().awaitTermination(this.environment.getShutdownTimeout(), TimeUnit.MILLISECONDS)) {
+            if (!this.environment.shutdownExecutors()) {
                 LOG.log(Level.SEVERE, "{0} ミリ秒以内にプロセスが終了しませんでした。", this.environment.getShutdownTimeout());
             }
         } catch (final InterruptedException e) {
@@ -13,7 +13,7 @@ import java.security.KeyPair;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
@@ -26,6 +26,9 @@ import nippon.kawauso.chiraura.bbs.Menu;
 import nippon.kawauso.chiraura.closet.p2p.AddressCalculator;
 import nippon.kawauso.chiraura.closet.p2p.HashingCalculator;
 import nippon.kawauso.chiraura.lib.Mosaic;
+import nippon.kawauso.chiraura.lib.concurrent.BoundedExecutor;
+import nippon.kawauso.chiraura.lib.concurrent.ConnectionExecutors;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 import nippon.kawauso.chiraura.lib.logging.OneLineThreadFormatter;
 import nippon.kawauso.chiraura.messenger.CryptographicKeys;
@@ -74,6 +77,10 @@ final class Environment {
     private final int chunkCacheCapacity;
     private final int indexCacheCapacity;
     private final int rangeCacheCapacity;
+    private final int dustJournalSizeLimit;
+    private final long dirtySizeLimit;
+    private final long readCacheSize;
+    private final boolean storageMapping;
 
     private final int peerCapacity;
     private final int messageSizeLimit;
@@ -81,8 +88,13 @@ final class Environment {
     private final int receiveBufferSize;
     private final int sendBufferSize;
     private final long maintenanceInterval;
+    private final int workerCount;
+    private final int mailReaderCount;
     private final long sleepTime;
     private final long backupInterval;
+    private final boolean digestBackup;
+    private final boolean iterativeRouting;
+    private final boolean incrementalHash;
     private final long connectionTimeout;
     private final long operationTimeout;
     private final int cacheLogCapacity;
@@ -96,6 +108,7 @@ final class Environment {
     private final long trafficSizeLimit;
     private final int trafficCountLimit;
     private final long trafficPenalty;
+    private final boolean bucketTrafficLimiter;
     private final long outlawDuration;
     private final int outlawCountLimit;
     private final int blacklistCapacity;
@@ -115,6 +128,8 @@ final class Environment {
     private final long bbsUpdateThreshold;
     private final long bbsTrafficDuration;
     private final int bbsTrafficCountLimit;
+    private final boolean bbsSelector;
+    private final int bbsWorkerCount;
 
     private final File bbsMenuFile;
 
@@ -124,7 +139,16 @@ final class Environment {
     private final long guiMaxDelay;
     private final long guiInterval;
 
+    // 保守と自発的な操作用。
     private final ExecutorService executor;
+    // 接続ごとの送受信用。
+    private final ExecutorService connectionExecutor;
+    // BBS の接続ごとの処理用。
+    private final ExecutorService bbsExecutor;
+    // 他の個体から依頼された操作用。
+    private final ExecutorService handlerExecutor;
+    // 複製と復元用。
+    private final ExecutorService backupExecutor;
 
     Environment(final Option option) throws IOException {
         this(option, new HashingCalculator(Integer.parseInt(option.get(Option.Item.addressCacheCapacity))));
@@ -207,6 +231,10 @@ final class Environment {
         this.chunkCacheCapacity = getLargerInt(option, Option.Item.chunkCacheCapacity);
         this.indexCacheCapacity = getLargerInt(option, Option.Item.indexCacheCapacity);
         this.rangeCacheCapacity = getLargerInt(option, Option.Item.rangeCacheCapacity);
+        this.dustJournalSizeLimit = Integer.parseInt(option.get(Option.Item.dustJournalSizeLimit));
+        this.dirtySizeLimit = Long.parseLong(option.get(Option.Item.dirtySizeLimit));
+        this.readCacheSize = Long.parseLong(option.get(Option.Item.readCacheSize));
+        this.storageMapping = Boolean.parseBoolean(option.get(Option.Item.storageMapping));
 
         this.peerCapacity = getLargerInt(option, Option.Item.peerCapacity);
         this.messageSizeLimit = 1024 * 1024 + 1024; // 1MB + 1KB.
@@ -214,8 +242,13 @@ final class Environment {
         this.receiveBufferSize = getLargerInt(option, Option.Item.receiveBufferSize);
         this.sendBufferSize = getLargerInt(option, Option.Item.sendBufferSize);
         this.maintenanceInterval = getDefaultLong(option, Option.Item.maintenanceInterval);
+        this.workerCount = Integer.parseInt(option.get(Option.Item.workerCount));
+        this.mailReaderCount = Integer.parseInt(option.get(Option.Item.mailReaderCount));
         this.sleepTime = getDefaultLong(option, Option.Item.sleepTime);
         this.backupInterval = getDefaultLong(option, Option.Item.backupInterval);
+        this.digestBackup = Boolean.parseBoolean(option.get(Option.Item.digestBackup));
+        this.iterativeRouting = Boolean.parseBoolean(option.get(Option.Item.iterativeRouting));
+        this.incrementalHash = Boolean.parseBoolean(option.get(Option.Item.incrementalHash));
         this.connectionTimeout = getDefaultLong(option, Option.Item.connectionTimeout);
         this.operationTimeout = getLargerLong(option, Option.Item.operationTimeout);
         this.cacheLogCapacity = getDefaultInt(option, Option.Item.cacheLogCapacity);
@@ -229,6 +262,7 @@ final class Environment {
         this.trafficSizeLimit = getDefaultLong(option, Option.Item.trafficSizeLimit);
         this.trafficCountLimit = getDefaultInt(option, Option.Item.trafficCountLimit);
         this.trafficPenalty = getDefaultLong(option, Option.Item.trafficPenalty);
+        this.bucketTrafficLimiter = Boolean.parseBoolean(option.get(Option.Item.bucketTrafficLimiter));
         this.outlawDuration = getDefaultLong(option, Option.Item.outlawDuration);
         this.outlawCountLimit = getDefaultInt(option, Option.Item.outlawCountLimit);
         this.blacklistCapacity = getLargerInt(option, Option.Item.blacklistCapacity);
@@ -248,6 +282,8 @@ final class Environment {
         this.bbsUpdateThreshold = getLargerLong(option, Option.Item.bbsUpdateThreshold);
         this.bbsTrafficDuration = Long.parseLong(option.get(Option.Item.bbsTrafficDuration));
         this.bbsTrafficCountLimit = Integer.parseInt(option.get(Option.Item.bbsTrafficDuration));
+        this.bbsSelector = Boolean.parseBoolean(option.get(Option.Item.bbsSelector));
+        this.bbsWorkerCount = Integer.parseInt(option.get(Option.Item.bbsWorkerCount));
 
         this.bbsMenuFile = loadFile(new File(this.root, "menu.txt"));
 
@@ -257,7 +293,23 @@ final class Environment {
         this.guiMaxDelay = getDefaultLong(option, Option.Item.guiMaxDelay);
         this.guiInterval = Long.parseLong(option.get(Option.Item.guiInterval));
 
-        this.executor = Executors.newCachedThreadPool();
+        /*
+         * 部署ごとに実行機を分けて、BBS への殺到や複製の嵐が保守を飢えさせないようにする。
+         * 保守用には常駐する処理も載るので、既定ではスレッド数を制限しない。
+         */
+        this.executor = BoundedExecutor.newInstance("maintenance", Integer.parseInt(option.get(Option.Item.maintenanceThreadCount)), 0);
+        if (Boolean.parseBoolean(option.get(Option.Item.virtualThread))) {
+            this.connectionExecutor = ConnectionExecutors.newVirtualThreadPerTaskExecutor("connection");
+            this.bbsExecutor = this.connectionExecutor;
+        } else {
+            this.connectionExecutor = BoundedExecutor.newInstance("messenger", Integer.parseInt(option.get(Option.Item.messengerThreadCount)), 0);
+            this.bbsExecutor = BoundedExecutor.newInstance("bbs", Integer.parseInt(option.get(Option.Item.bbsThreadCount)), 0);
+        }
+        this.handlerExecutor = BoundedExecutor.newInstance("handler", Integer.parseInt(option.get(Option.Item.handlerThreadCount)),
+                Integer.parseInt(option.get(Option.Item.handlerQueueCapacity)));
+        // 複製の嵐で修復が待たされないように、優先度順に実行する。
+        this.backupExecutor = BoundedExecutor.newPriorityInstance("backup", Integer.parseInt(option.get(Option.Item.backupThreadCount)),
+                Integer.parseInt(option.get(Option.Item.backupQueueCapacity)));
     }
 
     /**
@@ -339,6 +391,22 @@ final class Environment {
         return this.rangeCacheCapacity;
     }
 
+    int getDustJournalSizeLimit() {
+        return this.dustJournalSizeLimit;
+    }
+
+    long getDirtySizeLimit() {
+        return this.dirtySizeLimit;
+    }
+
+    long getReadCacheSize() {
+        return this.readCacheSize;
+    }
+
+    boolean getStorageMapping() {
+        return this.storageMapping;
+    }
+
     int getChunkSizeLimit() {
         return this.chunkSizeLimit;
     }
@@ -351,6 +419,14 @@ final class Environment {
         return this.maintenanceInterval;
     }
 
+    int getWorkerCount() {
+        return this.workerCount;
+    }
+
+    int getMailReaderCount() {
+        return this.mailReaderCount;
+    }
+
     long getSleepTime() {
         return this.sleepTime;
     }
@@ -359,6 +435,18 @@ final class Environment {
         return this.backupInterval;
     }
 
+    boolean getDigestBackup() {
+        return this.digestBackup;
+    }
+
+    boolean getIterativeRouting() {
+        return this.iterativeRouting;
+    }
+
+    boolean getIncrementalHash() {
+        return this.incrementalHash;
+    }
+
     long getConnectionTimeout() {
         return this.connectionTimeout;
     }
@@ -411,6 +499,14 @@ final class Environment {
         return this.trafficPenalty;
     }
 
+    boolean getBucketTrafficLimiter() {
+        return this.bucketTrafficLimiter;
+    }
+
+    ConstantLimiters.Type getTrafficLimiterType() {
+        return (this.bucketTrafficLimiter ? ConstantLimiters.Type.BUCKET : ConstantLimiters.Type.LIST);
+    }
+
     long getOutlawDuration() {
         return this.outlawDuration;
     }
@@ -479,6 +575,14 @@ final class Environment {
         return this.bbsTrafficCountLimit;
     }
 
+    boolean getBbsSelector() {
+        return this.bbsSelector;
+    }
+
+    int getBbsWorkerCount() {
+        return this.bbsWorkerCount;
+    }
+
     boolean getGui() {
         return this.gui;
     }
@@ -499,6 +603,75 @@ final class Environment {
         return this.executor;
     }
 
+    /**
+     * @return 接続ごとの送受信に使う実行機
+     */
+    ExecutorService getConnectionExecutor() {
+        return this.connectionExecutor;
+    }
+
+    /**
+     * 仮想スレッドを使う場合は getConnectionExecutor と同じ。
+     * @return BBS の接続ごとの処理に使う実行機
+     */
+    ExecutorService getBbsExecutor() {
+        return this.bbsExecutor;
+    }
+
+    /**
+     * @return 他の個体から依頼された操作に使う実行機
+     */
+    ExecutorService getHandlerExecutor() {
+        return this.handlerExecutor;
+    }
+
+    /**
+     * @return 複製と復元に使う実行機
+     */
+    ExecutorService getBackupExecutor() {
+        return this.backupExecutor;
+    }
+
+    /**
+     * @return 全ての実行機。重複は無い
+     */
+    List<ExecutorService> getExecutors() {
+        final List<ExecutorService> executors = new ArrayList<>(5);
+        for (final ExecutorService executor : new ExecutorService[] { this.executor, this.connectionExecutor, this.bbsExecutor, this.handlerExecutor,
+                this.backupExecutor }) {
+            if (!executors.contains(executor)) {
+                executors.add(executor);
+            }
+        }
+        return executors;
+    }
+
+    /**
+     * 全ての実行機を止めて、終わるのを待つ。
+     * 待ち終わったら、スレッド数を制限した実行機の統計を記録する。
+     * @return 制限時間内に全て終わったら true
+     * @throws InterruptedException 割り込まれた場合
+     */
+    boolean shutdownExecutors() throws InterruptedException {
+        final List<ExecutorService> executors = getExecutors();
+        for (final ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+        final long deadline = System.currentTimeMillis() + this.shutdownTimeout;
+        boolean terminated = true;
+        for (final ExecutorService executor : executors) {
+            if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                terminated = false;
+            }
+        }
+        for (final ExecutorService executor : executors) {
+            if (executor instanceof BoundedExecutor) {
+                LOG.log(Level.INFO, "実行機の統計: {0}", executor);
+            }
+        }
+        return terminated;
+    }
+
     KeyPair loadId() throws IOException {
         KeyPair id = null;
         if (System.currentTimeMillis() <= this.idFile.lastModified() + this.idLifetime) {
@@ -43,12 +43,21 @@ final class Option {
         chunkCacheCapacity(Integer.toString(300), "データ片をキャッシュする数"),
         indexCacheCapacity(Integer.toString(10_000), "データ片の概要をキャッシュする数"),
         rangeCacheCapacity(Integer.toString(40), "データ片の概要の範囲取得結果をキャッシュする数"),
+        dustJournalSizeLimit(Integer.toString(64 * 1024) /* 64 KB */, "データ片 1 つあたりの差分を追記する量の上限 (バイト)。0 なら追記しない"),
+        dirtySizeLimit(Long.toString(0), "書き戻していないデータ片の大きさの和の上限 (バイト)。正なら専用のスレッドで書き戻す"),
+        readCacheSize(Long.toString(0), "読み込み用にキャッシュするデータ片の大きさの和 (バイト)。0 なら使わない"),
+        storageMapping(Boolean.toString(false), "データ片の読み込みにメモリマップを使うや否や"),
         peerCapacity(Integer.toString(1_000), "個体を保持する数"),
         receiveBufferSize(Integer.toString(128 * 1024) /* 128 KB */, "受信バッファサイズ (バイト)"),
         sendBufferSize(Integer.toString(64 * 1024) /* 64 KB */, "送信バッファサイズ (バイト)"),
         maintenanceInterval(Long.toString(Duration.MINUTE), "保守間隔 (ミリ秒)"),
+        workerCount(Integer.toString(4), "操作の待ち行列を捌く雑用係の数"),
+        mailReaderCount(Integer.toString(4), "受信した手紙を捌く人の数"),
         sleepTime(Long.toString(30 * Duration.MINUTE), "何もすることが無い場合にふて寝する時間 (ミリ秒)"),
         backupInterval(Long.toString(5 * Duration.MINUTE), "データの保守間隔 (ミリ秒)"),
+        digestBackup(Boolean.toString(false), "データの保守で在庫の要約を比べて食い違った範囲だけを確認するや否や"),
+        iterativeRouting(Boolean.toString(false), "データの取得で担当者を自分で探してから直接依頼するや否や"),
+        incrementalHash(Boolean.toString(false), "差分形式のデータのハッシュ値を差分ごとに計算するや否や。全個体で揃えること"),
         connectionTimeout(Long.toString(15 * Duration.MINUTE), "非通信接続を切断するまでの時間 (ミリ秒)"),
         operationTimeout(Long.toString(Duration.MINUTE), "通信を要する操作を諦めるまでの時間 (ミリ秒)"),
         cacheLogCapacity(Integer.toString(10_000), "データ通信の結果をキャッシュする数"),
@@ -61,6 +70,7 @@ final class Option {
         trafficSizeLimit(Long.toString(10 * 1024 * 1024) /* 10 MB */, "通信を制限する通信量 (バイト)"),
         trafficCountLimit(Integer.toString(500), "通信を制限する通信回数"),
         trafficPenalty(Long.toString(10 * Duration.SECOND), "通信を制限する時間 (ミリ秒)"),
+        bucketTrafficLimiter(Boolean.toString(false), "通信制限で監視時間を区間に分けて合計だけを持つや否や"),
         outlawDuration(Long.toString(10 * Duration.MINUTE), "おかしな個体を弾くための単位監視時間 (ミリ秒)"),
         outlawCountLimit(Integer.toString(10), "おかしな挙動を許容する単位監視時間あたりの回数"),
         blacklistCapacity(Integer.toString(200), "拒否対象の個体を保持する数"),
@@ -69,12 +79,22 @@ final class Option {
         addressCacheCapacity(Integer.toString(1_000), "個体の論理位置の計算結果をキャッシュする数"),
         activeAddressLogCapacity(Integer.toString(1_000), "直接通信して得た個体の論理位置をキャッシュする数"),
         activeAddressDuration(Long.toString(5 * Duration.MINUTE), "直接通信して得た個体の論理位置を伝聞より優先させる期間"),
+        virtualThread(Boolean.toString(false), "接続ごとの送受信を仮想スレッド (使えなければスタックの小さいスレッド) で行うや否や"),
+        messengerThreadCount(Integer.toString(1_024), "個体間の送受信に使うスレッド数の上限 (仮想スレッドを使う場合は無視)"),
+        handlerThreadCount(Integer.toString(32), "他の個体からの依頼を処理するスレッド数"),
+        handlerQueueCapacity(Integer.toString(1_000), "他の個体からの依頼を処理待ちにしておく数の上限"),
+        backupThreadCount(Integer.toString(8), "複製と復元に使うスレッド数"),
+        backupQueueCapacity(Integer.toString(1_000), "複製と復元を実行待ちにしておく数の上限"),
+        maintenanceThreadCount(Integer.toString(0), "保守と自発的な操作に使うスレッド数の上限 (0 なら無制限)"),
         bbsPort(Integer.toString(22_266), "BBS の待機ポート番号"),
         bbsConnectionTimeout(Long.toString(10 * Duration.MINUTE), "BBS の非通信接続を切断するまでの時間 (ミリ秒)"),
         bbsInternalTimeout(Long.toString(1 * Duration.MINUTE + 30 * Duration.SECOND), "BBS の応答を諦めるまでの時間 (ミリ秒)"),
         bbsUpdateThreshold(Long.toString(3 * Duration.MINUTE), "板の更新を自粛する期間 (ミリ秒)"),
         bbsTrafficDuration(Long.toString(Duration.SECOND), "BBS の通信制限のための単位監視時間 (ミリ秒)"),
         bbsTrafficCountLimit(Integer.toString(10), "BBS の通信を制限する通信回数"),
+        bbsSelector(Boolean.toString(false), "BBS の接続をセレクタでまとめて捌くや否や"),
+        bbsWorkerCount(Integer.toString(16), "BBS をセレクタで捌く場合の応答作成の並列数"),
+        bbsThreadCount(Integer.toString(128), "BBS をセレクタで捌かない場合の接続を捌くスレッド数の上限 (仮想スレッドを使う場合は無視)"),
         gui(Boolean.toString(!Global.isDebug()), "GUI を使用するや否や"),
         guiBootDuration(Long.toString(3 * Duration.MINUTE), "起動中とみなす時間 (ミリ秒)"),
         guiMaxDelay(Long.toString(Duration.HOUR), "更新報告の最大遅延時間 (ミリ秒)"),
@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.closet.p2p.SelfReport;
 import nippon.kawauso.chiraura.gui.Gui;
+import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.process.Reporter;
 
 /**
@@ -18,6 +19,9 @@ final class SelfWriter extends Reporter<Void> {
 
     private static final Logger LOG = Logger.getLogger(SelfWriter.class.getName());
 
+    // 統計をログに残す間隔。
+    private static final long STATISTICS_LOG_INTERVAL = 10 * Duration.MINUTE;
+
     private final Environment environment;
     private final BlockingQueue<SelfReport> selfReportSource;
     private final Gui gui;
@@ -45,9 +49,26 @@ final class SelfWriter extends Reporter<Void> {
             source = InetAddress.getLocalHost();
         }
 
+        long nextStatisticsLog = 0;
         while (!Thread.currentThread().isInterrupted()) {
             final SelfReport report = this.selfReportSource.take();
 
+            final long now = System.currentTimeMillis();
+            if (nextStatisticsLog <= now) {
+                LOG.log(Level.INFO, "操作の待ち: {0} 件 (99% {1} ミリ秒), 道筋の探索: {2} 回 (平均 {3} 個体, {4} ミリ秒)。",
+                        new Object[] { report.getNumOfPendingOperations(), String.format("%.3f", report.getOperationWaitLatency()),
+                                report.getNumOfRouteLookups(), String.format("%.2f", report.getRouteAverageHops()),
+                                String.format("%.1f", report.getRouteAverageLatency()) });
+                LOG.log(Level.INFO, "データ片倉庫: キャッシュの当たり {0}, 書き戻し待ち {1} バイト, 書き戻し平均 {2} ミリ秒。",
+                        new Object[] { String.format("%.3f", report.getStorageHitRate()), report.getStorageDirtySize(),
+                                String.format("%.3f", report.getStorageFlushLatency()) });
+                LOG.log(Level.INFO, "依頼の処理: 待ち {0} 件 (99% {1} ミリ秒), 断り {2} 件, 複製: 待ち {3} 件, 断り {4} 件, 押し出し {5} 件。",
+                        new Object[] { report.getHandlerQueueDepth(), String.format("%.3f", report.getHandlerWaitLatency()),
+                                report.getNumOfHandlerRejections(), report.getBackupQueueDepth(), report.getNumOfBackupRejections(),
+                                report.getNumOfBackupDisplaced() });
+                nextStatisticsLog = now + STATISTICS_LOG_INTERVAL;
+            }
+
             if (cur == null || !report.getSelf().equals(cur.get())) {
                 if (cur == null) {
                     LOG.log(Level.FINER, "自分の個体情報が {0} に決定しました。", report.getSelf());
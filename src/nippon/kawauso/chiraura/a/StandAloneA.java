@@ -37,7 +37,8 @@ public final class StandAloneA implements AutoCloseable {
         this.closet = new StandAloneCloset(environment.getStorageRoot(), environment.getChunkSizeLimit(), environment.getStorageDirectoryBitSize(),
                 environment.getChunkCacheCapacity(), environment.getIndexCacheCapacity(), environment.getRangeCacheCapacity());
         this.bbs = new BasicBbs(environment.getBbsPort(), environment.getBbsConnectionTimeout(), environment.getBbsInternalTimeout(), this.closet,
-                environment.getBbsUpdateThreshold(), environment.loadBbsMenu(), environment.getBbsTrafficDuration(), environment.getBbsTrafficCountLimit());
+                environment.getBbsUpdateThreshold(), environment.loadBbsMenu(), environment.getBbsTrafficDuration(), environment.getBbsTrafficCountLimit(),
+                environment.getBbsSelector(), environment.getBbsWorkerCount(), environment.getBbsExecutor(), environment.getTrafficLimiterType());
         this.stopper = new CountDownLatch(1);
     }
 
@@ -56,9 +57,8 @@ public final class StandAloneA implements AutoCloseable {
         }
 
         LOG.log(Level.FINEST, "終了処理に入ります。");
-        this.environment.getExecutor().shutdownNow();
         try {
-            if (!this.environment.getExecutor().awaitTermination(this.environment.getShutdownTimeout(), TimeUnit.MILLISECONDS)) {
+            if (!this.environment.shutdownExecutors()) {
                 LOG.log(Level.SEVERE, "{0} ミリ秒以内にプロセスが終了しませんでした。", this.environment.getShutdownTimeout());
             }
         } catch (final InterruptedException e) {
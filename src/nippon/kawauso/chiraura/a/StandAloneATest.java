@@ -8,8 +8,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
+import nippon.kawauso.chiraura.bbs.Client;
 import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.logging.LoggingFunctions;
 import nippon.kawauso.chiraura.lib.process.Reporter;
@@ -90,4 +92,62 @@ public final class StandAloneATest {
         LogInitializer.reset();
     }
 
+    /**
+     * 板の取得を繰り返して、1 秒あたりの処理数を測る。
+     * @throws Exception 異常
+     */
+    // @Test
+    public void testBoardPollingThroughput() throws Exception {
+        final int numOfClients = 10;
+        final long lifetime = 30 * Duration.SECOND;
+        final String boardName = "test";
+        final File dir = new File(root, "polling" + numOfClients);
+
+        // 板の通信制限に掛からないように。
+        final Option option = new Option(("-root " + dir.getPath() + " -bbsTrafficDuration " + Duration.HOUR).split(" "));
+        final Environment environment = new Environment(option);
+        final StandAloneA cover = new StandAloneA(environment);
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        executor.submit(new Reporter<Void>(Level.WARNING) {
+            @Override
+            protected Void subCall() throws Exception {
+                cover.execute();
+                return null;
+            }
+        });
+
+        // 2ch サーバの稼動待ち。
+        Thread.sleep(Duration.SECOND);
+
+        // 読むだけの板を用意。
+        final InetSocketAddress server = new InetSocketAddress("localhost", environment.getBbsPort());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(Client.addThread(server, boardName, i + " スレ目", "名無し", "age", "1 レス目。"));
+            Thread.sleep(Duration.SECOND + 1);
+        }
+
+        final AtomicLong counter = new AtomicLong(0);
+        final ExecutorService clientExecutor = Executors.newFixedThreadPool(numOfClients);
+        for (int i = 0; i < numOfClients; i++) {
+            clientExecutor.submit(TestClients.newBoardPoller(server, boardName, counter));
+        }
+
+        final long start = System.currentTimeMillis();
+        Thread.sleep(lifetime);
+        final long count = counter.get();
+        final long end = System.currentTimeMillis();
+
+        clientExecutor.shutdownNow();
+        Assert.assertTrue(clientExecutor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        System.out.println("クライアント数: " + numOfClients + " 板取得数: " + count + " 毎秒板取得数: " + String.format("%.1f", count * (double) Duration.SECOND / (end - start)));
+
+        // 2ch サーバは割り込みではすぐ止まらないので待ち切らなくて良い。
+        executor.shutdownNow();
+        executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS);
+
+        cover.close();
+        LogInitializer.reset();
+    }
+
 }
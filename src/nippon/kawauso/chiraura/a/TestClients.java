@@ -12,6 +12,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -593,6 +594,31 @@ final class TestClients {
         };
     }
 
+    /**
+     * 板だけを読み続けるクライアントをつくる。
+     * 2chブラウザと同じく、取得済みの板があれば差分取得する。
+     * @param server 2ch サーバ
+     * @param boardName 板名
+     * @param counter 読んだ回数を足していく入れ物
+     * @return クライアント
+     */
+    static Callable<Void> newBoardPoller(final InetSocketAddress server, final String boardName, final AtomicLong counter) {
+        return new TestClient(server, boardName) {
+            @Override
+            protected Void subCall() throws MyRuleException, IOException, InterruptedException {
+                Client.BbsBoard board = null;
+                while (!Thread.currentThread().isInterrupted()) {
+                    final Client.BbsBoard next = (board == null ? Client.getBoard(this.server, this.boardName) : Client.updateBoard(this.server, board));
+                    if (next != null) {
+                        board = next;
+                        counter.incrementAndGet();
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
     /**
      * スレを乱立させるクライアントをつくる。
      * @param server 2ch サーバ
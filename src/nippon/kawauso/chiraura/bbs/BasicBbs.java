@@ -3,6 +3,7 @@ package nippon.kawauso.chiraura.bbs;
 import java.util.concurrent.ExecutorService;
 
 import nippon.kawauso.chiraura.closet.Closet;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.connection.PortFunctions;
 
 /**
@@ -18,6 +19,11 @@ public final class BasicBbs implements Bbs {
 
     private final long trafficDuration;
     private final int trafficCountLimit;
+    private final ConstantLimiters.Type trafficLimiterType;
+
+    private final boolean selector;
+    private final int workerCount;
+    private final ExecutorService connectionExecutor;
 
     /**
      * 作成する。
@@ -29,9 +35,15 @@ public final class BasicBbs implements Bbs {
      * @param menu メニュー
      * @param trafficDuration 単位監視期間 (ミリ秒)
      * @param trafficCountLimit 制限する通信回数
+     * @param selector セレクタで全接続をまとめて捌くかどうか
+     * @param workerCount セレクタを使う場合の応答を作る作業員の数
+     * @param connectionExecutor セレクタを使わない場合の接続ごとの処理に使う実行機。
+     *            null なら start に渡された実行機を使う
+     * @param trafficLimiterType 通信回数の数え方
      */
     public BasicBbs(final int port, final long connectionTimeout, final long internalTimeout, final Closet closet, final long updateThreshold,
-            final Menu menu, final long trafficDuration, final int trafficCountLimit) {
+            final Menu menu, final long trafficDuration, final int trafficCountLimit, final boolean selector, final int workerCount,
+            final ExecutorService connectionExecutor, final ConstantLimiters.Type trafficLimiterType) {
         if (!PortFunctions.isValid(port)) {
             throw new IllegalArgumentException("Invalid port ( " + port + " ).");
         } else if (connectionTimeout < 0) {
@@ -48,6 +60,10 @@ public final class BasicBbs implements Bbs {
             throw new IllegalArgumentException("Negative traffic duration ( " + trafficDuration + " ).");
         } else if (trafficCountLimit < 0) {
             throw new IllegalArgumentException("Negative traffic count limit ( " + trafficCountLimit + " ).");
+        } else if (trafficLimiterType == null) {
+            throw new IllegalArgumentException("Null traffic limiter type.");
+        } else if (selector && workerCount <= 0) {
+            throw new IllegalArgumentException("Not positive worker count ( " + workerCount + " ).");
         }
 
         this.port = port;
@@ -58,12 +74,56 @@ public final class BasicBbs implements Bbs {
 
         this.trafficDuration = trafficDuration;
         this.trafficCountLimit = trafficCountLimit;
+        this.trafficLimiterType = trafficLimiterType;
+
+        this.selector = selector;
+        this.workerCount = workerCount;
+        this.connectionExecutor = connectionExecutor;
+    }
+
+    /**
+     * 従来の方式 (LIST) で通信回数を数えて作成する。
+     * @param port 受け付けポート番号
+     * @param connectionTimeout クライアントからの通信を待つ時間 (ミリ秒)
+     * @param internalTimeout 内部動作を待つ時間 (ミリ秒)
+     * @param closet 四次元押し入れ
+     * @param updateThreshold 板更新自粛期間
+     * @param menu メニュー
+     * @param trafficDuration 単位監視期間 (ミリ秒)
+     * @param trafficCountLimit 制限する通信回数
+     * @param selector セレクタで全接続をまとめて捌くかどうか
+     * @param workerCount セレクタを使う場合の応答を作る作業員の数
+     * @param connectionExecutor セレクタを使わない場合の接続ごとの処理に使う実行機。
+     *            null なら start に渡された実行機を使う
+     */
+    public BasicBbs(final int port, final long connectionTimeout, final long internalTimeout, final Closet closet, final long updateThreshold,
+            final Menu menu, final long trafficDuration, final int trafficCountLimit, final boolean selector, final int workerCount,
+            final ExecutorService connectionExecutor) {
+        this(port, connectionTimeout, internalTimeout, closet, updateThreshold, menu, trafficDuration, trafficCountLimit, selector, workerCount,
+                connectionExecutor, ConstantLimiters.Type.LIST);
+    }
+
+    /**
+     * 接続ごとに処理を割り当てるサーバで作成する。
+     * @param port 受け付けポート番号
+     * @param connectionTimeout クライアントからの通信を待つ時間 (ミリ秒)
+     * @param internalTimeout 内部動作を待つ時間 (ミリ秒)
+     * @param closet 四次元押し入れ
+     * @param updateThreshold 板更新自粛期間
+     * @param menu メニュー
+     * @param trafficDuration 単位監視期間 (ミリ秒)
+     * @param trafficCountLimit 制限する通信回数
+     */
+    public BasicBbs(final int port, final long connectionTimeout, final long internalTimeout, final Closet closet, final long updateThreshold,
+            final Menu menu, final long trafficDuration, final int trafficCountLimit) {
+        this(port, connectionTimeout, internalTimeout, closet, updateThreshold, menu, trafficDuration, trafficCountLimit, false, 1, null);
     }
 
     @Override
     public void start(final ExecutorService executor) {
-        executor.submit(new Boss(this.port, this.connectionTimeout, this.internalTimeout, this.closet, this.menu, executor, this.trafficDuration,
-                this.trafficCountLimit));
+        final ExecutorService connectionExecutor = (this.connectionExecutor != null ? this.connectionExecutor : executor);
+        executor.submit(new Boss(this.port, this.connectionTimeout, this.internalTimeout, this.closet, this.menu, executor, connectionExecutor,
+                this.trafficDuration, this.trafficCountLimit, this.trafficLimiterType, this.selector, this.workerCount));
     }
 
     @Override
@@ -418,4 +418,94 @@ public final class BasicBbsTest {
         instance.close();
     }
 
+    private BasicBbs newSelectorInstance() {
+        return new BasicBbs(server.getPort(), clientTimeout, workTimeout, this.closet, updateThreshold, menu, trafficDuration, trafficCountLimit, true, 4, null);
+    }
+
+    /**
+     * セレクタを使う場合の板とスレの取得検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSelectorGet() throws Exception {
+        final BasicBbs instance = newSelectorInstance();
+
+        instance.start(this.executor);
+        Thread.sleep(100L);
+
+        final Client.BbsBoard board = Client.getBoard(server, this.boardName);
+        Assert.assertNotNull(board);
+        Assert.assertEquals(this.initialThreads.size(), board.getEntries().size());
+
+        for (final ThreadChunk thread : this.initialThreads) {
+            final Client.BbsThread result = Client.getThread(server, this.boardName, Long.toString(thread.getName()));
+            Assert.assertEquals(thread.getTitle(), result.getTitle());
+            Assert.assertEquals(thread.getNumOfComments(), result.getEntries().size());
+        }
+        Assert.assertNull(Client.getThread(server, this.boardName, "0"));
+
+        this.executor.shutdownNow();
+        Assert.assertTrue(this.executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        instance.close();
+    }
+
+    /**
+     * セレクタを使う場合の書き込み検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSelectorAddComment() throws Exception {
+        final BasicBbs instance = newSelectorInstance();
+
+        instance.start(this.executor);
+        Thread.sleep(100L);
+
+        final ThreadChunk info = (new ArrayList<>(this.initialThreads)).get(0);
+        final String author = "俺様";
+        final String mail = "sage";
+        final String message = "くそスレ乙";
+        Assert.assertTrue(Client.addComment(server, info.getBoard(), Long.toString(info.getName()), author, mail, message));
+
+        final Client.BbsThread thread = Client.getThread(server, info.getBoard(), Long.toString(info.getName()));
+        Assert.assertNotNull(thread);
+        final List<Client.BbsThread.Entry> entries = thread.getEntries();
+        Assert.assertEquals(author, entries.get(entries.size() - 1).getAuthor());
+        Assert.assertEquals(mail, entries.get(entries.size() - 1).getMail());
+        Assert.assertEquals(message, entries.get(entries.size() - 1).getMessage());
+
+        this.executor.shutdownNow();
+        Assert.assertTrue(this.executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        instance.close();
+    }
+
+    /**
+     * セレクタを使う場合の通信制限の発動検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSelectorConnectionLimit() throws Exception {
+        final BasicBbs instance = newSelectorInstance();
+
+        instance.start(this.executor);
+        Thread.sleep(100L);
+
+        final ThreadChunk thread = (new ArrayList<>(this.initialThreads)).get(0);
+
+        final long start0 = System.currentTimeMillis();
+        for (int i = 0; i <= trafficCountLimit; i++) {
+            final Client.BbsThread result = Client.getThread(server, this.boardName, Long.toString(thread.getName()));
+            Assert.assertEquals(thread.getTitle(), result.getTitle());
+            Assert.assertEquals(thread.getNumOfComments(), result.getEntries().size());
+        }
+        final long end = System.currentTimeMillis();
+
+        if (end - start0 <= trafficDuration) {
+            Assert.fail("" + (end - start0));
+        }
+
+        this.executor.shutdownNow();
+        Assert.assertTrue(this.executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        instance.close();
+    }
+
 }
@@ -0,0 +1,155 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nippon.kawauso.chiraura.lib.http.Http;
+
+/**
+ * 板を subject.txt にしたバイト列の保管庫。
+ * 保管してから一定時間は四次元押し入れに問い合わせずに使う。
+ * 板を更新したら捨てる。
+ * @author chirauraNoSakusha
+ */
+final class BoardCache {
+
+    /*
+     * 四次元押し入れから板を取ってくる間に板が更新されて捨てられると、
+     * 取ってきた古い板を保管してしまう。
+     * なので、取ってくる前に世代を覚えておき、その後に捨てられていたら保管しない。
+     */
+
+    /**
+     * subject.txt にした板。
+     */
+    static final class Snapshot implements Content {
+        private final long updateDate;
+        private final long networkTag;
+        private final String contentType;
+        private final byte[] content;
+        private final long cacheDate;
+
+        private Snapshot(final BoardChunk board, final long cacheDate) {
+            this.updateDate = board.getUpdateDate();
+            this.networkTag = board.getNetworkTag();
+            this.contentType = board.getContentType();
+            this.content = board.toNetworkString().getBytes(Constants.CONTENT_CHARSET);
+            this.cacheDate = cacheDate;
+        }
+
+        @Override
+        public long getUpdateDate() {
+            return this.updateDate;
+        }
+
+        @Override
+        public long getNetworkTag() {
+            return this.networkTag;
+        }
+
+        @Override
+        public String getContentType() {
+            return this.contentType;
+        }
+
+        /**
+         * 返り値は変更しないこと。
+         * @return subject.txt のバイト列
+         */
+        byte[] getContent() {
+            return this.content;
+        }
+
+        @Override
+        public String toString() {
+            return (new StringBuilder(this.getClass().getSimpleName()))
+                    .append('[').append(Http.formatDate(this.updateDate))
+                    .append(", ").append(this.networkTag)
+                    .append(", ").append(this.content.length)
+                    .append(']').toString();
+        }
+    }
+
+    private final long duration;
+    private final Map<String, Snapshot> container;
+    private final AtomicLong generation;
+
+    /**
+     * 作成する。
+     * @param capacity 保管する板の数
+     * @param duration 四次元押し入れに問い合わせずに使う期間 (ミリ秒)
+     */
+    @SuppressWarnings("serial")
+    BoardCache(final int capacity, final long duration) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Not positive capacity ( " + capacity + " ).");
+        } else if (duration < 0) {
+            throw new IllegalArgumentException("Negative duration ( " + duration + " ).");
+        }
+        this.duration = duration;
+        this.container = Collections.synchronizedMap(new LinkedHashMap<String, Snapshot>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Snapshot> eldest) {
+                return this.size() > capacity;
+            }
+        });
+        this.generation = new AtomicLong(0);
+    }
+
+    /**
+     * 新しい保管品を得る。
+     * @param boardName 板名
+     * @return 期限内の保管品。
+     *         無い場合は null
+     */
+    Snapshot get(final String boardName) {
+        final Snapshot snapshot = this.container.get(boardName);
+        if (snapshot == null || snapshot.cacheDate + this.duration <= System.currentTimeMillis()) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 四次元押し入れから板を取ってくる前に呼ぶ。
+     * @return 現在の世代
+     */
+    long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * 板を保管する。
+     * @param boardName 板名
+     * @param board 四次元押し入れから取ってきた板
+     * @param generation 板を取ってくる前の世代
+     * @return 板を subject.txt にしたもの
+     */
+    Snapshot put(final String boardName, final BoardChunk board, final long generation) {
+        final Snapshot snapshot = new Snapshot(board, System.currentTimeMillis());
+        synchronized (this.container) {
+            if (this.generation.get() == generation) {
+                this.container.put(boardName, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 保管品を捨てる。
+     * @param boardName 板名
+     */
+    void remove(final String boardName) {
+        synchronized (this.container) {
+            this.generation.incrementAndGet();
+            this.container.remove(boardName);
+        }
+    }
+
+    int size() {
+        return this.container.size();
+    }
+
+}
@@ -0,0 +1,71 @@
+package nippon.kawauso.chiraura.bbs;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class BoardCacheTest {
+
+    private static final String BOARD_NAME = "test";
+
+    private static OrderingBoardChunk newBoard(final int numOfThreads) {
+        final long start = System.currentTimeMillis();
+        final OrderingBoardChunk board = new OrderingBoardChunk(BOARD_NAME);
+        for (int i = 0; i < numOfThreads; i++) {
+            board.patch(new OrderingBoardChunk.Entry(start + i, start + i, start / 1_000 + i, i + " スレ目", 1));
+        }
+        return board;
+    }
+
+    /**
+     * 保管した subject.txt が板と同じかどうか。
+     */
+    @Test
+    public void testGet() {
+        final BoardCache instance = new BoardCache(10, Long.MAX_VALUE / 2);
+        Assert.assertNull(instance.get(BOARD_NAME));
+
+        final OrderingBoardChunk board = newBoard(10);
+        final BoardCache.Snapshot snapshot = instance.put(BOARD_NAME, board, instance.getGeneration());
+        Assert.assertSame(snapshot, instance.get(BOARD_NAME));
+        Assert.assertArrayEquals(board.toNetworkString().getBytes(Constants.CONTENT_CHARSET), snapshot.getContent());
+        Assert.assertEquals(board.getNetworkTag(), snapshot.getNetworkTag());
+        Assert.assertEquals(board.getUpdateDate(), snapshot.getUpdateDate());
+
+        instance.remove(BOARD_NAME);
+        Assert.assertNull(instance.get(BOARD_NAME));
+    }
+
+    /**
+     * 期限切れを返さないかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testExpire() throws Exception {
+        final BoardCache instance = new BoardCache(10, 10L);
+        instance.put(BOARD_NAME, newBoard(1), instance.getGeneration());
+        Assert.assertNotNull(instance.get(BOARD_NAME));
+        Thread.sleep(20L);
+        Assert.assertNull(instance.get(BOARD_NAME));
+    }
+
+    /**
+     * 取ってくる間に捨てられた板を保管しないかどうか。
+     */
+    @Test
+    public void testGeneration() {
+        final BoardCache instance = new BoardCache(10, Long.MAX_VALUE / 2);
+        final long generation = instance.getGeneration();
+        final OrderingBoardChunk old = newBoard(1);
+        // 取ってくる間に更新された。
+        instance.remove(BOARD_NAME);
+        Assert.assertNotNull(instance.put(BOARD_NAME, old, generation));
+        Assert.assertNull(instance.get(BOARD_NAME));
+
+        instance.put(BOARD_NAME, newBoard(2), instance.getGeneration());
+        Assert.assertNotNull(instance.get(BOARD_NAME));
+    }
+
+}
@@ -5,8 +5,8 @@ package nippon.kawauso.chiraura.bbs;
  */
 class BoardResponse extends ContentResponse {
 
-    BoardResponse(final BoardChunk board) {
-        super(board, board.toNetworkString().getBytes(Constants.CONTENT_CHARSET));
+    BoardResponse(final BoardCache.Snapshot board) {
+        super(board, board.getContent());
     }
 
 }
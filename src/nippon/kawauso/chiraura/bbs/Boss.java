@@ -9,6 +9,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.connection.Limiter;
 import nippon.kawauso.chiraura.lib.connection.PortFunctions;
 import nippon.kawauso.chiraura.lib.connection.PortIgnoringConstantTrafficLimiter;
@@ -29,6 +30,9 @@ final class Boss extends Chief {
     private final long connectionTimeout;
     private final long internalTimeout;
     private final ExecutorService executor;
+    private final ExecutorService connectionExecutor;
+    private final boolean selector;
+    private final int workerCount;
 
     // 保持。
     private final ConnectionPool connectionPool;
@@ -39,7 +43,8 @@ final class Boss extends Chief {
     private final Limiter<InetSocketAddress> limiter;
 
     Boss(final int port, final long connectionTimeout, final long internalTimeout, final ClosetWrapper closet, final Menu menu, final ExecutorService executor,
-            final long trafficDuration, final int trafficCountLimit) {
+            final ExecutorService connectionExecutor, final long trafficDuration, final int trafficCountLimit, final ConstantLimiters.Type trafficLimiterType, final boolean selector,
+            final int workerCount) {
         super(new LinkedBlockingQueue<Reporter.Report>());
 
         if (!PortFunctions.isValid(port)) {
@@ -54,35 +59,51 @@ final class Boss extends Chief {
             throw new IllegalArgumentException("Null menu.");
         } else if (executor == null) {
             throw new IllegalArgumentException("Null executor.");
+        } else if (connectionExecutor == null) {
+            throw new IllegalArgumentException("Null connection executor.");
         } else if (trafficDuration < 0) {
             throw new IllegalArgumentException("Negative traffic duration ( " + trafficDuration + " ).");
         } else if (trafficCountLimit < 0) {
             throw new IllegalArgumentException("Negative traffic count limit ( " + trafficCountLimit + " ).");
+        } else if (trafficLimiterType == null) {
+            throw new IllegalArgumentException("Null traffic limiter type.");
+        } else if (selector && workerCount <= 0) {
+            throw new IllegalArgumentException("Not positive worker count ( " + workerCount + " ).");
         }
 
         this.port = port;
         this.connectionTimeout = connectionTimeout;
         this.internalTimeout = internalTimeout;
         this.executor = executor;
+        this.connectionExecutor = connectionExecutor;
+        this.selector = selector;
+        this.workerCount = workerCount;
 
         this.connectionPool = new ConnectionPool();
         this.responseMaker = new ResponseMaker(closet, menu, port);
         this.serverSocket = null;
 
-        this.limiter = new PortIgnoringConstantTrafficLimiter(trafficDuration, Long.MAX_VALUE, trafficCountLimit, 0L);
+        this.limiter = new PortIgnoringConstantTrafficLimiter(trafficDuration, Long.MAX_VALUE, trafficCountLimit, 0L, trafficLimiterType);
     }
 
-    private Server newServer() throws IOException {
-        return new Server(getReportQueue(), this.port, this.connectionPool, this.executor, this.connectionTimeout, this.responseMaker, this.internalTimeout,
-                this.limiter);
+    private void startServer() throws IOException {
+        if (this.selector) {
+            final SelectorServer server = new SelectorServer(getReportQueue(), this.port, this.connectionTimeout, this.responseMaker, this.internalTimeout,
+                    this.limiter, this.workerCount);
+            this.executor.submit(server);
+            this.serverSocket = server.getServerSocket();
+        } else {
+            final Server server = new Server(getReportQueue(), this.port, this.connectionPool, this.connectionExecutor, this.connectionTimeout,
+                    this.responseMaker, this.internalTimeout, this.limiter);
+            this.executor.submit(server);
+            this.serverSocket = server.getServerSocket();
+        }
     }
 
     @Override
     protected void before() {
         try {
-            final Server server = newServer();
-            this.executor.submit(server);
-            this.serverSocket = server.getServerSocket();
+            startServer();
         } catch (final IOException e) {
             LOG.log(Level.WARNING, "異常が発生しました", e);
             LOG.log(Level.SEVERE, "サーバを作成できませんでした。");
@@ -92,7 +113,7 @@ final class Boss extends Chief {
     @Override
     protected void reaction(final Report report) {
         boolean done = true;
-        if (report.getSource() == Server.class) {
+        if (report.getSource() == Server.class || report.getSource() == SelectorServer.class) {
             if (this.serverSocket != null) {
                 try {
                     this.serverSocket.close();
@@ -105,9 +126,7 @@ final class Boss extends Chief {
                 LOG.log(Level.SEVERE, "接続の待機を始められませんでした。");
             } else {
                 try {
-                    final Server server = newServer();
-                    this.executor.submit(server);
-                    this.serverSocket = server.getServerSocket();
+                    startServer();
                 } catch (final IOException e) {
                     LOG.log(Level.WARNING, "異常が発生しました", report.getCause());
                     LOG.log(Level.SEVERE, "サーバを再作成できませんでした。");
@@ -18,10 +18,17 @@ final class ClosetWrapper {
 
     private static final String NOT_UPDATE_MAIL = "sage";
 
+    // subject.txt を保管する板の数。
+    private static final int BOARD_CACHE_CAPACITY = 100;
+    // subject.txt を四次元押し入れに問い合わせずに使う期間。
+    private static final long BOARD_CACHE_DURATION = 5 * Duration.SECOND;
+
     private final Closet base;
 
     private final long updateThreshold;
 
+    private final BoardCache boardCache;
+
     ClosetWrapper(final Closet base, final long updateThreshold) {
         if (base == null) {
             throw new IllegalArgumentException("Null base.");
@@ -31,9 +38,19 @@ final class ClosetWrapper {
 
         this.base = base;
         this.updateThreshold = updateThreshold;
+        this.boardCache = new BoardCache(BOARD_CACHE_CAPACITY, BOARD_CACHE_DURATION);
         Register.init(this.base);
     }
 
+    /**
+     * 板の subject.txt の保管庫を得る。
+     * 板を更新したときはこちらで捨てる。
+     * @return 板の subject.txt の保管庫
+     */
+    BoardCache getBoardCache() {
+        return this.boardCache;
+    }
+
     /**
      * 板を得る。
      * @param boardName 板名
@@ -89,6 +106,7 @@ final class ClosetWrapper {
         } else if (!result1.isSuccess()) {
             LOG.log(Level.WARNING, "{0} による板 {1} の更新に失敗しました。", new Object[] { boardEntry, boardId });
         }
+        this.boardCache.remove(thread.getBoard());
     }
 
     /**
@@ -0,0 +1,136 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.text.DateFormat;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * スレを dat にしたバイト列の保管庫。
+ * スレに書き込みが増えただけなら、増えた分の行だけ作って後ろに足す。
+ * @author chirauraNoSakusha
+ */
+final class DatCache {
+
+    private static final Logger LOG = Logger.getLogger(DatCache.class.getName());
+
+    /*
+     * 保管する値は作ったら変更しないので、返したバイト列をそのまま応答に使って良い。
+     * 同じスレを同時に作り直すこともあるが、どちらも正しいのでどちらが残っても構わない。
+     */
+
+    /**
+     * dat にしたスレ。
+     */
+    private static final class Rendered {
+        private final ThreadChunk.Entry firstEntry;
+        private final String title;
+        private final ThreadChunk.Entry lastEntry; // 最後に足した書き込み。1 行目だけなら null。
+        private final int numOfEntries; // 1 行目を除いた書き込みの数。
+        private final boolean terminated; // 終わりの行まで足したかどうか。
+        private final long networkTag;
+        private final byte[] content;
+
+        private Rendered(final ThreadChunk.Entry firstEntry, final String title, final ThreadChunk.Entry lastEntry, final int numOfEntries,
+                final boolean terminated, final long networkTag, final byte[] content) {
+            this.firstEntry = firstEntry;
+            this.title = title;
+            this.lastEntry = lastEntry;
+            this.numOfEntries = numOfEntries;
+            this.terminated = terminated;
+            this.networkTag = networkTag;
+            this.content = content;
+        }
+    }
+
+    private final Map<String, Rendered> container;
+
+    @SuppressWarnings("serial")
+    DatCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Not positive capacity ( " + capacity + " ).");
+        }
+        this.container = Collections.synchronizedMap(new LinkedHashMap<String, Rendered>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Rendered> eldest) {
+                return this.size() > capacity;
+            }
+        });
+    }
+
+    private static String toKey(final ThreadChunk thread, final String after) {
+        final StringBuilder buff = (new StringBuilder(thread.getBoard())).append('/').append(thread.getName());
+        if (after != null) {
+            buff.append(' ').append(after);
+        }
+        return buff.toString();
+    }
+
+    /**
+     * スレを dat にしたバイト列を得る。
+     * 返り値は変更しないこと。
+     * @param thread スレ
+     * @param host 2chブラウザから見たホスト名
+     * @param port 2chブラウザ用のポート番号
+     * @return dat のバイト列
+     */
+    byte[] get(final ThreadChunk thread, final String host, final int port) {
+        final String after = ThreadChunk.toNotation(host, port);
+        final String key = toKey(thread, after);
+        final long networkTag = thread.getNetworkTag();
+        final int numOfEntries = thread.getNumOfComments() - 1;
+
+        final Rendered old = this.container.get(key);
+        if (old != null && old.networkTag == networkTag && old.numOfEntries == numOfEntries) {
+            return old.content;
+        }
+
+        final DateFormat formatter = ThreadChunk.newDateFormat();
+        final Rendered cur;
+        List<ThreadChunk.Entry> tail = null;
+        if (old != null && !old.terminated && old.firstEntry.equals(thread.getFirstEntry()) && old.title.equals(thread.getTitle())) {
+            tail = thread.getEntriesAfter(old.lastEntry);
+            if (tail != null && (tail.isEmpty() || old.numOfEntries + tail.size() != numOfEntries)) {
+                // 途中に書き込みが挟まったか、中身が入れ替わった。
+                tail = null;
+            }
+        }
+        if (tail != null) {
+            cur = render(thread, old.content, old.lastEntry, old.numOfEntries, tail, after, formatter, networkTag);
+            LOG.log(Level.FINEST, "{0} の dat に {1} 行足しました。", new Object[] { key, tail.size() });
+        } else {
+            final byte[] head = thread.toNetworkHead(after, formatter).getBytes(Constants.CONTENT_CHARSET);
+            cur = render(thread, head, null, 0, thread.getEntries(), after, formatter, networkTag);
+            LOG.log(Level.FINEST, "{0} の dat を作り直しました。", key);
+        }
+        this.container.put(key, cur);
+        return cur.content;
+    }
+
+    private static Rendered render(final ThreadChunk thread, final byte[] base, final ThreadChunk.Entry baseLast, final int baseNumOfEntries,
+            final List<ThreadChunk.Entry> tail, final String after, final DateFormat formatter, final long networkTag) {
+        final boolean terminated = thread.isFull();
+        final StringBuilder buff = new StringBuilder();
+        for (final ThreadChunk.Entry entry : tail) {
+            buff.append(ThreadChunk.toNetworkLine(entry, after, formatter));
+        }
+        if (terminated) {
+            buff.append(ThreadChunk.TERMINAL);
+        }
+        // Shift_JIS は状態を持たないので、行ごとに変換してつなげても全体を変換したものと同じになる。
+        final byte[] added = buff.toString().getBytes(Constants.CONTENT_CHARSET);
+        final byte[] content = new byte[base.length + added.length];
+        System.arraycopy(base, 0, content, 0, base.length);
+        System.arraycopy(added, 0, content, base.length, added.length);
+        final ThreadChunk.Entry last = (tail.isEmpty() ? baseLast : tail.get(tail.size() - 1));
+        return new Rendered(thread.getFirstEntry(), thread.getTitle(), last, baseNumOfEntries + tail.size(), terminated, networkTag, content);
+    }
+
+    int size() {
+        return this.container.size();
+    }
+
+}
@@ -0,0 +1,116 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class DatCacheTest {
+
+    private static final Logger LOG = Logger.getLogger(DatCacheTest.class.getName());
+
+    private final long start;
+
+    /**
+     * 初期化。
+     */
+    public DatCacheTest() {
+        this.start = System.currentTimeMillis();
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    private ThreadChunk newThread() {
+        return new ThreadChunk("test", this.start / Duration.SECOND, "テストスレ", "名無し", "age", this.start, 0, "ちらしの裏表記: " + ContentConstants.CHIRAURA_NOTATION_LABEL);
+    }
+
+    private ThreadChunk.Entry newEntry(final int i) {
+        return ThreadChunk.Entry.newInstance("名無し" + i, "sage", this.start + i, i, PostFunctions.wrapMessage(">>1 " + i + " 番目"));
+    }
+
+    private static void check(final DatCache instance, final ThreadChunk thread, final String host, final int port) {
+        Assert.assertArrayEquals(thread.toNetworkString(host, port).getBytes(Constants.CONTENT_CHARSET), instance.get(thread, host, port));
+    }
+
+    /**
+     * 書き込みを足していっても、毎回作った dat と同じになるかどうか。
+     */
+    @Test
+    public void testAppend() {
+        final DatCache instance = new DatCache(10);
+        final ThreadChunk thread = newThread();
+        check(instance, thread, "localhost", 22266);
+        check(instance, thread, null, 22266);
+        for (int i = 1; !thread.isFull(); i++) {
+            thread.patch(newEntry(10 * i));
+            check(instance, thread, "localhost", 22266);
+            check(instance, thread, "localhost", 22266);
+            if (i % 10 == 0) {
+                check(instance, thread, null, 22266);
+            }
+        }
+        // 終わりの行。
+        check(instance, thread, "localhost", 22266);
+        Assert.assertEquals(2, instance.size());
+    }
+
+    /**
+     * 途中に書き込みが挟まったら作り直すかどうか。
+     */
+    @Test
+    public void testInsert() {
+        final DatCache instance = new DatCache(10);
+        final ThreadChunk thread = newThread();
+        for (int i = 1; i <= 10; i++) {
+            thread.patch(newEntry(10 * i));
+        }
+        check(instance, thread, "localhost", 22266);
+
+        thread.patch(newEntry(55));
+        check(instance, thread, "localhost", 22266);
+
+        // 同じ数の別の書き込みを持つ複製。
+        final ThreadChunk other = newThread();
+        for (int i = 1; i <= 11; i++) {
+            other.patch(newEntry(10 * i + 1));
+        }
+        check(instance, other, "localhost", 22266);
+        check(instance, thread, "localhost", 22266);
+    }
+
+    /**
+     * 毎回作る場合との比較。
+     */
+    @Test
+    public void testPerformance() {
+        final int numOfEntries = 500;
+        final int numOfPolls = 10;
+
+        final DatCache instance = new DatCache(10);
+        final ThreadChunk thread = newThread();
+        long render = 0;
+        long cache = 0;
+        for (int i = 1; i <= numOfEntries; i++) {
+            thread.patch(newEntry(i));
+            for (int j = 0; j < numOfPolls; j++) {
+                long start = System.nanoTime();
+                final int size1 = thread.toNetworkString("localhost", 22266).getBytes(Constants.CONTENT_CHARSET).length;
+                render += System.nanoTime() - start;
+                start = System.nanoTime();
+                final int size2 = instance.get(thread, "localhost", 22266).length;
+                cache += System.nanoTime() - start;
+                Assert.assertEquals(size1, size2);
+            }
+        }
+        LOG.log(Level.SEVERE, "書き込み数: {0} 取得回数: {1} 毎回作成単位消費ミリ秒: {2} 保管単位消費ミリ秒: {3}", new Object[] { numOfEntries, numOfEntries * numOfPolls,
+                String.format("%f", render / (1_000_000.0 * numOfEntries * numOfPolls)),
+                String.format("%f", cache / (1_000_000.0 * numOfEntries * numOfPolls)) });
+    }
+
+}
@@ -21,30 +21,40 @@ final class GetBoardResponseMaker {
     Response make(final GetBoardRequest request, final long timeout) throws InterruptedException {
         final long start = System.currentTimeMillis();
 
-        final BoardChunk board = this.closet.getBoard(request.getBoard(), timeout);
-        if (board != null) {
-            final Long ifModifiedSince = request.getIfModifiedSince();
-            final String ifNoneMatch = request.getIfNoneMatch();
-            if (ifModifiedSince != null && ifNoneMatch != null) {
-                if (board.getUpdateDate() - board.getUpdateDate() % Duration.SECOND <= ifModifiedSince
-                        && Long.toString(board.getNetworkTag()).equals(ifNoneMatch)) {
-                    return new NotModifiedResponse(getTarget(request));
-                }
-            } else if (ifModifiedSince != null) {
-                if (board.getUpdateDate() - board.getUpdateDate() % Duration.SECOND <= ifModifiedSince) {
-                    return new NotModifiedResponse(getTarget(request));
-                }
-            } else if (ifNoneMatch != null) {
-                if (Long.toString(board.getNetworkTag()).equals(ifNoneMatch)) {
-                    return new NotModifiedResponse(getTarget(request));
+        // 保管品が新しければ四次元押し入れに問い合わせない。
+        final BoardCache cache = this.closet.getBoardCache();
+        BoardCache.Snapshot snapshot = cache.get(request.getBoard());
+        if (snapshot == null) {
+            final long generation = cache.getGeneration();
+            final BoardChunk board = this.closet.getBoard(request.getBoard(), timeout);
+            if (board == null) {
+                if (start + timeout <= System.currentTimeMillis()) {
+                    return new InternalServerErrorResponse("時間切れです。");
+                } else {
+                    return new InternalServerErrorResponse("ごめんなさい。");
                 }
             }
+            snapshot = cache.put(request.getBoard(), board, generation);
+        }
+
+        if (isNotModified(snapshot, request)) {
+            return new NotModifiedResponse(getTarget(request));
+        }
+        return new BoardResponse(snapshot);
+    }
 
-            return new BoardResponse(board);
-        } else if (start + timeout <= System.currentTimeMillis()) {
-            return new InternalServerErrorResponse("時間切れです。");
+    private static boolean isNotModified(final Content board, final GetBoardRequest request) {
+        final Long ifModifiedSince = request.getIfModifiedSince();
+        final String ifNoneMatch = request.getIfNoneMatch();
+        if (ifModifiedSince != null && ifNoneMatch != null) {
+            return board.getUpdateDate() - board.getUpdateDate() % Duration.SECOND <= ifModifiedSince
+                    && Long.toString(board.getNetworkTag()).equals(ifNoneMatch);
+        } else if (ifModifiedSince != null) {
+            return board.getUpdateDate() - board.getUpdateDate() % Duration.SECOND <= ifModifiedSince;
+        } else if (ifNoneMatch != null) {
+            return Long.toString(board.getNetworkTag()).equals(ifNoneMatch);
         } else {
-            return new InternalServerErrorResponse("ごめんなさい。");
+            return false;
         }
     }
 
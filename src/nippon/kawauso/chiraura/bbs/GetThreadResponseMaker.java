@@ -9,9 +9,14 @@ import nippon.kawauso.chiraura.lib.connection.PortFunctions;
  */
 final class GetThreadResponseMaker {
 
+    // dat を保管するスレの数。
+    private static final int CACHE_CAPACITY = 100;
+
     private final ClosetWrapper closet;
     private final int port;
 
+    private final DatCache cache;
+
     GetThreadResponseMaker(final ClosetWrapper closet, final int port) {
         if (closet == null) {
             throw new IllegalArgumentException("Null closet.");
@@ -21,6 +26,7 @@ final class GetThreadResponseMaker {
 
         this.closet = closet;
         this.port = port;
+        this.cache = new DatCache(CACHE_CAPACITY);
     }
 
     Response make(final GetThreadRequest request, final long timeout) throws InterruptedException {
@@ -45,7 +51,7 @@ final class GetThreadResponseMaker {
                 }
             }
 
-            final byte[] content = thread.toNetworkString(request.getHost(), this.port).getBytes(Constants.CONTENT_CHARSET);
+            final byte[] content = this.cache.get(thread, request.getHost(), this.port);
             final Integer rangeHead = request.getRangeHead();
             if (rangeHead != null) {
                 if (content.length <= rangeHead) {
@@ -0,0 +1,142 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.http.Http;
+import nippon.kawauso.chiraura.lib.http.InputStreamWrapper;
+
+/**
+ * 少しずつ届くバイト列から HTTP リクエストを切り出す。
+ * 1 つのリクエストが揃ったら HttpRequest.fromStream で読む。
+ * @author chirauraNoSakusha
+ */
+final class HttpRequestReader {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final String CONTENT_LENGTH_LABEL = Http.Field.CONTENT_LENGTH.toNetworkString().toLowerCase() + ":";
+
+    private final int headerSizeLimit;
+    private final int contentSizeLimit;
+
+    private byte[] buff;
+    private int size;
+
+    /**
+     * 作成する。
+     * @param headerSizeLimit ヘッダ部分の制限バイト数
+     * @param contentSizeLimit 本体部分の制限バイト数
+     */
+    HttpRequestReader(final int headerSizeLimit, final int contentSizeLimit) {
+        if (headerSizeLimit <= 0) {
+            throw new IllegalArgumentException("Not positive header size limit ( " + headerSizeLimit + " ).");
+        } else if (contentSizeLimit < 0) {
+            throw new IllegalArgumentException("Negative content size limit ( " + contentSizeLimit + " ).");
+        }
+        this.headerSizeLimit = headerSizeLimit;
+        this.contentSizeLimit = contentSizeLimit;
+        this.buff = new byte[1024];
+        this.size = 0;
+    }
+
+    /**
+     * 届いたバイト列を溜める。
+     * @param input 届いたバイト列。読み出し状態であること
+     */
+    void feed(final ByteBuffer input) {
+        final int length = input.remaining();
+        if (this.buff.length < this.size + length) {
+            this.buff = Arrays.copyOf(this.buff, Math.max(2 * this.buff.length, this.size + length));
+        }
+        input.get(this.buff, this.size, length);
+        this.size += length;
+    }
+
+    /**
+     * 溜まっている分からリクエストを 1 つ切り出す。
+     * @return HTTP リクエスト。
+     *         まだ揃っていない場合は null
+     * @throws MyRuleException リクエストが大きすぎる場合
+     * @throws IOException リクエストがおかしかった場合
+     */
+    HttpRequest poll() throws MyRuleException, IOException {
+        // 先頭の空行を捨てる。
+        int head = 0;
+        while (head < this.size && (this.buff[head] == CR || this.buff[head] == LF)) {
+            head++;
+        }
+        consume(head);
+
+        final int headerEnd = searchHeaderEnd();
+        if (headerEnd < 0) {
+            if (this.headerSizeLimit < this.size) {
+                throw new MyRuleException("Too large header ( " + this.size + " ) over limit ( " + this.headerSizeLimit + " ).");
+            }
+            return null;
+        }
+
+        final int contentLength = getContentLength(new String(this.buff, 0, headerEnd, Http.HEADER_CHARSET));
+        if (this.contentSizeLimit < contentLength) {
+            throw new MyRuleException("Too large content ( " + contentLength + " ) over limit ( " + this.contentSizeLimit + " ).");
+        } else if (this.size < headerEnd + contentLength) {
+            return null;
+        }
+
+        final byte[] request = Arrays.copyOf(this.buff, headerEnd + contentLength);
+        consume(request.length);
+        try (final InputStreamWrapper input = new InputStreamWrapper(new ByteArrayInputStream(request), Http.HEADER_CHARSET, Http.SEPARATOR,
+                this.headerSizeLimit)) {
+            return HttpRequest.fromStream(input);
+        }
+    }
+
+    /**
+     * @return 空行の直後の位置。
+     *         空行が無い場合は -1
+     */
+    private int searchHeaderEnd() {
+        for (int i = 3; i < this.size; i++) {
+            if (this.buff[i] == LF && this.buff[i - 1] == CR && this.buff[i - 2] == LF && this.buff[i - 3] == CR) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int getContentLength(final String header) throws MyRuleException {
+        for (final String line : header.split(Http.SEPARATOR)) {
+            if (line.toLowerCase().startsWith(CONTENT_LENGTH_LABEL)) {
+                try {
+                    final int length = Integer.parseInt(line.substring(CONTENT_LENGTH_LABEL.length()).trim());
+                    if (length < 0) {
+                        throw new MyRuleException("Negative content length ( " + length + " ).");
+                    }
+                    return length;
+                } catch (final NumberFormatException e) {
+                    throw new MyRuleException(e);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void consume(final int length) {
+        if (length <= 0) {
+            return;
+        }
+        System.arraycopy(this.buff, length, this.buff, 0, this.size - length);
+        this.size -= length;
+    }
+
+    /**
+     * @return 溜まっている分が無いなら true
+     */
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+}
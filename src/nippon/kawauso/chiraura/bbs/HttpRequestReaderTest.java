@@ -0,0 +1,87 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.nio.ByteBuffer;
+
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.http.Http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class HttpRequestReaderTest {
+
+    private static final String GET = "GET /test/subject.txt HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    private static final String POST = "POST /test/bbs.cgi HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nabcde";
+
+    private static ByteBuffer toBuffer(final String str) {
+        return ByteBuffer.wrap(str.getBytes(Http.HEADER_CHARSET));
+    }
+
+    /**
+     * 1 バイトずつ届いても読めるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSplit() throws Exception {
+        final HttpRequestReader instance = new HttpRequestReader(8192, 8192);
+        final byte[] bytes = POST.getBytes(Http.HEADER_CHARSET);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            instance.feed(ByteBuffer.wrap(bytes, i, 1));
+            Assert.assertNull(instance.poll());
+        }
+        instance.feed(ByteBuffer.wrap(bytes, bytes.length - 1, 1));
+        final HttpRequest request = instance.poll();
+        Assert.assertNotNull(request);
+        Assert.assertEquals(Http.Method.POST, request.getMethod());
+        Assert.assertArrayEquals("abcde".getBytes(Http.HEADER_CHARSET), request.getContent());
+        Assert.assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * 続けて届いたリクエストを順に読めるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPipelining() throws Exception {
+        final HttpRequestReader instance = new HttpRequestReader(8192, 8192);
+        instance.feed(toBuffer(GET + POST + "\r\n" + GET.substring(0, 10)));
+
+        final HttpRequest request1 = instance.poll();
+        Assert.assertEquals(Http.Method.GET, request1.getMethod());
+        Assert.assertEquals("/test/subject.txt", request1.getTarget());
+        final HttpRequest request2 = instance.poll();
+        Assert.assertEquals(Http.Method.POST, request2.getMethod());
+        Assert.assertNull(instance.poll());
+        Assert.assertFalse(instance.isEmpty());
+
+        instance.feed(toBuffer(GET.substring(10)));
+        Assert.assertEquals(Http.Method.GET, instance.poll().getMethod());
+        Assert.assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * 大きすぎるヘッダを弾くかどうか。
+     * @throws Exception 異常
+     */
+    @Test(expected = MyRuleException.class)
+    public void testHeaderLimit() throws Exception {
+        final HttpRequestReader instance = new HttpRequestReader(16, 8192);
+        instance.feed(toBuffer(GET.substring(0, 20)));
+        instance.poll();
+    }
+
+    /**
+     * 大きすぎる本体を弾くかどうか。
+     * @throws Exception 異常
+     */
+    @Test(expected = MyRuleException.class)
+    public void testContentLimit() throws Exception {
+        final HttpRequestReader instance = new HttpRequestReader(8192, 4);
+        instance.feed(toBuffer(POST));
+        instance.poll();
+    }
+
+}
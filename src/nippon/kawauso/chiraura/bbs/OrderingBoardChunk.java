@@ -4,20 +4,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.base.HashValue;
 import nippon.kawauso.chiraura.lib.cell.Utf8Cell;
+import nippon.kawauso.chiraura.lib.container.SharedTreeMap;
 import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesFormat;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 import nippon.kawauso.chiraura.lib.http.Http;
 import nippon.kawauso.chiraura.lib.logging.LoggingFunctions;
@@ -29,7 +28,7 @@ import nippon.kawauso.chiraura.storage.SkeletalChunk;
  * 差分取得を妨げず、sage でも更新できるように、表示順位と日時を別に持つ。
  * @author chirauraNoSakusha
  */
-public final class OrderingBoardChunk extends SkeletalChunk implements BoardChunk {
+public final class OrderingBoardChunk extends SkeletalChunk implements BoardChunk, MountainHash.Selectable {
     // TODO public なのは FileStorageConverter のための一時的処置。
 
     /**
@@ -124,6 +123,9 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
      */
     static final class Entry implements BoardChunk.Entry<OrderingBoardChunk> {
 
+        // 題名は Utf8Cell と同じ形式。
+        private static final BytesFormat FORMAT = BytesFormat.compile("lllabi");
+
         private final long date;
         private final long order;
         private final long name;
@@ -177,27 +179,29 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
 
         @Override
         public int byteSize() {
-            return BytesConversion.byteSize("llloi", this.date, this.order, this.name, new Utf8Cell(this.title), this.numOfComments);
+            return FORMAT.newSizer().putLong(this.date).putLong(this.order).putLong(this.name).putBytes(this.title.getBytes(Global.INTERNAL_CHARSET))
+                    .putInt(this.numOfComments).finish();
         }
 
         @Override
         public int toStream(final OutputStream output) throws IOException {
-            return BytesConversion.toStream(output, "llloi", this.date, this.order, this.name, new Utf8Cell(this.title), this.numOfComments);
+            return FORMAT.newEncoder(output).putLong(this.date).putLong(this.order).putLong(this.name).putBytes(this.title.getBytes(Global.INTERNAL_CHARSET))
+                    .putInt(this.numOfComments).finish();
         }
 
         static BytesConvertible.Parser<Entry> getParser() {
             return new BytesConvertible.Parser<Entry>() {
                 @Override
                 public int fromStream(final InputStream input, final int maxByteSize, final List<? super Entry> output) throws MyRuleException, IOException {
-                    final long[] date = new long[1];
-                    final long[] order = new long[1];
-                    final long[] thread = new long[1];
-                    final List<Utf8Cell> threadTitle = new ArrayList<>(1);
-                    final int[] numOfContents = new int[1];
-                    final int size = BytesConversion.fromStream(input, maxByteSize, "llloi", date, order, thread, threadTitle, Utf8Cell.getParser(),
-                            numOfContents);
+                    final BytesFormat.Decoder decoder = FORMAT.newDecoder(input, maxByteSize);
+                    final long date = decoder.nextLong();
+                    final long order = decoder.nextLong();
+                    final long thread = decoder.nextLong();
+                    final String threadTitle = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                    final int numOfContents = decoder.nextInt();
+                    final int size = decoder.finish();
                     try {
-                        output.add(new Entry(date[0], order[0], thread[0], threadTitle.get(0).get(), numOfContents[0]));
+                        output.add(new Entry(date, order, thread, threadTitle, numOfContents));
                     } catch (final IllegalArgumentException | ContentException e) {
                         throw new MyRuleException(e);
                     }
@@ -299,9 +303,9 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
     private static final int ENTRY_LIMIT = 2_000;
 
     private final Id id;
-    private final Map<Long, Entry> threadToEntry;
-    private final NavigableMap<UniqueValue, Entry> dateToEntry;
-    private final NavigableMap<UniqueValue, Entry> orderToEntry;
+    private final SharedTreeMap<Long, Entry> threadToEntry;
+    private final SharedTreeMap<UniqueValue, Entry> dateToEntry;
+    private final SharedTreeMap<UniqueValue, Entry> orderToEntry;
 
     private int entrySize;
 
@@ -309,9 +313,14 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
 
     private boolean notHashed;
     private HashValue hashValue;
-
-    private OrderingBoardChunk(final Id id, final Map<Long, Entry> threadToEntry, final NavigableMap<UniqueValue, Entry> dateToEntry,
-            final NavigableMap<UniqueValue, Entry> orderToEntry, final int entrySize, final long updateDate, final boolean notHashed, final HashValue hashValue) {
+    // 差分ごとのハッシュ値の和。INCREMENTAL 方式で初めて計算するまでは null。
+    private MountainHash dustHash;
+    // ハッシュ値の計算方式。
+    private MountainHash.Type hashType;
+
+    private OrderingBoardChunk(final Id id, final SharedTreeMap<Long, Entry> threadToEntry, final SharedTreeMap<UniqueValue, Entry> dateToEntry,
+            final SharedTreeMap<UniqueValue, Entry> orderToEntry, final int entrySize, final long updateDate, final boolean notHashed, final HashValue hashValue,
+            final MountainHash dustHash, final MountainHash.Type hashType) {
         if (id == null) {
             throw new IllegalArgumentException("Null id.");
         } else if (threadToEntry == null) {
@@ -329,10 +338,13 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
         this.updateDate = updateDate;
         this.notHashed = notHashed;
         this.hashValue = hashValue;
+        this.dustHash = dustHash;
+        this.hashType = hashType;
     }
 
     private OrderingBoardChunk(final Id id) {
-        this(id, new HashMap<Long, Entry>(), new TreeMap<UniqueValue, Entry>(), new TreeMap<UniqueValue, Entry>(), 0, System.currentTimeMillis(), true, null);
+        this(id, new SharedTreeMap<Long, Entry>(), new SharedTreeMap<UniqueValue, Entry>(), new SharedTreeMap<UniqueValue, Entry>(), 0,
+                System.currentTimeMillis(), true, null, null, MountainHash.Type.SERIAL);
     }
 
     OrderingBoardChunk(final String boardName) {
@@ -341,8 +353,8 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
 
     @Override
     public OrderingBoardChunk copy() {
-        return new OrderingBoardChunk(this.id, new HashMap<>(this.threadToEntry), new TreeMap<>(this.dateToEntry), new TreeMap<>(this.orderToEntry),
-                this.entrySize, this.updateDate, this.notHashed, this.hashValue);
+        return new OrderingBoardChunk(this.id, this.threadToEntry.copy(), this.dateToEntry.copy(), this.orderToEntry.copy(),
+                this.entrySize, this.updateDate, this.notHashed, this.hashValue, (this.dustHash == null ? null : this.dustHash.copy()), this.hashType);
     }
 
     @Override
@@ -380,7 +392,7 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
 
     @Override
     public List<Entry> getDiffsAfter(final long date) {
-        return new ArrayList<>(this.dateToEntry.tailMap(new UniqueValue(date, 0), false).values());
+        return this.dateToEntry.tailValues(new UniqueValue(date, 0), false);
     }
 
     @Override
@@ -433,6 +445,9 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
             this.orderToEntry.put(new UniqueValue(entry.order, entry.name), entry);
             this.entrySize += entry.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.add(entry);
+            }
             return true;
         } else if (old.date == entry.date && old.numOfComments == entry.numOfComments && old.order == entry.order) {
             return false;
@@ -445,6 +460,10 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
             this.orderToEntry.put(new UniqueValue(entry.order, entry.name), entry);
             this.entrySize += entry.byteSize() - old.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.remove(old);
+                this.dustHash.add(entry);
+            }
             return true;
         } else {
             return false;
@@ -460,6 +479,9 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
             this.orderToEntry.remove(new UniqueValue(entry.order, entry.name));
             this.entrySize -= entry.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.remove(entry);
+            }
         }
     }
 
@@ -467,11 +489,33 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
     public HashValue getHashValue() {
         if (this.notHashed) {
             this.notHashed = false;
-            this.hashValue = super.getHashValue();
+            if (this.hashType == MountainHash.Type.INCREMENTAL) {
+                if (this.dustHash == null) {
+                    this.dustHash = MountainHash.newInstance(this.threadToEntry.values());
+                }
+                this.hashValue = this.dustHash.toHashValue(BytesConversion.toBytes(this.id));
+            } else {
+                this.hashValue = super.getHashValue();
+            }
         }
         return this.hashValue;
     }
 
+    @Override
+    public MountainHash.Type getHashType() {
+        return this.hashType;
+    }
+
+    @Override
+    public void setHashType(final MountainHash.Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Null type.");
+        } else if (type != this.hashType) {
+            this.hashType = type;
+            this.notHashed = true;
+        }
+    }
+
     @Override
     public int byteSize() {
         return BytesConversion.byteSize("oi", this.id, this.dateToEntry.size()) + this.entrySize;
@@ -493,13 +537,15 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
             @Override
             public int fromStream(final InputStream input, final int maxByteSize, final List<? super OrderingBoardChunk> output) throws MyRuleException,
                     IOException {
+                final BytesConvertible.Parser<Entry> entryParser = Entry.getParser();
                 final List<Id> id = new ArrayList<>(1);
                 final int[] numOfEntries = new int[1];
                 int size = BytesConversion.fromStream(input, maxByteSize, "oi", id, Id.getParser(), numOfEntries);
                 final OrderingBoardChunk instance = new OrderingBoardChunk(id.get(0));
+                final List<Entry> entry = new ArrayList<>(1);
                 for (int i = 0; i < numOfEntries[0]; i++) {
-                    final List<Entry> entry = new ArrayList<>(1);
-                    size += Entry.getParser().fromStream(input, maxByteSize - size, entry);
+                    entry.clear();
+                    size += entryParser.fromStream(input, maxByteSize - size, entry);
                     instance.patch(entry.get(0));
                 }
                 output.add(instance);
@@ -512,7 +558,7 @@ public final class OrderingBoardChunk extends SkeletalChunk implements BoardChun
     public String toNetworkString() {
         final StringBuilder buff = new StringBuilder();
         int count = 0;
-        for (final Entry entry : this.orderToEntry.descendingMap().values()) {
+        for (final Entry entry : this.orderToEntry.descendingValues()) {
             if (count >= ContentConstants.BOARD_OUTPUT_LIMIT) {
                 break;
             }
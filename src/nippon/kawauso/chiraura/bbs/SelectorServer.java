@@ -0,0 +1,536 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.Global;
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.concurrent.BoundedExecutor;
+import nippon.kawauso.chiraura.lib.connection.Limiter;
+import nippon.kawauso.chiraura.lib.connection.PortFunctions;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.http.Http;
+import nippon.kawauso.chiraura.lib.process.Reporter;
+
+/**
+ * セレクタで全接続をまとめて捌くサーバ。
+ * 接続ごとに処理を割り当てる Server と違い、接続の待機中に処理を占有しない。
+ * @author chirauraNoSakusha
+ */
+final class SelectorServer extends Reporter<Void> {
+
+    private static final Logger LOG = Logger.getLogger(SelectorServer.class.getName());
+
+    /*
+     * 接続の読み書きは全てセレクタを回す処理が行う。
+     * 応答の作成は作業員に任せ、出来上がった応答はセレクタを回す処理に戻して送る。
+     * 1 つの接続では 1 度に 1 つのリクエストしか扱わず、応答を作っている間は受信もしない。
+     * 通信制限に掛かった接続は、眠る代わりに、制限が解ける頃に再開を予約する。
+     * 受信用の領域と、閉じた接続の通信制限の記録の解放は、セレクタを回す処理がまとめて受け持つ。
+     */
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int HEADER_SIZE_LIMIT = 8192;
+    private static final int CONTENT_SIZE_LIMIT = 1024 * 1024;
+
+    // 作業員 1 人あたりに待たせておけるリクエストの数。
+    private static final int WORK_QUEUE_FACTOR = 16;
+
+    // 放置された接続を探す間隔。
+    private static final long CHECK_INTERVAL = Duration.SECOND;
+
+    /**
+     * 接続の状態。
+     * セレクタを回す処理だけが触る。
+     */
+    private static final class Session {
+        private final SocketChannel channel;
+        private final InetSocketAddress destination;
+        private final HttpRequestReader reader;
+        private final Queue<ByteBuffer> outputs;
+        private SelectionKey key;
+        private boolean busy; // 応答の作成中か通信制限中。
+        private boolean closing; // 送り終わったら閉じる。
+        private long lastActive;
+
+        private Session(final SocketChannel channel, final InetSocketAddress destination) {
+            this.channel = channel;
+            this.destination = destination;
+            this.reader = new HttpRequestReader(HEADER_SIZE_LIMIT, CONTENT_SIZE_LIMIT);
+            this.outputs = new LinkedList<>();
+            this.key = null;
+            this.busy = false;
+            this.closing = false;
+            this.lastActive = System.currentTimeMillis();
+        }
+
+        @Override
+        public String toString() {
+            return (new StringBuilder(this.getClass().getSimpleName()))
+                    .append('[').append(this.destination)
+                    .append(']').toString();
+        }
+    }
+
+    // 参照。
+    private final int port;
+    private final long connectionTimeout;
+    private final ResponseMaker responseMaker;
+    private final long internalTimeout;
+
+    private final Limiter<InetSocketAddress> limiter;
+
+    // 保持。
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final BoundedExecutor workers;
+    private final ScheduledExecutorService scheduler;
+    private final Queue<Runnable> tasks; // セレクタを回す処理にやらせること。
+    private final ByteBuffer readBuffer; // セレクタを回す処理だけが使う。
+    private final Set<InetSocketAddress> closedDestinations; // 通信制限の記録の解放待ち。セレクタを回す処理だけが触る。
+
+    SelectorServer(final BlockingQueue<? super Reporter.Report> reportSink, final int port, final long connectionTimeout, final ResponseMaker responseMaker,
+            final long internalTimeout, final Limiter<InetSocketAddress> limiter, final int workerCount) throws IOException {
+        super(reportSink);
+
+        if (!PortFunctions.isValid(port)) {
+            throw new IllegalArgumentException("Invalid port ( " + port + " ).");
+        } else if (connectionTimeout < 0) {
+            throw new IllegalArgumentException("Negative connection timeout ( " + connectionTimeout + " ).");
+        } else if (responseMaker == null) {
+            throw new IllegalArgumentException("Null response maker.");
+        } else if (internalTimeout < 0) {
+            throw new IllegalArgumentException("Negative internal timeout ( " + internalTimeout + " ).");
+        } else if (limiter == null) {
+            throw new IllegalArgumentException("Null limiter.");
+        } else if (workerCount <= 0) {
+            throw new IllegalArgumentException("Not positive worker count ( " + workerCount + " ).");
+        }
+
+        this.port = port;
+        this.connectionTimeout = connectionTimeout;
+        this.responseMaker = responseMaker;
+        this.internalTimeout = internalTimeout;
+
+        this.limiter = limiter;
+
+        this.serverChannel = ServerSocketChannel.open();
+        this.selector = Selector.open();
+        this.workers = BoundedExecutor.newInstance("bbs-worker", workerCount, WORK_QUEUE_FACTOR * workerCount);
+        this.scheduler = new ScheduledThreadPoolExecutor(1);
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.closedDestinations = new HashSet<>();
+    }
+
+    /**
+     * 閉じると終了する。
+     * @return 待機に使うソケット
+     */
+    ServerSocket getServerSocket() {
+        return this.serverChannel.socket();
+    }
+
+    /**
+     * セレクタを回す処理に仕事を渡す。
+     * @param task 仕事
+     */
+    private void post(final Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    @Override
+    protected Void subCall() throws IOException, InterruptedException {
+        try {
+            if (Global.isDebug()) {
+                this.serverChannel.socket().setReuseAddress(true);
+            }
+
+            LOG.log(Level.FINER, "{0} 番ポートで待機を始めます。", Integer.toString(this.port));
+            this.serverChannel.bind(new InetSocketAddress(this.port));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+            long nextCheck = System.currentTimeMillis() + CHECK_INTERVAL;
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!this.serverChannel.isOpen()) {
+                    // 別プロセスが閉じて終了を教えてくれた。
+                    break;
+                }
+                this.selector.select(CHECK_INTERVAL);
+
+                for (Runnable task = this.tasks.poll(); task != null; task = this.tasks.poll()) {
+                    task.run();
+                }
+
+                for (final Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator(); iterator.hasNext();) {
+                    final SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    } else if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    final Session session = (Session) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(session);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(session);
+                        }
+                    } catch (final IOException | MyRuleException e) {
+                        LOG.log(Level.FINEST, "異常が発生しました", e);
+                        close(session);
+                    }
+                }
+
+                final long cur = System.currentTimeMillis();
+                if (nextCheck <= cur) {
+                    closeIdleSessions(cur);
+                    forgetClosedDestinations();
+                    nextCheck = cur + CHECK_INTERVAL;
+                }
+            }
+        } finally {
+            for (final SelectionKey key : new ArrayList<>(this.selector.keys())) {
+                if (key.attachment() instanceof Session) {
+                    close((Session) key.attachment());
+                }
+            }
+            this.serverChannel.close();
+            this.selector.close();
+            this.workers.shutdownNow();
+            this.scheduler.shutdownNow();
+        }
+
+        return null;
+    }
+
+    private void accept() throws IOException, InterruptedException {
+        final SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        final InetSocketAddress destination;
+        if (channel.getRemoteAddress() instanceof InetSocketAddress) {
+            destination = (InetSocketAddress) channel.getRemoteAddress();
+        } else {
+            destination = new InetSocketAddress(channel.socket().getInetAddress(), channel.socket().getPort());
+        }
+        final Session session = new Session(channel, destination);
+        try {
+            channel.configureBlocking(false);
+            session.key = channel.register(this.selector, SelectionKey.OP_READ, session);
+        } catch (final IOException e) {
+            close(session);
+            return;
+        }
+        LOG.log(Level.FINER, "{0} との通信を始めます。", session);
+
+        final long penalty = this.limiter.checkPenalty(session.destination);
+        if (penalty > 0) {
+            suspend(session, null, penalty);
+        }
+    }
+
+    private void read(final Session session) throws IOException, MyRuleException {
+        final ByteBuffer buff = this.readBuffer;
+        buff.clear();
+        final int size = session.channel.read(buff);
+        if (size < 0) {
+            if (session.reader.isEmpty()) {
+                // 正常な終了信号。
+                close(session);
+            } else {
+                throw new IOException("Connection closed in the middle of request.");
+            }
+            return;
+        }
+        buff.flip();
+        session.reader.feed(buff);
+        session.lastActive = System.currentTimeMillis();
+        next(session);
+    }
+
+    /**
+     * 溜まっている分からリクエストを切り出して、応答の作成に回す。
+     * @param session 接続
+     */
+    private void next(final Session session) throws MyRuleException, IOException {
+        if (session.busy || session.closing) {
+            return;
+        }
+        final HttpRequest request = session.reader.poll();
+        if (request == null) {
+            return;
+        }
+        LOG.log(Level.FINEST, "リクエストを受信: {0}", request);
+
+        // 応答を送るまでは受信しない。
+        session.busy = true;
+        session.key.interestOps(0);
+
+        final long penalty;
+        try {
+            // 回数制限だけだからサイズは 0 で報告。
+            penalty = this.limiter.addValueAndCheckPenalty(session.destination, 0);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (penalty > 0) {
+            suspend(session, request, penalty);
+        } else {
+            dispatch(session, request);
+        }
+    }
+
+    /**
+     * 通信制限が解ける頃に再開するよう予約する。
+     * @param session 接続
+     * @param request 制限が解けたら処理するリクエスト
+     * @param penalty 制限時間 (ミリ秒)
+     */
+    private void suspend(final Session session, final HttpRequest request, final long penalty) {
+        LOG.log(Level.WARNING, "{0}: {1} ミリ秒さぼります。", new Object[] { session, penalty });
+        session.busy = true;
+        session.key.interestOps(0);
+        try {
+            this.scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            resume(session, request);
+                        }
+                    });
+                }
+            }, penalty, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // 終了処理中。
+            close(session);
+        }
+    }
+
+    private void resume(final Session session, final HttpRequest request) {
+        if (!session.channel.isOpen()) {
+            return;
+        }
+        final long penalty;
+        try {
+            penalty = this.limiter.checkPenalty(session.destination);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (penalty > 0) {
+            suspend(session, request, penalty);
+        } else if (request != null) {
+            dispatch(session, request);
+        } else {
+            session.busy = false;
+            session.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * 応答の作成を作業員に任せる。
+     * @param session 接続
+     * @param httpRequest リクエスト
+     */
+    private void dispatch(final Session session, final HttpRequest httpRequest) {
+        final String connectField = httpRequest.getFields().get(Http.Field.CONNECTION);
+        // 閉じ宣言されてたら即閉じ。
+        final boolean close = connectField != null && connectField.toLowerCase().equals("close") || httpRequest.getVersion().equals("HTTP/1.0");
+        try {
+            this.workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Response response = null;
+                    boolean closeAfter = close;
+                    try {
+                        final Request request = Requests.fromHttpRequest(httpRequest, session.channel.socket().getInetAddress());
+                        response = SelectorServer.this.responseMaker.make(request, SelectorServer.this.internalTimeout);
+                    } catch (final InterruptedException e) {
+                        // 正常な終了信号。
+                        Thread.currentThread().interrupt();
+                    } catch (final RejectedExecutionException e) {
+                        // 応答の作成に使う下請けが詰まっている。
+                        LOG.log(Level.WARNING, "下請けが詰まっているので {0} を断ります。", session);
+                        response = new ServiceUnavailableResponse("混んでいます。");
+                        closeAfter = true;
+                    } catch (final Exception e) {
+                        LOG.log(Level.WARNING, "異常が発生しました", e);
+                        response = new InternalServerErrorResponse("ごめんなさい。");
+                    } finally {
+                        if (response != null) {
+                            respond(session, response, closeAfter);
+                        } else {
+                            // 応答中のまま放置しないように閉じる。
+                            discard(session);
+                        }
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            if (this.workers.isShutdown()) {
+                return;
+            }
+            LOG.log(Level.WARNING, "応答の作成が詰まっているので {0} を断ります。", session);
+            respond(session, new ServiceUnavailableResponse("混んでいます。"), true);
+        }
+    }
+
+    /**
+     * 応答をセレクタを回す処理に渡して送らせる。
+     * @param session 接続
+     * @param response 応答
+     * @param close 送った後に閉じるかどうか
+     */
+    private void respond(final Session session, final Response response, final boolean close) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            response.toStream(output);
+        } catch (final IOException e) {
+            // ByteArrayOutputStream なので来ない。
+            throw new RuntimeException(e);
+        }
+        final ByteBuffer buff = ByteBuffer.wrap(output.toByteArray());
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (!session.channel.isOpen()) {
+                    return;
+                }
+                LOG.log(Level.FINEST, "応答を送信: {0}", response);
+                session.outputs.add(buff);
+                session.busy = false;
+                session.closing |= close;
+                session.lastActive = System.currentTimeMillis();
+                try {
+                    write(session);
+                } catch (final IOException | MyRuleException e) {
+                    LOG.log(Level.FINEST, "異常が発生しました", e);
+                    close(session);
+                }
+            }
+        });
+    }
+
+    /**
+     * 応答できなかった接続をセレクタを回す処理に閉じさせる。
+     * @param session 接続
+     */
+    private void discard(final Session session) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                close(session);
+            }
+        });
+    }
+
+    private void write(final Session session) throws IOException, MyRuleException {
+        while (!session.outputs.isEmpty()) {
+            final ByteBuffer buff = session.outputs.peek();
+            session.channel.write(buff);
+            if (buff.hasRemaining()) {
+                // 送信バッファが空くのを待つ。
+                session.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            session.outputs.poll();
+        }
+
+        if (session.closing) {
+            close(session);
+        } else if (!session.busy) {
+            session.key.interestOps(SelectionKey.OP_READ);
+            // 既に届いている次のリクエスト。
+            next(session);
+        }
+    }
+
+    private void closeIdleSessions(final long cur) {
+        for (final SelectionKey key : new ArrayList<>(this.selector.keys())) {
+            if (!(key.attachment() instanceof Session)) {
+                continue;
+            }
+            final Session session = (Session) key.attachment();
+            if (!session.busy && session.lastActive + this.connectionTimeout <= cur) {
+                LOG.log(Level.FINER, "{0} との通信が途絶えたので閉じます。", session);
+                close(session);
+            }
+        }
+    }
+
+    private void close(final Session session) {
+        if (session.key != null) {
+            session.key.cancel();
+        }
+        try {
+            session.channel.close();
+        } catch (final IOException ignored) {
+        }
+        forget(session.destination);
+        LOG.log(Level.FINE, "{0} との通信を終えました。", session);
+    }
+
+    /**
+     * 通信制限の記録の解放を予約する。
+     * Limiter.remove は記録が消えるまで眠るので使わず、
+     * 記録が残っている間は定期的に試す。
+     * @param destination 通信相手
+     */
+    private void forget(final InetSocketAddress destination) {
+        this.closedDestinations.add(destination);
+    }
+
+    /**
+     * 閉じた接続の通信制限の記録のうち、空になったものを解放する。
+     */
+    private void forgetClosedDestinations() {
+        for (final Iterator<InetSocketAddress> iterator = this.closedDestinations.iterator(); iterator.hasNext();) {
+            final InetSocketAddress destination = iterator.next();
+            final int count;
+            try {
+                // 空なら解放される。
+                count = this.limiter.checkCount(destination);
+            } catch (final InterruptedException ignored) {
+                // 正常な終了信号。
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (count <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+}
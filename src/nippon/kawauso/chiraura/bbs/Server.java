@@ -6,6 +6,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -82,6 +83,17 @@ final class Server extends Reporter<Void> {
             final Communicator communicator = new Communicator(connection, this.connectionPool, this.responseMaker, this.internalTimeout, this.limiter);
             this.executor.submit(communicator);
             LOG.log(Level.FINER, "{0} との通信を始めます。", socket);
+        } catch (final RejectedExecutionException e) {
+            if (!this.executor.isShutdown()) {
+                LOG.log(Level.WARNING, "接続を捌く手が足りないので {0} を断ります。", socket);
+                try {
+                    (new ServiceUnavailableResponse("混んでいます。")).toStream(socket.getOutputStream());
+                } catch (final IOException ignored) {
+                    // どうせ閉じる。
+                }
+            }
+            connection.close();
+            this.connectionPool.remove(connection);
         } catch (final IOException | RuntimeException e) {
             connection.close();
             this.connectionPool.remove(connection);
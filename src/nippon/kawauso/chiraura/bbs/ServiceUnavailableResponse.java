@@ -0,0 +1,27 @@
+package nippon.kawauso.chiraura.bbs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import nippon.kawauso.chiraura.lib.http.Http;
+
+/**
+ * 混んでて応えられない。
+ * @author chirauraNoSakusha
+ */
+final class ServiceUnavailableResponse extends CommentResponse {
+
+    ServiceUnavailableResponse(final String comment) {
+        super(Http.Status.Service_Unavailable, comment);
+        if (comment == null) {
+            throw new IllegalArgumentException("Null comment.");
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        (new ServiceUnavailableResponse("混んでいます。")).toStream(output);
+        System.out.println(new String(output.toByteArray(), Constants.CONTENT_CHARSET));
+    }
+
+}
@@ -4,20 +4,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.base.HashValue;
 import nippon.kawauso.chiraura.lib.cell.Utf8Cell;
+import nippon.kawauso.chiraura.lib.container.SharedTreeMap;
 import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesFormat;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 import nippon.kawauso.chiraura.lib.http.Http;
 import nippon.kawauso.chiraura.lib.logging.LoggingFunctions;
@@ -28,7 +27,7 @@ import nippon.kawauso.chiraura.storage.SkeletalChunk;
  * 板 (スレ一覧)。
  * @author chirauraNoSakusha
  */
-public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk {
+public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk, MountainHash.Selectable {
     // TODO public なのは FileStorageConverter のための一時的処置。
 
     /**
@@ -128,6 +127,9 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
      */
     static final class Entry implements BoardChunk.Entry<SimpleBoardChunk> {
 
+        // 題名は Utf8Cell と同じ形式。
+        private static final BytesFormat FORMAT = BytesFormat.compile("llabi");
+
         private final long date;
         private final long name;
         private final String title;
@@ -179,25 +181,28 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
 
         @Override
         public int byteSize() {
-            return BytesConversion.byteSize("lloi", this.date, this.name, new Utf8Cell(this.title), this.numOfComments);
+            return FORMAT.newSizer().putLong(this.date).putLong(this.name).putBytes(this.title.getBytes(Global.INTERNAL_CHARSET))
+                    .putInt(this.numOfComments).finish();
         }
 
         @Override
         public int toStream(final OutputStream output) throws IOException {
-            return BytesConversion.toStream(output, "lloi", this.date, this.name, new Utf8Cell(this.title), this.numOfComments);
+            return FORMAT.newEncoder(output).putLong(this.date).putLong(this.name).putBytes(this.title.getBytes(Global.INTERNAL_CHARSET))
+                    .putInt(this.numOfComments).finish();
         }
 
         static BytesConvertible.Parser<Entry> getParser() {
             return new BytesConvertible.Parser<Entry>() {
                 @Override
                 public int fromStream(final InputStream input, final int maxByteSize, final List<? super Entry> output) throws MyRuleException, IOException {
-                    final long[] date = new long[1];
-                    final long[] thread = new long[1];
-                    final List<Utf8Cell> threadTitle = new ArrayList<>(1);
-                    final int[] numOfContents = new int[1];
-                    final int size = BytesConversion.fromStream(input, maxByteSize, "lloi", date, thread, threadTitle, Utf8Cell.getParser(), numOfContents);
+                    final BytesFormat.Decoder decoder = FORMAT.newDecoder(input, maxByteSize);
+                    final long date = decoder.nextLong();
+                    final long thread = decoder.nextLong();
+                    final String threadTitle = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                    final int numOfContents = decoder.nextInt();
+                    final int size = decoder.finish();
                     try {
-                        output.add(new Entry(date[0], thread[0], threadTitle.get(0).get(), numOfContents[0]));
+                        output.add(new Entry(date, thread, threadTitle, numOfContents));
                     } catch (final IllegalArgumentException | ContentException e) {
                         throw new MyRuleException(e);
                     }
@@ -297,8 +302,8 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
     private static final int ENTRY_LIMIT = 2_000;
 
     private final Id id;
-    private final Map<Long, Entry> threadToEntry;
-    private final NavigableMap<UniqueDate, Entry> dateToEntry;
+    private final SharedTreeMap<Long, Entry> threadToEntry;
+    private final SharedTreeMap<UniqueDate, Entry> dateToEntry;
 
     private int entrySize;
 
@@ -306,9 +311,14 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
 
     private boolean notHashed;
     private HashValue hashValue;
-
-    private SimpleBoardChunk(final Id id, final Map<Long, Entry> threadToEntry, final NavigableMap<UniqueDate, Entry> dateToEntry, final int entrySize,
-            final long updateDate, final boolean notHashed, final HashValue hashValue) {
+    // 差分ごとのハッシュ値の和。INCREMENTAL 方式で初めて計算するまでは null。
+    private MountainHash dustHash;
+    // ハッシュ値の計算方式。
+    private MountainHash.Type hashType;
+
+    private SimpleBoardChunk(final Id id, final SharedTreeMap<Long, Entry> threadToEntry, final SharedTreeMap<UniqueDate, Entry> dateToEntry, final int entrySize,
+            final long updateDate, final boolean notHashed, final HashValue hashValue, final MountainHash dustHash,
+            final MountainHash.Type hashType) {
         if (id == null) {
             throw new IllegalArgumentException("Null id.");
         } else if (threadToEntry == null) {
@@ -323,10 +333,13 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
         this.updateDate = updateDate;
         this.notHashed = notHashed;
         this.hashValue = hashValue;
+        this.dustHash = dustHash;
+        this.hashType = hashType;
     }
 
     private SimpleBoardChunk(final Id id) {
-        this(id, new HashMap<Long, Entry>(), new TreeMap<UniqueDate, Entry>(), 0, System.currentTimeMillis(), true, null);
+        this(id, new SharedTreeMap<Long, Entry>(), new SharedTreeMap<UniqueDate, Entry>(), 0, System.currentTimeMillis(), true, null, null,
+                MountainHash.Type.SERIAL);
     }
 
     SimpleBoardChunk(final String boardName) {
@@ -335,9 +348,8 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
 
     @Override
     public SimpleBoardChunk copy() {
-        return new SimpleBoardChunk(this.id, new HashMap<>(this.threadToEntry), new TreeMap<>(this.dateToEntry), this.entrySize, this.updateDate,
-                this.notHashed,
-                this.hashValue);
+        return new SimpleBoardChunk(this.id, this.threadToEntry.copy(), this.dateToEntry.copy(), this.entrySize, this.updateDate,
+                this.notHashed, this.hashValue, (this.dustHash == null ? null : this.dustHash.copy()), this.hashType);
     }
 
     @Override
@@ -375,7 +387,7 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
 
     @Override
     public List<Entry> getDiffsAfter(final long date) {
-        return new ArrayList<>(this.dateToEntry.tailMap(new UniqueDate(date, 0), false).values());
+        return this.dateToEntry.tailValues(new UniqueDate(date, 0), false);
     }
 
     @Override
@@ -419,6 +431,9 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
             this.dateToEntry.put(new UniqueDate(entry.date, entry.name), entry);
             this.entrySize += entry.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.add(entry);
+            }
             return true;
         } else if (old.date < entry.date || (old.date == entry.date && old.numOfComments < entry.numOfComments)) {
             // 更新。
@@ -427,6 +442,10 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
             this.dateToEntry.put(new UniqueDate(entry.date, entry.name), entry);
             this.entrySize += entry.byteSize() - old.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.remove(old);
+                this.dustHash.add(entry);
+            }
             return true;
         } else {
             return false;
@@ -440,6 +459,9 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
             this.dateToEntry.remove(new UniqueDate(entry.date, entry.name));
             this.entrySize -= entry.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.remove(entry);
+            }
         }
     }
 
@@ -447,11 +469,33 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
     public HashValue getHashValue() {
         if (this.notHashed) {
             this.notHashed = false;
-            this.hashValue = super.getHashValue();
+            if (this.hashType == MountainHash.Type.INCREMENTAL) {
+                if (this.dustHash == null) {
+                    this.dustHash = MountainHash.newInstance(this.threadToEntry.values());
+                }
+                this.hashValue = this.dustHash.toHashValue(BytesConversion.toBytes(this.id));
+            } else {
+                this.hashValue = super.getHashValue();
+            }
         }
         return this.hashValue;
     }
 
+    @Override
+    public MountainHash.Type getHashType() {
+        return this.hashType;
+    }
+
+    @Override
+    public void setHashType(final MountainHash.Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Null type.");
+        } else if (type != this.hashType) {
+            this.hashType = type;
+            this.notHashed = true;
+        }
+    }
+
     @Override
     public int byteSize() {
         return BytesConversion.byteSize("oi", this.id, this.dateToEntry.size()) + this.entrySize;
@@ -473,13 +517,15 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
             @Override
             public int fromStream(final InputStream input, final int maxByteSize, final List<? super SimpleBoardChunk> output) throws MyRuleException,
                     IOException {
+                final BytesConvertible.Parser<Entry> entryParser = Entry.getParser();
                 final List<Id> id = new ArrayList<>(1);
                 final int[] numOfEntries = new int[1];
                 int size = BytesConversion.fromStream(input, maxByteSize, "oi", id, Id.getParser(), numOfEntries);
                 final SimpleBoardChunk instance = new SimpleBoardChunk(id.get(0));
+                final List<Entry> entry = new ArrayList<>(1);
                 for (int i = 0; i < numOfEntries[0]; i++) {
-                    final List<Entry> entry = new ArrayList<>(1);
-                    size += Entry.getParser().fromStream(input, maxByteSize - size, entry);
+                    entry.clear();
+                    size += entryParser.fromStream(input, maxByteSize - size, entry);
                     instance.patch(entry.get(0));
                 }
                 output.add(instance);
@@ -492,7 +538,7 @@ public final class SimpleBoardChunk extends SkeletalChunk implements BoardChunk
     public String toNetworkString() {
         final StringBuilder buff = new StringBuilder();
         int count = 0;
-        for (final Entry entry : this.dateToEntry.descendingMap().values()) {
+        for (final Entry entry : this.dateToEntry.descendingValues()) {
             if (count >= ContentConstants.BOARD_OUTPUT_LIMIT) {
                 break;
             }
@@ -3,6 +3,7 @@ package nippon.kawauso.chiraura.bbs;
 import java.util.ArrayList;
 import java.util.List;
 
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
@@ -94,4 +95,44 @@ public final class SimpleBoardChunkTest extends BytesConvertibleTest<SimpleBoard
         }
     }
 
+    /**
+     * スレの更新や落ちたスレがあっても、差分ごとに計算したハッシュ値が始めから計算したハッシュ値と一致するかどうか。
+     */
+    @Test
+    public void testIncrementalHash() {
+        final String board = "test";
+        final SimpleBoardChunk instance = new SimpleBoardChunk(board);
+        instance.setHashType(MountainHash.Type.INCREMENTAL);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(instance.patch(new SimpleBoardChunk.Entry(this.start + i, this.start / Duration.SECOND + i, Integer.toString(i), 1)));
+        }
+        instance.getHashValue();
+
+        // 更新。
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(instance.patch(new SimpleBoardChunk.Entry(this.start + 10 + i, this.start / Duration.SECOND + i, Integer.toString(i), 2)));
+        }
+        final SimpleBoardChunk expected = new SimpleBoardChunk(board);
+        expected.setHashType(MountainHash.Type.INCREMENTAL);
+        for (final SimpleBoardChunk.Entry entry : instance.getEntries()) {
+            expected.patch(entry);
+        }
+        Assert.assertEquals(expected.getHashValue(), instance.getHashValue());
+
+        // 落ちる。
+        for (int i = 10;; i++) {
+            final int beforeSize = instance.getEntries().size();
+            instance.patch(new SimpleBoardChunk.Entry(this.start + 10 + i, this.start / Duration.SECOND + i, Integer.toString(i), 1));
+            if (instance.getEntries().size() <= beforeSize) {
+                break;
+            }
+        }
+        final SimpleBoardChunk expected2 = new SimpleBoardChunk(board);
+        expected2.setHashType(MountainHash.Type.INCREMENTAL);
+        for (final SimpleBoardChunk.Entry entry : instance.getEntries()) {
+            expected2.patch(entry);
+        }
+        Assert.assertEquals(expected2.getHashValue(), instance.getHashValue());
+    }
+
 }
@@ -8,17 +8,18 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.NavigableSet;
-import java.util.TreeSet;
 
 import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.base.HashValue;
 import nippon.kawauso.chiraura.lib.cell.Utf8Cell;
+import nippon.kawauso.chiraura.lib.container.SharedTreeSet;
 import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesFormat;
 import nippon.kawauso.chiraura.lib.converter.NumberBytesConversion;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 import nippon.kawauso.chiraura.lib.http.Http;
@@ -30,7 +31,7 @@ import nippon.kawauso.chiraura.storage.SkeletalChunk;
  * スレ。
  * @author chirauraNoSakusha
  */
-public final class ThreadChunk extends SkeletalChunk implements Mountain, Content {
+public final class ThreadChunk extends SkeletalChunk implements MountainHash.Selectable, Content {
     // TODO public なのは FileStorageConverter のための一時的処置。
 
     /**
@@ -39,6 +40,8 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
      */
     public static final class Id implements Chunk.Id<ThreadChunk> {
         // TODO public なのは FileStorageConverter のための一時的処置。
+        private static final BytesFormat FORMAT = BytesFormat.compile("abl"); // 板名は Utf8Cell と同じ形式。
+
         private final String board;
         private final long thread;
         private final Address address;
@@ -67,12 +70,12 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
 
         @Override
         public int byteSize() {
-            return BytesConversion.byteSize("ol", new Utf8Cell(this.board), this.thread);
+            return FORMAT.newSizer().putBytes(this.board.getBytes(Global.INTERNAL_CHARSET)).putLong(this.thread).finish();
         }
 
         @Override
         public int toStream(final OutputStream output) throws IOException {
-            return BytesConversion.toStream(output, "ol", new Utf8Cell(this.board), this.thread);
+            return FORMAT.newEncoder(output).putBytes(this.board.getBytes(Global.INTERNAL_CHARSET)).putLong(this.thread).finish();
         }
 
         @SuppressWarnings("javadoc")
@@ -81,11 +84,12 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
             return new BytesConvertible.Parser<Id>() {
                 @Override
                 public int fromStream(final InputStream input, final int maxByteSize, final List<? super Id> output) throws MyRuleException, IOException {
-                    final List<Utf8Cell> board = new ArrayList<>();
-                    final long[] thread = new long[1];
-                    final int size = BytesConversion.fromStream(input, maxByteSize, "ol", board, Utf8Cell.getParser(), thread);
+                    final BytesFormat.Decoder decoder = FORMAT.newDecoder(input, maxByteSize);
+                    final String board = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                    final long thread = decoder.nextLong();
+                    final int size = decoder.finish();
                     try {
-                        output.add(new Id(board.get(0).get(), thread[0]));
+                        output.add(new Id(board, thread));
                     } catch (final IllegalArgumentException | ContentException e) {
                         throw new MyRuleException(e);
                     }
@@ -129,6 +133,9 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
      */
     static final class Entry implements Mountain.Dust<ThreadChunk>, Comparable<Entry> {
 
+        // 名前、メール、日時、ID、本文。文字列は Utf8Cell と同じ形式。
+        private static final BytesFormat FORMAT = BytesFormat.compile("ababllab");
+
         private static final int BYTE_SIZE_MAX;
         static {
             int size = 0;
@@ -203,28 +210,29 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
 
         @Override
         public int byteSize() {
-            return BytesConversion.byteSize("oollo", new Utf8Cell(this.author), new Utf8Cell(this.mail), this.date, this.id, new Utf8Cell(this.message));
+            return FORMAT.newSizer().putBytes(this.author.getBytes(Global.INTERNAL_CHARSET)).putBytes(this.mail.getBytes(Global.INTERNAL_CHARSET))
+                    .putLong(this.date).putLong(this.id).putBytes(this.message.getBytes(Global.INTERNAL_CHARSET)).finish();
         }
 
         @Override
         public int toStream(final OutputStream output) throws IOException {
-            return BytesConversion
-                    .toStream(output, "oollo", new Utf8Cell(this.author), new Utf8Cell(this.mail), this.date, this.id, new Utf8Cell(this.message));
+            return FORMAT.newEncoder(output).putBytes(this.author.getBytes(Global.INTERNAL_CHARSET)).putBytes(this.mail.getBytes(Global.INTERNAL_CHARSET))
+                    .putLong(this.date).putLong(this.id).putBytes(this.message.getBytes(Global.INTERNAL_CHARSET)).finish();
         }
 
         static BytesConvertible.Parser<Entry> getParser() {
             return new BytesConvertible.Parser<Entry>() {
                 @Override
                 public int fromStream(final InputStream input, final int maxByteSize, final List<? super Entry> output) throws MyRuleException, IOException {
-                    final List<Utf8Cell> author = new ArrayList<>(1);
-                    final List<Utf8Cell> mail = new ArrayList<>(1);
-                    final long[] date = new long[1];
-                    final long[] id = new long[1];
-                    final List<Utf8Cell> message = new ArrayList<>(1);
-                    final int size = BytesConversion.fromStream(input, maxByteSize, "oollo", author, Utf8Cell.getParser(), mail, Utf8Cell.getParser(), date,
-                            id, message, Utf8Cell.getParser());
+                    final BytesFormat.Decoder decoder = FORMAT.newDecoder(input, maxByteSize);
+                    final String author = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                    final String mail = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                    final long date = decoder.nextLong();
+                    final long id = decoder.nextLong();
+                    final String message = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                    final int size = decoder.finish();
                     try {
-                        output.add(Entry.newInstance(author.get(0).get(), mail.get(0).get(), date[0], id[0], message.get(0).get()));
+                        output.add(Entry.newInstance(author, mail, date, id, message));
                     } catch (final IllegalArgumentException | ContentException e) {
                         throw new MyRuleException(e);
                     }
@@ -298,10 +306,13 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
 
     static final int ENTRY_LIMIT = 1_000;
 
+    // 識別子、題名、最初の書き込み、残りの書き込み数。題名は Utf8Cell と同じ形式。
+    private static final BytesFormat FORMAT = BytesFormat.compile("oaboi");
+
     private final Id id;
     private final String title;
     private final Entry firstEntry;
-    private final NavigableSet<Entry> entries;
+    private final SharedTreeSet<Entry> entries;
 
     private int entrySize;
 
@@ -309,9 +320,13 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
 
     private boolean notHashed;
     private HashValue hashValue;
+    // 差分ごとのハッシュ値の和。INCREMENTAL 方式で初めて計算するまでは null。
+    private MountainHash dustHash;
+    // ハッシュ値の計算方式。
+    private MountainHash.Type hashType;
 
-    private ThreadChunk(final Id id, final String title, final Entry firstEntry, final NavigableSet<Entry> entries, final int entrySize, final long updateDate,
-            final boolean notHashed, final HashValue hashValue) {
+    private ThreadChunk(final Id id, final String title, final Entry firstEntry, final SharedTreeSet<Entry> entries, final int entrySize, final long updateDate,
+            final boolean notHashed, final HashValue hashValue, final MountainHash dustHash, final MountainHash.Type hashType) {
         if (id == null) {
             throw new IllegalArgumentException("Null id.");
         } else if (title == null) {
@@ -335,10 +350,12 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
         this.updateDate = updateDate;
         this.notHashed = notHashed;
         this.hashValue = hashValue;
+        this.dustHash = dustHash;
+        this.hashType = hashType;
     }
 
     private ThreadChunk(final Id id, final String title, final Entry firstEntry) {
-        this(id, title, firstEntry, new TreeSet<Entry>(), 0, System.currentTimeMillis(), true, null);
+        this(id, title, firstEntry, new SharedTreeSet<Entry>(), 0, System.currentTimeMillis(), true, null, null, MountainHash.Type.SERIAL);
     }
 
     ThreadChunk(final String board, final long thread, final String title, final String author, final String mail, final long date, final long id,
@@ -348,8 +365,8 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
 
     @Override
     public ThreadChunk copy() {
-        return new ThreadChunk(this.id, this.title, this.firstEntry, new TreeSet<>(this.entries), this.entrySize, this.updateDate, this.notHashed,
-                this.hashValue);
+        return new ThreadChunk(this.id, this.title, this.firstEntry, this.entries.copy(), this.entrySize, this.updateDate, this.notHashed,
+                this.hashValue, (this.dustHash == null ? null : this.dustHash.copy()), this.hashType);
     }
 
     boolean isFull() {
@@ -413,7 +430,7 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
 
     @Override
     public List<Entry> getDiffsAfter(final long date) {
-        return new ArrayList<>(this.entries.tailSet(Entry.newDummyForComparison(date), false));
+        return this.entries.tailList(Entry.newDummyForComparison(date), false);
     }
 
     List<Entry> getEntries() {
@@ -442,6 +459,9 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
             this.entrySize += entry.byteSize();
             this.updateDate = System.currentTimeMillis();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.add(entry);
+            }
             return true;
         } else {
             return false;
@@ -452,19 +472,43 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
     public HashValue getHashValue() {
         if (this.notHashed) {
             this.notHashed = false;
-            this.hashValue = super.getHashValue();
+            if (this.hashType == MountainHash.Type.INCREMENTAL) {
+                if (this.dustHash == null) {
+                    this.dustHash = MountainHash.newInstance(this.entries);
+                }
+                this.hashValue = this.dustHash.toHashValue(BytesConversion.toBytes("ooo", this.id, new Utf8Cell(this.title), this.firstEntry));
+            } else {
+                this.hashValue = super.getHashValue();
+            }
         }
         return this.hashValue;
     }
 
+    @Override
+    public MountainHash.Type getHashType() {
+        return this.hashType;
+    }
+
+    @Override
+    public void setHashType(final MountainHash.Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Null type.");
+        } else if (type != this.hashType) {
+            this.hashType = type;
+            this.notHashed = true;
+        }
+    }
+
     @Override
     public int byteSize() {
-        return BytesConversion.byteSize("oooi", this.id, new Utf8Cell(this.title), this.firstEntry, this.entries.size()) + this.entrySize;
+        return FORMAT.newSizer().putObject(this.id).putBytes(this.title.getBytes(Global.INTERNAL_CHARSET)).putObject(this.firstEntry)
+                .putInt(this.entries.size()).finish() + this.entrySize;
     }
 
     @Override
     public int toStream(final OutputStream output) throws IOException {
-        int size = BytesConversion.toStream(output, "oooi", this.id, new Utf8Cell(this.title), this.firstEntry, this.entries.size());
+        int size = FORMAT.newEncoder(output).putObject(this.id).putBytes(this.title.getBytes(Global.INTERNAL_CHARSET)).putObject(this.firstEntry)
+                .putInt(this.entries.size()).finish();
         for (final Entry entry : this.entries) {
             size += entry.toStream(output);
         }
@@ -478,16 +522,18 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
             @Override
             public int fromStream(final InputStream input, final int maxByteSize, final List<? super ThreadChunk> output) throws MyRuleException,
                     IOException {
-                final List<Id> id = new ArrayList<>(1);
-                final List<Utf8Cell> title = new ArrayList<>(1);
-                final List<Entry> firstEntry = new ArrayList<>(1);
-                final int[] numOfEntries = new int[1];
-                int size = BytesConversion.fromStream(input, maxByteSize, "oooi", id, Id.getParser(), title, Utf8Cell.getParser(), firstEntry,
-                        Entry.getParser(), numOfEntries);
-                final ThreadChunk instance = new ThreadChunk(id.get(0), title.get(0).get(), firstEntry.get(0));
-                for (int i = 0; i < numOfEntries[0]; i++) {
-                    final List<Entry> entry = new ArrayList<>(1);
-                    size += Entry.getParser().fromStream(input, maxByteSize - size, entry);
+                final BytesConvertible.Parser<Entry> entryParser = Entry.getParser();
+                final BytesFormat.Decoder decoder = FORMAT.newDecoder(input, maxByteSize);
+                final Id id = decoder.nextObject(Id.getParser());
+                final String title = new String(decoder.nextBytes(), Global.INTERNAL_CHARSET);
+                final Entry firstEntry = decoder.nextObject(entryParser);
+                final int numOfEntries = decoder.nextInt();
+                int size = decoder.finish();
+                final ThreadChunk instance = new ThreadChunk(id, title, firstEntry);
+                final List<Entry> entry = new ArrayList<>(1);
+                for (int i = 0; i < numOfEntries; i++) {
+                    entry.clear();
+                    size += entryParser.fromStream(input, maxByteSize - size, entry);
                     instance.patch(entry.get(0));
                 }
                 output.add(instance);
@@ -496,7 +542,7 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
         };
     }
 
-    private String wrapMessage(final String msg, final String after) {
+    private static String wrapMessage(final String msg, final String after) {
         if (after == null) {
             return msg;
         } else {
@@ -504,36 +550,87 @@ public final class ThreadChunk extends SkeletalChunk implements Mountain, Conten
         }
     }
 
-    private static final String TERMINAL = "1001<><>おわり<> もう綴れません。 <>\n";
+    static final String TERMINAL = "1001<><>おわり<> もう綴れません。 <>\n";
 
-    String toNetworkString(final String host, final int port) {
-        final String after;
+    /**
+     * 本文中のちらしの裏表記を置き換える文字列を作る。
+     * @param host 2chブラウザから見たホスト名
+     * @param port 2chブラウザ用のポート番号
+     * @return 置き換える文字列。
+     *         置き換えない場合は null
+     */
+    static String toNotation(final String host, final int port) {
         if (host == null || host.isEmpty()) {
-            after = null;
-        } else {
-            // final StringBuilder buff = new StringBuilder("(").append("chiraura").append(") ttp://").append(host); // 旧式。
-            final StringBuilder buff = new StringBuilder("(").append(ContentConstants.CHIRAURA_NOTATION_LABEL).append(")ttp://").append(host);
-            if (host.indexOf(':') < 0 && port != Http.DEFAULT_PORT) {
-                buff.append(':').append(port);
-            }
-            after = buff.append('/').toString();
+            return null;
         }
+        // final StringBuilder buff = new StringBuilder("(").append("chiraura").append(") ttp://").append(host); // 旧式。
+        final StringBuilder buff = new StringBuilder("(").append(ContentConstants.CHIRAURA_NOTATION_LABEL).append(")ttp://").append(host);
+        if (host.indexOf(':') < 0 && port != Http.DEFAULT_PORT) {
+            buff.append(':').append(port);
+        }
+        return buff.append('/').toString();
+    }
 
-        final DateFormat formatter = new SimpleDateFormat("yyyy/MM/dd(E) HH:mm:ss");
-        final StringBuilder buff = (new StringBuilder(this.firstEntry.author))
-                .append("<>").append(this.firstEntry.mail)
-                .append("<>").append(formatter.format(new Date(this.firstEntry.date)))
-                .append(" ID:").append(PostFunctions.idToString(this.firstEntry.id))
-                .append("<> ").append(wrapMessage(this.firstEntry.message, after))
-                .append(" <>").append(this.title)
-                .append('\n');
+    static DateFormat newDateFormat() {
+        return new SimpleDateFormat("yyyy/MM/dd(E) HH:mm:ss");
+    }
+
+    private static StringBuilder appendLine(final StringBuilder buff, final Entry entry, final String after, final DateFormat formatter) {
+        return buff.append(entry.author)
+                .append("<>").append(entry.mail)
+                .append("<>").append(formatter.format(new Date(entry.date)))
+                .append(" ID:").append(PostFunctions.idToString(entry.id))
+                .append("<> ").append(wrapMessage(entry.message, after))
+                .append(" <>");
+    }
+
+    /**
+     * dat の 1 行目を作る。
+     * @param after ちらしの裏表記を置き換える文字列
+     * @param formatter 日時の書式
+     * @return dat の 1 行目
+     */
+    String toNetworkHead(final String after, final DateFormat formatter) {
+        return appendLine(new StringBuilder(), this.firstEntry, after, formatter).append(this.title).append('\n').toString();
+    }
+
+    /**
+     * dat の 2 行目以降の 1 行を作る。
+     * @param entry 書き込み
+     * @param after ちらしの裏表記を置き換える文字列
+     * @param formatter 日時の書式
+     * @return dat の 1 行
+     */
+    static String toNetworkLine(final Entry entry, final String after, final DateFormat formatter) {
+        return appendLine(new StringBuilder(), entry, after, formatter).append('\n').toString();
+    }
+
+    Entry getFirstEntry() {
+        return this.firstEntry;
+    }
+
+    /**
+     * 指定した書き込みより後ろの書き込みを返す。
+     * @param entry 基準の書き込み。
+     *            null なら全ての書き込み
+     * @return entry より後ろの書き込み。
+     *         entry を含まない場合は null
+     */
+    List<Entry> getEntriesAfter(final Entry entry) {
+        if (entry == null) {
+            return getEntries();
+        } else if (!this.entries.contains(entry)) {
+            return null;
+        }
+        return this.entries.tailList(entry, false);
+    }
+
+    String toNetworkString(final String host, final int port) {
+        final String after = toNotation(host, port);
+        final DateFormat formatter = newDateFormat();
+        final StringBuilder buff = new StringBuilder(toNetworkHead(after, formatter));
         for (final Entry entry : this.entries) {
-            buff.append(entry.author)
-                    .append("<>").append(entry.mail)
-                    .append("<>").append(formatter.format(new Date(entry.date)))
-                    .append(" ID:").append(PostFunctions.idToString(entry.id))
-                    .append("<> ").append(wrapMessage(entry.message, after))
-                    .append(" <>\n");
+            appendLine(buff, entry, after, formatter).append('\n');
         }
         if (isFull()) {
             buff.append(TERMINAL);
@@ -1,9 +1,16 @@
 package nippon.kawauso.chiraura.bbs;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.cell.Utf8Cell;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
 
@@ -15,6 +22,8 @@ import org.junit.Test;
  */
 public final class ThreadChunkTest extends BytesConvertibleTest<ThreadChunk> {
 
+    private static final Logger LOG = Logger.getLogger(ThreadChunkTest.class.getName());
+
     private final long start;
 
     /**
@@ -99,4 +108,178 @@ public final class ThreadChunkTest extends BytesConvertibleTest<ThreadChunk> {
         // System.out.println(instance.getNumOfComments());
     }
 
+    private ThreadChunk newThread(final int numOfEntries) {
+        final ThreadChunk instance = new ThreadChunk("test", this.start / Duration.SECOND, "test", "test", "test", this.start, 0, "test");
+        for (int i = 1; i <= numOfEntries; i++) {
+            final String label = Integer.toString(i);
+            instance.patch(ThreadChunk.Entry.newInstance(label, label, this.start + i, i, label));
+        }
+        return instance;
+    }
+
+    /**
+     * 差分ごとに計算したハッシュ値が、始めから計算したハッシュ値と一致するかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testIncrementalHash() throws Exception {
+        final ThreadChunk serial = newThread(10);
+        final HashValue serialHash = serial.getHashValue();
+
+        final ThreadChunk instance = newThread(10);
+        instance.setHashType(MountainHash.Type.INCREMENTAL);
+        final HashValue hash = instance.getHashValue();
+        Assert.assertNotEquals(serialHash, hash);
+
+        // 途中から差分を適用しても、始めから作っても同じ。
+        final ThreadChunk copy = instance.copy();
+        Assert.assertEquals(MountainHash.Type.INCREMENTAL, copy.getHashType());
+        for (int i = 11; i <= 20; i++) {
+            final String label = Integer.toString(i);
+            Assert.assertTrue(instance.patch(ThreadChunk.Entry.newInstance(label, label, this.start + i, i, label)));
+            final ThreadChunk expected = newThread(i);
+            expected.setHashType(MountainHash.Type.INCREMENTAL);
+            Assert.assertEquals(expected.getHashValue(), instance.getHashValue());
+        }
+
+        // 複製は変わらない。
+        Assert.assertEquals(hash, copy.getHashValue());
+
+        // 方式を戻せば従来の値に戻る。
+        copy.setHashType(MountainHash.Type.SERIAL);
+        Assert.assertEquals(serialHash, copy.getHashValue());
+
+        // 直列化して戻しても、同じ方式なら同じ。
+        final List<ThreadChunk> output = new ArrayList<>(1);
+        final byte[] bytes = BytesConversion.toBytes(instance);
+        ThreadChunk.getParser().fromStream(new ByteArrayInputStream(bytes), bytes.length, output);
+        Assert.assertEquals(MountainHash.Type.SERIAL, output.get(0).getHashType());
+        output.get(0).setHashType(MountainHash.Type.INCREMENTAL);
+        Assert.assertEquals(instance.getHashValue(), output.get(0).getHashValue());
+    }
+
+    private static long measurePatchAndHash(final ThreadChunk base, final List<ThreadChunk.Entry> entries, final MountainHash.Type type) {
+        final ThreadChunk instance = base.copy();
+        instance.setHashType(type);
+        instance.getHashValue();
+        final long start = System.nanoTime();
+        for (final ThreadChunk.Entry entry : entries) {
+            instance.patch(entry);
+            instance.getHashValue();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 書き込みごとにハッシュ値を計算するときの速さを計算方式ごとに比べる。
+     */
+    @Test
+    public void testHashPerformance() {
+        final int numOfPatches = 100;
+        for (final int numOfEntries : new int[] { 10, 100, 500, 850 }) {
+            final ThreadChunk base = newThread(numOfEntries);
+            final List<ThreadChunk.Entry> entries = new ArrayList<>(numOfPatches);
+            for (int i = 1; i <= numOfPatches; i++) {
+                final String label = Integer.toString(numOfEntries + i);
+                entries.add(ThreadChunk.Entry.newInstance(label, label, this.start + numOfEntries + i, numOfEntries + i, label));
+            }
+
+            // 暖機。
+            measurePatchAndHash(base, entries, MountainHash.Type.SERIAL);
+            measurePatchAndHash(base, entries, MountainHash.Type.INCREMENTAL);
+
+            final long serial = measurePatchAndHash(base, entries, MountainHash.Type.SERIAL);
+            final long incremental = measurePatchAndHash(base, entries, MountainHash.Type.INCREMENTAL);
+            LOG.log(Level.SEVERE, "書き込み数: {0} 従来方式単位消費ミリ秒: {1} 差分方式単位消費ミリ秒: {2}", new Object[] { numOfEntries,
+                    String.format("%f", serial / (1_000_000.0 * numOfPatches)), String.format("%f", incremental / (1_000_000.0 * numOfPatches)) });
+        }
+    }
+
+    private ThreadChunk newRealisticThread(final int numOfEntries) {
+        final ThreadChunk instance = new ThreadChunk("news", this.start / Duration.SECOND, "【速報】ちらうらの性能を改善するスレ", "名無しさん", "", this.start, 0,
+                PostFunctions.wrapMessage("スレ立て乙\n読み込みが遅いので何とかしたい。"));
+        final String[] names = new String[] { "名無しさん", "俺様", "通りすがりの者", "◆abcdefgh" };
+        final String[] mails = new String[] { "", "sage", "age" };
+        for (int i = 1; i <= numOfEntries; i++) {
+            final StringBuilder message = new StringBuilder(">>").append(i).append("\n");
+            for (int j = 0; j < 1 + i % 5; j++) {
+                message.append("いろはにほへとちりぬるを、わかよたれそつねならむ。").append(i).append("\n");
+            }
+            instance.patch(ThreadChunk.Entry.newInstance(names[i % names.length], mails[i % mails.length], this.start + i, i,
+                    PostFunctions.wrapMessage(message.toString())));
+        }
+        return instance;
+    }
+
+    /*
+     * 指定子を毎回解釈する従来の方法で読み込む。
+     */
+
+    private static ThreadChunk.Entry parseEntryByInterpretation(final ByteArrayInputStream input, final int maxByteSize) throws Exception {
+        final List<Utf8Cell> author = new ArrayList<>(1);
+        final List<Utf8Cell> mail = new ArrayList<>(1);
+        final long[] date = new long[1];
+        final long[] id = new long[1];
+        final List<Utf8Cell> message = new ArrayList<>(1);
+        BytesConversion.fromStream(input, maxByteSize, "oollo", author, Utf8Cell.getParser(), mail, Utf8Cell.getParser(), date, id, message,
+                Utf8Cell.getParser());
+        return ThreadChunk.Entry.newInstance(author.get(0).get(), mail.get(0).get(), date[0], id[0], message.get(0).get());
+    }
+
+    private static ThreadChunk parseByInterpretation(final byte[] bytes) throws Exception {
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final List<Utf8Cell> board = new ArrayList<>(1);
+        final long[] thread = new long[1];
+        final List<Utf8Cell> title = new ArrayList<>(1);
+        final List<Utf8Cell> author = new ArrayList<>(1);
+        final List<Utf8Cell> mail = new ArrayList<>(1);
+        final long[] date = new long[1];
+        final long[] id = new long[1];
+        final List<Utf8Cell> message = new ArrayList<>(1);
+        final int[] numOfEntries = new int[1];
+        BytesConversion.fromStream(input, bytes.length, "olooolloi", board, Utf8Cell.getParser(), thread, title, Utf8Cell.getParser(), author,
+                Utf8Cell.getParser(), mail, Utf8Cell.getParser(), date, id, message, Utf8Cell.getParser(), numOfEntries);
+        final ThreadChunk instance = new ThreadChunk(board.get(0).get(), thread[0], title.get(0).get(), author.get(0).get(), mail.get(0).get(), date[0],
+                id[0], message.get(0).get());
+        for (int i = 0; i < numOfEntries[0]; i++) {
+            instance.patch(parseEntryByInterpretation(input, bytes.length));
+        }
+        return instance;
+    }
+
+    /**
+     * 実際に近いスレの読み込みの速さを、指定子を毎回解釈する従来の方法と比べる。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testParsePerformance() throws Exception {
+        for (final int numOfEntries : new int[] { 10, 100, 999 }) {
+            final ThreadChunk instance = newRealisticThread(numOfEntries);
+            final byte[] bytes = BytesConversion.toBytes(instance);
+            Assert.assertEquals(instance.byteSize(), bytes.length);
+            Assert.assertEquals(instance, BytesConversion.fromBytes(bytes, ThreadChunk.getParser()));
+            Assert.assertEquals(instance, parseByInterpretation(bytes));
+
+            final int numOfLoops = 100_000 / (numOfEntries + 1) + 10;
+            long compiled = 0;
+            long interpreted = 0;
+            for (int k = 0; k < 3; k++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < numOfLoops; i++) {
+                    BytesConversion.fromBytes(bytes, ThreadChunk.getParser());
+                }
+                compiled = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < numOfLoops; i++) {
+                    parseByInterpretation(bytes);
+                }
+                interpreted = System.nanoTime() - start;
+            }
+            final double megaBytes = (double) bytes.length * numOfLoops / (1024 * 1024);
+            LOG.log(Level.SEVERE, "書き込み数: {0} バイト数: {1} 読み込み MB/秒: {2} (従来: {3})", new Object[] { numOfEntries + 1, bytes.length,
+                    String.format("%.1f", megaBytes / (compiled / 1_000_000_000.0)), String.format("%.1f", megaBytes / (interpreted / 1_000_000_000.0)) });
+        }
+    }
+
 }
@@ -0,0 +1,176 @@
+package nippon.kawauso.chiraura.closet;
+
+import java.math.BigInteger;
+import java.util.Collection;
+
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.NumberBytesConversion;
+
+/**
+ * 差分から構成されるデータ片のハッシュ値を、差分を適用するごとに少しずつ計算する。
+ * 差分それぞれのハッシュ値の和を保持するので、差分の順番に依らず、差分の追加も削除も定数時間で済む。
+ * 非並列。
+ * @author chirauraNoSakusha
+ */
+public final class MountainHash {
+
+    /*
+     * ハッシュ値は、方式の版、基礎の部分、差分の数、差分それぞれのハッシュ値の 2^SIZE を法とする和
+     * をつなげたもののハッシュ値。
+     * 全体を直列化してハッシュ値を計算する従来の方式とは値が異なるので、
+     * 方式はデータ片の個体ごとに持たせ、大域的な設定にはしない。
+     * 方式の違う個体同士ではハッシュ値を比べられないので、
+     * 保管庫には方式を記録し、通信では方式を添える。
+     */
+
+    /**
+     * データ片のハッシュ値の計算方式。
+     * @author chirauraNoSakusha
+     */
+    public static enum Type {
+
+        /**
+         * データ片全体を直列化して計算する。
+         * 従来の方式。
+         */
+        SERIAL,
+
+        /**
+         * 差分ごとのハッシュ値を足し合わせて計算する。
+         */
+        INCREMENTAL,
+
+    }
+
+    /**
+     * INCREMENTAL 方式の版。
+     */
+    private static final byte VERSION = 1;
+
+    private static final BigInteger MODULUS = BigInteger.ZERO.setBit(HashValue.SIZE);
+
+    /**
+     * ハッシュ値の計算方式を選べるデータ片。
+     * 方式は個体ごとに持ち、複製にも引き継ぐ。
+     * 作成したばかりのものは SERIAL 方式。
+     * @author chirauraNoSakusha
+     */
+    public static interface Selectable extends Mountain {
+
+        /**
+         * 計算方式を返す。
+         * @return 計算方式
+         */
+        public Type getHashType();
+
+        /**
+         * 計算方式を変える。
+         * 変わった場合、次に求められたときにハッシュ値を計算し直す。
+         * @param type 新しい計算方式
+         */
+        public void setHashType(Type type);
+
+    }
+
+    private BigInteger sum;
+    private int count;
+
+    private MountainHash(final BigInteger sum, final int count) {
+        this.sum = sum;
+        this.count = count;
+    }
+
+    /**
+     * 差分を含まない状態で作成する。
+     */
+    public MountainHash() {
+        this(BigInteger.ZERO, 0);
+    }
+
+    /**
+     * 差分を全て加えた状態で作成する。
+     * @param diffs 差分
+     * @return 差分を全て加えたもの
+     */
+    public static MountainHash newInstance(final Collection<? extends Mountain.Dust<?>> diffs) {
+        final MountainHash instance = new MountainHash();
+        for (final Mountain.Dust<?> diff : diffs) {
+            instance.add(diff);
+        }
+        return instance;
+    }
+
+    /**
+     * 複製する。
+     * @return 複製
+     */
+    public MountainHash copy() {
+        return new MountainHash(this.sum, this.count);
+    }
+
+    private static BigInteger calculate(final Mountain.Dust<?> diff) {
+        return HashValue.calculateFromBytes(BytesConversion.toBytes(diff)).toBigInteger();
+    }
+
+    /**
+     * 差分を加える。
+     * @param diff 加える差分
+     */
+    public void add(final Mountain.Dust<?> diff) {
+        this.sum = this.sum.add(calculate(diff)).mod(MODULUS);
+        this.count++;
+    }
+
+    /**
+     * 差分を除く。
+     * 加えていない差分を除いてはいけない。
+     * @param diff 除く差分
+     */
+    public void remove(final Mountain.Dust<?> diff) {
+        this.sum = this.sum.subtract(calculate(diff)).mod(MODULUS);
+        this.count--;
+    }
+
+    /**
+     * @return 加えられている差分の数
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * データ片のハッシュ値を計算する。
+     * @param base 差分としては現れない基礎の部分のバイト列
+     * @return データ片のハッシュ値
+     */
+    public HashValue toHashValue(final byte[] base) {
+        return HashValue.calculateFromBytes(new byte[] { VERSION }, base, NumberBytesConversion.toBytes(this.count),
+                BytesConversion.toBytes(new HashValue(this.sum, HashValue.SIZE)));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.sum.hashCode() + this.count;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof MountainHash)) {
+            return false;
+        }
+        final MountainHash other = (MountainHash) obj;
+        return this.count == other.count && this.sum.equals(other.sum);
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[numOfDiffs=").append(this.count)
+                .append(", sum=").append(this.sum.toString(16))
+                .append(']').toString();
+    }
+
+}
@@ -0,0 +1,127 @@
+package nippon.kawauso.chiraura.closet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class MountainHashTest {
+
+    private static final class TestDust implements Mountain.Dust<Mountain> {
+        private final long value;
+
+        private TestDust(final long value) {
+            this.value = value;
+        }
+
+        @Override
+        public Class<Mountain> getMountainClass() {
+            return Mountain.class;
+        }
+
+        @Override
+        public int byteSize() {
+            return BytesConversion.byteSize("l", this.value);
+        }
+
+        @Override
+        public int toStream(final OutputStream output) throws IOException {
+            return BytesConversion.toStream(output, "l", this.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (this.value ^ (this.value >>> 32));
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof TestDust && this.value == ((TestDust) obj).value;
+        }
+    }
+
+    private static List<TestDust> newDusts(final int numOfDusts, final int seed) {
+        final List<TestDust> dusts = new ArrayList<>(numOfDusts);
+        for (int i = 0; i < numOfDusts; i++) {
+            dusts.add(new TestDust(seed + i));
+        }
+        return dusts;
+    }
+
+    /**
+     * 差分の順番に依らないかどうか。
+     */
+    @Test
+    public void testOrder() {
+        final byte[] base = new byte[] { 1, 2, 3 };
+        final List<TestDust> dusts = newDusts(1_000, 0);
+        final MountainHash instance = MountainHash.newInstance(dusts);
+        Assert.assertEquals(dusts.size(), instance.size());
+
+        final List<TestDust> shuffled = new ArrayList<>(dusts);
+        Collections.shuffle(shuffled, new Random(1L));
+        final MountainHash instance2 = MountainHash.newInstance(shuffled);
+        Assert.assertEquals(instance, instance2);
+        Assert.assertEquals(instance.toHashValue(base), instance2.toHashValue(base));
+
+        // 基礎の部分が違えば違う。
+        Assert.assertNotEquals(instance.toHashValue(base), instance.toHashValue(new byte[] { 1, 2, 4 }));
+    }
+
+    /**
+     * 差分の追加と削除の検査。
+     */
+    @Test
+    public void testAddAndRemove() {
+        final byte[] base = new byte[0];
+        final List<TestDust> dusts = newDusts(100, 0);
+        final MountainHash instance = MountainHash.newInstance(dusts.subList(0, 50));
+        final MountainHash copy = instance.copy();
+
+        for (final TestDust dust : dusts.subList(50, dusts.size())) {
+            instance.add(dust);
+        }
+        Assert.assertEquals(MountainHash.newInstance(dusts).toHashValue(base), instance.toHashValue(base));
+
+        // 複製は変わらない。
+        Assert.assertEquals(MountainHash.newInstance(dusts.subList(0, 50)), copy);
+
+        // 差分を除けば元に戻る。
+        for (final TestDust dust : dusts.subList(50, dusts.size())) {
+            instance.remove(dust);
+        }
+        Assert.assertEquals(copy, instance);
+        Assert.assertEquals(copy.toHashValue(base), instance.toHashValue(base));
+
+        // 空。
+        for (final TestDust dust : dusts.subList(0, 50)) {
+            instance.remove(dust);
+        }
+        Assert.assertEquals(new MountainHash(), instance);
+        Assert.assertEquals(0, instance.size());
+    }
+
+    /**
+     * 差分が空でも計算できて、差分を加えれば変わるかどうか。
+     */
+    @Test
+    public void testEmpty() {
+        final byte[] base = new byte[0];
+        final MountainHash instance = new MountainHash();
+        final HashValue empty = instance.toHashValue(base);
+        instance.add(new TestDust(1));
+        Assert.assertNotEquals(empty, instance.toHashValue(base));
+    }
+
+}
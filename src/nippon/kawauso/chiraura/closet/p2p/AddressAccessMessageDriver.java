@@ -5,6 +5,7 @@ import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,38 +44,49 @@ final class AddressAccessMessageDriver {
 
         if (!this.network.moreAppropriate(message.getAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
-            final List<Message> reply = new ArrayList<>(2);
-            reply.add(AddressAccessReply.newRejected());
-            reply.add(new SessionReply(session));
-            this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+            reject(session, source);
             return;
         }
 
-        this.executor.submit(new Reporter<Void>(Level.WARNING) {
-            @Override
-            public Void subCall() throws InterruptedException {
-                final AddressAccessOperation operation = new AddressAccessOperation(message.getAddress());
-
-                final AddressAccessResult result = AddressAccessMessageDriver.this.blockingDriver.execute(operation, timeout);
-
-                // 返信の用意。
-                final List<Message> reply = new ArrayList<>(2);
-                if (result == null) {
-                    // 制限時間中に結果を得られなかった。(やったのは先人かも)
-                    reply.add(AddressAccessReply.newGiveUp());
-                } else if (result.isGivenUp()) {
-                    reply.add(AddressAccessReply.newGiveUp());
-                } else {
-                    reply.add(new AddressAccessReply(result.getManager(), result.getPeers()));
-                }
-                reply.add(new SessionReply(session));
+        try {
+            this.executor.submit(new Reporter<Void>(Level.WARNING) {
+                @Override
+                public Void subCall() throws InterruptedException {
+                    final AddressAccessOperation operation = new AddressAccessOperation(message.getAddress());
+
+                    final AddressAccessResult result = AddressAccessMessageDriver.this.blockingDriver.execute(operation, timeout);
+
+                    // 返信の用意。
+                    final List<Message> reply = new ArrayList<>(2);
+                    if (result == null) {
+                        // 制限時間中に結果を得られなかった。(やったのは先人かも)
+                        reply.add(AddressAccessReply.newGiveUp());
+                    } else if (result.isGivenUp()) {
+                        reply.add(AddressAccessReply.newGiveUp());
+                    } else {
+                        reply.add(new AddressAccessReply(result.getManager(), result.getPeers()));
+                    }
+                    reply.add(new SessionReply(session));
+
+                    // 返信する。
+                    AddressAccessMessageDriver.this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+                    LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
 
-                // 返信する。
-                AddressAccessMessageDriver.this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
-                LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
+                    return null;
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // 手が足りないので断る。依頼元は断られたら諦める。断った数は下請けが数えている。
+            LOG.log(Level.FINE, "手が足りないので {0} に依頼された {1} を断ります。", new Object[] { source, message });
+            reject(session, source);
+        }
+    }
 
-                return null;
-            }
-        });
+    private void reject(final Session session, final InetSocketAddress source) {
+        final List<Message> reply = new ArrayList<>(2);
+        reply.add(AddressAccessReply.newRejected());
+        reply.add(new SessionReply(session));
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
     }
+
 }
@@ -9,6 +9,8 @@ interface BackupDriverSet {
 
     CheckDemandBlockingDriver getCheckDemandBlocking();
 
+    CheckDigestBlockingDriver getCheckDigestBlocking();
+
     RecoverySelectDriver getRecoverySelect();
 
     BackupSelectDriver getBackupSelect();
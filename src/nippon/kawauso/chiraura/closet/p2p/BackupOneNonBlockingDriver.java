@@ -2,9 +2,11 @@ package nippon.kawauso.chiraura.closet.p2p;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.concurrent.PrioritizedTask;
 import nippon.kawauso.chiraura.lib.process.Reporter;
 
 /**
@@ -41,18 +43,36 @@ final class BackupOneNonBlockingDriver {
         }
 
         // 自分で始める。
-        this.executor.submit(new Reporter<Void>(Level.WARNING) {
-            @Override
-            protected Void subCall() throws IOException, InterruptedException {
-                BackupOneResult result = null;
-                try {
-                    result = BackupOneNonBlockingDriver.this.coreDriver.execute(operation, timeout);
-                } finally {
-                    BackupOneNonBlockingDriver.this.aggregator.free(operation, result);
+        try {
+            final Reporter<Void> work = new Reporter<Void>(Level.WARNING) {
+                @Override
+                protected Void subCall() throws IOException, InterruptedException {
+                    BackupOneResult result = null;
+                    try {
+                        result = BackupOneNonBlockingDriver.this.coreDriver.execute(operation, timeout);
+                    } finally {
+                        BackupOneNonBlockingDriver.this.aggregator.free(operation, result);
+                    }
+                    return null;
                 }
-                return null;
-            }
-        });
+            };
+            this.executor.execute(new PrioritizedTask(OperationQueue.priorityOf(operation).ordinal()) {
+                @Override
+                public void run() {
+                    work.call();
+                }
+
+                @Override
+                protected void dropped() {
+                    LOG.log(Level.INFO, "急ぎの処理に場所を譲ったので {0} を諦めます。", operation);
+                    BackupOneNonBlockingDriver.this.aggregator.free(operation, null);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // 手が足りないので今回は諦める。次の巡回でまたやる。
+            LOG.log(Level.FINE, "手が足りないので {0} を諦めます。", operation);
+            this.aggregator.free(operation, null);
+        }
     }
 
 }
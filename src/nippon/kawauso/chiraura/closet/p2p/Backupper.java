@@ -2,9 +2,13 @@ package nippon.kawauso.chiraura.closet.p2p;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.container.Pair;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 import nippon.kawauso.chiraura.lib.process.Reporter;
 
@@ -24,9 +28,15 @@ final class Backupper extends Reporter<Void> {
 
     private final BackupDriverSet drivers;
 
+    /*
+     * 在庫の要約を比べて、食い違った範囲だけ在庫確認するかどうか。
+     */
+    private final boolean digest;
+
     private boolean end;
 
-    Backupper(final InetSocketAddress destination, final NetworkWrapper network, final long interval, final long timeout, final BackupDriverSet drivers) {
+    Backupper(final InetSocketAddress destination, final NetworkWrapper network, final long interval, final long timeout, final BackupDriverSet drivers,
+            final boolean digest) {
         super(Level.WARNING);
         if (destination == null) {
             throw new IllegalArgumentException("Null destination.");
@@ -45,6 +55,7 @@ final class Backupper extends Reporter<Void> {
         this.interval = interval;
         this.timeout = timeout;
         this.drivers = drivers;
+        this.digest = digest;
 
         this.end = false;
     }
@@ -73,13 +84,17 @@ final class Backupper extends Reporter<Void> {
         while (!isEnd()) {
             final long start = System.currentTimeMillis();
 
-            backup();
+            if (this.digest) {
+                synchronizeDifferences(start);
+            } else {
+                backup(null, start);
 
-            if (isEnd()) {
-                break;
-            }
+                if (isEnd()) {
+                    break;
+                }
 
-            recovery();
+                recovery(null, System.currentTimeMillis());
+            }
 
             final long sleepTime = start + this.interval - System.currentTimeMillis();
             if (sleepTime > 0) {
@@ -116,10 +131,42 @@ final class Backupper extends Reporter<Void> {
         }
     }
 
-    private void recovery() throws IOException, InterruptedException {
-        final long start = System.currentTimeMillis();
+    private void synchronizeDifferences(final long start) throws IOException, InterruptedException {
+        final CheckDigestResult result = this.drivers.getCheckDigestBlocking().execute(new CheckDigestOperation(this.destination), this.timeout / 2);// 直接なら短く。
 
-        final CheckStockResult result = this.drivers.getCheckStockBlocking().execute(new CheckStockOperation(this.destination), this.timeout / 2);// 直接なら短く。
+        final List<Pair<Address, Address>> ranges;
+        if (result == null || result.isGivenUp()) {
+            LOG.log(Level.FINEST, "{0} との要約の比較が失敗したので、担当範囲全体を確認します。", this.destination);
+            ranges = new ArrayList<>(1);
+            ranges.add(null);
+        } else {
+            ranges = result.getDifferentRanges();
+            LOG.log(Level.FINEST, "{0} との要約の比較で {1} 個の範囲が食い違いました。", new Object[] { this.destination, ranges.size() });
+        }
+
+        for (final Pair<Address, Address> range : ranges) {
+            if (isEnd() || start + this.interval <= System.currentTimeMillis()) {
+                break;
+            }
+
+            backup(range, start);
+
+            if (isEnd()) {
+                break;
+            }
+
+            recovery(range, start);
+        }
+    }
+
+    /**
+     * 相手が持っていて自分が持っていないデータ片を取り寄せる。
+     * @param range 確認するアドレス範囲。
+     *            null なら担当範囲全体
+     * @param start 周期の始まり
+     */
+    private void recovery(final Pair<Address, Address> range, final long start) throws IOException, InterruptedException {
+        final CheckStockResult result = this.drivers.getCheckStockBlocking().execute(new CheckStockOperation(this.destination, range), this.timeout / 2);// 直接なら短く。
 
         if (result == null || result.isGivenUp()) {
             LOG.log(Level.FINEST, "{0} への在庫確認が失敗しました。", this.destination);
@@ -144,10 +191,14 @@ final class Backupper extends Reporter<Void> {
         }
     }
 
-    private void backup() throws IOException, InterruptedException {
-        final long start = System.currentTimeMillis();
-
-        final CheckDemandResult result = this.drivers.getCheckDemandBlocking().execute(new CheckDemandOperation(this.destination), this.timeout / 2);// 直接なら短く。
+    /**
+     * 自分が持っていて相手が持っていないデータ片を送りつける。
+     * @param range 確認するアドレス範囲。
+     *            null なら担当範囲全体
+     * @param start 周期の始まり
+     */
+    private void backup(final Pair<Address, Address> range, final long start) throws IOException, InterruptedException {
+        final CheckDemandResult result = this.drivers.getCheckDemandBlocking().execute(new CheckDemandOperation(this.destination, range), this.timeout / 2);// 直接なら短く。
 
         if (result == null || result.isGivenUp()) {
             LOG.log(Level.FINEST, "{0} への発注依頼が失敗しました。", this.destination);
@@ -68,9 +68,11 @@ final class BackupperMaster extends Reporter<Void> {
 
     private final ExecutorService executor;
     private final BackupDriverSet drivers;
+    private final boolean digestBackup;
 
     BackupperMaster(final BlockingQueue<? super Reporter.Report> reportSink, final NetworkWrapper network, final long interval, final long backupInterval,
-            final long timeout, final Map<AddressedPeer, BackupperUnit> backupperPool, final ExecutorService executor, final BackupDriverSet drivers) {
+            final long timeout, final Map<AddressedPeer, BackupperUnit> backupperPool, final ExecutorService executor, final BackupDriverSet drivers,
+            final boolean digestBackup) {
         super(reportSink);
 
         if (network == null) {
@@ -95,6 +97,7 @@ final class BackupperMaster extends Reporter<Void> {
         this.backupperPool = backupperPool;
         this.executor = executor;
         this.drivers = drivers;
+        this.digestBackup = digestBackup;
     }
 
     private static <T> Set<T> getProduct(final Set<T> set1, final Set<T> set2) {
@@ -174,7 +177,7 @@ final class BackupperMaster extends Reporter<Void> {
             }
 
             for (final AddressedPeer peer : newPeers) {
-                final Backupper backupper = new Backupper(peer.getPeer(), this.network, this.backupInterval, this.timeout, this.drivers);
+                final Backupper backupper = new Backupper(peer.getPeer(), this.network, this.backupInterval, this.timeout, this.drivers, this.digestBackup);
                 final Future<Void> future = this.executor.submit(backupper);
                 this.backupperPool.put(peer, new BackupperUnit(future));
                 LOG.log(Level.FINEST, "{0} との同期を開始しました。", peer);
@@ -188,7 +191,7 @@ final class BackupperMaster extends Reporter<Void> {
             for (final AddressedPeer peer : product) {
                 final BackupperUnit unit = this.backupperPool.get(peer);
                 if (unit.isClosed()) {
-                    final Backupper backupper = new Backupper(peer.getPeer(), this.network, this.backupInterval, this.timeout, this.drivers);
+                    final Backupper backupper = new Backupper(peer.getPeer(), this.network, this.backupInterval, this.timeout, this.drivers, this.digestBackup);
                     final Future<Void> future = this.executor.submit(backupper);
                     this.backupperPool.put(peer, new BackupperUnit(future));
                     LOG.log(Level.FINEST, "{0} との同期を再開しました。", peer);
@@ -13,12 +13,15 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.closet.ClosetReport;
+import nippon.kawauso.chiraura.lib.concurrent.BoundedExecutor;
 import nippon.kawauso.chiraura.lib.connection.BasicConstantTrafficLimiter;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.connection.Limiter;
 import nippon.kawauso.chiraura.lib.connection.PortIgnoringConstantTrafficLimiter;
 import nippon.kawauso.chiraura.lib.process.Chief;
 import nippon.kawauso.chiraura.lib.process.Reporter;
 import nippon.kawauso.chiraura.network.AddressedPeer;
+import nippon.kawauso.chiraura.storage.WriteBackStatistics;
 
 /**
  * お山の大将。偉い。
@@ -34,22 +37,59 @@ final class Boss extends Chief {
     private final long maintenanceInterval;
     private final long sleepTime;
     private final long backupInterval;
+    private final boolean digestBackup;
     private final long operationTimeout;
     private final long versionGapThreshold;
+    private final int numOfWorkers;
     private final ExecutorService executor;
     private final BlockingQueue<Operation> operationQueue;
     private final BlockingQueue<ClosetReport> closetReportSink;
     private final BlockingQueue<OutlawReport> outlawReportQueue;
     private final DriverSet drivers;
+    private final WorkStatistics workStatistics;
+    private final WriteBackStatistics storageStatistics;
+    private final BoundedExecutor handlerExecutor;
+    private final BoundedExecutor backupExecutor;
+    private final MailHandlerTable mailHandlers;
+    // 手紙を捌く人が 1 人なら null。
+    private final MailShards mailShards;
 
     private final Map<AddressedPeer, BackupperMaster.BackupperUnit> backupeerPool;
     private final Limiter<InetSocketAddress> outlawLimiter;
     private final ConcurrentMap<InetSocketAddress, Boolean> outlawRemovers;
 
     Boss(final NetworkWrapper network, final SessionManager sessionManager, final long maintenanceInterval, final long sleepTime, final long backupInterval,
-            final long operationTimeout, final long versionGapThreshold, final ExecutorService executor, final BlockingQueue<Operation> operationQueue,
+            final boolean digestBackup, final long operationTimeout, final long versionGapThreshold, final ExecutorService executor, final BlockingQueue<Operation> operationQueue,
             final BlockingQueue<ClosetReport> closetReportSink, final DriverSet drivers, final BlockingQueue<OutlawReport> outlawReportQueue,
             final boolean portIgnore, final long outlawDuration, final int outlawCountLimit) {
+        this(network, sessionManager, maintenanceInterval, sleepTime, backupInterval, digestBackup, operationTimeout, versionGapThreshold, 1, 1, executor,
+                operationQueue, null, null, null, null, null, closetReportSink, drivers, outlawReportQueue, portIgnore, outlawDuration, outlawCountLimit,
+                ConstantLimiters.Type.LIST);
+    }
+
+    /**
+     * 作成する。
+     * @param numOfWorkers 操作の待ち行列を捌く雑用係の数
+     * @param numOfMailReaders 受信した手紙を捌く人の数。
+     *            2 以上なら、送信元ごとの待ち行列に振り分けてから捌く
+     * @param workStatistics 操作の待ち行列の統計。
+     *            null なら自分の個体情報の報告に載せない
+     * @param storageStatistics データ片倉庫の書き戻しキャッシュの統計。
+     *            null なら自分の個体情報の報告に載せない
+     * @param handlerExecutor 依頼の処理に使う実行機。
+     *            統計を自分の個体情報の報告に載せるためだけに使う。null なら載せない
+     * @param backupExecutor 複製の処理に使う実行機。
+     *            統計を自分の個体情報の報告に載せるためだけに使う。null なら載せない
+     * @param mailHandlers 受信した手紙の処理の表。
+     *            null なら drivers から作る
+     * @param outlawLimiterType 無法者の数え方
+     */
+    Boss(final NetworkWrapper network, final SessionManager sessionManager, final long maintenanceInterval, final long sleepTime, final long backupInterval,
+            final boolean digestBackup, final long operationTimeout, final long versionGapThreshold, final int numOfWorkers, final int numOfMailReaders,
+            final ExecutorService executor, final BlockingQueue<Operation> operationQueue, final WorkStatistics workStatistics,
+            final WriteBackStatistics storageStatistics, final BoundedExecutor handlerExecutor, final BoundedExecutor backupExecutor,
+            final MailHandlerTable mailHandlers, final BlockingQueue<ClosetReport> closetReportSink, final DriverSet drivers, final BlockingQueue<OutlawReport> outlawReportQueue, final boolean portIgnore, final long outlawDuration,
+            final int outlawCountLimit, final ConstantLimiters.Type outlawLimiterType) {
         super(new LinkedBlockingQueue<Reporter.Report>());
 
         if (network == null) {
@@ -66,6 +106,10 @@ final class Boss extends Chief {
             throw new IllegalArgumentException("Invalid operation timeout ( " + operationTimeout + " ).");
         } else if (versionGapThreshold < 1) {
             throw new IllegalArgumentException("Too small version gap threshold ( " + versionGapThreshold + " ).");
+        } else if (numOfWorkers < 1) {
+            throw new IllegalArgumentException("Too few workers ( " + numOfWorkers + " ).");
+        } else if (numOfMailReaders < 1) {
+            throw new IllegalArgumentException("Too few mail readers ( " + numOfMailReaders + " ).");
         } else if (executor == null) {
             throw new IllegalArgumentException("Null executor.");
         } else if (operationQueue == null) {
@@ -80,6 +124,8 @@ final class Boss extends Chief {
             throw new IllegalArgumentException("Negative outlaw duration ( " + outlawDuration + " ).");
         } else if (outlawCountLimit < 0) {
             throw new IllegalArgumentException("Negative outlaw count limit ( " + outlawCountLimit + " ).");
+        } else if (outlawLimiterType == null) {
+            throw new IllegalArgumentException("Null outlaw limiter type.");
         }
 
         this.network = network;
@@ -87,29 +133,68 @@ final class Boss extends Chief {
         this.maintenanceInterval = maintenanceInterval;
         this.sleepTime = sleepTime;
         this.backupInterval = backupInterval;
+        this.digestBackup = digestBackup;
         this.operationTimeout = operationTimeout;
         this.versionGapThreshold = versionGapThreshold;
+        this.numOfWorkers = numOfWorkers;
         this.executor = executor;
         this.operationQueue = operationQueue;
         this.closetReportSink = closetReportSink;
         this.outlawReportQueue = outlawReportQueue;
         this.drivers = drivers;
+        this.workStatistics = workStatistics;
+        this.storageStatistics = storageStatistics;
+        this.handlerExecutor = handlerExecutor;
+        this.backupExecutor = backupExecutor;
+        if (mailHandlers == null) {
+            this.mailHandlers = new MailHandlerTable(sessionManager, operationTimeout, drivers, drivers);
+        } else {
+            this.mailHandlers = mailHandlers;
+        }
+        if (numOfMailReaders == 1) {
+            this.mailShards = null;
+        } else {
+            this.mailShards = new MailShards(numOfMailReaders);
+        }
 
         this.backupeerPool = new HashMap<>();
         if (portIgnore) {
-            this.outlawLimiter = new PortIgnoringConstantTrafficLimiter(outlawDuration, Long.MAX_VALUE, outlawCountLimit, 0);
+            this.outlawLimiter = new PortIgnoringConstantTrafficLimiter(outlawDuration, Long.MAX_VALUE, outlawCountLimit, 0, outlawLimiterType);
         } else {
-            this.outlawLimiter = new BasicConstantTrafficLimiter(outlawDuration, Long.MAX_VALUE, outlawCountLimit, 0);
+            this.outlawLimiter = new BasicConstantTrafficLimiter(outlawDuration, Long.MAX_VALUE, outlawCountLimit, 0, outlawLimiterType);
         }
         this.outlawRemovers = new ConcurrentHashMap<>();
     }
 
-    private MailReader newMailReader() {
-        return new MailReader(getReportQueue(), this.network, this.sessionManager, this.operationTimeout, this.drivers, this.drivers);
+    private MailSorter newMailSorter() {
+        return new MailSorter(getReportQueue(), this.network, this.mailShards);
+    }
+
+    /**
+     * 捌く人のいない待ち行列に MailReader を付ける。
+     * 振り分けない場合は、通信網から直接受け取る MailReader を 1 人付ける。
+     */
+    private void submitMailReaders() {
+        if (this.mailShards == null) {
+            this.executor.submit(new MailReader(getReportQueue(), this.network, this.mailHandlers));
+            return;
+        }
+        for (final MailShards.Shard shard : this.mailShards.getShards()) {
+            if (shard.acquire()) {
+                try {
+                    this.executor.submit(new MailReader(getReportQueue(), shard, this.mailHandlers));
+                } catch (final RejectedExecutionException e) {
+                    shard.release();
+                    throw e;
+                }
+            }
+        }
     }
 
     private MessengerMonitor newMessengerMonitor() {
-        return new MessengerMonitor(getReportQueue(), this.network, this.closetReportSink, this.versionGapThreshold, this.drivers, this.outlawReportQueue);
+        return new MessengerMonitor(getReportQueue(), this.network, this.closetReportSink, this.versionGapThreshold, this.drivers, this.outlawReportQueue,
+                this.workStatistics, this.drivers.getRoute().getStatistics(), this.storageStatistics,
+                this.handlerExecutor, this.backupExecutor);
     }
 
     private NetworkManager newNetworkManager() {
@@ -132,7 +217,7 @@ final class Boss extends Chief {
 
     private BackupperMaster newBackupperMaster() {
         return new BackupperMaster(getReportQueue(), this.network, this.maintenanceInterval, this.backupInterval, this.operationTimeout, this.backupeerPool,
-                this.executor, this.drivers);
+                this.executor, this.drivers, this.digestBackup);
     }
 
     private Blacklister newBlacklister() {
@@ -141,10 +226,15 @@ final class Boss extends Chief {
 
     @Override
     protected void before() {
-        this.executor.submit(newMailReader());
+        if (this.mailShards != null) {
+            this.executor.submit(newMailSorter());
+        }
+        submitMailReaders();
         this.executor.submit(newMessengerMonitor());
         this.executor.submit(newNetworkManager());
-        this.executor.submit(newWorker());
+        for (int i = 0; i < this.numOfWorkers; i++) {
+            this.executor.submit(newWorker());
+        }
         this.executor.submit(newLonely());
         this.executor.submit(newUnpartitioner());
         this.executor.submit(newBackupperMaster());
@@ -156,7 +246,9 @@ final class Boss extends Chief {
         try {
             boolean done = true;
             if (report.getSource() == MailReader.class) {
-                this.executor.submit(newMailReader());
+                submitMailReaders();
+            } else if (report.getSource() == MailSorter.class) {
+                this.executor.submit(newMailSorter());
             } else if (report.getSource() == MessengerMonitor.class) {
                 this.executor.submit(newMessengerMonitor());
             } else if (report.getSource() == NetworkManager.class) {
@@ -57,7 +57,7 @@ public final class BossTest {
         final Set<Class<? extends Chunk>> backupTypes = new HashSet<>();
 
         this.drivers = new DriverSet(this.network, this.storage, this.sessionManager, new LinkedBlockingQueue<Operation>(), this.outlawReportQueue,
-                this.executor, portIgnore, entryLimit, backupTypes);
+                this.executor, portIgnore, entryLimit, backupTypes, false);
     }
 
     /**
@@ -66,7 +66,7 @@ public final class BossTest {
      */
     @Test
     public void testBoot() throws Exception {
-        final Boss instance = new Boss(this.network, this.sessionManager, interval, sleepTime, backupInterval, timeout, versionGapThreshold, this.executor,
+        final Boss instance = new Boss(this.network, this.sessionManager, interval, sleepTime, backupInterval, false, timeout, versionGapThreshold, this.executor,
                 this.operationQueue, this.closetReportQueue, this.drivers, this.outlawReportQueue, portIgnore, outlawDuration, outlawCountLimit);
         final Future<Void> future = this.executor.submit(instance);
         Thread.sleep(100);
@@ -63,6 +63,11 @@ final class CheckDemandDriver {
     }
 
     CheckDemandResult execute(final CheckDemandOperation operation, final long timeout) throws InterruptedException, IOException {
+        if (!this.network.isHashComparable(operation.getDestination())) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので {1} を諦めます。", new Object[] { operation.getDestination(), operation });
+            return CheckDemandResult.newGiveUp();
+        }
+
         final long start = System.currentTimeMillis();
 
         // やりとりの準備。
@@ -70,7 +75,7 @@ final class CheckDemandDriver {
 
         // 手紙の準備。
         final List<Message> mail = new ArrayList<>(2);
-        final Pair<Address, Address> domain = this.network.getDomain();
+        final Pair<Address, Address> domain = (operation.getRange() != null ? operation.getRange() : this.network.getDomain());
         final List<StockEntry> entries = StockEntry.getStockedEntries(this.storage, domain.getFirst(), domain.getSecond(), this.entryLimit,
                 new ArrayList<StockEntry>(0), this.idRegistry, this.backupTypes);
         if (entries.isEmpty()) {
@@ -0,0 +1,44 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestBlockingDriver {
+
+    private static final Logger LOG = Logger.getLogger(CheckDigestBlockingDriver.class.getName());
+
+    private final OperationAggregator<CheckDigestOperation, CheckDigestResult> aggregator;
+    private final CheckDigestDriver coreDriver;
+
+    CheckDigestBlockingDriver(final OperationAggregator<CheckDigestOperation, CheckDigestResult> aggregator, final CheckDigestDriver coreDriver) {
+        if (aggregator == null) {
+            throw new IllegalArgumentException("Null aggregator.");
+        } else if (coreDriver == null) {
+            throw new IllegalArgumentException("Null core driver.");
+        }
+        this.aggregator = aggregator;
+        this.coreDriver = coreDriver;
+    }
+
+    CheckDigestResult execute(final CheckDigestOperation operation, final long timeout) throws InterruptedException, IOException {
+        final CheckingStation.Instrument<CheckDigestResult> instrument = this.aggregator.register(operation);
+        if (instrument != null) {
+            LOG.log(Level.FINEST, "{0} は先人の結果を待ちます。", operation);
+            return instrument.get(timeout);
+        }
+
+        // 自分でやる。
+        CheckDigestResult result = null;
+        try {
+            result = this.coreDriver.execute(operation, timeout);
+        } finally {
+            this.aggregator.free(operation, result);
+        }
+        return result;
+    }
+
+}
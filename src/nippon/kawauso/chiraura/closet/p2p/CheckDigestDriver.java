@@ -0,0 +1,188 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
+import nippon.kawauso.chiraura.lib.container.Pair;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.messenger.ConnectionTypes;
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.messenger.ReceivedMail;
+import nippon.kawauso.chiraura.storage.Chunk;
+import nippon.kawauso.chiraura.storage.Storage;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestDriver {
+
+    private static final Logger LOG = Logger.getLogger(CheckDigestDriver.class.getName());
+
+    /*
+     * 担当範囲全体の要約から始めて、食い違った範囲だけを分割して要約を比べ直す。
+     * 同期が取れていれば、1 往復で要約 1 つを送るだけで終わる。
+     * 含まれるデータ片が少なくなった範囲、それ以上分割できない範囲、
+     * または、分割すると 1 回に送る範囲の数が多くなり過ぎる範囲は、
+     * 食い違った範囲として返す。
+     */
+
+    // 参照。
+    private final NetworkWrapper network;
+    private final StorageWrapper storage;
+    private final SessionManager sessionManager;
+    private final TypeRegistry<Chunk.Id<?>> idRegistry;
+
+    private final Set<Class<? extends Chunk>> backupTypes;
+    private final BlockingQueue<OutlawReport> outlawReportSink;
+
+    CheckDigestDriver(final NetworkWrapper network, final StorageWrapper storage, final SessionManager sessionManager,
+            final TypeRegistry<Chunk.Id<?>> idRegistry, final Set<Class<? extends Chunk>> backupTypes, final BlockingQueue<OutlawReport> outlawReportSink) {
+        if (network == null) {
+            throw new IllegalArgumentException("Null network.");
+        } else if (storage == null) {
+            throw new IllegalArgumentException("Null storage.");
+        } else if (sessionManager == null) {
+            throw new IllegalArgumentException("Null session manager.");
+        } else if (idRegistry == null) {
+            throw new IllegalArgumentException("Null id registry.");
+        } else if (backupTypes == null) {
+            throw new IllegalArgumentException("Null backup types.");
+        } else if (outlawReportSink == null) {
+            throw new IllegalArgumentException("Null outlaw report sink.");
+        }
+        this.network = network;
+        this.storage = storage;
+        this.sessionManager = sessionManager;
+        this.idRegistry = idRegistry;
+
+        this.backupTypes = backupTypes;
+        this.outlawReportSink = outlawReportSink;
+    }
+
+    CheckDigestResult execute(final CheckDigestOperation operation, final long timeout) throws InterruptedException, IOException {
+        if (!this.network.isHashComparable(operation.getDestination())) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので {1} を諦めます。", new Object[] { operation.getDestination(), operation });
+            return CheckDigestResult.newGiveUp();
+        }
+
+        final long start = System.currentTimeMillis();
+
+        final Pair<Address, Address> domain = this.network.getDomain();
+        final List<Storage.Index> indices = DigestTree.filter(this.storage.getIndices(domain.getFirst(), domain.getSecond()), this.backupTypes);
+
+        // 比べる範囲。
+        List<Pair<Address, Address>> ranges = new ArrayList<>(1);
+        List<List<Storage.Index>> rangeIndices = new ArrayList<>(1);
+        List<RangeDigest> digests = new ArrayList<>(1);
+        ranges.add(domain);
+        rangeIndices.add(indices);
+        digests.add(new RangeDigest(domain.getFirst(), domain.getSecond(), DigestTree.digest(indices, this.idRegistry)));
+
+        final List<Pair<Address, Address>> differentRanges = new ArrayList<>();
+        for (int depth = 0; !digests.isEmpty(); depth++) {
+            final CheckDigestReply reply = exchange(operation, digests, start + timeout - System.currentTimeMillis());
+            if (reply == null) {
+                return CheckDigestResult.newGiveUp();
+            }
+
+            final List<Pair<Address, Address>> nextRanges = new ArrayList<>();
+            final List<List<Storage.Index>> nextRangeIndices = new ArrayList<>();
+            final List<RangeDigest> nextDigests = new ArrayList<>();
+            for (int i = 0; i < digests.size(); i++) {
+                if (!reply.isDifferent(i)) {
+                    continue;
+                }
+                final Pair<Address, Address> range = ranges.get(i);
+                if (depth + 1 >= DigestTree.MAX_DEPTH || rangeIndices.get(i).size() <= DigestTree.LEAF_SIZE || range.getFirst().equals(range.getSecond())
+                        || nextDigests.size() + DigestTree.FANOUT > DigestTree.RANGE_LIMIT) {
+                    differentRanges.add(range);
+                } else {
+                    nextDigests.addAll(DigestTree.split(range.getFirst(), range.getSecond(), rangeIndices.get(i), this.idRegistry, nextRanges,
+                            nextRangeIndices));
+                }
+            }
+            ranges = nextRanges;
+            rangeIndices = nextRangeIndices;
+            digests = nextDigests;
+        }
+
+        LOG.log(Level.FINEST, "{0} との要約の比較で {1} 個の範囲が食い違いました。", new Object[] { operation.getDestination(), differentRanges.size() });
+        return new CheckDigestResult(differentRanges);
+    }
+
+    /**
+     * 要約を送って食い違いを教えてもらう。
+     * @param operation 操作
+     * @param digests 送る要約
+     * @param timeout 制限時間
+     * @return 返答。
+     *         失敗した場合は null
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private CheckDigestReply exchange(final CheckDigestOperation operation, final List<RangeDigest> digests, final long timeout)
+            throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        if (timeout <= 0) {
+            LOG.log(Level.FINEST, "{0} は時間切れになりました。", operation);
+            return null;
+        }
+
+        // やりとりの準備。
+        final Session session = this.sessionManager.newSession(operation.getDestination());
+
+        // 手紙の準備。
+        final List<Message> mail = new ArrayList<>(2);
+        final CheckDigestMessage message = new CheckDigestMessage(digests);
+        mail.add(message);
+        mail.add(new SessionMessage(session));
+
+        LOG.log(Level.FINEST, "{0} と {1} の要約を比べます。", new Object[] { operation.getDestination(), message });
+
+        // 送受信。
+        this.network.sendMail(operation.getDestination(), ConnectionTypes.DATA, mail);
+        final ReceivedMail receivedMail = this.sessionManager.waitReply(session, timeout);
+
+        if (receivedMail == null) {
+            if (start + timeout <= System.currentTimeMillis()) {
+                /*
+                 * 要約の比較を知らない個体もいるので、時間切れでも罰しない。
+                 * 続けて行う担当範囲全体の在庫確認で判断する。
+                 */
+                LOG.log(Level.FINEST, "{0} は時間切れになりました。", operation);
+            } else {
+                // 通信異常。
+                // エラー報告が別に上がっているはずなので、ここで個体の削除はしない。
+                LOG.log(Level.FINER, "なぜか {0} は失敗しました。", operation);
+            }
+            return null;
+        } else if (receivedMail.getMail().get(0) instanceof CheckDigestReply) {
+            // 通信網の更新。
+            LOG.log(Level.FINEST, "{0} から {1} の結果が返ってきました。", new Object[] { operation.getDestination(), operation });
+            this.network.addActivePeer(receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            final CheckDigestReply reply = (CheckDigestReply) receivedMail.getMail().get(0);
+            if (reply.isRejected()) {
+                LOG.log(Level.FINEST, "{0} は断られました。", operation);
+                return null;
+            } else if (reply.isGivenUp()) {
+                LOG.log(Level.FINEST, "{0} は諦められました。", operation);
+                return null;
+            } else {
+                return reply;
+            }
+        } else {
+            // プロトコル違反。
+            LOG.log(Level.WARNING, "{0} からの返信の型 {1} は期待する型 {2} と異なります。", new Object[] { operation.getDestination(),
+                    receivedMail.getMail().get(0).getClass(), CheckDigestReply.class });
+            ConcurrentFunctions.completePut(new OutlawReport(operation.getDestination()), this.outlawReportSink);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.messenger.Message;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestMessage implements Message {
+
+    private final List<RangeDigest> digests;
+
+    CheckDigestMessage(final List<RangeDigest> digests) {
+        if (digests == null) {
+            throw new IllegalArgumentException("Null digests.");
+        }
+        this.digests = digests;
+    }
+
+    List<RangeDigest> getDigests() {
+        return this.digests;
+    }
+
+    @Override
+    public int byteSize() {
+        return BytesConversion.byteSize("ao", this.digests);
+    }
+
+    @Override
+    public int toStream(final OutputStream output) throws IOException {
+        return BytesConversion.toStream(output, "ao", this.digests);
+    }
+
+    static BytesConvertible.Parser<CheckDigestMessage> getParser() {
+        return new BytesConvertible.Parser<CheckDigestMessage>() {
+            @Override
+            public int fromStream(final InputStream input, final int maxByteSize, final List<? super CheckDigestMessage> output) throws MyRuleException,
+                    IOException {
+                final List<RangeDigest> digests = new ArrayList<>();
+                final int size = BytesConversion.fromStream(input, maxByteSize, "ao", digests, RangeDigest.getParser());
+                output.add(new CheckDigestMessage(digests));
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buff = (new StringBuilder(this.getClass().getSimpleName())).append("[numOfRanges=").append(this.digests.size());
+        if (!this.digests.isEmpty()) {
+            buff.append(", [").append(this.digests.get(0).getStartAddress())
+                    .append(", ").append(this.digests.get(this.digests.size() - 1).getEndAddress())
+                    .append(']');
+        }
+        return buff.append(']').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return this.digests.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof CheckDigestMessage)) {
+            return false;
+        }
+        final CheckDigestMessage other = (CheckDigestMessage) obj;
+        return this.digests.equals(other.digests);
+    }
+
+}
@@ -0,0 +1,98 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.messenger.ConnectionTypes;
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.storage.Chunk;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestMessageDriver {
+
+    private static final Logger LOG = Logger.getLogger(CheckDigestMessageDriver.class.getName());
+
+    // 参照。
+    private final NetworkWrapper network;
+    private final StorageWrapper storage;
+    private final TypeRegistry<Chunk.Id<?>> idRegistry;
+
+    private final Set<Class<? extends Chunk>> backupTypes;
+
+    CheckDigestMessageDriver(final NetworkWrapper network, final StorageWrapper storage, final TypeRegistry<Chunk.Id<?>> idRegistry,
+            final Set<Class<? extends Chunk>> backupTypes) {
+        if (network == null) {
+            throw new IllegalArgumentException("Null network.");
+        } else if (storage == null) {
+            throw new IllegalArgumentException("Null storage.");
+        } else if (idRegistry == null) {
+            throw new IllegalArgumentException("Null id registry.");
+        } else if (backupTypes == null) {
+            throw new IllegalArgumentException("Null backup types.");
+        }
+        this.network = network;
+        this.storage = storage;
+        this.idRegistry = idRegistry;
+
+        this.backupTypes = backupTypes;
+    }
+
+    private boolean isAcceptable(final CheckDigestMessage message, final PublicKey sourceId) {
+        if (message.getDigests().size() > DigestTree.RANGE_LIMIT) {
+            return false;
+        }
+        for (final RangeDigest digest : message.getDigests()) {
+            if (this.network.moreAppropriate(digest.getStartAddress(), sourceId) || this.network.moreAppropriate(digest.getEndAddress(), sourceId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void execute(final CheckDigestMessage message, final Session session, final PublicKey sourceId, final InetSocketAddress source) throws InterruptedException {
+        final List<Message> reply = new ArrayList<>(2);
+        if (!this.network.isHashComparable(source)) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので、依頼された {1} を諦めます。", new Object[] { source, message });
+            reply.add(CheckDigestReply.newGiveUp());
+        } else if (!isAcceptable(message, sourceId)) {
+            LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
+            reply.add(CheckDigestReply.newRejected());
+        } else {
+            // 要約の比較。
+            try {
+                final boolean[] differences = new boolean[message.getDigests().size()];
+                int count = 0;
+                for (int i = 0; i < differences.length; i++) {
+                    final RangeDigest digest = message.getDigests().get(i);
+                    differences[i] = !digest.getDigest().equals(
+                            DigestTree.digest(DigestTree.filter(this.storage.getIndices(digest.getStartAddress(), digest.getEndAddress()), this.backupTypes),
+                                    this.idRegistry));
+                    if (differences[i]) {
+                        count++;
+                    }
+                }
+                LOG.log(Level.FINEST, "{0} に依頼された {1} への返答に {2} 個の食い違いを報告しました。", new Object[] { source, message, count });
+                reply.add(new CheckDigestReply(differences));
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "異常が発生しました。", e);
+                LOG.log(Level.INFO, "{0} に依頼された {1} を諦めます。", new Object[] { source, message });
+                reply.add(CheckDigestReply.newGiveUp());
+            }
+        }
+        reply.add(new SessionReply(session));
+
+        // 返信する。
+        this.network.sendMail(source, ConnectionTypes.DATA, reply);
+        return;
+    }
+
+}
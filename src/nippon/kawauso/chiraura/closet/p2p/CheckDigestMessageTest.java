@@ -0,0 +1,45 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import nippon.kawauso.chiraura.lib.base.AddressTest;
+import nippon.kawauso.chiraura.lib.base.HashValueTest;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class CheckDigestMessageTest extends BytesConvertibleTest<CheckDigestMessage> {
+
+    private static RangeDigest newRangeDigest(final int seed) {
+        return new RangeDigest(AddressTest.newInstance(seed), AddressTest.newInstance(seed + 1), HashValueTest.newInstance(seed + 2));
+    }
+
+    @Override
+    protected CheckDigestMessage[] getInstances() {
+        int seed = 0;
+        return new CheckDigestMessage[] {
+                new CheckDigestMessage(new ArrayList<RangeDigest>(0)),
+                new CheckDigestMessage(Arrays.asList(newRangeDigest(seed++))),
+                new CheckDigestMessage(Arrays.asList(newRangeDigest(seed++), newRangeDigest(seed++), newRangeDigest(seed++))),
+        };
+    }
+
+    @Override
+    protected CheckDigestMessage getInstance(final int seed) {
+        return new CheckDigestMessage(Arrays.asList(newRangeDigest(seed), newRangeDigest(seed + 3), newRangeDigest(seed + 6)));
+    }
+
+    @Override
+    protected BytesConvertible.Parser<CheckDigestMessage> getParser() {
+        return CheckDigestMessage.getParser();
+    }
+
+    @Override
+    protected int getNumOfLoops() {
+        return 100_000;
+    }
+
+}
@@ -0,0 +1,50 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 在庫の要約の比較。
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestOperation implements Operation {
+
+    private final InetSocketAddress destination;
+
+    CheckDigestOperation(final InetSocketAddress destination) {
+        if (destination == null) {
+            throw new IllegalArgumentException("Null destination.");
+        }
+        this.destination = destination;
+    }
+
+    InetSocketAddress getDestination() {
+        return this.destination;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.destination.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof CheckDigestOperation)) {
+            return false;
+        }
+        /*
+         * 1 つの個体に対して 1 つしか実行しない。
+         */
+        final CheckDigestOperation other = (CheckDigestOperation) obj;
+        return this.destination.equals(other.destination);
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append('[').append(this.destination)
+                .append(']').toString();
+    }
+
+}
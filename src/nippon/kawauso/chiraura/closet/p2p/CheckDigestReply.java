@@ -0,0 +1,179 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.StreamFunctions;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.messenger.Message;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestReply implements Message {
+
+    private final boolean rejected;
+    private final boolean giveUp;
+
+    /*
+     * 要約が食い違った範囲の印。
+     * i 番目の範囲が食い違っていたら、i / 8 バイト目の i % 8 ビット目が立つ。
+     */
+    private final byte[] differences;
+
+    private CheckDigestReply(final boolean rejected, final boolean giveUp, final byte[] differences) {
+        this.rejected = rejected;
+        this.giveUp = giveUp;
+        this.differences = differences;
+    }
+
+    static CheckDigestReply newRejected() {
+        return new CheckDigestReply(true, false, null);
+    }
+
+    static CheckDigestReply newGiveUp() {
+        return new CheckDigestReply(false, true, null);
+    }
+
+    private CheckDigestReply(final byte[] differences) {
+        this(false, false, differences);
+    }
+
+    /**
+     * 作成する。
+     * @param differences 範囲ごとの要約が食い違ったかどうか
+     */
+    CheckDigestReply(final boolean[] differences) {
+        this(toBits(differences));
+    }
+
+    private static byte[] toBits(final boolean[] differences) {
+        if (differences == null) {
+            throw new IllegalArgumentException("Null differences.");
+        }
+        final byte[] bits = new byte[(differences.length + Byte.SIZE - 1) / Byte.SIZE];
+        for (int i = 0; i < differences.length; i++) {
+            if (differences[i]) {
+                bits[i / Byte.SIZE] |= 1 << (i % Byte.SIZE);
+            }
+        }
+        return bits;
+    }
+
+    boolean isRejected() {
+        return this.rejected;
+    }
+
+    boolean isGivenUp() {
+        return this.giveUp;
+    }
+
+    /**
+     * @param index 範囲の番号
+     * @return その範囲の要約が食い違っていたら true
+     */
+    boolean isDifferent(final int index) {
+        final int i = index / Byte.SIZE;
+        if (i >= this.differences.length) {
+            return false;
+        }
+        return (this.differences[i] & (1 << (index % Byte.SIZE))) != 0;
+    }
+
+    /*
+     * 先頭バイトは、正常なら 1、諦めたなら 2、拒否ならそれ以外。
+     */
+
+    @Override
+    public int byteSize() {
+        if (this.rejected) {
+            return 1;
+        } else if (this.giveUp) {
+            return 1;
+        } else {
+            return 1 + BytesConversion.byteSize("ab", this.differences);
+        }
+    }
+
+    @Override
+    public int toStream(final OutputStream output) throws IOException {
+        if (this.rejected) {
+            output.write(0);
+            return 1;
+        } else if (this.giveUp) {
+            output.write(2);
+            return 1;
+        } else {
+            output.write(1);
+            return 1 + BytesConversion.toStream(output, "ab", this.differences);
+        }
+    }
+
+    static BytesConvertible.Parser<CheckDigestReply> getParser() {
+        return new BytesConvertible.Parser<CheckDigestReply>() {
+            @Override
+            public int fromStream(final InputStream input, final int maxByteSize, final List<? super CheckDigestReply> output) throws MyRuleException,
+                    IOException {
+                if (maxByteSize < 1) {
+                    throw new MyRuleException("Too short read limit ( " + maxByteSize + " ).");
+                }
+                final byte[] flag = StreamFunctions.completeRead(input, 1);
+                int size = 1;
+                if (flag[0] == 1) {
+                    final byte[][] differences = new byte[1][];
+                    size += BytesConversion.fromStream(input, maxByteSize - size, "ab", (Object) differences);
+                    output.add(new CheckDigestReply(differences[0]));
+                } else if (flag[0] == 2) {
+                    output.add(CheckDigestReply.newGiveUp());
+                } else {
+                    output.add(CheckDigestReply.newRejected());
+                }
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buff = (new StringBuilder(this.getClass().getSimpleName())).append('[');
+        if (this.rejected) {
+            buff.append("reject");
+        } else if (this.giveUp) {
+            buff.append("giveUp");
+        } else {
+            int count = 0;
+            for (final byte b : this.differences) {
+                count += Integer.bitCount(b & 0xff);
+            }
+            buff.append("numOfDifferences=").append(count);
+        }
+        return buff.append(']').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (this.rejected ? 1231 : 1237);
+        result = prime * result + (this.giveUp ? 1231 : 1237);
+        result = prime * result + Arrays.hashCode(this.differences);
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof CheckDigestReply)) {
+            return false;
+        }
+        final CheckDigestReply other = (CheckDigestReply) obj;
+        return this.rejected == other.rejected && this.giveUp == other.giveUp && Arrays.equals(this.differences, other.differences);
+    }
+
+}
@@ -0,0 +1,17 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestReplyDriver {
+
+    private static final Logger LOG = Logger.getLogger(CheckDigestReplyDriver.class.getName());
+
+    void execute(final CheckDigestReply reply) {
+        LOG.log(Level.FINEST, "{0} に対してすることはありません。", reply);
+    }
+
+}
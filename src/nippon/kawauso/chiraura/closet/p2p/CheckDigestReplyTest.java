@@ -0,0 +1,60 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class CheckDigestReplyTest extends BytesConvertibleTest<CheckDigestReply> {
+
+    @Override
+    protected CheckDigestReply[] getInstances() {
+        return new CheckDigestReply[] {
+                CheckDigestReply.newRejected(),
+                CheckDigestReply.newGiveUp(),
+                new CheckDigestReply(new boolean[0]),
+                new CheckDigestReply(new boolean[] { true }),
+                new CheckDigestReply(new boolean[] { false, true, false, false, true, true, false, false, true, false, true }),
+        };
+    }
+
+    @Override
+    protected CheckDigestReply getInstance(final int seed) {
+        final boolean[] differences = new boolean[Integer.SIZE];
+        for (int i = 0; i < differences.length; i++) {
+            differences[i] = ((seed >>> i) & 1) != 0;
+        }
+        return new CheckDigestReply(differences);
+    }
+
+    @Override
+    protected BytesConvertible.Parser<CheckDigestReply> getParser() {
+        return CheckDigestReply.getParser();
+    }
+
+    @Override
+    protected int getNumOfLoops() {
+        return 100_000;
+    }
+
+    /**
+     * 食い違いの印の検査。
+     */
+    @Test
+    public void testDifferences() {
+        final boolean[] differences = new boolean[DigestTree.RANGE_LIMIT];
+        for (int i = 0; i < differences.length; i++) {
+            differences[i] = (i % 3 == 0);
+        }
+        final CheckDigestReply instance = new CheckDigestReply(differences);
+        for (int i = 0; i < differences.length; i++) {
+            Assert.assertEquals(differences[i], instance.isDifferent(i));
+        }
+        Assert.assertFalse(instance.isDifferent(differences.length + Byte.SIZE));
+    }
+
+}
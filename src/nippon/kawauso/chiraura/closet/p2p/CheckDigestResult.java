@@ -0,0 +1,43 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.container.Pair;
+
+/**
+ * 在庫の要約の比較の結果。
+ * 1. 要約が食い違ったアドレス範囲の一覧。
+ * 2. 諦め。
+ * @author chirauraNoSakusha
+ */
+final class CheckDigestResult {
+
+    private final boolean giveUp;
+    private final List<Pair<Address, Address>> differentRanges;
+
+    private CheckDigestResult(final boolean giveUp, final List<Pair<Address, Address>> differentRanges) {
+        this.giveUp = giveUp;
+        this.differentRanges = differentRanges;
+    }
+
+    static CheckDigestResult newGiveUp() {
+        return new CheckDigestResult(true, null);
+    }
+
+    CheckDigestResult(final List<Pair<Address, Address>> differentRanges) {
+        this(false, differentRanges);
+        if (differentRanges == null) {
+            throw new IllegalArgumentException("Null different ranges.");
+        }
+    }
+
+    boolean isGivenUp() {
+        return this.giveUp;
+    }
+
+    List<Pair<Address, Address>> getDifferentRanges() {
+        return this.differentRanges;
+    }
+
+}
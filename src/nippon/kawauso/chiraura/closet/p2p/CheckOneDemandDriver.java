@@ -50,6 +50,11 @@ final class CheckOneDemandDriver {
     }
 
     CheckOneDemandResult execute(final CheckOneDemandOperation operation, final long timeout) throws InterruptedException, IOException {
+        if (!this.network.isHashComparable(operation.getDestination())) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので {1} を諦めます。", new Object[] { operation.getDestination(), operation });
+            return CheckOneDemandResult.newGiveUp();
+        }
+
         final long start = System.currentTimeMillis();
 
         // やりとりの準備。
@@ -48,7 +48,10 @@ final class CheckOneDemandMessageDriver {
     void execute(final CheckOneDemandMessage message, final Session session, final PublicKey sourceId, final InetSocketAddress source)
             throws InterruptedException {
         final List<Message> reply = new ArrayList<>(2);
-        if (this.network.moreAppropriate(message.getCandidate().getId().getAddress(), sourceId)) {
+        if (!this.network.isHashComparable(source)) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので、依頼された {1} を諦めます。", new Object[] { source, message });
+            reply.add(CheckOneDemandReply.newGiveUp());
+        } else if (this.network.moreAppropriate(message.getCandidate().getId().getAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
             reply.add(CheckOneDemandReply.newRejected());
         } else {
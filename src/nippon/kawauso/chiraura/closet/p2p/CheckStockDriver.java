@@ -63,6 +63,11 @@ final class CheckStockDriver {
     }
 
     CheckStockResult execute(final CheckStockOperation operation, final long timeout) throws InterruptedException, IOException {
+        if (!this.network.isHashComparable(operation.getDestination())) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので {1} を諦めます。", new Object[] { operation.getDestination(), operation });
+            return CheckStockResult.newGiveUp();
+        }
+
         final long start = System.currentTimeMillis();
 
         // やりとりの準備。
@@ -70,7 +75,7 @@ final class CheckStockDriver {
 
         // 手紙の準備。
         final List<Message> mail = new ArrayList<>(2);
-        final Pair<Address, Address> domain = this.network.getDomain();
+        final Pair<Address, Address> domain = (operation.getRange() != null ? operation.getRange() : this.network.getDomain());
         final List<StockEntry> exclusive = StockEntry.getStockedEntries(this.storage, domain.getFirst(), domain.getSecond(), this.entryLimit,
                 new ArrayList<StockEntry>(0), this.idRegistry, this.backupTypes);
         mail.add(new CheckStockMessage(domain.getFirst(), domain.getSecond(), exclusive));
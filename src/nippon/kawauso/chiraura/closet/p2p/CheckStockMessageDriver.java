@@ -52,7 +52,10 @@ final class CheckStockMessageDriver {
 
     void execute(final CheckStockMessage message, final Session session, final PublicKey sourceId, final InetSocketAddress source) throws InterruptedException {
         final List<Message> reply = new ArrayList<>(2);
-        if (this.network.moreAppropriate(message.getStartAddress(), sourceId) || this.network.moreAppropriate(message.getEndAddress(), sourceId)) {
+        if (!this.network.isHashComparable(source)) {
+            LOG.log(Level.FINEST, "{0} とはハッシュ値の計算方式が違うので、依頼された {1} を諦めます。", new Object[] { source, message });
+            reply.add(CheckStockReply.newGiveUp());
+        } else if (this.network.moreAppropriate(message.getStartAddress(), sourceId) || this.network.moreAppropriate(message.getEndAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
             reply.add(CheckStockReply.newRejected());
         } else {
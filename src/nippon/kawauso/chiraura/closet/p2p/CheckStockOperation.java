@@ -2,6 +2,9 @@ package nippon.kawauso.chiraura.closet.p2p;
 
 import java.net.InetSocketAddress;
 
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.container.Pair;
+
 /**
  * 在庫確認。
  * @author chirauraNoSakusha
@@ -10,20 +13,43 @@ final class CheckStockOperation implements Operation {
 
     final InetSocketAddress destination;
 
-    CheckStockOperation(final InetSocketAddress destination) {
+    /*
+     * 確認するアドレス範囲。
+     * null なら担当範囲全体。
+     */
+    private final Pair<Address, Address> range;
+
+    CheckStockOperation(final InetSocketAddress destination, final Pair<Address, Address> range) {
         if (destination == null) {
             throw new IllegalArgumentException("Null destination.");
         }
         this.destination = destination;
+        this.range = range;
+    }
+
+    CheckStockOperation(final InetSocketAddress destination) {
+        this(destination, null);
     }
 
     InetSocketAddress getDestination() {
         return this.destination;
     }
 
+    /**
+     * @return 確認するアドレス範囲。
+     *         担当範囲全体なら null
+     */
+    Pair<Address, Address> getRange() {
+        return this.range;
+    }
+
     @Override
     public int hashCode() {
-        return this.destination.hashCode();
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.destination.hashCode();
+        result = prime * result + ((this.range == null) ? 0 : this.range.hashCode());
+        return result;
     }
 
     @Override
@@ -34,16 +60,23 @@ final class CheckStockOperation implements Operation {
             return false;
         }
         /*
-         * 1 つの個体に対して 1 つしか実行しない。
+         * 1 つの個体の 1 つの範囲に対して 1 つしか実行しない。
          */
         final CheckStockOperation other = (CheckStockOperation) obj;
-        return this.destination.equals(other.destination);
+        if (!this.destination.equals(other.destination)) {
+            return false;
+        } else if (this.range == null) {
+            return other.range == null;
+        } else {
+            return this.range.equals(other.range);
+        }
     }
 
     @Override
     public String toString() {
         return (new StringBuilder(this.getClass().getSimpleName()))
                 .append('[').append(this.destination)
+                .append(", ").append(this.range)
                 .append(']').toString();
     }
 
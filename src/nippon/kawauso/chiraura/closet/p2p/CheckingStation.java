@@ -2,8 +2,6 @@ package nippon.kawauso.chiraura.closet.p2p;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 目的が同じ仕事人を1人しか通さない関所。
@@ -19,12 +17,10 @@ final class CheckingStation<K, V> {
      */
     static final class Instrument<T> {
 
-        private final CountDownLatch barrier;
-        private T result;
+        private final OperationFuture<T> result;
 
         private Instrument() {
-            this.barrier = new CountDownLatch(1);
-            this.result = null;
+            this.result = new OperationFuture<>();
         }
 
         /**
@@ -36,11 +32,15 @@ final class CheckingStation<K, V> {
          * @throws InterruptedException 割り込まれた場合
          */
         T get(final long timeout) throws InterruptedException {
-            if (this.barrier.await(timeout, TimeUnit.MILLISECONDS)) {
-                return this.result;
-            } else {
-                return this.result;
-            }
+            return this.result.get(timeout);
+        }
+
+        /**
+         * 待たずに結果を受け取る。
+         * @param listener 結果が通知されたときの処理
+         */
+        void addListener(final OperationFuture.Listener<? super T> listener) {
+            this.result.addListener(listener);
         }
 
         /**
@@ -48,8 +48,7 @@ final class CheckingStation<K, V> {
          * @param result 結果
          */
         private void set(final T result) {
-            this.result = result;
-            this.barrier.countDown();
+            this.result.set(result);
         }
 
     }
@@ -0,0 +1,194 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.container.Pair;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.storage.Chunk;
+import nippon.kawauso.chiraura.storage.Storage;
+
+/**
+ * アドレス範囲を木状に分割して、範囲ごとの在庫の要約を計算する。
+ * @author chirauraNoSakusha
+ */
+final class DigestTree {
+
+    /*
+     * 範囲の要約は、範囲内のデータ片それぞれのハッシュ値の排他的論理和。
+     * 順番に依らないので、子の範囲の要約を全部足せば親の範囲の要約になる。
+     *
+     * データ片のハッシュ値は、StockEntry の新旧判定に合わせて、
+     * 差分形式なら識別子、日付、内容のハッシュ値から、
+     * そうでなければ識別子と日付から計算する。
+     * なので、要約が一致する範囲では在庫確認をしても何も出て来ない。
+     */
+
+    /**
+     * 1 つの範囲を分割する数。
+     */
+    static final int FANOUT = 16;
+
+    /**
+     * この数以下のデータ片しか含まない範囲はそれ以上分割しない。
+     */
+    static final int LEAF_SIZE = 16;
+
+    /**
+     * 分割の深さの上限。
+     */
+    static final int MAX_DEPTH = 8;
+
+    /**
+     * 1 回のやりとりで送る範囲の数の上限。
+     */
+    static final int RANGE_LIMIT = 256;
+
+    private static final BigInteger MODULUS = BigInteger.ZERO.setBit(Address.SIZE);
+
+    private static final int DIGEST_BYTE_SIZE = (HashValue.SIZE + Byte.SIZE - 1) / Byte.SIZE;
+
+    // インスタンス化防止。
+    private DigestTree() {}
+
+    private static BigInteger getWidth(final Address start, final Address end) {
+        // end == start - 1 なら全域で 2^SIZE になる。
+        return end.toBigInteger().subtract(start.toBigInteger()).mod(MODULUS).add(BigInteger.ONE);
+    }
+
+    private static Address toAddress(final BigInteger value) {
+        return new Address(value.mod(MODULUS), Address.SIZE);
+    }
+
+    /**
+     * 範囲を分割する。
+     * @param start 範囲の先頭
+     * @param end 範囲の末尾
+     * @return 分割した範囲。
+     *         範囲が FANOUT より狭い場合は 1 アドレスずつの範囲
+     */
+    static List<Pair<Address, Address>> split(final Address start, final Address end) {
+        final BigInteger width = getWidth(start, end);
+        final int n = width.compareTo(BigInteger.valueOf(FANOUT)) < 0 ? width.intValue() : FANOUT;
+        final BigInteger base = start.toBigInteger();
+        final List<Pair<Address, Address>> ranges = new ArrayList<>(n);
+        BigInteger next = base;
+        for (int i = 0; i < n; i++) {
+            final BigInteger cur = next;
+            next = base.add(width.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(n)));
+            ranges.add(new Pair<>(toAddress(cur), toAddress(next.subtract(BigInteger.ONE))));
+        }
+        return ranges;
+    }
+
+    /**
+     * split で分割したときに、アドレスがどの範囲に入るかを返す。
+     * @param start 範囲の先頭
+     * @param end 範囲の末尾
+     * @param numOfRanges split で分割した範囲の数
+     * @param target 調べるアドレス
+     * @return target が入る範囲の番号。
+     *         範囲外なら負値
+     */
+    static int indexOf(final Address start, final Address end, final int numOfRanges, final Address target) {
+        final BigInteger width = getWidth(start, end);
+        final BigInteger offset = target.toBigInteger().subtract(start.toBigInteger()).mod(MODULUS);
+        if (offset.compareTo(width) >= 0) {
+            return -1;
+        }
+        // 先頭が offset 以下である最後の範囲。
+        return offset.add(BigInteger.ONE).multiply(BigInteger.valueOf(numOfRanges)).subtract(BigInteger.ONE).divide(width).intValue();
+    }
+
+    /**
+     * 複製対象のデータ片だけを残す。
+     * @param indices データ片の概要
+     * @param backupTypes 複製対象のデータ片の型
+     * @return 複製対象のデータ片の概要
+     */
+    static List<Storage.Index> filter(final Collection<Storage.Index> indices, final Set<Class<? extends Chunk>> backupTypes) {
+        final List<Storage.Index> filtered = new ArrayList<>(indices.size());
+        for (final Storage.Index index : indices) {
+            if (backupTypes.contains(index.getId().getChunkClass())) {
+                filtered.add(index);
+            }
+        }
+        return filtered;
+    }
+
+    private static void accumulate(final byte[] digest, final MessageDigest calculator, final Storage.Index index,
+            final TypeRegistry<Chunk.Id<?>> idRegistry) {
+        final byte[] bytes;
+        if (Mountain.class.isAssignableFrom(index.getId().getChunkClass())) {
+            bytes = BytesConversion.toBytes("lolo", idRegistry.getId(index.getId()), index.getId(), index.getDate(), index.getHashValue());
+        } else {
+            bytes = BytesConversion.toBytes("lol", idRegistry.getId(index.getId()), index.getId(), index.getDate());
+        }
+        final byte[] entryDigest = calculator.digest(bytes);
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] ^= entryDigest[i];
+        }
+    }
+
+    private static HashValue toHashValue(final byte[] digest) {
+        return new HashValue(new BigInteger(1, digest), HashValue.SIZE);
+    }
+
+    /**
+     * 要約を計算する。
+     * @param indices 複製対象のデータ片の概要
+     * @param idRegistry 識別子の登記簿
+     * @return 要約
+     */
+    static HashValue digest(final Collection<Storage.Index> indices, final TypeRegistry<Chunk.Id<?>> idRegistry) {
+        final MessageDigest calculator = HashValue.newCalculator();
+        final byte[] digest = new byte[DIGEST_BYTE_SIZE];
+        for (final Storage.Index index : indices) {
+            accumulate(digest, calculator, index, idRegistry);
+        }
+        return toHashValue(digest);
+    }
+
+    /**
+     * 範囲を分割して、それぞれの要約を計算する。
+     * @param start 範囲の先頭
+     * @param end 範囲の末尾
+     * @param indices 範囲内の複製対象のデータ片の概要
+     * @param idRegistry 識別子の登記簿
+     * @param children 分割した範囲の格納先
+     * @param childIndices 分割した範囲に含まれるデータ片の概要の格納先
+     * @return 分割した範囲それぞれの要約
+     */
+    static List<RangeDigest> split(final Address start, final Address end, final Collection<Storage.Index> indices,
+            final TypeRegistry<Chunk.Id<?>> idRegistry, final List<Pair<Address, Address>> children, final List<List<Storage.Index>> childIndices) {
+        final List<Pair<Address, Address>> ranges = split(start, end);
+        final List<List<Storage.Index>> buckets = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            buckets.add(new ArrayList<Storage.Index>());
+        }
+        for (final Storage.Index index : indices) {
+            final int i = indexOf(start, end, ranges.size(), index.getId().getAddress());
+            if (i >= 0) {
+                buckets.get(i).add(index);
+            }
+        }
+
+        final List<RangeDigest> digests = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            final Pair<Address, Address> range = ranges.get(i);
+            digests.add(new RangeDigest(range.getFirst(), range.getSecond(), digest(buckets.get(i), idRegistry)));
+        }
+        children.addAll(ranges);
+        childIndices.addAll(buckets);
+        return digests;
+    }
+
+}
@@ -0,0 +1,222 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.base.HashValueTest;
+import nippon.kawauso.chiraura.lib.container.Pair;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.storage.Chunk;
+import nippon.kawauso.chiraura.storage.ConstantChunk;
+import nippon.kawauso.chiraura.storage.ConstantChunkTest;
+import nippon.kawauso.chiraura.storage.Storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class DigestTreeTest {
+
+    private static final class TestIndex implements Storage.Index {
+        private final Chunk.Id<?> id;
+        private final long date;
+        private final HashValue hashValue;
+
+        private TestIndex(final Chunk.Id<?> id, final long date, final HashValue hashValue) {
+            this.id = id;
+            this.date = date;
+            this.hashValue = hashValue;
+        }
+
+        @Override
+        public Chunk.Id<?> getId() {
+            return this.id;
+        }
+
+        @Override
+        public long getDate() {
+            return this.date;
+        }
+
+        @Override
+        public HashValue getHashValue() {
+            return this.hashValue;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof TestIndex)) {
+                return false;
+            }
+            return this.id.equals(((TestIndex) obj).id);
+        }
+    }
+
+    private final TypeRegistry<Chunk.Id<?>> idRegistry;
+
+    /**
+     * 初期化。
+     */
+    public DigestTreeTest() {
+        this.idRegistry = TypeRegistries.newRegistry();
+        this.idRegistry.register(0, ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+        this.idRegistry.register(2, GrowingBytes.Id.class, GrowingBytes.Id.getParser());
+    }
+
+    private static List<Storage.Index> newIndices(final int numOfIndices, final int seed) {
+        final List<Storage.Index> indices = new ArrayList<>(numOfIndices);
+        for (int i = 0; i < numOfIndices; i++) {
+            if (i % 2 == 0) {
+                indices.add(new TestIndex(ConstantChunkTest.newId(seed + i), seed + i, HashValueTest.newInstance(seed + i)));
+            } else {
+                indices.add(new TestIndex(GrowingBytesTest.newId(seed + i), seed + i, HashValueTest.newInstance(seed + i)));
+            }
+        }
+        return indices;
+    }
+
+    private static void checkSplit(final Address start, final Address end, final int numOfRanges) {
+        final List<Pair<Address, Address>> ranges = DigestTree.split(start, end);
+        Assert.assertEquals(numOfRanges, ranges.size());
+        Assert.assertEquals(start, ranges.get(0).getFirst());
+        Assert.assertEquals(end, ranges.get(ranges.size() - 1).getSecond());
+        for (int i = 1; i < ranges.size(); i++) {
+            // 隙間無く並んでいる。
+            Assert.assertEquals(ranges.get(i).getFirst().subtractOne(), ranges.get(i - 1).getSecond());
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            Assert.assertEquals(i, DigestTree.indexOf(start, end, ranges.size(), ranges.get(i).getFirst()));
+            Assert.assertEquals(i, DigestTree.indexOf(start, end, ranges.size(), ranges.get(i).getSecond()));
+        }
+    }
+
+    /**
+     * 分割の検査。
+     */
+    @Test
+    public void testSplit() {
+        // 全域。
+        checkSplit(Address.ZERO, Address.MAX, DigestTree.FANOUT);
+        checkSplit(Address.ZERO.addPowerOfTwo(10), Address.ZERO.addPowerOfTwo(10).subtractOne(), DigestTree.FANOUT);
+
+        // 一周してる。
+        checkSplit(Address.MAX.subtractOne(), Address.ZERO.addPowerOfTwo(100), DigestTree.FANOUT);
+
+        // 狭い。
+        checkSplit(Address.ZERO.addPowerOfTwo(3), Address.ZERO.addPowerOfTwo(3).addPowerOfTwo(2), 5);
+        checkSplit(Address.MAX, Address.MAX, 1);
+
+        // 範囲外。
+        Assert.assertTrue(DigestTree.indexOf(Address.ZERO.addPowerOfTwo(3), Address.ZERO.addPowerOfTwo(4), DigestTree.FANOUT, Address.ZERO) < 0);
+    }
+
+    /**
+     * 無作為なアドレスがちゃんと含まれる範囲に割り当てられるかどうか。
+     */
+    @Test
+    public void testIndexOf() {
+        final Random random = new Random(1L);
+        for (int i = 0; i < 1_000; i++) {
+            final Address start = new Address(new BigInteger(Address.SIZE, random), Address.SIZE);
+            final Address end = new Address(new BigInteger(Address.SIZE, random), Address.SIZE);
+            final List<Pair<Address, Address>> ranges = DigestTree.split(start, end);
+            final Address target = new Address(new BigInteger(Address.SIZE, random), Address.SIZE);
+            final int index = DigestTree.indexOf(start, end, ranges.size(), target);
+            if (index < 0) {
+                Assert.assertTrue(start.distanceTo(target).compareTo(start.distanceTo(end)) > 0);
+            } else {
+                final Pair<Address, Address> range = ranges.get(index);
+                Assert.assertTrue(range.getFirst().distanceTo(target).compareTo(range.getFirst().distanceTo(range.getSecond())) <= 0);
+            }
+        }
+    }
+
+    /**
+     * 要約が順番に依らず、子の要約から親の要約が求まるかどうか。
+     */
+    @Test
+    public void testDigest() {
+        final List<Storage.Index> indices = newIndices(1_000, 0);
+        final HashValue digest = DigestTree.digest(indices, this.idRegistry);
+
+        final List<Storage.Index> shuffled = new ArrayList<>(indices);
+        Collections.shuffle(shuffled, new Random(1L));
+        Assert.assertEquals(digest, DigestTree.digest(shuffled, this.idRegistry));
+
+        final List<Pair<Address, Address>> children = new ArrayList<>();
+        final List<List<Storage.Index>> childIndices = new ArrayList<>();
+        final List<RangeDigest> digests = DigestTree.split(Address.ZERO, Address.MAX, indices, this.idRegistry, children, childIndices);
+        Assert.assertEquals(DigestTree.FANOUT, digests.size());
+        Assert.assertEquals(children.size(), childIndices.size());
+        BigInteger sum = BigInteger.ZERO;
+        int count = 0;
+        for (int i = 0; i < digests.size(); i++) {
+            Assert.assertEquals(children.get(i).getFirst(), digests.get(i).getStartAddress());
+            Assert.assertEquals(children.get(i).getSecond(), digests.get(i).getEndAddress());
+            Assert.assertEquals(DigestTree.digest(childIndices.get(i), this.idRegistry), digests.get(i).getDigest());
+            sum = sum.xor(digests.get(i).getDigest().toBigInteger());
+            count += childIndices.get(i).size();
+        }
+        Assert.assertEquals(indices.size(), count);
+        Assert.assertEquals(digest.toBigInteger(), sum);
+
+        // 空。
+        Assert.assertEquals(BigInteger.ZERO, DigestTree.digest(new ArrayList<Storage.Index>(0), this.idRegistry).toBigInteger());
+    }
+
+    /**
+     * 新旧判定に使うものが変わったときだけ要約が変わるかどうか。
+     */
+    @Test
+    public void testDigestChange() {
+        final Storage.Index constant = new TestIndex(ConstantChunkTest.newId(1), 100L, HashValueTest.newInstance(1));
+        final Storage.Index mountain = new TestIndex(GrowingBytesTest.newId(2), 100L, HashValueTest.newInstance(2));
+        final HashValue digest = DigestTree.digest(Arrays.asList(constant, mountain), this.idRegistry);
+
+        // 差分形式でないなら、日付が同じなら中身は問わない。
+        Assert.assertEquals(digest, DigestTree.digest(
+                Arrays.<Storage.Index> asList(new TestIndex(constant.getId(), 100L, HashValueTest.newInstance(3)), mountain), this.idRegistry));
+        Assert.assertNotEquals(digest, DigestTree.digest(
+                Arrays.<Storage.Index> asList(new TestIndex(constant.getId(), 101L, constant.getHashValue()), mountain), this.idRegistry));
+
+        // 差分形式なら、日付が同じでも中身が違えば違う。
+        Assert.assertNotEquals(digest, DigestTree.digest(
+                Arrays.<Storage.Index> asList(constant, new TestIndex(mountain.getId(), 100L, HashValueTest.newInstance(3))), this.idRegistry));
+        Assert.assertNotEquals(digest, DigestTree.digest(Arrays.asList(constant), this.idRegistry));
+    }
+
+    /**
+     * 複製対象の絞り込みの検査。
+     */
+    @Test
+    public void testFilter() {
+        final List<Storage.Index> indices = newIndices(100, 0);
+        final Set<Class<? extends Chunk>> backupTypes = new HashSet<>();
+        Assert.assertTrue(DigestTree.filter(indices, backupTypes).isEmpty());
+        backupTypes.add(GrowingBytes.class);
+        final List<Storage.Index> filtered = DigestTree.filter(indices, backupTypes);
+        Assert.assertEquals(indices.size() / 2, filtered.size());
+        for (final Storage.Index index : filtered) {
+            Assert.assertEquals(GrowingBytes.class, index.getId().getChunkClass());
+        }
+    }
+
+}
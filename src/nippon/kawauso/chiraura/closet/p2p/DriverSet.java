@@ -25,6 +25,10 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
     private final AddressAccessMessageDriver addressAccessMessage;
     private final AddressAccessReplyDriver addressAccessReply;
 
+    private final RouteDriver route;
+    private final RouteMessageDriver routeMessage;
+    private final RouteReplyDriver routeReply;
+
     private final GetChunkDriver getChunk;
     private final GetChunkBlockingDriver getChunkBlocking;
     private final GetChunkNonBlockingDriver getChunkNonBlocking;
@@ -89,6 +93,11 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
     private final CheckDemandMessageDriver checkDemandMessage;
     private final CheckDemandReplyDriver checkDemandReply;
 
+    private final CheckDigestDriver checkDigest;
+    private final CheckDigestBlockingDriver checkDigestBlocking;
+    private final CheckDigestMessageDriver checkDigestMessage;
+    private final CheckDigestReplyDriver checkDigestReply;
+
     private final RecoveryDriver recovery;
     private final RecoveryNonBlockingDriver recoveryNonBlocking;
     private final RecoverySelectDriver recoverySelect;
@@ -127,7 +136,23 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
 
     DriverSet(final NetworkWrapper network, final StorageWrapper storage, final SessionManager sessionManager, final BlockingQueue<Operation> operationSink,
             final BlockingQueue<OutlawReport> outlawReportSink, final ExecutorService executor, final boolean portIgnore, final int checkChunkLimit,
-            final Set<Class<? extends Chunk>> backupTypes) {
+            final Set<Class<? extends Chunk>> backupTypes, final boolean iterativeRouting) {
+        this(network, storage, sessionManager, operationSink, outlawReportSink, executor, executor, executor, portIgnore, checkChunkLimit, backupTypes,
+                iterativeRouting);
+    }
+
+    /**
+     * 作成する。
+     * @param executor 自分で始める操作に使う実行機
+     * @param handlerExecutor 他の個体から依頼された操作に使う実行機。
+     *            溢れたら依頼を断る
+     * @param backupExecutor 複製と復元に使う実行機。
+     *            溢れたら今回は諦める
+     */
+    DriverSet(final NetworkWrapper network, final StorageWrapper storage, final SessionManager sessionManager, final BlockingQueue<Operation> operationSink,
+            final BlockingQueue<OutlawReport> outlawReportSink, final ExecutorService executor, final ExecutorService handlerExecutor,
+            final ExecutorService backupExecutor, final boolean portIgnore, final int checkChunkLimit, final Set<Class<? extends Chunk>> backupTypes,
+            final boolean iterativeRouting) {
         if (network == null) {
             throw new IllegalArgumentException("Null network.");
         } else if (storage == null) {
@@ -140,6 +165,10 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
             throw new IllegalArgumentException("Null outlaw report sink.");
         } else if (executor == null) {
             throw new IllegalArgumentException("Null executor.");
+        } else if (handlerExecutor == null) {
+            throw new IllegalArgumentException("Null handler executor.");
+        } else if (backupExecutor == null) {
+            throw new IllegalArgumentException("Null backup executor.");
         } else if (checkChunkLimit < 0) {
             throw new IllegalArgumentException("Negative check chunk limit ( " + checkChunkLimit + " ).");
         } else if (backupTypes == null) {
@@ -163,42 +192,47 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
         this.addressAccess = new AddressAccessDriver(sessionManager, network, outlawReportSink);
         this.addressAccessBlocking = new AddressAccessBlockingDriver(addressAccessAggregator, this.addressAccess);
         this.addressAccessNonBlocking = new AddressAccessNonBlockingDriver(addressAccessAggregator, this.addressAccess, executor);
-        this.addressAccessMessage = new AddressAccessMessageDriver(network, this.addressAccessBlocking, executor);
+        this.addressAccessMessage = new AddressAccessMessageDriver(network, this.addressAccessBlocking, handlerExecutor);
         this.addressAccessReply = new AddressAccessReplyDriver(network);
 
+        this.route = new RouteDriver(network, sessionManager, outlawReportSink);
+        this.routeMessage = new RouteMessageDriver(network);
+        this.routeReply = new RouteReplyDriver();
+        final RouteDriver routeDriver = (iterativeRouting ? this.route : null);
+
         final OperationAggregator<GetChunkOperation, GetChunkResult> getChunkAggregator = new OperationAggregator<>();
-        this.getChunk = new GetChunkDriver(network, storage, sessionManager, idRegistry, outlawReportSink);
+        this.getChunk = new GetChunkDriver(network, storage, sessionManager, idRegistry, outlawReportSink, routeDriver);
         this.getChunkBlocking = new GetChunkBlockingDriver(getChunkAggregator, this.getChunk);
         this.getChunkNonBlocking = new GetChunkNonBlockingDriver(getChunkAggregator, this.getChunk, executor);
-        this.getChunkMessage = new GetChunkMessageDriver(network, this.getChunkBlocking, chunkRegistry, executor);
+        this.getChunkMessage = new GetChunkMessageDriver(network, this.getChunkBlocking, chunkRegistry, handlerExecutor);
         this.getChunkReply = new GetChunkReplyDriver();
 
         final OperationAggregator<UpdateChunkOperation, UpdateChunkResult> updateChunkAggregator = new OperationAggregator<>();
         this.updateChunk = new UpdateChunkDriver(network, storage, sessionManager, idRegistry, outlawReportSink);
         this.updateChunkBlocking = new UpdateChunkBlockingDriver(updateChunkAggregator, this.updateChunk);
         this.updateChunkNonBlocking = new UpdateChunkNonBlockingDriver(updateChunkAggregator, this.updateChunk, executor);
-        this.updateChunkMessage = new UpdateChunkMessageDriver(network, this.updateChunkBlocking, diffRegistry, executor);
+        this.updateChunkMessage = new UpdateChunkMessageDriver(network, this.updateChunkBlocking, diffRegistry, handlerExecutor);
         this.updateChunkReply = new UpdateChunkReplyDriver();
 
         final OperationAggregator<AddChunkOperation, AddChunkResult> addChunkAggregator = new OperationAggregator<>();
         this.addChunk = new AddChunkDriver(network, storage, operationSink, sessionManager, chunkRegistry, outlawReportSink);
         this.addChunkBlocking = new AddChunkBlockingDriver(addChunkAggregator, this.addChunk);
         this.addChunkNonBlocking = new AddChunkNonBlockingDriver(addChunkAggregator, this.addChunk, executor);
-        this.addChunkMessage = new AddChunkMessageDriver(network, this.addChunkBlocking, executor);
+        this.addChunkMessage = new AddChunkMessageDriver(network, this.addChunkBlocking, handlerExecutor);
         this.addChunkReply = new AddChunkReplyDriver();
 
         final OperationAggregator<PatchChunkOperation<?>, PatchChunkResult> patchChunkAggregator = new OperationAggregator<>();
         this.patchChunk = new PatchChunkDriver(network, storage, operationSink, sessionManager, idRegistry, outlawReportSink);
         this.patchChunkBlocking = new PatchChunkBlockingDriver(patchChunkAggregator, this.patchChunk);
         this.patchChunkNonBlocking = new PatchChunkNonBlockingDriver(patchChunkAggregator, this.patchChunk, executor);
-        this.patchChunkMessage = new PatchChunkMessageDriver(network, this.patchChunkBlocking, executor);
+        this.patchChunkMessage = new PatchChunkMessageDriver(network, this.patchChunkBlocking, handlerExecutor);
         this.patchChunkReply = new PatchChunkReplyDriver();
 
         final OperationAggregator<GetCacheOperation, GetCacheResult> getCacheAggregator = new OperationAggregator<>();
-        this.getCache = new GetCacheDriver(network, storage, sessionManager, idRegistry, outlawReportSink);
+        this.getCache = new GetCacheDriver(network, storage, sessionManager, idRegistry, outlawReportSink, routeDriver);
         this.getCacheBlocking = new GetCacheBlockingDriver(getCacheAggregator, this.getCache);
         this.getCacheNonBlocking = new GetCacheNonBlockingDriver(getCacheAggregator, this.getCache, executor);
-        this.getCacheMessage = new GetCacheMessageDriver(network, this.getCacheBlocking, chunkRegistry, idRegistry, executor);
+        this.getCacheMessage = new GetCacheMessageDriver(network, this.getCacheBlocking, chunkRegistry, idRegistry, handlerExecutor);
         this.getCacheReply = new GetCacheReplyDriver(storage);
 
         final OperationAggregator<PatchOrAddAndGetCacheOperation, PatchOrAddAndGetCacheResult> patchOrAddAndGetCacheAggregator = new OperationAggregator<>();
@@ -206,7 +240,7 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
         this.patchOrAddAndGetCacheBlocking = new PatchOrAddAndGetCacheBlockingDriver(patchOrAddAndGetCacheAggregator, this.patchOrAddAndGetCache);
         this.patchOrAddAndGetCacheNonBlocking = new PatchOrAddAndGetCacheNonBlockingDriver(patchOrAddAndGetCacheAggregator, this.patchOrAddAndGetCache,
                 executor);
-        this.patchOrAddAndGetCacheMessage = new PatchOrAddAndGetCacheMessageDriver(network, this.patchOrAddAndGetCacheBlocking, chunkRegistry, executor);
+        this.patchOrAddAndGetCacheMessage = new PatchOrAddAndGetCacheMessageDriver(network, this.patchOrAddAndGetCacheBlocking, chunkRegistry, handlerExecutor);
         this.patchOrAddAndGetCacheReply = new PatchOrAddAndGetCacheReplyDriver(storage);
 
         final OperationAggregator<GetOrUpdateCacheOperation, GetOrUpdateCacheResult> getOrUpdateCacheAggregator = new OperationAggregator<>();
@@ -214,14 +248,14 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
                 this.patchOrAddAndGetCacheBlocking, outlawReportSink);
         this.getOrUpdateCacheBlocking = new GetOrUpdateCacheBlockingDriver(getOrUpdateCacheAggregator, this.getOrUpdateCache);
         this.getOrUpdateCacheNonBlocking = new GetOrUpdateCacheNonBlockingDriver(getOrUpdateCacheAggregator, this.getOrUpdateCache, executor);
-        this.getOrUpdateCacheMessage = new GetOrUpdateCacheMessageDriver(network, this.getOrUpdateCacheBlocking, chunkRegistry, idRegistry, executor);
+        this.getOrUpdateCacheMessage = new GetOrUpdateCacheMessageDriver(network, this.getOrUpdateCacheBlocking, chunkRegistry, idRegistry, handlerExecutor);
         this.getOrUpdateCacheReply = new GetOrUpdateCacheReplyDriver(storage);
 
         final OperationAggregator<AddCacheOperation, AddCacheResult> addCacheAggregator = new OperationAggregator<>();
         this.addCache = new AddCacheDriver(network, storage, operationSink, sessionManager, chunkRegistry, outlawReportSink);
         this.addCacheBlocking = new AddCacheBlockingDriver(addCacheAggregator, this.addCache);
         this.addCacheNonBlocking = new AddCacheNonBlockingDriver(addCacheAggregator, this.addCache, executor);
-        this.addCacheMessage = new AddCacheMessageDriver(network, this.addCacheBlocking, executor);
+        this.addCacheMessage = new AddCacheMessageDriver(network, this.addCacheBlocking, handlerExecutor);
         this.addCacheReply = new AddCacheReplyDriver();
 
         final OperationAggregator<PatchAndGetOrUpdateCacheOperation<?>, PatchAndGetOrUpdateCacheResult> patchAndGetOrUpdateCacheAggregator = new OperationAggregator<>();
@@ -231,7 +265,7 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
         this.patchAndGetOrUpdateCacheNonBlocking = new PatchAndGetOrUpdateCacheNonBlockingDriver(patchAndGetOrUpdateCacheAggregator,
                 this.patchAndGetOrUpdateCache, executor);
         this.patchAndGetOrUpdateCacheMessage = new PatchAndGetOrUpdateCacheMessageDriver(network, this.patchAndGetOrUpdateCacheBlocking, chunkRegistry,
-                idRegistry, executor);
+                idRegistry, handlerExecutor);
         this.patchAndGetOrUpdateCacheReply = new PatchAndGetOrUpdateCacheReplyDriver(storage);
 
         final OperationAggregator<CheckStockOperation, CheckStockResult> checkStockAggregator = new OperationAggregator<>();
@@ -246,10 +280,16 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
         this.checkDemandMessage = new CheckDemandMessageDriver(network, storage, idRegistry, checkChunkLimit, backupTypes);
         this.checkDemandReply = new CheckDemandReplyDriver();
 
+        final OperationAggregator<CheckDigestOperation, CheckDigestResult> checkDigestAggregator = new OperationAggregator<>();
+        this.checkDigest = new CheckDigestDriver(network, storage, sessionManager, idRegistry, backupTypes, outlawReportSink);
+        this.checkDigestBlocking = new CheckDigestBlockingDriver(checkDigestAggregator, this.checkDigest);
+        this.checkDigestMessage = new CheckDigestMessageDriver(network, storage, idRegistry, backupTypes);
+        this.checkDigestReply = new CheckDigestReplyDriver();
+
         final OperationAggregator<RecoveryOperation, RecoveryResult> recoveryAggregator = new OperationAggregator<>();
         this.recovery = new RecoveryDriver(network, storage, sessionManager, idRegistry, outlawReportSink);
         this.recoverySelect = new RecoverySelectDriver(recoveryAggregator, this.recovery);
-        this.recoveryNonBlocking = new RecoveryNonBlockingDriver(recoveryAggregator, this.recovery, executor);
+        this.recoveryNonBlocking = new RecoveryNonBlockingDriver(recoveryAggregator, this.recovery, backupExecutor);
         this.recoveryMessage = new RecoveryMessageDriver(network, storage, chunkRegistry);
         this.recoveryReply = new RecoveryReplyDriver(network, storage);
 
@@ -257,13 +297,13 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
         this.backup = new BackupDriver(network, storage, sessionManager, chunkRegistry, outlawReportSink);
         this.backupBlocking = new BackupBlockingDriver(backupAggregator, this.backup);
         this.backupSelect = new BackupSelectDriver(backupAggregator, this.backup);
-        this.backupNonBlocking = new BackupNonBlockingDriver(backupAggregator, this.backup, executor);
+        this.backupNonBlocking = new BackupNonBlockingDriver(backupAggregator, this.backup, backupExecutor);
         this.backupMessage = new BackupMessageDriver(network, storage, chunkRegistry);
         this.backupReply = new BackupReplyDriver(network, storage);
 
         final OperationAggregator<SimpleRecoveryOperation, SimpleRecoveryResult> simpleRecoveryAggregator = new OperationAggregator<>();
         this.simpleRecovery = new SimpleRecoveryDriver(network, storage, sessionManager, idRegistry, outlawReportSink);
-        this.simpleRecoveryNonBlocking = new SimpleRecoveryNonBlockingDriver(simpleRecoveryAggregator, this.simpleRecovery, executor);
+        this.simpleRecoveryNonBlocking = new SimpleRecoveryNonBlockingDriver(simpleRecoveryAggregator, this.simpleRecovery, backupExecutor);
         this.simpleRecoveryMessage = new SimpleRecoveryMessageDriver(network, storage, chunkRegistry);
         this.simpleRecoveryReply = new SimpleRecoveryReplyDriver(network, storage);
 
@@ -275,7 +315,7 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
 
         final OperationAggregator<BackupOneOperation, BackupOneResult> backupOneAggregator = new OperationAggregator<>();
         this.backupOne = new BackupOneDriver(network, this.checkOneDemandNonBlocking, this.backupBlocking);
-        this.backupOneNonBlocking = new BackupOneNonBlockingDriver(backupOneAggregator, this.backupOne, executor);
+        this.backupOneNonBlocking = new BackupOneNonBlockingDriver(backupOneAggregator, this.backupOne, backupExecutor);
 
         final OperationAggregator<FirstAccessOperation, FirstAccessResult> firstAccessAggregator = new OperationAggregator<>();
         this.firstAccess = new FirstAccessDriver(sessionManager, network, outlawReportSink);
@@ -579,6 +619,39 @@ final class DriverSet implements MessageDriverSet, ReplyDriverSet, NonBlockingDr
         return this.checkDemandReply;
     }
 
+    CheckDigestDriver getCheckDigest() {
+        return this.checkDigest;
+    }
+
+    @Override
+    public CheckDigestBlockingDriver getCheckDigestBlocking() {
+        return this.checkDigestBlocking;
+    }
+
+    @Override
+    public CheckDigestMessageDriver getCheckDigestMessage() {
+        return this.checkDigestMessage;
+    }
+
+    @Override
+    public CheckDigestReplyDriver getCheckDigestReply() {
+        return this.checkDigestReply;
+    }
+
+    RouteDriver getRoute() {
+        return this.route;
+    }
+
+    @Override
+    public RouteMessageDriver getRouteMessage() {
+        return this.routeMessage;
+    }
+
+    @Override
+    public RouteReplyDriver getRouteReply() {
+        return this.routeReply;
+    }
+
     RecoveryDriver getRecovery() {
         return this.recovery;
     }
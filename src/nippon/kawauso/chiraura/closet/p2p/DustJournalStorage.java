@@ -0,0 +1,696 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.Base32;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.storage.Chunk;
+import nippon.kawauso.chiraura.storage.Storage;
+
+/**
+ * 差分形式のデータ片の書き込みを、データ片全体の上書きではなく差分の追記で済ませる倉庫。
+ * 書き込みキャッシュの下に置き、キャッシュから溢れたり書き戻されたりしたデータ片を受け取る。
+ * 上の層で差分を適用したときに stage で差分を預けておくと、
+ * 受け取ったデータ片が預かった差分の適用結果であれば、データ片ではなく差分を追記する。
+ * 追記した差分が溜まったら、適用後のデータ片で上書きして追記分を捨てる。
+ * 読み込むときは、下層の倉庫のデータ片に追記分を適用して返す。
+ * 読み込みはキャッシュに無い場合にしか来ないので、追記分の適用は書き込みキャッシュが受け持つ。
+ * @author chirauraNoSakusha
+ */
+final class DustJournalStorage implements Storage {
+
+    private static final Logger LOG = Logger.getLogger(DustJournalStorage.class.getName());
+
+    /*
+     * 追記ファイルは {root}/{論理位置と型の Base32}。
+     * 記録の形式は、
+     * ペイロード長 (4 バイト固定)、ペイロード、ペイロードの CRC32 (4 バイト固定)。
+     * 最初の記録のペイロードは、型 (l)、論理位置 (o)、識別子 (ab)。
+     * 以降の記録のペイロードは、適用後の更新日時 (l)、適用後のハッシュ値 (o)、差分 (ao)。
+     */
+
+    private static final int HEADER_SIZE = Integer.SIZE / Byte.SIZE;
+    private static final int TRAILER_SIZE = Integer.SIZE / Byte.SIZE;
+
+    /**
+     * 追記ファイルの状態。
+     */
+    private static final class Tail {
+        private final File file;
+        private final long type;
+        private final Address address;
+        private final byte[] idBytes;
+        private final Chunk.Id<?> id; // 起動時に復元した場合は null。
+        private final long size;
+        private final long date;
+        private final HashValue hashValue;
+
+        private Tail(final File file, final long type, final Address address, final byte[] idBytes, final Chunk.Id<?> id, final long size, final long date,
+                final HashValue hashValue) {
+            this.file = file;
+            this.type = type;
+            this.address = address;
+            this.idBytes = idBytes;
+            this.id = id;
+            this.size = size;
+            this.date = date;
+            this.hashValue = hashValue;
+        }
+
+        private Tail next(final long recordSize, final long nextDate, final HashValue nextHashValue) {
+            return new Tail(this.file, this.type, this.address, this.idBytes, this.id, this.size + recordSize, nextDate, nextHashValue);
+        }
+    }
+
+    /**
+     * 追記分を反映したデータ片の概要。
+     */
+    private static final class JournalIndex implements Storage.Index {
+        private final Chunk.Id<?> id;
+        private final long date;
+        private final HashValue hashValue;
+
+        private JournalIndex(final Chunk.Id<?> id, final long date, final HashValue hashValue) {
+            this.id = id;
+            this.date = date;
+            this.hashValue = hashValue;
+        }
+
+        @Override
+        public Chunk.Id<?> getId() {
+            return this.id;
+        }
+
+        @Override
+        public long getDate() {
+            return this.date;
+        }
+
+        @Override
+        public HashValue getHashValue() {
+            return this.hashValue;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Storage.Index)) {
+                return false;
+            }
+            return this.id.equals(((Storage.Index) obj).getId());
+        }
+
+        @Override
+        public String toString() {
+            return (new StringBuilder(this.getClass().getSimpleName()))
+                    .append('[').append(this.id)
+                    .append(", ").append(this.date)
+                    .append(", ").append(this.hashValue)
+                    .append(']').toString();
+        }
+    }
+
+    /**
+     * 預かった差分。
+     * 上の層のデータ片が、from のデータ片に差分を順に適用したものであることを示す。
+     * 同じデータ片については lock の中でしか触らないので同期しない。
+     */
+    private static final class Pending {
+        private final HashValue from;
+        private final List<List<Mountain.Dust<?>>> diffs;
+        private final List<HashValue> hashValues; // 各適用後のハッシュ値。
+        private long size;
+
+        private Pending(final HashValue from) {
+            this.from = from;
+            this.diffs = new ArrayList<>();
+            this.hashValues = new ArrayList<>();
+            this.size = 0;
+        }
+
+        private HashValue getLast() {
+            return this.hashValues.isEmpty() ? this.from : this.hashValues.get(this.hashValues.size() - 1);
+        }
+
+        private void add(final List<Mountain.Dust<?>> stepDiffs, final int stepSize, final HashValue hashValue) {
+            this.diffs.add(stepDiffs);
+            this.hashValues.add(hashValue);
+            this.size += stepSize;
+        }
+
+        /**
+         * @param hashValue ハッシュ値
+         * @return そのハッシュ値になった適用の位置。
+         *         無ければ負値
+         */
+        private int indexOf(final HashValue hashValue) {
+            return this.hashValues.lastIndexOf(hashValue);
+        }
+
+        private List<Mountain.Dust<?>> getDiffs(final int end) {
+            final List<Mountain.Dust<?>> list = new ArrayList<>();
+            for (int i = 0; i <= end; i++) {
+                list.addAll(this.diffs.get(i));
+            }
+            return list;
+        }
+
+        private Pending rest(final int end) {
+            final Pending rest = new Pending(this.hashValues.get(end));
+            for (int i = end + 1; i < this.hashValues.size(); i++) {
+                final List<Mountain.Dust<?>> stepDiffs = this.diffs.get(i);
+                int stepSize = 0;
+                for (final Mountain.Dust<?> diff : stepDiffs) {
+                    stepSize += diff.byteSize();
+                }
+                rest.add(stepDiffs, stepSize, this.hashValues.get(i));
+            }
+            return rest;
+        }
+    }
+
+    private final Storage base;
+    private final TypeRegistry<Mountain.Dust<?>> diffRegistry;
+    private final File root;
+    private final int sizeLimit;
+
+    // ファイル名から追記ファイルの状態へ。
+    private final Map<String, Tail> tails;
+    // ファイル名から預かった差分へ。
+    private final Map<String, Pending> pendings;
+
+    /**
+     * 作成する。
+     * @param base 下層の倉庫
+     * @param diffRegistry 差分の登記簿
+     * @param root 追記ファイルを置くディレクトリ
+     * @param sizeLimit 追記ファイルの制限サイズ。
+     *            これを超えるなら上書きする
+     */
+    DustJournalStorage(final Storage base, final TypeRegistry<Mountain.Dust<?>> diffRegistry, final File root, final int sizeLimit) {
+        if (base == null) {
+            throw new IllegalArgumentException("Null base.");
+        } else if (diffRegistry == null) {
+            throw new IllegalArgumentException("Null diff registry.");
+        } else if (root == null) {
+            throw new IllegalArgumentException("Null root.");
+        } else if (sizeLimit <= 0) {
+            throw new IllegalArgumentException("Not positive size limit ( " + sizeLimit + " ).");
+        }
+
+        this.base = base;
+        this.diffRegistry = diffRegistry;
+        this.root = root;
+        this.sizeLimit = sizeLimit;
+        this.tails = new ConcurrentHashMap<>();
+        this.pendings = new ConcurrentHashMap<>();
+
+        loadDirectory(this.root);
+        recover();
+    }
+
+    private static void loadDirectory(final File directory) {
+        if (!directory.exists()) {
+            if (!directory.mkdirs()) {
+                throw new IllegalStateException("Cannot make directory ( " + directory.getPath() + " ).");
+            }
+            LOG.log(Level.INFO, "{0} を作成しました。", directory.getPath());
+        } else if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not directory ( " + directory.getPath() + " ).");
+        }
+    }
+
+    private static int checksum(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] readRecord(final InputStream input) throws IOException {
+        final byte[] header = new byte[HEADER_SIZE];
+        if (readFully(input, header) < HEADER_SIZE) {
+            return null;
+        }
+        final int payloadSize = ByteBuffer.wrap(header).getInt();
+        if (payloadSize < 0) {
+            return null;
+        }
+        final byte[] payload = new byte[payloadSize];
+        final byte[] trailer = new byte[TRAILER_SIZE];
+        if (readFully(input, payload) < payloadSize || readFully(input, trailer) < TRAILER_SIZE) {
+            return null;
+        } else if (ByteBuffer.wrap(trailer).getInt() != checksum(payload)) {
+            return null;
+        }
+        return payload;
+    }
+
+    private static int readFully(final InputStream input, final byte[] buff) throws IOException {
+        int size = 0;
+        while (size < buff.length) {
+            final int n = input.read(buff, size, buff.length - size);
+            if (n < 0) {
+                break;
+            }
+            size += n;
+        }
+        return size;
+    }
+
+    private static byte[] toRecord(final byte[] payload) {
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE).putInt(payload.length).put(payload).putInt(checksum(payload)).array();
+    }
+
+    /**
+     * 追記ファイルを走査して状態を復元する。
+     * 壊れた末尾は切り捨てる。
+     */
+    private void recover() {
+        final File[] files = this.root.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            try {
+                final Tail tail = scan(file);
+                if (tail == null) {
+                    if (!file.delete()) {
+                        LOG.log(Level.WARNING, "{0} を削除できませんでした。", file.getPath());
+                    }
+                } else {
+                    this.tails.put(file.getName(), tail);
+                }
+            } catch (MyRuleException | IOException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+                if (!file.delete()) {
+                    LOG.log(Level.WARNING, "{0} を削除できませんでした。", file.getPath());
+                }
+            }
+        }
+        LOG.log(Level.FINER, "{0} 個の追記ファイルを復元しました。", this.tails.size());
+    }
+
+    private static Tail scan(final File file) throws MyRuleException, IOException {
+        long size = 0;
+        Tail tail = null;
+        try (final InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            final byte[] headerPayload = readRecord(input);
+            if (headerPayload == null) {
+                return null;
+            }
+            final long[] type = new long[1];
+            final List<Address> address = new ArrayList<>(1);
+            final byte[][] idBytes = new byte[1][];
+            BytesConversion.fromBytes(headerPayload, headerPayload.length, "loab", type, address, Address.getParser(), idBytes);
+            size += HEADER_SIZE + headerPayload.length + TRAILER_SIZE;
+
+            while (true) {
+                final byte[] payload = readRecord(input);
+                if (payload == null) {
+                    break;
+                }
+                final long[] date = new long[1];
+                final List<HashValue> hashValue = new ArrayList<>(1);
+                BytesConversion.fromStream(new ByteArrayInputStream(payload), payload.length, "lo", date, hashValue, HashValue.getParser());
+                size += HEADER_SIZE + payload.length + TRAILER_SIZE;
+                tail = new Tail(file, type[0], address.get(0), idBytes[0], null, size, date[0], hashValue.get(0));
+            }
+        }
+
+        if (tail != null && tail.size < file.length()) {
+            LOG.log(Level.WARNING, "{0} の {1} バイト目以降を切り捨てます。", new Object[] { file.getPath(), tail.size });
+            try (final RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+                output.setLength(tail.size);
+            }
+        }
+        return tail;
+    }
+
+    private String toName(final Chunk.Id<?> id) {
+        return Base32.toBase32(BytesConversion.toBytes("ol", id.getAddress(), this.base.getIdRegistry().getId(id)));
+    }
+
+    private void drop(final String name) {
+        final Tail tail = this.tails.remove(name);
+        if (tail != null && !tail.file.delete() && tail.file.exists()) {
+            LOG.log(Level.WARNING, "{0} を削除できませんでした。", tail.file.getPath());
+        }
+    }
+
+    private Chunk.Id<?> getId(final Tail tail) throws MyRuleException {
+        if (tail.id != null) {
+            return tail.id;
+        }
+        final BytesConvertible.Parser<? extends Chunk.Id<?>> parser = this.base.getIdRegistry().getParser(tail.type);
+        if (parser == null) {
+            return null;
+        }
+        return BytesConversion.fromBytes(tail.idBytes, parser);
+    }
+
+    TypeRegistry<Mountain.Dust<?>> getDiffRegistry() {
+        return this.diffRegistry;
+    }
+
+    /**
+     * 上の層で差分を適用したことを伝え、差分を預ける。
+     * 上の層に書き込む前に、同じ lock の中で呼ぶこと。
+     * ファイルには触らない。
+     * @param <T> データ片の型
+     * @param before 差分を適用する前のデータ片
+     * @param after 差分を適用した後のデータ片
+     * @param diffs 適用した差分
+     */
+    <T extends Mountain> void stage(final T before, final T after, final List<? extends Mountain.Dust<T>> diffs) {
+        final String name = toName(after.getId());
+        Pending pending = this.pendings.get(name);
+        if (pending == null || !pending.getLast().equals(before.getHashValue())) {
+            pending = new Pending(before.getHashValue());
+        }
+
+        // 適用済みの差分は預からない。
+        final List<Mountain.Dust<?>> stepDiffs = new ArrayList<>(diffs.size());
+        int stepSize = 0;
+        for (final Mountain.Dust<T> diff : diffs) {
+            if (before.patchable(diff)) {
+                stepDiffs.add(diff);
+                stepSize += diff.byteSize();
+            }
+        }
+
+        if (this.sizeLimit < pending.size + stepSize) {
+            // どうせ追記できないので、上書きに任せる。
+            this.pendings.remove(name);
+            return;
+        }
+        pending.add(stepDiffs, stepSize, after.getHashValue());
+        this.pendings.put(name, pending);
+    }
+
+    /**
+     * 下層に保存されているデータ片のハッシュ値を返す。
+     * @param id データ片の識別子
+     * @param tail 追記ファイルの状態
+     * @return 追記分も含めたハッシュ値。
+     *         データ片が無いか、読めなければ null
+     * @throws IOException 読み込み異常
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private HashValue getStoredHashValue(final Chunk.Id<?> id, final Tail tail) throws IOException, InterruptedException {
+        if (tail != null) {
+            return tail.hashValue;
+        }
+        final Index index;
+        try {
+            index = this.base.getIndex(id);
+        } catch (final MyRuleException e) {
+            LOG.log(Level.FINE, "{0} の概要を読めませんでした: {1}", new Object[] { id, e });
+            return null;
+        }
+        return index == null ? null : index.getHashValue();
+    }
+
+    /**
+     * 書き込むデータ片が預かった差分の適用結果なら、その差分を追記する。
+     * 追記できなかった場合、呼び出し側でデータ片全体を書き込むこと。
+     * @param chunk 書き込むデータ片
+     * @return 追記した場合のみ true
+     * @throws IOException 書き込み異常
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private boolean journal(final Chunk chunk) throws IOException, InterruptedException {
+        if (this.pendings.isEmpty() || !(chunk instanceof Mountain)) {
+            return false;
+        }
+        final String name = toName(chunk.getId());
+        final Pending pending = this.pendings.remove(name);
+        if (pending == null) {
+            return false;
+        }
+        final int end = pending.indexOf(chunk.getHashValue());
+        if (end < 0) {
+            // 預かった差分とは別物が来た。
+            return false;
+        }
+        // 書き込むデータ片より後の差分は、書き込んだデータ片を起点に預かり直す。
+        if (end + 1 < pending.hashValues.size()) {
+            this.pendings.put(name, pending.rest(end));
+        }
+
+        final Tail tail = this.tails.get(name);
+        if (!pending.from.equals(getStoredHashValue(chunk.getId(), tail))) {
+            // 預かった差分の起点がまだ書き込まれていない。
+            return false;
+        }
+
+        final byte[] record = toRecord(BytesConversion.toBytes("loao", chunk.getDate(), chunk.getHashValue(), pending.getDiffs(end)));
+        final byte[] headerRecord;
+        final long nextSize;
+        if (tail == null) {
+            final long type = this.base.getIdRegistry().getId(chunk.getId());
+            headerRecord = toRecord(BytesConversion.toBytes("loab", type, chunk.getId().getAddress(), BytesConversion.toBytes(chunk.getId())));
+            nextSize = headerRecord.length + record.length;
+        } else {
+            headerRecord = null;
+            nextSize = tail.size + record.length;
+        }
+        if (this.sizeLimit < nextSize) {
+            // 溜まったので畳む。
+            LOG.log(Level.FINEST, "{0} の差分を畳みます。", chunk.getId());
+            return false;
+        }
+
+        final Tail next;
+        if (tail == null) {
+            final File file = new File(this.root, name);
+            try (final OutputStream output = new FileOutputStream(file, false)) {
+                output.write(headerRecord);
+                output.write(record);
+            }
+            next = new Tail(file, this.base.getIdRegistry().getId(chunk.getId()), chunk.getId().getAddress(), null, chunk.getId(), nextSize,
+                    chunk.getDate(), chunk.getHashValue());
+        } else {
+            try (final OutputStream output = new FileOutputStream(tail.file, true)) {
+                output.write(record);
+            }
+            next = tail.next(record.length, chunk.getDate(), chunk.getHashValue());
+        }
+        this.tails.put(name, next);
+        LOG.log(Level.FINEST, "{0} に {1} バイトの差分を追記しました。", new Object[] { chunk.getId(), record.length });
+        return true;
+    }
+
+    @Override
+    public <C extends Chunk, I extends Chunk.Id<C>> void registerChunk(final long type, final Class<C> chunkClass,
+            final BytesConvertible.Parser<? extends C> chunkParser, final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser) {
+        this.base.registerChunk(type, chunkClass, chunkParser, idClass, idParser);
+    }
+
+    @Override
+    public TypeRegistry<Chunk> getChunkRegistry() {
+        return this.base.getChunkRegistry();
+    }
+
+    @Override
+    public TypeRegistry<Chunk.Id<?>> getIdRegistry() {
+        return this.base.getIdRegistry();
+    }
+
+    @Override
+    public void lock(final Chunk.Id<?> id) throws InterruptedException {
+        this.base.lock(id);
+    }
+
+    @Override
+    public boolean tryLock(final Chunk.Id<?> id) {
+        return this.base.tryLock(id);
+    }
+
+    @Override
+    public void unlock(final Chunk.Id<?> id) {
+        this.base.unlock(id);
+    }
+
+    @Override
+    public boolean contains(final Chunk.Id<?> id) throws IOException, InterruptedException {
+        return this.base.contains(id);
+    }
+
+    @Override
+    public Index getIndex(final Chunk.Id<?> id) throws MyRuleException, IOException, InterruptedException {
+        final Tail tail = this.tails.isEmpty() ? null : this.tails.get(toName(id));
+        if (tail != null) {
+            return new JournalIndex(id, tail.date, tail.hashValue);
+        }
+        return this.base.getIndex(id);
+    }
+
+    @Override
+    public Map<Chunk.Id<?>, Index> getIndices(final Address min, final Address max) throws IOException, InterruptedException {
+        final Map<Chunk.Id<?>, Index> indices = this.base.getIndices(min, max);
+        for (final Tail tail : this.tails.values()) {
+            if (tail.address.compareTo(min) < 0 || max.compareTo(tail.address) < 0) {
+                continue;
+            }
+            final Chunk.Id<?> id;
+            try {
+                id = getId(tail);
+            } catch (final MyRuleException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+                continue;
+            }
+            if (id != null && indices.containsKey(id)) {
+                indices.put(id, new JournalIndex(id, tail.date, tail.hashValue));
+            }
+        }
+        return indices;
+    }
+
+    @Override
+    public <T extends Chunk> T read(final Chunk.Id<T> id) throws MyRuleException, IOException, InterruptedException {
+        final T chunk = this.base.read(id);
+        if (this.tails.isEmpty()) {
+            return chunk;
+        }
+
+        final String name = toName(id);
+        final Tail tail = this.tails.get(name);
+        if (tail == null) {
+            return chunk;
+        } else if (chunk == null || !(chunk instanceof Mountain)) {
+            drop(name);
+            return chunk;
+        } else if (chunk.getHashValue().equals(tail.hashValue)) {
+            // 畳んだ後に追記ファイルを消し損ねていた。
+            drop(name);
+            return chunk;
+        }
+
+        @SuppressWarnings("unchecked")
+        final T after = (T) replay((Mountain) chunk, tail);
+        if (!after.getHashValue().equals(tail.hashValue)) {
+            throw new MyRuleException("Invalid hash value ( " + after.getHashValue() + " ) not ( " + tail.hashValue + " ) after replaying " + tail.file.getPath()
+                    + ".");
+        }
+        return after;
+    }
+
+    private Mountain replay(final Mountain before, final Tail tail) throws MyRuleException, IOException {
+        final BytesConvertible.Parser<? extends Mountain.Dust<?>> parser = this.diffRegistry.getParser(tail.type);
+        if (parser == null) {
+            throw new MyRuleException("Not registered diff type ( " + tail.type + " ).");
+        }
+
+        final Mountain after = before.copy();
+        try (final InputStream input = new BufferedInputStream(new FileInputStream(tail.file))) {
+            // 最初の記録は識別子。
+            if (readRecord(input) == null) {
+                throw new MyRuleException("Broken header in " + tail.file.getPath() + ".");
+            }
+            long size = 0;
+            while (true) {
+                final byte[] payload = readRecord(input);
+                if (payload == null) {
+                    break;
+                }
+                final long[] date = new long[1];
+                final List<HashValue> hashValue = new ArrayList<>(1);
+                final List<Mountain.Dust<?>> diffs = new ArrayList<>();
+                BytesConversion.fromBytes(payload, payload.length, "loao", date, hashValue, HashValue.getParser(), diffs, parser);
+                for (final Mountain.Dust<?> diff : diffs) {
+                    after.patch(diff);
+                }
+                size += payload.length;
+            }
+            LOG.log(Level.FINEST, "{0} に {1} バイトの差分を適用しました。", new Object[] { before.getId(), size });
+        }
+        return after;
+    }
+
+    @Override
+    public boolean write(final Chunk chunk) throws IOException, InterruptedException {
+        if (journal(chunk)) {
+            return true;
+        } else if (this.tails.isEmpty()) {
+            return this.base.write(chunk);
+        }
+        final String name = toName(chunk.getId());
+        final Tail tail = this.tails.get(name);
+        if (tail == null) {
+            return this.base.write(chunk);
+        } else if (tail.date == chunk.getDate() && tail.hashValue.equals(chunk.getHashValue())) {
+            return false;
+        }
+        this.base.forceWrite(chunk);
+        drop(name);
+        return true;
+    }
+
+    @Override
+    public void forceWrite(final Chunk chunk) throws IOException, InterruptedException {
+        if (journal(chunk)) {
+            return;
+        }
+        this.base.forceWrite(chunk);
+        if (!this.tails.isEmpty()) {
+            drop(toName(chunk.getId()));
+        }
+    }
+
+    @Override
+    public boolean delete(final Chunk.Id<?> id) throws IOException, InterruptedException {
+        final String name = toName(id);
+        this.pendings.remove(name);
+        if (!this.tails.isEmpty()) {
+            drop(name);
+        }
+        return this.base.delete(id);
+    }
+
+    @Override
+    public void close() throws MyRuleException, InterruptedException, IOException {
+        this.base.close();
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append('[').append(this.base)
+                .append(", ").append(this.root)
+                .append(", numOfJournals=").append(this.tails.size())
+                .append(", numOfPendings=").append(this.pendings.size())
+                .append(']').toString();
+    }
+
+}
@@ -0,0 +1,366 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+import nippon.kawauso.chiraura.storage.Chunk;
+import nippon.kawauso.chiraura.storage.Storage;
+import nippon.kawauso.chiraura.storage.Storages;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class DustJournalStorageTest {
+
+    private static final Logger LOG = Logger.getLogger(DustJournalStorageTest.class.getName());
+
+    private final File root;
+    private final int chunkSizeLimit;
+    private final int directoryBitSize;
+
+    /**
+     * 初期化。
+     */
+    public DustJournalStorageTest() {
+        this.root = new File(System.getProperty("java.io.tmpdir") + File.separator + DustJournalStorageTest.class.getName() + File.separator
+                + System.nanoTime());
+        this.chunkSizeLimit = 1024 * 1024;
+        this.directoryBitSize = 8;
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    /**
+     * 読み書きを数える倉庫。
+     */
+    private static final class CountingStorage implements Storage {
+        private final Storage base;
+        private final AtomicInteger numOfReads;
+        private final AtomicInteger numOfWrites;
+
+        private CountingStorage(final Storage base) {
+            this.base = base;
+            this.numOfReads = new AtomicInteger(0);
+            this.numOfWrites = new AtomicInteger(0);
+        }
+
+        @Override
+        public <C extends Chunk, I extends Chunk.Id<C>> void registerChunk(final long type, final Class<C> chunkClass,
+                final BytesConvertible.Parser<? extends C> chunkParser, final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser) {
+            this.base.registerChunk(type, chunkClass, chunkParser, idClass, idParser);
+        }
+
+        @Override
+        public TypeRegistry<Chunk> getChunkRegistry() {
+            return this.base.getChunkRegistry();
+        }
+
+        @Override
+        public TypeRegistry<Chunk.Id<?>> getIdRegistry() {
+            return this.base.getIdRegistry();
+        }
+
+        @Override
+        public void lock(final Chunk.Id<?> id) throws InterruptedException {
+            this.base.lock(id);
+        }
+
+        @Override
+        public boolean tryLock(final Chunk.Id<?> id) {
+            return this.base.tryLock(id);
+        }
+
+        @Override
+        public void unlock(final Chunk.Id<?> id) {
+            this.base.unlock(id);
+        }
+
+        @Override
+        public boolean contains(final Chunk.Id<?> id) throws IOException, InterruptedException {
+            return this.base.contains(id);
+        }
+
+        @Override
+        public Index getIndex(final Chunk.Id<?> id) throws MyRuleException, IOException, InterruptedException {
+            return this.base.getIndex(id);
+        }
+
+        @Override
+        public Map<Chunk.Id<?>, Index> getIndices(final Address min, final Address max) throws IOException, InterruptedException {
+            return this.base.getIndices(min, max);
+        }
+
+        @Override
+        public <T extends Chunk> T read(final Chunk.Id<T> id) throws MyRuleException, IOException, InterruptedException {
+            this.numOfReads.incrementAndGet();
+            return this.base.read(id);
+        }
+
+        @Override
+        public boolean write(final Chunk chunk) throws IOException, InterruptedException {
+            this.numOfWrites.incrementAndGet();
+            return this.base.write(chunk);
+        }
+
+        @Override
+        public void forceWrite(final Chunk chunk) throws IOException, InterruptedException {
+            this.numOfWrites.incrementAndGet();
+            this.base.forceWrite(chunk);
+        }
+
+        @Override
+        public boolean delete(final Chunk.Id<?> id) throws IOException, InterruptedException {
+            return this.base.delete(id);
+        }
+
+        @Override
+        public void close() throws MyRuleException, InterruptedException, IOException {
+            this.base.close();
+        }
+    }
+
+    private Storage newBackend(final File dir) {
+        return Storages.newBackend(Storages.Backend.FILE, dir, this.chunkSizeLimit, this.directoryBitSize);
+    }
+
+    private static DustJournalStorage newInstance(final Storage backend, final File dir, final int sizeLimit) {
+        final TypeRegistry<Mountain.Dust<?>> diffRegistry = TypeRegistries.newRegistry();
+        final DustJournalStorage instance = new DustJournalStorage(backend, diffRegistry, new File(dir, "%%dust%%"), sizeLimit);
+        instance.registerChunk(0, GrowingBytes.class, GrowingBytes.getParser(), GrowingBytes.Id.class, GrowingBytes.Id.getParser());
+        diffRegistry.register(0, GrowingBytes.Entry.class, GrowingBytes.Entry.getParser());
+        return instance;
+    }
+
+    private DustJournalStorage newInstance(final File dir, final int sizeLimit) {
+        return newInstance(newBackend(dir), dir, sizeLimit);
+    }
+
+    private static int numOfJournals(final File dir) {
+        final String[] names = (new File(dir, "%%dust%%")).list();
+        return names == null ? 0 : names.length;
+    }
+
+    /**
+     * 上の層での差分の適用を真似る。
+     * @param instance 検査対象
+     * @param before 適用前
+     * @param seed 差分の種
+     * @return 適用後
+     * @throws Exception 異常
+     */
+    private static GrowingBytes patch(final DustJournalStorage instance, final GrowingBytes before, final int seed) throws Exception {
+        final GrowingBytes.Entry diff = GrowingBytesEntryTest.newDiff(seed);
+        final GrowingBytes after = before.copy();
+        after.patch(diff);
+        instance.stage(before, after, Collections.singletonList(diff));
+        return after;
+    }
+
+    /**
+     * 追記した差分が読み込みと概要に反映され、開き直しても残るかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPatchAndReopen() throws Exception {
+        final int numOfPatches = 100;
+
+        DustJournalStorage instance = newInstance(this.root, 1024 * 1024);
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+        instance.forceWrite(chunk);
+
+        GrowingBytes cur = chunk;
+        for (int i = 1; i <= numOfPatches; i++) {
+            cur = patch(instance, cur, i);
+            Assert.assertTrue(instance.write(cur));
+            Assert.assertEquals(cur.getHashValue(), instance.getIndex(chunk.getId()).getHashValue());
+        }
+        Assert.assertEquals(1, numOfJournals(this.root));
+        Assert.assertEquals(cur.getHashValue(), instance.getIndices(Address.ZERO, Address.MAX).get(chunk.getId()).getHashValue());
+        instance.close();
+
+        instance = newInstance(this.root, 1024 * 1024);
+        Assert.assertEquals(cur.getHashValue(), instance.getIndex(chunk.getId()).getHashValue());
+        Assert.assertEquals(1, numOfJournals(this.root));
+
+        // 読み込んでも追記分はそのまま。
+        Assert.assertEquals(cur, instance.read(chunk.getId()));
+        Assert.assertEquals(1, numOfJournals(this.root));
+
+        // 開き直した後も続けて追記できる。
+        cur = patch(instance, cur, numOfPatches + 1);
+        instance.forceWrite(cur);
+        Assert.assertEquals(1, numOfJournals(this.root));
+        Assert.assertEquals(cur, instance.read(chunk.getId()));
+
+        // 預かっていないデータ片の上書きで追記分は消える。
+        final GrowingBytes other = cur.copy();
+        other.patch(GrowingBytesEntryTest.newDiff(numOfPatches + 2));
+        instance.forceWrite(other);
+        Assert.assertEquals(0, numOfJournals(this.root));
+        Assert.assertEquals(other, instance.read(chunk.getId()));
+        instance.close();
+    }
+
+    /**
+     * 預かった差分の途中までしか書き込まれなくても、残りを後で追記できるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPartialWrite() throws Exception {
+        final DustJournalStorage instance = newInstance(this.root, 1024 * 1024);
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+        instance.forceWrite(chunk);
+
+        final GrowingBytes middle = patch(instance, chunk, 1);
+        final GrowingBytes last = patch(instance, middle, 2);
+
+        Assert.assertTrue(instance.write(middle));
+        Assert.assertEquals(1, numOfJournals(this.root));
+        Assert.assertEquals(middle, instance.read(chunk.getId()));
+
+        Assert.assertTrue(instance.write(last));
+        Assert.assertEquals(1, numOfJournals(this.root));
+        Assert.assertEquals(last, instance.read(chunk.getId()));
+        instance.close();
+    }
+
+    /**
+     * 追記分が溜まったら畳まれるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testFold() throws Exception {
+        final int numOfPatches = 1_000;
+
+        final DustJournalStorage instance = newInstance(this.root, 1024);
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+        instance.forceWrite(chunk);
+
+        GrowingBytes cur = chunk;
+        boolean folded = false;
+        for (int i = 1; i <= numOfPatches; i++) {
+            cur = patch(instance, cur, i);
+            instance.forceWrite(cur);
+            folded |= numOfJournals(this.root) == 0;
+        }
+        Assert.assertTrue(folded);
+        for (final File file : (new File(this.root, "%%dust%%")).listFiles()) {
+            Assert.assertTrue(file.length() <= 1024);
+        }
+        Assert.assertEquals(cur, instance.read(chunk.getId()));
+        instance.close();
+    }
+
+    private static StorageWrapper newWrapper(final Storage backend, final File dir, final boolean journaled) {
+        final DustJournalStorage journal = (journaled ? new DustJournalStorage(backend, TypeRegistries.<Mountain.Dust<?>> newRegistry(), new File(dir,
+                "%%dust%%"), 1024 * 1024) : null);
+        final StorageWrapper instance = new StorageWrapper(Storages.newInstance((journal != null ? journal : backend), 10, 100, 10, 0, 0), journal,
+                new LinkedBlockingQueue<Operation>(), 1_000, 30 * Duration.SECOND, MountainHash.Type.SERIAL);
+        instance.registerChunk(0, GrowingBytes.class, GrowingBytes.getParser(), GrowingBytes.Id.class, GrowingBytes.Id.getParser(),
+                GrowingBytes.Entry.class, GrowingBytes.Entry.getParser());
+        return instance;
+    }
+
+    /**
+     * 書き込みキャッシュに載っている間の差分の適用で、ファイルに触らないかどうか。
+     * また、書き戻しでデータ片全体を書き込まないかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testWriteCount() throws Exception {
+        final int numOfPatches = 100;
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+
+        StorageWrapper instance = newWrapper(newBackend(this.root), this.root, true);
+        Assert.assertTrue(instance.weakWrite(chunk));
+        instance.close();
+        Assert.assertEquals(0, numOfJournals(this.root));
+
+        final CountingStorage backend = new CountingStorage(newBackend(this.root));
+        instance = newWrapper(backend, this.root, true);
+        for (int i = 1; i <= numOfPatches; i++) {
+            Assert.assertTrue(instance.patch(chunk.getId(), GrowingBytesEntryTest.newDiff(i)).isSuccess());
+            // 差分ごとのファイル操作は無い。
+            Assert.assertEquals(0, numOfJournals(this.root));
+        }
+        Assert.assertEquals(1, backend.numOfReads.get());
+        Assert.assertEquals(0, backend.numOfWrites.get());
+
+        // 書き戻しでは差分を 1 回追記するだけ。
+        instance.close();
+        Assert.assertEquals(1, backend.numOfReads.get());
+        Assert.assertEquals(0, backend.numOfWrites.get());
+        Assert.assertEquals(1, numOfJournals(this.root));
+
+        instance = newWrapper(newBackend(this.root), this.root, true);
+        Assert.assertEquals(numOfPatches, instance.read(chunk.getId()).getDiffsAfter(Long.MIN_VALUE).size());
+        instance.close();
+
+        // 追記しなければ、書き戻しでデータ片全体を書き込む。
+        final File dir = new File(this.root, "noJournal");
+        instance = newWrapper(newBackend(dir), dir, false);
+        Assert.assertTrue(instance.weakWrite(chunk));
+        instance.close();
+        final CountingStorage plain = new CountingStorage(newBackend(dir));
+        instance = newWrapper(plain, dir, false);
+        for (int i = 1; i <= numOfPatches; i++) {
+            Assert.assertTrue(instance.patch(chunk.getId(), GrowingBytesEntryTest.newDiff(i)).isSuccess());
+        }
+        instance.close();
+        Assert.assertEquals(1, plain.numOfWrites.get());
+    }
+
+    private long measure(final File dir, final boolean journaled, final int numOfPatches) throws Exception {
+        final Storage backend = newBackend(dir);
+        final DustJournalStorage instance = newInstance(backend, dir, 64 * 1024);
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+        instance.forceWrite(chunk);
+
+        GrowingBytes cur = chunk;
+        final long start = System.nanoTime();
+        for (int i = 1; i <= numOfPatches; i++) {
+            if (journaled) {
+                cur = patch(instance, cur, i);
+            } else {
+                cur = cur.copy();
+                cur.patch(GrowingBytesEntryTest.newDiff(i));
+            }
+            instance.forceWrite(cur);
+        }
+        final long end = System.nanoTime();
+        Assert.assertEquals(cur, instance.read(chunk.getId()));
+        instance.close();
+        return end - start;
+    }
+
+    /**
+     * 書き戻しのたびに全体を書く場合との比較。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPerformance() throws Exception {
+        final int numOfPatches = 1_000;
+        final long rewrite = measure(new File(this.root, "rewrite"), false, numOfPatches);
+        final long journal = measure(new File(this.root, "journal"), true, numOfPatches);
+        LOG.log(Level.SEVERE, "書き戻し数: {0} 上書き単位消費ミリ秒: {1} 追記単位消費ミリ秒: {2}", new Object[] { numOfPatches,
+                String.format("%f", rewrite / (1_000_000.0 * numOfPatches)), String.format("%f", journal / (1_000_000.0 * numOfPatches)) });
+    }
+
+}
@@ -40,4 +40,43 @@ final class GetCacheBlockingDriver {
         return result;
     }
 
+    /**
+     * 返信を待たずに実行する。
+     * 先人がいれば先人の結果を受け取る。
+     * @param operation 操作
+     * @param timeout 制限時間
+     * @return 結果
+     */
+    OperationFuture<GetCacheResult> executeAsync(final GetCacheOperation operation, final long timeout) {
+        final CheckingStation.Instrument<GetCacheResult> instrument = this.aggregator.register(operation);
+        if (instrument != null) {
+            LOG.log(Level.FINEST, "{0} は先人の結果を待ちます。", operation);
+            final OperationFuture<GetCacheResult> result = new OperationFuture<>();
+            instrument.addListener(new OperationFuture.Listener<GetCacheResult>() {
+                @Override
+                public void done(final GetCacheResult value) {
+                    result.set(value);
+                }
+            });
+            return result;
+        }
+
+        // 自分でやる。
+        final OperationFuture<GetCacheResult> result;
+        try {
+            result = this.coreDriver.executeAsync(operation, timeout);
+        } catch (final RuntimeException | Error e) {
+            // 先人の結果を待っている後続を解放する。
+            this.aggregator.free(operation, null);
+            throw e;
+        }
+        result.addListener(new OperationFuture.Listener<GetCacheResult>() {
+            @Override
+            public void done(final GetCacheResult value) {
+                GetCacheBlockingDriver.this.aggregator.free(operation, value);
+            }
+        });
+        return result;
+    }
+
 }
@@ -9,7 +9,6 @@ import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
 import nippon.kawauso.chiraura.messenger.ConnectionTypes;
@@ -31,9 +30,11 @@ final class GetCacheDriver {
     private final SessionManager sessionManager;
     private final TypeRegistry<Chunk.Id<?>> idRegistry;
     private final BlockingQueue<OutlawReport> outlawReportSink;
+    // null なら、依頼を担当者まで中継してもらう。
+    private final RouteDriver routeDriver;
 
     GetCacheDriver(final NetworkWrapper network, final StorageWrapper storage, final SessionManager sessionManager,
-            final TypeRegistry<Chunk.Id<?>> idRegistry, final BlockingQueue<OutlawReport> outlawReportSink) {
+            final TypeRegistry<Chunk.Id<?>> idRegistry, final BlockingQueue<OutlawReport> outlawReportSink, final RouteDriver routeDriver) {
         if (network == null) {
             throw new IllegalArgumentException("Null network.");
         } else if (storage == null) {
@@ -50,113 +51,247 @@ final class GetCacheDriver {
         this.sessionManager = sessionManager;
         this.idRegistry = idRegistry;
         this.outlawReportSink = outlawReportSink;
+        this.routeDriver = routeDriver;
     }
 
     boolean isObvious(final GetCacheOperation operation) throws InterruptedException, IOException {
         return this.network.dominates(operation.getId().getAddress()) || this.storage.containsCache(operation.getId());
     }
 
+    /**
+     * 返信を待たずに実行する。
+     * 結果は制限時間が過ぎれば必ず決まる。
+     * 依頼先からの返信はそれを受け取ったスレッドで処理される。
+     * @param operation 操作
+     * @param timeout 制限時間
+     * @return 結果
+     */
+    OperationFuture<GetCacheResult> executeAsync(final GetCacheOperation operation, final long timeout) {
+        final OperationFuture<GetCacheResult> result = new OperationFuture<>();
+        (new Procedure(operation, System.currentTimeMillis() + timeout, result)).next();
+        return result;
+    }
+
     GetCacheResult execute(final GetCacheOperation operation, final long timeout) throws InterruptedException, IOException {
-        final long start = System.currentTimeMillis();
-        final Address address = operation.getId().getAddress();
-        final Set<AddressedPeer> usedDestinations = new HashSet<>();
+        final GetCacheResult result = executeAsync(operation, timeout).get(timeout);
+        if (result == null) {
+            LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", operation);
+            return GetCacheResult.newGiveUp();
+        }
+        return result;
+    }
+
+    /**
+     * 依頼先を変えながら結果が出るまで続ける手続き。
+     * 返信を待つ間はスレッドを使わない。
+     */
+    private final class Procedure implements OperationFuture.Listener<ReceivedMail> {
 
-        while (!Thread.currentThread().isInterrupted() && System.currentTimeMillis() < start + timeout) {
+        private final GetCacheOperation operation;
+        private final long deadline;
+        private final OperationFuture<GetCacheResult> result;
+        private final Set<AddressedPeer> usedDestinations;
 
-            final AddressedPeer destination = this.network.getRoutingDestination(address);
+        // 依頼中の相手。
+        private AddressedPeer destination;
+        // 担当者を探したかどうか。
+        private boolean routed;
 
-            if (destination == null) {
-                LOG.log(Level.FINEST, "{0} の担当は自分でした。", operation.getId());
-                final Chunk chunk = this.storage.read(operation.getId());
+        private Procedure(final GetCacheOperation operation, final long deadline, final OperationFuture<GetCacheResult> result) {
+            this.operation = operation;
+            this.deadline = deadline;
+            this.result = result;
+            this.usedDestinations = new HashSet<>();
+            this.destination = null;
+            this.routed = false;
+        }
+
+        /**
+         * 次の依頼先に依頼するか、結果を決める。
+         */
+        private void next() {
+            final GetCacheResult value;
+            try {
+                value = request();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.result.set(GetCacheResult.newGiveUp());
+                return;
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+                this.result.set(GetCacheResult.newGiveUp());
+                return;
+            }
+            if (value != null) {
+                this.result.set(value);
+            }
+        }
+
+        /**
+         * @return 結果。
+         *         依頼した場合は null
+         */
+        private GetCacheResult request() throws IOException, InterruptedException {
+            if (this.deadline <= System.currentTimeMillis()) {
+                LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", this.operation);
+                return GetCacheResult.newGiveUp();
+            }
+
+            this.destination = GetCacheDriver.this.network.getRoutingDestination(this.operation.getId().getAddress());
+
+            if (this.destination == null) {
+                LOG.log(Level.FINEST, "{0} の担当は自分でした。", this.operation.getId());
+                final Chunk chunk = GetCacheDriver.this.storage.read(this.operation.getId());
                 if (chunk == null) {
-                    LOG.log(Level.FINEST, "{0} はありませんでした。", operation.getId());
+                    LOG.log(Level.FINEST, "{0} はありませんでした。", this.operation.getId());
                     return GetCacheResult.newNotFound(System.currentTimeMillis());
                 } else {
-                    LOG.log(Level.FINEST, "{0} がありました。", operation.getId());
+                    LOG.log(Level.FINEST, "{0} がありました。", this.operation.getId());
                     return new GetCacheResult(chunk, System.currentTimeMillis());
                 }
             }
 
-            final StorageWrapper.CacheResult<?> cache = this.storage.readCache(operation.getId());
+            final StorageWrapper.CacheResult<?> cache = GetCacheDriver.this.storage.readCache(this.operation.getId());
             if (cache.hasInfo()) {
-                LOG.log(Level.FINEST, "ついさっき {0} の情報を更新してました。", operation.getId());
+                LOG.log(Level.FINEST, "ついさっき {0} の情報を更新してました。", this.operation.getId());
                 if (cache.isNotFound()) {
-                    LOG.log(Level.FINEST, "{0} は無いらしいです。", operation.getId());
+                    LOG.log(Level.FINEST, "{0} は無いらしいです。", this.operation.getId());
                     return GetCacheResult.newNotFound(cache.getAccessDate());
                 } else {
-                    LOG.log(Level.FINEST, "{0} の複製がありました。", operation.getId());
+                    LOG.log(Level.FINEST, "{0} の複製がありました。", this.operation.getId());
                     return new GetCacheResult(cache.getChunk(), cache.getAccessDate());
                 }
             }
 
-            if (usedDestinations.contains(destination)) {
-                LOG.log(Level.FINEST, "{0} の依頼先 {1} が重複したので諦めます。", new Object[] { operation, destination });
+            if (this.usedDestinations.contains(this.destination)) {
+                LOG.log(Level.FINEST, "{0} の依頼先 {1} が重複したので諦めます。", new Object[] { this.operation, this.destination });
                 return GetCacheResult.newGiveUp();
             }
+
+            if (GetCacheDriver.this.routeDriver != null && !this.routed) {
+                /*
+                 * 担当者を自分で探してから直接依頼する。
+                 * 探している間はスレッドを使わない。
+                 * 直接の依頼に失敗したら、次からは中継してもらう。
+                 */
+                this.routed = true;
+                GetCacheDriver.this.routeDriver.executeAsync(this.operation.getId().getAddress(), this.destination,
+                        this.deadline - System.currentTimeMillis()).addListener(new OperationFuture.Listener<RouteResult>() {
+                    @Override
+                    public void done(final RouteResult route) {
+                        routed(route);
+                    }
+                });
+                return null;
+            }
+
+            send();
+            return null;
+        }
+
+        /**
+         * 担当者を探し終えたので依頼する。
+         */
+        private void routed(final RouteResult route) {
+            if (!route.isGivenUp() && !this.usedDestinations.contains(route.getDestination())) {
+                this.destination = route.getDestination();
+            }
+            if (this.deadline <= System.currentTimeMillis()) {
+                LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", this.operation);
+                this.result.set(GetCacheResult.newGiveUp());
+                return;
+            }
+            send();
+        }
+
+        private void send() {
             // やりとりの準備。
-            final Session session = this.sessionManager.newSession(destination.getPeer());
+            final Session session = GetCacheDriver.this.sessionManager.newSession(this.destination.getPeer(), this.deadline - System.currentTimeMillis(), this);
 
             // 手紙の準備。
             final List<Message> mail = new ArrayList<>(2);
-            mail.add(new GetCacheMessage(this.idRegistry, operation.getId()));
+            mail.add(new GetCacheMessage(GetCacheDriver.this.idRegistry, this.operation.getId()));
             mail.add(new SessionMessage(session));
 
-            LOG.log(Level.FINEST, "{0} を {1} に依頼します。", new Object[] { operation, destination });
+            LOG.log(Level.FINEST, "{0} を {1} に依頼します。", new Object[] { this.operation, this.destination });
 
-            // 送受信。
-            this.network.sendMail(destination.getPeer(), ConnectionTypes.CONTROL, mail);
-            final ReceivedMail receivedMail = this.sessionManager.waitReply(session, start + timeout - System.currentTimeMillis());
+            // 送信。返信は done で受け取る。
+            GetCacheDriver.this.network.sendMail(this.destination.getPeer(), ConnectionTypes.CONTROL, mail);
+        }
 
+        @Override
+        public void done(final ReceivedMail receivedMail) {
+            final GetCacheResult value;
+            try {
+                value = receive(receivedMail);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.result.set(GetCacheResult.newGiveUp());
+                return;
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+                this.result.set(GetCacheResult.newGiveUp());
+                return;
+            }
+            if (value != null) {
+                this.result.set(value);
+            } else {
+                next();
+            }
+        }
+
+        /**
+         * @return 結果。
+         *         依頼先を変えて続ける場合は null
+         */
+        private GetCacheResult receive(final ReceivedMail receivedMail) throws IOException, InterruptedException {
             if (receivedMail == null) {
-                if (start + timeout <= System.currentTimeMillis()) {
-                    LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", operation);
+                if (this.deadline <= System.currentTimeMillis()) {
+                    LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", this.operation);
                     return GetCacheResult.newGiveUp();
                 } else {
-                    LOG.log(Level.FINEST, "{0} を依頼した {1} との間に何か異常がありました。", new Object[] { operation, destination });
-                    usedDestinations.add(destination);
-                    continue;
+                    LOG.log(Level.FINEST, "{0} を依頼した {1} との間に何か異常がありました。", new Object[] { this.operation, this.destination });
+                    this.usedDestinations.add(this.destination);
+                    return null;
                 }
-            } else {
-                if (receivedMail.getMail().get(0) instanceof GetCacheReply) {
-                    // 正常。
-                    LOG.log(Level.FINEST, "{0} から {1} の結果が返ってきました。", new Object[] { destination, operation });
-                    this.network.addActivePeer(receivedMail.getSourceId(), receivedMail.getSourcePeer());
-                    final GetCacheReply reply = (GetCacheReply) receivedMail.getMail().get(0);
-                    if (reply.isRejected()) {
-                        LOG.log(Level.FINEST, "{0} は断られました。", operation);
-                        return GetCacheResult.newGiveUp();
-                    } else if (reply.isGivenUp()) {
-                        LOG.log(Level.FINEST, "{0} は諦められました。", operation);
-                        return GetCacheResult.newGiveUp();
-                    } else if (reply.isNotFound()) {
-                        final StorageWrapper.CacheResult<?> result = this.storage.addNotFoundCache(operation.getId(), reply.getAccessDate());
-                        if (result.isNotFound()) {
-                            LOG.log(Level.FINEST, "{0} は対象無しと言われました。", operation);
-                            return GetCacheResult.newNotFound(reply.getAccessDate());
-                        } else {
-                            LOG.log(Level.FINEST, "{0} は対象無しと言われたけど複製がありました。", operation);
-                            return new GetCacheResult(result.getChunk(), result.getAccessDate());
-                        }
+            } else if (receivedMail.getMail().get(0) instanceof GetCacheReply) {
+                // 正常。
+                LOG.log(Level.FINEST, "{0} から {1} の結果が返ってきました。", new Object[] { this.destination, this.operation });
+                GetCacheDriver.this.network.addActivePeer(receivedMail.getSourceId(), receivedMail.getSourcePeer());
+                final GetCacheReply reply = (GetCacheReply) receivedMail.getMail().get(0);
+                if (reply.isRejected()) {
+                    LOG.log(Level.FINEST, "{0} は断られました。", this.operation);
+                    return GetCacheResult.newGiveUp();
+                } else if (reply.isGivenUp()) {
+                    LOG.log(Level.FINEST, "{0} は諦められました。", this.operation);
+                    return GetCacheResult.newGiveUp();
+                } else if (reply.isNotFound()) {
+                    final StorageWrapper.CacheResult<?> cache = GetCacheDriver.this.storage.addNotFoundCache(this.operation.getId(), reply.getAccessDate());
+                    if (cache.isNotFound()) {
+                        LOG.log(Level.FINEST, "{0} は対象無しと言われました。", this.operation);
+                        return GetCacheResult.newNotFound(reply.getAccessDate());
                     } else {
-                        final StorageWrapper.CacheResult<?> result = this.storage.forceWriteCache(reply.getChunk(), reply.getAccessDate());
-                        if (result.isSuccess()) {
-                            LOG.log(Level.FINEST, "{0} が成功し更新されました。", operation);
-                        } else {
-                            LOG.log(Level.FINEST, "{0} が成功したけど更新はされませんでした。", operation);
-                        }
-                        return new GetCacheResult(result.getChunk(), result.getAccessDate());
+                        LOG.log(Level.FINEST, "{0} は対象無しと言われたけど複製がありました。", this.operation);
+                        return new GetCacheResult(cache.getChunk(), cache.getAccessDate());
                     }
                 } else {
-                    // プロトコル違反。
-                    LOG.log(Level.WARNING, "{0} からの返事の型 {1} は期待する型 {2} と異なります。", new Object[] { destination, receivedMail.getMail().get(0).getClass(),
-                            GetCacheReply.class });
-                    ConcurrentFunctions.completePut(new OutlawReport(destination.getPeer()), this.outlawReportSink);
-                    continue;
+                    final StorageWrapper.CacheResult<?> cache = GetCacheDriver.this.storage.forceWriteCache(reply.getChunk(), reply.getAccessDate());
+                    if (cache.isSuccess()) {
+                        LOG.log(Level.FINEST, "{0} が成功し更新されました。", this.operation);
+                    } else {
+                        LOG.log(Level.FINEST, "{0} が成功したけど更新はされませんでした。", this.operation);
+                    }
+                    return new GetCacheResult(cache.getChunk(), cache.getAccessDate());
                 }
+            } else {
+                // プロトコル違反。
+                LOG.log(Level.WARNING, "{0} からの返事の型 {1} は期待する型 {2} と異なります。", new Object[] { this.destination,
+                        receivedMail.getMail().get(0).getClass(), GetCacheReply.class });
+                ConcurrentFunctions.completePut(new OutlawReport(this.destination.getPeer()), GetCacheDriver.this.outlawReportSink);
+                return null;
             }
         }
 
-        return GetCacheResult.newGiveUp();
     }
 
 }
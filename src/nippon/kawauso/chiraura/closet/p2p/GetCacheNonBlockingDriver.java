@@ -45,15 +45,16 @@ final class GetCacheNonBlockingDriver {
             return;
         }
 
+        // 依頼を出したら実行機のスレッドは解放され、返信は受け取ったスレッドで処理される。
         this.executor.submit(new Reporter<Void>(Level.WARNING) {
             @Override
-            protected Void subCall() throws InterruptedException, IOException {
-                GetCacheResult result = null;
-                try {
-                    result = GetCacheNonBlockingDriver.this.coreDriver.execute(operation, timeout);
-                } finally {
-                    GetCacheNonBlockingDriver.this.aggregator.free(operation, result);
-                }
+            protected Void subCall() {
+                GetCacheNonBlockingDriver.this.coreDriver.executeAsync(operation, timeout).addListener(new OperationFuture.Listener<GetCacheResult>() {
+                    @Override
+                    public void done(final GetCacheResult result) {
+                        GetCacheNonBlockingDriver.this.aggregator.free(operation, result);
+                    }
+                });
                 return null;
             }
         });
@@ -42,4 +42,43 @@ final class GetChunkBlockingDriver {
         return result;
     }
 
+    /**
+     * 返信を待たずに実行する。
+     * 先人がいれば先人の結果を受け取る。
+     * @param operation 操作
+     * @param timeout 制限時間
+     * @return 結果
+     */
+    OperationFuture<GetChunkResult> executeAsync(final GetChunkOperation operation, final long timeout) {
+        final CheckingStation.Instrument<GetChunkResult> instrument = this.aggregator.register(operation);
+        if (instrument != null) {
+            LOG.log(Level.FINEST, "{0} は先人の結果を待ちます。", operation);
+            final OperationFuture<GetChunkResult> result = new OperationFuture<>();
+            instrument.addListener(new OperationFuture.Listener<GetChunkResult>() {
+                @Override
+                public void done(final GetChunkResult value) {
+                    result.set(value);
+                }
+            });
+            return result;
+        }
+
+        // 自分でやる。
+        final OperationFuture<GetChunkResult> result;
+        try {
+            result = this.coreDriver.executeAsync(operation, timeout);
+        } catch (final RuntimeException | Error e) {
+            // 先人の結果を待っている後続を解放する。
+            this.aggregator.free(operation, null);
+            throw e;
+        }
+        result.addListener(new OperationFuture.Listener<GetChunkResult>() {
+            @Override
+            public void done(final GetChunkResult value) {
+                GetChunkBlockingDriver.this.aggregator.free(operation, value);
+            }
+        });
+        return result;
+    }
+
 }
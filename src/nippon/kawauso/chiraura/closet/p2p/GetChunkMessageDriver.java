@@ -1,11 +1,11 @@
 package nippon.kawauso.chiraura.closet.p2p;
 
-import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,45 +49,61 @@ final class GetChunkMessageDriver {
 
         if (!this.network.moreAppropriate(message.getId().getAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
-            final List<Message> reply = new ArrayList<>(2);
-            reply.add(GetChunkReply.newRejected());
-            reply.add(new SessionReply(session));
-            this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+            reject(session, source);
             return;
         }
 
-        this.executor.submit(new Reporter<Void>(Level.WARNING) {
-            @Override
-            protected Void subCall() throws IOException, InterruptedException {
-                final GetChunkOperation operation = new GetChunkOperation(message.getId());
-                final GetChunkResult result = GetChunkMessageDriver.this.blockingDriver.execute(operation, timeout);
-
-                // 返信の用意。
-                final List<Message> reply = new ArrayList<>(2);
-                final int connectionType;
-                if (result == null) {
-                    // 制限時間中に結果を得られなかった。(やったのは先人かも)
-                    reply.add(GetChunkReply.newGiveUp());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else if (result.isGivenUp()) {
-                    // 通信先が諦めた。俺も諦める。
-                    reply.add(GetChunkReply.newGiveUp());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else if (result.isNotFound()) {
-                    reply.add(GetChunkReply.newNotFound());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else {
-                    reply.add(new GetChunkReply(GetChunkMessageDriver.this.chunkRegistry, result.getChunk()));
-                    connectionType = ConnectionTypes.DATA;
+        /*
+         * 自分の担当ならここで倉庫を読むので、MailReader を止めないように実行機に渡す。
+         * 依頼を出したら実行機のスレッドは解放され、返信は受け取ったスレッドで処理される。
+         */
+        try {
+            this.executor.submit(new Reporter<Void>(Level.WARNING) {
+                @Override
+                protected Void subCall() {
+                    final GetChunkOperation operation = new GetChunkOperation(message.getId());
+                    GetChunkMessageDriver.this.blockingDriver.executeAsync(operation, timeout).addListener(new OperationFuture.Listener<GetChunkResult>() {
+                        @Override
+                        public void done(final GetChunkResult result) {
+                            reply(message, session, source, result);
+                        }
+                    });
+                    return null;
                 }
-                reply.add(new SessionReply(session));
+            });
+        } catch (final RejectedExecutionException e) {
+            // 手が足りないので断る。依頼元は断られたら諦める。断った数は下請けが数えている。
+            LOG.log(Level.FINE, "手が足りないので {0} に依頼された {1} を断ります。", new Object[] { source, message });
+            reject(session, source);
+        }
+    }
+
+    private void reply(final GetChunkMessage message, final Session session, final InetSocketAddress source, final GetChunkResult result) {
+        // 返信の用意。
+        final List<Message> reply = new ArrayList<>(2);
+        if (result == null) {
+            // 制限時間中に結果を得られなかった。(やったのは先人かも)
+            reply.add(GetChunkReply.newGiveUp());
+        } else if (result.isGivenUp()) {
+            // 通信先が諦めた。俺も諦める。
+            reply.add(GetChunkReply.newGiveUp());
+        } else if (result.isNotFound()) {
+            reply.add(GetChunkReply.newNotFound());
+        } else {
+            reply.add(new GetChunkReply(this.chunkRegistry, result.getChunk()));
+        }
+        reply.add(new SessionReply(session));
+
+        // 返信する。
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+        LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
+    }
 
-                // 返信する。
-                GetChunkMessageDriver.this.network.sendMail(source, connectionType, reply);
-                LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
-                return null;
-            }
-        });
+    private void reject(final Session session, final InetSocketAddress source) {
+        final List<Message> reply = new ArrayList<>(2);
+        reply.add(GetChunkReply.newRejected());
+        reply.add(new SessionReply(session));
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
     }
 
 }
@@ -1,6 +1,5 @@
 package nippon.kawauso.chiraura.closet.p2p;
 
-import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,16 +44,16 @@ final class GetChunkNonBlockingDriver {
             return;
         }
 
+        // 依頼を出したら実行機のスレッドは解放され、返信は受け取ったスレッドで処理される。
         this.executor.submit(new Reporter<Void>(Level.WARNING) {
             @Override
-            protected Void subCall() throws InterruptedException, IOException {
-                GetChunkResult result = null;
-                // 自分でやる。
-                try {
-                    result = GetChunkNonBlockingDriver.this.coreDriver.execute(operation, timeout);
-                } finally {
-                    GetChunkNonBlockingDriver.this.aggregator.free(operation, result);
-                }
+            protected Void subCall() {
+                GetChunkNonBlockingDriver.this.coreDriver.executeAsync(operation, timeout).addListener(new OperationFuture.Listener<GetChunkResult>() {
+                    @Override
+                    public void done(final GetChunkResult result) {
+                        GetChunkNonBlockingDriver.this.aggregator.free(operation, result);
+                    }
+                });
                 return null;
             }
         });
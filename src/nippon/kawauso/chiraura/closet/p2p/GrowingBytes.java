@@ -6,15 +6,15 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.NavigableSet;
-import java.util.TreeSet;
 
 import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.BytesFunctions;
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.base.HashValue;
 import nippon.kawauso.chiraura.lib.cell.Utf8Cell;
+import nippon.kawauso.chiraura.lib.container.SharedTreeSet;
 import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
@@ -25,7 +25,7 @@ import nippon.kawauso.chiraura.storage.SkeletalChunk;
 /**
  * @author chirauraNoSakusha
  */
-final class GrowingBytes extends SkeletalChunk implements Mountain {
+final class GrowingBytes extends SkeletalChunk implements MountainHash.Selectable {
 
     static final class Id implements Chunk.Id<GrowingBytes> {
 
@@ -181,14 +181,18 @@ final class GrowingBytes extends SkeletalChunk implements Mountain {
 
     private final Id id;
     private final long date;
-    private final NavigableSet<Entry> entries;
+    private final SharedTreeSet<Entry> entries;
 
     private int entrySize;
     private boolean notHashed;
     private HashValue hashValue;
+    // 差分ごとのハッシュ値の和。INCREMENTAL 方式で初めて計算するまでは null。
+    private MountainHash dustHash;
+    // ハッシュ値の計算方式。
+    private MountainHash.Type hashType;
 
-    private GrowingBytes(final Id id, final long date, final NavigableSet<Entry> entries, final int entrySize, final boolean notHashed,
-            final HashValue hashValue) {
+    private GrowingBytes(final Id id, final long date, final SharedTreeSet<Entry> entries, final int entrySize, final boolean notHashed,
+            final HashValue hashValue, final MountainHash dustHash, final MountainHash.Type hashType) {
         if (id == null) {
             throw new IllegalArgumentException("Null name.");
         } else if (entries == null) {
@@ -200,10 +204,12 @@ final class GrowingBytes extends SkeletalChunk implements Mountain {
         this.entrySize = entrySize;
         this.notHashed = notHashed;
         this.hashValue = hashValue;
+        this.dustHash = dustHash;
+        this.hashType = hashType;
     }
 
     private GrowingBytes(final Id id, final long date) {
-        this(id, date, new TreeSet<Entry>(), 0, true, null);
+        this(id, date, new SharedTreeSet<Entry>(), 0, true, null, null, MountainHash.Type.SERIAL);
     }
 
     GrowingBytes(final String name, final long date) {
@@ -226,12 +232,34 @@ final class GrowingBytes extends SkeletalChunk implements Mountain {
     @Override
     public HashValue getHashValue() {
         if (this.notHashed) {
-            this.hashValue = super.getHashValue();
+            if (this.hashType == MountainHash.Type.INCREMENTAL) {
+                if (this.dustHash == null) {
+                    this.dustHash = MountainHash.newInstance(this.entries);
+                }
+                this.hashValue = this.dustHash.toHashValue(BytesConversion.toBytes("ol", this.id, this.date));
+            } else {
+                this.hashValue = super.getHashValue();
+            }
             this.notHashed = false;
         }
         return this.hashValue;
     }
 
+    @Override
+    public MountainHash.Type getHashType() {
+        return this.hashType;
+    }
+
+    @Override
+    public void setHashType(final MountainHash.Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Null type.");
+        } else if (type != this.hashType) {
+            this.hashType = type;
+            this.notHashed = true;
+        }
+    }
+
     @Override
     public Id getId() {
         return this.id;
@@ -239,7 +267,8 @@ final class GrowingBytes extends SkeletalChunk implements Mountain {
 
     @Override
     public GrowingBytes copy() {
-        return new GrowingBytes(this.id, this.date, new TreeSet<>(this.entries), this.entrySize, this.notHashed, this.hashValue);
+        return new GrowingBytes(this.id, this.date, this.entries.copy(), this.entrySize, this.notHashed, this.hashValue,
+                (this.dustHash == null ? null : this.dustHash.copy()), this.hashType);
     }
 
     @Override
@@ -249,7 +278,7 @@ final class GrowingBytes extends SkeletalChunk implements Mountain {
 
     @Override
     public List<Entry> getDiffsAfter(final long baseDate) {
-        return new ArrayList<>(this.entries.tailSet(new Entry(baseDate + 1, new byte[0]), true));
+        return this.entries.tailList(new Entry(baseDate + 1, new byte[0]), true);
     }
 
     @Override
@@ -270,6 +299,9 @@ final class GrowingBytes extends SkeletalChunk implements Mountain {
         if (this.entries.add(entry)) {
             this.entrySize += entry.byteSize();
             this.notHashed = true;
+            if (this.dustHash != null) {
+                this.dustHash.add(entry);
+            }
             return true;
         } else {
             return false;
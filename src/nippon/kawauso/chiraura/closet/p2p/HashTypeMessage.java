@@ -0,0 +1,117 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import nippon.kawauso.chiraura.closet.MountainHash;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.messenger.Message;
+
+/**
+ * 送り主のデータ片のハッシュ値の計算方式を示す言付け。
+ * 手紙の先頭と、やり取り用の印の間に挟む。
+ * 従来の方式 (SERIAL) の個体は添えないので、添えられていない手紙の送り主は従来の方式とみなす。
+ * 知らない個体は読み飛ばすので、古い個体に送っても良い。
+ * @author chirauraNoSakusha
+ */
+final class HashTypeMessage implements Message {
+
+    /*
+     * 方式は番号で送る。
+     * 知らない番号の方式とはハッシュ値を比べられないものとして扱う。
+     */
+
+    private static final int SERIAL = 0;
+    private static final int INCREMENTAL = 1;
+
+    private final int code;
+
+    private HashTypeMessage(final int code) {
+        this.code = code;
+    }
+
+    HashTypeMessage(final MountainHash.Type type) {
+        this(toCode(type));
+    }
+
+    private static int toCode(final MountainHash.Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Null type.");
+        }
+        switch (type) {
+        case SERIAL:
+            return SERIAL;
+        case INCREMENTAL:
+            return INCREMENTAL;
+        default:
+            throw new IllegalArgumentException("Unknown type ( " + type + " ).");
+        }
+    }
+
+    /**
+     * 計算方式を返す。
+     * @return 計算方式。
+     *         知らない方式なら null
+     */
+    MountainHash.Type getType() {
+        switch (this.code) {
+        case SERIAL:
+            return MountainHash.Type.SERIAL;
+        case INCREMENTAL:
+            return MountainHash.Type.INCREMENTAL;
+        default:
+            return null;
+        }
+    }
+
+    @Override
+    public int byteSize() {
+        return BytesConversion.byteSize("i", this.code);
+    }
+
+    @Override
+    public int toStream(final OutputStream output) throws IOException {
+        return BytesConversion.toStream(output, "i", this.code);
+    }
+
+    static BytesConvertible.Parser<HashTypeMessage> getParser() {
+        return new BytesConvertible.Parser<HashTypeMessage>() {
+            @Override
+            public int fromStream(final InputStream input, final int maxByteSize, final List<? super HashTypeMessage> output) throws MyRuleException,
+                    IOException {
+                final int[] code = new int[1];
+                final int size = BytesConversion.fromStream(input, maxByteSize, "i", code);
+                output.add(new HashTypeMessage(code[0]));
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append('[').append(getType() == null ? Integer.toString(this.code) : getType())
+                .append(']').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return this.code;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof HashTypeMessage)) {
+            return false;
+        }
+        final HashTypeMessage other = (HashTypeMessage) obj;
+        return this.code == other.code;
+    }
+
+}
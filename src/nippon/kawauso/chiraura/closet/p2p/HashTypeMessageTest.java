@@ -0,0 +1,55 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nippon.kawauso.chiraura.closet.MountainHash;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class HashTypeMessageTest extends BytesConvertibleTest<HashTypeMessage> {
+
+    @Override
+    protected HashTypeMessage[] getInstances() {
+        final List<HashTypeMessage> list = new ArrayList<>();
+        for (final MountainHash.Type type : MountainHash.Type.values()) {
+            list.add(new HashTypeMessage(type));
+        }
+        return list.toArray(new HashTypeMessage[0]);
+    }
+
+    @Override
+    protected HashTypeMessage getInstance(final int seed) {
+        final MountainHash.Type[] types = MountainHash.Type.values();
+        return new HashTypeMessage(types[Math.abs(seed % types.length)]);
+    }
+
+    @Override
+    protected BytesConvertible.Parser<HashTypeMessage> getParser() {
+        return HashTypeMessage.getParser();
+    }
+
+    @Override
+    protected int getNumOfLoops() {
+        return 1_000_000;
+    }
+
+    /**
+     * 知らない方式を受け取っても、落ちずに不明として扱うかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testUnknown() throws Exception {
+        final byte[] bytes = BytesConversion.toBytes("i", 12345);
+        final HashTypeMessage instance = BytesConversion.fromBytes(bytes, HashTypeMessage.getParser());
+        Assert.assertNull(instance.getType());
+    }
+
+}
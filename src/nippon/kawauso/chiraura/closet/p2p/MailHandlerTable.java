@@ -0,0 +1,445 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.messenger.ReceivedMail;
+
+/**
+ * 受信した手紙の先頭の通信文の型から、処理を引く表。
+ * 表は作成時に作り切り、以後は変更しないので、複数の MailReader から並列に使える。
+ * @author chirauraNoSakusha
+ */
+final class MailHandlerTable {
+
+    private static final Logger LOG = Logger.getLogger(MailHandlerTable.class.getName());
+
+    /**
+     * 返信を待っている依頼の処理。
+     */
+    interface MessageHandler {
+        void handle(Message message, Session session, ReceivedMail receivedMail) throws InterruptedException;
+    }
+
+    /**
+     * 待ち人のいなかった返信の処理。
+     */
+    interface ReplyHandler {
+        void handle(Message reply) throws InterruptedException;
+    }
+
+    // 参照。
+    private final SessionManager sessionManager;
+
+    // 保持。
+    private final Map<Class<?>, MessageHandler> messageHandlers;
+    private final Map<Class<?>, ReplyHandler> replyHandlers;
+    private final MailStatistics statistics;
+
+    MailHandlerTable(final SessionManager sessionManager, final long operationTimeout, final MessageDriverSet messageDrivers,
+            final ReplyDriverSet replyDrivers) {
+        if (sessionManager == null) {
+            throw new IllegalArgumentException("Null session manager.");
+        } else if (operationTimeout < 0) {
+            throw new IllegalArgumentException("Invalid operation timeout ( " + operationTimeout + " ).");
+        } else if (messageDrivers == null) {
+            throw new IllegalArgumentException("Null message drivers.");
+        } else if (replyDrivers == null) {
+            throw new IllegalArgumentException("Null reply drivers.");
+        }
+
+        this.sessionManager = sessionManager;
+        this.messageHandlers = new HashMap<>();
+        this.replyHandlers = new HashMap<>();
+        this.statistics = new MailStatistics();
+
+        final PeerAccessMessageDriver peerAccessMessageDriver = messageDrivers.getPeerAccessMessage();
+        register(PeerAccessMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                peerAccessMessageDriver.execute((PeerAccessMessage) message, session, receivedMail.getSourcePeer());
+            }
+        });
+
+        final AddressAccessMessageDriver addressAccessMessageDriver = messageDrivers.getAddressAccessMessage();
+        register(AddressAccessMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                addressAccessMessageDriver.execute((AddressAccessMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final GetChunkMessageDriver getChunkMessageDriver = messageDrivers.getGetChunkMessage();
+        register(GetChunkMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                getChunkMessageDriver.execute((GetChunkMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final UpdateChunkMessageDriver updateChunkMessageDriver = messageDrivers.getUpdateChunkMessage();
+        register(UpdateChunkMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                updateChunkMessageDriver.execute((UpdateChunkMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final AddChunkMessageDriver addChunkMessageDriver = messageDrivers.getAddChunkMessage();
+        register(AddChunkMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                addChunkMessageDriver.execute((AddChunkMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final PatchChunkMessageDriver patchChunkMessageDriver = messageDrivers.getPatchChunkMessage();
+        register(PatchChunkMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                patchChunkMessageDriver.execute((PatchChunkMessage<?>) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final PatchAndGetOrUpdateCacheMessageDriver patchAndGetOrUpdateCacheMessageDriver = messageDrivers.getPatchAndGetOrUpdateCacheMessage();
+        register(PatchAndGetOrUpdateCacheMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                patchAndGetOrUpdateCacheMessageDriver.execute((PatchAndGetOrUpdateCacheMessage<?>) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final GetCacheMessageDriver getCacheMessageDriver = messageDrivers.getGetCacheMessage();
+        register(GetCacheMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                getCacheMessageDriver.execute((GetCacheMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final GetOrUpdateCacheMessageDriver getOrUpdateCacheMessageDriver = messageDrivers.getGetOrUpdateCacheMessage();
+        register(GetOrUpdateCacheMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                getOrUpdateCacheMessageDriver.execute((GetOrUpdateCacheMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final AddCacheMessageDriver addCacheMessageDriver = messageDrivers.getAddCacheMessage();
+        register(AddCacheMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                addCacheMessageDriver.execute((AddCacheMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final PatchOrAddAndGetCacheMessageDriver patchOrAddAndGetCacheMessageDriver = messageDrivers.getPatchOrAddAndGetCacheMessage();
+        register(PatchOrAddAndGetCacheMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                patchOrAddAndGetCacheMessageDriver.execute((PatchOrAddAndGetCacheMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer(), operationTimeout);
+            }
+        });
+
+        final CheckStockMessageDriver checkStockMessageDriver = messageDrivers.getCheckStockMessage();
+        register(CheckStockMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                checkStockMessageDriver.execute((CheckStockMessage) message, session, receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final CheckDemandMessageDriver checkDemandMessageDriver = messageDrivers.getCheckDemandMessage();
+        register(CheckDemandMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                checkDemandMessageDriver.execute((CheckDemandMessage) message, session, receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final RecoveryMessageDriver recoveryMessageDriver = messageDrivers.getRecoveryMessage();
+        register(RecoveryMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                recoveryMessageDriver.execute((RecoveryMessage) message, session, receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final BackupMessageDriver backupMessageDriver = messageDrivers.getBackupMessage();
+        register(BackupMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                backupMessageDriver.execute((BackupMessage<?>) message, session, receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final SimpleRecoveryMessageDriver simpleRecoveryMessageDriver = messageDrivers.getSimpleRecoveryMessage();
+        register(SimpleRecoveryMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                simpleRecoveryMessageDriver.execute((SimpleRecoveryMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final CheckOneDemandMessageDriver checkOneDemandMessageDriver = messageDrivers.getCheckOneDemandMessage();
+        register(CheckOneDemandMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                checkOneDemandMessageDriver.execute((CheckOneDemandMessage) message, session,
+                        receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final CheckDigestMessageDriver checkDigestMessageDriver = messageDrivers.getCheckDigestMessage();
+        register(CheckDigestMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                checkDigestMessageDriver.execute((CheckDigestMessage) message, session, receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            }
+        });
+
+        final RouteMessageDriver routeMessageDriver = messageDrivers.getRouteMessage();
+        register(RouteMessage.class, new MessageHandler() {
+            @Override
+            public void handle(final Message message, final Session session, final ReceivedMail receivedMail) throws InterruptedException {
+                routeMessageDriver.execute((RouteMessage) message, session, receivedMail.getSourcePeer());
+            }
+        });
+
+        final PeerAccessReplyDriver peerAccessReplyDriver = replyDrivers.getPeerAccessReply();
+        register(PeerAccessReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                peerAccessReplyDriver.execute((PeerAccessReply) reply);
+            }
+        });
+
+        final AddressAccessReplyDriver addressAccessReplyDriver = replyDrivers.getAddressAccessReply();
+        register(AddressAccessReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                addressAccessReplyDriver.execute((AddressAccessReply) reply);
+            }
+        });
+
+        final GetChunkReplyDriver getChunkReplyDriver = replyDrivers.getGetChunkReply();
+        register(GetChunkReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                getChunkReplyDriver.execute((GetChunkReply) reply);
+            }
+        });
+
+        final UpdateChunkReplyDriver updateChunkReplyDriver = replyDrivers.getUpdateChunkReply();
+        register(UpdateChunkReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                updateChunkReplyDriver.execute((UpdateChunkReply) reply);
+            }
+        });
+
+        final AddChunkReplyDriver addChunkReplyDriver = replyDrivers.getAddChunkReply();
+        register(AddChunkReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                addChunkReplyDriver.execute((AddChunkReply) reply);
+            }
+        });
+
+        final PatchChunkReplyDriver patchChunkReplyDriver = replyDrivers.getPatchChunkReply();
+        register(PatchChunkReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                patchChunkReplyDriver.execute((PatchChunkReply) reply);
+            }
+        });
+
+        final PatchAndGetOrUpdateCacheReplyDriver patchAndGetOrUpdateCacheReplyDriver = replyDrivers.getPatchAndGetOrUpdateCacheReply();
+        register(PatchAndGetOrUpdateCacheReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                patchAndGetOrUpdateCacheReplyDriver.execute((PatchAndGetOrUpdateCacheReply<?>) reply);
+            }
+        });
+
+        final GetCacheReplyDriver getCacheReplyDriver = replyDrivers.getGetCacheReply();
+        register(GetCacheReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                getCacheReplyDriver.execute((GetCacheReply) reply);
+            }
+        });
+
+        final GetOrUpdateCacheReplyDriver getOrUpdateCacheReplyDriver = replyDrivers.getGetOrUpdateCacheReply();
+        register(GetOrUpdateCacheReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                getOrUpdateCacheReplyDriver.execute((GetOrUpdateCacheReply<?>) reply);
+            }
+        });
+
+        final AddCacheReplyDriver addCacheReplyDriver = replyDrivers.getAddCacheReply();
+        register(AddCacheReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                addCacheReplyDriver.execute((AddCacheReply) reply);
+            }
+        });
+
+        final PatchOrAddAndGetCacheReplyDriver patchOrAddAndGetCacheReplyDriver = replyDrivers.getPatchOrAddAndGetCacheReply();
+        register(PatchOrAddAndGetCacheReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                patchOrAddAndGetCacheReplyDriver.execute((PatchOrAddAndGetCacheReply) reply);
+            }
+        });
+
+        final CheckStockReplyDriver checkStockReplyDriver = replyDrivers.getCheckStockReply();
+        register(CheckStockReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                checkStockReplyDriver.execute((CheckStockReply) reply);
+            }
+        });
+
+        final CheckDemandReplyDriver checkDemandReplyDriver = replyDrivers.getCheckDemandReply();
+        register(CheckDemandReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                checkDemandReplyDriver.execute((CheckDemandReply) reply);
+            }
+        });
+
+        final RecoveryReplyDriver recoveryReplyDriver = replyDrivers.getRecoveryReply();
+        register(RecoveryReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                recoveryReplyDriver.execute((RecoveryReply<?>) reply);
+            }
+        });
+
+        final BackupReplyDriver backupReplyDriver = replyDrivers.getBackupReply();
+        register(BackupReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                backupReplyDriver.execute((BackupReply) reply);
+            }
+        });
+
+        final SimpleRecoveryReplyDriver simpleRecoveryReplyDriver = replyDrivers.getSimpleRecoveryReply();
+        register(SimpleRecoveryReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                simpleRecoveryReplyDriver.execute((SimpleRecoveryReply) reply);
+            }
+        });
+
+        final CheckOneDemandReplyDriver checkOneDemandReplyDriver = replyDrivers.getCheckOneDemandReply();
+        register(CheckOneDemandReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                checkOneDemandReplyDriver.execute((CheckOneDemandReply) reply);
+            }
+        });
+
+        final CheckDigestReplyDriver checkDigestReplyDriver = replyDrivers.getCheckDigestReply();
+        register(CheckDigestReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                checkDigestReplyDriver.execute((CheckDigestReply) reply);
+            }
+        });
+
+        final RouteReplyDriver routeReplyDriver = replyDrivers.getRouteReply();
+        register(RouteReply.class, new ReplyHandler() {
+            @Override
+            public void handle(final Message reply) throws InterruptedException {
+                routeReplyDriver.execute((RouteReply) reply);
+            }
+        });
+    }
+
+    private void register(final Class<? extends Message> type, final MessageHandler handler) {
+        if (this.messageHandlers.put(type, handler) != null) {
+            throw new IllegalArgumentException("Duplicate message type ( " + type.getName() + " ).");
+        }
+    }
+
+    private void register(final Class<? extends Message> type, final ReplyHandler handler) {
+        if (this.replyHandlers.put(type, handler) != null) {
+            throw new IllegalArgumentException("Duplicate reply type ( " + type.getName() + " ).");
+        }
+    }
+
+    MailStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * 1 通捌く。
+     * この中では addActivePeer しない。
+     * なぜなら、プロトコル違反である可能性があるため。
+     * 何ちゃら Driver の中で正しい返信を受け取ったときに行う。
+     * @param receivedMail 受信した手紙
+     * @throws InterruptedException 割り込まれた場合
+     */
+    void dispatch(final ReceivedMail receivedMail) throws InterruptedException {
+        final List<Message> mail = receivedMail.getMail();
+
+        if (mail.size() <= 0) {
+            LOG.log(Level.WARNING, "{0} から空の手紙を受け取りました。", receivedMail.getSourcePeer());
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final Class<?> type = mail.get(0).getClass();
+        if (mail.get(mail.size() - 1) instanceof SessionReply) {
+            // 返信だった。
+            final SessionReply session = (SessionReply) mail.remove(mail.size() - 1);
+            if (this.sessionManager.setReply(session.get(), receivedMail)) {
+                this.statistics.addWaitedReply();
+            } else {
+                final ReplyHandler handler = this.replyHandlers.get(type);
+                if (handler == null) {
+                    LOG.log(Level.WARNING, "返信 {0} に対する処理は実装されていません。", type.getName());
+                    this.statistics.addUnhandled();
+                    return;
+                }
+                handler.handle(mail.get(0));
+                LOG.log(Level.FINER, "{0} からの返信 {1} を捌きました", new Object[] { receivedMail.getSourcePeer(), mail.get(0) });
+            }
+        } else if (mail.get(mail.size() - 1) instanceof SessionMessage) {
+            // 送信元が返信を待ってる。
+            final SessionMessage session = (SessionMessage) mail.remove(mail.size() - 1);
+            final MessageHandler handler = this.messageHandlers.get(type);
+            if (handler == null) {
+                LOG.log(Level.WARNING, "返信待ちの {0} に対する処理は実装されていません。", type.getName());
+                this.statistics.addUnhandled();
+                return;
+            }
+            handler.handle(mail.get(0), session.get(), receivedMail);
+            LOG.log(Level.FINER, "{0} から受信した {1} を捌きました。", new Object[] { receivedMail.getSourcePeer(), mail.get(0) });
+        } else {
+            LOG.log(Level.WARNING, "{0} に対する処理は実装されていません。", type.getName());
+            this.statistics.addUnhandled();
+            return;
+        }
+        this.statistics.add(type, System.nanoTime() - start);
+    }
+
+}
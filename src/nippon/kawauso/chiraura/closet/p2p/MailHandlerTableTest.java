@@ -0,0 +1,141 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.net.InetSocketAddress;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import nippon.kawauso.chiraura.closet.MountainHash;
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.messenger.ReceivedMail;
+import nippon.kawauso.chiraura.storage.Chunk;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class MailHandlerTableTest {
+
+    private static final boolean portIgnore = true;
+    private static final int entryLimit = 10;
+    private static final long timeout = Duration.SECOND;
+
+    private final InetSocketAddress peer;
+    private final SessionManager sessionManager;
+    private final ExecutorService executor;
+    private final MailHandlerTable instance;
+
+    /**
+     * 初期化。
+     */
+    public MailHandlerTableTest() {
+        TestFunctions.testLogging(this.getClass().getName());
+        final Random random = new Random();
+        this.peer = new InetSocketAddress(12345);
+        this.sessionManager = new SessionManager();
+        this.executor = Executors.newCachedThreadPool();
+
+        final NetworkWrapper network = NetworkWrapperTest.sample(random, new HashingCalculator(1_000));
+        final StorageWrapper storage = StorageWrapperTest.sample(random, new LinkedBlockingQueue<Operation>());
+        final Set<Class<? extends Chunk>> backupTypes = new HashSet<>();
+        final DriverSet drivers = new DriverSet(network, storage, this.sessionManager, new LinkedBlockingQueue<Operation>(),
+                new LinkedBlockingQueue<OutlawReport>(), this.executor, portIgnore, entryLimit, backupTypes, false);
+        this.instance = new MailHandlerTable(this.sessionManager, timeout, drivers, drivers);
+    }
+
+    /**
+     * 後片付け。
+     */
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    private ReceivedMail newMail(final Message... messages) {
+        final List<Message> mail = new ArrayList<>(Arrays.asList(messages));
+        return new ReceivedMail() {
+            @Override
+            public PublicKey getSourceId() {
+                return null;
+            }
+
+            @Override
+            public InetSocketAddress getSourcePeer() {
+                return MailHandlerTableTest.this.peer;
+            }
+
+            @Override
+            public int getConnectionType() {
+                return 0;
+            }
+
+            @Override
+            public List<Message> getMail() {
+                return mail;
+            }
+        };
+    }
+
+    /**
+     * 処理の無い手紙を、捌いた数に入れずに捨てた数に入れるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testUnknown() throws Exception {
+        final Message unknown = new HashTypeMessage(MountainHash.Type.INCREMENTAL);
+
+        // 依頼の処理が無い。
+        this.instance.dispatch(newMail(unknown, new SessionMessage(new Session(0))));
+        // 待ち人のいない返信の処理が無い。
+        this.instance.dispatch(newMail(unknown, new SessionReply(new Session(0))));
+        // やり取り用の印が無い。
+        this.instance.dispatch(newMail(unknown));
+
+        final MailStatistics statistics = this.instance.getStatistics();
+        Assert.assertEquals(3, statistics.getNumOfUnhandled());
+        Assert.assertEquals(0, statistics.getNumOfWaitedReplies());
+        Assert.assertEquals(0, statistics.getNumOfMails(HashTypeMessage.class));
+        Assert.assertNull(statistics.getHandlingTime(HashTypeMessage.class));
+    }
+
+    /**
+     * 待ち人のいる返信を、処理を引かずに待ち人に渡すかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testWaitedReply() throws Exception {
+        // 返信の処理が無い型でも、待ち人がいれば渡る。
+        final Message reply = new HashTypeMessage(MountainHash.Type.INCREMENTAL);
+        final Session session = this.sessionManager.newSession(this.peer);
+        final ReceivedMail mail = newMail(reply, new SessionReply(session));
+        this.instance.dispatch(mail);
+
+        final ReceivedMail received = this.sessionManager.waitReply(session, 0);
+        Assert.assertSame(mail, received);
+        Assert.assertEquals(Arrays.asList(reply), received.getMail());
+
+        final MailStatistics statistics = this.instance.getStatistics();
+        Assert.assertEquals(1, statistics.getNumOfWaitedReplies());
+        Assert.assertEquals(0, statistics.getNumOfUnhandled());
+        Assert.assertEquals(1, statistics.getNumOfMails(HashTypeMessage.class));
+
+        // 待ち人が去った後なら、処理を引いて捨てる。
+        this.instance.dispatch(newMail(reply, new SessionReply(session)));
+        Assert.assertEquals(1, statistics.getNumOfWaitedReplies());
+        Assert.assertEquals(1, statistics.getNumOfUnhandled());
+        Assert.assertEquals(1, statistics.getNumOfMails(HashTypeMessage.class));
+    }
+
+}
@@ -0,0 +1,96 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nippon.kawauso.chiraura.messenger.ReceivedMail;
+
+/**
+ * 受信した手紙を送信元ごとに振り分ける複数の待ち行列。
+ * 同じ送信元からの手紙は同じ待ち行列に入るので、
+ * 1 つの待ち行列を 1 人の MailReader が捌く限り、送信元ごとの順番は保たれる。
+ * @author chirauraNoSakusha
+ */
+final class MailShards {
+
+    /**
+     * 1 つの待ち行列と、それを捌く人がいるかどうかの印。
+     * @author chirauraNoSakusha
+     */
+    static final class Shard {
+        private final BlockingQueue<ReceivedMail> queue;
+        private final AtomicBoolean owned;
+
+        private Shard() {
+            this.queue = new LinkedBlockingQueue<>();
+            this.owned = new AtomicBoolean(false);
+        }
+
+        ReceivedMail take() throws InterruptedException {
+            return this.queue.take();
+        }
+
+        /**
+         * 捌く人として名乗り出る。
+         * @return 名乗り出られた場合のみ true
+         */
+        boolean acquire() {
+            return this.owned.compareAndSet(false, true);
+        }
+
+        /**
+         * 捌く人を辞める。
+         */
+        void release() {
+            this.owned.set(false);
+        }
+
+        int size() {
+            return this.queue.size();
+        }
+    }
+
+    private final List<Shard> shards;
+
+    MailShards(final int numOfShards) {
+        if (numOfShards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards ( " + numOfShards + " ).");
+        }
+
+        final List<Shard> list = new ArrayList<>(numOfShards);
+        for (int i = 0; i < numOfShards; i++) {
+            list.add(new Shard());
+        }
+        this.shards = Collections.unmodifiableList(list);
+    }
+
+    List<Shard> getShards() {
+        return this.shards;
+    }
+
+    Shard shardOf(final InetSocketAddress peer) {
+        final int hash = peer.hashCode();
+        return this.shards.get(((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % this.shards.size());
+    }
+
+    void put(final ReceivedMail receivedMail) throws InterruptedException {
+        shardOf(receivedMail.getSourcePeer()).queue.put(receivedMail);
+    }
+
+    /**
+     * @return 捌かれるのを待っている手紙の数
+     */
+    int size() {
+        int sum = 0;
+        for (final Shard shard : this.shards) {
+            sum += shard.size();
+        }
+        return sum;
+    }
+
+}
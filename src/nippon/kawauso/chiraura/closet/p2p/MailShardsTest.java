@@ -0,0 +1,97 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.net.InetSocketAddress;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.messenger.ReceivedMail;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class MailShardsTest {
+
+    private static ReceivedMail newMail(final InetSocketAddress sourcePeer, final int serial) {
+        return new ReceivedMail() {
+            @Override
+            public PublicKey getSourceId() {
+                return null;
+            }
+
+            @Override
+            public InetSocketAddress getSourcePeer() {
+                return sourcePeer;
+            }
+
+            @Override
+            public int getConnectionType() {
+                return serial;
+            }
+
+            @Override
+            public List<Message> getMail() {
+                return new ArrayList<>();
+            }
+        };
+    }
+
+    /**
+     * 同じ送信元からの手紙が同じ待ち行列に入った順に並ぶかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testOrder() throws Exception {
+        final int numOfShards = 4;
+        final int numOfPeers = 50;
+        final int numOfLoops = 20;
+
+        final MailShards instance = new MailShards(numOfShards);
+        for (int i = 0; i < numOfLoops; i++) {
+            for (int j = 0; j < numOfPeers; j++) {
+                instance.put(newMail(new InetSocketAddress(j + 1), i));
+            }
+        }
+        Assert.assertEquals(numOfPeers * numOfLoops, instance.size());
+
+        final Map<InetSocketAddress, MailShards.Shard> owners = new HashMap<>();
+        final Map<InetSocketAddress, Integer> lasts = new HashMap<>();
+        int numOfUsedShards = 0;
+        for (final MailShards.Shard shard : instance.getShards()) {
+            if (shard.size() > 0) {
+                numOfUsedShards++;
+            }
+            while (shard.size() > 0) {
+                final ReceivedMail mail = shard.take();
+                final MailShards.Shard owner = owners.put(mail.getSourcePeer(), shard);
+                Assert.assertTrue(owner == null || owner == shard);
+                Assert.assertSame(shard, instance.shardOf(mail.getSourcePeer()));
+
+                final Integer last = lasts.put(mail.getSourcePeer(), mail.getConnectionType());
+                Assert.assertEquals(last == null ? 0 : last + 1, mail.getConnectionType());
+            }
+        }
+        Assert.assertEquals(numOfPeers, owners.size());
+        Assert.assertTrue(numOfUsedShards > 1);
+        Assert.assertEquals(0, instance.size());
+    }
+
+    /**
+     * 捌く人として名乗り出られるのが 1 人だけかどうか。
+     */
+    @Test
+    public void testAcquire() {
+        final MailShards.Shard shard = new MailShards(1).getShards().get(0);
+        Assert.assertTrue(shard.acquire());
+        Assert.assertFalse(shard.acquire());
+        shard.release();
+        Assert.assertTrue(shard.acquire());
+    }
+
+}
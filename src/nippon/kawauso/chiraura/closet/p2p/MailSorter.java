@@ -0,0 +1,39 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.concurrent.BlockingQueue;
+
+import nippon.kawauso.chiraura.lib.process.Reporter;
+
+/**
+ * 受信した手紙を送信元ごとの待ち行列に振り分ける人。
+ * @author chirauraNoSakusha
+ */
+final class MailSorter extends Reporter<Void> {
+
+    // 参照。
+    private final NetworkWrapper source;
+    private final MailShards sink;
+
+    MailSorter(final BlockingQueue<? super Reporter.Report> reportSink, final NetworkWrapper source, final MailShards sink) {
+        super(reportSink);
+
+        if (source == null) {
+            throw new IllegalArgumentException("Null source.");
+        } else if (sink == null) {
+            throw new IllegalArgumentException("Null sink.");
+        }
+
+        this.source = source;
+        this.sink = sink;
+    }
+
+    @Override
+    protected Void subCall() throws InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            this.sink.put(this.source.takeReceivedMail());
+        }
+
+        return null;
+    }
+
+}
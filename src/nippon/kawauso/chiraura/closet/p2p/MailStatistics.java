@@ -0,0 +1,102 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nippon.kawauso.chiraura.lib.concurrent.LatencyHistogram;
+
+/**
+ * 受信した手紙を捌いた統計。
+ * 手紙の先頭の通信文の型ごとに、捌いた数と掛かった時間を数える。
+ * 待ち人に渡した返信の数と、捌けずに捨てた手紙の数も数える。
+ * 並列対応。
+ * @author chirauraNoSakusha
+ */
+final class MailStatistics {
+
+    private final ConcurrentMap<Class<?>, LatencyHistogram> handlingTimes;
+    private final AtomicLong numOfWaitedReplies;
+    private final AtomicLong numOfUnhandled;
+
+    MailStatistics() {
+        this.handlingTimes = new ConcurrentHashMap<>();
+        this.numOfWaitedReplies = new AtomicLong(0);
+        this.numOfUnhandled = new AtomicLong(0);
+    }
+
+    /**
+     * 1 通分を記録する。
+     * @param type 先頭の通信文の型
+     * @param time 掛かった時間 (ナノ秒)
+     */
+    void add(final Class<?> type, final long time) {
+        LatencyHistogram histogram = this.handlingTimes.get(type);
+        if (histogram == null) {
+            final LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = this.handlingTimes.putIfAbsent(type, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.add(time);
+    }
+
+    void addWaitedReply() {
+        this.numOfWaitedReplies.incrementAndGet();
+    }
+
+    void addUnhandled() {
+        this.numOfUnhandled.incrementAndGet();
+    }
+
+    /**
+     * @return 返信を待っていた者に渡した返信の数
+     */
+    long getNumOfWaitedReplies() {
+        return this.numOfWaitedReplies.get();
+    }
+
+    /**
+     * @return 処理が無かったので捨てた手紙の数
+     */
+    long getNumOfUnhandled() {
+        return this.numOfUnhandled.get();
+    }
+
+    /**
+     * @param type 先頭の通信文の型
+     * @return 捌いた数
+     */
+    long getNumOfMails(final Class<?> type) {
+        final LatencyHistogram histogram = this.handlingTimes.get(type);
+        return histogram == null ? 0 : histogram.getNumOfSamples();
+    }
+
+    /**
+     * @param type 先頭の通信文の型
+     * @return 掛かった時間の度数分布。
+     *         1 通も捌いていなければ null
+     */
+    LatencyHistogram getHandlingTime(final Class<?> type) {
+        return this.handlingTimes.get(type);
+    }
+
+    @Override
+    public String toString() {
+        final Map<String, LatencyHistogram> sorted = new TreeMap<>();
+        for (final Map.Entry<Class<?>, LatencyHistogram> entry : this.handlingTimes.entrySet()) {
+            sorted.put(entry.getKey().getSimpleName(), entry.getValue());
+        }
+        final StringBuilder buff = new StringBuilder(this.getClass().getSimpleName())
+                .append("[waitedReplies=").append(this.numOfWaitedReplies.get())
+                .append(", unhandled=").append(this.numOfUnhandled.get());
+        for (final Map.Entry<String, LatencyHistogram> entry : sorted.entrySet()) {
+            buff.append(", ").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return buff.append(']').toString();
+    }
+
+}
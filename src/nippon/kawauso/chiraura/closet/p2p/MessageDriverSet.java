@@ -41,4 +41,8 @@ interface MessageDriverSet {
 
     CheckOneDemandMessageDriver getCheckOneDemandMessage();
 
+    CheckDigestMessageDriver getCheckDigestMessage();
+
+    RouteMessageDriver getRouteMessage();
+
 }
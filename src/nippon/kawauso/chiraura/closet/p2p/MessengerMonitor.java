@@ -5,6 +5,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.closet.ClosetReport;
+import nippon.kawauso.chiraura.lib.concurrent.BoundedExecutor;
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
 import nippon.kawauso.chiraura.lib.process.Reporter;
 import nippon.kawauso.chiraura.messenger.AcceptanceError;
@@ -15,6 +16,7 @@ import nippon.kawauso.chiraura.messenger.ContactError;
 import nippon.kawauso.chiraura.messenger.MessengerReport;
 import nippon.kawauso.chiraura.messenger.TrafficOverflow;
 import nippon.kawauso.chiraura.messenger.UnsentMail;
+import nippon.kawauso.chiraura.storage.WriteBackStatistics;
 
 /**
  * 配達係が起こした問題に対処する人。
@@ -33,9 +35,44 @@ final class MessengerMonitor extends Reporter<Void> {
 
     // 保持。
     private final MessengerReportDriverSet drivers;
+    // null なら自分の個体情報の報告に操作の統計を載せない。
+    private final WorkStatistics workStatistics;
+    // null なら自分の個体情報の報告に道筋の探索の統計を載せない。
+    private final RouteStatistics routeStatistics;
+    // null なら自分の個体情報の報告に書き戻しキャッシュの統計を載せない。
+    private final WriteBackStatistics storageStatistics;
+    // null なら自分の個体情報の報告に実行機の統計を載せない。
+    private final BoundedExecutor handlerExecutor;
+    private final BoundedExecutor backupExecutor;
 
     MessengerMonitor(final BlockingQueue<Reporter.Report> reportSink, final NetworkWrapper errorSource, final BlockingQueue<ClosetReport> closetReportSink,
             final long versionGapThreshold, final MessengerReportDriverSet drivers, final BlockingQueue<OutlawReport> outlawReportSink) {
+        this(reportSink, errorSource, closetReportSink, versionGapThreshold, drivers, outlawReportSink, null);
+    }
+
+    MessengerMonitor(final BlockingQueue<Reporter.Report> reportSink, final NetworkWrapper errorSource, final BlockingQueue<ClosetReport> closetReportSink,
+            final long versionGapThreshold, final MessengerReportDriverSet drivers, final BlockingQueue<OutlawReport> outlawReportSink,
+            final WorkStatistics workStatistics) {
+        this(reportSink, errorSource, closetReportSink, versionGapThreshold, drivers, outlawReportSink, workStatistics, null);
+    }
+
+    MessengerMonitor(final BlockingQueue<Reporter.Report> reportSink, final NetworkWrapper errorSource, final BlockingQueue<ClosetReport> closetReportSink,
+            final long versionGapThreshold, final MessengerReportDriverSet drivers, final BlockingQueue<OutlawReport> outlawReportSink,
+            final WorkStatistics workStatistics, final RouteStatistics routeStatistics) {
+        this(reportSink, errorSource, closetReportSink, versionGapThreshold, drivers, outlawReportSink, workStatistics, routeStatistics, null);
+    }
+
+    MessengerMonitor(final BlockingQueue<Reporter.Report> reportSink, final NetworkWrapper errorSource, final BlockingQueue<ClosetReport> closetReportSink,
+            final long versionGapThreshold, final MessengerReportDriverSet drivers, final BlockingQueue<OutlawReport> outlawReportSink,
+            final WorkStatistics workStatistics, final RouteStatistics routeStatistics, final WriteBackStatistics storageStatistics) {
+        this(reportSink, errorSource, closetReportSink, versionGapThreshold, drivers, outlawReportSink, workStatistics, routeStatistics, storageStatistics,
+                null, null);
+    }
+
+    MessengerMonitor(final BlockingQueue<Reporter.Report> reportSink, final NetworkWrapper errorSource, final BlockingQueue<ClosetReport> closetReportSink,
+            final long versionGapThreshold, final MessengerReportDriverSet drivers, final BlockingQueue<OutlawReport> outlawReportSink,
+            final WorkStatistics workStatistics, final RouteStatistics routeStatistics, final WriteBackStatistics storageStatistics,
+            final BoundedExecutor handlerExecutor, final BoundedExecutor backupExecutor) {
         super(reportSink);
 
         if (errorSource == null) {
@@ -54,6 +91,11 @@ final class MessengerMonitor extends Reporter<Void> {
         this.versionGapThreshold = versionGapThreshold;
         this.drivers = drivers;
         this.outlawReportSink = outlawReportSink;
+        this.workStatistics = workStatistics;
+        this.routeStatistics = routeStatistics;
+        this.storageStatistics = storageStatistics;
+        this.handlerExecutor = handlerExecutor;
+        this.backupExecutor = backupExecutor;
     }
 
     @Override
@@ -83,7 +125,8 @@ final class MessengerMonitor extends Reporter<Void> {
                 final long minorDiff = diff % this.versionGapThreshold;
                 ConcurrentFunctions.completePut(new NewProtocolWarning(majorDiff, minorDiff), this.closetReportSink);
             } else if (report instanceof nippon.kawauso.chiraura.messenger.SelfReport) {
-                ConcurrentFunctions.completePut(new SelfReport((nippon.kawauso.chiraura.messenger.SelfReport) report), this.closetReportSink);
+                ConcurrentFunctions.completePut(new SelfReport((nippon.kawauso.chiraura.messenger.SelfReport) report, this.workStatistics,
+                        this.routeStatistics, this.storageStatistics, this.handlerExecutor, this.backupExecutor), this.closetReportSink);
             } else if (report instanceof TrafficOverflow) {
                 ConcurrentFunctions.completePut(new OutlawReport(((TrafficOverflow) report).getDestination()), this.outlawReportSink);
             } else if (report instanceof ConnectionOverflow) {
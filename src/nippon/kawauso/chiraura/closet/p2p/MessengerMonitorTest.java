@@ -49,7 +49,7 @@ public final class MessengerMonitorTest {
         final Set<Class<? extends Chunk>> backupTypes = new HashSet<>();
         final LinkedBlockingQueue<OutlawReport> outlawReportQueue = new LinkedBlockingQueue<>();
         final DriverSet drivers = new DriverSet(network, storage, new SessionManager(), this.operationQueue, outlawReportQueue, this.executor, portIgnore,
-                entryLimit, backupTypes);
+                entryLimit, backupTypes, false);
 
         this.instance = new MessengerMonitor(this.reportQueue, network, this.closerReportQueue, versionGapThreshold, drivers, outlawReportQueue);
         this.shutdownTimeout = Duration.SECOND;
@@ -3,12 +3,18 @@ package nippon.kawauso.chiraura.closet.p2p;
 import java.net.InetSocketAddress;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
 import nippon.kawauso.chiraura.lib.container.Pair;
@@ -42,9 +48,21 @@ final class NetworkWrapper {
 
     private final AddressLog activeAddressLog;
 
+    // データ片のハッシュ値の計算方式。
+    private final MountainHash.Type hashType;
+    // 従来の方式でない個体の計算方式。知らない方式は null の代わりに HashTypeMessage のまま持つ。
+    private final ConcurrentMap<InetSocketAddress, HashTypeMessage> peerHashTypes;
+
     NetworkWrapper(final long version, final AddressableNetwork network, final Messenger messenger, final PeerBlacklist blacklist,
             final PeerBlacklist lostPeers, final PeerPot pot, final BlockingQueue<Operation> operationSink, final AddressCalculator calculator,
             final int activeAddressLogLimit, final long activeAddressDuration) {
+        this(version, network, messenger, blacklist, lostPeers, pot, operationSink, calculator, activeAddressLogLimit, activeAddressDuration,
+                MountainHash.Type.SERIAL);
+    }
+
+    NetworkWrapper(final long version, final AddressableNetwork network, final Messenger messenger, final PeerBlacklist blacklist,
+            final PeerBlacklist lostPeers, final PeerPot pot, final BlockingQueue<Operation> operationSink, final AddressCalculator calculator,
+            final int activeAddressLogLimit, final long activeAddressDuration, final MountainHash.Type hashType) {
         if (network == null) {
             throw new IllegalArgumentException("Null network.");
         } else if (messenger == null) {
@@ -63,6 +81,8 @@ final class NetworkWrapper {
             throw new IllegalArgumentException("Negative active address log limit ( " + activeAddressLogLimit + " ).");
         } else if (activeAddressDuration < 0) {
             throw new IllegalArgumentException("Negative active address duration ( " + activeAddressDuration + " ).");
+        } else if (hashType == null) {
+            throw new IllegalArgumentException("Null hash type.");
         }
 
         this.version = version;
@@ -77,6 +97,9 @@ final class NetworkWrapper {
         this.calculator = calculator;
 
         this.activeAddressLog = new AddressLog(activeAddressLogLimit, activeAddressDuration);
+
+        this.hashType = hashType;
+        this.peerHashTypes = new ConcurrentHashMap<>();
     }
 
     /**
@@ -176,6 +199,7 @@ final class NetworkWrapper {
         final Address removed = this.network.removePeer(peer);
         this.messenger.removeConnection(peer);
         this.activeAddressLog.remove(peer);
+        this.peerHashTypes.remove(peer);
         if (removed != null) {
             // TODO 個体を補完すべきか？
             // ConcurrentFunctions.completePut(new AddressAccessOperation(removed), this.operationSink);
@@ -211,16 +235,80 @@ final class NetworkWrapper {
         return this.messenger.getSelf();
     }
 
+    /**
+     * データ片のハッシュ値の計算方式を返す。
+     * @return 計算方式
+     */
+    MountainHash.Type getHashType() {
+        return this.hashType;
+    }
+
+    /**
+     * 相手とデータ片のハッシュ値を比べられるかどうか調べる。
+     * 相手の計算方式は、相手から最後に受け取った手紙に添えられていたもの。
+     * まだ何も受け取っていない相手は従来の方式とみなす。
+     * @param peer 相手
+     * @return 計算方式が同じ場合のみ true
+     */
+    boolean isHashComparable(final InetSocketAddress peer) {
+        final HashTypeMessage peerType = this.peerHashTypes.get(peer);
+        if (peerType == null) {
+            return this.hashType == MountainHash.Type.SERIAL;
+        } else {
+            return this.hashType == peerType.getType();
+        }
+    }
+
     void sendMail(final InetSocketAddress destination, final int connectionType, final List<Message> mail) {
-        this.messenger.send(destination, connectionType, mail);
+        if (this.hashType == MountainHash.Type.SERIAL || mail.isEmpty()) {
+            // 従来の方式では何も添えない。
+            this.messenger.send(destination, connectionType, mail);
+            return;
+        }
+
+        // 先頭とやり取り用の印の間に計算方式を挟む。
+        final List<Message> tagged = new ArrayList<>(mail.size() + 1);
+        tagged.addAll(mail);
+        final Message last = mail.get(mail.size() - 1);
+        final int index = (last instanceof SessionMessage || last instanceof SessionReply ? mail.size() - 1 : mail.size());
+        tagged.add(Math.max(1, index), new HashTypeMessage(this.hashType));
+        this.messenger.send(destination, connectionType, tagged);
+    }
+
+    /**
+     * 受け取った手紙から相手の計算方式を抜き取って記録する。
+     * @param receivedMail 受け取った手紙
+     * @return receivedMail
+     */
+    private ReceivedMail readHashType(final ReceivedMail receivedMail) {
+        if (receivedMail == null) {
+            return null;
+        }
+        HashTypeMessage peerType = null;
+        for (final Iterator<Message> iterator = receivedMail.getMail().iterator(); iterator.hasNext();) {
+            final Message message = iterator.next();
+            if (message instanceof HashTypeMessage) {
+                peerType = (HashTypeMessage) message;
+                iterator.remove();
+            }
+        }
+
+        final InetSocketAddress peer = receivedMail.getSourcePeer();
+        final HashTypeMessage current = (peerType == null || peerType.getType() == MountainHash.Type.SERIAL ? null : peerType);
+        final HashTypeMessage old = (current == null ? this.peerHashTypes.remove(peer) : this.peerHashTypes.put(peer, current));
+        if (!Objects.equals(old, current) && !isHashComparable(peer)) {
+            LOG.log(Level.FINER, "{0} とはハッシュ値の計算方式 ( {1} ) が違うので、在庫の照合はしません。", new Object[] { peer,
+                    (current == null ? MountainHash.Type.SERIAL : current) });
+        }
+        return receivedMail;
     }
 
     ReceivedMail takeReceivedMail() throws InterruptedException {
-        return this.messenger.take();
+        return readHashType(this.messenger.take());
     }
 
     ReceivedMail takeReceivedMailIfExists() {
-        return this.messenger.takeIfExists();
+        return readHashType(this.messenger.takeIfExists());
     }
 
     boolean containsConnection(final InetSocketAddress destination) {
@@ -0,0 +1,142 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 後で決まる結果。
+ * 結果は 1 度しか設定できない。
+ * 並列対応。
+ * @author chirauraNoSakusha
+ */
+final class OperationFuture<T> {
+
+    private static final Logger LOG = Logger.getLogger(OperationFuture.class.getName());
+
+    /**
+     * 結果が決まったときに呼ばれる。
+     * 結果を設定したスレッドで呼ばれるので、長く止まってはいけない。
+     * @author chirauraNoSakusha
+     */
+    static interface Listener<T> {
+
+        /**
+         * 結果が決まった。
+         * @param result 結果
+         */
+        void done(T result);
+
+    }
+
+    private final CountDownLatch barrier;
+
+    // this で守る。
+    private List<Listener<? super T>> listeners;
+    private boolean done;
+    private T result;
+
+    OperationFuture() {
+        this.barrier = new CountDownLatch(1);
+        this.listeners = new ArrayList<>(1);
+        this.done = false;
+        this.result = null;
+    }
+
+    /**
+     * 結果が決まっているものを作成する。
+     * @param result 結果
+     * @return 結果が決まっている OperationFuture
+     */
+    static <T> OperationFuture<T> newDone(final T result) {
+        final OperationFuture<T> future = new OperationFuture<>();
+        future.set(result);
+        return future;
+    }
+
+    /**
+     * 結果を設定する。
+     * 登録されている Listener はこのスレッドで呼ばれる。
+     * @param value 結果
+     * @return 設定できた場合は true。
+     *         既に設定されていた場合は false
+     */
+    boolean set(final T value) {
+        final List<Listener<? super T>> waiters;
+        synchronized (this) {
+            if (this.done) {
+                return false;
+            }
+            this.done = true;
+            this.result = value;
+            waiters = this.listeners;
+            this.listeners = null;
+        }
+        this.barrier.countDown();
+        for (final Listener<? super T> listener : waiters) {
+            notify(listener, value);
+        }
+        return true;
+    }
+
+    private static <T> void notify(final Listener<? super T> listener, final T value) {
+        try {
+            listener.done(value);
+        } catch (final RuntimeException e) {
+            LOG.log(Level.WARNING, "異常が発生しました", e);
+        }
+    }
+
+    /**
+     * 結果が決まったときの処理を登録する。
+     * 既に結果が決まっていたら、このスレッドですぐに呼ぶ。
+     * @param listener 結果が決まったときの処理
+     */
+    void addListener(final Listener<? super T> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Null listener.");
+        }
+        final T value;
+        synchronized (this) {
+            if (!this.done) {
+                this.listeners.add(listener);
+                return;
+            }
+            value = this.result;
+        }
+        notify(listener, value);
+    }
+
+    /**
+     * @return 結果が決まっていれば true
+     */
+    synchronized boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * 結果を待つ。
+     * 返り値が null の場合、時間切れの場合と null が設定された場合の両方があり得る。
+     * @param timeout 待つ時間
+     * @return 結果。
+     *         時間切れの場合 null
+     * @throws InterruptedException 割り込まれた場合
+     */
+    T get(final long timeout) throws InterruptedException {
+        this.barrier.await(timeout, TimeUnit.MILLISECONDS);
+        return getNow();
+    }
+
+    /**
+     * 待たずに結果を取得する。
+     * @return 結果。
+     *         まだ決まっていない場合は null
+     */
+    synchronized T getNow() {
+        return this.result;
+    }
+
+}
@@ -0,0 +1,131 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nippon.kawauso.chiraura.lib.Duration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class OperationFutureTest {
+
+    /**
+     * 結果の設定と取得の検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSetAndGet() throws Exception {
+        final OperationFuture<String> instance = new OperationFuture<>();
+        Assert.assertFalse(instance.isDone());
+        Assert.assertNull(instance.getNow());
+
+        final long timeout = 100;
+        final long start = System.nanoTime();
+        Assert.assertNull(instance.get(timeout));
+        Assert.assertTrue(timeout <= (System.nanoTime() - start) / 1_000_000);
+
+        Assert.assertTrue(instance.set("abcde"));
+        Assert.assertTrue(instance.isDone());
+        Assert.assertEquals("abcde", instance.get(timeout));
+
+        // 2 度目は無視される。
+        Assert.assertFalse(instance.set("fghij"));
+        Assert.assertEquals("abcde", instance.getNow());
+
+        // null も結果。
+        final OperationFuture<String> instance2 = new OperationFuture<>();
+        Assert.assertTrue(instance2.set(null));
+        Assert.assertTrue(instance2.isDone());
+        Assert.assertFalse(instance2.set("abcde"));
+        Assert.assertNull(instance2.getNow());
+
+        Assert.assertEquals("abcde", OperationFuture.newDone("abcde").getNow());
+    }
+
+    /**
+     * 結果が決まったときの処理の検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testListener() throws Exception {
+        final OperationFuture<Integer> instance = new OperationFuture<>();
+        final List<Integer> results = new ArrayList<>();
+        final OperationFuture.Listener<Integer> listener = new OperationFuture.Listener<Integer>() {
+            @Override
+            public void done(final Integer result) {
+                results.add(result);
+            }
+        };
+
+        instance.addListener(listener);
+        instance.addListener(listener);
+        Assert.assertTrue(results.isEmpty());
+
+        instance.set(1);
+        Assert.assertEquals(2, results.size());
+
+        // 決まった後ならすぐ呼ばれる。
+        instance.addListener(listener);
+        Assert.assertEquals(3, results.size());
+        for (final Integer result : results) {
+            Assert.assertEquals(Integer.valueOf(1), result);
+        }
+
+        // 異常を出す処理があっても他の処理は呼ばれる。
+        final OperationFuture<Integer> instance2 = new OperationFuture<>();
+        instance2.addListener(new OperationFuture.Listener<Integer>() {
+            @Override
+            public void done(final Integer result) {
+                throw new RuntimeException("テスト");
+            }
+        });
+        instance2.addListener(listener);
+        Assert.assertTrue(instance2.set(2));
+        Assert.assertEquals(Integer.valueOf(2), results.get(results.size() - 1));
+    }
+
+    /**
+     * 設定と処理の登録が競合しても、処理がちょうど 1 回ずつ呼ばれるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrency() throws Exception {
+        final int numOfLoops = 10_000;
+        final AtomicInteger count = new AtomicInteger();
+        final OperationFuture.Listener<Integer> listener = new OperationFuture.Listener<Integer>() {
+            @Override
+            public void done(final Integer result) {
+                count.incrementAndGet();
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int i = 0; i < numOfLoops; i++) {
+            final OperationFuture<Integer> instance = new OperationFuture<>();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    instance.addListener(listener);
+                }
+            });
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    instance.set(0);
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(Duration.MINUTE, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(numOfLoops, count.get());
+    }
+
+}
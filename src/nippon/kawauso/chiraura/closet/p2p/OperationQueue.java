@@ -0,0 +1,249 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 雑用係に回す操作の待ち行列。
+ * 利用者の要求に繋がる操作を背景の保守より先に出す。
+ * 雑用係は複製や復元を複製用の実行機に渡すだけなので、それらが実際に待つのは実行機の中である。
+ * そのため、複製用の実行機でも同じ優先度で並べる。
+ * 同じ操作が既に待っていれば、新しく入れずに捨てる。
+ * 容量は無制限。
+ * @author chirauraNoSakusha
+ */
+final class OperationQueue extends AbstractQueue<Operation> implements BlockingQueue<Operation> {
+
+    /**
+     * 優先度。先に書いたものほど先に出す。
+     */
+    enum Priority {
+        /**
+         * 壊れたデータ片の修復や、データ片の読み書きに伴う操作。
+         */
+        HIGH,
+
+        /**
+         * 個体の確認や複製のような、背景の保守。
+         */
+        LOW,
+    }
+
+    private static final class Entry {
+        private final Operation operation;
+        private final long queued;
+
+        private Entry(final Operation operation) {
+            this.operation = operation;
+            this.queued = System.nanoTime();
+        }
+    }
+
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final List<ArrayDeque<Entry>> queues;
+    // 待っている操作。重複除去用。
+    private final Set<Operation> pending;
+    private final WorkStatistics statistics;
+
+    OperationQueue() {
+        this.lock = new ReentrantLock();
+        this.notEmpty = this.lock.newCondition();
+        this.queues = new ArrayList<>(Priority.values().length);
+        for (int i = 0; i < Priority.values().length; i++) {
+            this.queues.add(new ArrayDeque<Entry>());
+        }
+        this.pending = new HashSet<>();
+        this.statistics = new WorkStatistics();
+    }
+
+    static Priority priorityOf(final Operation operation) {
+        if (operation instanceof PeerAccessOperation || operation instanceof AddressAccessOperation || operation instanceof BackupOneOperation
+                || operation instanceof BackupOperation) {
+            return Priority.LOW;
+        } else {
+            return Priority.HIGH;
+        }
+    }
+
+    WorkStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    @Override
+    public boolean offer(final Operation operation) {
+        if (operation == null) {
+            throw new NullPointerException("Null operation.");
+        }
+        final Priority priority = priorityOf(operation);
+        this.lock.lock();
+        try {
+            if (!this.pending.add(operation)) {
+                this.statistics.duplicated();
+                return true;
+            }
+            this.queues.get(priority.ordinal()).addLast(new Entry(operation));
+            this.statistics.added(priority);
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public void put(final Operation operation) {
+        offer(operation);
+    }
+
+    @Override
+    public boolean offer(final Operation operation, final long timeout, final TimeUnit unit) {
+        return offer(operation);
+    }
+
+    /**
+     * 鍵を握った状態で呼ぶこと。
+     * @return 優先度の一番高い先頭の操作。
+     *         空なら null
+     */
+    private Operation dequeue() {
+        for (final Priority priority : Priority.values()) {
+            final Entry entry = this.queues.get(priority.ordinal()).pollFirst();
+            if (entry != null) {
+                this.pending.remove(entry.operation);
+                this.statistics.taken(priority, System.nanoTime() - entry.queued);
+                return entry.operation;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Operation poll() {
+        this.lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public Operation take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            Operation operation;
+            while ((operation = dequeue()) == null) {
+                this.notEmpty.await();
+            }
+            return operation;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public Operation poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            Operation operation;
+            while ((operation = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            return operation;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public Operation peek() {
+        this.lock.lock();
+        try {
+            for (final ArrayDeque<Entry> queue : this.queues) {
+                final Entry entry = queue.peekFirst();
+                if (entry != null) {
+                    return entry.operation;
+                }
+            }
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.pending.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Operation> sink) {
+        return drainTo(sink, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Operation> sink, final int maxElements) {
+        if (sink == null) {
+            throw new NullPointerException("Null sink.");
+        } else if (sink == this) {
+            throw new IllegalArgumentException("Self sink.");
+        }
+        this.lock.lock();
+        try {
+            int n = 0;
+            for (Operation operation; n < maxElements && (operation = dequeue()) != null; n++) {
+                sink.add(operation);
+            }
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 優先度順の複製を返す。
+     * 並列に変更されても反映しない。
+     */
+    @Override
+    public Iterator<Operation> iterator() {
+        final List<Operation> snapshot = new ArrayList<>();
+        this.lock.lock();
+        try {
+            for (final ArrayDeque<Entry> queue : this.queues) {
+                for (final Entry entry : queue) {
+                    snapshot.add(entry.operation);
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+}
@@ -0,0 +1,116 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.storage.ConstantChunkTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class OperationQueueTest {
+
+    /**
+     * 優先度の高いものから、同じ優先度では入れた順に出るかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPriority() throws Exception {
+        final OperationQueue instance = new OperationQueue();
+        final Operation low1 = new PeerAccessOperation(new InetSocketAddress(1));
+        final Operation high1 = new SimpleRecoveryOperation(ConstantChunkTest.newId(1));
+        final Operation low2 = new BackupOneOperation(ConstantChunkTest.newId(2));
+        final Operation high2 = new SimpleRecoveryOperation(ConstantChunkTest.newId(3));
+        instance.put(low1);
+        instance.put(high1);
+        instance.put(low2);
+        instance.put(high2);
+
+        Assert.assertEquals(4, instance.size());
+        Assert.assertEquals(2, instance.getStatistics().getNumOfPending(OperationQueue.Priority.HIGH));
+        Assert.assertEquals(2, instance.getStatistics().getNumOfPending(OperationQueue.Priority.LOW));
+        Assert.assertSame(high1, instance.peek());
+        Assert.assertSame(high1, instance.take());
+        Assert.assertSame(high2, instance.take());
+        Assert.assertSame(low1, instance.take());
+        Assert.assertSame(low2, instance.take());
+        Assert.assertNull(instance.poll());
+        Assert.assertNull(instance.poll(10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, instance.getStatistics().getNumOfPending());
+        Assert.assertEquals(4, instance.getStatistics().getWaitLatency().getNumOfSamples());
+    }
+
+    /**
+     * 待っている操作と同じものは捨て、取り出した後なら入れるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testDuplicate() throws Exception {
+        final OperationQueue instance = new OperationQueue();
+        instance.put(new SimpleRecoveryOperation(ConstantChunkTest.newId(1)));
+        instance.put(new SimpleRecoveryOperation(ConstantChunkTest.newId(1)));
+        instance.put(new SimpleRecoveryOperation(ConstantChunkTest.newId(2)));
+        Assert.assertEquals(2, instance.size());
+        Assert.assertEquals(1, instance.getStatistics().getNumOfDuplicates());
+
+        final List<Operation> drained = new ArrayList<>();
+        Assert.assertEquals(2, instance.drainTo(drained));
+        Assert.assertTrue(instance.isEmpty());
+
+        instance.put(new SimpleRecoveryOperation(ConstantChunkTest.newId(1)));
+        Assert.assertEquals(1, instance.size());
+        Assert.assertEquals(3, instance.getStatistics().getNumOfAdded());
+    }
+
+    /**
+     * 複数の雑用係が並列に取り出しても、全部が 1 度ずつ出るかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrency() throws Exception {
+        final int numOfWorkers = 8;
+        final int numOfOperations = 10_000;
+
+        final OperationQueue instance = new OperationQueue();
+        final ExecutorService executor = Executors.newFixedThreadPool(numOfWorkers);
+        final List<Future<Set<Operation>>> futures = new ArrayList<>();
+        for (int i = 0; i < numOfWorkers; i++) {
+            futures.add(executor.submit(new Callable<Set<Operation>>() {
+                @Override
+                public Set<Operation> call() throws InterruptedException {
+                    final Set<Operation> taken = new HashSet<>();
+                    for (Operation operation; (operation = instance.poll(Duration.SECOND, TimeUnit.MILLISECONDS)) != null;) {
+                        Assert.assertTrue(taken.add(operation));
+                    }
+                    return taken;
+                }
+            }));
+        }
+        for (int i = 0; i < numOfOperations; i++) {
+            instance.put(new SimpleRecoveryOperation(ConstantChunkTest.newId(i)));
+        }
+
+        final Set<Operation> taken = new HashSet<>();
+        for (final Future<Set<Operation>> future : futures) {
+            for (final Operation operation : future.get()) {
+                Assert.assertTrue(taken.add(operation));
+            }
+        }
+        executor.shutdown();
+        Assert.assertEquals(numOfOperations, taken.size());
+        Assert.assertEquals(numOfOperations, instance.getStatistics().getNumOfTaken());
+    }
+
+}
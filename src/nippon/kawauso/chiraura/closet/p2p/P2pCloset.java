@@ -3,6 +3,7 @@ package nippon.kawauso.chiraura.closet.p2p;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
 import java.security.KeyPair;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -14,13 +15,18 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.closet.Closet;
 import nippon.kawauso.chiraura.closet.ClosetReport;
 import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.concurrent.BoundedExecutor;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.container.Pair;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 import nippon.kawauso.chiraura.messenger.Messenger;
 import nippon.kawauso.chiraura.messenger.Messengers;
@@ -30,6 +36,7 @@ import nippon.kawauso.chiraura.network.AddressedPeer;
 import nippon.kawauso.chiraura.storage.Chunk;
 import nippon.kawauso.chiraura.storage.Storage;
 import nippon.kawauso.chiraura.storage.Storages;
+import nippon.kawauso.chiraura.storage.WriteBackStatistics;
 
 /**
  * P2Pによる四次元押し入れ。
@@ -55,6 +62,19 @@ public final class P2pCloset implements Closet {
      */
     private static final int CHECK_CHUNK_LIMIT = 100;
 
+    /**
+     * 差分の追記ファイルを置くディレクトリの名前。
+     * データ片のディレクトリと混同しないように Base32 に使わない文字で囲む。
+     * FileStorageConverter はこのような名前を読み飛ばす。
+     */
+    private static final String DUST_JOURNAL = "%%dust%%";
+
+    /**
+     * 記録しているデータ片のハッシュ値の計算方式を書いておくファイルの名前。
+     * 無ければ従来の方式 (SERIAL) とみなす。
+     */
+    private static final String HASH_TYPE = "%%hash%%";
+
     /**
      * 引数用。
      * @author chirauraNoSakusha
@@ -65,6 +85,9 @@ public final class P2pCloset implements Closet {
         private final int port;
 
         private final ExecutorService executor;
+        private ExecutorService connectionExecutor = null;
+        private ExecutorService handlerExecutor = null;
+        private ExecutorService backupExecutor = null;
 
         // デバッグ時に別なのを使いたいので受け取る。
         private AddressCalculator calculator = new HashingCalculator(10_000);
@@ -74,14 +97,23 @@ public final class P2pCloset implements Closet {
         private int chunkCacheCapacity = 300;
         private int indexCacheCapacity = 10_000;
         private int rangeCacheCapacity = 40;
+        private int dustJournalSizeLimit = 64 * 1024; // 64 KB.
+        private long dirtySizeLimit = 0;
+        private long readCacheSize = 0;
+        private boolean storageMapping = false;
         private int messageSizeLimit = 1024 * 1024 + 1024; // 1 MB + 1 KB.
         private boolean useHttpWrapper = false;
         private int peerCapacity = 1_000;
         private int receiveBufferSize = 128 * 1024; // 128 KB.
         private int sendBufferSize = 64 * 1024; // 64 KB.
         private long maintenanceInterval = Duration.MINUTE;
+        private int workerCount = 4;
+        private int mailReaderCount = 4;
         private long sleepTime = 30 * Duration.MINUTE;
         private long backupInterval = 5 * Duration.MINUTE;
+        private boolean digestBackup = false;
+        private boolean iterativeRouting = false;
+        private boolean incrementalHash = false;
         private long connectionTimeout = 15 * Duration.MINUTE;
         private long operationTimeout = Duration.MINUTE;
         private int cacheLogCapacity = 10_000;
@@ -94,6 +126,7 @@ public final class P2pCloset implements Closet {
         private long trafficSizeLimit = 10 * 1024 * 1024; // 10MB.
         private int trafficCountLimit = 500;
         private long trafficPenalty = 10 * Duration.SECOND;
+        private boolean bucketTrafficLimiter = false;
         private long outlawDuration = 10 * Duration.MINUTE;
         private int outlawCountLimit = 10;
         private int blacklistCapacity = 200;
@@ -180,6 +213,50 @@ public final class P2pCloset implements Closet {
             return this;
         }
 
+        /**
+         * データ片 1 つあたりの差分を追記する量の上限を変える。
+         * @param value 新しい値 (バイト)。
+         *            0 なら差分を追記せず、書き戻すたびにデータ片全体を書き込む
+         * @return this
+         */
+        public Parameters setDustJournalSizeLimit(final int value) {
+            this.dustJournalSizeLimit = value;
+            return this;
+        }
+
+        /**
+         * 書き戻していないデータ片の大きさの和の制限を変える。
+         * @param value 新しい値 (バイト)。
+         *            正なら書き込みを専用のスレッドで書き戻す。
+         *            0 なら書き込んだプロセスがキャッシュから溢れた分を書き込む
+         * @return this
+         */
+        public Parameters setDirtySizeLimit(final long value) {
+            this.dirtySizeLimit = value;
+            return this;
+        }
+
+        /**
+         * 読み込み用にキャッシュするデータ片の大きさの和を変える。
+         * @param value 新しい値 (バイト)。
+         *            0 なら読み込み用のキャッシュを使わない
+         * @return this
+         */
+        public Parameters setReadCacheSize(final long value) {
+            this.readCacheSize = value;
+            return this;
+        }
+
+        /**
+         * データ片の読み込みにメモリマップを使うかどうかを変える。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setStorageMapping(final boolean value) {
+            this.storageMapping = value;
+            return this;
+        }
+
         /**
          * 個体を保持する数を変える。
          * @param value 新しい値
@@ -190,6 +267,27 @@ public final class P2pCloset implements Closet {
             return this;
         }
 
+        /**
+         * 操作の待ち行列を捌く雑用係の数を変える。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setWorkerCount(final int value) {
+            this.workerCount = value;
+            return this;
+        }
+
+        /**
+         * 受信した手紙を捌く人の数を変える。
+         * 同じ送信元からの手紙は同じ人が順番に捌く。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setMailReaderCount(final int value) {
+            this.mailReaderCount = value;
+            return this;
+        }
+
         /**
          * 保守間隔を変える。
          * @param value 新しい値 (ミリ秒)
@@ -220,6 +318,41 @@ public final class P2pCloset implements Closet {
             return this;
         }
 
+        /**
+         * データ片の保守で、在庫の要約を比べて食い違った範囲だけを確認するかどうかを変える。
+         * 同期が取れている個体との保守では、担当範囲全体の在庫一覧の代わりに要約 1 つを送るだけになる。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setDigestBackup(final boolean value) {
+            this.digestBackup = value;
+            return this;
+        }
+
+        /**
+         * データ片の取得で、担当者を自分で探してから直接依頼するかどうかを変える。
+         * 探すときは、途中の個体に次に尋ねる個体を教えてもらいながら自分で辿っていく。
+         * 担当者に直接依頼できなかった場合は、これまで通り中継してもらう。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setIterativeRouting(final boolean value) {
+            this.iterativeRouting = value;
+            return this;
+        }
+
+        /**
+         * 差分形式のデータ片のハッシュ値を、差分ごとのハッシュ値から少しずつ計算するかどうかを変える。
+         * 従来の方式とはハッシュ値が変わるので、方式の違う個体とは在庫の照合をしない。
+         * 途中で変えた場合は、起動時に記録済みのデータ片の概要を書き直す。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setIncrementalHash(final boolean value) {
+            this.incrementalHash = value;
+            return this;
+        }
+
         /**
          * 非通信接続を切断するまでの時間を変える。
          * @param value 新しい値 (ミリ秒)
@@ -330,6 +463,17 @@ public final class P2pCloset implements Closet {
             return this;
         }
 
+        /**
+         * 通信制限で、監視時間を固定幅の区間に分けて区間ごとの合計だけを持つかどうかを変える。
+         * 通信相手が多くても記憶量が増えにくくなる代わりに、制限は少し厳しめになる。
+         * @param value 新しい値
+         * @return this
+         */
+        public Parameters setBucketTrafficLimiter(final boolean value) {
+            this.bucketTrafficLimiter = value;
+            return this;
+        }
+
         /**
          * おかしな挙動の個体を弾くための単位監視時間を変える。
          * @param value 新しい値 (ミリ秒)
@@ -430,6 +574,41 @@ public final class P2pCloset implements Closet {
             return this;
         }
 
+        /**
+         * 接続ごとの送受信に使う実行機を変える。
+         * @param value 新しい実行機。
+         *            null なら start に渡された実行機を使う
+         * @return this
+         */
+        public Parameters setConnectionExecutor(final ExecutorService value) {
+            this.connectionExecutor = value;
+            return this;
+        }
+
+        /**
+         * 他の個体から依頼された操作に使う実行機を変える。
+         * 実行機が依頼を受け付けなかったら、依頼元に断りを返す。
+         * @param value 新しい実行機。
+         *            null ならコンストラクタに渡された実行機を使う
+         * @return this
+         */
+        public Parameters setHandlerExecutor(final ExecutorService value) {
+            this.handlerExecutor = value;
+            return this;
+        }
+
+        /**
+         * 複製と復元に使う実行機を変える。
+         * 実行機が受け付けなかった複製と復元は、次の巡回まで見送る。
+         * @param value 新しい実行機。
+         *            null ならコンストラクタに渡された実行機を使う
+         * @return this
+         */
+        public Parameters setBackupExecutor(final ExecutorService value) {
+            this.backupExecutor = value;
+            return this;
+        }
+
         /**
          * 直接通信して得た個体の論理位置を記憶する数を変える。
          * @param value 新しい値
@@ -476,24 +655,37 @@ public final class P2pCloset implements Closet {
     // 保持。
     private final NetworkWrapper network;
     private final StorageWrapper storage;
+    // 書き戻しキャッシュを使わないなら null。
+    private final WriteBackStatistics storageStatistics;
+    // 統計を取らない実行機なら null。
+    private final BoundedExecutor handlerExecutor;
+    private final BoundedExecutor backupExecutor;
     private final Set<Class<? extends Chunk>> backupTypes;
 
-    private final BlockingQueue<Operation> operationQueue;
+    private final OperationQueue operationQueue;
     private final SessionManager sessionManager;
     private final DriverSet drivers;
+    private final MailHandlerTable mailHandlers;
 
     private final BlockingQueue<ClosetReport> closetReportQueue;
 
+    // 記録しているデータ片のハッシュ値の計算方式を書いておくファイル。
+    private final File hashTypeFile;
+
     // 実行用引数。
     private final long maintenanceInterval;
+    private final int workerCount;
+    private final int mailReaderCount;
     private final long sleepTime;
     private final long backupInterval;
+    private final boolean digestBackup;
     private final long operationTimeout;
 
     private final BlockingQueue<OutlawReport> outlawReportQueue;
     private final boolean portIgnore;
     private final long outlawDuration;
     private final int outlawCountLimit;
+    private final ConstantLimiters.Type trafficLimiterType;
 
     /**
      * 作成する。
@@ -504,24 +696,36 @@ public final class P2pCloset implements Closet {
             throw new IllegalArgumentException("Null parameters.");
         }
 
-        this.operationQueue = new LinkedBlockingQueue<>();
+        final MountainHash.Type hashType = (param.incrementalHash ? MountainHash.Type.INCREMENTAL : MountainHash.Type.SERIAL);
+        this.trafficLimiterType = (param.bucketTrafficLimiter ? ConstantLimiters.Type.BUCKET : ConstantLimiters.Type.LIST);
+
+        this.operationQueue = new OperationQueue();
         this.sessionManager = new SessionManager();
 
-        final Storage rawStorage = Storages.newInstance(param.root, param.chunkSizeLimit, param.storageDirectoryBitSize, param.chunkCacheCapacity,
-                param.indexCacheCapacity, param.rangeCacheCapacity);
-        this.storage = new StorageWrapper(rawStorage, this.operationQueue, param.cacheLogCapacity, param.cacheDuration);
+        final Storages.Backend backend = (param.storageMapping ? Storages.Backend.MAPPED_FILE : Storages.Backend.FILE);
+        final Storage backendStorage = Storages.newBackend(backend, param.root, param.chunkSizeLimit, param.storageDirectoryBitSize);
+        // 差分の追記は、書き込みキャッシュから溢れたものを書き込むときに行う。
+        final DustJournalStorage journal = (param.dustJournalSizeLimit > 0 ? new DustJournalStorage(backendStorage,
+                TypeRegistries.<Mountain.Dust<?>> newRegistry(), new File(param.root, DUST_JOURNAL), param.dustJournalSizeLimit) : null);
+        this.handlerExecutor = (param.handlerExecutor instanceof BoundedExecutor ? (BoundedExecutor) param.handlerExecutor : null);
+        this.backupExecutor = (param.backupExecutor instanceof BoundedExecutor ? (BoundedExecutor) param.backupExecutor : null);
+        this.storageStatistics = (param.dirtySizeLimit > 0 ? new WriteBackStatistics() : null);
+        final Storage rawStorage = Storages.newInstance((journal != null ? journal : backendStorage), param.chunkCacheCapacity, param.indexCacheCapacity,
+                param.rangeCacheCapacity, param.dirtySizeLimit, param.readCacheSize, this.storageStatistics);
+        this.storage = new StorageWrapper(rawStorage, journal, this.operationQueue, param.cacheLogCapacity, param.cacheDuration, hashType);
+        this.hashTypeFile = new File(param.root, HASH_TYPE);
 
         final Messenger messenger = Messengers.newInstance(param.port, param.receiveBufferSize, param.sendBufferSize, param.connectionTimeout,
                 param.operationTimeout, param.messageSizeLimit, param.useHttpWrapper, VERSION, VERSION_GAP_THRESHOLD, param.id, param.publicKeyLifetime,
                 param.commonKeyLifetime, param.portIgnore, param.connectionLimit, param.trafficDuration, param.trafficSizeLimit, param.trafficCountLimit,
-                param.trafficPenalty);
+                param.trafficPenalty, this.trafficLimiterType, param.connectionExecutor);
         final AddressableNetwork rawNetwork = AddressableNetworks.newInstance(param.calculator.calculate(param.id.getPublic()), param.peerCapacity,
                 param.maintenanceInterval);
         final PeerBlacklist blacklist = new TimeLimitedPeerBlacklist(param.blacklistCapacity, param.blacklistTimeout);
         final PeerBlacklist lostPeers = new TimeLimitedPeerBlacklist(param.blacklistCapacity, param.maintenanceInterval * 2); // TODO 時間はかなりてきとう。
         final PeerPot pot = new FifoPeerPot(param.potCapacity);
         this.network = new NetworkWrapper(P2pCloset.VERSION, rawNetwork, messenger, blacklist, lostPeers, pot, this.operationQueue, param.calculator,
-                param.activeAddressLogCapacity, param.activeAddressDuration);
+                param.activeAddressLogCapacity, param.activeAddressDuration, hashType);
 
         Register.init(this.network, this.storage);
 
@@ -530,11 +734,16 @@ public final class P2pCloset implements Closet {
         this.closetReportQueue = new LinkedBlockingQueue<>();
         this.outlawReportQueue = new LinkedBlockingQueue<>();
         this.drivers = new DriverSet(this.network, this.storage, this.sessionManager, this.operationQueue, this.outlawReportQueue, param.executor,
-                this.portIgnore, CHECK_CHUNK_LIMIT, this.backupTypes);
+                (param.handlerExecutor == null ? param.executor : param.handlerExecutor), (param.backupExecutor == null ? param.executor
+                        : param.backupExecutor), this.portIgnore, CHECK_CHUNK_LIMIT, this.backupTypes, param.iterativeRouting);
+        this.mailHandlers = new MailHandlerTable(this.sessionManager, param.operationTimeout, this.drivers, this.drivers);
 
         this.maintenanceInterval = param.maintenanceInterval;
+        this.workerCount = param.workerCount;
+        this.mailReaderCount = param.mailReaderCount;
         this.sleepTime = param.sleepTime;
         this.backupInterval = param.backupInterval;
+        this.digestBackup = param.digestBackup;
         this.operationTimeout = param.operationTimeout;
         if (param.peers != null) {
             for (final InetSocketAddress host : param.peers) {
@@ -547,11 +756,47 @@ public final class P2pCloset implements Closet {
         this.outlawCountLimit = param.outlawCountLimit;
     }
 
+    /**
+     * 記録しているデータ片のハッシュ値の計算方式を、今の方式に揃える。
+     * データ片の型が登録されてからでないと読み込めないので、起動時に行う。
+     */
+    private void alignHashType() {
+        final MountainHash.Type after = this.storage.getHashType();
+        try {
+            MountainHash.Type before = MountainHash.Type.SERIAL;
+            if (this.hashTypeFile.exists()) {
+                final String name = new String(Files.readAllBytes(this.hashTypeFile.toPath()), Global.INTERNAL_CHARSET).trim();
+                try {
+                    before = MountainHash.Type.valueOf(name);
+                } catch (final IllegalArgumentException e) {
+                    LOG.log(Level.WARNING, "{0} に書かれている計算方式 {1} を知らないので、従来の方式とみなします。", new Object[] { this.hashTypeFile.getPath(), name });
+                }
+            }
+            if (before != after) {
+                final long start = System.currentTimeMillis();
+                final int count = this.storage.rehash(before);
+                LOG.log(Level.INFO, "ハッシュ値の計算方式を {0} から {1} に変えたので、{2} 個のデータ片の概要を書き直しました ( {3} ミリ秒 )。", new Object[] { before,
+                        after, count, System.currentTimeMillis() - start });
+            }
+            if (before != after || !this.hashTypeFile.exists()) {
+                Files.write(this.hashTypeFile.toPath(), after.name().getBytes(Global.INTERNAL_CHARSET));
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public void start(final ExecutorService executor) {
-        executor.submit(new Boss(this.network, this.sessionManager, this.maintenanceInterval, this.sleepTime, this.backupInterval, this.operationTimeout,
-                VERSION_GAP_THRESHOLD, executor, this.operationQueue, this.closetReportQueue, this.drivers, this.outlawReportQueue, this.portIgnore,
-                this.outlawDuration, this.outlawCountLimit));
+        alignHashType();
+        executor.submit(new Boss(this.network, this.sessionManager, this.maintenanceInterval, this.sleepTime, this.backupInterval, this.digestBackup,
+                this.operationTimeout, VERSION_GAP_THRESHOLD, this.workerCount, this.mailReaderCount, executor, this.operationQueue,
+                this.operationQueue.getStatistics(), this.storageStatistics, this.handlerExecutor, this.backupExecutor,
+                this.mailHandlers, this.closetReportQueue, this.drivers, this.outlawReportQueue, this.portIgnore, this.outlawDuration, this.outlawCountLimit,
+                this.trafficLimiterType));
         this.network.start(executor);
     }
 
@@ -580,6 +825,22 @@ public final class P2pCloset implements Closet {
         return this.network.getDomain();
     }
 
+    RouteStatistics getRouteStatistics() {
+        return this.drivers.getRoute().getStatistics();
+    }
+
+    WriteBackStatistics getStorageStatistics() {
+        return this.storageStatistics;
+    }
+
+    WorkStatistics getWorkStatistics() {
+        return this.operationQueue.getStatistics();
+    }
+
+    MailStatistics getMailStatistics() {
+        return this.mailHandlers.getStatistics();
+    }
+
     /**
      * 把握している個体を返す。
      * @return 把握している個体
@@ -685,6 +946,7 @@ public final class P2pCloset implements Closet {
 
     @Override
     public boolean addChunk(final Chunk chunk, final long timeout) throws InterruptedException {
+        this.storage.adopt(chunk);
         AddCacheResult result;
         try {
             result = addCache(chunk, timeout);
@@ -813,6 +1075,7 @@ public final class P2pCloset implements Closet {
 
     @Override
     public <T extends Mountain> Closet.PatchOrAddResult<T> patchOrAddChunk(final T chunk, final long timeout) throws InterruptedException {
+        this.storage.adopt(chunk);
         PatchOrAddAndGetCacheResult result;
         try {
             result = patchOrAddAndGetCache(chunk, timeout);
@@ -904,6 +1167,7 @@ public final class P2pCloset implements Closet {
 
     @Override
     public void close() throws MyRuleException, InterruptedException, IOException {
+        LOG.log(Level.INFO, "手紙の統計: {0}", getMailStatistics());
         this.storage.close();
     }
 
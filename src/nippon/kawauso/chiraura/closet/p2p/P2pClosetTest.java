@@ -264,6 +264,11 @@ public final class P2pClosetTest {
     private static final long cacheDuration = Duration.SECOND;
 
     private static P2pCloset[] beforeOperation(final int numOfPeers, final String label, final ExecutorService executor) throws InterruptedException {
+        return beforeOperation(numOfPeers, label, executor, false);
+    }
+
+    private static P2pCloset[] beforeOperation(final int numOfPeers, final String label, final ExecutorService executor, final boolean iterativeRouting)
+            throws InterruptedException {
         final P2pCloset[] instances = new P2pCloset[numOfPeers];
 
         final long operationTimeout = 750L;
@@ -280,6 +285,7 @@ public final class P2pClosetTest {
                     .setBackupInterval(backupInterval)
                     .setCacheDuration(cacheDuration)
                     .setPeerCapacity(numOfPeers)
+                    .setIterativeRouting(iterativeRouting)
                     // .setCacheDuration(0L)
                     .setPortIgnore(false);
             if (i == 0) {
@@ -340,6 +346,40 @@ public final class P2pClosetTest {
         afterOperation(executor, instances);
     }
 
+    /**
+     * 担当者を自分で探すデータ片の取得試験。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testIterativeGetOriginal20() throws Exception {
+        final int numOfPeers = 20;
+        final String label = "iterativeGetOriginal";
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final P2pCloset[] instances = beforeOperation(numOfPeers, label, executor, true);
+
+        // データ片の追加。
+        final Mountain chunk = new GrowingBytes(label);
+        Assert.assertTrue(instances[0].addOriginal(chunk, Duration.SECOND).isSuccess());
+
+        for (final P2pCloset instance : instances) {
+            Assert.assertEquals(chunk, instance.getOriginal(chunk.getId(), Duration.SECOND).getChunk());
+        }
+
+        // 担当者以外は担当者を探したはず。
+        long numOfLookups = 0;
+        long numOfResolved = 0;
+        for (final P2pCloset instance : instances) {
+            final RouteStatistics statistics = instance.getRouteStatistics();
+            numOfLookups += statistics.getNumOfLookups();
+            numOfResolved += statistics.getNumOfResolved();
+            Assert.assertTrue(statistics.toString(), statistics.getMaxHops() <= RouteDriver.MAX_HOPS);
+        }
+        Assert.assertTrue(numOfLookups > 0);
+        Assert.assertTrue(numOfResolved > 0);
+
+        afterOperation(executor, instances);
+    }
+
     /**
      * データ片のキャッシュを許す取得試験。
      * @throws Exception 異常
@@ -1039,6 +1079,19 @@ public final class P2pClosetTest {
      */
     @Test
     public void testSynchronization() throws Exception {
+        testSynchronization(false);
+    }
+
+    /**
+     * いろいろ書き込んで 2 個体で要約の比較により同期されるかどうかを検査する。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testDigestSynchronization() throws Exception {
+        testSynchronization(true);
+    }
+
+    private void testSynchronization(final boolean digestBackup) throws Exception {
         final long operationTimeout = Duration.SECOND;
         final long maintenanceInterval = 2 * Duration.SECOND;
         final long backupInterval = 500L;
@@ -1055,6 +1108,7 @@ public final class P2pClosetTest {
             final P2pCloset.Parameters param = new P2pCloset.Parameters(root, id, port, executor)
                     .setMaintenanceInterval(maintenanceInterval)
                     .setBackupInterval(backupInterval)
+                    .setDigestBackup(digestBackup)
                     .setOperationTimeout(operationTimeout)
                     .setPeerCapacity(1)
                     .setPortIgnore(false);
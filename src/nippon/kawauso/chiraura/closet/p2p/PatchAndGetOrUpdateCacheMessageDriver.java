@@ -6,6 +6,7 @@ import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,53 +57,58 @@ final class PatchAndGetOrUpdateCacheMessageDriver {
 
         if (!this.network.moreAppropriate(message.getId().getAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
-            final List<Message> reply = new ArrayList<>(2);
-            reply.add(PatchAndGetOrUpdateCacheReply.newRejected());
-            reply.add(new SessionReply(session));
-            this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+            reject(session, source);
             return;
         }
 
-        this.executor.submit(new Reporter<Void>(Level.WARNING) {
-            @Override
-            protected Void subCall() throws InterruptedException, IOException {
-                final PatchAndGetOrUpdateCacheOperation<T> operation = new PatchAndGetOrUpdateCacheOperation<>(message.getId(), message.getDiff());
-                final PatchAndGetOrUpdateCacheResult result = PatchAndGetOrUpdateCacheMessageDriver.this.blockingDriver.execute(operation, timeout);
+        try {
+            this.executor.submit(new Reporter<Void>(Level.WARNING) {
+                @Override
+                protected Void subCall() throws InterruptedException, IOException {
+                    final PatchAndGetOrUpdateCacheOperation<T> operation = new PatchAndGetOrUpdateCacheOperation<>(message.getId(), message.getDiff());
+                    final PatchAndGetOrUpdateCacheResult result = PatchAndGetOrUpdateCacheMessageDriver.this.blockingDriver.execute(operation, timeout);
 
-                // 返信の用意。
-                final List<Message> reply = new ArrayList<>(2);
-                final int connectionType;
-                if (result == null) {
-                    // 制限時間中に結果を得られなかった。(やったのは先人かも)
-                    reply.add(PatchAndGetOrUpdateCacheReply.newGiveUp());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else if (result.isGivenUp()) {
-                    // 通信先が諦めた。俺も諦める。
-                    reply.add(PatchAndGetOrUpdateCacheReply.newGiveUp());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else if (result.isNotFound()) {
-                    reply.add(PatchAndGetOrUpdateCacheReply.newNotFound(PatchAndGetOrUpdateCacheMessageDriver.this.idRegistry, message.getId(),
-                            result.getAccessDate()));
-                    connectionType = ConnectionTypes.CONTROL;
-                } else {
-                    if (message.isGet()) {
-                        reply.add(new PatchAndGetOrUpdateCacheReply<>(result.isSuccess(), PatchAndGetOrUpdateCacheMessageDriver.this.chunkRegistry,
-                                result.getChunk(), result.getAccessDate()));
+                    // 返信の用意。
+                    final List<Message> reply = new ArrayList<>(2);
+                    if (result == null) {
+                        // 制限時間中に結果を得られなかった。(やったのは先人かも)
+                        reply.add(PatchAndGetOrUpdateCacheReply.newGiveUp());
+                    } else if (result.isGivenUp()) {
+                        // 通信先が諦めた。俺も諦める。
+                        reply.add(PatchAndGetOrUpdateCacheReply.newGiveUp());
+                    } else if (result.isNotFound()) {
+                        reply.add(PatchAndGetOrUpdateCacheReply.newNotFound(PatchAndGetOrUpdateCacheMessageDriver.this.idRegistry, message.getId(),
+                                result.getAccessDate()));
                     } else {
-                        reply.add(new PatchAndGetOrUpdateCacheReply<>(result.isSuccess(), PatchAndGetOrUpdateCacheMessageDriver.this.chunkRegistry, result
-                                .getChunk(), message.getDate(), result.getAccessDate()));
+                        if (message.isGet()) {
+                            reply.add(new PatchAndGetOrUpdateCacheReply<>(result.isSuccess(), PatchAndGetOrUpdateCacheMessageDriver.this.chunkRegistry,
+                                    result.getChunk(), result.getAccessDate()));
+                        } else {
+                            reply.add(new PatchAndGetOrUpdateCacheReply<>(result.isSuccess(), PatchAndGetOrUpdateCacheMessageDriver.this.chunkRegistry, result
+                                    .getChunk(), message.getDate(), result.getAccessDate()));
+                        }
                     }
-                    connectionType = ConnectionTypes.DATA;
+                    reply.add(new SessionReply(session));
+
+                    // 返信する。
+                    PatchAndGetOrUpdateCacheMessageDriver.this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+                    LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
+                    return null;
                 }
-                reply.add(new SessionReply(session));
 
-                // 返信する。
-                PatchAndGetOrUpdateCacheMessageDriver.this.network.sendMail(source, connectionType, reply);
-                LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
-                return null;
-            }
+            });
+        } catch (final RejectedExecutionException e) {
+            // 手が足りないので断る。依頼元は断られたら諦める。断った数は下請けが数えている。
+            LOG.log(Level.FINE, "手が足りないので {0} に依頼された {1} を断ります。", new Object[] { source, message });
+            reject(session, source);
+        }
+    }
 
-        });
+    private void reject(final Session session, final InetSocketAddress source) {
+        final List<Message> reply = new ArrayList<>(2);
+        reply.add(PatchAndGetOrUpdateCacheReply.newRejected());
+        reply.add(new SessionReply(session));
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
     }
 
 }
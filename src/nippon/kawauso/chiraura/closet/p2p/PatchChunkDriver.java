@@ -10,7 +10,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.closet.Mountain;
-import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
 import nippon.kawauso.chiraura.messenger.ConnectionTypes;
@@ -57,92 +56,174 @@ final class PatchChunkDriver {
         this.outlawReportSink = outlawReportSink;
     }
 
+    /**
+     * 返信を待たずに実行する。
+     * 結果は制限時間が過ぎれば必ず決まる。
+     * 依頼先からの返信はそれを受け取ったスレッドで処理される。
+     * @param operation 操作
+     * @param timeout 制限時間
+     * @return 結果
+     */
+    <T extends Mountain> OperationFuture<PatchChunkResult> executeAsync(final PatchChunkOperation<T> operation, final long timeout) {
+        final OperationFuture<PatchChunkResult> result = new OperationFuture<>();
+        (new Procedure<>(operation, System.currentTimeMillis() + timeout, result)).next();
+        return result;
+    }
+
     <T extends Mountain> PatchChunkResult execute(final PatchChunkOperation<T> operation, final long timeout) throws InterruptedException, IOException {
-        final long start = System.currentTimeMillis();
-        final Address address = operation.getId().getAddress();
-        final Set<AddressedPeer> usedDestinations = new HashSet<>();
+        final PatchChunkResult result = executeAsync(operation, timeout).get(timeout);
+        if (result == null) {
+            LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", operation);
+            return PatchChunkResult.newGiveUp();
+        }
+        return result;
+    }
+
+    /**
+     * 依頼先を変えながら結果が出るまで続ける手続き。
+     * 返信を待つ間はスレッドを使わない。
+     */
+    private final class Procedure<T extends Mountain> implements OperationFuture.Listener<ReceivedMail> {
+
+        private final PatchChunkOperation<T> operation;
+        private final long deadline;
+        private final OperationFuture<PatchChunkResult> result;
+        private final Set<AddressedPeer> usedDestinations;
+
+        // 依頼中の相手。
+        private AddressedPeer destination;
+
+        private Procedure(final PatchChunkOperation<T> operation, final long deadline, final OperationFuture<PatchChunkResult> result) {
+            this.operation = operation;
+            this.deadline = deadline;
+            this.result = result;
+            this.usedDestinations = new HashSet<>();
+            this.destination = null;
+        }
 
-        while (!Thread.currentThread().isInterrupted() && System.currentTimeMillis() < start + timeout) {
+        /**
+         * 次の依頼先に依頼するか、結果を決める。
+         */
+        private void next() {
+            final PatchChunkResult value;
+            try {
+                value = request();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.result.set(PatchChunkResult.newGiveUp());
+                return;
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+                this.result.set(PatchChunkResult.newGiveUp());
+                return;
+            }
+            if (value != null) {
+                this.result.set(value);
+            }
+        }
+
+        /**
+         * @return 結果。
+         *         依頼した場合は null
+         */
+        private PatchChunkResult request() throws IOException, InterruptedException {
+            if (this.deadline <= System.currentTimeMillis()) {
+                LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", this.operation);
+                return PatchChunkResult.newGiveUp();
+            }
 
-            final AddressedPeer destination = this.network.getRoutingDestination(address);
+            this.destination = PatchChunkDriver.this.network.getRoutingDestination(this.operation.getId().getAddress());
 
-            if (destination == null) {
-                LOG.log(Level.FINEST, "{0} の担当は自分でした。", operation.getId());
-                final StorageWrapper.Result<T> result = this.storage.patch(operation.getId(), operation.getDiff());
-                if (result.isNotFound()) {
-                    LOG.log(Level.FINEST, "{0} はありませんでした。", operation.getId());
+            if (this.destination == null) {
+                LOG.log(Level.FINEST, "{0} の担当は自分でした。", this.operation.getId());
+                final StorageWrapper.Result<T> local = PatchChunkDriver.this.storage.patch(this.operation.getId(), this.operation.getDiff());
+                if (local.isNotFound()) {
+                    LOG.log(Level.FINEST, "{0} はありませんでした。", this.operation.getId());
                     return PatchChunkResult.newNotFound();
-                } else if (result.isSuccess()) {
-                    LOG.log(Level.FINEST, "{0} に差分を適用しました。", operation.getId());
-                    ConcurrentFunctions.completePut(new BackupOneOperation(operation.getId()), this.operationSink);
+                } else if (local.isSuccess()) {
+                    LOG.log(Level.FINEST, "{0} に差分を適用しました。", this.operation.getId());
+                    ConcurrentFunctions.completePut(new BackupOneOperation(this.operation.getId()), PatchChunkDriver.this.operationSink);
                     return new PatchChunkResult();
                 } else {
-                    LOG.log(Level.FINEST, "{0} に差分を適用できませんでした。", operation.getId());
+                    LOG.log(Level.FINEST, "{0} に差分を適用できませんでした。", this.operation.getId());
                     return PatchChunkResult.newFailure();
                 }
             }
 
-            if (usedDestinations.contains(destination)) {
-                LOG.log(Level.FINEST, "{0} の依頼先 {1} が重複したので諦めます。", new Object[] { operation, destination });
+            if (this.usedDestinations.contains(this.destination)) {
+                LOG.log(Level.FINEST, "{0} の依頼先 {1} が重複したので諦めます。", new Object[] { this.operation, this.destination });
                 return PatchChunkResult.newGiveUp();
             }
 
             // やりとりの準備。
-            final Session session = this.sessionManager.newSession(destination.getPeer());
+            final Session session = PatchChunkDriver.this.sessionManager.newSession(this.destination.getPeer(), this.deadline - System.currentTimeMillis(), this);
 
             // 手紙の準備。
             final List<Message> mail = new ArrayList<>(2);
-            mail.add(new PatchChunkMessage<>(this.idRegistry, operation.getId(), operation.getDiff()));
+            mail.add(new PatchChunkMessage<>(PatchChunkDriver.this.idRegistry, this.operation.getId(), this.operation.getDiff()));
             mail.add(new SessionMessage(session));
 
-            LOG.log(Level.FINEST, "{0} を {1} に依頼します。", new Object[] { operation, destination });
+            LOG.log(Level.FINEST, "{0} を {1} に依頼します。", new Object[] { this.operation, this.destination });
 
-            // 送受信。
-            this.network.sendMail(destination.getPeer(), ConnectionTypes.DATA, mail);
-            final ReceivedMail receivedMail = this.sessionManager.waitReply(session, start + timeout - System.currentTimeMillis());
+            // 送信。返信は done で受け取る。
+            PatchChunkDriver.this.network.sendMail(this.destination.getPeer(), ConnectionTypes.CONTROL, mail);
+            return null;
+        }
+
+        @Override
+        public void done(final ReceivedMail receivedMail) {
+            final PatchChunkResult value = receive(receivedMail);
+            if (value != null) {
+                this.result.set(value);
+            } else {
+                next();
+            }
+        }
 
+        /**
+         * @return 結果。
+         *         依頼先を変えて続ける場合は null
+         */
+        private PatchChunkResult receive(final ReceivedMail receivedMail) {
             if (receivedMail == null) {
-                if (start + timeout <= System.currentTimeMillis()) {
-                    LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", operation);
+                if (this.deadline <= System.currentTimeMillis()) {
+                    LOG.log(Level.FINEST, "{0} は時間切れなので諦めます。", this.operation);
                     return PatchChunkResult.newGiveUp();
                 } else {
-                    LOG.log(Level.FINEST, "{0} を依頼した {1} との間に何か異常がありました。", new Object[] { operation, destination });
-                    usedDestinations.add(destination);
-                    continue;
+                    LOG.log(Level.FINEST, "{0} を依頼した {1} との間に何か異常がありました。", new Object[] { this.operation, this.destination });
+                    this.usedDestinations.add(this.destination);
+                    return null;
                 }
-            } else {
-                if (receivedMail.getMail().get(0) instanceof PatchChunkReply) {
-                    // 正常。
-                    LOG.log(Level.FINEST, "{0} から {1} の結果が返ってきました。", new Object[] { destination, operation });
-                    this.network.addActivePeer(receivedMail.getSourceId(), receivedMail.getSourcePeer());
-                    final PatchChunkReply reply = (PatchChunkReply) receivedMail.getMail().get(0);
-                    if (reply.isRejected()) {
-                        LOG.log(Level.FINEST, "{0} は断られました。", operation);
-                        return PatchChunkResult.newGiveUp();
-                    } else if (reply.isGivenUp()) {
-                        LOG.log(Level.FINEST, "{0} は諦められました。", operation);
-                        return PatchChunkResult.newGiveUp();
-                    } else if (reply.isNotFound()) {
-                        LOG.log(Level.FINEST, "{0} は対象無しと言われました。", operation);
-                        return PatchChunkResult.newNotFound();
-                    } else if (reply.isSuccess()) {
-                        LOG.log(Level.FINEST, "{0} が成功しました。", operation);
-                        return new PatchChunkResult();
-                    } else {
-                        LOG.log(Level.FINEST, "{0} は失敗しました。", operation);
-                        return PatchChunkResult.newFailure();
-                    }
+            } else if (receivedMail.getMail().get(0) instanceof PatchChunkReply) {
+                // 正常。
+                LOG.log(Level.FINEST, "{0} から {1} の結果が返ってきました。", new Object[] { this.destination, this.operation });
+                PatchChunkDriver.this.network.addActivePeer(receivedMail.getSourceId(), receivedMail.getSourcePeer());
+                final PatchChunkReply reply = (PatchChunkReply) receivedMail.getMail().get(0);
+                if (reply.isRejected()) {
+                    LOG.log(Level.FINEST, "{0} は断られました。", this.operation);
+                    return PatchChunkResult.newGiveUp();
+                } else if (reply.isGivenUp()) {
+                    LOG.log(Level.FINEST, "{0} は諦められました。", this.operation);
+                    return PatchChunkResult.newGiveUp();
+                } else if (reply.isNotFound()) {
+                    LOG.log(Level.FINEST, "{0} は対象無しと言われました。", this.operation);
+                    return PatchChunkResult.newNotFound();
+                } else if (reply.isSuccess()) {
+                    LOG.log(Level.FINEST, "{0} が成功しました。", this.operation);
+                    return new PatchChunkResult();
                 } else {
-                    // プロトコル違反。
-                    LOG.log(Level.WARNING, "{0} からの返事の型 {1} は期待する型 {2} と異なります。", new Object[] { destination, receivedMail.getMail().get(0).getClass(),
-                            PatchChunkReply.class });
-                    ConcurrentFunctions.completePut(new OutlawReport(destination.getPeer()), this.outlawReportSink);
-                    continue;
+                    LOG.log(Level.FINEST, "{0} は失敗しました。", this.operation);
+                    return PatchChunkResult.newFailure();
                 }
+            } else {
+                // プロトコル違反。
+                LOG.log(Level.WARNING, "{0} からの返事の型 {1} は期待する型 {2} と異なります。", new Object[] { this.destination,
+                        receivedMail.getMail().get(0).getClass(), PatchChunkReply.class });
+                ConcurrentFunctions.completePut(new OutlawReport(this.destination.getPeer()), PatchChunkDriver.this.outlawReportSink);
+                return null;
             }
         }
 
-        return PatchChunkResult.newGiveUp();
     }
 
 }
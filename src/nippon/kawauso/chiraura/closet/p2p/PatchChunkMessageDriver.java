@@ -1,11 +1,11 @@
 package nippon.kawauso.chiraura.closet.p2p;
 
-import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,42 +44,63 @@ final class PatchChunkMessageDriver {
 
         if (!this.network.moreAppropriate(message.getId().getAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
-            final List<Message> reply = new ArrayList<>(2);
-            reply.add(PatchChunkReply.newRejected());
-            reply.add(new SessionReply(session));
-            this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+            reject(session, source);
             return;
         }
 
-        this.executor.submit(new Reporter<Void>(Level.WARNING) {
-            @Override
-            protected Void subCall() throws InterruptedException, IOException {
-                final PatchChunkOperation<T> operation = new PatchChunkOperation<>(message.getId(), message.getDiff());
-                final PatchChunkResult result = PatchChunkMessageDriver.this.blockingDriver.execute(operation, timeout);
-
-                // 返信の用意。
-                final List<Message> reply = new ArrayList<>(2);
-                if (result == null) {
-                    // 制限時間中に結果を得られなかった。(やったのは先人かも)
-                    reply.add(PatchChunkReply.newGiveUp());
-                } else if (result.isGivenUp()) {
-                    // 通信先が諦めた。俺も諦める。
-                    reply.add(PatchChunkReply.newGiveUp());
-                } else if (result.isNotFound()) {
-                    reply.add(PatchChunkReply.newNotFound());
-                } else if (result.isSuccess()) {
-                    reply.add(new PatchChunkReply());
-                } else {
-                    reply.add(PatchChunkReply.newFailure());
+        /*
+         * 倉庫に書き込むこともあるので、MailReader を止めないように実行機に渡す。
+         * 依頼を出したら実行機のスレッドは解放され、返信は受け取ったスレッドで処理される。
+         */
+        try {
+            this.executor.submit(new Reporter<Void>(Level.WARNING) {
+                @Override
+                protected Void subCall() {
+                    final PatchChunkOperation<T> operation = new PatchChunkOperation<>(message.getId(), message.getDiff());
+                    PatchChunkMessageDriver.this.blockingDriver.executeAsync(operation, timeout).addListener(new OperationFuture.Listener<PatchChunkResult>() {
+                        @Override
+                        public void done(final PatchChunkResult result) {
+                            reply(message, session, source, result);
+                        }
+                    });
+                    return null;
                 }
-                reply.add(new SessionReply(session));
+            });
+        } catch (final RejectedExecutionException e) {
+            // 手が足りないので断る。依頼元は断られたら諦める。断った数は下請けが数えている。
+            LOG.log(Level.FINE, "手が足りないので {0} に依頼された {1} を断ります。", new Object[] { source, message });
+            reject(session, source);
+        }
+    }
+
+    private void reply(final PatchChunkMessage<?> message, final Session session, final InetSocketAddress source, final PatchChunkResult result) {
+        // 返信の用意。
+        final List<Message> reply = new ArrayList<>(2);
+        if (result == null) {
+            // 制限時間中に結果を得られなかった。(やったのは先人かも)
+            reply.add(PatchChunkReply.newGiveUp());
+        } else if (result.isGivenUp()) {
+            // 通信先が諦めた。俺も諦める。
+            reply.add(PatchChunkReply.newGiveUp());
+        } else if (result.isNotFound()) {
+            reply.add(PatchChunkReply.newNotFound());
+        } else if (result.isSuccess()) {
+            reply.add(new PatchChunkReply());
+        } else {
+            reply.add(PatchChunkReply.newFailure());
+        }
+        reply.add(new SessionReply(session));
+
+        // 返信する。
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+        LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
+    }
 
-                // 返信する。
-                PatchChunkMessageDriver.this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
-                LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
-                return null;
-            }
-        });
+    private void reject(final Session session, final InetSocketAddress source) {
+        final List<Message> reply = new ArrayList<>(2);
+        reply.add(PatchChunkReply.newRejected());
+        reply.add(new SessionReply(session));
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
     }
 
 }
@@ -1,6 +1,5 @@
 package nippon.kawauso.chiraura.closet.p2p;
 
-import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,15 +39,16 @@ final class PatchChunkNonBlockingDriver {
         }
 
         // 自分で始める。
+        // 依頼を出したら実行機のスレッドは解放され、返信は受け取ったスレッドで処理される。
         this.executor.submit(new Reporter<Void>(Level.WARNING) {
             @Override
-            protected Void subCall() throws InterruptedException, IOException {
-                PatchChunkResult result = null;
-                try {
-                    result = PatchChunkNonBlockingDriver.this.coreDriver.execute(operation, timeout);
-                } finally {
-                    PatchChunkNonBlockingDriver.this.aggregator.free(operation, result);
-                }
+            protected Void subCall() {
+                PatchChunkNonBlockingDriver.this.coreDriver.executeAsync(operation, timeout).addListener(new OperationFuture.Listener<PatchChunkResult>() {
+                    @Override
+                    public void done(final PatchChunkResult result) {
+                        PatchChunkNonBlockingDriver.this.aggregator.free(operation, result);
+                    }
+                });
                 return null;
             }
         });
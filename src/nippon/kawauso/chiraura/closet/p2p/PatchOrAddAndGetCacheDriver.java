@@ -94,7 +94,7 @@ final class PatchOrAddAndGetCacheDriver {
             LOG.log(Level.FINEST, "{0} を {1} に依頼します。", new Object[] { operation, destination });
 
             // 送受信。
-            this.network.sendMail(destination.getPeer(), ConnectionTypes.DATA, mail);
+            this.network.sendMail(destination.getPeer(), ConnectionTypes.CONTROL, mail);
             final ReceivedMail receivedMail = this.sessionManager.waitReply(session, start + timeout - System.currentTimeMillis());
 
             if (receivedMail == null) {
@@ -6,6 +6,7 @@ import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,42 +50,48 @@ final class PatchOrAddAndGetCacheMessageDriver {
 
         if (!this.network.moreAppropriate(message.getChunk().getId().getAddress(), sourceId)) {
             LOG.log(Level.FINEST, "{0} に依頼された {1} を拒否します。", new Object[] { source, message });
-            final List<Message> reply = new ArrayList<>(2);
-            reply.add(PatchOrAddAndGetCacheReply.newRejected());
-            reply.add(new SessionReply(session));
-            this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+            reject(session, source);
             return;
         }
 
-        this.executor.submit(new Reporter<Void>(Level.WARNING) {
-            @Override
-            protected Void subCall() throws InterruptedException, IOException {
-                final PatchOrAddAndGetCacheOperation operation = new PatchOrAddAndGetCacheOperation(message.getChunk());
-                final PatchOrAddAndGetCacheResult result = PatchOrAddAndGetCacheMessageDriver.this.blockingDriver.execute(operation, timeout);
+        try {
+            this.executor.submit(new Reporter<Void>(Level.WARNING) {
+                @Override
+                protected Void subCall() throws InterruptedException, IOException {
+                    final PatchOrAddAndGetCacheOperation operation = new PatchOrAddAndGetCacheOperation(message.getChunk());
+                    final PatchOrAddAndGetCacheResult result = PatchOrAddAndGetCacheMessageDriver.this.blockingDriver.execute(operation, timeout);
 
-                // 返信の用意。
-                final List<Message> reply = new ArrayList<>(2);
-                final int connectionType;
-                if (result == null) {
-                    // 制限時間中に結果を得られなかった。(やったのは先人かも)
-                    reply.add(PatchOrAddAndGetCacheReply.newGiveUp());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else if (result.isGivenUp()) {
-                    // 通信先が諦めた。俺も諦める。
-                    reply.add(PatchOrAddAndGetCacheReply.newGiveUp());
-                    connectionType = ConnectionTypes.CONTROL;
-                } else {
-                    reply.add(new PatchOrAddAndGetCacheReply(PatchOrAddAndGetCacheMessageDriver.this.chunkRegistry, result.getChunk(), result.getAccessDate()));
-                    connectionType = ConnectionTypes.DATA;
+                    // 返信の用意。
+                    final List<Message> reply = new ArrayList<>(2);
+                    if (result == null) {
+                        // 制限時間中に結果を得られなかった。(やったのは先人かも)
+                        reply.add(PatchOrAddAndGetCacheReply.newGiveUp());
+                    } else if (result.isGivenUp()) {
+                        // 通信先が諦めた。俺も諦める。
+                        reply.add(PatchOrAddAndGetCacheReply.newGiveUp());
+                    } else {
+                        reply.add(new PatchOrAddAndGetCacheReply(PatchOrAddAndGetCacheMessageDriver.this.chunkRegistry, result.getChunk(), result.getAccessDate()));
+                    }
+                    reply.add(new SessionReply(session));
+
+                    // 返信する。
+                    PatchOrAddAndGetCacheMessageDriver.this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+                    LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
+                    return null;
                 }
-                reply.add(new SessionReply(session));
+            });
+        } catch (final RejectedExecutionException e) {
+            // 手が足りないので断る。依頼元は断られたら諦める。断った数は下請けが数えている。
+            LOG.log(Level.FINE, "手が足りないので {0} に依頼された {1} を断ります。", new Object[] { source, message });
+            reject(session, source);
+        }
+    }
 
-                // 返信する。
-                PatchOrAddAndGetCacheMessageDriver.this.network.sendMail(source, connectionType, reply);
-                LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
-                return null;
-            }
-        });
+    private void reject(final Session session, final InetSocketAddress source) {
+        final List<Message> reply = new ArrayList<>(2);
+        reply.add(PatchOrAddAndGetCacheReply.newRejected());
+        reply.add(new SessionReply(session));
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
     }
 
 }
@@ -37,7 +37,7 @@ final class PeerAccessMessageDriver {
         reply.add(new SessionReply(session));
 
         // 返信する。
-        this.network.sendMail(source, ConnectionTypes.DATA, reply);
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
         LOG.log(Level.FINER, "{0} からの {1} に応えました。", new Object[] { source, message });
     }
 
@@ -0,0 +1,106 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+
+/**
+ * アドレス範囲とその範囲の在庫の要約。
+ * @author chirauraNoSakusha
+ */
+final class RangeDigest implements BytesConvertible {
+
+    private final Address start;
+    private final Address end;
+    private final HashValue digest;
+
+    RangeDigest(final Address start, final Address end, final HashValue digest) {
+        if (start == null) {
+            throw new IllegalArgumentException("Null start address.");
+        } else if (end == null) {
+            throw new IllegalArgumentException("Null end address.");
+        } else if (digest == null) {
+            throw new IllegalArgumentException("Null digest.");
+        }
+        this.start = start;
+        this.end = end;
+        this.digest = digest;
+    }
+
+    Address getStartAddress() {
+        return this.start;
+    }
+
+    Address getEndAddress() {
+        return this.end;
+    }
+
+    HashValue getDigest() {
+        return this.digest;
+    }
+
+    @Override
+    public int byteSize() {
+        return BytesConversion.byteSize("ooo", this.start, this.end, this.digest);
+    }
+
+    @Override
+    public int toStream(final OutputStream output) throws IOException {
+        return BytesConversion.toStream(output, "ooo", this.start, this.end, this.digest);
+    }
+
+    static BytesConvertible.Parser<RangeDigest> getParser() {
+        return new BytesConvertible.Parser<RangeDigest>() {
+            @Override
+            public int fromStream(final InputStream input, final int maxByteSize, final List<? super RangeDigest> output) throws MyRuleException, IOException {
+                final List<Address> start = new ArrayList<>(1);
+                final List<Address> end = new ArrayList<>(1);
+                final List<HashValue> digest = new ArrayList<>(1);
+                final BytesConvertible.Parser<Address> addressParser = Address.getParser();
+                final int size = BytesConversion.fromStream(input, maxByteSize, "ooo", start, addressParser, end, addressParser, digest,
+                        HashValue.getParser());
+                output.add(new RangeDigest(start.get(0), end.get(0), digest.get(0)));
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[[").append(this.start)
+                .append(", ").append(this.end)
+                .append("], ").append(this.digest)
+                .append(']').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.start.hashCode();
+        result = prime * result + this.end.hashCode();
+        result = prime * result + this.digest.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof RangeDigest)) {
+            return false;
+        }
+        final RangeDigest other = (RangeDigest) obj;
+        return this.start.equals(other.start) && this.end.equals(other.end) && this.digest.equals(other.digest);
+    }
+
+}
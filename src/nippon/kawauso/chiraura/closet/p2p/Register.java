@@ -26,6 +26,7 @@ final class Register {
         network.registerMessage(id++, PeerAccessReply.class, PeerAccessReply.getParser());
         network.registerMessage(id++, AddressAccessMessage.class, AddressAccessMessage.getParser());
         network.registerMessage(id++, AddressAccessReply.class, AddressAccessReply.getParser());
+        network.registerMessage(id++, HashTypeMessage.class, HashTypeMessage.getParser());
 
         id = 32L;
         network.registerMessage(id++, CheckStockMessage.class, CheckStockMessage.getParser(idRegistry));
@@ -40,6 +41,10 @@ final class Register {
         network.registerMessage(id++, SimpleRecoveryReply.class, SimpleRecoveryReply.getParser(chunkRegistry));
         network.registerMessage(id++, CheckOneDemandMessage.class, CheckOneDemandMessage.getParser(idRegistry));
         network.registerMessage(id++, CheckOneDemandReply.class, CheckOneDemandReply.getParser(idRegistry));
+        network.registerMessage(id++, CheckDigestMessage.class, CheckDigestMessage.getParser());
+        network.registerMessage(id++, CheckDigestReply.class, CheckDigestReply.getParser());
+        network.registerMessage(id++, RouteMessage.class, RouteMessage.getParser());
+        network.registerMessage(id++, RouteReply.class, RouteReply.getParser());
 
         id = 64L;
         network.registerMessage(id++, GetChunkMessage.class, GetChunkMessage.getParser(idRegistry));
@@ -39,4 +39,8 @@ interface ReplyDriverSet {
 
     CheckOneDemandReplyDriver getCheckOneDemandReply();
 
+    CheckDigestReplyDriver getCheckDigestReply();
+
+    RouteReplyDriver getRouteReply();
+
 }
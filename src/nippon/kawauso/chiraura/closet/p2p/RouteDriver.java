@@ -0,0 +1,197 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
+import nippon.kawauso.chiraura.messenger.ConnectionTypes;
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.messenger.ReceivedMail;
+import nippon.kawauso.chiraura.network.AddressedPeer;
+
+/**
+ * 論理位置の担当者を反復的に探す。
+ * 依頼を他の個体に中継してもらうのではなく、
+ * 途中の個体には次に問い合わせるべき個体だけを教えてもらい、
+ * 自分で順に問い合わせていく。
+ * @author chirauraNoSakusha
+ */
+final class RouteDriver {
+
+    private static final Logger LOG = Logger.getLogger(RouteDriver.class.getName());
+
+    /**
+     * 問い合わせる個体の数の上限。
+     */
+    static final int MAX_HOPS = 32;
+
+    // 参照。
+    private final NetworkWrapper network;
+    private final SessionManager sessionManager;
+    private final BlockingQueue<OutlawReport> outlawReportSink;
+
+    private final RouteStatistics statistics;
+
+    RouteDriver(final NetworkWrapper network, final SessionManager sessionManager, final BlockingQueue<OutlawReport> outlawReportSink) {
+        if (network == null) {
+            throw new IllegalArgumentException("Null network.");
+        } else if (sessionManager == null) {
+            throw new IllegalArgumentException("Null session manager.");
+        } else if (outlawReportSink == null) {
+            throw new IllegalArgumentException("Null outlaw report sink.");
+        }
+        this.network = network;
+        this.sessionManager = sessionManager;
+        this.outlawReportSink = outlawReportSink;
+
+        this.statistics = new RouteStatistics();
+    }
+
+    RouteStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * 返信を待たずに担当者を探す。
+     * 結果は制限時間が過ぎれば必ず決まる。
+     * @param target 論理位置
+     * @param first 最初に問い合わせる個体
+     * @param timeout 制限時間
+     * @return 結果
+     */
+    OperationFuture<RouteResult> executeAsync(final Address target, final AddressedPeer first, final long timeout) {
+        if (target == null) {
+            throw new IllegalArgumentException("Null target.");
+        } else if (first == null) {
+            throw new IllegalArgumentException("Null first peer.");
+        }
+        final OperationFuture<RouteResult> result = new OperationFuture<>();
+        (new Lookup(target, first, System.currentTimeMillis() + timeout, result)).next();
+        return result;
+    }
+
+    /**
+     * 問い合わせ先を辿っていく手続き。
+     * 返信を待つ間はスレッドを使わない。
+     */
+    private final class Lookup implements OperationFuture.Listener<ReceivedMail> {
+
+        private final Address target;
+        private final long start;
+        private final long deadline;
+        private final OperationFuture<RouteResult> result;
+        private final Set<AddressedPeer> visited;
+
+        // 問い合わせ中の相手。
+        private AddressedPeer current;
+        // 返事をもらえた中で一番最後の相手。
+        private AddressedPeer best;
+
+        private Lookup(final Address target, final AddressedPeer first, final long deadline, final OperationFuture<RouteResult> result) {
+            this.target = target;
+            this.start = System.currentTimeMillis();
+            this.deadline = deadline;
+            this.result = result;
+            this.visited = new HashSet<>();
+            this.current = first;
+            this.best = null;
+        }
+
+        private void finish(final RouteResult value) {
+            if (this.result.set(value)) {
+                RouteDriver.this.statistics.add(!value.isGivenUp() && value.isOwner(), value.getNumOfHops(), System.currentTimeMillis() - this.start);
+                LOG.log(Level.FINEST, "{0} の担当者探しは {1} でした。", new Object[] { this.target, value });
+            }
+        }
+
+        /**
+         * 問い合わせを諦めて、分かった中で一番近い個体を結果にする。
+         */
+        private void giveUp() {
+            if (this.best == null) {
+                finish(RouteResult.newGiveUp(this.visited.size()));
+            } else {
+                finish(new RouteResult(this.best, false, this.visited.size()));
+            }
+        }
+
+        private void next() {
+            if (this.deadline <= System.currentTimeMillis()) {
+                LOG.log(Level.FINEST, "{0} の担当者探しは時間切れになりました。", this.target);
+                giveUp();
+                return;
+            }
+
+            this.visited.add(this.current);
+
+            // やりとりの準備。
+            final Session session = RouteDriver.this.sessionManager.newSession(this.current.getPeer(), this.deadline - System.currentTimeMillis(), this);
+
+            // 手紙の準備。
+            final List<Message> mail = new ArrayList<>(2);
+            mail.add(new RouteMessage(this.target));
+            mail.add(new SessionMessage(session));
+
+            LOG.log(Level.FINEST, "{0} の担当者を {1} に尋ねます。", new Object[] { this.target, this.current });
+
+            // 送信。返信は done で受け取る。
+            RouteDriver.this.network.sendMail(this.current.getPeer(), ConnectionTypes.CONTROL, mail);
+        }
+
+        @Override
+        public void done(final ReceivedMail receivedMail) {
+            if (receivedMail == null) {
+                LOG.log(Level.FINEST, "{0} の担当者を尋ねた {1} から返事がありませんでした。", new Object[] { this.target, this.current });
+                giveUp();
+                return;
+            } else if (!(receivedMail.getMail().get(0) instanceof RouteReply)) {
+                // プロトコル違反。
+                LOG.log(Level.WARNING, "{0} からの返事の型 {1} は期待する型 {2} と異なります。", new Object[] { this.current,
+                        receivedMail.getMail().get(0).getClass(), RouteReply.class });
+                ConcurrentFunctions.completePut(new OutlawReport(this.current.getPeer()), RouteDriver.this.outlawReportSink);
+                giveUp();
+                return;
+            }
+
+            // 通信網の更新。
+            RouteDriver.this.network.addActivePeer(receivedMail.getSourceId(), receivedMail.getSourcePeer());
+            this.best = this.current;
+
+            final RouteReply reply = (RouteReply) receivedMail.getMail().get(0);
+            if (reply.isOwner()) {
+                finish(new RouteResult(this.current, true, this.visited.size()));
+                return;
+            }
+
+            final AddressedPeer nextPeer = reply.getNext();
+            if (nextPeer.getAddress().equals(RouteDriver.this.network.getSelfAddress())) {
+                // 自分が担当者らしいが、自分の経路表はそう思っていない。
+                LOG.log(Level.FINEST, "{0} の担当者として自分を教えられました。", this.target);
+                giveUp();
+                return;
+            } else if (this.visited.contains(nextPeer)) {
+                LOG.log(Level.FINEST, "{0} の担当者探しが {1} に戻ってきました。", new Object[] { this.target, nextPeer });
+                giveUp();
+                return;
+            } else if (this.visited.size() >= MAX_HOPS) {
+                LOG.log(Level.FINEST, "{0} の担当者探しが {1} 個体を超えました。", new Object[] { this.target, MAX_HOPS });
+                giveUp();
+                return;
+            }
+
+            // 教えてもらった個体を覚えておく。
+            RouteDriver.this.network.addPeer(nextPeer);
+
+            this.current = nextPeer;
+            next();
+        }
+
+    }
+
+}
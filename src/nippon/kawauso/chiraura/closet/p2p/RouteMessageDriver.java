@@ -0,0 +1,51 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.messenger.ConnectionTypes;
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.network.AddressedPeer;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class RouteMessageDriver {
+
+    private static final Logger LOG = Logger.getLogger(RouteMessageDriver.class.getName());
+
+    // 参照。
+    private final NetworkWrapper network;
+
+    RouteMessageDriver(final NetworkWrapper network) {
+        if (network == null) {
+            throw new IllegalArgumentException("Null network.");
+        }
+        this.network = network;
+    }
+
+    void execute(final RouteMessage message, final Session session, final InetSocketAddress source) {
+        /*
+         * 自分の経路表を引くだけで、他の個体には問い合わせない。
+         * なので、実行機には渡さずにここで返信する。
+         */
+        final AddressedPeer next = this.network.getRoutingDestination(message.getAddress());
+
+        // 返信の用意。
+        final List<Message> reply = new ArrayList<>(2);
+        if (next == null) {
+            reply.add(RouteReply.newOwner());
+        } else {
+            reply.add(new RouteReply(next));
+        }
+        reply.add(new SessionReply(session));
+
+        // 返信する。
+        this.network.sendMail(source, ConnectionTypes.CONTROL, reply);
+        LOG.log(Level.FINEST, "{0} からの {1} に応えました。", new Object[] { source, message });
+    }
+
+}
@@ -0,0 +1,41 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class RouteMessageTest extends BytesConvertibleTest<RouteMessage> {
+
+    @Override
+    protected RouteMessage[] getInstances() {
+        final List<RouteMessage> list = new ArrayList<>();
+        list.add(new RouteMessage(new Address(HashValue.calculateFromString("いろは").toBigInteger(), HashValue.SIZE)));
+        list.add(new RouteMessage(new Address(HashValue.calculateFromString("にほへとち").toBigInteger(), HashValue.SIZE)));
+        list.add(new RouteMessage(new Address(HashValue.calculateFromString("りぬる").toBigInteger(), HashValue.SIZE)));
+        return list.toArray(new RouteMessage[0]);
+    }
+
+    @Override
+    protected RouteMessage getInstance(final int seed) {
+        return new RouteMessage(new Address(BigInteger.valueOf(seed).abs(), HashValue.SIZE));
+    }
+
+    @Override
+    protected BytesConvertible.Parser<RouteMessage> getParser() {
+        return RouteMessage.getParser();
+    }
+
+    @Override
+    protected int getNumOfLoops() {
+        return 1_000_000;
+    }
+
+}
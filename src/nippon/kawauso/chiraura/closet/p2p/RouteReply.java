@@ -0,0 +1,130 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.StreamFunctions;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.messenger.Message;
+import nippon.kawauso.chiraura.network.AddressedPeer;
+
+/**
+ * 論理位置の担当者への道筋の問い合わせへの返答。
+ * 自分が担当者であるか、担当者により近い個体を返す。
+ * @author chirauraNoSakusha
+ */
+final class RouteReply implements Message {
+
+    // 担当者により近い個体。自分が担当者なら null。
+    private final AddressedPeer next;
+
+    private RouteReply() {
+        this.next = null;
+    }
+
+    static RouteReply newOwner() {
+        return new RouteReply();
+    }
+
+    RouteReply(final AddressedPeer next) {
+        if (next == null) {
+            throw new IllegalArgumentException("Null next peer.");
+        }
+        this.next = next;
+    }
+
+    /**
+     * @return 返答した個体が担当者なら true
+     */
+    boolean isOwner() {
+        return this.next == null;
+    }
+
+    AddressedPeer getNext() {
+        return this.next;
+    }
+
+    /*
+     * 先頭バイトは、担当者なら 1、担当者により近い個体を教えるなら 2。
+     */
+
+    @Override
+    public int byteSize() {
+        if (this.next == null) {
+            return 1;
+        } else {
+            return 1 + this.next.byteSize();
+        }
+    }
+
+    @Override
+    public int toStream(final OutputStream output) throws IOException {
+        if (this.next == null) {
+            output.write(1);
+            return 1;
+        } else {
+            output.write(2);
+            return 1 + this.next.toStream(output);
+        }
+    }
+
+    static BytesConvertible.Parser<RouteReply> getParser() {
+        return new BytesConvertible.Parser<RouteReply>() {
+            @Override
+            public int fromStream(final InputStream input, final int maxByteSize, final List<? super RouteReply> output) throws MyRuleException,
+                    IOException {
+                if (maxByteSize < 1) {
+                    throw new MyRuleException("Too short read limit ( " + maxByteSize + " ).");
+                }
+                final byte[] flag = StreamFunctions.completeRead(input, 1);
+                int size = 1;
+                if (flag[0] == 1) {
+                    output.add(newOwner());
+                } else if (flag[0] == 2) {
+                    final List<AddressedPeer> next = new ArrayList<>(1);
+                    size += AddressedPeer.getParser().fromStream(input, maxByteSize - size, next);
+                    output.add(new RouteReply(next.get(0)));
+                } else {
+                    throw new MyRuleException("Invalid flag ( " + flag[0] + " ).");
+                }
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buff = new StringBuilder(this.getClass().getSimpleName()).append('[');
+        if (this.next == null) {
+            buff.append("owner");
+        } else {
+            buff.append(this.next);
+        }
+        return buff.append(']').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.next == null) ? 0 : this.next.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof RouteReply)) {
+            return false;
+        }
+        final RouteReply other = (RouteReply) obj;
+        if (this.next == null) {
+            return other.next == null;
+        } else {
+            return this.next.equals(other.next);
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author chirauraNoSakusha
+ */
+final class RouteReplyDriver {
+
+    private static final Logger LOG = Logger.getLogger(RouteReplyDriver.class.getName());
+
+
+    void execute(final RouteReply reply) {
+        LOG.log(Level.FINEST, "{0} に対してすることはありません。", reply);
+    }
+
+}
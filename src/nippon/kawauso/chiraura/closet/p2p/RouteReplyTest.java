@@ -0,0 +1,36 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.network.AddressedPeerTest;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class RouteReplyTest extends UsingRegistryTest<RouteReply> {
+
+    @Override
+    protected RouteReply[] getInstances() {
+        int seed = 0;
+        return new RouteReply[] {
+                RouteReply.newOwner(),
+                new RouteReply(AddressedPeerTest.newInstance(seed++)),
+                new RouteReply(AddressedPeerTest.newInstance(seed++)),
+        };
+    }
+
+    @Override
+    protected RouteReply getInstance(final int seed) {
+        return new RouteReply(AddressedPeerTest.newInstance(seed));
+    }
+
+    @Override
+    protected BytesConvertible.Parser<RouteReply> getParser() {
+        return RouteReply.getParser();
+    }
+
+    @Override
+    protected int getNumOfLoops() {
+        return 100_000;
+    }
+
+}
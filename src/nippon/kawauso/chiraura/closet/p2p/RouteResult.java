@@ -0,0 +1,70 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import nippon.kawauso.chiraura.network.AddressedPeer;
+
+/**
+ * 担当者への道筋の探索の結果。
+ * 1. 担当者。
+ * 2. 途中まで。担当者に辿り着く前に打ち切ったので、分かった中で一番近い個体。
+ * 3. 諦め。
+ * @author chirauraNoSakusha
+ */
+final class RouteResult {
+
+    private final boolean givenUp;
+
+    private final AddressedPeer destination;
+    private final boolean owner;
+    private final int numOfHops;
+
+    private RouteResult(final boolean givenUp, final AddressedPeer destination, final boolean owner, final int numOfHops) {
+        this.givenUp = givenUp;
+        this.destination = destination;
+        this.owner = owner;
+        this.numOfHops = numOfHops;
+    }
+
+    static RouteResult newGiveUp(final int numOfHops) {
+        return new RouteResult(true, null, false, numOfHops);
+    }
+
+    RouteResult(final AddressedPeer destination, final boolean owner, final int numOfHops) {
+        this(false, destination, owner, numOfHops);
+        if (destination == null) {
+            throw new IllegalArgumentException("Null destination.");
+        } else if (numOfHops < 0) {
+            throw new IllegalArgumentException("Negative number of hops ( " + numOfHops + " ).");
+        }
+    }
+
+    boolean isGivenUp() {
+        return this.givenUp;
+    }
+
+    AddressedPeer getDestination() {
+        return this.destination;
+    }
+
+    /**
+     * @return getDestination() が担当者だと確認できていれば true
+     */
+    boolean isOwner() {
+        return this.owner;
+    }
+
+    int getNumOfHops() {
+        return this.numOfHops;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buff = new StringBuilder(this.getClass().getSimpleName()).append('[');
+        if (this.givenUp) {
+            buff.append("giveUp");
+        } else {
+            buff.append(this.destination).append(", owner=").append(this.owner);
+        }
+        return buff.append(", hops=").append(this.numOfHops).append(']').toString();
+    }
+
+}
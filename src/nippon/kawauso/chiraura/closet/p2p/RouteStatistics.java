@@ -0,0 +1,86 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 担当者への道筋の探索の統計。
+ * 並列対応。
+ * @author chirauraNoSakusha
+ */
+final class RouteStatistics {
+
+    private final AtomicLong numOfLookups;
+    private final AtomicLong numOfResolved;
+    private final AtomicLong totalHops;
+    private final AtomicInteger maxHops;
+    private final AtomicLong totalLatency;
+
+    RouteStatistics() {
+        this.numOfLookups = new AtomicLong(0);
+        this.numOfResolved = new AtomicLong(0);
+        this.totalHops = new AtomicLong(0);
+        this.maxHops = new AtomicInteger(0);
+        this.totalLatency = new AtomicLong(0);
+    }
+
+    /**
+     * 探索 1 回分を記録する。
+     * @param resolved 担当者まで辿り着いたかどうか
+     * @param numOfHops 問い合わせた個体の数
+     * @param latency 掛かった時間 (ミリ秒)
+     */
+    void add(final boolean resolved, final int numOfHops, final long latency) {
+        this.numOfLookups.incrementAndGet();
+        if (resolved) {
+            this.numOfResolved.incrementAndGet();
+        }
+        this.totalHops.addAndGet(numOfHops);
+        this.totalLatency.addAndGet(latency);
+        for (int max = this.maxHops.get(); max < numOfHops; max = this.maxHops.get()) {
+            if (this.maxHops.compareAndSet(max, numOfHops)) {
+                break;
+            }
+        }
+    }
+
+    long getNumOfLookups() {
+        return this.numOfLookups.get();
+    }
+
+    long getNumOfResolved() {
+        return this.numOfResolved.get();
+    }
+
+    int getMaxHops() {
+        return this.maxHops.get();
+    }
+
+    /**
+     * @return 1 回あたりの問い合わせた個体の数
+     */
+    double getAverageHops() {
+        final long n = this.numOfLookups.get();
+        return n == 0 ? 0.0 : (double) this.totalHops.get() / n;
+    }
+
+    /**
+     * @return 1 回あたりの掛かった時間 (ミリ秒)
+     */
+    double getAverageLatency() {
+        final long n = this.numOfLookups.get();
+        return n == 0 ? 0.0 : (double) this.totalLatency.get() / n;
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[lookups=").append(getNumOfLookups())
+                .append(", resolved=").append(getNumOfResolved())
+                .append(", averageHops=").append(String.format("%.2f", getAverageHops()))
+                .append(", maxHops=").append(getMaxHops())
+                .append(", averageLatency=").append(String.format("%.1f", getAverageLatency()))
+                .append("ms]").toString();
+    }
+
+}
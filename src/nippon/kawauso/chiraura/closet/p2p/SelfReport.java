@@ -3,6 +3,8 @@ package nippon.kawauso.chiraura.closet.p2p;
 import java.net.InetSocketAddress;
 
 import nippon.kawauso.chiraura.closet.ClosetReport;
+import nippon.kawauso.chiraura.lib.concurrent.BoundedExecutor;
+import nippon.kawauso.chiraura.storage.WriteBackStatistics;
 
 /**
  * @author chirauraNoSakusha
@@ -11,13 +13,88 @@ public final class SelfReport implements ClosetReport {
 
     private final InetSocketAddress self;
     private final InetSocketAddress destination;
+    private final int numOfPendingOperations;
+    private final double operationWaitLatency;
+    private final long numOfRouteLookups;
+    private final double routeAverageHops;
+    private final double routeAverageLatency;
+    private final double storageHitRate;
+    private final long storageDirtySize;
+    private final double storageFlushLatency;
+    private final int handlerQueueDepth;
+    private final long numOfHandlerRejections;
+    private final double handlerWaitLatency;
+    private final int backupQueueDepth;
+    private final long numOfBackupRejections;
+    private final long numOfBackupDisplaced;
 
     SelfReport(final nippon.kawauso.chiraura.messenger.SelfReport base) {
+        this(base, null);
+    }
+
+    SelfReport(final nippon.kawauso.chiraura.messenger.SelfReport base, final WorkStatistics workStatistics) {
+        this(base, workStatistics, null);
+    }
+
+    SelfReport(final nippon.kawauso.chiraura.messenger.SelfReport base, final WorkStatistics workStatistics, final RouteStatistics routeStatistics) {
+        this(base, workStatistics, routeStatistics, null);
+    }
+
+    SelfReport(final nippon.kawauso.chiraura.messenger.SelfReport base, final WorkStatistics workStatistics, final RouteStatistics routeStatistics,
+            final WriteBackStatistics storageStatistics) {
+        this(base, workStatistics, routeStatistics, storageStatistics, null, null);
+    }
+
+    SelfReport(final nippon.kawauso.chiraura.messenger.SelfReport base, final WorkStatistics workStatistics, final RouteStatistics routeStatistics,
+            final WriteBackStatistics storageStatistics, final BoundedExecutor handlerExecutor, final BoundedExecutor backupExecutor) {
         if (base == null) {
             throw new IllegalArgumentException("Null base.");
         }
         this.self = base.getSelf();
         this.destination = base.getDestination();
+        if (workStatistics == null) {
+            this.numOfPendingOperations = 0;
+            this.operationWaitLatency = 0.0;
+        } else {
+            this.numOfPendingOperations = workStatistics.getNumOfPending();
+            this.operationWaitLatency = workStatistics.getWaitLatency().getPercentile(99);
+        }
+        if (routeStatistics == null) {
+            this.numOfRouteLookups = 0;
+            this.routeAverageHops = 0.0;
+            this.routeAverageLatency = 0.0;
+        } else {
+            this.numOfRouteLookups = routeStatistics.getNumOfLookups();
+            this.routeAverageHops = routeStatistics.getAverageHops();
+            this.routeAverageLatency = routeStatistics.getAverageLatency();
+        }
+        if (storageStatistics == null) {
+            this.storageHitRate = 0.0;
+            this.storageDirtySize = 0;
+            this.storageFlushLatency = 0.0;
+        } else {
+            this.storageHitRate = storageStatistics.getHitRate();
+            this.storageDirtySize = storageStatistics.getDirtySize();
+            this.storageFlushLatency = storageStatistics.getAverageFlushLatency();
+        }
+        if (handlerExecutor == null) {
+            this.handlerQueueDepth = 0;
+            this.numOfHandlerRejections = 0;
+            this.handlerWaitLatency = 0.0;
+        } else {
+            this.handlerQueueDepth = handlerExecutor.getQueueDepth();
+            this.numOfHandlerRejections = handlerExecutor.getNumOfRejections();
+            this.handlerWaitLatency = handlerExecutor.getWaitLatency().getPercentile(99);
+        }
+        if (backupExecutor == null) {
+            this.backupQueueDepth = 0;
+            this.numOfBackupRejections = 0;
+            this.numOfBackupDisplaced = 0;
+        } else {
+            this.backupQueueDepth = backupExecutor.getQueueDepth();
+            this.numOfBackupRejections = backupExecutor.getNumOfRejections();
+            this.numOfBackupDisplaced = backupExecutor.getNumOfDisplaced();
+        }
     }
 
     /**
@@ -36,10 +113,136 @@ public final class SelfReport implements ClosetReport {
         return this.destination;
     }
 
+    /**
+     * 報告時点で雑用係の手が空くのを待っている操作の数を返す。
+     * @return 待っている操作の数
+     */
+    public int getNumOfPendingOperations() {
+        return this.numOfPendingOperations;
+    }
+
+    /**
+     * 報告時点までの、操作が雑用係に取り出されるまでの待ち時間の 99 百分位数を返す。
+     * @return 待ち時間の 99 百分位数 (ミリ秒)
+     */
+    public double getOperationWaitLatency() {
+        return this.operationWaitLatency;
+    }
+
+    /**
+     * 報告時点までに担当者への道筋を自分で探した回数を返す。
+     * @return 探した回数
+     */
+    public long getNumOfRouteLookups() {
+        return this.numOfRouteLookups;
+    }
+
+    /**
+     * 報告時点までの、担当者への道筋の探索 1 回あたりに問い合わせた個体の数を返す。
+     * @return 問い合わせた個体の数の平均
+     */
+    public double getRouteAverageHops() {
+        return this.routeAverageHops;
+    }
+
+    /**
+     * 報告時点までの、担当者への道筋の探索 1 回あたりに掛かった時間を返す。
+     * @return 掛かった時間の平均 (ミリ秒)
+     */
+    public double getRouteAverageLatency() {
+        return this.routeAverageLatency;
+    }
+
+    /**
+     * 報告時点までの、データ片の読み込みが書き戻しキャッシュで済んだ割合を返す。
+     * @return 済んだ割合
+     */
+    public double getStorageHitRate() {
+        return this.storageHitRate;
+    }
+
+    /**
+     * 報告時点で書き戻しキャッシュに溜まっている、書き戻していないデータ片の大きさの和を返す。
+     * @return 書き戻していないデータ片の大きさの和 (バイト)
+     */
+    public long getStorageDirtySize() {
+        return this.storageDirtySize;
+    }
+
+    /**
+     * 報告時点までの、書き戻しキャッシュからの書き戻し 1 回あたりに掛かった時間を返す。
+     * @return 掛かった時間の平均 (ミリ秒)
+     */
+    public double getStorageFlushLatency() {
+        return this.storageFlushLatency;
+    }
+
+    /**
+     * 報告時点で依頼の処理の実行機の待ち行列に入っている処理の数を返す。
+     * @return 待ち行列に入っている処理の数
+     */
+    public int getHandlerQueueDepth() {
+        return this.handlerQueueDepth;
+    }
+
+    /**
+     * 報告時点までに依頼の処理の実行機が溢れて断った処理の数を返す。
+     * @return 断った処理の数
+     */
+    public long getNumOfHandlerRejections() {
+        return this.numOfHandlerRejections;
+    }
+
+    /**
+     * 報告時点までの、依頼の処理が始まるまでの待ち時間の 99 百分位数を返す。
+     * @return 待ち時間の 99 百分位数 (ミリ秒)
+     */
+    public double getHandlerWaitLatency() {
+        return this.handlerWaitLatency;
+    }
+
+    /**
+     * 報告時点で複製の処理の実行機の待ち行列に入っている処理の数を返す。
+     * @return 待ち行列に入っている処理の数
+     */
+    public int getBackupQueueDepth() {
+        return this.backupQueueDepth;
+    }
+
+    /**
+     * 報告時点までに複製の処理の実行機が溢れて断った処理の数を返す。
+     * @return 断った処理の数
+     */
+    public long getNumOfBackupRejections() {
+        return this.numOfBackupRejections;
+    }
+
+    /**
+     * 報告時点までに複製の処理の実行機で優先度の高い処理に押し出された処理の数を返す。
+     * @return 押し出された処理の数
+     */
+    public long getNumOfBackupDisplaced() {
+        return this.numOfBackupDisplaced;
+    }
+
     @Override
     public String toString() {
         return (new StringBuilder(this.getClass().getSimpleName()))
                 .append('[').append(this.self)
+                .append(", pendingOperations=").append(this.numOfPendingOperations)
+                .append(", operationWaitP99=").append(String.format("%.3f", this.operationWaitLatency))
+                .append("ms, routeLookups=").append(this.numOfRouteLookups)
+                .append(", routeAverageHops=").append(String.format("%.2f", this.routeAverageHops))
+                .append(", routeAverageLatency=").append(String.format("%.1f", this.routeAverageLatency))
+                .append("ms, storageHitRate=").append(String.format("%.3f", this.storageHitRate))
+                .append(", storageDirtySize=").append(this.storageDirtySize)
+                .append(", storageFlushLatency=").append(String.format("%.3f", this.storageFlushLatency))
+                .append("ms, handlerQueue=").append(this.handlerQueueDepth)
+                .append(", handlerRejections=").append(this.numOfHandlerRejections)
+                .append(", handlerWaitP99=").append(String.format("%.3f", this.handlerWaitLatency))
+                .append("ms, backupQueue=").append(this.backupQueueDepth)
+                .append(", backupRejections=").append(this.numOfBackupRejections)
+                .append(", backupDisplaced=").append(this.numOfBackupDisplaced)
                 .append(']').toString();
     }
 
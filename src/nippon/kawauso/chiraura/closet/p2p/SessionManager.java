@@ -3,12 +3,15 @@ package nippon.kawauso.chiraura.closet.p2p;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.Duration;
 import nippon.kawauso.chiraura.messenger.ReceivedMail;
 
 /**
@@ -19,17 +22,28 @@ final class SessionManager {
 
     private static final Logger LOG = Logger.getLogger(SessionManager.class.getName());
 
+    /*
+     * 返信を待つやり方は 2 つ。
+     * waitReply で呼び出したスレッドを止めて待つやり方と、
+     * 返信時の処理を登録して、返信を受け取ったスレッド (普通は MailReader) か
+     * 時間切れを見張るスレッドにその処理を呼んでもらうやり方。
+     * 後者なら、返信を待っている間はスレッドを使わない。
+     */
+
     private static final class Parameters {
 
         private final InetSocketAddress destination;
-        private ReceivedMail reply;
+        private final OperationFuture<ReceivedMail> reply;
 
-        private final CountDownLatch barrier;
+        // 返信時の処理を呼んでもらう場合のみ。
+        private final boolean async;
+        private ScheduledFuture<?> expiry;
 
-        private Parameters(final InetSocketAddress destination) {
+        private Parameters(final InetSocketAddress destination, final boolean async) {
             this.destination = destination;
-            this.reply = null;
-            this.barrier = new CountDownLatch(1);
+            this.reply = new OperationFuture<>();
+            this.async = async;
+            this.expiry = null;
         }
 
         private InetSocketAddress getDestination() {
@@ -37,31 +51,75 @@ final class SessionManager {
         }
 
         private ReceivedMail getReply() {
-            return this.reply;
+            return this.reply.getNow();
         }
 
         private boolean waitReply(final long timeout) throws InterruptedException {
-            return this.barrier.await(timeout, TimeUnit.MILLISECONDS);
+            this.reply.get(timeout);
+            return this.reply.isDone();
         }
 
         private void setReply(final ReceivedMail result) {
-            this.reply = result;
-            this.barrier.countDown();
+            this.reply.set(result);
         }
 
     }
 
+    // 時間切れを見張るスレッドは、暇なら消える。
+    private static final long TIMER_KEEP_ALIVE = 10 * Duration.SECOND;
+
     private final AtomicInteger serialGenerator;
     private final ConcurrentMap<Session, Parameters> container;
+    private final ScheduledThreadPoolExecutor timer;
 
     SessionManager() {
         this.serialGenerator = new AtomicInteger();
         this.container = new ConcurrentHashMap<>();
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, SessionManager.class.getSimpleName() + "-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.timer.setKeepAliveTime(TIMER_KEEP_ALIVE, TimeUnit.MILLISECONDS);
+        this.timer.allowCoreThreadTimeOut(true);
+        this.timer.setRemoveOnCancelPolicy(true);
     }
 
     Session newSession(final InetSocketAddress destination) {
         final Session session = new Session(this.serialGenerator.getAndIncrement());
-        this.container.put(session, new Parameters(destination));
+        this.container.put(session, new Parameters(destination, false));
+        return session;
+    }
+
+    /**
+     * 返信を待たないセッションを作成する。
+     * 返信が来るか時間切れになったら、listener が 1 度だけ呼ばれる。
+     * 時間切れの場合、返信は null になる。
+     * 終了時にセッションは削除される。
+     * @param destination セッション相手
+     * @param timeout 制限時間
+     * @param listener 返信時の処理
+     * @return セッション
+     */
+    Session newSession(final InetSocketAddress destination, final long timeout, final OperationFuture.Listener<? super ReceivedMail> listener) {
+        final Session session = new Session(this.serialGenerator.getAndIncrement());
+        final Parameters parameters = new Parameters(destination, true);
+        parameters.reply.addListener(listener);
+        this.container.put(session, parameters);
+        final ScheduledFuture<?> expiry = this.timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (SessionManager.this.container.remove(session, parameters)) {
+                    parameters.setReply(null);
+                }
+            }
+        }, Math.max(0, timeout), TimeUnit.MILLISECONDS);
+        synchronized (parameters) {
+            parameters.expiry = expiry;
+        }
         return session;
     }
 
@@ -77,6 +135,8 @@ final class SessionManager {
         final Parameters parameters = this.container.get(session);
         if (parameters == null) {
             throw new IllegalStateException("Not registered session ( " + session + " ).");
+        } else if (parameters.async) {
+            throw new IllegalStateException("Asynchronous session ( " + session + " ).");
         }
 
         parameters.waitReply(timeout);
@@ -92,13 +152,30 @@ final class SessionManager {
             // もう getResult されてた。
             return false;
         }
+        if (!parameters.getDestination().equals(destination)) {
+            LOG.log(Level.WARNING, "セッション ( {0} ) の相手 ( {1} ) が登録 ( {2} ) と違います。", new Object[] { session, destination, parameters.getDestination() });
+            return false;
+        }
+        if (parameters.async) {
+            if (!this.container.remove(session, parameters)) {
+                // ついさっき時間切れになった。
+                return false;
+            }
+            final ScheduledFuture<?> expiry;
+            synchronized (parameters) {
+                expiry = parameters.expiry;
+            }
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            // 返信時の処理はロックの外で呼ぶ。
+            parameters.setReply(result);
+            return true;
+        }
         synchronized (parameters) {
             if (this.container.get(session) == null) {
                 // ついさっき waitResult が終わった。
                 return false;
-            } else if (!parameters.getDestination().equals(destination)) {
-                LOG.log(Level.WARNING, "セッション ( {0} ) の相手 ( {1} ) が登録 ( {2} ) と違います。", new Object[] { session, destination, parameters.getDestination() });
-                return false;
             }
             parameters.setReply(result);
             return true;
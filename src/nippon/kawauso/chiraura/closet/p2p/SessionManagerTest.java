@@ -10,6 +10,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import nippon.kawauso.chiraura.lib.process.Reporter;
@@ -125,4 +126,105 @@ public final class SessionManagerTest {
         Assert.assertTrue(timeout / 2 <= (end - start) / 1_000_000);
         Assert.assertTrue((end - start) / 1_000_000 <= timeout);
     }
+
+    /**
+     * 返信を待たないセッションの時間切れ動作の検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testAsyncTimeout() throws Exception {
+        final long timeout = 100;
+        final ReceivedMail reply = ReceivedMailTest.newRandomInstance(this.random);
+        final OperationFuture<ReceivedMail> result = new OperationFuture<>();
+        final long start = System.nanoTime();
+        final Session session = this.instance.newSession(reply.getSourcePeer(), timeout, new OperationFuture.Listener<ReceivedMail>() {
+            @Override
+            public void done(final ReceivedMail value) {
+                Assert.assertTrue(result.set(value));
+            }
+        });
+
+        // 時間切れになるまでは呼ばれない。
+        Assert.assertNull(result.get(timeout / 2));
+        Assert.assertFalse(result.isDone());
+
+        Assert.assertNull(result.get(2 * timeout));
+        final long end = System.nanoTime();
+        Assert.assertTrue(result.isDone());
+        Assert.assertTrue(timeout <= (end - start) / 1_000_000);
+
+        // 時間切れの後の返信は受け付けない。
+        Assert.assertFalse(this.instance.setReply(session, reply));
+    }
+
+    /**
+     * 返信を待たないセッションの正常系。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testAsyncReply() throws Exception {
+        final long timeout = 1_000;
+        final ReceivedMail reply = ReceivedMailTest.newRandomInstance(this.random);
+        final OperationFuture<ReceivedMail> result = new OperationFuture<>();
+        final Session session = this.instance.newSession(reply.getSourcePeer(), timeout, new OperationFuture.Listener<ReceivedMail>() {
+            @Override
+            public void done(final ReceivedMail value) {
+                Assert.assertTrue(result.set(value));
+            }
+        });
+
+        // 相手違いは受け付けない。
+        Assert.assertFalse(this.instance.setNull(session, randomDestination()));
+        Assert.assertFalse(result.isDone());
+
+        // 返信を設定したスレッドで呼ばれる。
+        Assert.assertTrue(this.instance.setReply(session, reply));
+        Assert.assertTrue(result.isDone());
+        Assert.assertEquals(reply, result.get(0));
+
+        // 2 度目は受け付けないし、時間切れでも呼ばれない。
+        Assert.assertFalse(this.instance.setReply(session, reply));
+        Thread.sleep(timeout + 100);
+        Assert.assertEquals(reply, result.getNow());
+    }
+
+    /**
+     * 返信を待たないセッションをたくさん作っても、待つスレッドが増えないかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testAsyncMany() throws Exception {
+        final int numOfSessions = 10_000;
+        final long timeout = 200;
+        final ReceivedMail reply = ReceivedMailTest.newRandomInstance(this.random);
+        final AtomicInteger replied = new AtomicInteger();
+        final AtomicInteger expired = new AtomicInteger();
+        final OperationFuture.Listener<ReceivedMail> listener = new OperationFuture.Listener<ReceivedMail>() {
+            @Override
+            public void done(final ReceivedMail value) {
+                if (value == null) {
+                    expired.incrementAndGet();
+                } else {
+                    replied.incrementAndGet();
+                }
+            }
+        };
+
+        final int numOfThreads = Thread.activeCount();
+        final List<Session> sessions = new ArrayList<>(numOfSessions);
+        for (int i = 0; i < numOfSessions; i++) {
+            sessions.add(this.instance.newSession(reply.getSourcePeer(), timeout, listener));
+        }
+        // 見張り役の 1 本だけ。
+        Assert.assertTrue(Thread.activeCount() <= numOfThreads + 1);
+
+        for (int i = 0; i < numOfSessions; i += 2) {
+            Assert.assertTrue(this.instance.setReply(sessions.get(i), reply));
+        }
+        Thread.sleep(3 * timeout);
+
+        Assert.assertEquals(numOfSessions / 2, replied.get());
+        Assert.assertEquals(numOfSessions / 2, expired.get());
+    }
+
 }
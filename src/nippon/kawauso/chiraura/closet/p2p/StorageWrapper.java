@@ -1,14 +1,19 @@
 package nippon.kawauso.chiraura.closet.p2p;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.base.HashValue;
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
@@ -33,7 +38,31 @@ final class StorageWrapper {
     private final TypeRegistry<Mountain.Dust<?>> diffRegistry;
     private final CacheLog cacheLog;
 
+    // 書き込みキャッシュの下で差分を追記する倉庫。無ければ null。
+    private final DustJournalStorage journal;
+
+    // データ片ごとの、差分の適用依頼のまとめ役。
+    private final ConcurrentMap<Chunk.Id<?>, PatchGroup> patchGroups;
+
+    // 読み込んだデータ片に持たせるハッシュ値の計算方式。rehash の間だけ古い方式になる。
+    private volatile MountainHash.Type hashType;
+
     StorageWrapper(final Storage base, final BlockingQueue<Operation> operationSink, final int cacheLogLimit, final long cacheDuration) {
+        this(base, null, operationSink, cacheLogLimit, cacheDuration, MountainHash.Type.SERIAL);
+    }
+
+    /**
+     * 作成する。
+     * @param base 記録装置
+     * @param journal base の書き込みキャッシュの下に挟んだ、差分を追記する倉庫。
+     *            null なら差分を追記しない
+     * @param operationSink 操作の報告先
+     * @param cacheLogLimit 複製の記録数
+     * @param cacheDuration 複製を新鮮とみなす期間
+     * @param hashType データ片のハッシュ値の計算方式
+     */
+    StorageWrapper(final Storage base, final DustJournalStorage journal, final BlockingQueue<Operation> operationSink, final int cacheLogLimit,
+            final long cacheDuration, final MountainHash.Type hashType) {
         if (base == null) {
             throw new IllegalArgumentException("Null base.");
         } else if (operationSink == null) {
@@ -42,28 +71,118 @@ final class StorageWrapper {
             throw new IllegalArgumentException("Negative cache log limit ( " + cacheLogLimit + " ).");
         } else if (cacheDuration < 0) {
             throw new IllegalArgumentException("Negative cache duration ( " + cacheDuration + " ).");
+        } else if (hashType == null) {
+            throw new IllegalArgumentException("Null hash type.");
         }
 
         this.base = base;
         this.operationSink = operationSink;
-        this.diffRegistry = TypeRegistries.newRegistry();
+        this.diffRegistry = (journal == null ? TypeRegistries.<Mountain.Dust<?>> newRegistry() : journal.getDiffRegistry());
+        this.journal = journal;
 
         this.cacheLog = new CacheLog(cacheLogLimit, cacheDuration);
+        this.patchGroups = new ConcurrentHashMap<>();
+        this.hashType = hashType;
     }
 
     <C extends Chunk, I extends Chunk.Id<C>> void registerChunk(final long type, final Class<C> chunkClass,
             final BytesConvertible.Parser<? extends C> chunkParser,
             final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser) {
-        this.base.registerChunk(type, chunkClass, chunkParser, idClass, idParser);
+        this.base.registerChunk(type, chunkClass, adoptingParser(chunkClass, chunkParser), idClass, idParser);
     }
 
     <C extends Mountain, I extends Chunk.Id<C>, D extends Mountain.Dust<C>> void registerChunk(final long type, final Class<C> chunkClass,
             final BytesConvertible.Parser<? extends C> chunkParser, final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser,
             final Class<D> diffClass, final BytesConvertible.Parser<? extends D> diffParser) {
-        this.base.registerChunk(type, chunkClass, chunkParser, idClass, idParser);
+        this.base.registerChunk(type, chunkClass, adoptingParser(chunkClass, chunkParser), idClass, idParser);
         this.diffRegistry.register(type, diffClass, diffParser);
     }
 
+    /**
+     * 復号したデータ片に計算方式を持たせる復号器にする。
+     * 記録装置からの読み込みにも、受信した言付けの復号にも、この復号器が使われる。
+     * @param chunkClass データ片の型
+     * @param chunkParser 元の復号器
+     * @return 計算方式を選べないデータ片なら元の復号器
+     */
+    private <C extends Chunk> BytesConvertible.Parser<? extends C> adoptingParser(final Class<C> chunkClass,
+            final BytesConvertible.Parser<? extends C> chunkParser) {
+        if (!MountainHash.Selectable.class.isAssignableFrom(chunkClass)) {
+            return chunkParser;
+        }
+        return new BytesConvertible.Parser<C>() {
+            @Override
+            public int fromStream(final InputStream input, final int maxByteSize, final List<? super C> output) throws MyRuleException, IOException {
+                final List<C> chunks = new ArrayList<>(1);
+                final int size = chunkParser.fromStream(input, maxByteSize, chunks);
+                for (final C chunk : chunks) {
+                    adopt(chunk);
+                }
+                output.addAll(chunks);
+                return size;
+            }
+        };
+    }
+
+    /**
+     * データ片のハッシュ値の計算方式を返す。
+     * @return 計算方式
+     */
+    MountainHash.Type getHashType() {
+        return this.hashType;
+    }
+
+    /**
+     * 外から来たデータ片に、この記録装置の計算方式を持たせる。
+     * @param chunk データ片
+     */
+    void adopt(final Chunk chunk) {
+        if (chunk instanceof MountainHash.Selectable) {
+            ((MountainHash.Selectable) chunk).setHashType(this.hashType);
+        }
+    }
+
+    /**
+     * 記録されているデータ片の概要を、今の計算方式で書き直す。
+     * 概要や目録には書き込んだときのハッシュ値が残っているので、計算方式を変えて起動したときに、通信を始める前に 1 度だけ呼ぶ。
+     * 追記された差分は古い方式のハッシュ値で検査してから畳む。
+     * @param before 前回までの計算方式
+     * @return 書き直したデータ片の数
+     * @throws IOException 読み書き異常
+     * @throws InterruptedException 割り込まれた場合
+     */
+    int rehash(final MountainHash.Type before) throws IOException, InterruptedException {
+        if (before == null) {
+            throw new IllegalArgumentException("Null before type.");
+        }
+        final MountainHash.Type after = this.hashType;
+        if (before == after) {
+            return 0;
+        }
+
+        int count = 0;
+        this.hashType = before;
+        try {
+            for (final Chunk.Id<?> id : this.base.getIndices(Address.ZERO, Address.MAX).keySet()) {
+                final Chunk chunk;
+                try {
+                    chunk = this.base.read(id);
+                } catch (final MyRuleException e) {
+                    LOG.log(Level.WARNING, "異常が発生しました", e);
+                    continue;
+                }
+                if (chunk instanceof MountainHash.Selectable) {
+                    ((MountainHash.Selectable) chunk).setHashType(after);
+                    this.base.forceWrite(chunk);
+                    count++;
+                }
+            }
+        } finally {
+            this.hashType = after;
+        }
+        return count;
+    }
+
     public TypeRegistry<Chunk> getChunkRegistry() {
         return this.base.getChunkRegistry();
     }
@@ -183,6 +302,25 @@ final class StorageWrapper {
         return after;
     }
 
+    /**
+     * 差分を適用した結果を書き込む。
+     * 書き込みキャッシュに載るだけなので、差分を追記する倉庫があればそこにも差分を預けておく。
+     * 呼ぶ前に lock しておくこと。
+     * @param <T> データ片の型
+     * @param before 差分を適用する前のデータ片
+     * @param after 差分を適用した後のデータ片
+     * @param diffs 適用した差分
+     * @throws IOException 書き込み異常
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private <T extends Mountain> void writePatched(final T before, final T after, final List<? extends Mountain.Dust<T>> diffs) throws IOException,
+            InterruptedException {
+        if (this.journal != null) {
+            this.journal.stage(before, after, diffs);
+        }
+        this.base.forceWrite(after);
+    }
+
     /**
      * 操作結果。
      * 操作対象が無かったら、isNotFound は true。
@@ -256,7 +394,7 @@ final class StorageWrapper {
                     if (after == null) {
                         return new Result<>(false, old);
                     } else {
-                        this.base.forceWrite(after);
+                        writePatched(old, after, diffs);
                         return new Result<>(true, after);
                     }
                 } else {
@@ -312,7 +450,7 @@ final class StorageWrapper {
                     if (after == null) {
                         return new Result<>(false, old);
                     } else {
-                        this.base.forceWrite(after);
+                        writePatched(old, after, diffs);
                         return new Result<>(true, after);
                     }
                 } else {
@@ -440,6 +578,8 @@ final class StorageWrapper {
      * X          O         書き換えた。
      * X          X         書き換えなかった。
      * </pre>
+     * 同じデータ片への適用依頼が重なった場合は、1 つのプロセスがまとめて適用して 1 回で書き込む。
+     * その場合、得られるデータ片には他の依頼者の差分も適用されている。
      * @param id 適用先のデータ片の識別子
      * @param diff 適用する差分
      * @return 適用結果
@@ -447,32 +587,245 @@ final class StorageWrapper {
      * @throws IOException 読み込み異常
      */
     <T extends Mountain> Result<T> patch(final Chunk.Id<T> id, final Mountain.Dust<T> diff) throws InterruptedException, IOException {
-        this.base.lock(id);
+        final PatchRequest<T> request = new PatchRequest<>(diff);
+        PatchGroup group;
+        while (true) {
+            group = this.patchGroups.get(id);
+            if (group == null) {
+                final PatchGroup newGroup = new PatchGroup();
+                group = this.patchGroups.putIfAbsent(id, newGroup);
+                if (group == null) {
+                    group = newGroup;
+                }
+            }
+            if (group.enter(request)) {
+                break;
+            }
+            // 使い終わった group だった。
+        }
+
+        if (request.done) {
+            // 他のプロセスがまとめて適用した。
+            return request.get();
+        }
+
+        // 適用役になった。
         try {
-            final T before;
+            final List<PatchRequest<T>> requests = group.drain();
             try {
-                before = this.base.read(id);
-            } catch (final MyRuleException e) {
-                LOG.log(Level.WARNING, "異常が発生しました", e);
-                this.base.delete(id);
-                LOG.log(Level.INFO, "壊れていた {0} を削除しました。", id);
-                ConcurrentFunctions.completePut(new SimpleRecoveryOperation(id), this.operationSink);
-                return Result.newNotFound();
+                this.base.lock(id);
+            } catch (final InterruptedException e) {
+                // 自分の依頼だけ取り下げ、他の依頼は次の適用役に任せる。
+                requests.remove(request);
+                group.restore(requests);
+                throw e;
+            }
+            try {
+                patchTogether(id, requests);
+            } finally {
+                this.base.unlock(id);
+                for (final PatchRequest<T> other : requests) {
+                    if (!other.done) {
+                        other.fail(new IllegalStateException("Not patched."));
+                    }
+                }
+            }
+        } finally {
+            if (group.leave()) {
+                this.patchGroups.remove(id, group);
+            }
+        }
+        return request.get();
+    }
+
+    /**
+     * 同じデータ片への差分の適用依頼をまとめる。
+     * 適用役は同時に 1 プロセスだけで、適用役が働いている間に来た依頼は溜めておき、
+     * 次の適用役がまとめて適用する。
+     * 依頼者はロックではなく自分の依頼の完了を待つので、
+     * 適用役を終えたプロセスがロックを取り直し続けて他の依頼が溜まらなくなることは無い。
+     */
+    private static final class PatchGroup {
+        private final List<PatchRequest<?>> pending;
+        private boolean working;
+        private boolean closed;
+
+        private PatchGroup() {
+            this.pending = new ArrayList<>();
+            this.working = false;
+            this.closed = false;
+        }
+
+        /**
+         * 依頼を預ける。
+         * 戻ったとき、依頼が完了していなければ適用役になっている。
+         * @param request 依頼
+         * @return 預けられたら true。
+         *         使い終わっていたら false
+         * @throws InterruptedException 待機中に割り込まれた場合
+         */
+        private synchronized boolean enter(final PatchRequest<?> request) throws InterruptedException {
+            if (this.closed) {
+                return false;
             }
+            this.pending.add(request);
+            try {
+                while (this.working && !request.done) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                // 既に適用役が持っていった依頼は取り下げられないので、差分は適用されるかもしれない。
+                this.pending.remove(request);
+                throw e;
+            }
+            if (!request.done) {
+                this.working = true;
+            }
+            return true;
+        }
 
-            if (before == null) {
-                return Result.newNotFound();
-            } else if (!before.patchable(diff)) {
-                return new Result<>(false, before);
-            } else {
+        private synchronized <T extends Mountain> List<PatchRequest<T>> drain() {
+            final List<PatchRequest<T>> requests = new ArrayList<>(this.pending.size());
+            for (final PatchRequest<?> request : this.pending) {
                 @SuppressWarnings("unchecked")
-                final T after = (T) before.copy();
+                final PatchRequest<T> typed = (PatchRequest<T>) request;
+                requests.add(typed);
+            }
+            this.pending.clear();
+            return requests;
+        }
+
+        private synchronized void restore(final List<? extends PatchRequest<?>> requests) {
+            this.pending.addAll(0, requests);
+        }
+
+        /**
+         * 適用役を降りる。
+         * @return 溜まっている依頼も無く、使い終わった場合は true
+         */
+        private synchronized boolean leave() {
+            this.working = false;
+            notifyAll();
+            if (this.pending.isEmpty()) {
+                this.closed = true;
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 差分の適用依頼。
+     * 結果は done を立てる前に書き込むので、done が立っていれば読んで良い。
+     * @param <T> データ片の型
+     */
+    private static final class PatchRequest<T extends Mountain> {
+        private final Mountain.Dust<T> diff;
+        private volatile boolean done;
+        private Result<T> result;
+        private Exception error;
+
+        private PatchRequest(final Mountain.Dust<T> diff) {
+            this.diff = diff;
+            this.done = false;
+            this.result = null;
+            this.error = null;
+        }
+
+        private void complete(final Result<T> value) {
+            this.result = value;
+            this.done = true;
+        }
+
+        private void fail(final Exception e) {
+            this.error = e;
+            this.done = true;
+        }
+
+        private Result<T> get() throws InterruptedException, IOException {
+            if (this.error == null) {
+                return this.result;
+            } else if (this.error instanceof IOException) {
+                throw (IOException) this.error;
+            } else if (this.error instanceof InterruptedException) {
+                throw (InterruptedException) this.error;
+            } else {
+                throw (RuntimeException) this.error;
+            }
+        }
+    }
+
+    /**
+     * 差分をまとめて適用し、1 回で書き込む。
+     * 適用できるかどうかは差分ごとに順に判定する。
+     * 呼ぶ前に lock しておくこと。
+     * @param id 適用先のデータ片の識別子
+     * @param requests 適用依頼
+     * @throws InterruptedException 割り込まれた場合
+     * @throws IOException 読み書き異常
+     */
+    private <T extends Mountain> void patchTogether(final Chunk.Id<T> id, final List<PatchRequest<T>> requests) throws InterruptedException, IOException {
+        final T before;
+        try {
+            before = this.base.read(id);
+        } catch (final MyRuleException e) {
+            LOG.log(Level.WARNING, "異常が発生しました", e);
+            this.base.delete(id);
+            LOG.log(Level.INFO, "壊れていた {0} を削除しました。", id);
+            ConcurrentFunctions.completePut(new SimpleRecoveryOperation(id), this.operationSink);
+            for (final PatchRequest<T> request : requests) {
+                request.complete(Result.<T> newNotFound());
+            }
+            return;
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            for (final PatchRequest<T> request : requests) {
+                request.fail(e);
+            }
+            throw e;
+        }
+
+        if (before == null) {
+            for (final PatchRequest<T> request : requests) {
+                request.complete(Result.<T> newNotFound());
+            }
+            return;
+        }
+
+        T after = null;
+        final boolean[] success = new boolean[requests.size()];
+        final List<Mountain.Dust<T>> diffs = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final Mountain.Dust<T> diff = requests.get(i).diff;
+            if ((after == null ? before : after).patchable(diff)) {
+                if (after == null) {
+                    @SuppressWarnings("unchecked")
+                    final T copy = (T) before.copy();
+                    after = copy;
+                }
                 after.patch(diff);
-                this.base.forceWrite(after);
-                return new Result<>(true, after);
+                diffs.add(diff);
+                success[i] = true;
             }
-        } finally {
-            this.base.unlock(id);
+        }
+
+        if (after != null) {
+            try {
+                writePatched(before, after, diffs);
+            } catch (final IOException | InterruptedException | RuntimeException e) {
+                for (final PatchRequest<T> request : requests) {
+                    request.fail(e);
+                }
+                throw e;
+            }
+            if (requests.size() > 1) {
+                LOG.log(Level.FINEST, "{0} 個の差分をまとめて {1} に適用しました。", new Object[] { diffs.size(), id });
+            }
+        }
+
+        final T current = (after == null ? before : after);
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).complete(new Result<>(success[i], current));
         }
     }
 
@@ -513,7 +866,7 @@ final class StorageWrapper {
             if (after == null) {
                 return new Result<>(false, before);
             } else {
-                this.base.forceWrite(after);
+                writePatched(before, after, diffs);
                 return new Result<>(true, after);
             }
         } finally {
@@ -779,7 +1132,7 @@ final class StorageWrapper {
                 }
                 return new CacheResult<>(false, before, accessDate);
             } else if (after.getHashValue().equals(hashValue)) {
-                this.base.forceWrite(after);
+                writePatched(before, after, diffs);
                 this.cacheLog.add(id, accessDate);
                 return new CacheResult<>(true, after, accessDate);
             } else {
@@ -1,17 +1,36 @@
 package nippon.kawauso.chiraura.closet.p2p;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.closet.Mountain;
+import nippon.kawauso.chiraura.closet.MountainHash;
 import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
 import nippon.kawauso.chiraura.storage.Storages;
 
+import org.junit.Assert;
+import org.junit.Test;
+
 /**
  * @author chirauraNoSakusha
  */
 public final class StorageWrapperTest {
 
+    private static final Logger LOG = Logger.getLogger(StorageWrapperTest.class.getName());
+
     static StorageWrapper sample(@SuppressWarnings("unused") final Random random, final BlockingQueue<Operation> operationSink) {
         final File root = new File(System.getProperty("java.io.tmpdir") + File.separator + StorageWrapperTest.class.getName() + File.separator
                 + System.nanoTime());
@@ -26,4 +45,111 @@ public final class StorageWrapperTest {
                 operationSink, cacheLogCapacity, cacheDuration);
     }
 
+    /**
+     * 同じデータ片に並列に差分を適用しても、全ての差分が 1 度ずつ適用されるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrentPatch() throws Exception {
+        final int numOfProcesses = 16;
+        final int numOfPatches = 200;
+
+        final StorageWrapper instance = sample(null, new LinkedBlockingQueue<Operation>());
+        instance.registerChunk(0, GrowingBytes.class, GrowingBytes.getParser(), GrowingBytes.Id.class, GrowingBytes.Id.getParser(),
+                GrowingBytes.Entry.class, GrowingBytes.Entry.getParser());
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+        Assert.assertTrue(instance.weakWrite(chunk));
+
+        // 全プロセスが同じ差分を 1 つずつ混ぜるので、それの適用に成功するのは 1 プロセスだけ。
+        final GrowingBytes.Entry common = GrowingBytesEntryTest.newDiff(-1);
+
+        final List<Callable<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < numOfProcesses; i++) {
+            final int id = i;
+            workers.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int numOfSuccesses = 0;
+                    for (int j = 0; j < numOfPatches; j++) {
+                        final GrowingBytes.Entry diff = (j == numOfPatches / 2 ? common : GrowingBytesEntryTest.newDiff(id * numOfPatches + j));
+                        final StorageWrapper.Result<GrowingBytes> result = instance.patch(chunk.getId(), diff);
+                        Assert.assertFalse(result.isNotFound());
+                        Assert.assertFalse(result.getChunk().patchable(diff));
+                        if (result.isSuccess()) {
+                            numOfSuccesses++;
+                        }
+                    }
+                    return numOfSuccesses;
+                }
+            });
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numOfProcesses);
+        final long start = System.nanoTime();
+        final List<Future<Integer>> futures = executor.invokeAll(workers);
+        int numOfSuccesses = 0;
+        for (final Future<Integer> future : futures) {
+            numOfSuccesses += future.get();
+        }
+        final long end = System.nanoTime();
+        executor.shutdown();
+
+        Assert.assertEquals(numOfProcesses * (numOfPatches - 1) + 1, numOfSuccesses);
+        final GrowingBytes result = instance.read(chunk.getId());
+        Assert.assertEquals(numOfSuccesses, result.getDiffsAfter(Long.MIN_VALUE).size());
+
+        LOG.log(Level.SEVERE, "{0} プロセスで 1 つのデータ片への差分適用の単位消費マイクロ秒: {1}", new Object[] { numOfProcesses,
+                String.format("%.3f", (end - start) / (1_000.0 * numOfProcesses * numOfPatches)) });
+    }
+
+    private static StorageWrapper newRehashable(final File root, final MountainHash.Type hashType) {
+        final DustJournalStorage journal = new DustJournalStorage(Storages.newBackend(Storages.Backend.FILE, root, 1024 * 1024, 8),
+                TypeRegistries.<Mountain.Dust<?>> newRegistry(), new File(root, "%%dust%%"), 1024 * 1024);
+        // 差分を適用するたびに追記されるように、キャッシュしない。
+        final StorageWrapper instance = new StorageWrapper(Storages.newInstance(journal, 0, 10_000, 10_000, 0, 0), journal,
+                new LinkedBlockingQueue<Operation>(), 1_000, 30 * Duration.SECOND, hashType);
+        instance.registerChunk(0, GrowingBytes.class, GrowingBytes.getParser(), GrowingBytes.Id.class, GrowingBytes.Id.getParser(),
+                GrowingBytes.Entry.class, GrowingBytes.Entry.getParser());
+        return instance;
+    }
+
+    /**
+     * 計算方式を変えて開き直したときに、追記された差分も含めて概要を書き直せるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRehash() throws Exception {
+        final File root = new File(System.getProperty("java.io.tmpdir") + File.separator + StorageWrapperTest.class.getName() + File.separator
+                + System.nanoTime());
+        final GrowingBytes chunk = new GrowingBytes("test", 0);
+
+        final HashValue serialHash;
+        final StorageWrapper serial = newRehashable(root, MountainHash.Type.SERIAL);
+        try {
+            Assert.assertTrue(serial.weakWrite(chunk));
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(serial.patch(chunk.getId(), GrowingBytesEntryTest.newDiff(i)).isSuccess());
+            }
+            serialHash = serial.getIndex(chunk.getId()).getHashValue();
+        } finally {
+            serial.close();
+        }
+
+        final StorageWrapper instance = newRehashable(root, MountainHash.Type.INCREMENTAL);
+        try {
+            // 書き直すまでは古い方式のハッシュ値が残っている。
+            Assert.assertEquals(serialHash, instance.getIndex(chunk.getId()).getHashValue());
+
+            Assert.assertEquals(1, instance.rehash(MountainHash.Type.SERIAL));
+            final GrowingBytes result = instance.read(chunk.getId());
+            Assert.assertEquals(MountainHash.Type.INCREMENTAL, result.getHashType());
+            Assert.assertEquals(10, result.getDiffsAfter(Long.MIN_VALUE).size());
+            Assert.assertNotEquals(serialHash, result.getHashValue());
+            Assert.assertEquals(result.getHashValue(), instance.getIndex(chunk.getId()).getHashValue());
+            Assert.assertEquals(result.getHashValue(), instance.getIndices(Address.ZERO, Address.MAX).iterator().next().getHashValue());
+        } finally {
+            instance.close();
+        }
+    }
+
 }
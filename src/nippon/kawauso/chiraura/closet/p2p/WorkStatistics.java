@@ -0,0 +1,103 @@
+package nippon.kawauso.chiraura.closet.p2p;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nippon.kawauso.chiraura.lib.concurrent.LatencyHistogram;
+
+/**
+ * 雑用係に回す操作の統計。
+ * 並列対応。
+ * @author chirauraNoSakusha
+ */
+final class WorkStatistics {
+
+    private final AtomicLong numOfAdded;
+    private final AtomicLong numOfDuplicates;
+    private final AtomicLong numOfTaken;
+    private final AtomicIntegerArray numOfPending;
+    private final LatencyHistogram waitLatency;
+
+    WorkStatistics() {
+        this.numOfAdded = new AtomicLong(0);
+        this.numOfDuplicates = new AtomicLong(0);
+        this.numOfTaken = new AtomicLong(0);
+        this.numOfPending = new AtomicIntegerArray(OperationQueue.Priority.values().length);
+        this.waitLatency = new LatencyHistogram();
+    }
+
+    void added(final OperationQueue.Priority priority) {
+        this.numOfAdded.incrementAndGet();
+        this.numOfPending.incrementAndGet(priority.ordinal());
+    }
+
+    void duplicated() {
+        this.numOfDuplicates.incrementAndGet();
+    }
+
+    /**
+     * 取り出し 1 回分を記録する。
+     * @param priority 取り出した操作の優先度
+     * @param wait 待たせた時間 (ナノ秒)
+     */
+    void taken(final OperationQueue.Priority priority, final long wait) {
+        this.numOfTaken.incrementAndGet();
+        this.numOfPending.decrementAndGet(priority.ordinal());
+        this.waitLatency.add(wait);
+    }
+
+    long getNumOfAdded() {
+        return this.numOfAdded.get();
+    }
+
+    /**
+     * @return 既に待っていたので捨てた操作の数
+     */
+    long getNumOfDuplicates() {
+        return this.numOfDuplicates.get();
+    }
+
+    long getNumOfTaken() {
+        return this.numOfTaken.get();
+    }
+
+    /**
+     * @return 待っている操作の数
+     */
+    int getNumOfPending() {
+        int sum = 0;
+        for (int i = 0; i < this.numOfPending.length(); i++) {
+            sum += this.numOfPending.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * @param priority 優先度
+     * @return その優先度で待っている操作の数
+     */
+    int getNumOfPending(final OperationQueue.Priority priority) {
+        return this.numOfPending.get(priority.ordinal());
+    }
+
+    /**
+     * @return 取り出されるまでの待ち時間の度数分布
+     */
+    LatencyHistogram getWaitLatency() {
+        return this.waitLatency;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buff = (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[added=").append(getNumOfAdded())
+                .append(", duplicates=").append(getNumOfDuplicates())
+                .append(", taken=").append(getNumOfTaken());
+        for (final OperationQueue.Priority priority : OperationQueue.Priority.values()) {
+            buff.append(", pending").append(priority).append('=').append(getNumOfPending(priority));
+        }
+        return buff.append(", wait=").append(this.waitLatency)
+                .append(']').toString();
+    }
+
+}
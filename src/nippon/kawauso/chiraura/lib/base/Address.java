@@ -12,7 +12,6 @@ import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.Hexadecimal;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
-import nippon.kawauso.chiraura.lib.math.BigIntegerFunctions;
 
 /**
  * 論理位置の指定子。
@@ -23,32 +22,35 @@ public final class Address implements Comparable<Address>, BytesConvertible {
     /**
      * ビット数。
      */
-    public static final int SIZE = 160; // SHA1 に合わせた。
+    public static final int SIZE = Uint160Functions.SIZE; // SHA1 に合わせた。
 
     /**
      * バイト数。
      */
-    static final int BYTE_SIZE = (SIZE + Byte.SIZE - 1) / Byte.SIZE;
-
-    // 法。
-    private static final BigInteger MODULUS = BigInteger.ZERO.setBit(SIZE);
+    static final int BYTE_SIZE = Uint160Functions.BYTE_SIZE;
 
     /**
      * 論理位置の原点。
      */
-    public static final Address ZERO = new Address(BigInteger.ZERO);
+    public static final Address ZERO = new Address(0, 0L, 0L);
 
     /**
      * 論理位置の最大値。
      */
-    public static final Address MAX = new Address(BigInteger.ONE.shiftLeft(SIZE).subtract(BigInteger.ONE));
+    public static final Address MAX = new Address(-1, -1L, -1L);
 
     /**
      * 文字列にするときに省略しない長さ。
      */
     private static final int STRING_THRESHOLD_BYTE_LENGTH = 4;
 
-    private final BigInteger value;
+    /*
+     * 2^SIZE を法とする値を、上位 32 ビット、中位 64 ビット、下位 64 ビットに分けて符号無しで持つ。
+     * 経路表の検索などで頻繁に計算するので、BigInteger は使わない。
+     */
+    private final int high;
+    private final long middle;
+    private final long low;
 
     /**
      * BigInteger から作成する。
@@ -61,37 +63,66 @@ public final class Address implements Comparable<Address>, BytesConvertible {
         } else if (value.bitLength() > bitSize) {
             throw new IllegalArgumentException("Too large value ( " + value + " ) over bit size ( " + bitSize + " ).");
         }
+        final BigInteger normalized;
         if (bitSize == SIZE) {
-            this.value = value;
+            normalized = value;
         } else if (bitSize < SIZE) {
-            this.value = value.shiftLeft(SIZE - bitSize);
+            normalized = value.shiftLeft(SIZE - bitSize);
         } else {
-            this.value = value.shiftRight(bitSize - SIZE);
+            normalized = value.shiftRight(bitSize - SIZE);
         }
+        this.high = Uint160Functions.highOf(normalized);
+        this.middle = Uint160Functions.middleOf(normalized);
+        this.low = Uint160Functions.lowOf(normalized);
     }
 
-    private Address(final BigInteger value) {
-        this.value = value.mod(MODULUS);
+    private Address(final int high, final long middle, final long low) {
+        this.high = high;
+        this.middle = middle;
+        this.low = low;
     }
 
     private Address(final byte[] bytes) {
         if (bytes.length != BYTE_SIZE) {
             throw new IllegalArgumentException("Invalid bytes length ( " + bytes.length + " ).");
         }
-        final byte[] buff;
-        if (bytes[0] >= 0) {
-            // 先頭ビットは 0。
-            buff = bytes;
+        this.high = Uint160Functions.highOf(bytes);
+        this.middle = Uint160Functions.middleOf(bytes);
+        this.low = Uint160Functions.lowOf(bytes);
+    }
+
+    /**
+     * 2^SIZE を法として足す。
+     * @return 和
+     */
+    private Address add(final int otherHigh, final long otherMiddle, final long otherLow) {
+        final long sumLow = this.low + otherLow;
+        final int carryLow = (Uint160Functions.compareUnsigned(sumLow, this.low) < 0 ? 1 : 0);
+        final long sumMiddle = this.middle + otherMiddle + carryLow;
+        final int carryMiddle;
+        if (carryLow == 0) {
+            carryMiddle = (Uint160Functions.compareUnsigned(sumMiddle, this.middle) < 0 ? 1 : 0);
         } else {
-            // 先頭ビットは 1。
-            /*
-             * 先頭ビットが 1 だと負の BigInteger になってしまうので、
-             * 先頭に 0 のバイトを追加する。
-             */
-            buff = new byte[BYTE_SIZE + 1];
-            System.arraycopy(bytes, 0, buff, 1, BYTE_SIZE);
+            carryMiddle = (Uint160Functions.compareUnsigned(sumMiddle, this.middle) <= 0 ? 1 : 0);
         }
-        this.value = new BigInteger(buff);
+        return new Address(this.high + otherHigh + carryMiddle, sumMiddle, sumLow);
+    }
+
+    /**
+     * 2^SIZE を法として引く。
+     * @return 差
+     */
+    private Address subtract(final int otherHigh, final long otherMiddle, final long otherLow) {
+        final long diffLow = this.low - otherLow;
+        final int borrowLow = (Uint160Functions.compareUnsigned(this.low, otherLow) < 0 ? 1 : 0);
+        final long diffMiddle = this.middle - otherMiddle - borrowLow;
+        final int borrowMiddle;
+        if (borrowLow == 0) {
+            borrowMiddle = (Uint160Functions.compareUnsigned(this.middle, otherMiddle) < 0 ? 1 : 0);
+        } else {
+            borrowMiddle = (Uint160Functions.compareUnsigned(this.middle, otherMiddle) <= 0 ? 1 : 0);
+        }
+        return new Address(this.high - otherHigh - borrowMiddle, diffMiddle, diffLow);
     }
 
     /**
@@ -100,7 +131,18 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return 2^exponent を加えた値
      */
     public Address addPowerOfTwo(final int exponent) {
-        return new Address(this.value.add(BigInteger.ZERO.setBit(exponent)));
+        if (exponent < 0) {
+            throw new ArithmeticException("Negative exponent ( " + exponent + " ).");
+        } else if (exponent < Long.SIZE) {
+            return add(0, 0L, 1L << exponent);
+        } else if (exponent < 2 * Long.SIZE) {
+            return add(0, 1L << (exponent - Long.SIZE), 0L);
+        } else if (exponent < SIZE) {
+            return add(1 << (exponent - 2 * Long.SIZE), 0L, 0L);
+        } else {
+            // 2^SIZE を法とするので変わらない。
+            return this;
+        }
     }
 
     /**
@@ -108,7 +150,7 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return 1 引いた値
      */
     public Address subtractOne() {
-        return new Address(this.value.subtract(BigInteger.ONE));
+        return subtract(0, 0L, 1L);
     }
 
     /**
@@ -117,7 +159,7 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return 終点までの距離
      */
     public Address distanceTo(final Address destination) {
-        return new Address(destination.value.subtract(this.value));
+        return destination.subtract(this.high, this.middle, this.low);
     }
 
     /**
@@ -126,7 +168,26 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return 商
      */
     public Address divide(final int divisor) {
-        return new Address(this.value.divide(BigInteger.valueOf(divisor)));
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero.");
+        }
+        // 32 ビットずつ筆算する。余りは除数未満なので 32 ビット左に送っても溢れない。
+        final long d = Math.abs((long) divisor);
+        long remainder = 0;
+        final long[] words = new long[] { Uint160Functions.toUnsignedLong(this.high), this.middle >>> Integer.SIZE,
+                Uint160Functions.toUnsignedLong((int) this.middle), this.low >>> Integer.SIZE, Uint160Functions.toUnsignedLong((int) this.low) };
+        for (int i = 0; i < words.length; i++) {
+            final long current = (remainder << Integer.SIZE) | words[i];
+            words[i] = current / d;
+            remainder = current % d;
+        }
+        final Address quotient = new Address((int) words[0], (words[1] << Integer.SIZE) | words[2], (words[3] << Integer.SIZE) | words[4]);
+        if (divisor < 0) {
+            // 商は負になるので 2^SIZE を足す。
+            return ZERO.subtract(quotient.high, quotient.middle, quotient.low);
+        } else {
+            return quotient;
+        }
     }
 
     /**
@@ -137,7 +198,13 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      *         立っているビットがない場合は -1
      */
     public int highestSetBit() {
-        return BigIntegerFunctions.highestSetBit(this.value);
+        if (this.high != 0) {
+            return SIZE - 1 - Integer.numberOfLeadingZeros(this.high);
+        } else if (this.middle != 0) {
+            return 2 * Long.SIZE - 1 - Long.numberOfLeadingZeros(this.middle);
+        } else {
+            return Long.SIZE - 1 - Long.numberOfLeadingZeros(this.low);
+        }
     }
 
     /**
@@ -145,22 +212,7 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return 立っているビットの数
      */
     public int bitCount() {
-        return this.value.bitCount();
-    }
-
-    private static final byte[] REVERSED_BYTE;
-
-    static {
-        REVERSED_BYTE = new byte[1 << Byte.SIZE];
-        for (int i = 0; i < REVERSED_BYTE.length; i++) {
-            byte b = 0;
-            for (int j = 0; j < Byte.SIZE; j++) {
-                if ((i & (1 << j)) != 0) {
-                    b |= 1 << (Byte.SIZE - 1 - j);
-                }
-            }
-            REVERSED_BYTE[i] = b;
-        }
+        return Integer.bitCount(this.high) + Long.bitCount(this.middle) + Long.bitCount(this.low);
     }
 
     /**
@@ -169,11 +221,8 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return ビットを逆順に並べた値を足した論理位置
      */
     public Address addReverseBits(final int v) {
-        final byte[] buff = new byte[BYTE_SIZE];
-        for (int i = 0, n = Math.min((Integer.SIZE + Byte.SIZE - 1) / Byte.SIZE, BYTE_SIZE); i < n; i++) {
-            buff[i] = REVERSED_BYTE[(v >> (Byte.SIZE * i)) & ((1 << Byte.SIZE) - 1)];
-        }
-        return new Address(this.toBigInteger().add(new BigInteger(buff)));
+        // 逆順にすると、v の最下位ビットが論理位置の最上位ビットになる。
+        return add(Integer.reverse(v), 0L, 0L);
     }
 
     @Override
@@ -183,16 +232,7 @@ public final class Address implements Comparable<Address>, BytesConvertible {
 
     @Override
     public int toStream(final OutputStream output) throws IOException {
-        final byte[] buff = this.value.toByteArray();
-        if (buff.length < BYTE_SIZE) {
-            output.write(new byte[BYTE_SIZE - buff.length]);
-            output.write(buff);
-        } else if (buff.length == BYTE_SIZE + 1) {
-            output.write(buff, 1, BYTE_SIZE);
-        } else {
-            output.write(buff);
-        }
-        return BYTE_SIZE;
+        return Uint160Functions.toStream(this.high, this.middle, this.low, output);
     }
 
     /**
@@ -220,17 +260,17 @@ public final class Address implements Comparable<Address>, BytesConvertible {
             return false;
         }
         final Address other = (Address) obj;
-        return this.value.equals(other.value);
+        return this.high == other.high && this.middle == other.middle && this.low == other.low;
     }
 
     @Override
     public int hashCode() {
-        return this.value.hashCode();
+        return Uint160Functions.hashCode(this.high, this.middle, this.low);
     }
 
     @Override
     public int compareTo(final Address o) {
-        return this.value.compareTo(o.value);
+        return Uint160Functions.compare(this.high, this.middle, this.low, o.high, o.middle, o.low);
     }
 
     @Override
@@ -271,7 +311,7 @@ public final class Address implements Comparable<Address>, BytesConvertible {
      * @return この論理位置を表す BigInteger
      */
     public BigInteger toBigInteger() {
-        return this.value;
+        return Uint160Functions.toBigInteger(this.high, this.middle, this.low);
     }
 
 }
\ No newline at end of file
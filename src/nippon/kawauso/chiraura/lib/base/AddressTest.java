@@ -4,16 +4,26 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
 import nippon.kawauso.chiraura.lib.test.RandomBigInteger;
 
+import org.junit.Assert;
+import org.junit.Test;
+
 /**
  * @author chirauraNoSakusha
  */
 public final class AddressTest extends BytesConvertibleTest<Address> {
 
+    private static final Logger LOG = Logger.getLogger(AddressTest.class.getName());
+
+    private static final BigInteger MODULUS = BigInteger.ZERO.setBit(Address.SIZE);
+
     /**
      * ランダムな論理位置を生成する。
      * @param random 乱数生成器
@@ -55,4 +65,120 @@ public final class AddressTest extends BytesConvertibleTest<Address> {
         return 1_000_000;
     }
 
+    private static Address toAddress(final BigInteger value) {
+        return new Address(value.mod(MODULUS), Address.SIZE);
+    }
+
+    /**
+     * 演算が BigInteger での計算と一致するかどうか。
+     */
+    @Test
+    public void testArithmetic() {
+        final Random random = new Random(1L);
+        final List<Address> samples = new ArrayList<>();
+        samples.add(Address.ZERO);
+        samples.add(Address.MAX);
+        samples.add(Address.ZERO.addPowerOfTwo(Long.SIZE));
+        samples.add(Address.ZERO.addPowerOfTwo(2 * Long.SIZE).subtractOne());
+        for (int i = 0; i < 10_000; i++) {
+            samples.add(newRandomInstance(random));
+        }
+
+        for (int i = 0; i < samples.size(); i++) {
+            final Address a = samples.get(i);
+            final Address b = samples.get((i * 7 + 1) % samples.size());
+            final BigInteger x = a.toBigInteger();
+            final BigInteger y = b.toBigInteger();
+
+            Assert.assertEquals(a, toAddress(x));
+            Assert.assertEquals(toAddress(y.subtract(x)), a.distanceTo(b));
+            Assert.assertEquals(Integer.signum(x.compareTo(y)), Integer.signum(a.compareTo(b)));
+            Assert.assertEquals(toAddress(x.subtract(BigInteger.ONE)), a.subtractOne());
+            Assert.assertEquals(x.bitCount(), a.bitCount());
+            Assert.assertEquals(x.bitLength() - 1, a.highestSetBit());
+
+            final int exponent = random.nextInt(Address.SIZE);
+            Assert.assertEquals(toAddress(x.add(BigInteger.ZERO.setBit(exponent))), a.addPowerOfTwo(exponent));
+
+            final int divisor = random.nextInt();
+            if (divisor != 0) {
+                Assert.assertEquals(toAddress(x.divide(BigInteger.valueOf(divisor))), a.divide(divisor));
+            }
+
+            final int v = random.nextInt();
+            Assert.assertEquals(toAddress(x.add(BigInteger.valueOf(Integer.reverse(v) & 0xffff_ffffL).shiftLeft(Address.SIZE - Integer.SIZE))),
+                    a.addReverseBits(v));
+
+            // 直列化形式は BigInteger のときと同じ。
+            final byte[] bytes = BytesConversion.toBytes(a);
+            Assert.assertEquals(Address.BYTE_SIZE, bytes.length);
+            Assert.assertEquals(x, new BigInteger(1, bytes));
+        }
+        Assert.assertEquals(Address.ZERO, Address.MAX.addPowerOfTwo(0));
+        Assert.assertEquals(Address.MAX, Address.ZERO.subtractOne());
+        Assert.assertEquals(Address.MAX, Address.MAX.addPowerOfTwo(Address.SIZE));
+    }
+
+    /**
+     * 経路表の検索で多用する演算の速さを BigInteger と比べる。
+     */
+    @Test
+    public void testArithmeticPerformance() {
+        final int numOfSamples = 1_000;
+        final int numOfLoops = 1_000;
+        final Random random = new Random(1L);
+        final Address[] addresses = new Address[numOfSamples];
+        final BigInteger[] values = new BigInteger[numOfSamples];
+        for (int i = 0; i < numOfSamples; i++) {
+            addresses[i] = newRandomInstance(random);
+            values[i] = addresses[i].toBigInteger();
+        }
+
+        for (int k = 0; k < 3; k++) {
+            // 距離を求めて比べる。
+            long start = System.nanoTime();
+            int count = 0;
+            for (int j = 0; j < numOfLoops; j++) {
+                final Address base = addresses[j % numOfSamples];
+                final Address limit = base.distanceTo(addresses[(j + 1) % numOfSamples]);
+                for (int i = 0; i < numOfSamples; i++) {
+                    if (base.distanceTo(addresses[i]).compareTo(limit) <= 0) {
+                        count++;
+                    }
+                }
+            }
+            final long fixedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int count2 = 0;
+            for (int j = 0; j < numOfLoops; j++) {
+                final BigInteger base = values[j % numOfSamples];
+                final BigInteger limit = values[(j + 1) % numOfSamples].subtract(base).mod(MODULUS);
+                for (int i = 0; i < numOfSamples; i++) {
+                    if (values[i].subtract(base).mod(MODULUS).compareTo(limit) <= 0) {
+                        count2++;
+                    }
+                }
+            }
+            final long bigTime = System.nanoTime() - start;
+            Assert.assertEquals(count2, count);
+
+            // 直列化する。
+            start = System.nanoTime();
+            long size = 0;
+            for (int j = 0; j < numOfLoops; j++) {
+                for (int i = 0; i < numOfSamples; i++) {
+                    size += BytesConversion.toBytes(addresses[i]).length;
+                }
+            }
+            final long serializeTime = System.nanoTime() - start;
+            Assert.assertEquals((long) numOfLoops * numOfSamples * Address.BYTE_SIZE, size);
+
+            final double numOfOperations = (double) numOfLoops * numOfSamples;
+            LOG.log(Level.SEVERE, "距離比較単位消費ナノ秒: {0} (BigInteger: {1}) 直列化単位消費ナノ秒: {2}", new Object[] {
+                    String.format("%.1f", fixedTime / numOfOperations), String.format("%.1f", bigTime / numOfOperations),
+                    String.format("%.1f", serializeTime / numOfOperations) });
+        }
+    }
+
 }
@@ -49,12 +49,20 @@ public final class HashValue implements Comparable<HashValue>, BytesConvertible
      * ビット数。
      */
     public static final int SIZE = BYTE_SIZE * Byte.SIZE;
+    static {
+        if (BYTE_SIZE != Uint160Functions.BYTE_SIZE) {
+            // 来ない。
+            throw new RuntimeException("Digest length ( " + BYTE_SIZE + " ) differs " + Uint160Functions.BYTE_SIZE + ".");
+        }
+    }
 
     /*
-     * 2^SIZE 未満の正の BigInteger で表す。
+     * 2^SIZE 未満の符号無し整数を、上位 32 ビット、中位 64 ビット、下位 64 ビットに分けて持つ。
      */
 
-    private final BigInteger value;
+    private final int high;
+    private final long middle;
+    private final long low;
 
     /**
      * 正の BigInteger から作成する。
@@ -67,33 +75,26 @@ public final class HashValue implements Comparable<HashValue>, BytesConvertible
         } else if (value.bitLength() > bitSize) {
             throw new IllegalArgumentException("Too large value ( " + value + " ) over bit size ( " + bitSize + " ).");
         }
+        final BigInteger normalized;
         if (bitSize == SIZE) {
-            this.value = value;
+            normalized = value;
         } else if (bitSize < SIZE) {
-            this.value = value.shiftLeft(SIZE - bitSize);
+            normalized = value.shiftLeft(SIZE - bitSize);
         } else {
-            this.value = value.shiftRight(bitSize - SIZE);
+            normalized = value.shiftRight(bitSize - SIZE);
         }
+        this.high = Uint160Functions.highOf(normalized);
+        this.middle = Uint160Functions.middleOf(normalized);
+        this.low = Uint160Functions.lowOf(normalized);
     }
 
     private HashValue(final byte[] bytes) {
         if (bytes.length != BYTE_SIZE) {
             throw new IllegalArgumentException("Invalid bytes length ( " + bytes.length + " ).");
         }
-        final byte[] buff;
-        if (bytes[0] >= 0) {
-            // 先頭ビットは 0。
-            buff = bytes;
-        } else {
-            // 先頭ビットは 1。
-            /*
-             * 先頭ビットが 1 だと負の BigInteger になってしまうので、
-             * 先頭に 0 のバイトを追加する。
-             */
-            buff = new byte[BYTE_SIZE + 1];
-            System.arraycopy(bytes, 0, buff, 1, BYTE_SIZE);
-        }
-        this.value = new BigInteger(buff);
+        this.high = Uint160Functions.highOf(bytes);
+        this.middle = Uint160Functions.middleOf(bytes);
+        this.low = Uint160Functions.lowOf(bytes);
     }
 
     private static final ThreadLocal<MessageDigest> CALCULATOR = new ThreadLocal<MessageDigest>() {
@@ -186,7 +187,7 @@ public final class HashValue implements Comparable<HashValue>, BytesConvertible
      * @return 対応する BigInteger
      */
     public BigInteger toBigInteger() {
-        return this.value;
+        return Uint160Functions.toBigInteger(this.high, this.middle, this.low);
     }
 
     @Override
@@ -253,21 +254,7 @@ public final class HashValue implements Comparable<HashValue>, BytesConvertible
 
     @Override
     public int toStream(final OutputStream output) throws IOException {
-        final byte[] buff = this.value.toByteArray();
-        if (buff.length < BYTE_SIZE) {
-            output.write(new byte[BYTE_SIZE - buff.length]);
-            output.write(buff);
-        } else if (buff.length > BYTE_SIZE) {
-            /*
-             * BigInteger をバイト列にする場合、負数との混同を防ぐため、
-             * 先頭に 0 のバイトが追加されることがある。
-             * よって、buff.length は BYTE_SIZE + 1 になることがある。
-             */
-            output.write(buff, buff.length - BYTE_SIZE, BYTE_SIZE);
-        } else {
-            output.write(buff);
-        }
-        return BYTE_SIZE;
+        return Uint160Functions.toStream(this.high, this.middle, this.low, output);
     }
 
     /**
@@ -295,17 +282,17 @@ public final class HashValue implements Comparable<HashValue>, BytesConvertible
             return false;
         }
         final HashValue other = (HashValue) obj;
-        return this.value.equals(other.value);
+        return this.high == other.high && this.middle == other.middle && this.low == other.low;
     }
 
     @Override
     public int hashCode() {
-        return this.value.hashCode();
+        return Uint160Functions.hashCode(this.high, this.middle, this.low);
     }
 
     @Override
     public int compareTo(final HashValue o) {
-        return this.value.compareTo(o.value);
+        return Uint160Functions.compare(this.high, this.middle, this.low, o.high, o.middle, o.low);
     }
 
 }
@@ -0,0 +1,169 @@
+package nippon.kawauso.chiraura.lib.base;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+
+/**
+ * 160 ビットの符号無し整数を、上位 32 ビットの int と中位、下位 64 ビットずつの long で表したときの関数群。
+ * @author chirauraNoSakusha
+ */
+final class Uint160Functions {
+
+    /**
+     * ビット数。
+     */
+    static final int SIZE = Integer.SIZE + 2 * Long.SIZE;
+
+    /**
+     * バイト数。
+     */
+    static final int BYTE_SIZE = SIZE / Byte.SIZE;
+
+    private static final int HIGH_BYTE_SIZE = Integer.SIZE / Byte.SIZE;
+    private static final int LONG_BYTE_SIZE = Long.SIZE / Byte.SIZE;
+
+    private static final long INT_MASK = 0xffff_ffffL;
+
+    // 書き込み用の使い回すバッファ。
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BYTE_SIZE];
+        }
+    };
+
+    // インスタンス化防止。
+    private Uint160Functions() {}
+
+    /**
+     * 符号無しとして比べる。
+     * @param a 比べる値
+     * @param b 比べる値
+     * @return a が小さければ負、等しければ 0、大きければ正
+     */
+    static int compareUnsigned(final long a, final long b) {
+        return Long.compare(a + Long.MIN_VALUE, b + Long.MIN_VALUE);
+    }
+
+    /**
+     * 符号無しとして比べる。
+     * @param a 比べる値
+     * @param b 比べる値
+     * @return a が小さければ負、等しければ 0、大きければ正
+     */
+    static int compareUnsigned(final int a, final int b) {
+        return Integer.compare(a + Integer.MIN_VALUE, b + Integer.MIN_VALUE);
+    }
+
+    /**
+     * 比べる。
+     * @return 1 つ目が小さければ負、等しければ 0、大きければ正
+     */
+    static int compare(final int high1, final long middle1, final long low1, final int high2, final long middle2, final long low2) {
+        if (high1 != high2) {
+            return compareUnsigned(high1, high2);
+        } else if (middle1 != middle2) {
+            return compareUnsigned(middle1, middle2);
+        } else {
+            return compareUnsigned(low1, low2);
+        }
+    }
+
+    static int hashCode(final int high, final long middle, final long low) {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + high;
+        result = prime * result + (int) (middle ^ (middle >>> 32));
+        result = prime * result + (int) (low ^ (low >>> 32));
+        return result;
+    }
+
+    /*
+     * バイト列はビッグエンディアンで BYTE_SIZE バイト。
+     */
+
+    static int highOf(final byte[] bytes) {
+        int value = 0;
+        for (int i = 0; i < HIGH_BYTE_SIZE; i++) {
+            value = (value << Byte.SIZE) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static long longOf(final byte[] bytes, final int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + LONG_BYTE_SIZE; i++) {
+            value = (value << Byte.SIZE) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    static long middleOf(final byte[] bytes) {
+        return longOf(bytes, HIGH_BYTE_SIZE);
+    }
+
+    static long lowOf(final byte[] bytes) {
+        return longOf(bytes, HIGH_BYTE_SIZE + LONG_BYTE_SIZE);
+    }
+
+    private static void putLong(final long value, final byte[] buff, final int offset) {
+        for (int i = offset + LONG_BYTE_SIZE - 1; i >= offset; i--) {
+            buff[i] = (byte) (value >>> (Byte.SIZE * (offset + LONG_BYTE_SIZE - 1 - i)));
+        }
+    }
+
+    static void toBytes(final int high, final long middle, final long low, final byte[] buff) {
+        for (int i = HIGH_BYTE_SIZE - 1; i >= 0; i--) {
+            buff[i] = (byte) (high >>> (Byte.SIZE * (HIGH_BYTE_SIZE - 1 - i)));
+        }
+        putLong(middle, buff, HIGH_BYTE_SIZE);
+        putLong(low, buff, HIGH_BYTE_SIZE + LONG_BYTE_SIZE);
+    }
+
+    /**
+     * バイト列にして書き込む。
+     * バッファを使い回すので、書き込むたびに配列を作らない。
+     * @param output 書き込み先
+     * @return 書き込んだバイト数
+     * @throws IOException 書き込み異常
+     */
+    static int toStream(final int high, final long middle, final long low, final OutputStream output) throws IOException {
+        final byte[] buff = BUFFER.get();
+        toBytes(high, middle, low, buff);
+        output.write(buff);
+        return BYTE_SIZE;
+    }
+
+    /*
+     * BigInteger は 0 以上 2^SIZE 未満であること。
+     */
+
+    static int highOf(final BigInteger value) {
+        return value.shiftRight(2 * Long.SIZE).intValue();
+    }
+
+    static long middleOf(final BigInteger value) {
+        return value.shiftRight(Long.SIZE).longValue();
+    }
+
+    static long lowOf(final BigInteger value) {
+        return value.longValue();
+    }
+
+    static BigInteger toBigInteger(final int high, final long middle, final long low) {
+        final byte[] buff = new byte[BYTE_SIZE];
+        toBytes(high, middle, low, buff);
+        return new BigInteger(1, buff);
+    }
+
+    /**
+     * int を符号無しとして long にする。
+     * @param value 値
+     * @return 0 以上 2^32 未満の値
+     */
+    static long toUnsignedLong(final int value) {
+        return value & INT_MASK;
+    }
+
+}
@@ -0,0 +1,307 @@
+package nippon.kawauso.chiraura.lib.concurrent;
+
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * スレッド数と待ち行列の長さを制限した、名前付きの実行機。
+ * 溢れた処理は RejectedExecutionException で断るので、呼び出し側で混雑時の振る舞いを決めること。
+ * 待ち行列の長さ、実行中の数、断った数、待ち時間と実行時間の度数分布を記録する。
+ * 優先度付きの待ち行列を持つものでは、PrioritizedTask を優先度順に実行し、優先度ごとの待ち時間も記録する。
+ * @author chirauraNoSakusha
+ */
+public final class BoundedExecutor extends ThreadPoolExecutor {
+
+    // 暇なスレッドを終わらせるまでの時間 (ミリ秒)。
+    private static final long KEEP_ALIVE_TIME = 60_000L;
+
+    private static final class RejectionCounter implements RejectedExecutionHandler {
+        private final AtomicLong numOfRejections = new AtomicLong(0);
+
+        @Override
+        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+            this.numOfRejections.incrementAndGet();
+            throw new RejectedExecutionException("Saturated executor ( " + ((BoundedExecutor) executor).name + " ).");
+        }
+    }
+
+    /**
+     * 待ち始めた時刻を覚えておく包み。
+     * 優先度順、同じ優先度なら入れた順に並ぶ。
+     */
+    private final class TimedTask implements Runnable, Comparable<TimedTask> {
+        private final Runnable task;
+        private final int priority;
+        private final long serial;
+        private final long queued;
+
+        private TimedTask(final Runnable task) {
+            this.task = task;
+            // 優先度の無いものは一番後に回し、押し出さない。
+            this.priority = (task instanceof PrioritizedTask ? ((PrioritizedTask) task).getPriority() : Integer.MAX_VALUE);
+            this.serial = BoundedExecutor.this.serialGenerator.getAndIncrement();
+            this.queued = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            BoundedExecutor.this.waitLatency.add(start - this.queued);
+            if (this.task instanceof PrioritizedTask) {
+                getWaitLatency(this.priority).add(start - this.queued);
+            }
+            try {
+                this.task.run();
+            } finally {
+                BoundedExecutor.this.runLatency.add(System.nanoTime() - start);
+            }
+        }
+
+        private boolean isDroppable() {
+            return this.task instanceof PrioritizedTask;
+        }
+
+        private void drop() {
+            BoundedExecutor.this.numOfDisplaced.incrementAndGet();
+            ((PrioritizedTask) this.task).dropped();
+        }
+
+        @Override
+        public int compareTo(final TimedTask other) {
+            if (this.priority != other.priority) {
+                return Integer.compare(this.priority, other.priority);
+            }
+            return Long.compare(this.serial, other.serial);
+        }
+    }
+
+    /**
+     * 長さを制限した優先度付きの待ち行列。
+     * 一杯のときは、入れようとしたものより優先度の低いもののうち一番後回しのものを押し出す。
+     */
+    private static final class PriorityTaskQueue extends PriorityBlockingQueue<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private PriorityTaskQueue(final int capacity) {
+            super(Math.min(capacity, 11));
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(final Runnable task) {
+            final TimedTask timedTask = (TimedTask) task;
+            TimedTask displaced = null;
+            synchronized (this) {
+                if (size() < this.capacity) {
+                    return super.offer(task);
+                }
+                for (final Runnable element : this) {
+                    final TimedTask candidate = (TimedTask) element;
+                    if (candidate.isDroppable() && candidate.priority > timedTask.priority
+                            && (displaced == null || candidate.compareTo(displaced) > 0)) {
+                        displaced = candidate;
+                    }
+                }
+                if (displaced == null) {
+                    return false;
+                } else if (!remove(displaced)) {
+                    // 丁度取り出されたので空きができた。
+                    displaced = null;
+                }
+                super.offer(task);
+            }
+            if (displaced != null) {
+                displaced.drop();
+            }
+            return true;
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Math.max(0, this.capacity - size());
+        }
+    }
+
+    private final String name;
+    private final RejectionCounter rejectionCounter;
+    private final LatencyHistogram waitLatency;
+    private final LatencyHistogram runLatency;
+    private final AtomicLong serialGenerator;
+    private final AtomicLong numOfDisplaced;
+    private final ConcurrentMap<Integer, LatencyHistogram> priorityWaitLatencies;
+
+    private BoundedExecutor(final String name, final int corePoolSize, final int maximumPoolSize, final BlockingQueue<Runnable> queue,
+            final RejectionCounter rejectionCounter) {
+        super(corePoolSize, maximumPoolSize, KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS, queue, newThreadFactory(name), rejectionCounter);
+        this.name = name;
+        this.rejectionCounter = rejectionCounter;
+        this.waitLatency = new LatencyHistogram();
+        this.runLatency = new LatencyHistogram();
+        this.serialGenerator = new AtomicLong(0);
+        this.numOfDisplaced = new AtomicLong(0);
+        this.priorityWaitLatencies = new ConcurrentHashMap<>();
+        if (corePoolSize > 0) {
+            allowCoreThreadTimeOut(true);
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        final AtomicInteger serial = new AtomicInteger(0);
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable task) {
+                return new Thread(task, name + "-" + serial.getAndIncrement());
+            }
+        };
+    }
+
+    /**
+     * 作成する。
+     * 待ち行列を持たない場合は、空いているスレッドが無ければ新しいスレッドで実行し、上限に達していれば断る。
+     * 待ち行列を持つ場合は、スレッド数が上限に達していれば待ち行列に入れ、待ち行列も一杯なら断る。
+     * @param name 名前。スレッドの名前の頭にも使う
+     * @param numOfThreads スレッド数の上限。0 なら制限しない
+     * @param queueCapacity 待ち行列の長さの上限。
+     *            スレッド数を制限しない場合は 0 であること
+     * @return 実行機
+     */
+    public static BoundedExecutor newInstance(final String name, final int numOfThreads, final int queueCapacity) {
+        if (name == null) {
+            throw new IllegalArgumentException("Null name.");
+        } else if (numOfThreads < 0) {
+            throw new IllegalArgumentException("Negative number of threads ( " + numOfThreads + " ).");
+        } else if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Negative queue capacity ( " + queueCapacity + " ).");
+        } else if (numOfThreads == 0 && queueCapacity > 0) {
+            throw new IllegalArgumentException("Queue without thread limit ( " + queueCapacity + " ).");
+        }
+        if (queueCapacity == 0) {
+            return new BoundedExecutor(name, 0, (numOfThreads == 0 ? Integer.MAX_VALUE : numOfThreads), new SynchronousQueue<Runnable>(),
+                    new RejectionCounter());
+        } else {
+            return new BoundedExecutor(name, numOfThreads, numOfThreads, new LinkedBlockingQueue<Runnable>(queueCapacity), new RejectionCounter());
+        }
+    }
+
+    /**
+     * 優先度付きの待ち行列を持つものを作成する。
+     * PrioritizedTask は優先度の高いものから、同じ優先度なら入れた順に実行する。
+     * 待ち行列が一杯なら、より優先度の低い待ち中の PrioritizedTask を押し出して入れ、押し出せなければ断る。
+     * 待ち行列を持たない場合は newInstance と同じ。
+     * @param name 名前。スレッドの名前の頭にも使う
+     * @param numOfThreads スレッド数の上限。0 より大きいこと
+     * @param queueCapacity 待ち行列の長さの上限
+     * @return 実行機
+     */
+    public static BoundedExecutor newPriorityInstance(final String name, final int numOfThreads, final int queueCapacity) {
+        if (name == null) {
+            throw new IllegalArgumentException("Null name.");
+        } else if (numOfThreads <= 0) {
+            throw new IllegalArgumentException("Not positive number of threads ( " + numOfThreads + " ).");
+        } else if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Negative queue capacity ( " + queueCapacity + " ).");
+        }
+        if (queueCapacity == 0) {
+            return newInstance(name, numOfThreads, queueCapacity);
+        } else {
+            return new BoundedExecutor(name, numOfThreads, numOfThreads, new PriorityTaskQueue(queueCapacity), new RejectionCounter());
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("Null command.");
+        }
+        super.execute(new TimedTask(command));
+    }
+
+    /**
+     * @return 名前
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return 待ち行列に入っている処理の数
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return 溢れて断った処理の数
+     */
+    public long getNumOfRejections() {
+        return this.rejectionCounter.numOfRejections.get();
+    }
+
+    /**
+     * @return 処理が始まるまでの待ち時間の度数分布
+     */
+    public LatencyHistogram getWaitLatency() {
+        return this.waitLatency;
+    }
+
+    /**
+     * @param priority 優先度
+     * @return その優先度の PrioritizedTask が始まるまでの待ち時間の度数分布
+     */
+    public LatencyHistogram getWaitLatency(final int priority) {
+        LatencyHistogram histogram = this.priorityWaitLatencies.get(priority);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            final LatencyHistogram old = this.priorityWaitLatencies.putIfAbsent(priority, histogram);
+            if (old != null) {
+                histogram = old;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return 優先度の高い処理に押し出された処理の数
+     */
+    public long getNumOfDisplaced() {
+        return this.numOfDisplaced.get();
+    }
+
+    /**
+     * @return 処理の実行時間の度数分布
+     */
+    public LatencyHistogram getRunLatency() {
+        return this.runLatency;
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[name=").append(this.name)
+                .append(", threads=").append(getPoolSize())
+                .append(", active=").append(getActiveCount())
+                .append(", queue=").append(getQueueDepth())
+                .append(", completed=").append(getCompletedTaskCount())
+                .append(", rejections=").append(getNumOfRejections())
+                .append(", displaced=").append(getNumOfDisplaced())
+                .append(", wait=").append(this.waitLatency)
+                .append(", waitByPriority=").append(new TreeMap<Integer, LatencyHistogram>(this.priorityWaitLatencies))
+                .append(", run=").append(this.runLatency)
+                .append(']').toString();
+    }
+
+}
@@ -0,0 +1,204 @@
+package nippon.kawauso.chiraura.lib.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class BoundedExecutorTest {
+
+    private static final Logger LOG = Logger.getLogger(BoundedExecutorTest.class.getName());
+
+    /**
+     * 初期化
+     */
+    public BoundedExecutorTest() {
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    private static Runnable newWaiter(final CountDownLatch started, final CountDownLatch release) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException ignored) {
+                }
+            }
+        };
+    }
+
+    /**
+     * スレッドと待ち行列が埋まったら断るかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRejection() throws Exception {
+        final int numOfThreads = 4;
+        final int queueCapacity = 8;
+        final int numOfRejections = 3;
+
+        final BoundedExecutor instance = BoundedExecutor.newInstance(this.getClass().getSimpleName(), numOfThreads, queueCapacity);
+        final CountDownLatch started = new CountDownLatch(numOfThreads);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < numOfThreads + queueCapacity; i++) {
+            instance.execute(newWaiter(started, release));
+        }
+        Assert.assertTrue(started.await(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(numOfThreads, instance.getActiveCount());
+        Assert.assertEquals(queueCapacity, instance.getQueueDepth());
+
+        for (int i = 0; i < numOfRejections; i++) {
+            try {
+                instance.execute(newWaiter(started, release));
+                Assert.fail();
+            } catch (final RejectedExecutionException e) {
+                // 正常。
+            }
+        }
+        Assert.assertEquals(numOfRejections, instance.getNumOfRejections());
+
+        release.countDown();
+        instance.shutdown();
+        Assert.assertTrue(instance.awaitTermination(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(numOfThreads + queueCapacity, instance.getWaitLatency().getNumOfSamples());
+        Assert.assertEquals(numOfThreads + queueCapacity, instance.getRunLatency().getNumOfSamples());
+        LOG.log(Level.SEVERE, "{0}", instance);
+    }
+
+    /**
+     * 待ち行列を持たない場合に、上限までスレッドを増やしてから断るかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testWithoutQueue() throws Exception {
+        final int numOfThreads = 4;
+
+        final BoundedExecutor instance = BoundedExecutor.newInstance(this.getClass().getSimpleName(), numOfThreads, 0);
+        final CountDownLatch started = new CountDownLatch(numOfThreads);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < numOfThreads; i++) {
+            instance.execute(newWaiter(started, release));
+        }
+        Assert.assertTrue(started.await(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+        try {
+            instance.execute(newWaiter(started, release));
+            Assert.fail();
+        } catch (final RejectedExecutionException e) {
+            // 正常。
+        }
+        Assert.assertEquals(1, instance.getNumOfRejections());
+
+        release.countDown();
+        instance.shutdown();
+        Assert.assertTrue(instance.awaitTermination(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 優先度の高いものから実行し、一杯なら優先度の低いものを押し出すかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPriority() throws Exception {
+        final int queueCapacity = 4;
+
+        final BoundedExecutor instance = BoundedExecutor.newPriorityInstance(this.getClass().getSimpleName(), 1, queueCapacity);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        instance.execute(newWaiter(started, release));
+        Assert.assertTrue(started.await(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> dropped = Collections.synchronizedList(new ArrayList<Integer>());
+        // 低, 低, 高, 低 で埋めてから、高を 2 つ入れると、後から入れた低から押し出される。
+        final int[] priorities = { 1, 1, 0, 1, 0, 0 };
+        for (int i = 0; i < priorities.length; i++) {
+            final int label = i;
+            instance.execute(new PrioritizedTask(priorities[i]) {
+                @Override
+                public void run() {
+                    executed.add(label);
+                }
+
+                @Override
+                protected void dropped() {
+                    dropped.add(label);
+                }
+            });
+        }
+        Assert.assertEquals(queueCapacity, instance.getQueueDepth());
+        Assert.assertEquals(Arrays.asList(3, 1), dropped);
+        Assert.assertEquals(2, instance.getNumOfDisplaced());
+
+        // 高しか待っていなければ、高は押し出せない。
+        instance.execute(new PrioritizedTask(0) {
+            @Override
+            public void run() {
+                executed.add(-1);
+            }
+
+            @Override
+            protected void dropped() {
+                dropped.add(-1);
+            }
+        });
+        Assert.assertEquals(Arrays.asList(3, 1, 0), dropped);
+        try {
+            instance.execute(new PrioritizedTask(0) {
+                @Override
+                public void run() {
+                    Assert.fail();
+                }
+
+                @Override
+                protected void dropped() {
+                    Assert.fail();
+                }
+            });
+            Assert.fail();
+        } catch (final RejectedExecutionException e) {
+            // 正常。
+        }
+
+        release.countDown();
+        instance.shutdown();
+        Assert.assertTrue(instance.awaitTermination(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(Arrays.asList(2, 4, 5, -1), executed);
+        Assert.assertEquals(4, instance.getWaitLatency(0).getNumOfSamples());
+        Assert.assertEquals(0, instance.getWaitLatency(1).getNumOfSamples());
+        LOG.log(Level.SEVERE, "{0}", instance);
+    }
+
+    /**
+     * 度数分布の百分位数が区間の上端を返すかどうか。
+     */
+    @Test
+    public void testHistogram() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            instance.add(1_000_000L); // 1 ミリ秒。
+        }
+        instance.add(100_000_000L); // 100 ミリ秒。
+        Assert.assertEquals(100, instance.getNumOfSamples());
+        Assert.assertEquals(100.0, instance.getMax(), 0.0);
+        Assert.assertTrue(1.0 <= instance.getPercentile(50) && instance.getPercentile(50) < 2.0);
+        Assert.assertTrue(1.0 <= instance.getPercentile(99) && instance.getPercentile(99) < 2.0);
+        Assert.assertEquals(100.0, instance.getPercentile(100), 0.0);
+    }
+
+}
@@ -0,0 +1,87 @@
+package nippon.kawauso.chiraura.lib.concurrent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 接続ごとの送受信のような、ほとんどの時間を入出力待ちで過ごす処理のための実行機を作る。
+ * @author chirauraNoSakusha
+ */
+public final class ConnectionExecutors {
+
+    private static final Logger LOG = Logger.getLogger(ConnectionExecutors.class.getName());
+
+    /*
+     * 仮想スレッドは新しい実行環境にしか無いので、リフレクションで探す。
+     * 無ければ、スタックを小さくしたスレッドで代用する。
+     * 代用品でも接続ごとにスレッドを占有するのは変わらないが、1 本あたりのメモリは減る。
+     */
+
+    // 代用品のスタックサイズ。
+    private static final long SMALL_STACK_SIZE = 256 * 1024; // 256 KB.
+
+    // インスタンス化防止。
+    private ConnectionExecutors() {}
+
+    private static Method getVirtualFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 仮想スレッドが使えるなら true
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualFactory() != null;
+    }
+
+    /**
+     * 仮想スレッドを使う実行機を作る。
+     * 仮想スレッドが使えない場合は、スタックを小さくしたスレッドを使う実行機を作る。
+     * @param name スレッドの名前の頭
+     * @return 実行機
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(final String name) {
+        final Method factory = getVirtualFactory();
+        if (factory != null) {
+            try {
+                return (ExecutorService) factory.invoke(null);
+            } catch (final IllegalAccessException | InvocationTargetException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+            }
+        }
+        LOG.log(Level.WARNING, "仮想スレッドが使えないので、スタックの小さいスレッドで代用します。");
+        return newSmallStackThreadPool(name, SMALL_STACK_SIZE);
+    }
+
+    /**
+     * スタックを小さくしたスレッドを使う実行機を作る。
+     * @param name スレッドの名前の頭
+     * @param stackSize スタックサイズ (バイト)
+     * @return 実行機
+     */
+    public static ExecutorService newSmallStackThreadPool(final String name, final long stackSize) {
+        if (name == null) {
+            throw new IllegalArgumentException("Null name.");
+        } else if (stackSize <= 0) {
+            throw new IllegalArgumentException("Not positive stack size ( " + stackSize + " ).");
+        }
+        final AtomicInteger serial = new AtomicInteger(0);
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable task) {
+                return new Thread(null, task, name + "-" + serial.getAndIncrement(), stackSize);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,64 @@
+package nippon.kawauso.chiraura.lib.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class ConnectionExecutorsTest {
+
+    private static final Logger LOG = Logger.getLogger(ConnectionExecutorsTest.class.getName());
+
+    /**
+     * 初期化
+     */
+    public ConnectionExecutorsTest() {
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    /**
+     * 待ってばかりの処理をたくさん同時に動かせるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testManyBlockingTasks() throws Exception {
+        final int numOfTasks = 2_000;
+
+        final ExecutorService executor = ConnectionExecutors.newVirtualThreadPerTaskExecutor(this.getClass().getSimpleName());
+        final CountDownLatch started = new CountDownLatch(numOfTasks);
+        final CountDownLatch release = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        for (int i = 0; i < numOfTasks; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException ignored) {
+                    }
+                }
+            });
+        }
+        // 全部が同時に待っている。
+        Assert.assertTrue(started.await(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+        final long end = System.nanoTime();
+        release.countDown();
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10 * Duration.SECOND, TimeUnit.MILLISECONDS));
+        LOG.log(Level.SEVERE, "仮想スレッド: {0} 同時待機数: {1} 起動ミリ秒: {2}", new Object[] { ConnectionExecutors.isVirtualThreadSupported(), numOfTasks,
+                (end - start) / 1_000_000.0 });
+    }
+
+}
@@ -0,0 +1,117 @@
+package nippon.kawauso.chiraura.lib.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 掛かった時間の度数分布。
+ * マイクロ秒単位で 2 の羃ごとに区切って数える。
+ * 並列対応。
+ * @author chirauraNoSakusha
+ */
+public final class LatencyHistogram {
+
+    // 2^(NUM_OF_BUCKETS - 2) マイクロ秒 (約 1 日) 以上は最後の区間にまとめる。
+    private static final int NUM_OF_BUCKETS = 38;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong numOfSamples;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * 作成する。
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(NUM_OF_BUCKETS);
+        this.numOfSamples = new AtomicLong(0);
+        this.total = new AtomicLong(0);
+        this.max = new AtomicLong(0);
+    }
+
+    /**
+     * 区間の番号を返す。
+     * 区間 i は [2^(i-1), 2^i) マイクロ秒。区間 0 は 1 マイクロ秒未満。
+     * @param micros マイクロ秒
+     * @return 区間の番号
+     */
+    private static int bucketOf(final long micros) {
+        final int i = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(i, NUM_OF_BUCKETS - 1);
+    }
+
+    /**
+     * 1 つ記録する。
+     * @param nanos 掛かった時間 (ナノ秒)
+     */
+    public void add(final long nanos) {
+        final long micros = Math.max(0, nanos / 1_000);
+        this.counts.incrementAndGet(bucketOf(micros));
+        this.numOfSamples.incrementAndGet();
+        this.total.addAndGet(micros);
+        for (long cur = this.max.get(); cur < micros; cur = this.max.get()) {
+            if (this.max.compareAndSet(cur, micros)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return 記録した数
+     */
+    public long getNumOfSamples() {
+        return this.numOfSamples.get();
+    }
+
+    /**
+     * @return 平均 (ミリ秒)
+     */
+    public double getAverage() {
+        final long n = this.numOfSamples.get();
+        return n == 0 ? 0.0 : this.total.get() / 1_000.0 / n;
+    }
+
+    /**
+     * @return 最大 (ミリ秒)
+     */
+    public double getMax() {
+        return this.max.get() / 1_000.0;
+    }
+
+    /**
+     * 百分位数の上限を返す。
+     * 区間の上端を返すので、実際の値の 2 倍未満の誤差がある。
+     * @param percentage 百分率。(0, 100]
+     * @return 百分位数の上限 (ミリ秒)
+     */
+    public double getPercentile(final double percentage) {
+        if (percentage <= 0 || 100 < percentage) {
+            throw new IllegalArgumentException("Invalid percentage ( " + percentage + " ).");
+        }
+        final long n = this.numOfSamples.get();
+        if (n == 0) {
+            return 0.0;
+        }
+        final long rank = (long) Math.ceil(n * percentage / 100.0);
+        long sum = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            sum += this.counts.get(i);
+            if (sum >= rank) {
+                return Math.min(1L << i, this.max.get()) / 1_000.0;
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[samples=").append(getNumOfSamples())
+                .append(", average=").append(String.format("%.3f", getAverage()))
+                .append("ms, p50=").append(String.format("%.3f", getPercentile(50)))
+                .append("ms, p99=").append(String.format("%.3f", getPercentile(99)))
+                .append("ms, max=").append(String.format("%.3f", getMax()))
+                .append("ms]").toString();
+    }
+
+}
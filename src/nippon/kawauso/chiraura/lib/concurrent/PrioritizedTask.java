@@ -0,0 +1,40 @@
+package nippon.kawauso.chiraura.lib.concurrent;
+
+/**
+ * 優先度付きの処理。
+ * BoundedExecutor.newPriorityInstance で作った実行機では、優先度の高いものから実行され、
+ * 待ち行列が一杯なら、より優先度の低い待ち中の処理を押し出して入る。
+ * 押し出された処理は実行されず、代わりに dropped が呼ばれる。
+ * 他の実行機では、普通の処理として扱われる。
+ * @author chirauraNoSakusha
+ */
+public abstract class PrioritizedTask implements Runnable {
+
+    private final int priority;
+
+    /**
+     * 作成する。
+     * @param priority 優先度。
+     *            小さいほど先に実行する
+     */
+    protected PrioritizedTask(final int priority) {
+        if (priority < 0) {
+            throw new IllegalArgumentException("Negative priority ( " + priority + " ).");
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * @return 優先度
+     */
+    public final int getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * 実行されないまま押し出されたときに呼ばれる。
+     * 押し出した側のスレッドで呼ばれるので、重い処理はしないこと。
+     */
+    protected abstract void dropped();
+
+}
@@ -5,7 +5,9 @@ import java.net.InetSocketAddress;
 /**
  * @author chirauraNoSakusha
  */
-public final class BasicConstantTrafficLimiter extends ConstantLimiter<InetSocketAddress> {
+public final class BasicConstantTrafficLimiter implements Limiter<InetSocketAddress> {
+
+    private final Limiter<InetSocketAddress> base;
 
     /**
      * 作成する。
@@ -13,9 +15,42 @@ public final class BasicConstantTrafficLimiter extends ConstantLimiter<InetSocke
      * @param sizeLimit 制限する通信量 (バイト)
      * @param countLimit 制限する通信回数
      * @param penalty 制限量に達したときの追加の待ち時間 (ミリ秒)
+     * @param type 監視期間内の報告の持ち方
+     */
+    public BasicConstantTrafficLimiter(final long duration, final long sizeLimit, final int countLimit, final long penalty,
+            final ConstantLimiters.Type type) {
+        this.base = ConstantLimiters.newInstance(type, duration, sizeLimit, countLimit, penalty);
+    }
+
+    /**
+     * 従来の方式 (LIST) で作成する。
+     * @param duration 単位監視期間 (ミリ秒)
+     * @param sizeLimit 制限する通信量 (バイト)
+     * @param countLimit 制限する通信回数
+     * @param penalty 制限量に達したときの追加の待ち時間 (ミリ秒)
      */
     public BasicConstantTrafficLimiter(final long duration, final long sizeLimit, final int countLimit, final long penalty) {
-        super(duration, sizeLimit, countLimit, penalty);
+        this(duration, sizeLimit, countLimit, penalty, ConstantLimiters.Type.LIST);
+    }
+
+    @Override
+    public long addValueAndCheckPenalty(final InetSocketAddress destination, final long size) throws InterruptedException {
+        return this.base.addValueAndCheckPenalty(destination, size);
+    }
+
+    @Override
+    public long checkPenalty(final InetSocketAddress destination) throws InterruptedException {
+        return this.base.checkPenalty(destination);
+    }
+
+    @Override
+    public int checkCount(final InetSocketAddress destination) throws InterruptedException {
+        return this.base.checkCount(destination);
+    }
+
+    @Override
+    public boolean remove(final InetSocketAddress destination) throws InterruptedException {
+        return this.base.remove(destination);
     }
 
 }
@@ -0,0 +1,303 @@
+package nippon.kawauso.chiraura.lib.connection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 一定期間の一定量・一定回数で制限。
+ * ConstantLimiter と違い、監視期間を固定幅の区間に分けて区間ごとの合計だけを持つ。
+ * そのため、識別子ごとの記憶量は一定で、報告ごとの記憶領域の確保も無い。
+ * 代わりに、監視期間は最大で区間 1 つ分長めに数える。
+ * 使われなくなった識別子は、どこかで報告があったときに少しずつ捨てる。
+ * @author chirauraNoSakusha
+ */
+final class BucketLimiter<T> implements Limiter<T> {
+
+    private static final Logger LOG = Logger.getLogger(BucketLimiter.class.getName());
+
+    /**
+     * 監視期間の分割数の目安。
+     */
+    static final int DEFAULT_NUM_OF_BUCKETS = 8;
+
+    /**
+     * 区間ごとの合計を輪状に並べたもの。
+     * 自身で同期をとる。
+     */
+    private static final class Window {
+        private final long[] values;
+        private final int[] counts;
+        // 最新の区間の番号。
+        private long latest;
+        private long sum;
+        private int count;
+        // 表から外されたかどうか。外されたものには加えない。
+        private boolean removed;
+
+        private Window(final int numOfBuckets) {
+            this.values = new long[numOfBuckets];
+            this.counts = new int[numOfBuckets];
+            this.latest = Long.MIN_VALUE;
+            this.sum = 0;
+            this.count = 0;
+            this.removed = false;
+        }
+
+        private int slot(final long index) {
+            return (int) (index % this.counts.length);
+        }
+
+        // index 番目の区間まで進めて、期限切れの区間を捨てる。
+        private void advance(final long index) {
+            if (index <= this.latest) {
+                // 時計が戻った場合も含む。
+                return;
+            } else if (this.latest == Long.MIN_VALUE || index - this.latest >= this.counts.length) {
+                // 全部期限切れ。
+                for (int i = 0; i < this.counts.length; i++) {
+                    this.values[i] = 0;
+                    this.counts[i] = 0;
+                }
+                this.sum = 0;
+                this.count = 0;
+            } else {
+                for (long i = this.latest + 1; i <= index; i++) {
+                    final int slot = slot(i);
+                    this.sum -= this.values[slot];
+                    this.count -= this.counts[slot];
+                    this.values[slot] = 0;
+                    this.counts[slot] = 0;
+                }
+            }
+            this.latest = index;
+        }
+
+        private void add(final long value) {
+            final int slot = slot(this.latest);
+            this.values[slot] += value;
+            this.counts[slot]++;
+            this.sum += value;
+            this.count++;
+        }
+
+        private boolean isEmpty() {
+            // 回数制限だけのときは value == 0 で使うこともあるので、
+            // sum == 0 では駄目。
+            return this.count == 0;
+        }
+
+        // 空でないときだけ呼ぶ。
+        private long getOldestIndex() {
+            for (long i = this.latest - this.counts.length + 1; i < this.latest; i++) {
+                if (this.counts[slot(i)] > 0) {
+                    return i;
+                }
+            }
+            return this.latest;
+        }
+
+        // 空でないときだけ呼ぶ。
+        private long getNewestIndex() {
+            for (long i = this.latest; i > this.latest - this.counts.length + 1; i--) {
+                if (this.counts[slot(i)] > 0) {
+                    return i;
+                }
+            }
+            return this.latest - this.counts.length + 1;
+        }
+
+        @Override
+        public String toString() {
+            return (new StringBuilder(BucketLimiter.class.getSimpleName())).append('.').append(this.getClass().getSimpleName())
+                    .append('[').append(this.sum)
+                    .append(", ").append(this.count)
+                    .append(']').toString();
+        }
+    }
+
+    // 参照。
+    private final long valueLimit;
+    private final int countLimit;
+    private final long penalty;
+    private final long bucketWidth;
+    private final int numOfBuckets;
+
+    // 保持。
+    private final ConcurrentMap<T, Window> windows;
+    private final AtomicLong nextSweep;
+
+    BucketLimiter(final long duration, final long valueLimit, final int countLimit, final long penalty, final int numOfBuckets) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Negative duration ( " + duration + " ).");
+        } else if (valueLimit < 0) {
+            throw new IllegalArgumentException("Negative value limit ( " + valueLimit + " ).");
+        } else if (countLimit < 0) {
+            throw new IllegalArgumentException("Negative count limit ( " + countLimit + " ).");
+        } else if (penalty < 0) {
+            throw new IllegalArgumentException("Negative penalty ( " + penalty + " ).");
+        } else if (numOfBuckets < 1) {
+            throw new IllegalArgumentException("Invalid number of buckets ( " + numOfBuckets + " ).");
+        }
+
+        this.valueLimit = valueLimit;
+        this.countLimit = countLimit;
+        this.penalty = penalty;
+        this.bucketWidth = Math.max(1L, duration / numOfBuckets);
+        // 区間の途中で報告されたものも duration の間は数えるように 1 つ余分に持つ。
+        this.numOfBuckets = (int) ((duration + this.bucketWidth - 1) / this.bucketWidth) + 1;
+
+        this.windows = new ConcurrentHashMap<>();
+        this.nextSweep = new AtomicLong(System.currentTimeMillis() + getWindowLength());
+    }
+
+    BucketLimiter(final long duration, final long valueLimit, final int countLimit, final long penalty) {
+        this(duration, valueLimit, countLimit, penalty, DEFAULT_NUM_OF_BUCKETS);
+    }
+
+    // 実際に数える期間の長さ。
+    private long getWindowLength() {
+        return this.numOfBuckets * this.bucketWidth;
+    }
+
+    boolean isEmpty() {
+        return this.windows.isEmpty();
+    }
+
+    int size() {
+        return this.windows.size();
+    }
+
+    // 報告の無いまま期限切れになった識別子を捨てる。
+    // 監視期間に 1 回くらい、誰か 1 人がやる。
+    private void sweep(final long cur) {
+        final long next = this.nextSweep.get();
+        if (cur < next || !this.nextSweep.compareAndSet(next, cur + getWindowLength())) {
+            return;
+        }
+
+        final long index = cur / this.bucketWidth;
+        int count = 0;
+        for (final Map.Entry<T, Window> entry : this.windows.entrySet()) {
+            final Window window = entry.getValue();
+            synchronized (window) {
+                window.advance(index);
+                if (window.isEmpty() && !window.removed) {
+                    removeIfEmpty(entry.getKey(), window);
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            LOG.log(Level.FINEST, "期限切れの識別子を {0} 個捨てました。", count);
+        }
+    }
+
+    // 空なら表から外す。window の鍵を握った状態で呼ぶこと。
+    private void removeIfEmpty(final T key, final Window window) {
+        if (window.isEmpty() && !window.removed) {
+            window.removed = true;
+            this.windows.remove(key, window);
+        }
+    }
+
+    // 一番古い区間が期限切れになるまでの時間。window の鍵を握った状態で呼ぶこと。
+    private long getPenalty(final Window window, final long cur) {
+        if (window.isEmpty() || (this.valueLimit >= window.sum && this.countLimit >= window.count)) {
+            return 0L;
+        }
+        return (window.getOldestIndex() + this.numOfBuckets) * this.bucketWidth - cur + this.penalty;
+    }
+
+    @Override
+    public long addValueAndCheckPenalty(final T key, final long value) throws InterruptedException {
+        final long cur = System.currentTimeMillis();
+        sweep(cur);
+
+        final long index = cur / this.bucketWidth;
+        while (true) {
+            Window window = this.windows.get(key);
+            if (window == null) {
+                final Window newWindow = new Window(this.numOfBuckets);
+                window = this.windows.putIfAbsent(key, newWindow);
+                if (window == null) {
+                    window = newWindow;
+                }
+            }
+
+            synchronized (window) {
+                if (window.removed) {
+                    // 外された後だった。入れ直す。
+                    continue;
+                }
+                window.advance(index);
+                window.add(value);
+                return getPenalty(window, cur);
+            }
+        }
+    }
+
+    @Override
+    public long checkPenalty(final T key) throws InterruptedException {
+        final Window window = this.windows.get(key);
+        if (window == null) {
+            return 0L;
+        }
+
+        final long cur = System.currentTimeMillis();
+        synchronized (window) {
+            window.advance(cur / this.bucketWidth);
+            removeIfEmpty(key, window);
+            return getPenalty(window, cur);
+        }
+    }
+
+    @Override
+    public int checkCount(final T key) throws InterruptedException {
+        final Window window = this.windows.get(key);
+        if (window == null) {
+            return 0;
+        }
+
+        synchronized (window) {
+            window.advance(System.currentTimeMillis() / this.bucketWidth);
+            removeIfEmpty(key, window);
+            return window.count;
+        }
+    }
+
+    @Override
+    public boolean remove(final T key) throws InterruptedException {
+        final Window window = this.windows.get(key);
+        if (window == null) {
+            // 解放済み。
+            return true;
+        }
+
+        final long curPenalty;
+        synchronized (window) {
+            final long cur = System.currentTimeMillis();
+            window.advance(cur / this.bucketWidth);
+            removeIfEmpty(key, window);
+            if (window.removed) {
+                return true;
+            }
+            curPenalty = (window.getNewestIndex() + this.numOfBuckets) * this.bucketWidth - cur; // 今あるのが全部期限切れになるまでの時間。
+        }
+
+        if (curPenalty > 0) {
+            LOG.log(Level.FINEST, "削除待ちで {0} ミリ秒さぼります。", curPenalty);
+            Thread.sleep(curPenalty);
+        }
+
+        synchronized (window) {
+            window.advance(System.currentTimeMillis() / this.bucketWidth);
+            removeIfEmpty(key, window);
+            return window.removed;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package nippon.kawauso.chiraura.lib.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.process.Reporter;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class BucketLimiterTest {
+    private static final Logger LOG = Logger.getLogger(BucketLimiterTest.class.getName());
+
+    /**
+     * 初期化。
+     */
+    public BucketLimiterTest() {
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    /**
+     * 回数と量で制限し、期限が切れたら解除するかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testLimit() throws Exception {
+        final long duration = 200L;
+        final long valueLimit = 100L;
+        final int countLimit = 3;
+        final long penalty = 10L;
+        final BucketLimiter<Integer> instance = new BucketLimiter<>(duration, valueLimit, countLimit, penalty);
+
+        // 回数。
+        for (int i = 0; i < countLimit; i++) {
+            Assert.assertEquals(0, instance.addValueAndCheckPenalty(1, 0));
+        }
+        final long countPenalty = instance.addValueAndCheckPenalty(1, 0);
+        Assert.assertTrue(penalty < countPenalty && countPenalty <= duration + duration / BucketLimiter.DEFAULT_NUM_OF_BUCKETS + penalty);
+        Assert.assertEquals(countLimit + 1, instance.checkCount(1));
+
+        // 量。
+        Assert.assertEquals(0, instance.addValueAndCheckPenalty(2, valueLimit));
+        Assert.assertTrue(instance.addValueAndCheckPenalty(2, 1) > 0);
+        Assert.assertTrue(instance.checkPenalty(2) > 0);
+
+        // 他の識別子には影響しない。
+        Assert.assertEquals(0, instance.checkPenalty(3));
+
+        Thread.sleep(countPenalty);
+        Assert.assertEquals(0, instance.checkPenalty(1));
+        Assert.assertEquals(0, instance.checkPenalty(2));
+        Assert.assertEquals(0, instance.checkCount(1));
+        Assert.assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * 報告の無くなった識別子を、他の識別子の報告のついでに捨てるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSweep() throws Exception {
+        final long duration = 100L;
+        final int numOfKeys = 1_000;
+        final BucketLimiter<Integer> instance = new BucketLimiter<>(duration, Long.MAX_VALUE, Integer.MAX_VALUE, 0);
+        for (int i = 0; i < numOfKeys; i++) {
+            instance.addValueAndCheckPenalty(i, 1);
+        }
+        Assert.assertEquals(numOfKeys, instance.size());
+
+        Thread.sleep(3 * duration);
+        instance.addValueAndCheckPenalty(numOfKeys, 1);
+        Assert.assertEquals(1, instance.size());
+    }
+
+    /**
+     * 解放できるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRemove() throws Exception {
+        final long duration = 100L;
+        final BucketLimiter<Integer> instance = new BucketLimiter<>(duration, Long.MAX_VALUE, 1, 0);
+        Assert.assertTrue(instance.remove(1));
+        instance.addValueAndCheckPenalty(1, 1);
+        final long start = System.currentTimeMillis();
+        Assert.assertTrue(instance.remove(1));
+        Assert.assertTrue(System.currentTimeMillis() - start >= duration);
+        Assert.assertTrue(instance.isEmpty());
+    }
+
+    /**
+     * 使えるか検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testNextSleep() throws Exception {
+        final long duration = 1L;
+        final long valueLimit = 10_000_000L;
+        final int countLimit = 1_000;
+        final long penalty = 10L;
+        final long value = valueLimit / 10;
+        final int numOfTargets = 10;
+        final int numOfProcesses = 100;
+        final int numOfLoops = 100;
+        final BucketLimiter<Integer> instance = new BucketLimiter<>(duration, valueLimit, countLimit, penalty);
+        (new ConstantLimiterTest()).something(instance, value, numOfTargets, numOfProcesses, numOfLoops);
+    }
+
+    private static double measure(final Limiter<Integer> instance, final int numOfKeys, final int numOfProcesses, final int numOfLoops)
+            throws Exception {
+        final List<Callable<Void>> threads = new ArrayList<>(numOfProcesses);
+        for (int i = 0; i < numOfProcesses; i++) {
+            final int id = i;
+            threads.add(new Reporter<Void>(Level.SEVERE) {
+                @Override
+                public Void subCall() throws InterruptedException {
+                    for (int j = 0; j < numOfLoops; j++) {
+                        final int key = (id * numOfLoops + j) % numOfKeys;
+                        instance.addValueAndCheckPenalty(key, 1_000);
+                        instance.checkPenalty(key);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(numOfProcesses, 8));
+        final long start = System.nanoTime();
+        final List<Future<Void>> futures = executor.invokeAll(threads);
+        final long end = System.nanoTime();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        for (final Future<Void> future : futures) {
+            future.get();
+        }
+        return (end - start) / 1_000.0 / (numOfProcesses * numOfLoops);
+    }
+
+    /**
+     * 多数の識別子に対する性能を ConstantLimiter と比べる。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPerformanceManyKeys() throws Exception {
+        final long duration = Duration.SECOND;
+        final long valueLimit = 10 * 1024 * 1024;
+        final int countLimit = 500;
+        final long penalty = 0;
+        final int numOfKeys = 10_000;
+        final int numOfProcesses = 100;
+        final int numOfLoops = 2_000;
+
+        // 温める。
+        measure(new ConstantLimiter<Integer>(duration, valueLimit, countLimit, penalty) {}, numOfKeys, numOfProcesses, numOfLoops / 10);
+        measure(new BucketLimiter<Integer>(duration, valueLimit, countLimit, penalty), numOfKeys, numOfProcesses, numOfLoops / 10);
+
+        final double list = measure(new ConstantLimiter<Integer>(duration, valueLimit, countLimit, penalty) {}, numOfKeys, numOfProcesses, numOfLoops);
+        final double bucket = measure(new BucketLimiter<Integer>(duration, valueLimit, countLimit, penalty), numOfKeys, numOfProcesses, numOfLoops);
+        LOG.log(Level.SEVERE, getClass().getName() + " 制限対象数:" + numOfKeys + " プロセス数:" + numOfProcesses + " 繰り返し回数:" + numOfLoops
+                + " ConstantLimiter 単位消費マイクロ秒数:" + list + " BucketLimiter 単位消費マイクロ秒数:" + bucket);
+    }
+
+}
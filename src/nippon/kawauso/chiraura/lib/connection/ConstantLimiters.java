@@ -0,0 +1,47 @@
+package nippon.kawauso.chiraura.lib.connection;
+
+/**
+ * 一定期間の一定量・一定回数で制限する Limiter の作成。
+ * @author chirauraNoSakusha
+ */
+public final class ConstantLimiters {
+
+    // インスタンス化防止。
+    private ConstantLimiters() {}
+
+    /**
+     * 監視期間内の報告の持ち方。
+     * @author chirauraNoSakusha
+     */
+    public static enum Type {
+
+        /**
+         * 報告を 1 つずつ全部持つ。
+         * 正確だが、報告ごとに記憶領域を確保する。
+         * 従来の方式。
+         */
+        LIST,
+
+        /**
+         * 監視期間を固定幅の区間に分け、区間ごとの合計だけを持つ。
+         * 識別子ごとの記憶量は一定だが、監視期間を最大で区間 1 つ分長めに数える。
+         */
+        BUCKET,
+
+    }
+
+    static <T> Limiter<T> newInstance(final Type type, final long duration, final long valueLimit, final int countLimit, final long penalty) {
+        if (type == null) {
+            throw new IllegalArgumentException("Null type.");
+        }
+        switch (type) {
+        case LIST:
+            return new ConstantLimiter<T>(duration, valueLimit, countLimit, penalty) {};
+        case BUCKET:
+            return new BucketLimiter<>(duration, valueLimit, countLimit, penalty);
+        default:
+            throw new IllegalArgumentException("Invalid type ( " + type + " ).");
+        }
+    }
+
+}
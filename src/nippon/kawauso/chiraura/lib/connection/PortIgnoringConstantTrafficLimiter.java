@@ -8,7 +8,7 @@ import java.net.InetSocketAddress;
  */
 public final class PortIgnoringConstantTrafficLimiter implements Limiter<InetSocketAddress> {
 
-    private final ConstantLimiter<InetAddress> base;
+    private final Limiter<InetAddress> base;
 
     /**
      * 作成する。
@@ -16,9 +16,22 @@ public final class PortIgnoringConstantTrafficLimiter implements Limiter<InetSoc
      * @param sizeLimit 制限する通信量 (バイト)
      * @param countLimit 制限する通信回数
      * @param penalty 制限量に達したときの追加の待ち時間 (ミリ秒)
+     * @param type 監視期間内の報告の持ち方
+     */
+    public PortIgnoringConstantTrafficLimiter(final long duration, final long sizeLimit, final int countLimit, final long penalty,
+            final ConstantLimiters.Type type) {
+        this.base = ConstantLimiters.newInstance(type, duration, sizeLimit, countLimit, penalty);
+    }
+
+    /**
+     * 従来の方式 (LIST) で作成する。
+     * @param duration 単位監視期間 (ミリ秒)
+     * @param sizeLimit 制限する通信量 (バイト)
+     * @param countLimit 制限する通信回数
+     * @param penalty 制限量に達したときの追加の待ち時間 (ミリ秒)
      */
     public PortIgnoringConstantTrafficLimiter(final long duration, final long sizeLimit, final int countLimit, final long penalty) {
-        this.base = new ConstantLimiter<InetAddress>(duration, sizeLimit, countLimit, penalty) {};
+        this(duration, sizeLimit, countLimit, penalty, ConstantLimiters.Type.LIST);
     }
 
     @Override
@@ -0,0 +1,514 @@
+package nippon.kawauso.chiraura.lib.container;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 重み付きの並列キャッシュ。
+ * 要素の重みの和を上限以下に保つ。
+ * 参照は読み込み専用の表引きとバッファへの記録だけで、ロックを取らない。
+ * 参照の記録は溜めておき、追加や削除のついでにまとめて反映する。
+ * 溢れた記録は捨てるので、参照順は近似になる。
+ * <p>
+ * 追い出しは W-TinyLFU 方式。
+ * 新しい要素はまず小さな窓に入れ、窓から溢れた要素は本体の最古の要素と参照頻度を比べて、
+ * 頻度の高い方を残す。
+ * 本体は試用区と保護区に分け、試用区で再び参照された要素を保護区に移す。
+ * 参照頻度は Count-Min Sketch で近似し、一定回数ごとに半減させて古い参照を忘れる。
+ * @author chirauraNoSakusha
+ * @param <K> キーのクラス
+ * @param <V> 値のクラス
+ */
+public final class ConcurrentWeightedCache<K, V> {
+
+    /**
+     * 値の重みの計算。
+     * @author chirauraNoSakusha
+     * @param <V> 値のクラス
+     */
+    public static interface Weigher<V> {
+        /**
+         * 重みを計算する。
+         * @param value 値
+         * @return 重み。0 以上
+         */
+        int weigh(V value);
+    }
+
+    // 所属区画。
+    private static final int DEAD = 0;
+    private static final int WINDOW = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+
+    // 容量に対する窓の割合 (%)。
+    private static final int WINDOW_PERCENTAGE = 1;
+    // 本体に対する保護区の割合 (%)。
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+
+        // 以下は evictionLock で保護。
+        private int weight;
+        private int queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(final K key, final V value, final int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.queue = DEAD;
+        }
+    }
+
+    /**
+     * 古い順の要素の列。
+     * evictionLock で保護。
+     */
+    private static final class AccessQueue<K, V> {
+        private final int type;
+        private Node<K, V> first;
+        private Node<K, V> last;
+        private long weight;
+
+        private AccessQueue(final int type) {
+            this.type = type;
+            this.first = null;
+            this.last = null;
+            this.weight = 0;
+        }
+
+        private void addLast(final Node<K, V> node) {
+            node.queue = this.type;
+            node.prev = this.last;
+            node.next = null;
+            if (this.last == null) {
+                this.first = node;
+            } else {
+                this.last.next = node;
+            }
+            this.last = node;
+            this.weight += node.weight;
+        }
+
+        private void remove(final Node<K, V> node) {
+            if (node.prev == null) {
+                this.first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                this.last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = DEAD;
+            this.weight -= node.weight;
+        }
+
+        private void moveToLast(final Node<K, V> node) {
+            if (node != this.last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * 参照の記録用のリングバッファ。
+     * 書き込みは並列、読み出しは evictionLock を握った 1 スレッドのみ。
+     * 満杯なら記録を捨てる。
+     */
+    private static final class ReadBuffer<K, V> {
+        private static final int SIZE = 32;
+        private static final int MASK = SIZE - 1;
+
+        private final AtomicLong writeCounter;
+        private volatile long readCounter;
+        private final AtomicReferenceArray<Node<K, V>> buffer;
+
+        private ReadBuffer() {
+            this.writeCounter = new AtomicLong(0);
+            this.readCounter = 0;
+            this.buffer = new AtomicReferenceArray<>(SIZE);
+        }
+
+        /**
+         * 記録する。
+         * @param node 参照された要素
+         * @return 満杯だった場合のみ false
+         */
+        private boolean offer(final Node<K, V> node) {
+            final long tail = this.writeCounter.get();
+            if (tail - this.readCounter >= SIZE) {
+                return false;
+            }
+            if (this.writeCounter.compareAndSet(tail, tail + 1)) {
+                this.buffer.lazySet((int) (tail & MASK), node);
+            }
+            // 競合したら捨てる。
+            return true;
+        }
+    }
+
+    /**
+     * 参照頻度の近似。
+     * 4 ビット相当 (最大 15) の計数器を 4 段持つ Count-Min Sketch。
+     * evictionLock で保護。
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97CB3127, 0xB3A5C85C, 0x6A09E667, 0xBB67AE85 };
+        private static final int MIN_WIDTH = 16;
+        // 重みがバイト数のような場合に大きくなり過ぎないように。
+        private static final int MAX_WIDTH = 1 << 16;
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int size;
+
+        /**
+         * 作成する。
+         * 幅は最初に決めたら変えない。
+         * 途中で広げると、それまでの参照頻度を捨てることになるため。
+         * @param maximumWeight 重みの和の上限。
+         *            要素数の見積もりに使う
+         */
+        private FrequencySketch(final long maximumWeight) {
+            final int width = ceilingPowerOfTwo((int) Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, maximumWeight)));
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+            this.size = 0;
+        }
+
+        private int index(final int hash, final int i) {
+            int h = (hash ^ SEEDS[i]) * 0x9E3779B9;
+            h ^= (h >>> 15);
+            return h & this.mask;
+        }
+
+        private int frequency(final Object key) {
+            final int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, this.table[i][index(hash, i)]);
+            }
+            return min;
+        }
+
+        private void increment(final Object key) {
+            final int hash = key.hashCode();
+            final int min = frequency(key);
+            if (min >= MAX_COUNT) {
+                return;
+            }
+            // 最小のものだけ増やす。
+            for (int i = 0; i < DEPTH; i++) {
+                final int j = index(hash, i);
+                if (this.table[i][j] == min) {
+                    this.table[i][j]++;
+                }
+            }
+            this.size++;
+            if (this.size >= this.sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (final byte[] row : this.table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>>= 1;
+                }
+            }
+            this.size /= 2;
+        }
+    }
+
+    private static int ceilingPowerOfTwo(final int n) {
+        final int high = Integer.highestOneBit(n);
+        return high == n ? n : high << 1;
+    }
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Weigher<? super V> weigher;
+
+    private final ConcurrentMap<K, Node<K, V>> data;
+    private final ReadBuffer<K, V>[] readBuffers;
+
+    // 以下、区画と頻度の書き換えはこのロックの中で行う。
+    private final ReentrantLock evictionLock;
+    private final AccessQueue<K, V> window;
+    private final AccessQueue<K, V> probation;
+    private final AccessQueue<K, V> protectedQueue;
+    private final FrequencySketch sketch;
+    private volatile long weightedSize;
+
+    /**
+     * 作成する。
+     * @param maximumWeight 重みの和の上限
+     * @param weigher 値の重みの計算
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ConcurrentWeightedCache(final long maximumWeight, final Weigher<? super V> weigher) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Negative maximum weight ( " + maximumWeight + " ).");
+        } else if (weigher == null) {
+            throw new IllegalArgumentException("Null weigher.");
+        }
+        this.maximumWeight = maximumWeight;
+        // 桁溢れしないように先に割る。
+        this.windowMaximum = Math.max(1, maximumWeight / 100 * WINDOW_PERCENTAGE);
+        this.protectedMaximum = (maximumWeight - this.windowMaximum) / 100 * PROTECTED_PERCENTAGE;
+        this.weigher = weigher;
+
+        this.data = new ConcurrentHashMap<>();
+        final int numOfBuffers = Math.min(64, ceilingPowerOfTwo(4 * Runtime.getRuntime().availableProcessors()));
+        this.readBuffers = new ReadBuffer[numOfBuffers];
+        for (int i = 0; i < this.readBuffers.length; i++) {
+            this.readBuffers[i] = new ReadBuffer<>();
+        }
+
+        this.evictionLock = new ReentrantLock();
+        this.window = new AccessQueue<>(WINDOW);
+        this.probation = new AccessQueue<>(PROBATION);
+        this.protectedQueue = new AccessQueue<>(PROTECTED);
+        this.sketch = new FrequencySketch(maximumWeight);
+        this.weightedSize = 0;
+    }
+
+    /**
+     * 要素数を返す。
+     * @return 要素数
+     */
+    public int size() {
+        return this.data.size();
+    }
+
+    /**
+     * 重みの和を返す。
+     * @return 重みの和
+     */
+    public long weightedSize() {
+        return this.weightedSize;
+    }
+
+    /**
+     * キーが登録されているかどうか。
+     * 参照としては記録しない。
+     * @param key キー
+     * @return 登録されていれば true
+     */
+    public boolean containsKey(final K key) {
+        return this.data.containsKey(key);
+    }
+
+    /**
+     * 値を参照する。
+     * @param key キー
+     * @return 値。
+     *         無ければ null
+     */
+    public V get(final K key) {
+        final Node<K, V> node = this.data.get(key);
+        if (node == null) {
+            return null;
+        }
+        final V value = node.value;
+        final long id = Thread.currentThread().getId();
+        final ReadBuffer<K, V> buffer = this.readBuffers[(int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (this.readBuffers.length - 1)];
+        if (!buffer.offer(node)) {
+            // 溜まったので反映する。使用中なら次の機会に回す。
+            if (this.evictionLock.tryLock()) {
+                try {
+                    drainReadBuffers();
+                } finally {
+                    this.evictionLock.unlock();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 値を登録する。
+     * 重みが上限を超える値は登録しない。
+     * その場合も、古い値は消す。
+     * @param key キー
+     * @param value 値
+     * @return 古い値。
+     *         無ければ null
+     */
+    public V put(final K key, final V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key.");
+        } else if (value == null) {
+            throw new IllegalArgumentException("Null value.");
+        }
+        final int weight = this.weigher.weigh(value);
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            final Node<K, V> old = this.data.get(key);
+            if (weight > this.maximumWeight) {
+                if (old == null) {
+                    return null;
+                }
+                this.data.remove(key, old);
+                unlink(old);
+                return old.value;
+            } else if (old != null) {
+                final V oldValue = old.value;
+                old.value = value;
+                final int delta = weight - old.weight;
+                getQueue(old).weight += delta;
+                old.weight = weight;
+                this.weightedSize += delta;
+                onAccess(old);
+                evict();
+                return oldValue;
+            }
+
+            final Node<K, V> node = new Node<>(key, value, weight);
+            this.data.put(key, node);
+            this.sketch.increment(key);
+            this.window.addLast(node);
+            this.weightedSize += weight;
+            evict();
+            return null;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 値を消す。
+     * @param key キー
+     * @return 消した値。
+     *         無ければ null
+     */
+    public V remove(final K key) {
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            final Node<K, V> node = this.data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return node.value;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private AccessQueue<K, V> getQueue(final Node<K, V> node) {
+        switch (node.queue) {
+        case WINDOW:
+            return this.window;
+        case PROBATION:
+            return this.probation;
+        case PROTECTED:
+            return this.protectedQueue;
+        default:
+            throw new IllegalStateException("Dead node ( " + node.key + " ).");
+        }
+    }
+
+    private void unlink(final Node<K, V> node) {
+        this.weightedSize -= node.weight;
+        getQueue(node).remove(node);
+    }
+
+    private void drainReadBuffers() {
+        for (final ReadBuffer<K, V> buffer : this.readBuffers) {
+            long head = buffer.readCounter;
+            final long tail = buffer.writeCounter.get();
+            for (; head < tail; head++) {
+                final int index = (int) (head & ReadBuffer.MASK);
+                final Node<K, V> node = buffer.buffer.get(index);
+                if (node == null) {
+                    // 書き込み途中。
+                    break;
+                }
+                buffer.buffer.lazySet(index, null);
+                onAccess(node);
+            }
+            buffer.readCounter = head;
+        }
+    }
+
+    private void onAccess(final Node<K, V> node) {
+        this.sketch.increment(node.key);
+        switch (node.queue) {
+        case WINDOW:
+            this.window.moveToLast(node);
+            break;
+        case PROBATION:
+            // 試用区で再び参照されたので保護区へ。
+            this.probation.remove(node);
+            this.protectedQueue.addLast(node);
+            demoteProtected();
+            break;
+        case PROTECTED:
+            this.protectedQueue.moveToLast(node);
+            break;
+        default:
+            // 追い出し済み。
+            break;
+        }
+    }
+
+    private void demoteProtected() {
+        while (this.protectedQueue.weight > this.protectedMaximum) {
+            final Node<K, V> node = this.protectedQueue.first;
+            this.protectedQueue.remove(node);
+            this.probation.addLast(node);
+        }
+    }
+
+    /**
+     * 重みの和が上限以下になるまで追い出す。
+     */
+    private void evict() {
+        while (this.weightedSize > this.maximumWeight) {
+            // 窓から溢れた最古の要素と、本体の最古の要素のうち、参照頻度の低い方を追い出す。
+            final Node<K, V> candidate = (this.window.weight > this.windowMaximum ? this.window.first : null);
+            final Node<K, V> victim = (this.probation.first != null ? this.probation.first : this.protectedQueue.first);
+            final Node<K, V> evicted;
+            if (candidate == null) {
+                evicted = (victim != null ? victim : this.window.first);
+            } else if (victim == null) {
+                evicted = candidate;
+            } else if (this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key)) {
+                evicted = victim;
+            } else {
+                evicted = candidate;
+            }
+            this.data.remove(evicted.key, evicted);
+            unlink(evicted);
+        }
+
+        // 残った窓の溢れを試用区へ。
+        while (this.window.weight > this.windowMaximum) {
+            final Node<K, V> node = this.window.first;
+            this.window.remove(node);
+            this.probation.addLast(node);
+        }
+        demoteProtected();
+    }
+
+}
@@ -0,0 +1,312 @@
+package nippon.kawauso.chiraura.lib.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.test.BiasedRandom;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class ConcurrentWeightedCacheTest {
+
+    private static final Logger LOG = Logger.getLogger(ConcurrentWeightedCacheTest.class.getName());
+
+    private static final ConcurrentWeightedCache.Weigher<int[]> WEIGHER = new ConcurrentWeightedCache.Weigher<int[]>() {
+        @Override
+        public int weigh(final int[] value) {
+            return value.length;
+        }
+    };
+
+    private static int weightOf(final int key) {
+        return 1 + (key * 7919) % 100;
+    }
+
+    /**
+     * 基本操作。
+     */
+    @Test
+    public void testBasic() {
+        final ConcurrentWeightedCache<Integer, int[]> instance = new ConcurrentWeightedCache<>(100, WEIGHER);
+        final int[] value1 = new int[10];
+        final int[] value2 = new int[20];
+        Assert.assertNull(instance.put(1, value1));
+        Assert.assertSame(value1, instance.get(1));
+        Assert.assertTrue(instance.containsKey(1));
+        Assert.assertEquals(10, instance.weightedSize());
+
+        Assert.assertSame(value1, instance.put(1, value2));
+        Assert.assertSame(value2, instance.get(1));
+        Assert.assertEquals(20, instance.weightedSize());
+        Assert.assertEquals(1, instance.size());
+
+        // 上限を超えるのは入れないし、古いのも消す。
+        Assert.assertSame(value2, instance.put(1, new int[101]));
+        Assert.assertNull(instance.get(1));
+        Assert.assertEquals(0, instance.weightedSize());
+
+        Assert.assertNull(instance.put(2, value1));
+        Assert.assertSame(value1, instance.remove(2));
+        Assert.assertNull(instance.remove(2));
+        Assert.assertEquals(0, instance.size());
+        Assert.assertEquals(0, instance.weightedSize());
+    }
+
+    /**
+     * 重みの和が上限を超えず、古い値を返さないかどうか。
+     */
+    @Test
+    public void testRandom() {
+        final int maximumWeight = 1_000;
+        final Random random = new Random(1L);
+        final Map<Integer, int[]> latest = new HashMap<>();
+        final ConcurrentWeightedCache<Integer, int[]> instance = new ConcurrentWeightedCache<>(maximumWeight, WEIGHER);
+        for (int i = 0; i < 100_000; i++) {
+            final Integer key = random.nextInt(200);
+            final int op = random.nextInt(10);
+            if (op < 6) {
+                final int[] value = instance.get(key);
+                if (value != null) {
+                    Assert.assertSame(latest.get(key), value);
+                }
+            } else if (op < 9) {
+                final int[] value = new int[random.nextInt(50)];
+                instance.put(key, value);
+                latest.put(key, value);
+            } else {
+                instance.remove(key);
+                latest.remove(key);
+            }
+            Assert.assertTrue(instance.weightedSize() <= maximumWeight);
+        }
+
+        long sum = 0;
+        int size = 0;
+        for (final Map.Entry<Integer, int[]> entry : latest.entrySet()) {
+            if (instance.containsKey(entry.getKey())) {
+                sum += entry.getValue().length;
+                size++;
+            }
+        }
+        Assert.assertEquals(sum, instance.weightedSize());
+        Assert.assertEquals(size, instance.size());
+    }
+
+    /**
+     * 並列に使っても壊れないかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrency() throws Exception {
+        final int maximumWeight = 1_000;
+        final int numOfThreads = 16;
+        final int numOfLoops = 20_000;
+        final ConcurrentWeightedCache<Integer, int[]> instance = new ConcurrentWeightedCache<>(maximumWeight, WEIGHER);
+        final ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        final List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < numOfThreads; i++) {
+            final long seed = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final Random random = new Random(seed);
+                    for (int j = 0; j < numOfLoops; j++) {
+                        final Integer key = random.nextInt(200);
+                        final int op = random.nextInt(10);
+                        if (op < 7) {
+                            final int[] value = instance.get(key);
+                            if (value != null) {
+                                // 値の長さはキーで決まる。
+                                Assert.assertEquals(weightOf(key), value.length);
+                            }
+                        } else if (op < 9) {
+                            instance.put(key, new int[weightOf(key)]);
+                        } else {
+                            instance.remove(key);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (final Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(instance.weightedSize() <= maximumWeight);
+
+        long sum = 0;
+        int size = 0;
+        for (int key = 0; key < 200; key++) {
+            if (instance.containsKey(key)) {
+                sum += weightOf(key);
+                size++;
+            }
+        }
+        Assert.assertEquals(sum, instance.weightedSize());
+        Assert.assertEquals(size, instance.size());
+    }
+
+    /**
+     * 重み付きの LRU。比較用。
+     */
+    private static final class WeightedLru {
+        private final long maximumWeight;
+        private final Map<Integer, int[]> container;
+        private long weight;
+
+        private WeightedLru(final long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            this.container = new LinkedHashMap<>(16, 0.75F, true);
+            this.weight = 0;
+        }
+
+        private int[] get(final Integer key) {
+            return this.container.get(key);
+        }
+
+        private void put(final Integer key, final int[] value) {
+            final int[] old = this.container.put(key, value);
+            if (old != null) {
+                this.weight -= old.length;
+            }
+            this.weight += value.length;
+            for (final Iterator<int[]> iterator = this.container.values().iterator(); this.weight > this.maximumWeight && iterator.hasNext();) {
+                this.weight -= iterator.next().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 偏りのある参照に 1 度きりの走査を混ぜたときの、重み単位の当たり率を LRU と比べる。
+     */
+    @Test
+    public void testHitRatePerformance() {
+        final int numOfKeys = 10_000;
+        final int numOfLoops = 500_000;
+        long total = 0;
+        for (int key = 0; key < numOfKeys; key++) {
+            total += weightOf(key);
+        }
+        final long maximumWeight = total / 10;
+
+        final ConcurrentWeightedCache<Integer, int[]> instance = new ConcurrentWeightedCache<>(maximumWeight, WEIGHER);
+        final WeightedLru lru = new WeightedLru(maximumWeight);
+        final BiasedRandom bias = new BiasedRandom(new Random(1L));
+        long requested = 0;
+        long instanceHit = 0;
+        long lruHit = 0;
+        int scanKey = numOfKeys;
+        for (int i = 0; i < numOfLoops; i++) {
+            final Integer key;
+            if (i % 4 == 0) {
+                // 二度と参照しない走査。
+                key = scanKey++;
+            } else {
+                key = (int) (bias.next() * numOfKeys);
+            }
+            final int weight = weightOf(key);
+            requested += weight;
+            if (instance.get(key) != null) {
+                instanceHit += weight;
+            } else {
+                instance.put(key, new int[weight]);
+            }
+            if (lru.get(key) != null) {
+                lruHit += weight;
+            } else {
+                lru.put(key, new int[weight]);
+            }
+        }
+        LOG.log(Level.SEVERE, "重み単位の当たり率: {0} (LRU: {1})", new Object[] { String.format("%.3f", (double) instanceHit / requested),
+                String.format("%.3f", (double) lruHit / requested) });
+        Assert.assertTrue(instanceHit > lruHit);
+    }
+
+    /**
+     * 並列に参照する速さを、同期した LinkedHashMap と比べる。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrentReadPerformance() throws Exception {
+        final int numOfKeys = 1_000;
+        final int numOfThreads = 16;
+        final int numOfLoops = 200_000;
+
+        final ConcurrentWeightedCache<Integer, int[]> instance = new ConcurrentWeightedCache<>(Long.MAX_VALUE, WEIGHER);
+        @SuppressWarnings("serial")
+        final Map<Integer, int[]> synchronizedMap = Collections.synchronizedMap(new LinkedHashMap<Integer, int[]>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, int[]> eldest) {
+                return size() > numOfKeys;
+            }
+        });
+        for (int key = 0; key < numOfKeys; key++) {
+            instance.put(key, new int[weightOf(key)]);
+            synchronizedMap.put(key, new int[weightOf(key)]);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        long instanceTime = 0;
+        long mapTime = 0;
+        for (int k = 0; k < 3; k++) {
+            long start = System.nanoTime();
+            runReaders(executor, numOfThreads, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final Random random = new Random();
+                    for (int i = 0; i < numOfLoops; i++) {
+                        Assert.assertNotNull(instance.get(random.nextInt(numOfKeys)));
+                    }
+                    return null;
+                }
+            });
+            instanceTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            runReaders(executor, numOfThreads, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final Random random = new Random();
+                    for (int i = 0; i < numOfLoops; i++) {
+                        Assert.assertNotNull(synchronizedMap.get(random.nextInt(numOfKeys)));
+                    }
+                    return null;
+                }
+            });
+            mapTime = System.nanoTime() - start;
+        }
+        executor.shutdown();
+        final long numOfReads = (long) numOfThreads * numOfLoops;
+        LOG.log(Level.SEVERE, "{0} 並列の参照の単位消費ナノ秒: {1} (同期した LinkedHashMap: {2})", new Object[] { numOfThreads,
+                String.format("%.1f", (double) instanceTime / numOfReads), String.format("%.1f", (double) mapTime / numOfReads) });
+    }
+
+    private static void runReaders(final ExecutorService executor, final int numOfThreads, final Callable<Void> reader) throws Exception {
+        final List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < numOfThreads; i++) {
+            futures.add(executor.submit(reader));
+        }
+        for (final Future<Void> future : futures) {
+            future.get();
+        }
+    }
+
+}
@@ -0,0 +1,479 @@
+package nippon.kawauso.chiraura.lib.container;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 複製を作っても中身を共有する順序付きマップ。
+ * 節を書き換えず、変更のたびに根から変更箇所までの節だけを作り直す (AVL 木)。
+ * そのため、複製は O(1)、追加と削除は O(log n) の節の作成で済み、
+ * 複製元と複製先のどちらを変更してももう一方には影響しない。
+ * 非並列。
+ * ただし、複製同士は別々のスレッドで使って良い。
+ * @author chirauraNoSakusha
+ * @param <K> キーのクラス
+ * @param <V> 値のクラス
+ */
+public final class SharedTreeMap<K, V> extends AbstractMap<K, V> {
+
+    /*
+     * 節は不変。
+     */
+    private static final class Node<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+
+        private Node(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+
+        @Override
+        public K getKey() {
+            return this.key;
+        }
+
+        @Override
+        public V getValue() {
+            return this.value;
+        }
+
+        @Override
+        public V setValue(final V newValue) {
+            throw new UnsupportedOperationException("Immutable node.");
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(this.key) ^ Objects.hashCode(this.value);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return Objects.equals(this.key, other.getKey()) && Objects.equals(this.value, other.getValue());
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
+    }
+
+    private static int height(final Node<?, ?> node) {
+        return (node == null ? 0 : node.height);
+    }
+
+    /**
+     * 平衡を保ちながら節を作る。
+     * left と right の高さの差は 2 以下であること。
+     */
+    private static <K, V> Node<K, V> balance(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+        final int leftHeight = height(left);
+        final int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                // 右回転。
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            } else {
+                // 左右 2 重回転。
+                final Node<K, V> center = left.right;
+                return new Node<>(center.key, center.value, new Node<>(left.key, left.value, left.left, center.left), new Node<>(key, value, center.right,
+                        right));
+            }
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                // 左回転。
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            } else {
+                // 右左 2 重回転。
+                final Node<K, V> center = right.left;
+                return new Node<>(center.key, center.value, new Node<>(key, value, left, center.left), new Node<>(right.key, right.value, center.right,
+                        right.right));
+            }
+        } else {
+            return new Node<>(key, value, left, right);
+        }
+    }
+
+    private final Comparator<? super K> comparator;
+    private Node<K, V> root;
+    private int size;
+
+    // 変更処理の途中で、取り除いたり置き換えたりした値を入れる。
+    private V previous;
+
+    private SharedTreeMap(final Comparator<? super K> comparator, final Node<K, V> root, final int size) {
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * キーの自然順序で並べるものを作成する。
+     */
+    public SharedTreeMap() {
+        this(null, null, 0);
+    }
+
+    /**
+     * 比較器の順序で並べるものを作成する。
+     * @param comparator 比較器
+     */
+    public SharedTreeMap(final Comparator<? super K> comparator) {
+        this(comparator, null, 0);
+    }
+
+    /**
+     * 複製する。
+     * 中身を共有するので O(1)。
+     * @return 複製
+     */
+    public SharedTreeMap<K, V> copy() {
+        return new SharedTreeMap<>(this.comparator, this.root, this.size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(final Object key1, final K key2) {
+        if (this.comparator == null) {
+            return ((Comparable<? super K>) key1).compareTo(key2);
+        } else {
+            return this.comparator.compare((K) key1, key2);
+        }
+    }
+
+    private Node<K, V> find(final Object key) {
+        if (key == null) {
+            throw new NullPointerException("Null key.");
+        }
+        Node<K, V> node = this.root;
+        while (node != null) {
+            final int cmp = compare(key, node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public V get(final Object key) {
+        final Node<K, V> node = find(key);
+        return (node == null ? null : node.value);
+    }
+
+    private Node<K, V> put(final Node<K, V> node, final K key, final V value) {
+        if (node == null) {
+            this.size++;
+            return new Node<>(key, value, null, null);
+        }
+        final int cmp = compare(key, node.key);
+        if (cmp < 0) {
+            final Node<K, V> left = put(node.left, key, value);
+            return (left == node.left ? node : balance(node.key, node.value, left, node.right));
+        } else if (cmp > 0) {
+            final Node<K, V> right = put(node.right, key, value);
+            return (right == node.right ? node : balance(node.key, node.value, node.left, right));
+        } else {
+            this.previous = node.value;
+            if (node.value == value) {
+                return node;
+            }
+            return new Node<>(node.key, value, node.left, node.right);
+        }
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        if (key == null) {
+            throw new NullPointerException("Null key.");
+        }
+        this.previous = null;
+        this.root = put(this.root, key, value);
+        final V old = this.previous;
+        this.previous = null;
+        return old;
+    }
+
+    private Node<K, V> removeFirst(final Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, removeFirst(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> first(final Node<K, V> node) {
+        Node<K, V> current = node;
+        while (current != null && current.left != null) {
+            current = current.left;
+        }
+        return current;
+    }
+
+    private static <K, V> Node<K, V> last(final Node<K, V> node) {
+        Node<K, V> current = node;
+        while (current != null && current.right != null) {
+            current = current.right;
+        }
+        return current;
+    }
+
+    private Node<K, V> remove(final Node<K, V> node, final Object key) {
+        if (node == null) {
+            return null;
+        }
+        final int cmp = compare(key, node.key);
+        if (cmp < 0) {
+            final Node<K, V> left = remove(node.left, key);
+            return (left == node.left ? node : balance(node.key, node.value, left, node.right));
+        } else if (cmp > 0) {
+            final Node<K, V> right = remove(node.right, key);
+            return (right == node.right ? node : balance(node.key, node.value, node.left, right));
+        } else {
+            this.previous = node.value;
+            this.size--;
+            if (node.left == null) {
+                return node.right;
+            } else if (node.right == null) {
+                return node.left;
+            } else {
+                final Node<K, V> next = first(node.right);
+                return balance(next.key, next.value, node.left, removeFirst(node.right));
+            }
+        }
+    }
+
+    @Override
+    public V remove(final Object key) {
+        if (key == null) {
+            throw new NullPointerException("Null key.");
+        }
+        this.previous = null;
+        this.root = remove(this.root, key);
+        final V old = this.previous;
+        this.previous = null;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * @return 最小のキーの要素。
+     *         空なら null
+     */
+    public Map.Entry<K, V> firstEntry() {
+        return first(this.root);
+    }
+
+    /**
+     * @return 最大のキーの要素。
+     *         空なら null
+     */
+    public Map.Entry<K, V> lastEntry() {
+        return last(this.root);
+    }
+
+    /**
+     * 最小のキーの要素を取り除く。
+     * @return 取り除いた要素。
+     *         空なら null
+     */
+    public Map.Entry<K, V> pollFirstEntry() {
+        final Node<K, V> node = first(this.root);
+        if (node != null) {
+            this.root = removeFirst(this.root);
+            this.size--;
+        }
+        return node;
+    }
+
+    /**
+     * @param from 基準のキー
+     * @param inclusive 基準のキーを含めるかどうか
+     * @return 基準以降のキーの値を昇順に並べたもの
+     */
+    public List<V> tailValues(final K from, final boolean inclusive) {
+        final List<V> values = new ArrayList<>();
+        for (final Iterator<Node<K, V>> iterator = new NodeIterator(from, inclusive, false); iterator.hasNext();) {
+            values.add(iterator.next().value);
+        }
+        return values;
+    }
+
+    /**
+     * @param from 基準のキー
+     * @param inclusive 基準のキーを含めるかどうか
+     * @return 基準以降のキーを昇順に並べたもの
+     */
+    List<K> tailKeys(final K from, final boolean inclusive) {
+        final List<K> keys = new ArrayList<>();
+        for (final Iterator<Node<K, V>> iterator = new NodeIterator(from, inclusive, false); iterator.hasNext();) {
+            keys.add(iterator.next().key);
+        }
+        return keys;
+    }
+
+    /**
+     * @return 値をキーの降順に並べたもの
+     */
+    public Iterable<V> descendingValues() {
+        return new Iterable<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                final Iterator<Node<K, V>> base = new NodeIterator(null, true, true);
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return base.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return base.next().value;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Not supported.");
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * 節を順に辿る。
+     * 作成したときの木を辿るので、途中で変更されても影響を受けない。
+     */
+    private final class NodeIterator implements Iterator<Node<K, V>> {
+        private final Deque<Node<K, V>> stack;
+        private final boolean descending;
+
+        /**
+         * @param from 基準のキー。null なら端から
+         * @param inclusive 基準のキーを含めるかどうか
+         * @param descending 降順かどうか
+         */
+        private NodeIterator(final K from, final boolean inclusive, final boolean descending) {
+            this.stack = new ArrayDeque<>();
+            this.descending = descending;
+            Node<K, V> node = SharedTreeMap.this.root;
+            if (from == null) {
+                push(node);
+            } else {
+                // 昇順のみ。
+                while (node != null) {
+                    final int cmp = compare(node.key, from);
+                    if (cmp > 0 || (inclusive && cmp == 0)) {
+                        this.stack.push(node);
+                        node = node.left;
+                    } else {
+                        node = node.right;
+                    }
+                }
+            }
+        }
+
+        private void push(final Node<K, V> node) {
+            for (Node<K, V> current = node; current != null; current = (this.descending ? current.right : current.left)) {
+                this.stack.push(current);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.stack.isEmpty();
+        }
+
+        @Override
+        public Node<K, V> next() {
+            if (this.stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            final Node<K, V> node = this.stack.pop();
+            push(this.descending ? node.left : node.right);
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported.");
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                final Iterator<Node<K, V>> base = new NodeIterator(null, true, false);
+                return new Iterator<Map.Entry<K, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return base.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        return base.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Not supported.");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SharedTreeMap.this.size;
+            }
+        };
+    }
+
+}
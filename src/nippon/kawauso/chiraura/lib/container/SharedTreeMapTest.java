@@ -0,0 +1,193 @@
+package nippon.kawauso.chiraura.lib.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class SharedTreeMapTest {
+
+    private static final Logger LOG = Logger.getLogger(SharedTreeMapTest.class.getName());
+
+    private static void assertSame(final TreeMap<Integer, Integer> expected, final SharedTreeMap<Integer, Integer> instance) {
+        Assert.assertEquals(expected.size(), instance.size());
+        Assert.assertEquals(expected.isEmpty(), instance.isEmpty());
+        Assert.assertEquals(expected, instance);
+        Assert.assertEquals(instance, expected);
+        Assert.assertEquals(expected.hashCode(), instance.hashCode());
+        Assert.assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(instance.values()));
+        if (expected.isEmpty()) {
+            Assert.assertNull(instance.firstEntry());
+            Assert.assertNull(instance.lastEntry());
+        } else {
+            Assert.assertEquals(expected.firstEntry(), instance.firstEntry());
+            Assert.assertEquals(expected.lastEntry(), instance.lastEntry());
+        }
+        final List<Integer> descending = new ArrayList<>();
+        for (final Integer value : instance.descendingValues()) {
+            descending.add(value);
+        }
+        Assert.assertEquals(new ArrayList<>(expected.descendingMap().values()), descending);
+    }
+
+    /**
+     * TreeMap と同じように振る舞うかどうか。
+     */
+    @Test
+    public void testRandom() {
+        final Random random = new Random(1L);
+        final TreeMap<Integer, Integer> expected = new TreeMap<>();
+        final SharedTreeMap<Integer, Integer> instance = new SharedTreeMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            final Integer key = random.nextInt(500);
+            final int op = random.nextInt(10);
+            if (op < 5) {
+                final Integer value = random.nextInt();
+                Assert.assertEquals(expected.put(key, value), instance.put(key, value));
+            } else if (op < 8) {
+                Assert.assertEquals(expected.remove(key), instance.remove(key));
+            } else if (op < 9) {
+                Assert.assertEquals(expected.pollFirstEntry(), instance.pollFirstEntry());
+            } else {
+                final boolean inclusive = random.nextBoolean();
+                Assert.assertEquals(new ArrayList<>(expected.tailMap(key, inclusive).values()), instance.tailValues(key, inclusive));
+            }
+            Assert.assertEquals(expected.get(key), instance.get(key));
+            Assert.assertEquals(expected.containsKey(key), instance.containsKey(key));
+            if (i % 100 == 0) {
+                assertSame(expected, instance);
+            }
+        }
+        assertSame(expected, instance);
+
+        instance.clear();
+        expected.clear();
+        assertSame(expected, instance);
+    }
+
+    /**
+     * 複製と複製元が互いに影響しないかどうか。
+     */
+    @Test
+    public void testCopy() {
+        final Random random = new Random(1L);
+        final List<TreeMap<Integer, Integer>> expecteds = new ArrayList<>();
+        final List<SharedTreeMap<Integer, Integer>> instances = new ArrayList<>();
+        expecteds.add(new TreeMap<Integer, Integer>());
+        instances.add(new SharedTreeMap<Integer, Integer>());
+        for (int i = 0; i < 5_000; i++) {
+            final int index = random.nextInt(instances.size());
+            if (random.nextInt(20) == 0) {
+                expecteds.add(new TreeMap<>(expecteds.get(index)));
+                instances.add(instances.get(index).copy());
+            } else {
+                final Integer key = random.nextInt(200);
+                if (random.nextInt(3) == 0) {
+                    expecteds.get(index).remove(key);
+                    instances.get(index).remove(key);
+                } else {
+                    expecteds.get(index).put(key, i);
+                    instances.get(index).put(key, i);
+                }
+            }
+        }
+        for (int i = 0; i < instances.size(); i++) {
+            assertSame(expecteds.get(i), instances.get(i));
+        }
+    }
+
+    /**
+     * 走査中に変更しても、走査を始めたときの中身を辿るかどうか。
+     */
+    @Test
+    public void testSnapshotIteration() {
+        final SharedTreeMap<Integer, Integer> instance = new SharedTreeMap<>();
+        for (int i = 0; i < 100; i++) {
+            instance.put(i, i);
+        }
+        int count = 0;
+        for (final Map.Entry<Integer, Integer> entry : instance.entrySet()) {
+            Assert.assertEquals(Integer.valueOf(count), entry.getKey());
+            instance.remove(entry.getKey());
+            instance.put(entry.getKey() + 1_000, entry.getValue());
+            count++;
+        }
+        Assert.assertEquals(100, count);
+        Assert.assertEquals(100, instance.size());
+    }
+
+    /**
+     * 昇順に入れて、最小要素から取り除いていっても壊れないかどうか。
+     */
+    @Test
+    public void testSorted() {
+        final SharedTreeMap<Integer, Integer> instance = new SharedTreeMap<>();
+        final int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            instance.put(i, i);
+        }
+        Assert.assertEquals(n, instance.size());
+        for (int i = 0; i < n / 2; i++) {
+            Assert.assertEquals(Integer.valueOf(i), instance.pollFirstEntry().getKey());
+        }
+        Assert.assertEquals(n / 2, instance.tailValues(0, true).size());
+        final Map<Integer, Integer> reference = new HashMap<>();
+        for (int i = n / 2; i < n; i++) {
+            reference.put(i, i);
+        }
+        Assert.assertEquals(reference, instance);
+    }
+
+    /**
+     * 複製して 1 つ変更する速さを TreeMap と比べる。
+     */
+    @Test
+    public void testCopyAndPutPerformance() {
+        final int numOfLoops = 10_000;
+        for (final int size : new int[] { 100, 1_000, 2_000 }) {
+            final List<Integer> keys = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                keys.add(i * 2);
+            }
+            Collections.shuffle(keys, new Random(1L));
+            final TreeMap<Integer, Integer> tree = new TreeMap<>();
+            final SharedTreeMap<Integer, Integer> shared = new SharedTreeMap<>();
+            for (final Integer key : keys) {
+                tree.put(key, key);
+                shared.put(key, key);
+            }
+
+            long treeTime = 0;
+            long sharedTime = 0;
+            for (int k = 0; k < 3; k++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < numOfLoops; i++) {
+                    final TreeMap<Integer, Integer> copy = new TreeMap<>(tree);
+                    copy.put(2 * (i % size) + 1, i);
+                }
+                treeTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < numOfLoops; i++) {
+                    final SharedTreeMap<Integer, Integer> copy = shared.copy();
+                    copy.put(2 * (i % size) + 1, i);
+                }
+                sharedTime = System.nanoTime() - start;
+            }
+            LOG.log(Level.SEVERE, "要素数: {0} 複製と変更の単位消費マイクロ秒: {1} (TreeMap: {2})", new Object[] { size,
+                    String.format("%.3f", sharedTime / (1_000.0 * numOfLoops)), String.format("%.3f", treeTime / (1_000.0 * numOfLoops)) });
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package nippon.kawauso.chiraura.lib.container;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 複製を作っても中身を共有する順序付き集合。
+ * SharedTreeMap のキーだけを使う。
+ * 非並列。
+ * ただし、複製同士は別々のスレッドで使って良い。
+ * @author chirauraNoSakusha
+ * @param <E> 要素のクラス
+ */
+public final class SharedTreeSet<E> extends AbstractSet<E> {
+
+    private final SharedTreeMap<E, Boolean> base;
+
+    private SharedTreeSet(final SharedTreeMap<E, Boolean> base) {
+        this.base = base;
+    }
+
+    /**
+     * 要素の自然順序で並べるものを作成する。
+     */
+    public SharedTreeSet() {
+        this(new SharedTreeMap<E, Boolean>());
+    }
+
+    /**
+     * 比較器の順序で並べるものを作成する。
+     * @param comparator 比較器
+     */
+    public SharedTreeSet(final Comparator<? super E> comparator) {
+        this(new SharedTreeMap<E, Boolean>(comparator));
+    }
+
+    /**
+     * 複製する。
+     * 中身を共有するので O(1)。
+     * @return 複製
+     */
+    public SharedTreeSet<E> copy() {
+        return new SharedTreeSet<>(this.base.copy());
+    }
+
+    @Override
+    public int size() {
+        return this.base.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.base.isEmpty();
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return this.base.containsKey(o);
+    }
+
+    @Override
+    public boolean add(final E e) {
+        return this.base.put(e, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return this.base.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+        this.base.clear();
+    }
+
+    /**
+     * @return 最小の要素
+     * @throws NoSuchElementException 空の場合
+     */
+    public E first() {
+        final Map.Entry<E, Boolean> entry = this.base.firstEntry();
+        if (entry == null) {
+            throw new NoSuchElementException();
+        }
+        return entry.getKey();
+    }
+
+    /**
+     * @return 最大の要素
+     * @throws NoSuchElementException 空の場合
+     */
+    public E last() {
+        final Map.Entry<E, Boolean> entry = this.base.lastEntry();
+        if (entry == null) {
+            throw new NoSuchElementException();
+        }
+        return entry.getKey();
+    }
+
+    /**
+     * @param from 基準の要素
+     * @param inclusive 基準の要素を含めるかどうか
+     * @return 基準以降の要素を昇順に並べたもの
+     */
+    public List<E> tailList(final E from, final boolean inclusive) {
+        return this.base.tailKeys(from, inclusive);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return this.base.keySet().iterator();
+    }
+
+}
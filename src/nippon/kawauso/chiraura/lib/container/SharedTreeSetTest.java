@@ -0,0 +1,75 @@
+package nippon.kawauso.chiraura.lib.container;
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class SharedTreeSetTest {
+
+    /**
+     * TreeSet と同じように振る舞い、複製が影響し合わないかどうか。
+     */
+    @Test
+    public void testRandom() {
+        final Random random = new Random(1L);
+        final TreeSet<Integer> expected = new TreeSet<>();
+        final SharedTreeSet<Integer> instance = new SharedTreeSet<>();
+        SharedTreeSet<Integer> snapshot = instance.copy();
+        TreeSet<Integer> expectedSnapshot = new TreeSet<>(expected);
+        for (int i = 0; i < 10_000; i++) {
+            final Integer e = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(e), instance.remove(e));
+            } else {
+                Assert.assertEquals(expected.add(e), instance.add(e));
+            }
+            Assert.assertEquals(expected.contains(e), instance.contains(e));
+            Assert.assertEquals(expected.size(), instance.size());
+            if (!expected.isEmpty()) {
+                Assert.assertEquals(expected.first(), instance.first());
+                Assert.assertEquals(expected.last(), instance.last());
+            }
+            final boolean inclusive = random.nextBoolean();
+            Assert.assertEquals(new ArrayList<>(expected.tailSet(e, inclusive)), instance.tailList(e, inclusive));
+
+            if (i % 1_000 == 0) {
+                Assert.assertEquals(expectedSnapshot, snapshot);
+                Assert.assertEquals(expectedSnapshot.hashCode(), snapshot.hashCode());
+                snapshot = instance.copy();
+                expectedSnapshot = new TreeSet<>(expected);
+            }
+        }
+        Assert.assertEquals(expected, instance);
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(instance));
+    }
+
+    /**
+     * 空の場合の検査。
+     */
+    @Test
+    public void testEmpty() {
+        final SharedTreeSet<Integer> instance = new SharedTreeSet<>();
+        Assert.assertTrue(instance.isEmpty());
+        Assert.assertTrue(instance.tailList(0, true).isEmpty());
+        try {
+            instance.first();
+            Assert.fail();
+        } catch (final NoSuchElementException e) {
+            // 正常。
+        }
+        try {
+            instance.last();
+            Assert.fail();
+        } catch (final NoSuchElementException e) {
+            // 正常。
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package nippon.kawauso.chiraura.lib.converter;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBuffer から読み込む入力。
+ * 読み込んだ分だけ ByteBuffer の位置が進む。
+ * 同期しないので、複数のスレッドで使う場合は ByteBuffer を duplicate してから渡すこと。
+ * @author chirauraNoSakusha
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(final ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Null buffer.");
+        }
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+        return this.buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        } else if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+        final int size = Math.min(len, this.buffer.remaining());
+        this.buffer.get(b, off, size);
+        return size;
+    }
+
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        final int size = (int) Math.min(n, this.buffer.remaining());
+        this.buffer.position(this.buffer.position() + size);
+        return size;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+
+}
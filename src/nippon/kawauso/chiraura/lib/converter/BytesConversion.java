@@ -5,6 +5,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -697,6 +698,65 @@ public final class BytesConversion {
         }
     }
 
+    /**
+     * データを指定子に従って ByteBuffer から読み込む。
+     * 読み込んだ分だけ input の位置が進む。
+     * @param input データが指定子に従って変換されている ByteBuffer
+     * @param maxByteSize 読み込む最大バイト数
+     * @param fmt 指定子
+     * @param outputs 結果を格納する長さが1以上の配列と復号器
+     * @return 読み込みサイズ
+     * @throws MyRuleException 入力の規約違反
+     */
+    public static int fromBuffer(final ByteBuffer input, final int maxByteSize, final String fmt, final Object... outputs) throws MyRuleException {
+        try {
+            return fromStream(new ByteBufferInputStream(input), maxByteSize, fmt, outputs);
+        } catch (final MyRuleException e) {
+            throw e;
+        } catch (final IOException e) {
+            // ByteBufferInputStream だから、ここには来ない。
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * ByteBuffer から復号する。
+     * 読み込んだ分だけ input の位置が進む。
+     * @param <T> 復元するものの型
+     * @param input 入力
+     * @param maxByteSize 読み込む最大バイト数
+     * @param parser 復号器
+     * @param output 復号したものの格納先
+     * @return 読み込みサイズ
+     * @throws MyRuleException 入力の規約違反
+     */
+    public static <T> int fromBuffer(final ByteBuffer input, final int maxByteSize, final BytesConvertible.Parser<T> parser, final List<? super T> output)
+            throws MyRuleException {
+        try {
+            return parser.fromStream(new ByteBufferInputStream(input), maxByteSize, output);
+        } catch (final MyRuleException e) {
+            throw e;
+        } catch (final IOException e) {
+            // ByteBufferInputStream だから、ここには来ない。
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * ByteBuffer から復号する。
+     * 読み込んだ分だけ input の位置が進む。
+     * @param <T> 復元するものの型
+     * @param input 入力
+     * @param parser 復号器
+     * @return 復号したもの
+     * @throws MyRuleException 入力の規約違反
+     */
+    public static <T> T fromBuffer(final ByteBuffer input, final BytesConvertible.Parser<T> parser) throws MyRuleException {
+        final List<T> output = new ArrayList<>(1);
+        fromBuffer(input, input.remaining(), parser, output);
+        return output.get(0);
+    }
+
     /**
      * バイト列から復号する。
      * @param <T> 復元するものの型
@@ -2,6 +2,7 @@ package nippon.kawauso.chiraura.lib.converter;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import org.junit.Assert;
@@ -94,4 +95,38 @@ public final class BytesConversionTest {
         Assert.assertArrayEquals(new int[] { i }, ((int[][]) outputs[12])[0]);
         Assert.assertArrayEquals(new long[] { l }, ((long[][]) outputs[13])[0]);
     }
+
+    /**
+     * ByteBuffer からの読み込みがバイト列からの読み込みと一致するかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testBuffer() throws Exception {
+        final Random random = new Random();
+        final byte b = (byte) random.nextInt(Byte.MAX_VALUE - Byte.MIN_VALUE);
+        final long l = random.nextLong();
+        final byte[] bytes = new byte[random.nextInt(100)];
+        random.nextBytes(bytes);
+        final String fmt = "blclab";
+
+        final byte[] buff = BytesConversion.toBytes(fmt, b, l, l, bytes);
+        final int offset = random.nextInt(100);
+        final ByteBuffer input = ByteBuffer.allocateDirect(offset + buff.length + 1);
+        input.position(offset);
+        input.put(buff);
+        input.position(offset);
+
+        final byte[] b1 = new byte[1];
+        final long[] l1 = new long[1];
+        final long[] l2 = new long[1];
+        final byte[][] bytes1 = new byte[1][];
+        final int size = BytesConversion.fromBuffer(input, buff.length, fmt, b1, l1, l2, bytes1);
+        Assert.assertEquals(buff.length, size);
+        Assert.assertEquals(offset + buff.length, input.position());
+        Assert.assertEquals(b, b1[0]);
+        Assert.assertEquals(l, l1[0]);
+        Assert.assertEquals(l, l2[0]);
+        Assert.assertArrayEquals(bytes, bytes1[0]);
+    }
+
 }
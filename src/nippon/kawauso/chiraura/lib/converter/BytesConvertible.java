@@ -34,6 +34,7 @@ public interface BytesConvertible {
 
     /**
      * バイト列からの復号器。
+     * ByteBuffer から復号する場合は BytesConversion.fromBuffer を使う。
      * @param <T> 復元対象の型
      */
     public interface Parser<T> {
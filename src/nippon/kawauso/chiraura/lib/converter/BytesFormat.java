@@ -0,0 +1,616 @@
+package nippon.kawauso.chiraura.lib.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import nippon.kawauso.chiraura.lib.StreamFunctions;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+
+/**
+ * BytesConversion の指定子を前もって解釈しておいたもの。
+ * 変換のたびに指定子を解釈せず、基本型を箱詰めせず、読み込んだ値は返り値として返す。
+ * バイト列の形式は BytesConversion と同じ。
+ *
+ * <pre>
+ * private static final BytesFormat FORMAT = BytesFormat.compile("lol");
+ *
+ * FORMAT.newEncoder(output).putLong(a).putObject(b).putLong(c).finish();
+ * FORMAT.newSizer().putLong(a).putObject(b).putLong(c).finish();
+ *
+ * final BytesFormat.Decoder decoder = FORMAT.newDecoder(input, maxByteSize);
+ * final long a = decoder.nextLong();
+ * final B b = decoder.nextObject(B.getParser());
+ * final long c = decoder.nextLong();
+ * final int size = decoder.finish();
+ * </pre>
+ *
+ * 使える指定子は b, s, i, l, cs, ci, cl, o, ab, ao。
+ * 不変。
+ * @author chirauraNoSakusha
+ */
+public final class BytesFormat {
+
+    private static final byte BYTE = 0;
+    private static final byte SHORT = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte FIXED_SHORT = 4;
+    private static final byte FIXED_INT = 5;
+    private static final byte FIXED_LONG = 6;
+    private static final byte OBJECT = 7;
+    private static final byte BYTE_ARRAY = 8;
+    private static final byte OBJECT_ARRAY = 9;
+
+    private static final String[] LABELS = new String[] { "b", "s", "i", "l", "cs", "ci", "cl", "o", "ab", "ao" };
+
+    private final String format;
+    private final byte[] codes;
+
+    private BytesFormat(final String format, final byte[] codes) {
+        this.format = format;
+        this.codes = codes;
+    }
+
+    /**
+     * 指定子を解釈する。
+     * @param format 指定子
+     * @return 解釈したもの
+     */
+    public static BytesFormat compile(final String format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Null format.");
+        }
+        final byte[] buff = new byte[format.length()];
+        int length = 0;
+        boolean isArray = false;
+        boolean isConstant = false;
+        for (int i = 0; i < format.length(); i++) {
+            final char c = format.charAt(i);
+            if (c == 'a') {
+                isArray = true;
+                continue;
+            } else if (c == 'c') {
+                isConstant = true;
+                continue;
+            }
+
+            final byte code;
+            if (!isArray) {
+                if (c == 'b' && !isConstant) {
+                    code = BYTE;
+                } else if (c == 's') {
+                    code = (isConstant ? FIXED_SHORT : SHORT);
+                } else if (c == 'i') {
+                    code = (isConstant ? FIXED_INT : INT);
+                } else if (c == 'l') {
+                    code = (isConstant ? FIXED_LONG : LONG);
+                } else if (c == 'o' && !isConstant) {
+                    code = OBJECT;
+                } else {
+                    throw new IllegalArgumentException("Unsupported label '" + (isConstant ? "c" : "") + c + "' in " + format + ".");
+                }
+            } else {
+                if (c == 'b' && !isConstant) {
+                    code = BYTE_ARRAY;
+                } else if (c == 'o' && !isConstant) {
+                    code = OBJECT_ARRAY;
+                } else {
+                    throw new IllegalArgumentException("Unsupported label 'a" + (isConstant ? "c" : "") + c + "' in " + format + ".");
+                }
+            }
+            buff[length++] = code;
+            isArray = false;
+            isConstant = false;
+        }
+        if (isArray || isConstant) {
+            throw new IllegalArgumentException("Incomplete label at end of " + format + ".");
+        }
+        return new BytesFormat(format, Arrays.copyOf(buff, length));
+    }
+
+    /**
+     * 書き込み器を作る。
+     * @param output 書き込み先
+     * @return 書き込み器
+     */
+    public Encoder newEncoder(final OutputStream output) {
+        if (output == null) {
+            throw new IllegalArgumentException("Null output.");
+        }
+        return new Encoder(output);
+    }
+
+    /**
+     * 書き込まずにバイト数だけ数える書き込み器を作る。
+     * @return バイト数を数える書き込み器
+     */
+    public Sizer newSizer() {
+        return new Sizer();
+    }
+
+    /**
+     * 読み込み器を作る。
+     * @param input 読み込み元
+     * @param maxByteSize 読み込む最大バイト数
+     * @return 読み込み器
+     */
+    public Decoder newDecoder(final InputStream input, final int maxByteSize) {
+        if (input == null) {
+            throw new IllegalArgumentException("Null input.");
+        }
+        return new Decoder(input, maxByteSize);
+    }
+
+    /**
+     * index 番目の指定子を返す。
+     * 可変長の s, i, l を求めたときは固定長の cs, ci, cl も受け付ける。
+     * @param index 位置
+     * @param expected 求める指定子
+     * @return index 番目の指定子
+     */
+    private byte codeAt(final int index, final byte expected) {
+        if (index >= this.codes.length) {
+            throw new IllegalStateException("Too many fields over " + this.format + ".");
+        }
+        final byte code = this.codes[index];
+        if (code != expected && !(expected == SHORT && code == FIXED_SHORT) && !(expected == INT && code == FIXED_INT)
+                && !(expected == LONG && code == FIXED_LONG)) {
+            throw new IllegalStateException("Field " + index + " of " + this.format + " is not '" + LABELS[expected] + "' but '" + LABELS[code] + "'.");
+        }
+        return code;
+    }
+
+    /**
+     * 指定子の順に書き込む。
+     * 非並列。
+     * @author chirauraNoSakusha
+     */
+    public final class Encoder {
+
+        private final OutputStream output;
+        private int index;
+        private int size;
+
+        private Encoder(final OutputStream output) {
+            this.output = output;
+            this.index = 0;
+            this.size = 0;
+        }
+
+        private byte next(final byte expected) {
+            return codeAt(this.index++, expected);
+        }
+
+        /**
+         * b を書き込む。
+         * @param value 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putByte(final byte value) throws IOException {
+            next(BYTE);
+            this.output.write(value);
+            this.size++;
+            return this;
+        }
+
+        /**
+         * s か cs を書き込む。
+         * @param value 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putShort(final short value) throws IOException {
+            if (next(SHORT) == SHORT) {
+                this.size += NumberBytesConversion.toStream(value, this.output);
+            } else {
+                this.size += ShortBytesConversion.toStream(value, this.output);
+            }
+            return this;
+        }
+
+        /**
+         * i か ci を書き込む。
+         * @param value 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putInt(final int value) throws IOException {
+            if (next(INT) == INT) {
+                this.size += NumberBytesConversion.toStream(value, this.output);
+            } else {
+                this.size += IntBytesConversion.toStream(value, this.output);
+            }
+            return this;
+        }
+
+        /**
+         * l か cl を書き込む。
+         * @param value 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putLong(final long value) throws IOException {
+            if (next(LONG) == LONG) {
+                this.size += NumberBytesConversion.toStream(value, this.output);
+            } else {
+                this.size += LongBytesConversion.toStream(value, this.output);
+            }
+            return this;
+        }
+
+        /**
+         * o を書き込む。
+         * @param value 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putObject(final BytesConvertible value) throws IOException {
+            next(OBJECT);
+            this.size += value.toStream(this.output);
+            return this;
+        }
+
+        /**
+         * ab を書き込む。
+         * @param value 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putBytes(final byte[] value) throws IOException {
+            next(BYTE_ARRAY);
+            this.size += NumberBytesConversion.toStream(value.length, this.output);
+            this.output.write(value);
+            this.size += value.length;
+            return this;
+        }
+
+        /**
+         * ao を書き込む。
+         * @param values 値
+         * @return this
+         * @throws IOException 書き込み異常
+         */
+        public Encoder putObjects(final Collection<? extends BytesConvertible> values) throws IOException {
+            next(OBJECT_ARRAY);
+            this.size += NumberBytesConversion.toStream(values.size(), this.output);
+            for (final BytesConvertible value : values) {
+                this.size += value.toStream(this.output);
+            }
+            return this;
+        }
+
+        /**
+         * 書き込みを終える。
+         * @return 書き込んだバイト数
+         */
+        public int finish() {
+            if (this.index != BytesFormat.this.codes.length) {
+                throw new IllegalStateException("Only " + this.index + " fields of " + BytesFormat.this.format + " are written.");
+            }
+            return this.size;
+        }
+
+    }
+
+    /**
+     * 書き込まずに、指定子の順に書き込んだときのバイト数を数える。
+     * 非並列。
+     * @author chirauraNoSakusha
+     */
+    public final class Sizer {
+
+        private int index;
+        private int size;
+
+        private Sizer() {
+            this.index = 0;
+            this.size = 0;
+        }
+
+        private byte next(final byte expected) {
+            return codeAt(this.index++, expected);
+        }
+
+        /**
+         * b を数える。
+         * @param value 値
+         * @return this
+         */
+        public Sizer putByte(final byte value) {
+            next(BYTE);
+            this.size++;
+            return this;
+        }
+
+        /**
+         * s か cs を数える。
+         * @param value 値
+         * @return this
+         */
+        public Sizer putShort(final short value) {
+            if (next(SHORT) == SHORT) {
+                this.size += NumberBytesConversion.byteSize(value);
+            } else {
+                this.size += ShortBytesConversion.BYTE_SIZE;
+            }
+            return this;
+        }
+
+        /**
+         * i か ci を数える。
+         * @param value 値
+         * @return this
+         */
+        public Sizer putInt(final int value) {
+            if (next(INT) == INT) {
+                this.size += NumberBytesConversion.byteSize(value);
+            } else {
+                this.size += IntBytesConversion.BYTE_SIZE;
+            }
+            return this;
+        }
+
+        /**
+         * l か cl を数える。
+         * @param value 値
+         * @return this
+         */
+        public Sizer putLong(final long value) {
+            if (next(LONG) == LONG) {
+                this.size += NumberBytesConversion.byteSize(value);
+            } else {
+                this.size += LongBytesConversion.BYTE_SIZE;
+            }
+            return this;
+        }
+
+        /**
+         * o を数える。
+         * @param value 値
+         * @return this
+         */
+        public Sizer putObject(final BytesConvertible value) {
+            next(OBJECT);
+            this.size += value.byteSize();
+            return this;
+        }
+
+        /**
+         * ab を数える。
+         * @param value 値
+         * @return this
+         */
+        public Sizer putBytes(final byte[] value) {
+            next(BYTE_ARRAY);
+            this.size += NumberBytesConversion.byteSize(value.length) + value.length;
+            return this;
+        }
+
+        /**
+         * ao を数える。
+         * @param values 値
+         * @return this
+         */
+        public Sizer putObjects(final Collection<? extends BytesConvertible> values) {
+            next(OBJECT_ARRAY);
+            this.size += NumberBytesConversion.byteSize(values.size());
+            for (final BytesConvertible value : values) {
+                this.size += value.byteSize();
+            }
+            return this;
+        }
+
+        /**
+         * 数え終える。
+         * @return 書き込んだ場合のバイト数
+         */
+        public int finish() {
+            if (this.index != BytesFormat.this.codes.length) {
+                throw new IllegalStateException("Only " + this.index + " fields of " + BytesFormat.this.format + " are counted.");
+            }
+            return this.size;
+        }
+
+    }
+
+    /**
+     * 指定子の順に読み込む。
+     * 非並列。
+     * @author chirauraNoSakusha
+     */
+    public final class Decoder {
+
+        private final InputStream input;
+        private final int maxByteSize;
+        private int index;
+        private int size;
+
+        // 使い回す作業領域。
+        private final long[] number;
+        private final byte[] numberBuff;
+        private final List<Object> objects;
+
+        private Decoder(final InputStream input, final int maxByteSize) {
+            this.input = input;
+            this.maxByteSize = maxByteSize;
+            this.index = 0;
+            this.size = 0;
+            this.number = new long[1];
+            this.numberBuff = new byte[NumberBytesConversion.MAX_BYTE_SIZE];
+            this.objects = new ArrayList<>(1);
+        }
+
+        private byte next(final byte expected) {
+            return codeAt(this.index++, expected);
+        }
+
+        private void checkSize(final long targetSize) throws MyRuleException {
+            if (targetSize > this.maxByteSize) {
+                throw new MyRuleException("Too large read size ( " + targetSize + " ) over limit ( " + this.maxByteSize + " ).");
+            }
+        }
+
+        private long nextNumber() throws MyRuleException, IOException {
+            this.size += NumberBytesConversion.fromStream(this.input, this.maxByteSize - this.size, this.number, this.numberBuff);
+            return this.number[0];
+        }
+
+        private int nextLength() throws MyRuleException, IOException {
+            final long length = nextNumber();
+            if (length < 0) {
+                throw new MyRuleException("Negative array length ( " + length + " ).");
+            } else if (length > Integer.MAX_VALUE) {
+                throw new MyRuleException("Invalid value ( " + length + " ) for int.");
+            }
+            return (int) length;
+        }
+
+        /**
+         * b を読み込む。
+         * @return 値
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        public byte nextByte() throws MyRuleException, IOException {
+            next(BYTE);
+            checkSize(this.size + 1);
+            final int value = this.input.read();
+            if (value < 0) {
+                throw new MyRuleException("Too short input.");
+            }
+            this.size++;
+            return (byte) value;
+        }
+
+        /**
+         * s か cs を読み込む。
+         * @return 値
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        public short nextShort() throws MyRuleException, IOException {
+            if (next(SHORT) == SHORT) {
+                final long value = nextNumber();
+                if (value < Short.MIN_VALUE || Short.MAX_VALUE < value) {
+                    throw new MyRuleException("Invalid value ( " + value + " ) for short.");
+                }
+                return (short) value;
+            } else {
+                checkSize(this.size + ShortBytesConversion.BYTE_SIZE);
+                final short[] buff = new short[1];
+                this.size += ShortBytesConversion.fromStream(this.input, buff);
+                return buff[0];
+            }
+        }
+
+        /**
+         * i か ci を読み込む。
+         * @return 値
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        public int nextInt() throws MyRuleException, IOException {
+            if (next(INT) == INT) {
+                final long value = nextNumber();
+                if (value < Integer.MIN_VALUE || Integer.MAX_VALUE < value) {
+                    throw new MyRuleException("Invalid value ( " + value + " ) for int.");
+                }
+                return (int) value;
+            } else {
+                checkSize(this.size + IntBytesConversion.BYTE_SIZE);
+                final int[] buff = new int[1];
+                this.size += IntBytesConversion.fromStream(this.input, buff);
+                return buff[0];
+            }
+        }
+
+        /**
+         * l か cl を読み込む。
+         * @return 値
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        public long nextLong() throws MyRuleException, IOException {
+            if (next(LONG) == LONG) {
+                return nextNumber();
+            } else {
+                checkSize(this.size + LongBytesConversion.BYTE_SIZE);
+                this.size += LongBytesConversion.fromStream(this.input, this.number);
+                return this.number[0];
+            }
+        }
+
+        /**
+         * o を読み込む。
+         * @param <T> 読み込むものの型
+         * @param parser 復号器
+         * @return 値
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T nextObject(final BytesConvertible.Parser<T> parser) throws MyRuleException, IOException {
+            next(OBJECT);
+            this.objects.clear();
+            this.size += parser.fromStream(this.input, this.maxByteSize - this.size, this.objects);
+            return (T) this.objects.get(0);
+        }
+
+        /**
+         * ab を読み込む。
+         * @return 値
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        public byte[] nextBytes() throws MyRuleException, IOException {
+            next(BYTE_ARRAY);
+            final int length = nextLength();
+            checkSize(this.size + (long) length);
+            final byte[] value = StreamFunctions.completeRead(this.input, length);
+            this.size += length;
+            return value;
+        }
+
+        /**
+         * ao を読み込む。
+         * @param <T> 読み込むものの型
+         * @param parser 復号器
+         * @param output 読み込んだものの格納先
+         * @throws MyRuleException 規約違反
+         * @throws IOException 読み込み異常
+         */
+        public <T> void nextObjects(final BytesConvertible.Parser<T> parser, final List<? super T> output) throws MyRuleException, IOException {
+            next(OBJECT_ARRAY);
+            final int length = nextLength();
+            for (int i = 0; i < length; i++) {
+                this.size += parser.fromStream(this.input, this.maxByteSize - this.size, output);
+            }
+        }
+
+        /**
+         * 読み込みを終える。
+         * @return 読み込んだバイト数
+         */
+        public int finish() {
+            if (this.index != BytesFormat.this.codes.length) {
+                throw new IllegalStateException("Only " + this.index + " fields of " + BytesFormat.this.format + " are read.");
+            }
+            return this.size;
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append('[').append(this.format)
+                .append(']').toString();
+    }
+
+}
@@ -0,0 +1,144 @@
+package nippon.kawauso.chiraura.lib.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.AddressTest;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class BytesFormatTest {
+
+    private static final String FORMAT = "bsilcscicloabao";
+
+    /**
+     * BytesConversion と同じバイト列になり、元に戻せるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSample() throws Exception {
+        final Random random = new Random(System.nanoTime());
+        for (int k = 0; k < 1_000; k++) {
+            final byte b = (byte) random.nextInt();
+            final short s = (short) random.nextInt();
+            final int i = random.nextInt();
+            final long l = random.nextLong() >> random.nextInt(Long.SIZE);
+            final Address o = AddressTest.newRandomInstance(random);
+            final byte[] ab = new byte[random.nextInt(100)];
+            random.nextBytes(ab);
+            final List<Address> ao = new ArrayList<>();
+            for (int j = random.nextInt(5); j > 0; j--) {
+                ao.add(AddressTest.newRandomInstance(random));
+            }
+
+            final byte[] expected = BytesConversion.toBytes(FORMAT, b, s, i, l, s, i, l, o, ab, ao);
+
+            final BytesFormat instance = BytesFormat.compile(FORMAT);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final int size = instance.newEncoder(output).putByte(b).putShort(s).putInt(i).putLong(l).putShort(s).putInt(i).putLong(l).putObject(o)
+                    .putBytes(ab).putObjects(ao).finish();
+            Assert.assertArrayEquals(expected, output.toByteArray());
+            Assert.assertEquals(expected.length, size);
+            Assert.assertEquals(expected.length, instance.newSizer().putByte(b).putShort(s).putInt(i).putLong(l).putShort(s).putInt(i).putLong(l)
+                    .putObject(o).putBytes(ab).putObjects(ao).finish());
+
+            final BytesFormat.Decoder decoder = instance.newDecoder(new ByteArrayInputStream(expected), expected.length);
+            Assert.assertEquals(b, decoder.nextByte());
+            Assert.assertEquals(s, decoder.nextShort());
+            Assert.assertEquals(i, decoder.nextInt());
+            Assert.assertEquals(l, decoder.nextLong());
+            Assert.assertEquals(s, decoder.nextShort());
+            Assert.assertEquals(i, decoder.nextInt());
+            Assert.assertEquals(l, decoder.nextLong());
+            Assert.assertEquals(o, decoder.nextObject(Address.getParser()));
+            Assert.assertArrayEquals(ab, decoder.nextBytes());
+            final List<Address> ao2 = new ArrayList<>();
+            decoder.nextObjects(Address.getParser(), ao2);
+            Assert.assertEquals(ao, ao2);
+            Assert.assertEquals(expected.length, decoder.finish());
+        }
+    }
+
+    /**
+     * 使い方の誤りの検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testMisuse() throws Exception {
+        for (final String format : Arrays.asList("cb", "co", "as", "ai", "al", "acl", "x", "la", "lc")) {
+            try {
+                BytesFormat.compile(format);
+                Assert.fail(format);
+            } catch (final IllegalArgumentException e) {
+                // 正常。
+            }
+        }
+
+        final BytesFormat instance = BytesFormat.compile("lab");
+        try {
+            instance.newSizer().putBytes(new byte[0]);
+            Assert.fail();
+        } catch (final IllegalStateException e) {
+            // 正常。
+        }
+        try {
+            instance.newSizer().putLong(1L).finish();
+            Assert.fail();
+        } catch (final IllegalStateException e) {
+            // 正常。
+        }
+        try {
+            instance.newSizer().putLong(1L).putBytes(new byte[0]).putLong(1L);
+            Assert.fail();
+        } catch (final IllegalStateException e) {
+            // 正常。
+        }
+
+        // cl は putLong で書ける。
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Assert.assertEquals(LongBytesConversion.BYTE_SIZE, BytesFormat.compile("cl").newEncoder(output).putLong(1L).finish());
+    }
+
+    /**
+     * 規約違反の入力の検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRuleViolation() throws Exception {
+        final BytesFormat instance = BytesFormat.compile("ab");
+        final byte[] bytes = BytesConversion.toBytes("ab", new byte[100]);
+        try {
+            instance.newDecoder(new ByteArrayInputStream(bytes), bytes.length - 1).nextBytes();
+            Assert.fail();
+        } catch (final MyRuleException e) {
+            // 正常。
+        }
+
+        final byte[] negative = BytesConversion.toBytes("l", -1L);
+        try {
+            instance.newDecoder(new ByteArrayInputStream(negative), negative.length).nextBytes();
+            Assert.fail();
+        } catch (final MyRuleException e) {
+            // 正常。
+        }
+
+        final byte[] large = BytesConversion.toBytes("l", Long.MAX_VALUE);
+        try {
+            BytesFormat.compile("i").newDecoder(new ByteArrayInputStream(large), large.length).nextInt();
+            Assert.fail();
+        } catch (final MyRuleException e) {
+            // 正常。
+        }
+    }
+
+}
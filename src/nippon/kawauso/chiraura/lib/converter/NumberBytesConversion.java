@@ -46,6 +46,11 @@ public final class NumberBytesConversion {
         }
     }
 
+    /**
+     * 変換後の最大バイト数。
+     */
+    static final int MAX_BYTE_SIZE = OFFSET_VALUE.length;
+
     // i バイトのときの先頭バイトは (元の値の先頭バイト) | HEAD_PATTERN[i - 1] & AND_MASK[i - 1] となる。
     private static final byte[] HEAD_PATTERN = new byte[9];
     private static final byte[] AND_MASK = new byte[9];
@@ -193,7 +198,20 @@ public final class NumberBytesConversion {
      * @throws IOException 読み込みエラー
      */
     public static int fromStream(final InputStream input, final int maxByteSize, final long[] output) throws MyRuleException, IOException {
-        final byte[] buff = new byte[HEAD_PATTERN.length];
+        return fromStream(input, maxByteSize, output, new byte[MAX_BYTE_SIZE]);
+    }
+
+    /**
+     * 作業領域を使い回して復元する。
+     * @param input 入力
+     * @param maxByteSize 最大読み込みバイト数
+     * @param output 復元した値を格納する長さ1以上の配列
+     * @param buff 長さ MAX_BYTE_SIZE 以上の作業領域
+     * @return 読み込みサイズ
+     * @throws MyRuleException 不正なバイト列だった場合
+     * @throws IOException 読み込みエラー
+     */
+    static int fromStream(final InputStream input, final int maxByteSize, final long[] output, final byte[] buff) throws MyRuleException, IOException {
         StreamFunctions.completeRead(input, buff, 0, 1);
         final int size = decodeSize(buff[0]);
         if (maxByteSize < size) {
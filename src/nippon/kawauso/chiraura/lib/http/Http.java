@@ -142,6 +142,7 @@ public final class Http {
 
         Internal_Server_Error(500),
         Not_Implemented(501),
+        Service_Unavailable(503),
 
         ;
 
@@ -16,6 +16,7 @@ import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -156,6 +157,17 @@ final class Acceptor implements Callable<Void> {
         return null;
     }
 
+    /**
+     * 実行機に断られたので、始めずに後始末する。
+     * @param e 断られた理由
+     */
+    void abort(final Exception e) {
+        LOG.log(Level.WARNING, "{0}: 手が足りないので受け入れを諦めます。", this.acceptedConnection);
+        this.acceptedConnection.close();
+        ConcurrentFunctions.completePut(new AcceptanceError(this.acceptedConnection.getDestination(), e), this.messengerReportSink);
+        this.acceptedConnectionPool.remove(this.acceptedConnection.getIdNumber());
+    }
+
     private boolean isOverConnectionLimit(final int numOfConnections) {
         if (numOfConnections < this.connectionLimit) {
             return false;
@@ -283,16 +295,23 @@ final class Acceptor implements Callable<Void> {
             updateSelf(declaredSelf, destination);
             ConcurrentFunctions.completePut(new ConnectReport(destinationId, destination, connectionType), this.messengerReportSink);
 
-            // 無通信での接続保持期間を設定。
+            // 無通信での接続保持期間と種別ごとの設定。
             this.acceptedConnection.getSocket().setSoTimeout((int) this.connectionTimeout);
+            ConnectionTypes.configure(this.acceptedConnection.getSocket(), connectionType);
 
             // 本格的な送受信の開始。
             final Connection connection = new Connection(this.acceptedConnection.getIdNumber(), destination, destinationId, connectionType,
                     this.acceptedConnection.getSocket());
             this.connectionPool.add(connection);
             LOG.log(Level.FINER, "{0}: {1} と種別 {2} で通信を開始します。", new Object[] { this.acceptedConnection, destination, Integer.toString(connectionType) });
-            connection.setSender(this.executor.submit(new Sender(this.sendQueuePool, this.messengerReportSink, this.connectionPool, this.connectionTimeout,
-                    transceiver, connection, this.keyLifetime, keyPair.getPrivate(), destinationPublicKey, communicationKey)));
+            try {
+                connection.setSender(this.executor.submit(new Sender(this.sendQueuePool, this.messengerReportSink, this.connectionPool, this.connectionTimeout,
+                        transceiver, connection, this.keyLifetime, keyPair.getPrivate(), destinationPublicKey, communicationKey)));
+            } catch (final RejectedExecutionException e) {
+                // 送信係が動かないので、登録を消してから諦める。
+                this.connectionPool.remove(connection.getIdNumber());
+                throw e;
+            }
             this.executor.submit(new Receiver(this.receivedMailSink, this.messengerReportSink, this.limiter, this.connectionTimeout, transceiver, connection,
                     keyPair.getPrivate(), destinationPublicKey, communicationKey));
         } else {
@@ -5,6 +5,7 @@ import java.net.Socket;
 import java.security.KeyPair;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
@@ -134,7 +135,11 @@ final class AcceptorMaster extends Reporter<Void> {
                     this.sendBufferSize, this.connectionTimeout, this.operationTimeout, this.transceiver, connection, this.version, this.versionGapThreshold,
                     this.id, this.keyManager, this.self, this.executor, this.sendQueuePool, this.receivedMailSink, this.limiter, this.connectionPool,
                     this.keyLifetime);
-            this.executor.submit(acceptor);
+            try {
+                this.executor.submit(acceptor);
+            } catch (final RejectedExecutionException e) {
+                acceptor.abort(e);
+            }
         }
 
         return null;
@@ -16,6 +16,7 @@ import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
 import nippon.kawauso.chiraura.lib.connection.BasicConstantTrafficLimiter;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.connection.Limiter;
 import nippon.kawauso.chiraura.lib.connection.PortFunctions;
 import nippon.kawauso.chiraura.lib.connection.PortIgnoringConstantTrafficLimiter;
@@ -32,6 +33,8 @@ final class Boss extends Chief {
 
     // 参照。
     private final ExecutorService executor;
+    // 接続ごとの送受信用。
+    private final ExecutorService connectionExecutor;
 
     private final BlockingQueue<ConnectRequest> connectRequestQueue;
 
@@ -70,18 +73,21 @@ final class Boss extends Chief {
 
     private ServerSocket serverSocket;
 
-    Boss(final ExecutorService executor, final BlockingQueue<ConnectRequest> connectRequestQueue, final BlockingQueue<ReceivedMail> receivedMailSink,
+    Boss(final ExecutorService executor, final ExecutorService connectionExecutor, final BlockingQueue<ConnectRequest> connectRequestQueue, final BlockingQueue<ReceivedMail> receivedMailSink,
             final SendQueuePool sendQueuePool, final BlockingQueue<MessengerReport> messengerReportSink,
             final ConnectionPool<AcceptedConnection> acceptedConnectionPool, final ConnectionPool<ContactingConnection> contactingConnectionPool,
             final ConnectionPool<Connection> connectionPool, final int port, final int receiveBufferSize, final int sendBufferSize,
             final long connectionTimeout, final long operationTimeout, final int messageSizeLimit, final boolean useHttpWrapper,
             final TypeRegistry<Message> registry, final long version, final long versionGapThreshold, final KeyPair id, final long publicKeyLifetime,
             final long commonKeyLifetime, final AtomicReference<InetSocketAddress> self, final boolean portIgnore, final int connectionLimit,
-            final long trafficDuration, final long trafficSizeLimit, final int trafficCountLimit, final long trafficPenalty) {
+            final long trafficDuration, final long trafficSizeLimit, final int trafficCountLimit, final long trafficPenalty,
+            final ConstantLimiters.Type trafficLimiterType) {
         super(new LinkedBlockingQueue<Reporter.Report>());
 
         if (executor == null) {
             throw new IllegalArgumentException("Null executor.");
+        } else if (connectionExecutor == null) {
+            throw new IllegalArgumentException("Null connection executor.");
         } else if (connectRequestQueue == null) {
             throw new IllegalArgumentException("Null connect request queue.");
         } else if (receivedMailSink == null) {
@@ -126,9 +132,12 @@ final class Boss extends Chief {
             throw new IllegalArgumentException("Negative traffic count limit ( " + trafficCountLimit + " ).");
         } else if (trafficPenalty < 0) {
             throw new IllegalArgumentException("Negative traffic penalty ( " + trafficPenalty + " ).");
+        } else if (trafficLimiterType == null) {
+            throw new IllegalArgumentException("Null traffic limiter type.");
         }
 
         this.executor = executor;
+        this.connectionExecutor = connectionExecutor;
 
         this.connectRequestQueue = connectRequestQueue;
 
@@ -158,9 +167,9 @@ final class Boss extends Chief {
         this.acceptedSocketQueue = new LinkedBlockingQueue<>();
         this.transceiver = new Transceiver.Share(messageSizeLimit, useHttpWrapper, registry);
         if (portIgnore) {
-            this.limiter = new PortIgnoringConstantTrafficLimiter(trafficDuration, trafficSizeLimit, trafficCountLimit, trafficPenalty);
+            this.limiter = new PortIgnoringConstantTrafficLimiter(trafficDuration, trafficSizeLimit, trafficCountLimit, trafficPenalty, trafficLimiterType);
         } else {
-            this.limiter = new BasicConstantTrafficLimiter(trafficDuration, trafficSizeLimit, trafficCountLimit, trafficPenalty);
+            this.limiter = new BasicConstantTrafficLimiter(trafficDuration, trafficSizeLimit, trafficCountLimit, trafficPenalty, trafficLimiterType);
         }
         this.keyManager = new PublicKeyManager(publicKeyLifetime);
 
@@ -172,17 +181,17 @@ final class Boss extends Chief {
     }
 
     private AcceptorMaster newAcceptorMaster() {
-        return new AcceptorMaster(getReportQueue(), this.acceptedSocketQueue, this.connectionSerialGenerator, this.executor, this.portIgnore,
-                this.connectionLimit, this.receivedMailSink, this.sendQueuePool, this.limiter, this.messengerReportSink, this.acceptedConnectionPool,
-                this.connectionPool, this.sendBufferSize, this.connectionTimeout, this.operationTimeout, this.transceiver, this.version,
-                this.versionGapThreshold, this.id, this.keyManager, this.commonKeyLifetime, this.self);
+        return new AcceptorMaster(getReportQueue(), this.acceptedSocketQueue, this.connectionSerialGenerator, this.connectionExecutor,
+                this.portIgnore, this.connectionLimit, this.receivedMailSink, this.sendQueuePool, this.limiter, this.messengerReportSink,
+                this.acceptedConnectionPool, this.connectionPool, this.sendBufferSize, this.connectionTimeout, this.operationTimeout, this.transceiver,
+                this.version, this.versionGapThreshold, this.id, this.keyManager, this.commonKeyLifetime, this.self);
     }
 
     private ContactorMaster newContactorMaster() {
-        return new ContactorMaster(getReportQueue(), this.connectRequestQueue, this.connectionSerialGenerator, this.executor, this.receivedMailSink,
-                this.sendQueuePool, this.limiter, this.messengerReportSink, this.contactingConnectionPool, this.connectionPool, this.receiveBufferSize,
-                this.sendBufferSize, this.connectionTimeout, this.operationTimeout, this.transceiver, this.version, this.versionGapThreshold, this.port,
-                this.id, this.keyManager, this.commonKeyLifetime, this.self);
+        return new ContactorMaster(getReportQueue(), this.connectRequestQueue, this.connectionSerialGenerator, this.connectionExecutor,
+                this.receivedMailSink, this.sendQueuePool, this.limiter, this.messengerReportSink, this.contactingConnectionPool, this.connectionPool,
+                this.receiveBufferSize, this.sendBufferSize, this.connectionTimeout, this.operationTimeout, this.transceiver, this.version,
+                this.versionGapThreshold, this.port, this.id, this.keyManager, this.commonKeyLifetime, this.self);
     }
 
     @Override
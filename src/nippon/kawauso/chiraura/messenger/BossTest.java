@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
@@ -128,11 +129,12 @@ public final class BossTest {
      */
     @Test
     public void testSample() throws Exception {
-        final Boss instance = new Boss(this.executor, this.subjectConnectRequestQueue, this.subjectReceivedMailQueue, this.subjectSendQueuePool,
+        final Boss instance = new Boss(this.executor, this.executor, this.subjectConnectRequestQueue, this.subjectReceivedMailQueue, this.subjectSendQueuePool,
                 this.subjectMessengerReportQueue, this.subjectAcceptedConnectionPool, this.subjectContactingConnectionPool, this.subjectConnectionPool,
                 subjectPort, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit, http, registry, version,
                 versionGapThreshold,
-                subjectId, publicKeyLifetime, commonKeyLifetime, this.subjectSelf, portIgnore, connectionLimit, duration, sizeLimit, countLimit, penalty);
+                subjectId, publicKeyLifetime, commonKeyLifetime, this.subjectSelf, portIgnore, connectionLimit, duration, sizeLimit, countLimit, penalty,
+                ConstantLimiters.Type.LIST);
         this.executor.submit(instance);
 
         contactorTest(null); // ループバック。
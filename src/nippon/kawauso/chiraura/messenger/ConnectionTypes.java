@@ -1,11 +1,19 @@
 package nippon.kawauso.chiraura.messenger;
 
+import java.net.Socket;
+import java.net.SocketException;
+
 /**
  * 接続種別の指針。
+ * 種別ごとに別の接続と送信待ち行列を使うので、
+ * DATA で大きな言付けを送っている間も CONTROL の言付けは待たされない。
  * @author chirauraNoSakusha
  */
 public final class ConnectionTypes {
 
+    // インスタンス化防止。
+    private ConnectionTypes() {}
+
     /**
      * 素。
      */
@@ -13,13 +21,27 @@ public final class ConnectionTypes {
 
     /**
      * 制御。
+     * 経路探索やデータ片の読み書きのような、利用者を待たせる通信。
+     * 利用者の読み書きは、データ片が大きくてもこちらで送る。
      */
     public static final int CONTROL = DEFAULT;
 
     /**
      * データ。
+     * 複製や在庫確認のような、大きくて急がない通信。
+     * 通信相手 1 つにつき接続が CONTROL の分と合わせて最大 4 本 (双方向に 2 本ずつ) になる。
+     */
+    public static final int DATA = CONTROL + 1;
+
+    /**
+     * 種別に合わせて接続を設定する。
+     * DATA 以外は小さな言付けをすぐ送れるように、送信をまとめない。
+     * @param socket 接続
+     * @param type 接続種別
+     * @throws SocketException 設定できなかった場合
      */
-    public static final int DATA = CONTROL;
-    // TODO CONTROL と変えてもいいか？でも、接続数が。
+    static void configure(final Socket socket, final int type) throws SocketException {
+        socket.setTcpNoDelay(type != DATA);
+    }
 
 }
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
@@ -155,6 +156,17 @@ final class Contactor implements Callable<Void> {
         return null;
     }
 
+    /**
+     * 実行機に断られたので、始めずに後始末する。
+     * @param e 断られた理由
+     */
+    void abort(final Exception e) {
+        LOG.log(Level.WARNING, "{0}: 手が足りないので接続を諦めます。", this.contactingConnection);
+        ConcurrentFunctions.completePut(new ContactError(this.contactingConnection.getDestination(), e), this.messengerReportSink);
+        errorAction();
+        this.contactingConnectionPool.remove(this.contactingConnection.getIdNumber());
+    }
+
     private void errorAction() {
         this.contactingConnection.close();
         // キューの削除。
@@ -287,8 +299,9 @@ final class Contactor implements Callable<Void> {
         updateSelf(declaredSelf, this.contactingConnection.getDestination());
         ConcurrentFunctions.completePut(new ConnectReport(destinationId, destination, this.contactingConnection.getType()), this.messengerReportSink);
 
-        // 受信の時間制限を設定。
+        // 受信の時間制限と種別ごとの設定。
         this.contactingConnection.getSocket().setSoTimeout((int) this.connectionTimeout);
+        ConnectionTypes.configure(this.contactingConnection.getSocket(), this.contactingConnection.getType());
 
         // 本格的な送受信の開始。
         final Connection connection = new Connection(this.contactingConnection.getIdNumber(), this.contactingConnection.getDestination(), destinationId,
@@ -300,8 +313,14 @@ final class Contactor implements Callable<Void> {
         }
         LOG.log(Level.FINER, "{0}: {1} との種別 {2} での通信を開始します。",
                 new Object[] { this.contactingConnection, this.contactingConnection.getDestination(), Integer.toString(this.contactingConnection.getType()) });
-        connection.setSender(this.executor.submit(new Sender(this.sendQueuePool, this.messengerReportSink, this.connectionPool, this.connectionTimeout,
-                transceiver, connection, this.keyLifetime, keyPair.getPrivate(), destinationPublicKey, communicationKey)));
+        try {
+            connection.setSender(this.executor.submit(new Sender(this.sendQueuePool, this.messengerReportSink, this.connectionPool, this.connectionTimeout,
+                    transceiver, connection, this.keyLifetime, keyPair.getPrivate(), destinationPublicKey, communicationKey)));
+        } catch (final RejectedExecutionException e) {
+            // 送信係が動かないので、登録を消してから諦める。
+            this.connectionPool.remove(connection.getIdNumber());
+            throw e;
+        }
         this.executor.submit(new Receiver(this.receivedMailSink, this.messengerReportSink, this.limiter, this.connectionTimeout, transceiver, connection,
                 keyPair.getPrivate(), destinationPublicKey, communicationKey));
     }
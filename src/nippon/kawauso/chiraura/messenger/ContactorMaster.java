@@ -4,6 +4,7 @@ import java.net.InetSocketAddress;
 import java.security.KeyPair;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
@@ -134,7 +135,11 @@ final class ContactorMaster extends Reporter<Void> {
                     this.connectionTimeout, this.operationTimeout, this.transceiver, connection, this.version, this.versionGapThreshold, this.port,
                     this.id, this.keyManager, this.self, this.executor, this.sendQueuePool, this.receivedMailSink, this.limiter, this.connectionPool,
                     this.keyLifetime);
-            this.executor.submit(contactor);
+            try {
+                this.executor.submit(contactor);
+            } catch (final RejectedExecutionException e) {
+                contactor.abort(e);
+            }
         }
 
         return null;
@@ -3,6 +3,8 @@ package nippon.kawauso.chiraura.messenger;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -14,25 +16,83 @@ import javax.crypto.NoSuchPaddingException;
  */
 final class CryptographicFunctions {
 
+    /*
+     * Cipher.getInstance はプロバイダを探すので重い。
+     * 送受信は接続ごとのスレッドで行うので、スレッドごとに Cipher を使い回す。
+     * 鍵が変わったとき (鍵の更新や別の相手) だけ init し直す。
+     * doFinal が終われば init 直後の状態に戻るので、同じ鍵なら init し直す必要は無い。
+     */
+
+    /**
+     * 使い回す Cipher と、それを init した鍵。
+     */
+    private static final class Context {
+        private final Cipher cipher;
+        private Key key;
+
+        private Context(final Cipher cipher) {
+            this.cipher = cipher;
+            this.key = null;
+        }
+    }
+
+    private static final ThreadLocal<Map<String, Context>> ENCRYPTERS = new ThreadLocal<Map<String, Context>>() {
+        @Override
+        protected Map<String, Context> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private static final ThreadLocal<Map<String, Context>> DECRYPTERS = new ThreadLocal<Map<String, Context>>() {
+        @Override
+        protected Map<String, Context> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
     // インスタンス化防止。
     private CryptographicFunctions() {}
 
+    private static Cipher getCipher(final ThreadLocal<Map<String, Context>> pool, final int mode, final Key key) throws NoSuchAlgorithmException,
+            NoSuchPaddingException, InvalidKeyException {
+        final Map<String, Context> contexts = pool.get();
+        Context context = contexts.get(key.getAlgorithm());
+        if (context == null) {
+            context = new Context(Cipher.getInstance(key.getAlgorithm()));
+            contexts.put(key.getAlgorithm(), context);
+        }
+        if (context.key != key) {
+            // 失敗したときに古い鍵のままだと思わないように。
+            context.key = null;
+            context.cipher.init(mode, key);
+            context.key = key;
+        }
+        return context.cipher;
+    }
+
+    private static void discard(final ThreadLocal<Map<String, Context>> pool, final Key key) {
+        // 失敗した Cipher の状態は保証されないので捨てる。
+        pool.get().remove(key.getAlgorithm());
+    }
+
     static byte[] encrypt(final Key key, final byte[] input) {
+        return encrypt(key, input, 0, input.length);
+    }
+
+    static byte[] encrypt(final Key key, final byte[] input, final int offset, final int length) {
         try {
-            final Cipher encrypter = Cipher.getInstance(key.getAlgorithm());
-            encrypter.init(Cipher.ENCRYPT_MODE, key);
-            return encrypter.doFinal(input);
+            return getCipher(ENCRYPTERS, Cipher.ENCRYPT_MODE, key).doFinal(input, offset, length);
         } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException e) {
+            discard(ENCRYPTERS, key);
             throw new IllegalArgumentException(e);
         }
     }
 
     static byte[] decrypt(final Key key, final byte[] input) {
         try {
-            final Cipher decrypter = Cipher.getInstance(key.getAlgorithm());
-            decrypter.init(Cipher.DECRYPT_MODE, key);
-            return decrypter.doFinal(input);
+            return getCipher(DECRYPTERS, Cipher.DECRYPT_MODE, key).doFinal(input);
         } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException e) {
+            discard(DECRYPTERS, key);
             throw new IllegalArgumentException(e);
         }
     }
@@ -23,13 +23,15 @@ final class GZippedEncryptedEnvelope extends SkeletalEncryptedEnvelope<GZippedEn
         super(new GZippedEnvelope(mail, registry), encryptionKey);
     }
 
-    static BytesConvertible.Parser<GZippedEncryptedEnvelope> getParser(final TypeRegistry<Message> registry, final Key decryptionKey) {
+    static BytesConvertible.Parser<GZippedEncryptedEnvelope> getParser(final TypeRegistry<Message> registry, final Key decryptionKey,
+            final int plainSizeLimit) {
         return new BytesConvertible.Parser<GZippedEncryptedEnvelope>() {
             @Override
             public int fromStream(final InputStream input, final int maxByteSize, final List<? super GZippedEncryptedEnvelope> output) throws MyRuleException,
                     IOException {
                 final List<SkeletalEncryptedEnvelope.Proxy<GZippedEnvelope>> proxy = new ArrayList<>(1);
-                final int size = Proxy.getParser(decryptionKey, GZippedEnvelope.getParser(registry)).fromStream(input, maxByteSize, proxy);
+                final int size = Proxy.getParser(decryptionKey, GZippedEnvelope.getParser(registry, plainSizeLimit))
+                        .fromStream(input, maxByteSize, proxy);
                 output.add(new GZippedEncryptedEnvelope(proxy.get(0)));
                 return size;
             }
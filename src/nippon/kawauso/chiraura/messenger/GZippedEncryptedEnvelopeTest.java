@@ -1,19 +1,29 @@
 package nippon.kawauso.chiraura.messenger;
 
+import java.io.ByteArrayOutputStream;
 import java.security.Key;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
 
+import org.junit.Assert;
+import org.junit.Test;
+
 /**
  * @author chirauraNoSakusha
  */
 public final class GZippedEncryptedEnvelopeTest extends BytesConvertibleTest<GZippedEncryptedEnvelope> {
 
+    private static final Logger LOG = Logger.getLogger(GZippedEncryptedEnvelopeTest.class.getName());
+
     private final TypeRegistry<Message> registry;
     private final Key commonKey;
 
@@ -49,7 +59,7 @@ public final class GZippedEncryptedEnvelopeTest extends BytesConvertibleTest<GZi
 
     @Override
     protected BytesConvertible.Parser<GZippedEncryptedEnvelope> getParser() {
-        return GZippedEncryptedEnvelope.getParser(this.registry, this.commonKey);
+        return GZippedEncryptedEnvelope.getParser(this.registry, this.commonKey, Integer.MAX_VALUE);
     }
 
     @Override
@@ -64,4 +74,50 @@ public final class GZippedEncryptedEnvelopeTest extends BytesConvertibleTest<GZi
         return new GZippedEncryptedEnvelope(mail, this.registry, this.commonKey);
     }
 
+    private static List<Message> newMail(final int size, final Random random) {
+        final StringBuilder buff = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            buff.append((char) ('a' + random.nextInt(4)));
+        }
+        final List<Message> mail = new ArrayList<>(1);
+        mail.add(new TestMessage(buff.toString()));
+        return mail;
+    }
+
+    private void sealAndParse(final String label, final List<Message> mail, final int loop) throws Exception {
+        final BytesConvertible.Parser<GZippedEncryptedEnvelope> parser = getParser();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long seal = 0;
+        long parse = 0;
+        for (int i = 0; i < loop; i++) {
+            output.reset();
+            long start = System.nanoTime();
+            (new GZippedEncryptedEnvelope(mail, this.registry, this.commonKey)).toStream(output);
+            seal += System.nanoTime() - start;
+
+            final byte[] bytes = output.toByteArray();
+            start = System.nanoTime();
+            final GZippedEncryptedEnvelope envelope = BytesConversion.fromBytes(bytes, parser);
+            parse += System.nanoTime() - start;
+            Assert.assertEquals(mail, envelope.getMail());
+        }
+        LOG.log(Level.SEVERE, "{0}: 回数: {1} 封入単位消費マイクロ秒: {2} 開封単位消費マイクロ秒: {3}", new Object[] { label, loop,
+                String.format("%.2f", seal / (1_000.0 * loop)), String.format("%.2f", parse / (1_000.0 * loop)) });
+    }
+
+    /**
+     * 封入と開封の性能検査。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testSealPerformance() throws Exception {
+        final Random random = new Random(12345L);
+        // 温め。
+        sealAndParse("温め", newMail(100, random), 10_000);
+
+        sealAndParse("制御 (100 B)", newMail(100, random), 50_000);
+        sealAndParse("中 (4 KB)", newMail(4 * 1024, random), 10_000);
+        sealAndParse("大 (256 KB)", newMail(256 * 1024, random), 200);
+    }
+
 }
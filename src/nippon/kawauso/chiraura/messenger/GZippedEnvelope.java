@@ -7,9 +7,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 import java.util.zip.ZipException;
 
 import nippon.kawauso.chiraura.lib.converter.BytesConversion;
@@ -44,43 +50,203 @@ final class GZippedEnvelope implements Envelope {
     private static final int PLAIN_FLAG = 0;
     private static final int GZIP_FLAG = 1;
 
-    private static byte[] getGZippedBytes(final byte[] plain) {
-        final ByteArrayOutputStream buff = new ByteArrayOutputStream();
-        try (final GZIPOutputStream gZipper = new GZIPOutputStream(buff)) {
-            gZipper.write(plain);
-            gZipper.finish();
-        } catch (final IOException ignored) {
-            // ここには来ないはず。
+    /*
+     * GZIPOutputStream や GZIPInputStream は毎回 Deflater や Inflater を作るので重い。
+     * なので、生の Deflater と Inflater を使い回し、gzip の頭と尻尾は自前で付け外しする。
+     * 出来上がるのは普通の gzip なので、相手が GZIPInputStream で読んでも問題無い。
+     * 使い回しは全接続で共有し、数を制限する。
+     */
+
+    private static final int POOL_CAPACITY = 16;
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_CAPACITY);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final byte[] GZIP_HEADER = new byte[] { (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    // 封筒は不変なので、変換結果を覚えておく。
+    private volatile byte[] encoded;
+
+    /**
+     * gzip で圧縮する。
+     * @param plain 圧縮するバイト列
+     * @return 圧縮したバイト列。
+     *         圧縮しても小さくならない場合は null
+     */
+    private static byte[] gZip(final byte[] plain) {
+        // 小さくならないなら要らないので、元より大きくなった時点で止める。
+        final byte[] buff = new byte[plain.length];
+        if (buff.length < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE) {
+            return null;
+        }
+        System.arraycopy(GZIP_HEADER, 0, buff, 0, GZIP_HEADER_SIZE);
+        final int limit = buff.length - GZIP_TRAILER_SIZE;
+        int size = GZIP_HEADER_SIZE;
+
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
         }
-        return buff.toByteArray();
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (size >= limit) {
+                    return null;
+                }
+                size += deflater.deflate(buff, size, limit - size);
+            }
+        } finally {
+            deflater.reset();
+            if (!DEFLATERS.offer(deflater)) {
+                deflater.end();
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(plain, 0, plain.length);
+        writeIntLe(buff, size, (int) crc.getValue());
+        writeIntLe(buff, size + 4, plain.length);
+        size += GZIP_TRAILER_SIZE;
+        return Arrays.copyOf(buff, size);
+    }
+
+    private static void writeIntLe(final byte[] buff, final int offset, final int value) {
+        buff[offset] = (byte) value;
+        buff[offset + 1] = (byte) (value >> 8);
+        buff[offset + 2] = (byte) (value >> 16);
+        buff[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static int readIntLe(final byte[] buff, final int offset) {
+        return (buff[offset] & 0xff) | (buff[offset + 1] & 0xff) << 8 | (buff[offset + 2] & 0xff) << 16 | (buff[offset + 3] & 0xff) << 24;
+    }
+
+    private static MyRuleException tooLarge(final int sizeLimit) {
+        return new MyRuleException("Too large plain size exceeding limit ( " + sizeLimit + " ).");
+    }
+
+    /**
+     * gzip を解凍する。
+     * @param gZipped gzip のバイト列
+     * @param sizeLimit 解凍後の大きさの上限
+     * @return 解凍したバイト列
+     * @throws MyRuleException gzip でなかった場合、解凍後の大きさが上限を超える場合
+     * @throws IOException 読み込み異常
+     */
+    private static byte[] gUnzip(final byte[] gZipped, final int sizeLimit) throws MyRuleException, IOException {
+        if (gZipped.length < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE || (gZipped[0] & 0xff | (gZipped[1] & 0xff) << 8) != GZIP_MAGIC
+                || gZipped[2] != Deflater.DEFLATED) {
+            throw new MyRuleException("Not gzip format.");
+        } else if (gZipped[3] != 0) {
+            // 付加情報付きは自前で読まない。
+            return gUnzipByStream(gZipped, sizeLimit);
+        }
+
+        final int crcValue = readIntLe(gZipped, gZipped.length - GZIP_TRAILER_SIZE);
+        final int plainSize = readIntLe(gZipped, gZipped.length - 4);
+        if ((plainSize & 0xffffffffL) > sizeLimit) {
+            // 正しい gzip なら解凍しても上限を超える。
+            throw tooLarge(sizeLimit);
+        }
+        // 尻尾は信用しないで、小さめに始めて足りなければ上限まで増やす。
+        byte[] buff = new byte[(int) Math.min(plainSize & 0xffffffffL, 8L * gZipped.length + 1024)];
+        int size = 0;
+
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.setInput(gZipped, GZIP_HEADER_SIZE, gZipped.length - GZIP_HEADER_SIZE);
+            while (!inflater.finished()) {
+                if (size == buff.length) {
+                    if (size >= sizeLimit) {
+                        // 圧縮爆弾かもしれない。
+                        throw tooLarge(sizeLimit);
+                    }
+                    buff = Arrays.copyOf(buff, (int) Math.min(Math.max(2L * buff.length, 1024L), sizeLimit));
+                }
+                final int n = inflater.inflate(buff, size, buff.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new MyRuleException("Broken gzip.");
+                }
+                size += n;
+            }
+            if (inflater.getRemaining() != GZIP_TRAILER_SIZE) {
+                // 複数の塊から成る gzip。
+                return gUnzipByStream(gZipped, sizeLimit);
+            }
+        } catch (final DataFormatException e) {
+            throw new MyRuleException(e);
+        } finally {
+            inflater.reset();
+            if (!INFLATERS.offer(inflater)) {
+                inflater.end();
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(buff, 0, size);
+        if ((int) crc.getValue() != crcValue || size != plainSize) {
+            throw new MyRuleException("Broken gzip trailer.");
+        }
+        return (size == buff.length ? buff : Arrays.copyOf(buff, size));
+    }
+
+    private static byte[] gUnzipByStream(final byte[] gZipped, final int sizeLimit) throws MyRuleException, IOException {
+        try (final InputStream input = new GZIPInputStream(new ByteArrayInputStream(gZipped))) {
+            final ByteArrayOutputStream buff = new ByteArrayOutputStream();
+            final byte[] part = new byte[8192];
+            for (int n = input.read(part); n >= 0; n = input.read(part)) {
+                if (buff.size() + (long) n > sizeLimit) {
+                    throw tooLarge(sizeLimit);
+                }
+                buff.write(part, 0, n);
+            }
+            return buff.toByteArray();
+        } catch (final ZipException | EOFException e) {
+            throw new MyRuleException(e);
+        }
+    }
+
+    private byte[] encode() {
+        byte[] encoded = this.encoded;
+        if (encoded == null) {
+            final byte[] plain = BytesConversion.toBytes(this.base);
+            final byte[] gZipped = gZip(plain);
+            if (gZipped == null) {
+                encoded = BytesConversion.toBytes("iab", PLAIN_FLAG, plain);
+            } else {
+                encoded = BytesConversion.toBytes("iab", GZIP_FLAG, gZipped);
+            }
+            this.encoded = encoded;
+        }
+        return encoded;
     }
 
     @Override
     public int byteSize() {
-        /*
-         * 実際に使うときはバイト列を保存する EncryptedEnvelope に入れるから問題無い。
-         */
-        final byte[] plain = BytesConversion.toBytes(this.base);
-        final byte[] gZipped = getGZippedBytes(plain);
-        if (plain.length <= gZipped.length) {
-            return BytesConversion.byteSize("iab", PLAIN_FLAG, plain);
-        } else {
-            return BytesConversion.byteSize("iab", GZIP_FLAG, gZipped);
-        }
+        return encode().length;
     }
 
     @Override
     public int toStream(final OutputStream output) throws IOException {
-        final byte[] plain = BytesConversion.toBytes(this.base);
-        final byte[] gZipped = getGZippedBytes(plain);
-        if (plain.length <= gZipped.length) {
-            return BytesConversion.toStream(output, "iab", PLAIN_FLAG, plain);
-        } else {
-            return BytesConversion.toStream(output, "iab", GZIP_FLAG, gZipped);
-        }
+        final byte[] encoded = encode();
+        output.write(encoded);
+        return encoded.length;
     }
 
-    static BytesConvertible.Parser<GZippedEnvelope> getParser(final TypeRegistry<Message> registry) {
+    /**
+     * 復号器を返す。
+     * @param registry メッセージの型の登記簿
+     * @param plainSizeLimit 解凍後の大きさの上限。
+     *            圧縮爆弾で記憶領域を使い果たさないように、通信係のメッセージの制限サイズを渡す
+     * @return 復号器
+     */
+    static BytesConvertible.Parser<GZippedEnvelope> getParser(final TypeRegistry<Message> registry, final int plainSizeLimit) {
         return new BytesConvertible.Parser<GZippedEnvelope>() {
             @Override
             public int fromStream(final InputStream input, final int maxByteSize, final List<? super GZippedEnvelope> output) throws MyRuleException,
@@ -89,23 +255,18 @@ final class GZippedEnvelope implements Envelope {
                 final byte[][] bytes = new byte[1][];
                 final int size = BytesConversion.fromStream(input, maxByteSize, "iab", flag, bytes);
 
-                final InputStream baseInput;
+                final byte[] plain;
                 if (flag[0] == PLAIN_FLAG) {
-                    baseInput = new ByteArrayInputStream(bytes[0]);
+                    plain = bytes[0];
                 } else if (flag[0] == GZIP_FLAG) {
                     // 解凍。
-                    try {
-                        baseInput = new GZIPInputStream(new ByteArrayInputStream(bytes[0]));
-                    } catch (final ZipException | EOFException e) {
-                        throw new MyRuleException(e);
-                    }
+                    plain = gUnzip(bytes[0], plainSizeLimit);
                 } else {
                     throw new MyRuleException("Invalid flag ( " + flag[0] + " ).");
                 }
 
                 final List<PlainEnvelope> base = new ArrayList<>(1);
-                PlainEnvelope.getParser(registry).fromStream(baseInput, Integer.MAX_VALUE, base);
-                baseInput.close();
+                PlainEnvelope.getParser(registry).fromStream(new ByteArrayInputStream(plain), plain.length, base);
 
                 output.add(new GZippedEnvelope(base.get(0)));
                 return size;
@@ -1,12 +1,20 @@
 package nippon.kawauso.chiraura.messenger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertibleTest;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+
+import org.junit.Assert;
+import org.junit.Test;
 
 /**
  * @author chirauraNoSakusha
@@ -46,7 +54,7 @@ public final class GZippedEnvelopeTest extends BytesConvertibleTest<GZippedEnvel
 
     @Override
     protected BytesConvertible.Parser<GZippedEnvelope> getParser() {
-        return GZippedEnvelope.getParser(this.registry);
+        return GZippedEnvelope.getParser(this.registry, Integer.MAX_VALUE);
     }
 
     @Override
@@ -61,4 +69,59 @@ public final class GZippedEnvelopeTest extends BytesConvertibleTest<GZippedEnvel
         return new GZippedEnvelope(mail, this.registry);
     }
 
+    private static byte[] gZip(final byte[] plain) throws Exception {
+        final ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        try (final GZIPOutputStream output = new GZIPOutputStream(buff)) {
+            output.write(plain);
+        }
+        return buff.toByteArray();
+    }
+
+    private void checkTooLarge(final byte[] gZipped, final int sizeLimit) throws Exception {
+        final byte[] encoded = BytesConversion.toBytes("iab", 1, gZipped);
+        try {
+            GZippedEnvelope.getParser(this.registry, sizeLimit).fromStream(new ByteArrayInputStream(encoded), encoded.length,
+                    new ArrayList<GZippedEnvelope>(1));
+            Assert.fail();
+        } catch (final MyRuleException e) {
+            // 成功。
+        }
+    }
+
+    /**
+     * 解凍後の大きさが上限を超える gzip を断るかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testTooLarge() throws Exception {
+        final int sizeLimit = 64 * 1024;
+        final byte[] bomb = gZip(new byte[16 * 1024 * 1024]);
+        Assert.assertTrue(bomb.length < sizeLimit);
+        checkTooLarge(bomb, sizeLimit);
+
+        // 尻尾の大きさを偽っても断る。
+        final byte[] liar = bomb.clone();
+        liar[liar.length - 4] = 0;
+        liar[liar.length - 3] = 1;
+        liar[liar.length - 2] = 0;
+        liar[liar.length - 1] = 0;
+        checkTooLarge(liar, sizeLimit);
+
+        // 付加情報付きで自前で読まない場合も断る。
+        final byte[] named = new byte[bomb.length + 2];
+        System.arraycopy(bomb, 0, named, 0, 10);
+        named[3] = 8; // FNAME
+        named[10] = 'a';
+        named[11] = 0;
+        System.arraycopy(bomb, 10, named, 12, bomb.length - 10);
+        checkTooLarge(named, sizeLimit);
+
+        // 上限以内なら読める。
+        final byte[] plain = BytesConversion.toBytes(new PlainEnvelope(getInstance(1).getMail(), this.registry));
+        final byte[] encoded = BytesConversion.toBytes("iab", 1, gZip(plain));
+        final List<GZippedEnvelope> output = new ArrayList<>(1);
+        GZippedEnvelope.getParser(this.registry, plain.length).fromStream(new ByteArrayInputStream(encoded), encoded.length, output);
+        Assert.assertEquals(getInstance(1), output.get(0));
+    }
+
 }
@@ -0,0 +1,270 @@
+package nippon.kawauso.chiraura.messenger;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 宛先ごとの排他を分けた送信キューの実装。
+ * @author chirauraNoSakusha
+ */
+final class StripedSendQueuePool implements SendQueuePool {
+
+    /*
+     * BasicSendQueuePool は全ての宛先のキューを 1 つのロックで守るので、
+     * 宛先が違っても送信側も取り出し側も同じロックを取り合う。
+     *
+     * ここでは、キューの表を ConcurrentHashMap にして表のロックを無くし、
+     * キューは配列を使う ArrayDeque を宛先ごとのロックで守る。
+     * 取り合いが起こるのは同じ宛先に入れる側と取り出す側の間だけ。
+     *
+     * キューの追加削除と利用する接続の登録は、
+     * 宛先の識別子のハッシュ値で分けた区画ごとのロックで行う。
+     * 削除したキューには削除済みの印を付け、
+     * 表から削除済みのキューを拾ってしまった入れる側は表を引き直す。
+     * なので、削除と入れる処理が競合してもメッセージは迷子にならない。
+     */
+
+    private static final int DEFAULT_NUM_OF_STRIPES = 64;
+
+    /**
+     * 宛先ごとのキュー。
+     */
+    private static final class Queue {
+        private final Lock lock;
+        private final Condition notEmpty;
+        private final ArrayDeque<List<Message>> elements;
+        // lock で守る。
+        private boolean removed;
+
+        private Queue() {
+            this.lock = new ReentrantLock();
+            this.notEmpty = this.lock.newCondition();
+            this.elements = new ArrayDeque<>();
+            this.removed = false;
+        }
+
+        /**
+         * @param mail 入れるメッセージ
+         * @return 削除済みで入れられなかった場合は false
+         */
+        private boolean offer(final List<Message> mail) {
+            this.lock.lock();
+            try {
+                if (this.removed) {
+                    return false;
+                }
+                this.elements.offer(mail);
+                this.notEmpty.signal();
+                return true;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private List<Message> take() throws InterruptedException {
+            this.lock.lockInterruptibly();
+            try {
+                while (this.elements.isEmpty()) {
+                    this.notEmpty.await();
+                }
+                return this.elements.poll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private List<Message> take(final long waitMilliSeconds) throws InterruptedException {
+            long waitNanoSeconds = TimeUnit.MILLISECONDS.toNanos(waitMilliSeconds);
+            this.lock.lockInterruptibly();
+            try {
+                while (this.elements.isEmpty()) {
+                    if (waitNanoSeconds > 0) {
+                        waitNanoSeconds = this.notEmpty.awaitNanos(waitNanoSeconds);
+                    } else {
+                        return null;
+                    }
+                }
+                return this.elements.poll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private List<Message> takeIfExists() {
+            this.lock.lock();
+            try {
+                return this.elements.poll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private List<List<Message>> remove() {
+            this.lock.lock();
+            try {
+                this.removed = true;
+                final List<List<Message>> remains = new ArrayList<>(this.elements);
+                this.elements.clear();
+                return remains;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private int size() {
+            this.lock.lock();
+            try {
+                return this.elements.size();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private final ConcurrentMap<ConnectionGroupId, Queue> queues;
+
+    // 区画ごとのロック兼、キューを利用する接続のID。
+    private final Map<ConnectionGroupId, Set<Integer>>[] stripes;
+
+    /**
+     * 作成する。
+     * @param numOfStripes 区画の数の下限
+     */
+    StripedSendQueuePool(final int numOfStripes) {
+        if (numOfStripes <= 0) {
+            throw new IllegalArgumentException("Not positive number of stripes ( " + numOfStripes + " ).");
+        }
+        // 2 の冪にする。
+        int size = 1;
+        while (size < numOfStripes) {
+            size <<= 1;
+        }
+        this.queues = new ConcurrentHashMap<>();
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final Map<ConnectionGroupId, Set<Integer>>[] stripes = new Map[size];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new HashMap<>();
+        }
+        this.stripes = stripes;
+    }
+
+    StripedSendQueuePool() {
+        this(DEFAULT_NUM_OF_STRIPES);
+    }
+
+    private Map<ConnectionGroupId, Set<Integer>> getStripe(final ConnectionGroupId group) {
+        final int hash = group.hashCode();
+        return this.stripes[(hash ^ (hash >>> 16)) & (this.stripes.length - 1)];
+    }
+
+    private Queue getQueue(final ConnectionGroupId group) {
+        final Queue queue = this.queues.get(group);
+        if (queue == null) {
+            throw new IllegalArgumentException("No queue for " + group);
+        }
+        return queue;
+    }
+
+    @Override
+    public boolean put(final InetSocketAddress destination, final int connectionType, final List<Message> mail) {
+        final ConnectionGroupId group = new ConnectionGroupId(destination, connectionType);
+        boolean created = false;
+        while (true) {
+            Queue queue = this.queues.get(group);
+            if (queue == null) {
+                final Queue newQueue = new Queue();
+                queue = this.queues.putIfAbsent(group, newQueue);
+                if (queue == null) {
+                    queue = newQueue;
+                    created = true;
+                }
+            }
+            if (queue.offer(mail)) {
+                return created;
+            }
+            // 削除済みのキューだった。
+            created = false;
+        }
+    }
+
+    @Override
+    public List<Message> take(final InetSocketAddress destination, final int connectionType) throws InterruptedException {
+        return getQueue(new ConnectionGroupId(destination, connectionType)).take();
+    }
+
+    @Override
+    public List<Message> take(final InetSocketAddress destination, final int connectionType, final long waitMilliSeconds) throws InterruptedException {
+        return getQueue(new ConnectionGroupId(destination, connectionType)).take(waitMilliSeconds);
+    }
+
+    @Override
+    public List<Message> takeIfExists(final InetSocketAddress destination, final int connectionType) {
+        return getQueue(new ConnectionGroupId(destination, connectionType)).takeIfExists();
+    }
+
+    @Override
+    public boolean addQueue(final InetSocketAddress destination, final int connectionType, final int connectionIdNumber) {
+        final ConnectionGroupId group = new ConnectionGroupId(destination, connectionType);
+        final Map<ConnectionGroupId, Set<Integer>> stripe = getStripe(group);
+        synchronized (stripe) {
+            Set<Integer> groupUsers = stripe.get(group);
+            if (groupUsers == null) {
+                groupUsers = new HashSet<>();
+                stripe.put(group, groupUsers);
+            }
+            groupUsers.add(connectionIdNumber);
+            return this.queues.putIfAbsent(group, new Queue()) == null;
+        }
+    }
+
+    @Override
+    public List<List<Message>> removeQueue(final InetSocketAddress destination, final int connectionType, final int connectionIdNumber) {
+        final ConnectionGroupId group = new ConnectionGroupId(destination, connectionType);
+        final Map<ConnectionGroupId, Set<Integer>> stripe = getStripe(group);
+        synchronized (stripe) {
+            final Set<Integer> groupUsers = stripe.get(group);
+            if (groupUsers != null) {
+                groupUsers.remove(connectionIdNumber);
+                if (!groupUsers.isEmpty()) {
+                    return null;
+                }
+                stripe.remove(group);
+            }
+
+            final Queue queue = this.queues.remove(group);
+            if (queue == null) {
+                return null;
+            } else {
+                return queue.remove();
+            }
+        }
+    }
+
+    @Override
+    public int size(final InetSocketAddress destination, final int connectionType) {
+        final Queue queue = this.queues.get(new ConnectionGroupId(destination, connectionType));
+        if (queue == null) {
+            return -1;
+        } else {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public boolean containsQueue(final InetSocketAddress destination, final int connectionType) {
+        return this.queues.containsKey(new ConnectionGroupId(destination, connectionType));
+    }
+
+}
@@ -0,0 +1,265 @@
+package nippon.kawauso.chiraura.messenger;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.process.Reporter;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class StripedSendQueuePoolTest {
+
+    private static final Logger LOG = Logger.getLogger(StripedSendQueuePoolTest.class.getName());
+
+    /**
+     * 初期化
+     */
+    public StripedSendQueuePoolTest() {
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    /**
+     * @throws Exception エラー
+     */
+    @Test
+    public void testSample() throws Exception {
+        final int numOfPeers = 100;
+        final int numOfConnectionTypes = 2;
+        final int numOfLoops = 1_000_000;
+
+        // テストデータを用意。
+        final InetSocketAddress[] peers = new InetSocketAddress[numOfLoops];
+        final int[] connectionTypes = new int[peers.length];
+        final List<List<Message>> mails = new ArrayList<>(peers.length);
+        final InetAddress address = InetAddress.getLocalHost();
+        final SendQueuePool queuePool = new StripedSendQueuePool();
+        for (int i = 0; i < peers.length; i++) {
+            final List<Message> mail = new ArrayList<>(1);
+            mail.add(new TestMessage((int) (Math.random() * Long.MAX_VALUE)));
+            mails.add(mail);
+            peers[i] = new InetSocketAddress(address, (int) (Math.random() * numOfPeers));
+            connectionTypes[i] = (int) (Math.random() * numOfConnectionTypes);
+        }
+
+        // 取り出し側。
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<Void> taker = executor.submit(new Reporter<Void>(Level.SEVERE) {
+            @Override
+            public Void subCall() throws InterruptedException {
+                for (int i = 0; i < peers.length; i++) {
+                    queuePool.addQueue(peers[i], connectionTypes[i], 0);
+                    final List<Message> mail = queuePool.take(peers[i], connectionTypes[i]);
+                    Assert.assertEquals(mails.get(i), mail);
+                }
+                return null;
+            }
+        });
+
+        // 突っ込む側。
+        for (int i = 0; i < peers.length; i++) {
+            queuePool.put(peers[i], connectionTypes[i], mails.get(i));
+        }
+
+        // 終処理。
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+
+        // エラーが起きていないか調べる。
+        taker.get();
+    }
+
+    /**
+     * キューの追加削除と、削除時の残存メッセージの検査。
+     * @throws Exception エラー
+     */
+    @Test
+    public void testAddAndRemoveQueue() throws Exception {
+        final InetSocketAddress destination = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+        final int connectionType = 1;
+        final SendQueuePool queuePool = new StripedSendQueuePool(1);
+
+        Assert.assertFalse(queuePool.containsQueue(destination, connectionType));
+        Assert.assertTrue(queuePool.size(destination, connectionType) < 0);
+
+        Assert.assertTrue(queuePool.addQueue(destination, connectionType, 0));
+        Assert.assertFalse(queuePool.addQueue(destination, connectionType, 1));
+        Assert.assertFalse(queuePool.put(destination, connectionType, new ArrayList<Message>(0)));
+        Assert.assertEquals(1, queuePool.size(destination, connectionType));
+
+        // 使っている接続が残っている間は消えない。
+        Assert.assertNull(queuePool.removeQueue(destination, connectionType, 0));
+        Assert.assertTrue(queuePool.containsQueue(destination, connectionType));
+        Assert.assertNotNull(queuePool.takeIfExists(destination, connectionType));
+        Assert.assertNull(queuePool.takeIfExists(destination, connectionType));
+        Assert.assertNull(queuePool.take(destination, connectionType, 10L));
+
+        for (int i = 0; i < 10; i++) {
+            final List<Message> mail = new ArrayList<>(1);
+            mail.add(new TestMessage(i));
+            queuePool.put(destination, connectionType, mail);
+        }
+        final List<List<Message>> remains = queuePool.removeQueue(destination, connectionType, 1);
+        Assert.assertNotNull(remains);
+        Assert.assertEquals(10, remains.size());
+        for (int i = 0; i < remains.size(); i++) {
+            Assert.assertEquals(i, ((TestMessage) remains.get(i).get(0)).getValue());
+        }
+        Assert.assertFalse(queuePool.containsQueue(destination, connectionType));
+        Assert.assertNull(queuePool.removeQueue(destination, connectionType, 1));
+
+        // 無ければ作られる。
+        Assert.assertTrue(queuePool.put(destination, connectionType, new ArrayList<Message>(0)));
+    }
+
+    /**
+     * 削除と入れる処理が競合してもメッセージが迷子にならないかどうか。
+     * @throws Exception エラー
+     */
+    @Test
+    public void testConcurrentRemove() throws Exception {
+        final int numOfLoops = 100_000;
+        final InetSocketAddress destination = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+        final int connectionType = 0;
+        final SendQueuePool queuePool = new StripedSendQueuePool();
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<Void> putter = executor.submit(new Reporter<Void>(Level.SEVERE) {
+            @Override
+            public Void subCall() {
+                for (int i = 0; i < numOfLoops; i++) {
+                    queuePool.put(destination, connectionType, new ArrayList<Message>(0));
+                }
+                return null;
+            }
+        });
+
+        long count = 0;
+        while (!putter.isDone()) {
+            final List<List<Message>> remains = queuePool.removeQueue(destination, connectionType, 0);
+            if (remains != null) {
+                count += remains.size();
+            }
+        }
+        putter.get();
+        final List<List<Message>> remains = queuePool.removeQueue(destination, connectionType, 0);
+        if (remains != null) {
+            count += remains.size();
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(numOfLoops, count);
+    }
+
+    private static double contention(final SendQueuePool queuePool, final int numOfProducers, final int numOfConnections, final int loopLimit)
+            throws Exception {
+        // 全ての宛先に同じ数だけ入るように。
+        final int numOfLoops = loopLimit / numOfConnections * numOfConnections;
+        final InetAddress address = InetAddress.getLocalHost();
+        final InetSocketAddress[] destinations = new InetSocketAddress[numOfConnections];
+        for (int i = 0; i < destinations.length; i++) {
+            destinations[i] = new InetSocketAddress(address, 10_000 + i);
+            queuePool.addQueue(destinations[i], 0, i);
+        }
+        final List<Message> mail = new ArrayList<>(1);
+        mail.add(new TestMessage(1));
+
+        final CountDownLatch ready = new CountDownLatch(numOfProducers + numOfConnections);
+        final CountDownLatch go = new CountDownLatch(1);
+        final AtomicLong result = new AtomicLong(0);
+        final List<Callable<Void>> processes = new ArrayList<>(numOfProducers + numOfConnections);
+
+        // 送信側。接続ごとに 1 つ。
+        final long perConnection = (long) numOfProducers * numOfLoops / numOfConnections;
+        for (int i = 0; i < numOfConnections; i++) {
+            final InetSocketAddress destination = destinations[i];
+            processes.add(new Reporter<Void>(Level.SEVERE) {
+                @Override
+                public Void subCall() throws InterruptedException {
+                    ready.countDown();
+                    go.await();
+                    long sum = 0;
+                    for (long j = 0; j < perConnection; j++) {
+                        sum += ((TestMessage) queuePool.take(destination, 0).get(0)).getValue();
+                    }
+                    result.addAndGet(sum);
+                    return null;
+                }
+            });
+        }
+
+        // 生産側。全ての宛先に均等に入れる。
+        for (int i = 0; i < numOfProducers; i++) {
+            final int offset = i;
+            processes.add(new Reporter<Void>(Level.SEVERE) {
+                @Override
+                public Void subCall() throws InterruptedException {
+                    ready.countDown();
+                    go.await();
+                    for (int j = 0; j < numOfLoops; j++) {
+                        queuePool.put(destinations[(offset + j) % destinations.length], 0, mail);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(processes.size());
+        final List<Future<Void>> futures = new ArrayList<>(processes.size());
+        for (final Callable<Void> process : processes) {
+            futures.add(executor.submit(process));
+        }
+        ready.await();
+        final long start = System.nanoTime();
+        go.countDown();
+        for (final Future<Void> future : futures) {
+            future.get();
+        }
+        final long end = System.nanoTime();
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(perConnection * numOfConnections, result.get());
+
+        return (end - start) / 1_000_000_000.0;
+    }
+
+    /**
+     * 生産側 N 個、接続 M 個で、BasicSendQueuePool と取り合いの具合を比べる。
+     * @throws Exception エラー
+     */
+    @Test
+    public void testContention() throws Exception {
+        final int[][] patterns = { { 4, 4 }, { 16, 64 }, { 64, 256 } };
+        final int numOfLoops = 50_000;
+
+        // 慣らし。
+        contention(new BasicSendQueuePool(), 4, 4, numOfLoops);
+        contention(new StripedSendQueuePool(), 4, 4, numOfLoops);
+
+        for (final int[] pattern : patterns) {
+            final double basic = contention(new BasicSendQueuePool(), pattern[0], pattern[1], numOfLoops);
+            final double striped = contention(new StripedSendQueuePool(), pattern[0], pattern[1], numOfLoops);
+            LOG.log(Level.SEVERE, "生産側数: {0} 接続数: {1} 繰り返し回数: {2} 従来秒数: {3} 分割秒数: {4}", new Object[] { pattern[0], pattern[1], numOfLoops, basic,
+                    striped });
+        }
+    }
+
+}
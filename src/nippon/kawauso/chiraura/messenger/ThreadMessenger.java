@@ -11,6 +11,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.lib.concurrent.ConcurrentFunctions;
+import nippon.kawauso.chiraura.lib.connection.ConstantLimiters;
 import nippon.kawauso.chiraura.lib.connection.PortFunctions;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
@@ -46,6 +47,9 @@ final class ThreadMessenger implements Messenger {
     private final long trafficSizeLimit;
     private final int trafficCountLimit;
     private final long trafficPenalty;
+    private final ConstantLimiters.Type trafficLimiterType;
+
+    private final ExecutorService connectionExecutor;
 
     // 保持。
     private final BlockingQueue<ReceivedMail> receivedMailSink;
@@ -63,7 +67,17 @@ final class ThreadMessenger implements Messenger {
     ThreadMessenger(final int port, final int receveBufferSize, final int sendBufferSize, final long connectionTimeout, final long operationTimeout,
             final int messageSizeLimit, final boolean useHttpWrapper, final long version, final long versionGapThreshold, final KeyPair id,
             final long publicKeyLifetime, final long commonKeyLifetime, final boolean portIgnore, final int connectionLimit, final long trafficDuration,
-            final long trafficSizeLimit, final int trafficCountLimit, final long trafficPenalty) {
+            final long trafficSizeLimit, final int trafficCountLimit, final long trafficPenalty, final ExecutorService connectionExecutor) {
+        this(port, receveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit, useHttpWrapper, version, versionGapThreshold, id,
+                publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, trafficDuration, trafficSizeLimit, trafficCountLimit, trafficPenalty,
+                ConstantLimiters.Type.LIST, connectionExecutor);
+    }
+
+    ThreadMessenger(final int port, final int receveBufferSize, final int sendBufferSize, final long connectionTimeout, final long operationTimeout,
+            final int messageSizeLimit, final boolean useHttpWrapper, final long version, final long versionGapThreshold, final KeyPair id,
+            final long publicKeyLifetime, final long commonKeyLifetime, final boolean portIgnore, final int connectionLimit, final long trafficDuration,
+            final long trafficSizeLimit, final int trafficCountLimit, final long trafficPenalty, final ConstantLimiters.Type trafficLimiterType,
+            final ExecutorService connectionExecutor) {
         if (!PortFunctions.isValid(port)) {
             throw new IllegalArgumentException("Invalid port ( " + port + " ).");
         } else if (connectionTimeout < 0) {
@@ -90,6 +104,8 @@ final class ThreadMessenger implements Messenger {
             throw new IllegalArgumentException("Negative traffic count limit ( " + trafficCountLimit + " ).");
         } else if (trafficPenalty < 0) {
             throw new IllegalArgumentException("Negative traffic penalty ( " + trafficPenalty + " ).");
+        } else if (trafficLimiterType == null) {
+            throw new IllegalArgumentException("Null traffic limiter type.");
         }
 
         this.port = port;
@@ -113,9 +129,12 @@ final class ThreadMessenger implements Messenger {
         this.trafficSizeLimit = trafficSizeLimit;
         this.trafficCountLimit = trafficCountLimit;
         this.trafficPenalty = trafficPenalty;
+        this.trafficLimiterType = trafficLimiterType;
+
+        this.connectionExecutor = connectionExecutor;
 
         this.receivedMailSink = new LinkedBlockingQueue<>();
-        this.sendQueuePool = new BasicSendQueuePool();
+        this.sendQueuePool = new StripedSendQueuePool();
         this.connectRequestQueue = new LinkedBlockingQueue<>();
         this.messengerReportSink = new LinkedBlockingQueue<>();
         this.acceptedConnectionPool = new PortIgnoringConnectionPool<>();
@@ -203,11 +222,12 @@ final class ThreadMessenger implements Messenger {
 
     @Override
     public void start(final ExecutorService executor) {
-        executor.submit(new Boss(executor, this.connectRequestQueue, this.receivedMailSink, this.sendQueuePool, this.messengerReportSink,
+        final ExecutorService connectionExecutor = (this.connectionExecutor != null ? this.connectionExecutor : executor);
+        executor.submit(new Boss(executor, connectionExecutor, this.connectRequestQueue, this.receivedMailSink, this.sendQueuePool, this.messengerReportSink,
                 this.acceptedConnectionPool, this.contactingConnectionPool, this.connectionPool, this.port, this.receveBufferSize, this.sendBufferSize,
                 this.connectionTimeout, this.operationTimeout, this.messageSizeLimit, this.useHttpWrapper, this.registry, this.version,
                 this.versionGapThreshold, this.id, this.publicKeyLifetime, this.commonKeyLifetime, this.self, this.portIgnore, this.connectionLimit,
-                this.trafficDuration, this.trafficSizeLimit, this.trafficCountLimit, this.trafficPenalty));
+                this.trafficDuration, this.trafficSizeLimit, this.trafficCountLimit, this.trafficPenalty, this.trafficLimiterType));
     }
 
     @Override
@@ -6,12 +6,19 @@ import java.security.KeyPair;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.Global;
 import nippon.kawauso.chiraura.lib.Duration;
+import nippon.kawauso.chiraura.lib.concurrent.ConnectionExecutors;
+import nippon.kawauso.chiraura.lib.concurrent.LatencyHistogram;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -21,6 +28,8 @@ import org.junit.Test;
  */
 public final class ThreadMessengerTest {
 
+    private static final Logger LOG = Logger.getLogger(ThreadMessengerTest.class.getName());
+
     private static final int port1 = 44444;
     private static final int port2 = port1 + 12345;
     private static final KeyPair id1 = CryptographicKeys.newPublicKeyPair();
@@ -63,10 +72,10 @@ public final class ThreadMessengerTest {
 
         final ThreadMessenger messenger1 = new ThreadMessenger(port1, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit,
                 http, version, versionGapThreshold, id1, publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, duration, sizeLimit, countLimit,
-                penalty);
+                penalty, null);
         final ThreadMessenger messenger2 = new ThreadMessenger(port2, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit,
                 http, version, versionGapThreshold, id2, publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, duration, sizeLimit, countLimit,
-                penalty);
+                penalty, null);
 
         messenger1.start(this.executor);
         messenger2.start(this.executor);
@@ -147,4 +156,146 @@ public final class ThreadMessengerTest {
         Assert.assertNull(messenger2.takeReportIfExists());
     }
 
+    /**
+     * 接続ごとの送受信を別の実行機で行う場合。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConnectionExecutor() throws Exception {
+        final ExecutorService connectionExecutor = ConnectionExecutors.newVirtualThreadPerTaskExecutor(this.getClass().getSimpleName());
+        final ThreadMessenger messenger1 = new ThreadMessenger(port1, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit,
+                http, version, versionGapThreshold, id1, publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, duration, sizeLimit, countLimit,
+                penalty, connectionExecutor);
+        final ThreadMessenger messenger2 = new ThreadMessenger(port2, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit,
+                http, version, versionGapThreshold, id2, publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, duration, sizeLimit, countLimit,
+                penalty, connectionExecutor);
+
+        messenger1.start(this.executor);
+        messenger2.start(this.executor);
+
+        // 接続受け付け開始待ち。
+        Thread.sleep(100L);
+
+        final InetSocketAddress peer2 = new InetSocketAddress(InetAddress.getLocalHost(), port2);
+        final List<Message> sendMail1 = new ArrayList<>();
+        sendMail1.add(new TestMessage("いろはにへちま"));
+        messenger1.send(peer2, ConnectionTypes.CONTROL, sendMail1);
+
+        final ReceivedMail recvMail2 = messenger2.take();
+        Assert.assertEquals(sendMail1, recvMail2.getMail());
+        Assert.assertEquals(id1.getPublic(), recvMail2.getSourceId());
+
+        final List<Message> sendMail2 = new ArrayList<>();
+        sendMail2.add(new TestMessage("ほへと"));
+        messenger2.send(recvMail2.getSourcePeer(), ConnectionTypes.CONTROL + 1, sendMail2);
+
+        final ReceivedMail recvMail1 = messenger1.take();
+        Assert.assertEquals(sendMail2, recvMail1.getMail());
+        Assert.assertEquals(id2.getPublic(), recvMail1.getSourceId());
+
+        this.executor.shutdownNow();
+        connectionExecutor.shutdownNow();
+        Assert.assertTrue(this.executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(connectionExecutor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+    }
+
+    private static final int PING = -1;
+
+    /**
+     * 大容量の言付けを送りながら、CONTROL での往復時間を測る。
+     * @param bulkType 大容量の言付けを送る接続種別
+     * @return 往復時間の度数分布
+     */
+    private static LatencyHistogram measureRoundTrip(final ThreadMessenger messenger, final InetSocketAddress destination, final int bulkType,
+            final AtomicInteger numOfReceivedBulks, final int numOfBulks, final String bulk) throws InterruptedException {
+        numOfReceivedBulks.set(0);
+        for (int i = 0; i < numOfBulks; i++) {
+            final List<Message> mail = new ArrayList<>();
+            mail.add(new TestMessage(i, bulk));
+            messenger.send(destination, bulkType, mail);
+        }
+
+        final LatencyHistogram roundTrip = new LatencyHistogram();
+        while (numOfReceivedBulks.get() < numOfBulks) {
+            final List<Message> mail = new ArrayList<>();
+            mail.add(new TestMessage(PING));
+            final long start = System.nanoTime();
+            messenger.send(destination, ConnectionTypes.CONTROL, mail);
+            final ReceivedMail echo = messenger.take();
+            roundTrip.add(System.nanoTime() - start);
+            Assert.assertEquals(PING, ((TestMessage) echo.getMail().get(0)).getValue());
+            // 通信回数の制限に掛からないように間を空ける。
+            Thread.sleep(5L);
+        }
+        return roundTrip;
+    }
+
+    /**
+     * 大容量の言付けを DATA で送れば、CONTROL の言付けが待たされないかどうか。
+     * 同じ接続で送った場合と比べる。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testLane() throws Exception {
+        final int numOfBulks = 16;
+        final int bulkSize = 256 * 1024;
+
+        final ThreadMessenger messenger1 = new ThreadMessenger(port1, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit,
+                http, version, versionGapThreshold, id1, publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, duration, sizeLimit, countLimit,
+                penalty, null);
+        final ThreadMessenger messenger2 = new ThreadMessenger(port2, receiveBufferSize, sendBufferSize, connectionTimeout, operationTimeout, messageSizeLimit,
+                http, version, versionGapThreshold, id2, publicKeyLifetime, commonKeyLifetime, portIgnore, connectionLimit, duration, sizeLimit, countLimit,
+                penalty, null);
+
+        messenger1.start(this.executor);
+        messenger2.start(this.executor);
+
+        // 接続受け付け開始待ち。
+        Thread.sleep(100L);
+
+        // 両方の接続を張っておく。
+        final InetSocketAddress peer2 = new InetSocketAddress(InetAddress.getLocalHost(), port2);
+        for (final int type : new int[] { ConnectionTypes.CONTROL, ConnectionTypes.DATA }) {
+            final List<Message> mail = new ArrayList<>();
+            mail.add(new TestMessage(0));
+            messenger1.send(peer2, type, mail);
+        }
+        final InetSocketAddress peer1 = messenger2.take().getSourcePeer();
+        messenger2.take();
+
+        // 2 は PING を CONTROL で返し、他は数えるだけ。
+        final AtomicInteger numOfReceivedBulks = new AtomicInteger(0);
+        final Future<Void> echo = this.executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                while (!Thread.currentThread().isInterrupted()) {
+                    final ReceivedMail mail = messenger2.take();
+                    if (((TestMessage) mail.getMail().get(0)).getValue() == PING) {
+                        messenger2.send(peer1, ConnectionTypes.CONTROL, mail.getMail());
+                    } else {
+                        numOfReceivedBulks.incrementAndGet();
+                    }
+                }
+                return null;
+            }
+        });
+
+        final StringBuilder buff = new StringBuilder(bulkSize);
+        final Random random = new Random();
+        for (int i = 0; i < bulkSize; i++) {
+            buff.append((char) ('a' + random.nextInt(26)));
+        }
+        final String bulk = buff.toString();
+
+        final LatencyHistogram shared = measureRoundTrip(messenger1, peer2, ConnectionTypes.CONTROL, numOfReceivedBulks, numOfBulks, bulk);
+        final LatencyHistogram separated = measureRoundTrip(messenger1, peer2, ConnectionTypes.DATA, numOfReceivedBulks, numOfBulks, bulk);
+        LOG.log(Level.SEVERE, "大容量 {0} 通 ( {1} バイト ) 送信中の CONTROL 往復時間: 同じ接続 {2}, 別の接続 {3}",
+                new Object[] { numOfBulks, bulkSize, shared, separated });
+        Assert.assertTrue(separated.getPercentile(99) < shared.getPercentile(99));
+
+        echo.cancel(true);
+        this.executor.shutdownNow();
+        Assert.assertTrue(this.executor.awaitTermination(Duration.SECOND, TimeUnit.MILLISECONDS));
+    }
+
 }
@@ -111,7 +111,7 @@ final class Transceiver {
             }, new ParserGenerator<GZippedEnvelope>() {
                 @Override
                 public BytesConvertible.Parser<GZippedEnvelope> getParser(final Key decryptionKey) {
-                    return GZippedEnvelope.getParser(registry);
+                    return GZippedEnvelope.getParser(registry, maxSize);
                 }
             });
 
@@ -124,7 +124,7 @@ final class Transceiver {
             }, new ParserGenerator<GZippedEncryptedEnvelope>() {
                 @Override
                 public BytesConvertible.Parser<GZippedEncryptedEnvelope> getParser(final Key decryptionKey) {
-                    return GZippedEncryptedEnvelope.getParser(registry, decryptionKey);
+                    return GZippedEncryptedEnvelope.getParser(registry, decryptionKey, maxSize);
                 }
             });
 
@@ -5,6 +5,8 @@ import java.net.InetSocketAddress;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.base.AddressTest;
@@ -17,6 +19,8 @@ import org.junit.Test;
  */
 public final class BasicCcViewTest {
 
+    private static final Logger LOG = Logger.getLogger(BasicCcViewTest.class.getName());
+
     /**
      * @throws Exception 異常
      */
@@ -197,4 +201,44 @@ public final class BasicCcViewTest {
         CcViewTest.testChangePeer(instance, numOfPeers, loop);
     }
 
+    /**
+     * 経路表の検索の速さを計る。
+     */
+    @Test
+    public void testRoutingPerformance() {
+        final int capacity = 10_000;
+        final int numOfTargets = 1_000;
+        final int numOfLoops = 1_000;
+        final Random random = new Random(1L);
+        final Address base = AddressTest.newRandomInstance(random);
+        for (final int numOfPeers : new int[] { 100, 1_000, 10_000 }) {
+            final CcView instance = new BasicCcView(base, capacity);
+            while (instance.getPeers().size() < numOfPeers) {
+                final AddressedPeer peer = AddressedPeerTest.randomInstance(random);
+                if (!base.equals(peer.getAddress())) {
+                    instance.addPeer(peer);
+                }
+            }
+            final Address[] targets = new Address[numOfTargets];
+            for (int i = 0; i < numOfTargets; i++) {
+                targets[i] = AddressTest.newRandomInstance(random);
+            }
+
+            // 暖機。
+            for (int i = 0; i < numOfTargets; i++) {
+                instance.getRoutingDestination(targets[i]);
+            }
+
+            final long start = System.nanoTime();
+            for (int j = 0; j < numOfLoops; j++) {
+                for (int i = 0; i < numOfTargets; i++) {
+                    instance.getRoutingDestination(targets[i]);
+                }
+            }
+            final long time = System.nanoTime() - start;
+            LOG.log(Level.SEVERE, "個体数: {0} 検索単位消費ナノ秒: {1}", new Object[] { numOfPeers,
+                    String.format("%.1f", time / ((double) numOfLoops * numOfTargets)) });
+        }
+    }
+
 }
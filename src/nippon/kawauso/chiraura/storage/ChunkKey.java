@@ -0,0 +1,86 @@
+package nippon.kawauso.chiraura.storage;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+
+/**
+ * データ片の論理位置と型の組。
+ * 論理位置、型の順に比べる。
+ * @author chirauraNoSakusha
+ */
+final class ChunkKey implements Comparable<ChunkKey> {
+
+    private final Address address;
+    private final long type;
+
+    ChunkKey(final Address address, final long type) {
+        if (address == null) {
+            throw new IllegalArgumentException("Null address.");
+        }
+        this.address = address;
+        this.type = type;
+    }
+
+    Address getAddress() {
+        return this.address;
+    }
+
+    long getType() {
+        return this.type;
+    }
+
+    /**
+     * 論理位置が min 以上の最小の組を返す。
+     * @param min 論理位置
+     * @return 論理位置が min 以上の最小の組
+     */
+    static ChunkKey lowest(final Address min) {
+        return new ChunkKey(min, Long.MIN_VALUE);
+    }
+
+    /**
+     * 論理位置が max 以下の最大の組を返す。
+     * @param max 論理位置
+     * @return 論理位置が max 以下の最大の組
+     */
+    static ChunkKey highest(final Address max) {
+        return new ChunkKey(max, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int compareTo(final ChunkKey o) {
+        final int result = this.address.compareTo(o.address);
+        if (result != 0) {
+            return result;
+        }
+        return Long.compare(this.type, o.type);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.address.hashCode();
+        result = prime * result + (int) (this.type ^ (this.type >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof ChunkKey)) {
+            return false;
+        }
+        final ChunkKey other = (ChunkKey) obj;
+        return this.address.equals(other.address) && this.type == other.type;
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append('[').append(this.address)
+                .append(", ").append(this.type)
+                .append(']').toString();
+    }
+
+}
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
@@ -57,16 +58,42 @@ abstract class FileStorage implements Storage {
     private final TypeRegistry<Chunk> chunkRegistry;
     private final TypeRegistry<Chunk.Id<?>> idRegistry;
 
+    // 読み込みにメモリマップを使う場合のみ非 null。
+    private final MappingPool mappings;
+
     private static final String TRASH = "%%trash%%"; // 有効ディレクトリと混同する可能性が無いように Base64 に使わない文字を含むこと。
     private final File trash;
 
+    /*
+     * 範囲取得のたびにディレクトリを歩かなくて済むように、全データ片の概要を目録に持つ。
+     * 目録はデータ片のファイルを書き換えた後、ファイルのロックの中で更新する。
+     * 目録ファイルが無い場合は、最初の範囲取得でディレクトリを全て歩いて作る。
+     */
+    private static final String MANIFEST = "%%index%%"; // TRASH と同じく Base64 に使わない文字を含むこと。
+    private final IndexManifest manifest;
+    private final Object rebuildLock;
+
     FileStorage(final File root, final int fileSizeLimit, final int directoryBitSize) {
+        this(root, fileSizeLimit, directoryBitSize, 0);
+    }
+
+    /**
+     * 作成する。
+     * @param root ルートディレクトリ
+     * @param fileSizeLimit ファイルの制限サイズ
+     * @param directoryBitSize ディレクトリに使うビット数
+     * @param mappingCapacity 読み込みに使うメモリマップを保持する数。
+     *            0 ならメモリマップを使わない
+     */
+    FileStorage(final File root, final int fileSizeLimit, final int directoryBitSize, final int mappingCapacity) {
         if (root == null) {
             throw new IllegalArgumentException("Null root.");
         } else if (fileSizeLimit < 0) {
             throw new IllegalArgumentException("Invalid file size limit ( " + fileSizeLimit + " ).");
         } else if (directoryBitSize <= 0) {
             throw new IllegalArgumentException("Not positive directory bit size ( " + directoryBitSize + " ).");
+        } else if (mappingCapacity < 0) {
+            throw new IllegalArgumentException("Negative mapping capacity ( " + mappingCapacity + " ).");
         }
 
         this.root = root;
@@ -77,9 +104,17 @@ abstract class FileStorage implements Storage {
         this.locks = new LockPool<>();
         this.chunkRegistry = TypeRegistries.newRegistry();
         this.idRegistry = TypeRegistries.newRegistry();
+        this.mappings = (mappingCapacity == 0 ? null : new MappingPool(mappingCapacity, this.locks));
 
         this.trash = new File(root, TRASH);
         loadDirectory(this.trash);
+
+        try {
+            this.manifest = new IndexManifest(new File(root, MANIFEST), fileSizeLimit);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.rebuildLock = new Object();
     }
 
     private static void loadDirectory(final File directory) {
@@ -218,20 +253,42 @@ abstract class FileStorage implements Storage {
         final File file = new File(this.root, base);
         this.locks.lock(base);
         try {
-            if (!file.exists()) {
-                return null;
-            }
-
-            final List<Index> index = new ArrayList<>(1);
-            try (final InputStream input = new BufferedInputStream(new FileInputStream(file), INDEX_READ_BUFFER_SIZE)) {
-                SimpleIndex.getParser(this.idRegistry.getParser((Class<? extends Chunk.Id<?>>) id.getClass())).fromStream(input, this.fileSizeLimit, index);
+            if (this.mappings != null) {
+                final ByteBuffer buffer = this.mappings.get(base, file);
+                if (buffer == null) {
+                    return null;
+                }
+                final List<Index> index = new ArrayList<>(1);
+                BytesConversion.fromBuffer(buffer, this.fileSizeLimit, parser, index);
+                return index.get(0);
             }
-            return index.get(0);
+            return readIndex(file, parser);
         } finally {
             this.locks.unlock(base);
         }
     }
 
+    /**
+     * ファイルからデータ片の概要だけを読む。
+     * 呼ぶ前にファイルをロックしておくこと。
+     * @param file ファイル
+     * @param parser 概要の復号器
+     * @return データ片の概要。
+     *         ファイルが無い場合は null
+     * @throws MyRuleException ファイルの中身がおかしかった場合
+     * @throws IOException 読み込み異常
+     */
+    private Index readIndex(final File file, final BytesConvertible.Parser<SimpleIndex> parser) throws MyRuleException, IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final List<Index> index = new ArrayList<>(1);
+        try (final InputStream input = new BufferedInputStream(new FileInputStream(file), INDEX_READ_BUFFER_SIZE)) {
+            parser.fromStream(input, this.fileSizeLimit, index);
+        }
+        return index.get(0);
+    }
+
     /**
      * バイト列をつなげる。
      * @param front 前になるバイト列
@@ -258,17 +315,36 @@ abstract class FileStorage implements Storage {
         }
     }
 
+    /**
+     * データ片のファイルから論理位置と型を復元する。
+     * @param dirBytes ディレクトリを示すバイト列
+     * @param fileName ファイル名
+     * @return 論理位置と型
+     * @throws MyRuleException おかしなファイル名だった場合
+     */
+    private ChunkKey toKey(final byte[] dirBytes, final String fileName) throws MyRuleException {
+        final byte[] fileBytes = fromFileString(fileName);
+        final byte[] buff = conjugate(dirBytes, fileBytes, this.directoryBitSize % Byte.SIZE);
+
+        final List<Address> address = new ArrayList<>(1);
+        final long[] type = new long[1];
+        BytesConversion.fromBytes(buff, buff.length, "ol", address, Address.getParser(), type);
+        return new ChunkKey(address.get(0), type[0]);
+    }
+
     /**
      * 指定したディレクトリの直下にファイルがあるデータ片を列挙する
      * @param dirBytes ディレクトリを示すバイト列
      * @param min 列挙するデータ片の最小論理位置
      * @param max 列挙するデータ片の最大論理位置
+     * @param record 読んだ概要を目録に登録するかどうか
      * @return ディレクトリにあった全データ片の概要。
      *         ディレクトリが無い場合は null
      * @throws IOException 読み込み異常
      * @throws InterruptedException 割り込まれた場合
      */
-    private Map<Chunk.Id<?>, Storage.Index> getDirIndices(final byte[] dirBytes, final Address min, final Address max) throws IOException, InterruptedException {
+    private Map<Chunk.Id<?>, Storage.Index> getDirIndices(final byte[] dirBytes, final Address min, final Address max, final boolean record)
+            throws IOException, InterruptedException {
         final String dirStr = toFileString(dirBytes);
         final File dir = new File(this.root, dirStr);
         final File[] files = dir.listFiles();
@@ -282,20 +358,15 @@ abstract class FileStorage implements Storage {
                 continue;
             }
             try {
-                final byte[] fileBytes = fromFileString(file.getName());
-                final byte[] buff = conjugate(dirBytes, fileBytes, this.directoryBitSize % Byte.SIZE);
+                final ChunkKey key = toKey(dirBytes, file.getName());
 
-                final List<Address> address = new ArrayList<>(1);
-                final long[] type = new long[1];
-                BytesConversion.fromBytes(buff, buff.length, "ol", address, Address.getParser(), type);
-
-                if (address.get(0).compareTo(min) < 0 || max.compareTo(address.get(0)) < 0) {
+                if (key.getAddress().compareTo(min) < 0 || max.compareTo(key.getAddress()) < 0) {
                     // 範囲外。
                     continue;
                 }
-                final BytesConvertible.Parser<? extends Chunk.Id<?>> parser = this.idRegistry.getParser(type[0]);
+                final BytesConvertible.Parser<? extends Chunk.Id<?>> parser = this.idRegistry.getParser(key.getType());
                 if (parser == null) {
-                    LOG.log(Level.WARNING, "{0} のデータ片の型 ( {1} ) は未登録です。", new Object[] { file.getPath(), type[0] });
+                    LOG.log(Level.WARNING, "{0} のデータ片の型 ( {1} ) は未登録です。", new Object[] { file.getPath(), key.getType() });
                     continue;
                 }
 
@@ -313,8 +384,19 @@ abstract class FileStorage implements Storage {
                         LOG.log(Level.WARNING, "{0} を読むには一足遅かったようです。", file.getPath());
                         continue;
                     }
-                    try (final InputStream input = new BufferedInputStream(new FileInputStream(file), INDEX_READ_BUFFER_SIZE)) {
-                        SimpleIndex.getParser(parser).fromStream(input, this.fileSizeLimit, index);
+                    // 範囲取得のためにマップを増やすと使い回したいマップが追い出されるので、既にある場合だけ使う。
+                    final ByteBuffer buffer = (this.mappings == null ? null : this.mappings.peek(base));
+                    if (buffer != null) {
+                        BytesConversion.fromBuffer(buffer, this.fileSizeLimit, SimpleIndex.getParser(parser), index);
+                    } else {
+                        try (final InputStream input = new BufferedInputStream(new FileInputStream(file), INDEX_READ_BUFFER_SIZE)) {
+                            SimpleIndex.getParser(parser).fromStream(input, this.fileSizeLimit, index);
+                        }
+                    }
+                    if (record) {
+                        // 書き込みと入れ違いになっても、書き込み側が既に目録を更新しているので上書きしない。
+                        final Index cur = index.get(0);
+                        this.manifest.putIfAbsent(key, BytesConversion.toBytes(cur.getId()), cur.getDate(), cur.getHashValue());
                     }
                 } finally {
                     this.locks.unlock(base);
@@ -354,6 +436,48 @@ abstract class FileStorage implements Storage {
 
     @Override
     public Map<Chunk.Id<?>, Storage.Index> getIndices(final Address min, final Address max) throws IOException, InterruptedException {
+        if (!this.manifest.isReady()) {
+            rebuildManifest();
+        }
+
+        final Map<Chunk.Id<?>, Storage.Index> indices = new HashMap<>();
+        for (final IndexManifest.Entry entry : this.manifest.get(min, max)) {
+            final BytesConvertible.Parser<? extends Chunk.Id<?>> parser = this.idRegistry.getParser(entry.getType());
+            if (parser == null) {
+                LOG.log(Level.WARNING, "目録にあるデータ片の型 ( {0} ) は未登録です。", entry.getType());
+                continue;
+            }
+            try {
+                final Index index = entry.getIndex(parser);
+                indices.put(index.getId(), index);
+            } catch (final MyRuleException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * ディレクトリを全て歩いて目録を作る。
+     * @throws IOException 読み書き異常
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private void rebuildManifest() throws IOException, InterruptedException {
+        synchronized (this.rebuildLock) {
+            if (this.manifest.isReady()) {
+                // 他の誰かが作った。
+                return;
+            }
+            final long start = System.nanoTime();
+            scanIndices(Address.ZERO, Address.MAX, true);
+            this.manifest.markReady();
+            LOG.log(Level.INFO, "{0} 個のデータ片の目録を作成しました ( {1} ミリ秒 )。", new Object[] { this.manifest.size(),
+                    (System.nanoTime() - start) / 1_000_000 });
+        }
+    }
+
+    private Map<Chunk.Id<?>, Storage.Index> scanIndices(final Address min, final Address max, final boolean record) throws IOException,
+            InterruptedException {
 
         final byte[] minBytes = getFront(BytesConversion.toBytes(min), this.directoryBitSize);
         final byte[] maxBytes = getFront(BytesConversion.toBytes(max), this.directoryBitSize);
@@ -364,7 +488,7 @@ abstract class FileStorage implements Storage {
         final int digit = (this.directoryBitSize % Byte.SIZE == 0 ? 0 : Byte.SIZE - this.directoryBitSize % Byte.SIZE);
         final byte[] buff = minBytes.clone(); // minBytes を使っても問題無いけど。
         while (true) {
-            final Map<Chunk.Id<?>, Storage.Index> dirIndices = getDirIndices(buff, min, max);
+            final Map<Chunk.Id<?>, Storage.Index> dirIndices = getDirIndices(buff, min, max, record);
             if (dirIndices != null) {
                 if (indices == null) {
                     indices = dirIndices;
@@ -403,11 +527,19 @@ abstract class FileStorage implements Storage {
         final File file = new File(this.root, base);
         this.locks.lock(base);
         try {
-            if (!file.exists()) {
-                return null;
-            }
-            try (final InputStream input = new BufferedInputStream(new FileInputStream(file))) {
-                BytesConversion.fromStream(input, this.fileSizeLimit, "oo", index, parser, chunk, this.chunkRegistry.getParser(id.getChunkClass()));
+            if (this.mappings != null) {
+                final ByteBuffer buffer = this.mappings.get(base, file);
+                if (buffer == null) {
+                    return null;
+                }
+                BytesConversion.fromBuffer(buffer, this.fileSizeLimit, "oo", index, parser, chunk, this.chunkRegistry.getParser(id.getChunkClass()));
+            } else {
+                if (!file.exists()) {
+                    return null;
+                }
+                try (final InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+                    BytesConversion.fromStream(input, this.fileSizeLimit, "oo", index, parser, chunk, this.chunkRegistry.getParser(id.getChunkClass()));
+                }
             }
         } finally {
             this.locks.unlock(base);
@@ -459,6 +591,9 @@ abstract class FileStorage implements Storage {
         int size;
         this.locks.lock(base);
         try {
+            if (this.mappings != null) {
+                this.mappings.remove(base);
+            }
             while (true) {
                 try (final OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
                     size = BytesConversion.toStream(output, "oo", index, chunk);
@@ -469,6 +604,8 @@ abstract class FileStorage implements Storage {
                     Thread.sleep(1L);
                 }
             }
+            this.manifest.put(new ChunkKey(chunk.getId().getAddress(), this.idRegistry.getId(chunk.getId())), BytesConversion.toBytes(chunk.getId()),
+                    index.getDate(), index.getHashValue());
         } finally {
             this.locks.unlock(base);
         }
@@ -500,6 +637,9 @@ abstract class FileStorage implements Storage {
         int size;
         this.locks.lock(base);
         try {
+            if (this.mappings != null) {
+                this.mappings.remove(base);
+            }
             while (true) {
                 try (final OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
                     size = BytesConversion.toStream(output, "oo", index, chunk);
@@ -510,6 +650,8 @@ abstract class FileStorage implements Storage {
                     Thread.sleep(1L);
                 }
             }
+            this.manifest.put(new ChunkKey(chunk.getId().getAddress(), this.idRegistry.getId(chunk.getId())), BytesConversion.toBytes(chunk.getId()),
+                    index.getDate(), index.getHashValue());
         } finally {
             this.locks.unlock(base);
         }
@@ -526,7 +668,11 @@ abstract class FileStorage implements Storage {
         final File file = new File(this.root, base);
         this.locks.lock(base);
         try {
+            if (this.mappings != null) {
+                this.mappings.remove(base);
+            }
             if (Files.deleteIfExists(file.toPath())) {
+                this.manifest.remove(new ChunkKey(id.getAddress(), this.idRegistry.getId(id)));
                 LOG.log(Level.FINEST, "{0} のデータ片 ( {1} ) を消しました。", new Object[] { id.getAddress(), base });
                 return true;
             } else {
@@ -558,9 +704,23 @@ abstract class FileStorage implements Storage {
             }
         }
 
+        ChunkKey key;
+        try {
+            key = toKey(fromFileString(file.getParentFile().getName()), file.getName());
+        } catch (final MyRuleException ignored) {
+            // ファイル名がおかしいなら目録にも載っていない。
+            key = null;
+        }
+
         this.locks.lock(base);
         try {
+            if (this.mappings != null) {
+                this.mappings.remove(base);
+            }
             Files.move(file.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (key != null) {
+                this.manifest.remove(key);
+            }
         } catch (final Exception e) {
             LOG.log(Level.WARNING, "{0} を除外できませんでした。", base);
             return false;
@@ -571,7 +731,12 @@ abstract class FileStorage implements Storage {
     }
 
     @Override
-    public void close() {}
+    public void close() throws IOException {
+        if (this.mappings != null) {
+            this.mappings.clear();
+        }
+        this.manifest.close();
+    }
 
     private static void addBitOnLastByteTest() {
         final int loop = 100_000;
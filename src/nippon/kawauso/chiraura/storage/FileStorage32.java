@@ -17,7 +17,11 @@ final class FileStorage32 extends FileStorage {
      */
 
     FileStorage32(final File root, final int fileSizeLimit, final int directoryBitSize) {
-        super(root, fileSizeLimit, directoryBitSize);
+        this(root, fileSizeLimit, directoryBitSize, 0);
+    }
+
+    FileStorage32(final File root, final int fileSizeLimit, final int directoryBitSize, final int mappingCapacity) {
+        super(root, fileSizeLimit, directoryBitSize, mappingCapacity);
 
         final int maxDirectoryBitSize = (Address.SIZE / 5) * 5;// ディレクトリ名が論理位置以外の影響を受けない長さ。
         if (maxDirectoryBitSize < directoryBitSize) {
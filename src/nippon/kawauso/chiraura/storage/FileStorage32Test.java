@@ -1,7 +1,14 @@
 package nippon.kawauso.chiraura.storage;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.base.Address;
 import nippon.kawauso.chiraura.lib.math.MathFunctions;
 import nippon.kawauso.chiraura.lib.test.TestFunctions;
 
@@ -13,6 +20,8 @@ import org.junit.Test;
  */
 public final class FileStorage32Test {
 
+    private static final Logger LOG = Logger.getLogger(FileStorage32Test.class.getName());
+
     private final File root;
     private final int chunkSizeLimit;
     private final int directoryBitSize;
@@ -87,4 +96,190 @@ public final class FileStorage32Test {
         checkTrash();
     }
 
+    private static final int MAPPING_CAPACITY = 50;
+
+    /**
+     * メモリマップを使う場合。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testMinimumWithMapping() throws Exception {
+        StorageTest.testMinimum(new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize, MAPPING_CAPACITY));
+        checkTrash();
+    }
+
+    /**
+     * メモリマップを使う場合。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRandomWithMapping() throws Exception {
+        final int numOfLoops = 100_000;
+        final int numOfChunks = 100;
+        StorageTest.testRandom(new MemoryStorage(), new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize, MAPPING_CAPACITY), numOfLoops,
+                numOfChunks);
+        checkTrash();
+    }
+
+    /**
+     * メモリマップを使う場合。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrencyByVariableChunkWithMapping() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 100;
+        final int numOfProcesses = 1_000;
+        StorageTest.testConcurrencyByVariableChunk(new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize, MAPPING_CAPACITY), numOfLoops,
+                numOfChunks, numOfProcesses, PREFIX + "mapping:");
+        checkTrash();
+    }
+
+    private static double measureRead(final Storage instance, final List<ConstantChunk> chunks, final int numOfLoops) throws Exception {
+        instance.registerChunk(0, ConstantChunk.class, ConstantChunk.getParser(), ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+        for (final ConstantChunk chunk : chunks) {
+            instance.forceWrite(chunk);
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < numOfLoops; i++) {
+            for (final ConstantChunk chunk : chunks) {
+                Assert.assertNotNull(instance.getIndex(chunk.getId()));
+                Assert.assertEquals(chunk, instance.read(chunk.getId()));
+            }
+        }
+        final long end = System.nanoTime();
+        instance.close();
+        return (end - start) / (1_000_000.0 * numOfLoops * chunks.size());
+    }
+
+    /**
+     * 通常の読み込みとメモリマップを使った読み込みとの比較。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testMappingPerformance() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 40;
+        final int chunkSize = 2_000;
+        final Random random = new Random();
+        final List<ConstantChunk> chunks = new ArrayList<>(numOfChunks);
+        for (int i = 0; i < numOfChunks; i++) {
+            final byte[] buff = new byte[chunkSize];
+            random.nextBytes(buff);
+            chunks.add(new ConstantChunk(i, buff));
+        }
+
+        final double stream = measureRead(new FileStorage32(new File(this.root, "stream"), this.chunkSizeLimit, this.directoryBitSize), chunks, numOfLoops);
+        final double mapping = measureRead(new FileStorage32(new File(this.root, "mapping"), this.chunkSizeLimit, this.directoryBitSize, MAPPING_CAPACITY),
+                chunks, numOfLoops);
+        LOG.log(Level.SEVERE, "{0} 繰り返し回数: {1} データ片数: {2} データ片サイズ: {3} 通常単位消費ミリ秒: {4} メモリマップ単位消費ミリ秒: {5}", new Object[] { PREFIX,
+                numOfLoops, numOfChunks, chunkSize, String.format("%f", stream), String.format("%f", mapping) });
+    }
+
+    private FileStorage32 newRegistered(final File dir) {
+        final FileStorage32 instance = new FileStorage32(dir, this.chunkSizeLimit, this.directoryBitSize);
+        instance.registerChunk(0, ConstantChunk.class, ConstantChunk.getParser(), ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+        return instance;
+    }
+
+    private static void checkIndices(final List<ConstantChunk> chunks, final Map<Chunk.Id<?>, Storage.Index> indices) {
+        Assert.assertEquals(chunks.size(), indices.size());
+        for (final ConstantChunk chunk : chunks) {
+            final Storage.Index index = indices.get(chunk.getId());
+            Assert.assertNotNull(index);
+            Assert.assertEquals(chunk.getHashValue(), index.getHashValue());
+        }
+    }
+
+    /**
+     * 目録が開き直しても残り、目録が無くなっても作り直されるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testManifest() throws Exception {
+        final int numOfChunks = 1_000;
+        final Random random = new Random();
+
+        final List<ConstantChunk> chunks = new ArrayList<>();
+        FileStorage32 instance = newRegistered(this.root);
+        for (int i = 0; i < numOfChunks; i++) {
+            final byte[] buff = new byte[100];
+            random.nextBytes(buff);
+            final ConstantChunk chunk = new ConstantChunk(i, buff);
+            Assert.assertTrue(instance.write(chunk));
+            if (i % 2 == 0) {
+                Assert.assertTrue(instance.delete(chunk.getId()));
+            } else {
+                chunks.add(chunk);
+            }
+        }
+        checkIndices(chunks, instance.getIndices(Address.ZERO, Address.MAX));
+        instance.close();
+
+        // 目録から読む。
+        instance = newRegistered(this.root);
+        checkIndices(chunks, instance.getIndices(Address.ZERO, Address.MAX));
+        final ConstantChunk removed = chunks.remove(0);
+        Assert.assertTrue(instance.delete(removed.getId()));
+        checkIndices(chunks, instance.getIndices(Address.ZERO, Address.MAX));
+        instance.close();
+
+        // 目録を作り直す。
+        Assert.assertTrue(new File(this.root, "%%index%%").delete());
+        instance = newRegistered(this.root);
+        checkIndices(chunks, instance.getIndices(Address.ZERO, Address.MAX));
+        instance.close();
+
+        // 閉じずに終わった後も作り直す。
+        instance = newRegistered(this.root);
+        final ConstantChunk added = new ConstantChunk(numOfChunks, new byte[100]);
+        Assert.assertTrue(instance.write(added));
+        chunks.add(added);
+        instance = newRegistered(this.root);
+        checkIndices(chunks, instance.getIndices(Address.ZERO, Address.MAX));
+        instance.close();
+        checkTrash();
+    }
+
+    /**
+     * 目録を使った範囲取得の処理速度。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testManifestPerformance() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 1_000;
+        final Random random = new Random();
+        final FileStorage32 instance = newRegistered(this.root);
+        for (int i = 0; i < numOfChunks; i++) {
+            final byte[] buff = new byte[16];
+            random.nextBytes(buff);
+            instance.write(new ConstantChunk(i, buff));
+        }
+        instance.close();
+
+        // 1 回目は目録を読み込むだけ、目録を消した 2 回目はディレクトリを歩いて作り直す。
+        final double[] costs = new double[2];
+        for (int j = 0; j < costs.length; j++) {
+            if (j == 1) {
+                Assert.assertTrue(new File(this.root, "%%index%%").delete());
+            }
+            final FileStorage32 reopened = newRegistered(this.root);
+            long start = System.nanoTime();
+            Assert.assertEquals(numOfChunks, reopened.getIndices(Address.ZERO, Address.MAX).size());
+            costs[j] = (System.nanoTime() - start) / 1_000_000.0;
+            if (j == 0) {
+                start = System.nanoTime();
+                for (int i = 0; i < numOfLoops; i++) {
+                    Assert.assertEquals(numOfChunks, reopened.getIndices(Address.ZERO, Address.MAX).size());
+                }
+                LOG.log(Level.SEVERE, "{0} データ片数: {1} 目録からの範囲取得単位消費ミリ秒: {2}", new Object[] { PREFIX, numOfChunks,
+                        String.format("%f", (System.nanoTime() - start) / (1_000_000.0 * numOfLoops)) });
+            }
+            reopened.close();
+        }
+        LOG.log(Level.SEVERE, "{0} データ片数: {1} 初回範囲取得消費ミリ秒: {2} ( 目録有り ), {3} ( 目録無し )", new Object[] { PREFIX, numOfChunks,
+                String.format("%f", costs[0]), String.format("%f", costs[1]) });
+    }
+
 }
@@ -83,6 +83,17 @@ public final class FileStorageConverter {
         }
     }
 
+    /**
+     * データ片以外のために予約された名前かどうか。
+     * ゴミ箱や目録、差分の追記場所のように "%%" で始まる名前はデータ片ではない。
+     * 目録の作業用ファイルのように後ろに拡張子が付くこともある。
+     * @param name ファイル名
+     * @return 予約された名前なら true
+     */
+    static boolean isReserved(final String name) {
+        return name.startsWith("%%");
+    }
+
     private static boolean isFileStorage32(final File root, final int directoryBitSize) {
 
         final List<String> names = new ArrayList<>();
@@ -96,13 +107,22 @@ public final class FileStorageConverter {
             }
 
             for (final File dir : dirs) {
+                if (isReserved(dir.getName())) {
+                    continue;
+                }
+                final String[] children = dir.list();
+                if (children == null) {
+                    // 置き忘れのファイルのようなディレクトリでないもの。
+                    LOG.log(Level.FINEST, "ディレクトリでない {0} を無視します。", dir.getPath());
+                    continue;
+                }
                 names.add(dir.getName());
-                names.addAll(Arrays.asList(dir.list()));
+                names.addAll(Arrays.asList(children));
             }
         }
 
         for (final String name : names) {
-            if (name.equals("%%trash%%")) {
+            if (isReserved(name)) {
                 continue;
             }
 
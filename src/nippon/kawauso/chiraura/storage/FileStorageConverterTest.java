@@ -0,0 +1,93 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class FileStorageConverterTest {
+
+    private final File root;
+    private final int chunkSizeLimit;
+    private final int directoryBitSize;
+
+    /**
+     * 初期化。
+     */
+    public FileStorageConverterTest() {
+        this.root = new File(System.getProperty("java.io.tmpdir") + File.separator + FileStorageConverterTest.class.getName() + File.separator
+                + System.nanoTime());
+
+        this.chunkSizeLimit = 1024 * 4;
+        this.directoryBitSize = 7;
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    private FileStorage32 newRegistered() {
+        final FileStorage32 instance = new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize);
+        instance.registerChunk(0, ConstantChunk.class, ConstantChunk.getParser(), ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+        return instance;
+    }
+
+    private void checkConverted(final ConstantChunk chunk) throws Exception {
+        FileStorageConverter.convert(this.root, this.chunkSizeLimit, this.directoryBitSize);
+        Assert.assertFalse(new File(this.root.getPath() + ".old").exists());
+
+        try (final FileStorage32 instance = newRegistered()) {
+            Assert.assertEquals(chunk, instance.read(chunk.getId()));
+        }
+    }
+
+    /**
+     * 差分の追記ディレクトリを残したまま変換しても、データ片を失わないかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testJournal() throws Exception {
+        final ConstantChunk chunk = new ConstantChunk(1, new byte[100]);
+        try (final FileStorage32 instance = newRegistered()) {
+            Assert.assertTrue(instance.write(chunk));
+        }
+
+        final File journal = new File(this.root, "%%dust%%");
+        Assert.assertTrue(journal.mkdirs());
+        try (final OutputStream output = new FileOutputStream(new File(journal, "journal"))) {
+            output.write(new byte[10]);
+        }
+
+        checkConverted(chunk);
+        Assert.assertTrue(journal.isDirectory());
+    }
+
+    /**
+     * 目録や置き忘れのファイルがあっても、落ちずにデータ片を残したまま変換を終えるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testManifest() throws Exception {
+        final ConstantChunk chunk = new ConstantChunk(1, new byte[100]);
+        try (final FileStorage32 instance = newRegistered()) {
+            Assert.assertTrue(instance.write(chunk));
+            // 全範囲を列挙すると目録ができる。
+            Assert.assertEquals(1, instance.getIndices(Address.ZERO, Address.MAX).size());
+        }
+        final File manifest = new File(this.root, "%%index%%");
+        Assert.assertTrue(manifest.isFile());
+
+        try (final OutputStream output = new FileOutputStream(new File(this.root, "memo.txt"))) {
+            output.write(new byte[10]);
+        }
+
+        checkConverted(chunk);
+        Assert.assertTrue(manifest.isFile());
+    }
+
+}
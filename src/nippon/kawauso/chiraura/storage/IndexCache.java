@@ -1,8 +1,6 @@
 package nippon.kawauso.chiraura.storage;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import nippon.kawauso.chiraura.lib.container.ConcurrentWeightedCache;
 
 /**
  * データ片の概要のキャッシュ。
@@ -52,20 +50,21 @@ final class IndexCache {
     }
 
     /*
-     * 新しく使用した順で固定数キャッシュする。
+     * 概要の大きさはほぼ一定なので、重みを 1 として固定数キャッシュする。
+     * 追い出しは参照頻度を考慮する。
      */
 
-    private final Map<Chunk.Id<?>, Entry> container;
+    private static final ConcurrentWeightedCache.Weigher<Entry> WEIGHER = new ConcurrentWeightedCache.Weigher<Entry>() {
+        @Override
+        public int weigh(final Entry value) {
+            return 1;
+        }
+    };
+
+    private final ConcurrentWeightedCache<Chunk.Id<?>, Entry> container;
 
-    @SuppressWarnings("serial")
     IndexCache(final int capacity) {
-        this.container = Collections.synchronizedMap(
-                new LinkedHashMap<Chunk.Id<?>, Entry>(16, 0.75F, true) {
-                    @Override
-                    protected boolean removeEldestEntry(final Map.Entry<Chunk.Id<?>, Entry> eldest) {
-                        return this.size() > capacity;
-                    }
-                });
+        this.container = new ConcurrentWeightedCache<>(capacity, WEIGHER);
     }
 
     /**
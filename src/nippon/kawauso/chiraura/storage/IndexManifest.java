@@ -0,0 +1,362 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+
+/**
+ * データ片の概要の目録。
+ * 論理位置と型の順に並べてメモリ上に持ち、変更はファイルに追記していく。
+ * 起動時にはファイルを読み直して復元する。
+ * @author chirauraNoSakusha
+ */
+final class IndexManifest implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(IndexManifest.class.getName());
+
+    /*
+     * 記録の形式は、
+     * ペイロード長 (4 バイト固定)、ペイロード、ペイロードの CRC32 (4 バイト固定)。
+     * ペイロードは、
+     * 追加: 種別 (b)、型 (l)、論理位置 (o)、更新日時 (l)、ハッシュ値 (o)、識別子 (ab)。
+     * 削除: 種別 (b)、型 (l)、論理位置 (o)。
+     *
+     * 削除や上書きで不要な記録が溜まったら、生きている記録だけで書き直す。
+     */
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final int HEADER_SIZE = Integer.SIZE / Byte.SIZE;
+    private static final int TRAILER_SIZE = Integer.SIZE / Byte.SIZE;
+
+    // 書き直しを始める最小の記録数。
+    private static final int COMPACTION_MIN = 1_024;
+
+    /**
+     * 目録の項目。
+     */
+    static final class Entry {
+        private final long type;
+        private final byte[] idBytes;
+        private final long date;
+        private final HashValue hashValue;
+
+        // 識別子を復号した概要。
+        private volatile SimpleIndex index;
+
+        private Entry(final long type, final byte[] idBytes, final long date, final HashValue hashValue) {
+            this.type = type;
+            this.idBytes = idBytes;
+            this.date = date;
+            this.hashValue = hashValue;
+            this.index = null;
+        }
+
+        /**
+         * 概要を返す。
+         * @param parser 識別子の復号器
+         * @return 概要
+         * @throws MyRuleException 識別子が復号できなかった場合
+         */
+        SimpleIndex getIndex(final BytesConvertible.Parser<? extends Chunk.Id<?>> parser) throws MyRuleException {
+            SimpleIndex cur = this.index;
+            if (cur == null) {
+                cur = new SimpleIndex(BytesConversion.fromBytes(this.idBytes, parser), this.date, this.hashValue);
+                this.index = cur;
+            }
+            return cur;
+        }
+
+        long getType() {
+            return this.type;
+        }
+    }
+
+    private final File file;
+    private final File openMark; // 開いている間だけ存在する。
+    private final int recordSizeLimit;
+
+    private final ConcurrentNavigableMap<ChunkKey, Entry> entries;
+
+    // 以下、this で保護。
+    private FileChannel channel; // 中身を信用できるようになるまでは null で、メモリ上にだけ記録する。
+    private long numOfRecords;
+
+    // 目録ファイルが既にあって、中身を信用できるかどうか。
+    private volatile boolean ready;
+
+    /**
+     * 作成する。
+     * @param file 目録ファイル
+     * @param recordSizeLimit 1 つの記録の制限サイズ
+     * @throws IOException 読み込み異常
+     */
+    IndexManifest(final File file, final int recordSizeLimit) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Null file.");
+        } else if (recordSizeLimit < 0) {
+            throw new IllegalArgumentException("Negative record size limit ( " + recordSizeLimit + " ).");
+        }
+
+        this.file = file;
+        this.openMark = new File(file.getPath() + ".open");
+        this.recordSizeLimit = recordSizeLimit;
+        this.entries = new ConcurrentSkipListMap<>();
+        this.numOfRecords = 0;
+
+        if (this.openMark.exists()) {
+            // 前回は閉じずに終わったので、データ片ファイルへの書き込みが目録に反映されていないかもしれない。
+            LOG.log(Level.WARNING, "{0} は正常に閉じられていなかったので作り直します。", this.file.getPath());
+            Files.deleteIfExists(this.file.toPath());
+        } else if (!this.openMark.createNewFile()) {
+            throw new IOException("Cannot create file ( " + this.openMark.getPath() + " ).");
+        }
+
+        this.ready = this.file.exists();
+        if (this.ready) {
+            load();
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } else {
+            this.channel = null;
+        }
+    }
+
+    private static int checksum(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static int readFully(final InputStream input, final byte[] buff) throws IOException {
+        int size = 0;
+        while (size < buff.length) {
+            final int n = input.read(buff, size, buff.length - size);
+            if (n < 0) {
+                break;
+            }
+            size += n;
+        }
+        return size;
+    }
+
+    private void load() throws IOException {
+        long size = 0;
+        try (final InputStream input = new BufferedInputStream(new FileInputStream(this.file))) {
+            while (true) {
+                final byte[] header = new byte[HEADER_SIZE];
+                if (readFully(input, header) < HEADER_SIZE) {
+                    break;
+                }
+                final int payloadSize = ByteBuffer.wrap(header).getInt();
+                if (payloadSize < 0 || this.recordSizeLimit < payloadSize) {
+                    break;
+                }
+                final byte[] payload = new byte[payloadSize];
+                final byte[] trailer = new byte[TRAILER_SIZE];
+                if (readFully(input, payload) < payloadSize || readFully(input, trailer) < TRAILER_SIZE
+                        || ByteBuffer.wrap(trailer).getInt() != checksum(payload)) {
+                    break;
+                }
+                try {
+                    restore(payload);
+                } catch (final MyRuleException e) {
+                    LOG.log(Level.WARNING, "異常が発生しました", e);
+                }
+                size += HEADER_SIZE + payloadSize + TRAILER_SIZE;
+                this.numOfRecords++;
+            }
+        }
+        if (size < this.file.length()) {
+            LOG.log(Level.WARNING, "{0} の {1} バイト目以降は壊れていたので切り捨てます。", new Object[] { this.file.getPath(), size });
+            try (final FileChannel output = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE)) {
+                output.truncate(size);
+            }
+        }
+        LOG.log(Level.FINER, "{0} から {1} 個の概要を読み込みました。", new Object[] { this.file.getPath(), this.entries.size() });
+    }
+
+    private void restore(final byte[] payload) throws MyRuleException, IOException {
+        final InputStream input = new ByteArrayInputStream(payload);
+        final byte[] kind = new byte[1];
+        final long[] type = new long[1];
+        final List<Address> address = new ArrayList<>(1);
+        int size = BytesConversion.fromStream(input, payload.length, "blo", kind, type, address, Address.getParser());
+        final ChunkKey key = new ChunkKey(address.get(0), type[0]);
+        if (kind[0] == PUT) {
+            final long[] date = new long[1];
+            final List<HashValue> hashValue = new ArrayList<>(1);
+            final byte[][] idBytes = new byte[1][];
+            size += BytesConversion.fromStream(input, payload.length - size, "loab", date, hashValue, HashValue.getParser(), idBytes);
+            this.entries.put(key, new Entry(type[0], idBytes[0], date[0], hashValue.get(0)));
+        } else if (kind[0] == DELETE) {
+            this.entries.remove(key);
+        } else {
+            throw new MyRuleException("Unknown record kind ( " + kind[0] + " ).");
+        }
+    }
+
+    private static byte[] toRecord(final byte[] payload) {
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE).putInt(payload.length).put(payload).putInt(checksum(payload)).array();
+    }
+
+    private static byte[] toPutRecord(final ChunkKey key, final Entry entry) {
+        return toRecord(BytesConversion.toBytes("bloloab", PUT, key.getType(), key.getAddress(), entry.date, entry.hashValue, entry.idBytes));
+    }
+
+    private synchronized void append(final byte[] record) throws IOException {
+        if (this.channel == null) {
+            return;
+        }
+        final ByteBuffer buff = ByteBuffer.wrap(record);
+        while (buff.hasRemaining()) {
+            this.channel.write(buff);
+        }
+        this.numOfRecords++;
+        if (COMPACTION_MIN <= this.numOfRecords && 2 * this.entries.size() < this.numOfRecords) {
+            compact();
+        }
+    }
+
+    /**
+     * 生きている記録だけで目録ファイルを書き直す。
+     * @throws IOException 書き込み異常
+     */
+    private synchronized void compact() throws IOException {
+        final File tmp = new File(this.file.getPath() + ".tmp");
+        long count = 0;
+        try (final OutputStream output = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            for (final Map.Entry<ChunkKey, Entry> entry : this.entries.entrySet()) {
+                output.write(toPutRecord(entry.getKey(), entry.getValue()));
+                count++;
+            }
+        }
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        LOG.log(Level.FINEST, "{0} を {1} 記録から {2} 記録に書き直しました。", new Object[] { this.file.getPath(), this.numOfRecords, count });
+        this.numOfRecords = count;
+    }
+
+    /**
+     * 目録の中身を信用できるかどうか。
+     * 目録ファイルが無い状態から作った場合は、markReady されるまで信用できない。
+     * @return 信用できる場合のみ true
+     */
+    boolean isReady() {
+        return this.ready;
+    }
+
+    /**
+     * 目録の中身を信用できるようになったことを記録する。
+     * ここで初めて目録ファイルを作る。
+     * @throws IOException 書き込み異常
+     */
+    synchronized void markReady() throws IOException {
+        if (this.ready) {
+            return;
+        }
+        compact();
+        this.ready = true;
+    }
+
+    /**
+     * 概要を登録する。
+     * 呼ぶ前にデータ片をロックしておくこと。
+     * @param key 論理位置と型
+     * @param idBytes 識別子のバイト列
+     * @param date 更新日時
+     * @param hashValue ハッシュ値
+     * @throws IOException 書き込み異常
+     */
+    void put(final ChunkKey key, final byte[] idBytes, final long date, final HashValue hashValue) throws IOException {
+        final Entry entry = new Entry(key.getType(), idBytes, date, hashValue);
+        this.entries.put(key, entry);
+        append(toPutRecord(key, entry));
+    }
+
+    /**
+     * 概要が未登録なら登録する。
+     * 呼ぶ前にデータ片をロックしておくこと。
+     * @param key 論理位置と型
+     * @param idBytes 識別子のバイト列
+     * @param date 更新日時
+     * @param hashValue ハッシュ値
+     * @throws IOException 書き込み異常
+     */
+    void putIfAbsent(final ChunkKey key, final byte[] idBytes, final long date, final HashValue hashValue) throws IOException {
+        final Entry entry = new Entry(key.getType(), idBytes, date, hashValue);
+        if (this.entries.putIfAbsent(key, entry) == null) {
+            append(toPutRecord(key, entry));
+        }
+    }
+
+    /**
+     * 概要を削除する。
+     * 呼ぶ前にデータ片をロックしておくこと。
+     * @param key 論理位置と型
+     * @throws IOException 書き込み異常
+     */
+    void remove(final ChunkKey key) throws IOException {
+        if (this.entries.remove(key) != null) {
+            append(toRecord(BytesConversion.toBytes("blo", DELETE, key.getType(), key.getAddress())));
+        }
+    }
+
+    /**
+     * 範囲内の概要を列挙する。
+     * @param min 列挙する論理位置の最小値
+     * @param max 列挙する論理位置の最大値
+     * @return 範囲内の項目
+     */
+    Collection<Entry> get(final Address min, final Address max) {
+        return this.entries.subMap(ChunkKey.lowest(min), true, ChunkKey.highest(max), true).values();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel == null || !this.channel.isOpen()) {
+            // 中身を信用できないままなら、開いた印も残して次回作り直させる。
+            return;
+        }
+        if (COMPACTION_MIN <= this.numOfRecords && this.entries.size() < this.numOfRecords) {
+            compact();
+        }
+        this.channel.force(true);
+        this.channel.close();
+        Files.deleteIfExists(this.openMark.toPath());
+    }
+
+}
@@ -0,0 +1,206 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.concurrent.LockPool;
+
+/**
+ * ファイルのメモリマップを使い回すための入れ物。
+ * 保持するマップの数は制限され、溢れたら最も使われていないものから捨てる。
+ * ファイルを書き換える前には必ず remove すること。
+ * @author chirauraNoSakusha
+ */
+final class MappingPool {
+
+    private static final Logger LOG = Logger.getLogger(MappingPool.class.getName());
+
+    /*
+     * 捨てたマップはその場で解放する。
+     * Windows ではマップされたままのファイルを上書き、削除、移動できないので、GC 任せにはできない。
+     * 解放したマップを読むと落ちるので、マップはファイルごとのロックの中でだけ読むこと。
+     * 呼び出し側がファイルごとのロックの中で get と remove を呼ぶので、remove では即座に解放できる。
+     * 溢れたものは、ロックを取れたものだけ解放する。取れなかったものは次の機会に回す。
+     */
+
+    // Java 9 以降の解放方法。
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (final ReflectiveOperationException | RuntimeException ignored) {
+            // Java 8 以前。
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final int capacity;
+    private final LockPool<String> locks;
+    private final Map<String, MappedByteBuffer> container;
+
+    /**
+     * 作成する。
+     * @param capacity 保持するマップの数
+     * @param locks ファイルごとのロック。
+     *            鍵はファイルの識別名
+     */
+    MappingPool(final int capacity, final LockPool<String> locks) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Not positive capacity ( " + capacity + " ).");
+        } else if (locks == null) {
+            throw new IllegalArgumentException("Null locks.");
+        }
+        this.capacity = capacity;
+        this.locks = locks;
+        this.container = new LinkedHashMap<>(16, 0.75F, true);
+    }
+
+    /**
+     * マップを解放する。
+     * 解放できなかったら GC 任せにする。
+     * @param mapping マップ
+     */
+    static void unmap(final MappedByteBuffer mapping) {
+        if (mapping == null) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, mapping);
+            } else {
+                final Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(mapping);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.log(Level.FINE, "マップを解放できなかったので GC に任せます", e);
+        }
+    }
+
+    /**
+     * ファイルのマップを得る。
+     * 無ければマップする。
+     * 呼ぶ前にファイルをロックしておくこと。
+     * @param key ファイルの識別名
+     * @param file ファイル
+     * @return 先頭を指すマップの複製。
+     *         ファイルが無い場合は null
+     * @throws IOException 読み込み異常
+     */
+    ByteBuffer get(final String key, final File file) throws IOException {
+        MappedByteBuffer mapping;
+        synchronized (this.container) {
+            mapping = this.container.get(key);
+        }
+        if (mapping == null) {
+            try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (final NoSuchFileException e) {
+                return null;
+            }
+            synchronized (this.container) {
+                // 同じファイルはロックの中でしかマップしないので、他のマップを追い出すことはない。
+                this.container.put(key, mapping);
+                trim(key);
+            }
+        }
+        return mapping.duplicate();
+    }
+
+    /**
+     * 溢れた分を古いものから解放する。
+     * 使用中で解放できないものは飛ばす。
+     * @param current 今使っているファイルの識別名
+     */
+    private void trim(final String current) {
+        final Iterator<Map.Entry<String, MappedByteBuffer>> iterator = this.container.entrySet().iterator();
+        while (this.container.size() > this.capacity && iterator.hasNext()) {
+            final Map.Entry<String, MappedByteBuffer> entry = iterator.next();
+            final String key = entry.getKey();
+            if (key.equals(current) || !this.locks.tryLock(key)) {
+                continue;
+            }
+            try {
+                iterator.remove();
+                unmap(entry.getValue());
+            } finally {
+                this.locks.unlock(key);
+            }
+        }
+    }
+
+    /**
+     * ファイルのマップがあれば得る。
+     * 呼ぶ前にファイルをロックしておくこと。
+     * @param key ファイルの識別名
+     * @return 先頭を指すマップの複製。
+     *         マップが無い場合は null
+     */
+    ByteBuffer peek(final String key) {
+        final MappedByteBuffer mapping;
+        synchronized (this.container) {
+            mapping = this.container.get(key);
+        }
+        if (mapping == null) {
+            return null;
+        }
+        return mapping.duplicate();
+    }
+
+    /**
+     * ファイルのマップを捨てて解放する。
+     * 呼ぶ前にファイルをロックしておくこと。
+     * @param key ファイルの識別名
+     */
+    void remove(final String key) {
+        final MappedByteBuffer mapping;
+        synchronized (this.container) {
+            mapping = this.container.remove(key);
+        }
+        unmap(mapping);
+    }
+
+    /**
+     * 全てのマップを捨てて解放する。
+     * 誰も読んでいないときに呼ぶこと。
+     */
+    void clear() {
+        synchronized (this.container) {
+            for (final MappedByteBuffer mapping : this.container.values()) {
+                unmap(mapping);
+            }
+            this.container.clear();
+        }
+    }
+
+    int size() {
+        synchronized (this.container) {
+            return this.container.size();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import nippon.kawauso.chiraura.lib.concurrent.LockPool;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class MappingPoolTest {
+
+    private final File root;
+
+    /**
+     * 初期化。
+     */
+    public MappingPoolTest() {
+        this.root = new File(System.getProperty("java.io.tmpdir") + File.separator + MappingPoolTest.class.getName() + File.separator + System.nanoTime());
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    private File newFile(final String name, final int value) throws Exception {
+        final File file = new File(this.root, name);
+        try (final OutputStream output = new FileOutputStream(file)) {
+            output.write(value);
+        }
+        return file;
+    }
+
+    /**
+     * 捨てたマップのファイルを上書き、移動、削除できるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRemove() throws Exception {
+        Assert.assertTrue(this.root.mkdirs());
+        final LockPool<String> locks = new LockPool<>();
+        final MappingPool instance = new MappingPool(10, locks);
+
+        final File file = newFile("a", 1);
+        locks.lock("a");
+        try {
+            Assert.assertEquals(1, instance.get("a", file).get());
+            instance.remove("a");
+            newFile("a", 2);
+            Assert.assertEquals(2, instance.get("a", file).get());
+            instance.remove("a");
+            final File dest = new File(this.root, "b");
+            Assert.assertTrue(file.renameTo(dest));
+            Files.delete(dest.toPath());
+            Assert.assertNull(instance.get("a", file));
+        } finally {
+            locks.unlock("a");
+        }
+        Assert.assertEquals(0, instance.size());
+    }
+
+    /**
+     * 溢れたら、使用中でない古いものから捨てるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testTrim() throws Exception {
+        Assert.assertTrue(this.root.mkdirs());
+        final int capacity = 3;
+        final LockPool<String> locks = new LockPool<>();
+        final MappingPool instance = new MappingPool(capacity, locks);
+
+        // 一番古いものを他のプロセスが使用中にする。
+        final Thread user = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    locks.lock("0");
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (final InterruptedException ignored) {
+                } finally {
+                    locks.unlock("0");
+                }
+            }
+        };
+        for (int i = 0; i <= capacity; i++) {
+            final String key = Integer.toString(i);
+            if (i == 1) {
+                user.start();
+                while (locks.tryLock("0")) {
+                    locks.unlock("0");
+                    Thread.sleep(1L);
+                }
+            }
+            final File file = newFile(key, i);
+            locks.lock(key);
+            try {
+                instance.get(key, file);
+            } finally {
+                locks.unlock(key);
+            }
+        }
+
+        // 使用中の "0" は残り、次に古い "1" が捨てられる。
+        Assert.assertEquals(capacity, instance.size());
+        final ByteBuffer buffer = instance.peek("0");
+        Assert.assertNotNull(buffer);
+        Assert.assertEquals(0, buffer.get());
+        Assert.assertNull(instance.peek("1"));
+
+        user.interrupt();
+        user.join();
+        instance.clear();
+        Assert.assertEquals(0, instance.size());
+    }
+
+}
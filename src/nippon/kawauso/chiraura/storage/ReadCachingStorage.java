@@ -1,17 +1,18 @@
 package nippon.kawauso.chiraura.storage;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.container.ConcurrentWeightedCache;
 import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
 import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
 import nippon.kawauso.chiraura.lib.exception.MyRuleException;
 
 /**
  * データ片をキャッシュして read の性能を向上させる倉庫。
+ * キャッシュはデータ片の大きさで制限し、参照頻度を考慮して追い出す。
+ * キャッシュの参照はロックを取らない。
  * @author chirauraNoSakusha
  */
 final class ReadCachingStorage implements Storage {
@@ -21,21 +22,24 @@ final class ReadCachingStorage implements Storage {
      * cache を書き換える場合にのみ、base の内容と同期するために lock する。
      */
     private final Storage base;
-    private final Map<Chunk.Id<?>, Chunk> cache;
+    private final ConcurrentWeightedCache<Chunk.Id<?>, Chunk> cache;
 
-    @SuppressWarnings("serial")
-    ReadCachingStorage(final Storage base, final int capacity) {
+    /**
+     * 作成する。
+     * @param base 下位層
+     * @param capacity キャッシュするデータ片の大きさの和の上限 (バイト)
+     */
+    ReadCachingStorage(final Storage base, final long capacity) {
         if (base == null) {
             throw new IllegalArgumentException("Null base storage.");
         }
         this.base = base;
-        this.cache = Collections.synchronizedMap(
-                new LinkedHashMap<Chunk.Id<?>, Chunk>(16, 0.75F, true) {
-                    @Override
-                    protected boolean removeEldestEntry(final Map.Entry<Chunk.Id<?>, Chunk> eldest) {
-                        return this.size() > capacity;
-                    }
-                });
+        this.cache = new ConcurrentWeightedCache<>(capacity, new ConcurrentWeightedCache.Weigher<Chunk>() {
+            @Override
+            public int weigh(final Chunk value) {
+                return value.byteSize();
+            }
+        });
     }
 
     @Override
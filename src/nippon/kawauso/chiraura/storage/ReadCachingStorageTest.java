@@ -1,10 +1,21 @@
 package nippon.kawauso.chiraura.storage;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import nippon.kawauso.chiraura.lib.converter.NumberBytesConversion;
 import nippon.kawauso.chiraura.lib.math.MathFunctions;
 import nippon.kawauso.chiraura.lib.test.TestFunctions;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -12,6 +23,11 @@ import org.junit.Test;
  */
 public final class ReadCachingStorageTest {
 
+    private static final Logger LOG = Logger.getLogger(ReadCachingStorageTest.class.getName());
+
+    // データ片 1 つあたりの大きさの目安 (バイト)。
+    private static final int CHUNK_SIZE = 64;
+
     private final File root;
     private final int chunkSizeLimit;
     private final int directoryBitSize;
@@ -45,7 +61,7 @@ public final class ReadCachingStorageTest {
     public void testRandom() throws Exception {
         final int numOfLoops = 100_000;
         final int numOfChunks = 100;
-        StorageTest.testRandom(new MemoryStorage(), new ReadCachingStorage(new MemoryStorage(), (int) (this.factor * numOfChunks)), numOfLoops, numOfChunks);
+        StorageTest.testRandom(new MemoryStorage(), new ReadCachingStorage(new MemoryStorage(), (long) (this.factor * numOfChunks) * CHUNK_SIZE), numOfLoops, numOfChunks);
     }
 
     /**
@@ -58,7 +74,7 @@ public final class ReadCachingStorageTest {
         final int numOfProcesses = 1_000;
         final int chunkSize = 2 * (int) ((MathFunctions.log2(numOfChunks) + Byte.SIZE - 1) / Byte.SIZE);
         StorageTest.testConcurrencyPerformanceByConstantChunk(new ReadCachingStorage(new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize),
-                (int) (this.factor * numOfChunks)), numOfLoops, numOfChunks, numOfProcesses, chunkSize, this.prefix);
+                (long) (this.factor * numOfChunks) * CHUNK_SIZE), numOfLoops, numOfChunks, numOfProcesses, chunkSize, this.prefix);
     }
 
     /**
@@ -70,8 +86,70 @@ public final class ReadCachingStorageTest {
         final int numOfChunks = 100;
         final int numOfProcesses = 1_000;
         StorageTest.testConcurrencyByVariableChunk(new ReadCachingStorage(new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize),
-                (int) (this.factor * numOfChunks)),
+                (long) (this.factor * numOfChunks) * CHUNK_SIZE),
                 numOfLoops, numOfChunks, numOfProcesses, this.prefix);
     }
 
+    /**
+     * 並列に読み込む速さを、WriteCachingStorage のキャッシュと比べる。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrentReadPerformance() throws Exception {
+        final int numOfChunks = 1_000;
+        final int numOfThreads = 16;
+        final int numOfLoops = 50_000;
+
+        final List<VariableChunk.Id> chunkIds = new ArrayList<>(numOfChunks);
+        final Storage base = new MemoryStorage();
+        base.registerChunk(0, VariableChunk.class, VariableChunk.getParser(), VariableChunk.Id.class, VariableChunk.Id.getParser());
+        long totalSize = 0;
+        for (int i = 0; i < numOfChunks; i++) {
+            final VariableChunk chunk = new VariableChunk(Integer.toString(i), i, NumberBytesConversion.toBytes(i));
+            base.write(chunk);
+            chunkIds.add(chunk.getId());
+            totalSize += chunk.byteSize();
+        }
+
+        final Storage instance = new ReadCachingStorage(base, totalSize);
+        final Storage reference = new WriteCachingStorage(base, numOfChunks);
+        final ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        long instanceTime = 0;
+        long referenceTime = 0;
+        for (int k = 0; k < 3; k++) {
+            long start = System.nanoTime();
+            runReaders(executor, instance, chunkIds, numOfThreads, numOfLoops);
+            instanceTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            runReaders(executor, reference, chunkIds, numOfThreads, numOfLoops);
+            referenceTime = System.nanoTime() - start;
+        }
+        executor.shutdown();
+        final long numOfReads = (long) numOfThreads * numOfLoops;
+        LOG.log(Level.SEVERE, "{0} 並列の読み込みの単位消費ナノ秒: {1} ({2}: {3})", new Object[] { numOfThreads,
+                String.format("%.1f", (double) instanceTime / numOfReads), WriteCachingStorage.class.getSimpleName(),
+                String.format("%.1f", (double) referenceTime / numOfReads) });
+    }
+
+    private static void runReaders(final ExecutorService executor, final Storage storage, final List<VariableChunk.Id> chunkIds, final int numOfThreads,
+            final int numOfLoops) throws Exception {
+        final List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < numOfThreads; i++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final Random random = new Random();
+                    for (int j = 0; j < numOfLoops; j++) {
+                        Assert.assertNotNull(storage.read(chunkIds.get(random.nextInt(chunkIds.size()))));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (final Future<Void> future : futures) {
+            future.get();
+        }
+    }
+
 }
@@ -0,0 +1,779 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.base.HashValue;
+import nippon.kawauso.chiraura.lib.concurrent.LockPool;
+import nippon.kawauso.chiraura.lib.converter.BytesConversion;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistries;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.process.Reporter;
+
+/**
+ * データ片を大きな区画ファイルに追記していく倉庫。
+ * 論理位置と型から区画内の位置への対応はメモリ上に持ち、起動時に全区画を走査して復元する。
+ * 上書きや削除で不要になった記録は裏で詰め直す。
+ * @author chirauraNoSakusha
+ */
+final class SegmentStorage implements Storage {
+
+    private static final Logger LOG = Logger.getLogger(SegmentStorage.class.getName());
+
+    /*
+     * 区画ファイルは {root}/{番号}.seg。
+     * 番号が大きいほど新しく、追記するのは一番新しい区画のみ。
+     *
+     * 記録の形式は、
+     * ペイロード長 (4 バイト固定)、ペイロード、ペイロードの CRC32 (4 バイト固定)。
+     * ペイロードは、
+     * 追加: 種別 (b)、型 (l)、論理位置 (o)、更新日時 (l)、ハッシュ値 (o)、識別子 (ab)、データ片 (ab)。
+     * 削除: 種別 (b)、型 (l)、論理位置 (o)。
+     *
+     * 同じ論理位置と型の記録は後のものが優先される。
+     * 削除記録は、それより古い区画が残っている限り、詰め直しでも捨てない。
+     */
+
+    private static final String SUFFIX = ".seg";
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final int HEADER_SIZE = Integer.SIZE / Byte.SIZE;
+    private static final int TRAILER_SIZE = Integer.SIZE / Byte.SIZE;
+
+    /**
+     * 区画。
+     */
+    private static final class Segment {
+        private final long number;
+        private final File file;
+        private final FileChannel channel;
+        private final AtomicLong size;
+        private final AtomicLong garbage;
+
+        private Segment(final long number, final File file, final FileChannel channel, final long size) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+            this.size = new AtomicLong(size);
+            this.garbage = new AtomicLong(0);
+        }
+
+        private double getGarbageRatio() {
+            final long total = this.size.get();
+            if (total <= 0) {
+                return 0.0;
+            }
+            return this.garbage.get() / (double) total;
+        }
+
+        @Override
+        public String toString() {
+            return (new StringBuilder(this.getClass().getSimpleName()))
+                    .append('[').append(this.file.getName())
+                    .append(", size=").append(this.size.get())
+                    .append(", garbage=").append(this.garbage.get())
+                    .append(']').toString();
+        }
+    }
+
+    /**
+     * 記録の在処と概要。
+     */
+    private static final class Entry {
+        private final Segment segment;
+        private final long offset;
+        private final int payloadSize;
+        private final long date;
+        private final HashValue hashValue;
+        private final byte[] idBytes;
+
+        // 識別子を復号した概要。getIndices 用。
+        private volatile SimpleIndex index;
+
+        private Entry(final Segment segment, final long offset, final int payloadSize, final long date, final HashValue hashValue, final byte[] idBytes) {
+            this.segment = segment;
+            this.offset = offset;
+            this.payloadSize = payloadSize;
+            this.date = date;
+            this.hashValue = hashValue;
+            this.idBytes = idBytes;
+            this.index = null;
+        }
+
+        private long recordSize() {
+            return HEADER_SIZE + (long) this.payloadSize + TRAILER_SIZE;
+        }
+    }
+
+    // 参照。
+    private final File root;
+    private final int fileSizeLimit;
+    private final long segmentSizeLimit;
+    private final double compactionThreshold;
+
+    // 保持。
+    private final LockPool<ChunkKey> locks;
+    private final TypeRegistry<Chunk> chunkRegistry;
+    private final TypeRegistry<Chunk.Id<?>> idRegistry;
+
+    private final NavigableMap<ChunkKey, Entry> entries;
+    private final Map<ChunkKey, Entry> tombstones;
+    private final NavigableMap<Long, Segment> segments;
+
+    private final ReentrantLock appendLock;
+    private Segment active; // appendLock で保護。
+
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionScheduled;
+    private final AtomicBoolean closed;
+
+    /**
+     * 作成する。
+     * @param root 区画ファイルを置くディレクトリ
+     * @param fileSizeLimit 1 つの記録の制限サイズ
+     * @param segmentSizeLimit 区画の目安サイズ
+     * @param compactionThreshold 区画を詰め直す不要記録の割合
+     */
+    SegmentStorage(final File root, final int fileSizeLimit, final long segmentSizeLimit, final double compactionThreshold) {
+        if (root == null) {
+            throw new IllegalArgumentException("Null root.");
+        } else if (fileSizeLimit < 0) {
+            throw new IllegalArgumentException("Invalid file size limit ( " + fileSizeLimit + " ).");
+        } else if (segmentSizeLimit <= 0) {
+            throw new IllegalArgumentException("Not positive segment size limit ( " + segmentSizeLimit + " ).");
+        } else if (!(0.0 < compactionThreshold && compactionThreshold <= 1.0)) {
+            throw new IllegalArgumentException("Invalid compaction threshold ( " + compactionThreshold + " ) not in ( 0, 1 ].");
+        }
+
+        this.root = root;
+        loadDirectory(this.root);
+        this.fileSizeLimit = fileSizeLimit;
+        this.segmentSizeLimit = segmentSizeLimit;
+        this.compactionThreshold = compactionThreshold;
+
+        this.locks = new LockPool<>();
+        this.chunkRegistry = TypeRegistries.newRegistry();
+        this.idRegistry = TypeRegistries.newRegistry();
+
+        this.entries = new ConcurrentSkipListMap<>();
+        this.tombstones = new ConcurrentHashMap<>();
+        this.segments = new ConcurrentSkipListMap<>();
+
+        this.appendLock = new ReentrantLock();
+
+        this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, SegmentStorage.class.getSimpleName() + "-compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.compactionScheduled = new AtomicBoolean(false);
+        this.closed = new AtomicBoolean(false);
+
+        try {
+            recover();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Cannot load segments in " + root.getPath() + ".", e);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    SegmentStorage(final File root, final int fileSizeLimit) {
+        this(root, fileSizeLimit, 64L * 1024 * 1024, 0.5);
+    }
+
+    private static void loadDirectory(final File directory) {
+        if (!directory.exists()) {
+            if (!directory.mkdirs()) {
+                throw new IllegalStateException("Cannot make directory ( " + directory.getPath() + " ).");
+            }
+            LOG.log(Level.INFO, "{0} を作成しました。", directory.getPath());
+        } else if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not directory ( " + directory.getPath() + " ).");
+        }
+        if (!directory.canRead() && !directory.setReadable(true)) {
+            throw new IllegalStateException("Not readable directory ( " + directory.getPath() + " ).");
+        } else if (!directory.canWrite() && !directory.setWritable(true)) {
+            throw new IllegalStateException("Not writable directory ( " + directory.getPath() + " ).");
+        }
+    }
+
+    private static int checksum(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private Segment openSegment(final long number) throws IOException {
+        final File file = new File(this.root, String.format("%016d", number) + SUFFIX);
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final Segment segment = new Segment(number, file, channel, channel.size());
+        this.segments.put(number, segment);
+        return segment;
+    }
+
+    /**
+     * 区画を走査して対応表を復元する。
+     * 末尾の壊れた記録は切り捨てる。
+     * @throws IOException 読み込み異常
+     */
+    private void recover() throws IOException {
+        final File[] files = this.root.listFiles();
+        final List<Long> numbers = new ArrayList<>();
+        if (files != null) {
+            for (final File file : files) {
+                final String name = file.getName();
+                if (!file.isFile() || !name.endsWith(SUFFIX)) {
+                    continue;
+                }
+                try {
+                    numbers.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (final NumberFormatException e) {
+                    LOG.log(Level.WARNING, "{0} は区画ファイルではありません。", file.getPath());
+                }
+            }
+        }
+        Collections.sort(numbers);
+
+        for (final long number : numbers) {
+            scan(openSegment(number));
+        }
+
+        if (this.segments.isEmpty()) {
+            this.active = openSegment(0);
+        } else {
+            this.active = this.segments.lastEntry().getValue();
+        }
+    }
+
+    private void scan(final Segment segment) throws IOException {
+        long offset = 0;
+        // 閉じると区画のチャネルまで閉じてしまうので閉じない。
+        final InputStream input = new BufferedInputStream(Channels.newInputStream(segment.channel.position(0)));
+        while (true) {
+            final byte[] header = new byte[HEADER_SIZE];
+            final int headerSize = readFully(input, header);
+            if (headerSize == 0) {
+                break;
+            } else if (headerSize < HEADER_SIZE) {
+                truncate(segment, offset, "途切れた見出し");
+                break;
+            }
+
+            final int payloadSize = ByteBuffer.wrap(header).getInt();
+            if (payloadSize < 0 || this.fileSizeLimit < payloadSize) {
+                truncate(segment, offset, "不正な記録長 ( " + payloadSize + " )");
+                break;
+            }
+            final byte[] payload = new byte[payloadSize];
+            final byte[] trailer = new byte[TRAILER_SIZE];
+            if (readFully(input, payload) < payloadSize || readFully(input, trailer) < TRAILER_SIZE) {
+                truncate(segment, offset, "途切れた記録");
+                break;
+            } else if (ByteBuffer.wrap(trailer).getInt() != checksum(payload)) {
+                truncate(segment, offset, "壊れた記録");
+                break;
+            }
+
+            try {
+                restore(segment, offset, payload);
+            } catch (final MyRuleException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+                segment.garbage.addAndGet(HEADER_SIZE + (long) payloadSize + TRAILER_SIZE);
+            }
+            offset += HEADER_SIZE + (long) payloadSize + TRAILER_SIZE;
+        }
+    }
+
+    private static int readFully(final InputStream input, final byte[] buff) throws IOException {
+        int size = 0;
+        while (size < buff.length) {
+            final int n = input.read(buff, size, buff.length - size);
+            if (n < 0) {
+                break;
+            }
+            size += n;
+        }
+        return size;
+    }
+
+    private void truncate(final Segment segment, final long offset, final String reason) throws IOException {
+        LOG.log(Level.WARNING, "{0} の {1} バイト目以降に{2}があったので切り捨てます。", new Object[] { segment.file.getPath(), offset, reason });
+        segment.channel.truncate(offset);
+        segment.size.set(offset);
+    }
+
+    private void restore(final Segment segment, final long offset, final byte[] payload) throws MyRuleException, IOException {
+        final InputStream input = new ByteArrayInputStream(payload);
+        final byte[] kind = new byte[1];
+        final long[] type = new long[1];
+        final List<Address> address = new ArrayList<>(1);
+        int size = BytesConversion.fromStream(input, payload.length, "blo", kind, type, address, Address.getParser());
+        final ChunkKey key = new ChunkKey(address.get(0), type[0]);
+
+        if (kind[0] == PUT) {
+            final long[] date = new long[1];
+            final List<HashValue> hashValue = new ArrayList<>(1);
+            final byte[][] idBytes = new byte[1][];
+            size += BytesConversion.fromStream(input, payload.length - size, "loab", date, hashValue, HashValue.getParser(), idBytes);
+            final Entry entry = new Entry(segment, offset, payload.length, date[0], hashValue.get(0), idBytes[0]);
+            discard(this.entries.put(key, entry));
+            discard(this.tombstones.remove(key));
+        } else if (kind[0] == DELETE) {
+            final Entry entry = new Entry(segment, offset, payload.length, 0, null, null);
+            discard(this.entries.remove(key));
+            discard(this.tombstones.put(key, entry));
+        } else {
+            throw new MyRuleException("Unknown record kind ( " + kind[0] + " ).");
+        }
+    }
+
+    /**
+     * 記録を不要にする。
+     * @param entry 不要になった記録
+     */
+    private static void discard(final Entry entry) {
+        if (entry != null) {
+            entry.segment.garbage.addAndGet(entry.recordSize());
+        }
+    }
+
+    /**
+     * 記録を追記する。
+     * @param payload ペイロード
+     * @return 追記した区画と位置
+     * @throws IOException 書き込み異常
+     */
+    private Entry append(final byte[] payload, final long date, final HashValue hashValue, final byte[] idBytes) throws IOException {
+        final ByteBuffer buff = ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE);
+        buff.putInt(payload.length).put(payload).putInt(checksum(payload));
+
+        this.appendLock.lock();
+        try {
+            if (0 < this.active.size.get() && this.segmentSizeLimit < this.active.size.get() + buff.capacity()) {
+                // 次の区画へ。
+                final Segment old = this.active;
+                this.active = openSegment(old.number + 1);
+                LOG.log(Level.FINEST, "{0} に追記を始めます。", this.active.file.getPath());
+            }
+            final Segment segment = this.active;
+            final long offset = segment.size.get();
+            buff.flip();
+            for (long position = offset; buff.hasRemaining();) {
+                position += segment.channel.write(buff, position);
+            }
+            segment.size.addAndGet(buff.capacity());
+            return new Entry(segment, offset, payload.length, date, hashValue, idBytes);
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     * 記録のペイロードを読む。
+     * @param entry 記録の在処
+     * @return ペイロード
+     * @throws MyRuleException 記録が壊れていた場合
+     * @throws IOException 読み込み異常
+     */
+    private static byte[] readPayload(final Entry entry) throws MyRuleException, IOException {
+        final ByteBuffer buff = ByteBuffer.allocate((int) entry.recordSize());
+        for (long position = entry.offset; buff.hasRemaining();) {
+            final int n = entry.segment.channel.read(buff, position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of " + entry.segment.file.getPath() + ".");
+            }
+            position += n;
+        }
+        buff.flip();
+        final int payloadSize = buff.getInt();
+        if (payloadSize != entry.payloadSize) {
+            throw new MyRuleException("Invalid record size ( " + payloadSize + " ) not ( " + entry.payloadSize + " ) in " + entry.segment.file.getPath() + ".");
+        }
+        final byte[] payload = new byte[payloadSize];
+        buff.get(payload);
+        if (buff.getInt() != checksum(payload)) {
+            throw new MyRuleException("Broken record at " + entry.offset + " in " + entry.segment.file.getPath() + ".");
+        }
+        return payload;
+    }
+
+    @Override
+    public <C extends Chunk, I extends Chunk.Id<C>> void registerChunk(final long type, final Class<C> chunkClass,
+            final BytesConvertible.Parser<? extends C> chunkParser, final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser) {
+        this.chunkRegistry.register(type, chunkClass, chunkParser);
+        this.idRegistry.register(type, idClass, idParser);
+    }
+
+    @Override
+    public TypeRegistry<Chunk> getChunkRegistry() {
+        return TypeRegistries.unregisterableRegistry(this.chunkRegistry);
+    }
+
+    @Override
+    public TypeRegistry<Chunk.Id<?>> getIdRegistry() {
+        return TypeRegistries.unregisterableRegistry(this.idRegistry);
+    }
+
+    private ChunkKey toKey(final Chunk.Id<?> id) {
+        return new ChunkKey(id.getAddress(), this.idRegistry.getId(id));
+    }
+
+    @Override
+    public void lock(final Chunk.Id<?> id) throws InterruptedException {
+        this.locks.lock(toKey(id));
+    }
+
+    @Override
+    public boolean tryLock(final Chunk.Id<?> id) {
+        return this.locks.tryLock(toKey(id));
+    }
+
+    @Override
+    public void unlock(final Chunk.Id<?> id) {
+        this.locks.unlock(toKey(id));
+    }
+
+    @Override
+    public boolean contains(final Chunk.Id<?> id) {
+        return this.entries.containsKey(toKey(id));
+    }
+
+    @Override
+    public Index getIndex(final Chunk.Id<?> id) {
+        final Entry entry = this.entries.get(toKey(id));
+        if (entry == null) {
+            return null;
+        }
+        return new SimpleIndex(id, entry.date, entry.hashValue);
+    }
+
+    private SimpleIndex toIndex(final ChunkKey key, final Entry entry) throws MyRuleException {
+        SimpleIndex index = entry.index;
+        if (index == null) {
+            final BytesConvertible.Parser<? extends Chunk.Id<?>> parser = this.idRegistry.getParser(key.getType());
+            if (parser == null) {
+                return null;
+            }
+            index = new SimpleIndex(BytesConversion.fromBytes(entry.idBytes, parser), entry.date, entry.hashValue);
+            entry.index = index;
+        }
+        return index;
+    }
+
+    @Override
+    public Map<Chunk.Id<?>, Storage.Index> getIndices(final Address min, final Address max) {
+        final Map<Chunk.Id<?>, Storage.Index> indices = new HashMap<>();
+        for (final Map.Entry<ChunkKey, Entry> entry : this.entries.subMap(ChunkKey.lowest(min), true, ChunkKey.highest(max), true).entrySet()) {
+            try {
+                final SimpleIndex index = toIndex(entry.getKey(), entry.getValue());
+                if (index == null) {
+                    LOG.log(Level.WARNING, "{0} のデータ片の型は未登録です。", entry.getKey());
+                    continue;
+                }
+                indices.put(index.getId(), index);
+            } catch (final MyRuleException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+            }
+        }
+        return indices;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Chunk> T read(final Chunk.Id<T> id) throws MyRuleException, IOException, InterruptedException {
+        final BytesConvertible.Parser<? extends Chunk> parser = this.chunkRegistry.getParser(id.getChunkClass());
+        if (parser == null) {
+            throw new IllegalArgumentException("Not registered chunk type ( " + id.getChunkClass() + " ).");
+        }
+
+        final ChunkKey key = toKey(id);
+        final byte[] payload;
+        this.locks.lock(key);
+        try {
+            final Entry entry = this.entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            payload = readPayload(entry);
+        } finally {
+            this.locks.unlock(key);
+        }
+
+        final byte[] kind = new byte[1];
+        final long[] type = new long[1];
+        final List<Address> address = new ArrayList<>(1);
+        final long[] date = new long[1];
+        final List<HashValue> hashValue = new ArrayList<>(1);
+        final byte[][] idBytes = new byte[1][];
+        final byte[][] chunkBytes = new byte[1][];
+        BytesConversion.fromBytes(payload, payload.length, "bloloabab", kind, type, address, Address.getParser(), date, hashValue, HashValue.getParser(),
+                idBytes, chunkBytes);
+        final Chunk chunk = BytesConversion.fromBytes(chunkBytes[0], parser);
+
+        // 検査。
+        final HashValue calculated = chunk.getHashValue();
+        if (!calculated.equals(hashValue.get(0))) {
+            LOG.log(Level.WARNING, "再計算したハッシュ値 ( {0} ) が読み込んだハッシュ値 ( {1} ) と異なります。", new Object[] { calculated, hashValue.get(0) });
+        }
+
+        return (T) chunk;
+    }
+
+    /**
+     * データ片を追記して対応表を更新する。
+     * 呼ぶ前に key をロックしておくこと。
+     * @param key 論理位置と型
+     * @param chunk データ片
+     * @throws IOException 書き込み異常
+     */
+    private void put(final ChunkKey key, final Chunk chunk) throws IOException {
+        final byte[] idBytes = BytesConversion.toBytes(chunk.getId());
+        final byte[] chunkBytes = BytesConversion.toBytes(chunk);
+        final long date = chunk.getDate();
+        final HashValue hashValue = chunk.getHashValue();
+        final byte[] payload = BytesConversion.toBytes("bloloabab", PUT, key.getType(), key.getAddress(), date, hashValue, idBytes, chunkBytes);
+        if (this.fileSizeLimit < payload.length) {
+            throw new IllegalArgumentException("Too large record size ( " + payload.length + " ) over limit ( " + this.fileSizeLimit + " ).");
+        }
+
+        final Entry entry = append(payload, date, hashValue, idBytes);
+        discard(this.entries.put(key, entry));
+        discard(this.tombstones.remove(key));
+        LOG.log(Level.FINEST, "{0} のデータ片を {1} の {2} バイト目に書き込みました。", new Object[] { key.getAddress(), entry.segment.file.getName(), entry.offset });
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override
+    public boolean write(final Chunk chunk) throws IOException, InterruptedException {
+        final ChunkKey key = toKey(chunk.getId());
+        this.locks.lock(key);
+        try {
+            final Entry old = this.entries.get(key);
+            if (old != null && old.date == chunk.getDate() && old.hashValue.equals(chunk.getHashValue())) {
+                return false;
+            }
+            put(key, chunk);
+            return true;
+        } finally {
+            this.locks.unlock(key);
+        }
+    }
+
+    @Override
+    public void forceWrite(final Chunk chunk) throws IOException, InterruptedException {
+        final ChunkKey key = toKey(chunk.getId());
+        this.locks.lock(key);
+        try {
+            put(key, chunk);
+        } finally {
+            this.locks.unlock(key);
+        }
+    }
+
+    @Override
+    public boolean delete(final Chunk.Id<?> id) throws IOException, InterruptedException {
+        final ChunkKey key = toKey(id);
+        this.locks.lock(key);
+        try {
+            if (!this.entries.containsKey(key)) {
+                return false;
+            }
+            final Entry entry = append(BytesConversion.toBytes("blo", DELETE, key.getType(), key.getAddress()), 0, null, null);
+            discard(this.entries.remove(key));
+            discard(this.tombstones.put(key, entry));
+            LOG.log(Level.FINEST, "{0} のデータ片を消しました。", id.getAddress());
+        } finally {
+            this.locks.unlock(key);
+        }
+        scheduleCompactionIfNeeded();
+        return true;
+    }
+
+    /*
+     * 以下、詰め直し。
+     */
+
+    private void scheduleCompactionIfNeeded() {
+        if (this.closed.get() || !needsCompaction()) {
+            return;
+        }
+        if (!this.compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        this.compactor.submit(new Reporter<Void>(Level.WARNING) {
+            @Override
+            protected Void subCall() throws Exception {
+                try {
+                    compact();
+                } finally {
+                    SegmentStorage.this.compactionScheduled.set(false);
+                }
+                return null;
+            }
+        });
+    }
+
+    private boolean needsCompaction() {
+        final Segment current = this.active;
+        for (final Segment segment : this.segments.values()) {
+            if (segment != current && this.compactionThreshold <= segment.getGarbageRatio()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 不要記録の多い区画を詰め直す。
+     * @throws IOException 読み書き異常
+     * @throws InterruptedException 割り込まれた場合
+     */
+    void compact() throws IOException, InterruptedException {
+        for (final Segment segment : new ArrayList<>(this.segments.values())) {
+            if (this.closed.get()) {
+                return;
+            }
+            this.appendLock.lock();
+            try {
+                if (segment == this.active) {
+                    continue;
+                }
+            } finally {
+                this.appendLock.unlock();
+            }
+            if (segment.getGarbageRatio() < this.compactionThreshold) {
+                continue;
+            }
+            compact(segment);
+        }
+    }
+
+    private void compact(final Segment segment) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        int moved = 0;
+
+        // 生きている記録を移す。
+        for (final Map.Entry<ChunkKey, Entry> entry : this.entries.entrySet()) {
+            if (entry.getValue().segment != segment) {
+                continue;
+            }
+            final ChunkKey key = entry.getKey();
+            this.locks.lock(key);
+            try {
+                final Entry cur = this.entries.get(key);
+                if (cur == null || cur.segment != segment) {
+                    continue;
+                }
+                final byte[] payload;
+                try {
+                    payload = readPayload(cur);
+                } catch (final MyRuleException e) {
+                    LOG.log(Level.WARNING, "異常が発生しました", e);
+                    LOG.log(Level.INFO, "壊れていた {0} を除外しました。", key);
+                    this.entries.remove(key);
+                    continue;
+                }
+                final Entry next = append(payload, cur.date, cur.hashValue, cur.idBytes);
+                next.index = cur.index;
+                this.entries.put(key, next);
+                moved++;
+            } finally {
+                this.locks.unlock(key);
+            }
+        }
+
+        // 削除記録は、より古い区画があるなら移す。
+        for (final Map.Entry<ChunkKey, Entry> entry : this.tombstones.entrySet()) {
+            if (entry.getValue().segment != segment) {
+                continue;
+            }
+            final ChunkKey key = entry.getKey();
+            this.locks.lock(key);
+            try {
+                final Entry cur = this.tombstones.get(key);
+                if (cur == null || cur.segment != segment) {
+                    continue;
+                }
+                if (this.segments.firstKey() < segment.number) {
+                    this.tombstones.put(key, append(BytesConversion.toBytes("blo", DELETE, key.getType(), key.getAddress()), 0, null, null));
+                } else {
+                    this.tombstones.remove(key);
+                }
+            } finally {
+                this.locks.unlock(key);
+            }
+        }
+
+        this.segments.remove(segment.number);
+        segment.channel.close();
+        Files.deleteIfExists(segment.file.toPath());
+        LOG.log(Level.FINEST, "{0} を詰め直しました ( 移動記録数: {1}, 所要ミリ秒: {2} )。",
+                new Object[] { segment.file.getName(), moved, (System.nanoTime() - start) / 1_000_000 });
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        this.compactor.shutdown();
+        this.compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        this.appendLock.lock();
+        try {
+            for (final Segment segment : this.segments.values()) {
+                if (segment.channel.isOpen()) {
+                    segment.channel.force(true);
+                    segment.channel.close();
+                }
+            }
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append('[').append(this.root.getPath())
+                .append(", numOfChunks=").append(this.entries.size())
+                .append(", segments=").append(this.segments.values())
+                .append(']').toString();
+    }
+
+}
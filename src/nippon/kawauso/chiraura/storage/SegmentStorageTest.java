@@ -0,0 +1,188 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.math.MathFunctions;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class SegmentStorageTest {
+
+    private static final Logger LOG = Logger.getLogger(SegmentStorageTest.class.getName());
+
+    private final File root;
+    private final int chunkSizeLimit;
+    private final long segmentSizeLimit;
+    private final double compactionThreshold;
+
+    /**
+     * 初期化。
+     */
+    public SegmentStorageTest() {
+        this.root = new File(System.getProperty("java.io.tmpdir") + File.separator + SegmentStorageTest.class.getName() + File.separator + System.nanoTime());
+
+        this.chunkSizeLimit = 1024 * 4;
+        // 詰め直しが起きるように小さめ。
+        this.segmentSizeLimit = 1024 * 64;
+        this.compactionThreshold = 0.5;
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    private SegmentStorage newInstance() {
+        return new SegmentStorage(this.root, this.chunkSizeLimit, this.segmentSizeLimit, this.compactionThreshold);
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testMinimum() throws Exception {
+        StorageTest.testMinimum(newInstance());
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRandom() throws Exception {
+        final int numOfLoops = 100_000;
+        final int numOfChunks = 100;
+        StorageTest.testRandom(new MemoryStorage(), newInstance(), numOfLoops, numOfChunks);
+    }
+
+    /**
+     * 開き直しても内容が復元されるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        final int numOfChunks = 1_000;
+        final Random random = new Random();
+
+        final List<ConstantChunk> chunks = new ArrayList<>();
+        SegmentStorage instance = newInstance();
+        instance.registerChunk(0, ConstantChunk.class, ConstantChunk.getParser(), ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+        for (int i = 0; i < numOfChunks; i++) {
+            final byte[] buff = new byte[100];
+            random.nextBytes(buff);
+            final ConstantChunk chunk = new ConstantChunk(i, buff);
+            chunks.add(chunk);
+            Assert.assertTrue(instance.write(chunk));
+        }
+        for (int i = 0; i < numOfChunks; i += 2) {
+            Assert.assertTrue(instance.delete(chunks.get(i).getId()));
+        }
+        instance.close();
+
+        instance = newInstance();
+        instance.registerChunk(0, ConstantChunk.class, ConstantChunk.getParser(), ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+        for (int i = 0; i < numOfChunks; i++) {
+            final ConstantChunk chunk = chunks.get(i);
+            if (i % 2 == 0) {
+                Assert.assertFalse(instance.contains(chunk.getId()));
+                Assert.assertNull(instance.read(chunk.getId()));
+            } else {
+                Assert.assertEquals(chunk, instance.read(chunk.getId()));
+            }
+        }
+        Assert.assertEquals(numOfChunks / 2, instance.getIndices(Address.ZERO, Address.MAX).size());
+        instance.close();
+    }
+
+    private static final String PREFIX = SegmentStorage.class.getName() + ":";
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrencyPerformanceByConstantChunk() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 100;
+        final int numOfProcesses = 1_000;
+        final int chunkSize = 2 * (int) ((MathFunctions.log2(numOfChunks) + Byte.SIZE - 1) / Byte.SIZE);
+        StorageTest.testConcurrencyPerformanceByConstantChunk(newInstance(), numOfLoops, numOfChunks, numOfProcesses, chunkSize, PREFIX);
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrencyByVariableChunk() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 100;
+        final int numOfProcesses = 1_000;
+        StorageTest.testConcurrencyByVariableChunk(newInstance(), numOfLoops, numOfChunks, numOfProcesses, PREFIX);
+    }
+
+    private static double[] measure(final Storage instance, final List<ConstantChunk> chunks, final int numOfLoops) throws Exception {
+        instance.registerChunk(0, ConstantChunk.class, ConstantChunk.getParser(), ConstantChunk.Id.class, ConstantChunk.Id.getParser());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numOfLoops; i++) {
+            for (final ConstantChunk chunk : chunks) {
+                instance.forceWrite(chunk);
+            }
+        }
+        final double writeCost = (System.nanoTime() - start) / (1_000_000.0 * numOfLoops * chunks.size());
+
+        start = System.nanoTime();
+        for (int i = 0; i < numOfLoops; i++) {
+            for (final ConstantChunk chunk : chunks) {
+                Assert.assertNotNull(instance.read(chunk.getId()));
+            }
+        }
+        final double readCost = (System.nanoTime() - start) / (1_000_000.0 * numOfLoops * chunks.size());
+
+        start = System.nanoTime();
+        for (int i = 0; i < numOfLoops; i++) {
+            Assert.assertEquals(chunks.size(), instance.getIndices(Address.ZERO, Address.MAX).size());
+        }
+        final double rangeCost = (System.nanoTime() - start) / (1_000_000.0 * numOfLoops);
+
+        instance.close();
+        return new double[] { writeCost, readCost, rangeCost };
+    }
+
+    /**
+     * FileStorage32 との処理速度の比較。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testPerformanceComparison() throws Exception {
+        final int numOfLoops = 10;
+        final int numOfChunks = 1_000;
+        final int chunkSize = 256;
+        final Random random = new Random();
+
+        final List<ConstantChunk> chunks = new ArrayList<>(numOfChunks);
+        for (int i = 0; i < numOfChunks; i++) {
+            final byte[] buff = new byte[chunkSize];
+            random.nextBytes(buff);
+            chunks.add(new ConstantChunk(i, buff));
+        }
+
+        final double[] file = measure(new FileStorage32(new File(this.root, "file"), this.chunkSizeLimit, 7), chunks, numOfLoops);
+        final double[] segment = measure(new SegmentStorage(new File(this.root, "segment"), this.chunkSizeLimit, this.segmentSizeLimit,
+                this.compactionThreshold), chunks, numOfLoops);
+
+        LOG.log(Level.SEVERE, "{0} 繰り返し回数: {1} データ片数: {2} データ片サイズ: {3}", new Object[] { PREFIX, numOfLoops, numOfChunks, chunkSize });
+        LOG.log(Level.SEVERE, "書き込み単位消費ミリ秒: {0} ( FileStorage32 ), {1} ( SegmentStorage )",
+                new Object[] { String.format("%f", file[0]), String.format("%f", segment[0]) });
+        LOG.log(Level.SEVERE, "読み込み単位消費ミリ秒: {0} ( FileStorage32 ), {1} ( SegmentStorage )",
+                new Object[] { String.format("%f", file[1]), String.format("%f", segment[1]) });
+        LOG.log(Level.SEVERE, "範囲取得単位消費ミリ秒: {0} ( FileStorage32 ), {1} ( SegmentStorage )",
+                new Object[] { String.format("%f", file[2]), String.format("%f", segment[2]) });
+    }
+
+}
@@ -2,15 +2,48 @@ package nippon.kawauso.chiraura.storage;
 
 import java.io.File;
 
+import nippon.kawauso.chiraura.lib.Duration;
+
 /**
  * データ片倉庫の作成など。
  * @author chirauraNoSakusha
  */
 public final class Storages {
 
+    /**
+     * メモリマップを使う場合に保持するマップの数。
+     */
+    private static final int MAPPING_CAPACITY = 1_000;
+
+    /**
+     * 書き戻し方式で、書き戻し待ちが少なくても書き戻す間隔。
+     */
+    private static final long FLUSH_INTERVAL = Duration.SECOND;
+
     // インスタンス化防止。
     private Storages() {}
 
+    /**
+     * データ片の保存方式。
+     * @author chirauraNoSakusha
+     */
+    public static enum Backend {
+        /**
+         * データ片ごとにファイルを作る。
+         */
+        FILE,
+
+        /**
+         * データ片ごとにファイルを作り、読み込みにはメモリマップを使う。
+         */
+        MAPPED_FILE,
+
+        /**
+         * 大きな区画ファイルに追記していく。
+         */
+        SEGMENT,
+    }
+
     /**
      * データ片倉庫を作成する。
      * @param root ルートディレクトリ
@@ -23,8 +56,118 @@ public final class Storages {
      */
     public static Storage newInstance(final File root, final int chunkSizeLimit, final int directoryBitSize, final int chunkCacheCapacity,
             final int indexCacheCapacity, final int rangeCacheCapacity) {
-        Storage instance = new FileStorage32(root, chunkSizeLimit, directoryBitSize);
-        instance = new WriteCachingStorage(instance, chunkCacheCapacity);
+        return newInstance(Backend.FILE, root, chunkSizeLimit, directoryBitSize, chunkCacheCapacity, indexCacheCapacity, rangeCacheCapacity);
+    }
+
+    /**
+     * データ片倉庫を作成する。
+     * @param backend 保存方式
+     * @param root ルートディレクトリ
+     * @param chunkSizeLimit データ片の制限サイズ
+     * @param directoryBitSize ディレクトリに使うビット数。区画方式では使わない
+     * @param chunkCacheCapacity データ片をキャッシュする数
+     * @param indexCacheCapacity データ片の概要をキャッシュする数
+     * @param rangeCacheCapacity データ片の概要の範囲取得結果をキャッシュする数
+     * @return データ片倉庫
+     */
+    public static Storage newInstance(final Backend backend, final File root, final int chunkSizeLimit, final int directoryBitSize,
+            final int chunkCacheCapacity, final int indexCacheCapacity, final int rangeCacheCapacity) {
+        return newInstance(backend, root, chunkSizeLimit, directoryBitSize, chunkCacheCapacity, indexCacheCapacity, rangeCacheCapacity, 0, 0);
+    }
+
+    /**
+     * データ片倉庫を作成する。
+     * @param backend 保存方式
+     * @param root ルートディレクトリ
+     * @param chunkSizeLimit データ片の制限サイズ
+     * @param directoryBitSize ディレクトリに使うビット数。区画方式では使わない
+     * @param chunkCacheCapacity データ片をキャッシュする数
+     * @param indexCacheCapacity データ片の概要をキャッシュする数
+     * @param rangeCacheCapacity データ片の概要の範囲取得結果をキャッシュする数
+     * @param dirtySizeLimit 書き戻していないデータ片の大きさの和の制限 (バイト)。
+     *            正なら書き込みを専用のスレッドで書き戻す。
+     *            0 以下なら書き込んだプロセスがキャッシュから溢れた分を書き込む
+     * @param readCacheSize 読み込み用にキャッシュするデータ片の大きさの和 (バイト)。
+     *            正なら参照頻度を考慮した並列キャッシュを重ねる
+     * @return データ片倉庫
+     */
+    public static Storage newInstance(final Backend backend, final File root, final int chunkSizeLimit, final int directoryBitSize,
+            final int chunkCacheCapacity, final int indexCacheCapacity, final int rangeCacheCapacity, final long dirtySizeLimit, final long readCacheSize) {
+        return newInstance(newBackend(backend, root, chunkSizeLimit, directoryBitSize), chunkCacheCapacity, indexCacheCapacity, rangeCacheCapacity,
+                dirtySizeLimit, readCacheSize);
+    }
+
+    /**
+     * キャッシュを重ねる前の、実際に保存するデータ片倉庫を作成する。
+     * キャッシュとの間に層を挟みたい場合に使う。
+     * @param backend 保存方式
+     * @param root ルートディレクトリ
+     * @param chunkSizeLimit データ片の制限サイズ
+     * @param directoryBitSize ディレクトリに使うビット数。区画方式では使わない
+     * @return データ片倉庫
+     */
+    public static Storage newBackend(final Backend backend, final File root, final int chunkSizeLimit, final int directoryBitSize) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Null backend.");
+        }
+        switch (backend) {
+        case SEGMENT:
+            return new SegmentStorage(root, chunkSizeLimit);
+        case MAPPED_FILE:
+            return new FileStorage32(root, chunkSizeLimit, directoryBitSize, MAPPING_CAPACITY);
+        default:
+            return new FileStorage32(root, chunkSizeLimit, directoryBitSize);
+        }
+    }
+
+    /**
+     * データ片倉庫にキャッシュを重ねる。
+     * @param base 実際に保存するデータ片倉庫
+     * @param chunkCacheCapacity データ片をキャッシュする数
+     * @param indexCacheCapacity データ片の概要をキャッシュする数
+     * @param rangeCacheCapacity データ片の概要の範囲取得結果をキャッシュする数
+     * @param dirtySizeLimit 書き戻していないデータ片の大きさの和の制限 (バイト)。
+     *            正なら書き込みを専用のスレッドで書き戻す。
+     *            0 以下なら書き込んだプロセスがキャッシュから溢れた分を書き込む
+     * @param readCacheSize 読み込み用にキャッシュするデータ片の大きさの和 (バイト)。
+     *            正なら参照頻度を考慮した並列キャッシュを重ねる
+     * @return データ片倉庫
+     */
+    public static Storage newInstance(final Storage base, final int chunkCacheCapacity, final int indexCacheCapacity, final int rangeCacheCapacity,
+            final long dirtySizeLimit, final long readCacheSize) {
+        return newInstance(base, chunkCacheCapacity, indexCacheCapacity, rangeCacheCapacity, dirtySizeLimit, readCacheSize, null);
+    }
+
+    /**
+     * データ片倉庫にキャッシュを重ねる。
+     * @param base 実際に保存するデータ片倉庫
+     * @param chunkCacheCapacity データ片をキャッシュする数
+     * @param indexCacheCapacity データ片の概要をキャッシュする数
+     * @param rangeCacheCapacity データ片の概要の範囲取得結果をキャッシュする数
+     * @param dirtySizeLimit 書き戻していないデータ片の大きさの和の制限 (バイト)。
+     *            正なら書き込みを専用のスレッドで書き戻す。
+     *            0 以下なら書き込んだプロセスがキャッシュから溢れた分を書き込む
+     * @param readCacheSize 読み込み用にキャッシュするデータ片の大きさの和 (バイト)。
+     *            正なら参照頻度を考慮した並列キャッシュを重ねる
+     * @param statistics 書き戻しキャッシュの統計の記録先。
+     *            書き戻しキャッシュを使わない場合や null の場合は記録しない
+     * @return データ片倉庫
+     */
+    public static Storage newInstance(final Storage base, final int chunkCacheCapacity, final int indexCacheCapacity, final int rangeCacheCapacity,
+            final long dirtySizeLimit, final long readCacheSize, final WriteBackStatistics statistics) {
+        if (base == null) {
+            throw new IllegalArgumentException("Null base.");
+        }
+        Storage instance;
+        if (dirtySizeLimit > 0) {
+            instance = new WriteBackStorage(base, chunkCacheCapacity, dirtySizeLimit, FLUSH_INTERVAL, (statistics == null ? new WriteBackStatistics()
+                    : statistics));
+        } else {
+            instance = new WriteCachingStorage(base, chunkCacheCapacity);
+        }
+        if (readCacheSize > 0) {
+            instance = new ReadCachingStorage(instance, readCacheSize);
+        }
         instance = new RangeIndexingStorage(instance, rangeCacheCapacity);
         instance = new IndexingStorage(instance, indexCacheCapacity);
         return instance;
@@ -0,0 +1,265 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+
+/**
+ * 書き戻しキャッシュ。
+ * 識別子で区画に分け、区画ごとに同期するので、別の区画のデータ片の読み書きは互いに待たない。
+ * 書き戻していないデータ片は数えずに大きさで管理し、容量を超えても追い出さない。
+ * 同じデータ片に対する変更は、呼び出し側が Storage の lock で直列化すること。
+ * @author chirauraNoSakusha
+ */
+final class WriteBackCache {
+
+    private static final class Entry {
+        private final Chunk chunk;
+        private final int size;
+        private final boolean dirty;
+
+        private Entry(final Chunk chunk, final boolean dirty) {
+            this.chunk = chunk;
+            this.size = chunk.byteSize();
+            this.dirty = dirty;
+        }
+    }
+
+    private static final class Shard {
+        // 参照順。
+        private final LinkedHashMap<Chunk.Id<?>, Entry> entries;
+
+        private Shard() {
+            this.entries = new LinkedHashMap<>(16, 0.75F, true);
+        }
+    }
+
+    private final TypeRegistry<Chunk> registry;
+    private final int shardCapacity;
+    private final Shard[] shards;
+
+    // 書き戻していないデータ片。範囲取得用。
+    private final ConcurrentNavigableMap<ChunkKey, Chunk> dirtyChunks;
+    // 書き戻し待ちの識別子。書き戻し待ちになったときに 1 度だけ入れる。
+    private final Queue<Chunk.Id<?>> dirtyIds;
+
+    private final WriteBackStatistics statistics;
+
+    /**
+     * 作成する。
+     * @param registry データ片の型の登録簿
+     * @param capacity 書き戻し済みのデータ片をキャッシュする数の目安
+     * @param numOfShards 区画数
+     * @param statistics 統計の記録先
+     */
+    WriteBackCache(final TypeRegistry<Chunk> registry, final int capacity, final int numOfShards, final WriteBackStatistics statistics) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Null registry.");
+        } else if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity ( " + capacity + " ).");
+        } else if (numOfShards <= 0) {
+            throw new IllegalArgumentException("Not positive number of shards ( " + numOfShards + " ).");
+        } else if (statistics == null) {
+            throw new IllegalArgumentException("Null statistics.");
+        }
+        this.registry = registry;
+        this.shardCapacity = (capacity + numOfShards - 1) / numOfShards;
+        this.shards = new Shard[numOfShards];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.dirtyChunks = new ConcurrentSkipListMap<>();
+        this.dirtyIds = new ConcurrentLinkedQueue<>();
+        this.statistics = statistics;
+    }
+
+    private Shard getShard(final Chunk.Id<?> id) {
+        int h = id.hashCode();
+        h ^= (h >>> 16);
+        return this.shards[(h & Integer.MAX_VALUE) % this.shards.length];
+    }
+
+    private ChunkKey toKey(final Chunk chunk) {
+        return new ChunkKey(chunk.getId().getAddress(), this.registry.getId(chunk));
+    }
+
+    /**
+     * データ片がキャッシュされているかどうかの検査
+     * @param id データ片の識別子
+     * @return キャッシュされていれば true
+     */
+    boolean contains(final Chunk.Id<?> id) {
+        final Shard shard = getShard(id);
+        synchronized (shard) {
+            return shard.entries.containsKey(id);
+        }
+    }
+
+    /**
+     * キャッシュを参照する。
+     * @param id データ片の識別子
+     * @return データ片。
+     *         キャッシュされていない場合は null
+     */
+    Chunk get(final Chunk.Id<?> id) {
+        final Shard shard = getShard(id);
+        final Entry entry;
+        synchronized (shard) {
+            entry = shard.entries.get(id);
+        }
+        if (entry == null) {
+            this.statistics.addMiss();
+            return null;
+        } else {
+            this.statistics.addHit();
+            return entry.chunk;
+        }
+    }
+
+    /**
+     * 下位層と同じデータ片をキャッシュする。
+     * 既にキャッシュされていれば何もしない。
+     * @param chunk データ片
+     */
+    void addClean(final Chunk chunk) {
+        final Shard shard = getShard(chunk.getId());
+        synchronized (shard) {
+            if (!shard.entries.containsKey(chunk.getId())) {
+                shard.entries.put(chunk.getId(), new Entry(chunk, false));
+                trim(shard);
+            }
+        }
+    }
+
+    /**
+     * 書き戻していないデータ片をキャッシュする。
+     * 書き戻していない古い版があれば置き換える。
+     * @param chunk データ片
+     */
+    void addDirty(final Chunk chunk) {
+        final Entry entry = new Entry(chunk, true);
+        final Shard shard = getShard(chunk.getId());
+        final Entry old;
+        synchronized (shard) {
+            old = shard.entries.put(chunk.getId(), entry);
+        }
+        this.dirtyChunks.put(toKey(chunk), chunk);
+        if (old != null && old.dirty) {
+            this.statistics.addCoalesced();
+            this.statistics.addDirtySize(entry.size - old.size);
+        } else {
+            this.statistics.addDirtySize(entry.size);
+            this.dirtyIds.add(chunk.getId());
+        }
+    }
+
+    /**
+     * 書き戻し待ちの識別子を 1 つ取り出す。
+     * @return 書き戻し待ちの識別子。
+     *         無ければ null
+     */
+    Chunk.Id<?> pollDirtyId() {
+        return this.dirtyIds.poll();
+    }
+
+    /**
+     * 書き戻し待ちの識別子を戻す。
+     * @param id 書き戻せなかった識別子
+     */
+    void returnDirtyId(final Chunk.Id<?> id) {
+        this.dirtyIds.add(id);
+    }
+
+    /**
+     * 書き戻していないデータ片を返す。
+     * @param id データ片の識別子
+     * @return 書き戻していないデータ片。
+     *         無ければ null
+     */
+    Chunk getDirty(final Chunk.Id<?> id) {
+        final Shard shard = getShard(id);
+        synchronized (shard) {
+            final Entry entry = shard.entries.get(id);
+            return (entry != null && entry.dirty) ? entry.chunk : null;
+        }
+    }
+
+    /**
+     * 書き戻したことを記録する。
+     * @param chunk 書き戻したデータ片
+     */
+    void markClean(final Chunk chunk) {
+        final Shard shard = getShard(chunk.getId());
+        final Entry entry;
+        synchronized (shard) {
+            entry = shard.entries.get(chunk.getId());
+            if (entry == null || !entry.dirty || entry.chunk != chunk) {
+                return;
+            }
+            shard.entries.put(chunk.getId(), new Entry(chunk, false));
+            trim(shard);
+        }
+        this.dirtyChunks.remove(toKey(chunk), chunk);
+        this.statistics.addDirtySize(-entry.size);
+    }
+
+    /**
+     * キャッシュから消す。
+     * @param id 消すデータ片の識別子
+     * @return 消したのが書き戻していないデータ片なら true
+     */
+    boolean remove(final Chunk.Id<?> id) {
+        final Shard shard = getShard(id);
+        final Entry removed;
+        synchronized (shard) {
+            removed = shard.entries.remove(id);
+        }
+        if (removed != null && removed.dirty) {
+            this.dirtyChunks.remove(toKey(removed.chunk), removed.chunk);
+            this.statistics.addDirtySize(-removed.size);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * 書き戻し済みのデータ片を古い順に追い出す。
+     * 書き戻していないデータ片は追い出さない。
+     * @param shard 区画
+     */
+    private void trim(final Shard shard) {
+        if (shard.entries.size() <= this.shardCapacity) {
+            return;
+        }
+        for (final Iterator<Entry> iterator = shard.entries.values().iterator(); iterator.hasNext() && shard.entries.size() > this.shardCapacity;) {
+            if (!iterator.next().dirty) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 書き戻していないデータ片の概要を列挙する。
+     * 書き戻し済みのデータ片の概要は下位層から得ること。
+     * @param min 列挙対象の最小論理位置
+     * @param max 列挙対象の最大論理位置
+     * @return 概要
+     */
+    Map<Chunk.Id<?>, Storage.Index> getDirtyIndices(final Address min, final Address max) {
+        final Map<Chunk.Id<?>, Storage.Index> indices = new HashMap<>();
+        for (final Chunk chunk : this.dirtyChunks.subMap(ChunkKey.lowest(min), true, ChunkKey.highest(max), true).values()) {
+            indices.put(chunk.getId(), new SimpleIndex(chunk));
+        }
+        return indices;
+    }
+
+}
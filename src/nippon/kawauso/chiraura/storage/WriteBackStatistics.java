@@ -0,0 +1,154 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 書き戻しキャッシュの統計。
+ * 並列対応。
+ * @author chirauraNoSakusha
+ */
+public final class WriteBackStatistics {
+
+    private final AtomicLong numOfHits;
+    private final AtomicLong numOfMisses;
+    private final AtomicLong numOfCoalesced;
+    private final AtomicLong numOfStalls;
+    private final AtomicLong numOfFlushes;
+    private final AtomicLong totalFlushLatency;
+    private final AtomicLong maxFlushLatency;
+    private final AtomicLong dirtySize;
+
+    /**
+     * 作成する。
+     */
+    public WriteBackStatistics() {
+        this.numOfHits = new AtomicLong(0);
+        this.numOfMisses = new AtomicLong(0);
+        this.numOfCoalesced = new AtomicLong(0);
+        this.numOfStalls = new AtomicLong(0);
+        this.numOfFlushes = new AtomicLong(0);
+        this.totalFlushLatency = new AtomicLong(0);
+        this.maxFlushLatency = new AtomicLong(0);
+        this.dirtySize = new AtomicLong(0);
+    }
+
+    void addHit() {
+        this.numOfHits.incrementAndGet();
+    }
+
+    void addMiss() {
+        this.numOfMisses.incrementAndGet();
+    }
+
+    /**
+     * 書き戻す前に上書きされたことを記録する。
+     */
+    void addCoalesced() {
+        this.numOfCoalesced.incrementAndGet();
+    }
+
+    /**
+     * 書き戻し待ちが多くて書き込みを待たせたことを記録する。
+     */
+    void addStall() {
+        this.numOfStalls.incrementAndGet();
+    }
+
+    /**
+     * 書き戻し 1 回分を記録する。
+     * @param latency 掛かった時間 (ナノ秒)
+     */
+    void addFlush(final long latency) {
+        this.numOfFlushes.incrementAndGet();
+        this.totalFlushLatency.addAndGet(latency);
+        for (long max = this.maxFlushLatency.get(); max < latency; max = this.maxFlushLatency.get()) {
+            if (this.maxFlushLatency.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
+
+    void addDirtySize(final long delta) {
+        this.dirtySize.addAndGet(delta);
+    }
+
+    /**
+     * @return 読み込みがキャッシュで済んだ回数
+     */
+    public long getNumOfHits() {
+        return this.numOfHits.get();
+    }
+
+    /**
+     * @return 読み込みがキャッシュで済まなかった回数
+     */
+    public long getNumOfMisses() {
+        return this.numOfMisses.get();
+    }
+
+    /**
+     * @return 書き戻す前に上書きされた回数
+     */
+    public long getNumOfCoalesced() {
+        return this.numOfCoalesced.get();
+    }
+
+    /**
+     * @return 書き戻し待ちが多くて書き込みを待たせた回数
+     */
+    public long getNumOfStalls() {
+        return this.numOfStalls.get();
+    }
+
+    /**
+     * @return 書き戻した回数
+     */
+    public long getNumOfFlushes() {
+        return this.numOfFlushes.get();
+    }
+
+    /**
+     * @return 書き戻していないデータ片の大きさの和 (バイト)
+     */
+    public long getDirtySize() {
+        return this.dirtySize.get();
+    }
+
+    /**
+     * @return 読み込みがキャッシュで済んだ割合
+     */
+    public double getHitRate() {
+        final long hits = this.numOfHits.get();
+        final long n = hits + this.numOfMisses.get();
+        return n == 0 ? 0.0 : (double) hits / n;
+    }
+
+    /**
+     * @return 書き戻し 1 回あたりの掛かった時間 (ミリ秒)
+     */
+    public double getAverageFlushLatency() {
+        final long n = this.numOfFlushes.get();
+        return n == 0 ? 0.0 : this.totalFlushLatency.get() / 1_000_000.0 / n;
+    }
+
+    /**
+     * @return 書き戻し 1 回で掛かった最長の時間 (ミリ秒)
+     */
+    public double getMaxFlushLatency() {
+        return this.maxFlushLatency.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return (new StringBuilder(this.getClass().getSimpleName()))
+                .append("[hitRate=").append(String.format("%.3f", getHitRate()))
+                .append(", dirtySize=").append(getDirtySize())
+                .append(", flushes=").append(getNumOfFlushes())
+                .append(", coalesced=").append(getNumOfCoalesced())
+                .append(", stalls=").append(getNumOfStalls())
+                .append(", averageFlushLatency=").append(String.format("%.3f", getAverageFlushLatency()))
+                .append("ms, maxFlushLatency=").append(String.format("%.3f", getMaxFlushLatency()))
+                .append("ms]").toString();
+    }
+
+}
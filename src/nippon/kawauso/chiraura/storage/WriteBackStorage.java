@@ -0,0 +1,496 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.process.Reporter;
+
+/**
+ * 書き込みを溜めておき、専用のスレッドで下位層に書き戻す倉庫。
+ * WriteCachingStorage と違い、書き込んだプロセスが他のデータ片の書き戻しを肩代わりすることは無い。
+ * 書き戻していないデータ片の大きさの和が制限を超えている間は、書き込みを待たせる。
+ * close すると、書き戻していないデータ片を全て書き戻してから下位層を close する。
+ * @author chirauraNoSakusha
+ */
+final class WriteBackStorage implements Storage {
+
+    private static final Logger LOG = Logger.getLogger(WriteBackStorage.class.getName());
+
+    private static final int NUM_OF_SHARDS = 16;
+
+    // 書き戻し待ちが全て使用中だったときに、次に試すまでの時間 (ミリ秒)。
+    private static final long RETRY_INTERVAL = 10L;
+
+    // 書き戻しが失敗し続けるときに、次に試すまでの時間の上限 (ミリ秒)。
+    private static final long MAX_RETRY_INTERVAL = 10_000L;
+
+    // 書き戻しがこの時間進まなければ、書き込みを待たせるのを諦める (ミリ秒)。
+    private static final long STALL_TIMEOUT = 100L;
+
+    /*
+     * cache の同じデータ片に対する変更は base の lock の中で行う。
+     * 書き戻しも base の lock の中で行うので、書き戻し中に上書きされることは無い。
+     */
+    private final Storage base;
+    private final long dirtySizeLimit;
+    private final long flushInterval;
+    private final WriteBackStatistics statistics;
+    private final WriteBackCache cache;
+
+    // 書き戻し役を起こす用。
+    private final Object flusherMonitor;
+    // 書き戻しを待つ書き込みを起こす用。
+    private final Object roomMonitor;
+    private final ExecutorService flusher;
+    private final AtomicBoolean closed;
+
+    // 書き戻しに続けて失敗した回数。書き戻し役だけが触る。
+    private int numOfFailures;
+
+    /**
+     * 作成する。
+     * @param base 下位層
+     * @param capacity 書き戻し済みのデータ片をキャッシュする数の目安
+     * @param dirtySizeLimit 書き戻していないデータ片の大きさの和の制限 (バイト)
+     * @param flushInterval 書き戻し待ちが少なくても書き戻す間隔 (ミリ秒)
+     */
+    WriteBackStorage(final Storage base, final int capacity, final long dirtySizeLimit, final long flushInterval) {
+        this(base, capacity, dirtySizeLimit, flushInterval, new WriteBackStatistics());
+    }
+
+    /**
+     * 作成する。
+     * @param base 下位層
+     * @param capacity 書き戻し済みのデータ片をキャッシュする数の目安
+     * @param dirtySizeLimit 書き戻していないデータ片の大きさの和の制限 (バイト)
+     * @param flushInterval 書き戻し待ちが少なくても書き戻す間隔 (ミリ秒)
+     * @param statistics 統計の記録先。他の書き戻しキャッシュと共有してはならない
+     */
+    WriteBackStorage(final Storage base, final int capacity, final long dirtySizeLimit, final long flushInterval, final WriteBackStatistics statistics) {
+        if (base == null) {
+            throw new IllegalArgumentException("Null base storage.");
+        } else if (dirtySizeLimit <= 0) {
+            throw new IllegalArgumentException("Not positive dirty size limit ( " + dirtySizeLimit + " ).");
+        } else if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Not positive flush interval ( " + flushInterval + " ).");
+        } else if (statistics == null) {
+            throw new IllegalArgumentException("Null statistics.");
+        }
+        this.base = base;
+        this.dirtySizeLimit = dirtySizeLimit;
+        this.flushInterval = flushInterval;
+        this.statistics = statistics;
+        this.cache = new WriteBackCache(base.getChunkRegistry(), capacity, NUM_OF_SHARDS, this.statistics);
+
+        this.flusherMonitor = new Object();
+        this.roomMonitor = new Object();
+        this.flusher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, WriteBackStorage.class.getSimpleName() + "-flusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.closed = new AtomicBoolean(false);
+
+        this.flusher.submit(new Reporter<Void>(Level.WARNING) {
+            @Override
+            protected Void subCall() throws Exception {
+                flushLoop();
+                return null;
+            }
+        });
+    }
+
+    WriteBackStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    @Override
+    public <C extends Chunk, I extends Chunk.Id<C>> void registerChunk(final long type, final Class<C> chunkClass,
+            final BytesConvertible.Parser<? extends C> chunkParser, final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser) {
+        this.base.registerChunk(type, chunkClass, chunkParser, idClass, idParser);
+    }
+
+    @Override
+    public TypeRegistry<Chunk> getChunkRegistry() {
+        return this.base.getChunkRegistry();
+    }
+
+    @Override
+    public TypeRegistry<Chunk.Id<?>> getIdRegistry() {
+        return this.base.getIdRegistry();
+    }
+
+    @Override
+    public void lock(final Chunk.Id<?> id) throws InterruptedException {
+        this.base.lock(id);
+    }
+
+    @Override
+    public boolean tryLock(final Chunk.Id<?> id) {
+        return this.base.tryLock(id);
+    }
+
+    @Override
+    public void unlock(final Chunk.Id<?> id) {
+        this.base.unlock(id);
+    }
+
+    @Override
+    public boolean contains(final Chunk.Id<?> id) throws InterruptedException, IOException {
+        if (this.cache.contains(id)) {
+            return true;
+        } else {
+            return this.base.contains(id);
+        }
+    }
+
+    @Override
+    public Index getIndex(final Chunk.Id<?> id) throws MyRuleException, IOException, InterruptedException {
+        final Chunk chunk = this.cache.get(id);
+        if (chunk == null) {
+            return this.base.getIndex(id);
+        } else {
+            return new SimpleIndex(chunk);
+        }
+    }
+
+    @Override
+    public Map<Chunk.Id<?>, Storage.Index> getIndices(final Address min, final Address max) throws IOException, InterruptedException {
+        /*
+         * 下位層を読んでいる間に書き戻されたデータ片は、前後どちらの書き戻し待ちにも下位層の結果にも載らないことがある。
+         * そこで、前にあって後に無いものは、読み終えた後に最新のものを引き直す。
+         */
+        final Map<Chunk.Id<?>, Storage.Index> before = this.cache.getDirtyIndices(min, max);
+        final Map<Chunk.Id<?>, Storage.Index> indices = this.base.getIndices(min, max);
+        final Map<Chunk.Id<?>, Storage.Index> after = this.cache.getDirtyIndices(min, max);
+        for (final Chunk.Id<?> id : before.keySet()) {
+            if (after.containsKey(id)) {
+                continue;
+            }
+            Storage.Index index = null;
+            try {
+                index = getIndex(id);
+            } catch (final MyRuleException e) {
+                LOG.log(Level.WARNING, "異常が発生しました", e);
+            }
+            if (index == null) {
+                indices.remove(id);
+            } else {
+                indices.put(id, index);
+            }
+        }
+        indices.putAll(after);
+        return indices;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Chunk> T read(final Chunk.Id<T> id) throws MyRuleException, IOException, InterruptedException {
+        Chunk chunk = this.cache.get(id);
+        if (chunk != null) {
+            // キャッシュしてた。
+            return (T) chunk;
+        } else if (!this.base.contains(id)) {
+            // 無い。
+            return null;
+        }
+
+        this.base.lock(id); // キャッシュ書き換えのためのロック。
+        try {
+            chunk = this.cache.get(id);
+            if (chunk != null) {
+                // ついさっきキャッシュしてた。
+                return (T) chunk;
+            }
+
+            final T read = this.base.read(id);
+            if (read != null) {
+                this.cache.addClean(read);
+            }
+            return read;
+        } finally {
+            this.base.unlock(id);
+        }
+    }
+
+    /**
+     * 書き戻し待ちが減るまで待つ。
+     * 呼び出し側がロックを握っていると、書き戻し役がそのデータ片を書き戻せないので、
+     * 書き戻しが進まなくなったら待つのを諦める。
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private void waitForRoom() throws InterruptedException {
+        if (this.statistics.getDirtySize() < this.dirtySizeLimit) {
+            return;
+        }
+        this.statistics.addStall();
+        wakeFlusher();
+        synchronized (this.roomMonitor) {
+            while (!this.closed.get() && this.statistics.getDirtySize() >= this.dirtySizeLimit) {
+                final long numOfFlushes = this.statistics.getNumOfFlushes();
+                this.roomMonitor.wait(STALL_TIMEOUT);
+                if (this.statistics.getNumOfFlushes() == numOfFlushes) {
+                    // 書き戻し待ちが使用中で進まない。
+                    break;
+                }
+            }
+        }
+    }
+
+    private void wakeFlusher() {
+        synchronized (this.flusherMonitor) {
+            this.flusherMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * 書き戻し待ちが半分を超えたら書き戻し役を起こす。
+     */
+    private void wakeFlusherIfNeeded() {
+        if (2 * this.statistics.getDirtySize() >= this.dirtySizeLimit) {
+            wakeFlusher();
+        }
+    }
+
+    @Override
+    public boolean write(final Chunk chunk) throws IOException, InterruptedException {
+        waitForRoom();
+
+        final boolean result;
+        this.base.lock(chunk.getId());
+        try {
+            final Chunk cached = this.cache.get(chunk.getId());
+            if (cached != null) {
+                if (cached.equals(chunk)) {
+                    // 保存されてるのと同じ。
+                    return false;
+                } else {
+                    // 保存されてるのと違う。
+                    this.cache.addDirty(chunk);
+                    result = true;
+                }
+            } else {
+                Chunk old = null;
+                try {
+                    old = this.base.read(chunk.getId());
+                } catch (final MyRuleException e) {
+                    LOG.log(Level.WARNING, "異常が発生しました", e);
+                    LOG.log(Level.INFO, "保存されていた {0} は壊れていました。", chunk.getId());
+                    /*
+                     * 次からは chunk が使われるので放置で良い。
+                     */
+                }
+                if (chunk.equals(old)) {
+                    // 下の層で使われてるかもしれないから古いの優先。
+                    this.cache.addClean(old);
+                    result = false;
+                } else {
+                    this.cache.addDirty(chunk);
+                    result = true;
+                }
+            }
+        } finally {
+            this.base.unlock(chunk.getId());
+        }
+
+        wakeFlusherIfNeeded();
+        return result;
+    }
+
+    @Override
+    public void forceWrite(final Chunk chunk) throws IOException, InterruptedException {
+        final Chunk old = this.cache.get(chunk.getId());
+        if (old != null && old.equals(chunk)) {
+            // 同じのがある。
+            return;
+        }
+
+        waitForRoom();
+
+        this.base.lock(chunk.getId());
+        try {
+            this.cache.addDirty(chunk);
+        } finally {
+            this.base.unlock(chunk.getId());
+        }
+
+        wakeFlusherIfNeeded();
+    }
+
+    @Override
+    public boolean delete(final Chunk.Id<?> id) throws IOException, InterruptedException {
+        boolean removed;
+        this.base.lock(id);
+        try {
+            removed = this.cache.remove(id);
+            removed |= this.base.delete(id);
+        } finally {
+            this.base.unlock(id);
+        }
+        return removed;
+    }
+
+    /**
+     * 書き戻し役の本体。
+     * 書き戻し待ちが制限の半分を超えるか、一定時間経つ度に、溜まっている分を書き戻す。
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private void flushLoop() throws InterruptedException {
+        int numOfFlushed = 0;
+        while (!this.closed.get()) {
+            synchronized (this.flusherMonitor) {
+                if (this.closed.get()) {
+                    break;
+                } else if (2 * this.statistics.getDirtySize() < this.dirtySizeLimit) {
+                    this.flusherMonitor.wait(this.flushInterval);
+                } else if (numOfFlushed == 0) {
+                    // 全部使用中か、失敗した。
+                    this.flusherMonitor.wait(getRetryInterval());
+                }
+            }
+            numOfFlushed = flushAll();
+        }
+    }
+
+    /**
+     * 次に試すまでの時間を返す。
+     * 失敗が続くほど倍々に延ばす。
+     * @return 次に試すまでの時間 (ミリ秒)
+     */
+    private long getRetryInterval() {
+        return Math.min(MAX_RETRY_INTERVAL, RETRY_INTERVAL << Math.min(this.numOfFailures, Long.SIZE - 8));
+    }
+
+    /**
+     * 溜まっている分を書き戻す。
+     * 使用中のデータ片は後回しにする。
+     * @return 書き戻した数
+     */
+    private int flushAll() {
+        int numOfFlushed = 0;
+        Chunk.Id<?> last = null;
+        for (Chunk.Id<?> id; (id = this.cache.pollDirtyId()) != null;) {
+            if (flush(id)) {
+                numOfFlushed++;
+                synchronized (this.roomMonitor) {
+                    this.roomMonitor.notifyAll();
+                }
+            } else {
+                // 後回し。
+                this.cache.returnDirtyId(id);
+                if (last == null) {
+                    last = id;
+                } else if (last.equals(id)) {
+                    // 後回しにしたものしか残ってない。
+                    break;
+                }
+            }
+        }
+        return numOfFlushed;
+    }
+
+    /**
+     * 1 つ書き戻す。
+     * @param id 書き戻すデータ片の識別子
+     * @return 書き戻したか、書き戻す必要が無かった場合は true。
+     *         後回しにした場合は false
+     */
+    private boolean flush(final Chunk.Id<?> id) {
+        if (!this.base.tryLock(id)) {
+            return false;
+        }
+        try {
+            final Chunk chunk = this.cache.getDirty(id);
+            if (chunk == null) {
+                // 消されたか、書き戻し済み。
+                return true;
+            }
+            final long start = System.nanoTime();
+            try {
+                this.base.write(chunk);
+            } catch (final IOException | RuntimeException e) {
+                // 失敗が続いている間は、最初の 1 回だけ詳しく記録する。
+                // 実行時例外でも書き戻し係を止めず、同じ間隔で後回しにする。
+                if (this.numOfFailures == 0) {
+                    LOG.log(Level.WARNING, "異常が発生しました", e);
+                    LOG.log(Level.INFO, "{0} の書き戻しに失敗しました。", id);
+                } else {
+                    LOG.log(Level.FINE, "{0} の書き戻しに失敗しました ({1} 回目): {2}", new Object[] { id, this.numOfFailures + 1, e });
+                }
+                this.numOfFailures++;
+                return false;
+            } catch (final InterruptedException e) {
+                // 終了処理で書き戻すので、ここでは後回しにするだけ。
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            this.statistics.addFlush(System.nanoTime() - start);
+            this.cache.markClean(chunk);
+            if (this.numOfFailures > 0) {
+                LOG.log(Level.INFO, "{0} 回の失敗の後、書き戻しが回復しました。", this.numOfFailures);
+                this.numOfFailures = 0;
+            }
+            return true;
+        } finally {
+            this.base.unlock(id);
+        }
+    }
+
+    @Override
+    public void close() throws IOException, MyRuleException, InterruptedException {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        IOException error = null;
+        try {
+            wakeFlusher();
+            synchronized (this.roomMonitor) {
+                this.roomMonitor.notifyAll();
+            }
+            this.flusher.shutdown();
+            this.flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            // 残りを書き戻す。失敗しても他のデータ片は書き戻す。
+            for (Chunk.Id<?> id; (id = this.cache.pollDirtyId()) != null;) {
+                this.base.lock(id);
+                try {
+                    final Chunk chunk = this.cache.getDirty(id);
+                    if (chunk != null) {
+                        this.base.write(chunk);
+                        this.cache.markClean(chunk);
+                    }
+                } catch (final IOException e) {
+                    LOG.log(Level.WARNING, "{0} を書き戻せないまま終了します: {1}", new Object[] { id, e });
+                    if (error == null) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                } finally {
+                    this.base.unlock(id);
+                }
+            }
+            LOG.log(Level.FINE, "{0}", this.statistics);
+        } finally {
+            this.base.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package nippon.kawauso.chiraura.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nippon.kawauso.chiraura.lib.base.Address;
+import nippon.kawauso.chiraura.lib.converter.BytesConvertible;
+import nippon.kawauso.chiraura.lib.converter.NumberBytesConversion;
+import nippon.kawauso.chiraura.lib.converter.TypeRegistry;
+import nippon.kawauso.chiraura.lib.exception.MyRuleException;
+import nippon.kawauso.chiraura.lib.math.MathFunctions;
+import nippon.kawauso.chiraura.lib.test.TestFunctions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author chirauraNoSakusha
+ */
+public final class WriteBackStorageTest {
+
+    private static final Logger LOG = Logger.getLogger(WriteBackStorageTest.class.getName());
+
+    private final File root;
+    private final int chunkSizeLimit;
+    private final int directoryBitSize;
+    private final double factor;
+    private final String prefix;
+
+    /**
+     * 初期化。
+     */
+    public WriteBackStorageTest() {
+        this.root = new File(System.getProperty("java.io.tmpdir") + File.separator + WriteBackStorageTest.class.getName() + File.separator
+                + System.nanoTime());
+        this.chunkSizeLimit = 1024 * 1024 + 1024;
+        this.directoryBitSize = 6;
+        this.factor = 0.1;
+        this.prefix = WriteBackStorage.class.getName() + " on " + FileStorage.class.getSimpleName() + String.format(" %.2f", this.factor);
+        TestFunctions.testLogging(this.getClass().getName());
+    }
+
+    private WriteBackStorage newInstance(final File dir, final int capacity, final long dirtySizeLimit) {
+        return new WriteBackStorage(new FileStorage32(dir, this.chunkSizeLimit, this.directoryBitSize), capacity, dirtySizeLimit, 10L);
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testMinimum() throws Exception {
+        StorageTest.testMinimum(new WriteBackStorage(new MemoryStorage(), 1, 1, 10L));
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRandom() throws Exception {
+        final int numOfLoops = 100_000;
+        final int numOfChunks = 100;
+        final Storage instance = newInstance(this.root, (int) (this.factor * numOfChunks), 1024);
+        StorageTest.testRandom(new MemoryStorage(), instance, numOfLoops, numOfChunks);
+        instance.close();
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrencyPerformanceByConstantChunk() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 100;
+        final int numOfProcesses = 1_000;
+        final int chunkSize = 2 * (int) ((MathFunctions.log2(numOfChunks) + Byte.SIZE - 1) / Byte.SIZE);
+        final WriteBackStorage instance = newInstance(this.root, (int) (this.factor * numOfChunks), 64 * 1024);
+        StorageTest.testConcurrencyPerformanceByConstantChunk(instance, numOfLoops, numOfChunks, numOfProcesses, chunkSize, this.prefix);
+        LOG.log(Level.SEVERE, "{0}", instance.getStatistics());
+        instance.close();
+    }
+
+    /**
+     * @throws Exception 異常
+     */
+    @Test
+    public void testConcurrencyByVariableChunk() throws Exception {
+        final int numOfLoops = 100;
+        final int numOfChunks = 100;
+        final int numOfProcesses = 1_000;
+        final Storage instance = newInstance(this.root, (int) (this.factor * numOfChunks), 1024);
+        StorageTest.testConcurrencyByVariableChunk(instance, numOfLoops, numOfChunks, numOfProcesses, this.prefix);
+        instance.close();
+    }
+
+    /**
+     * 同じデータ片への書き込みがまとめられ、close で全て書き戻されるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testCoalesceAndClose() throws Exception {
+        final int numOfLoops = 1_000;
+        final int numOfChunks = 10;
+
+        final List<VariableChunk.Id> chunkIds = new ArrayList<>(numOfChunks);
+        for (int i = 0; i < numOfChunks; i++) {
+            chunkIds.add(new VariableChunk.Id(Integer.toString(i)));
+        }
+
+        // 書き戻しが追い付かないように、書き戻し待ちの上限を大きくしておく。
+        final WriteBackStorage instance = new WriteBackStorage(new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize), numOfChunks,
+                Long.MAX_VALUE / 4, Long.MAX_VALUE / 4);
+        instance.registerChunk(0, VariableChunk.class, VariableChunk.getParser(), VariableChunk.Id.class, VariableChunk.Id.getParser());
+        for (int i = 0; i < numOfLoops; i++) {
+            final VariableChunk.Id id = chunkIds.get(i % numOfChunks);
+            instance.forceWrite(new VariableChunk(id.getName(), i, NumberBytesConversion.toBytes(i)));
+        }
+        Assert.assertEquals(numOfLoops - numOfChunks, instance.getStatistics().getNumOfCoalesced());
+        Assert.assertTrue(instance.getStatistics().getDirtySize() > 0);
+        instance.close();
+        Assert.assertEquals(0, instance.getStatistics().getDirtySize());
+        Assert.assertEquals(numOfChunks, instance.getStatistics().getNumOfFlushes());
+
+        try (final Storage base = new FileStorage32(this.root, this.chunkSizeLimit, this.directoryBitSize)) {
+            base.registerChunk(0, VariableChunk.class, VariableChunk.getParser(), VariableChunk.Id.class, VariableChunk.Id.getParser());
+            for (int i = numOfLoops - numOfChunks; i < numOfLoops; i++) {
+                final VariableChunk.Id id = chunkIds.get(i % numOfChunks);
+                Assert.assertEquals(new VariableChunk(id.getName(), i, NumberBytesConversion.toBytes(i)), base.read(id));
+            }
+        }
+    }
+
+    /**
+     * 書き戻し待ちが上限を大きく超えないかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testDirtySizeLimit() throws Exception {
+        final int numOfChunks = 1_000;
+        final int bodySize = 1024;
+        final long dirtySizeLimit = 16 * bodySize;
+
+        final WriteBackStorage instance = newInstance(this.root, 10, dirtySizeLimit);
+        instance.registerChunk(0, VariableChunk.class, VariableChunk.getParser(), VariableChunk.Id.class, VariableChunk.Id.getParser());
+        long maxDirtySize = 0;
+        for (int i = 0; i < numOfChunks; i++) {
+            instance.forceWrite(new VariableChunk(Integer.toString(i), i, new byte[bodySize]));
+            maxDirtySize = Math.max(maxDirtySize, instance.getStatistics().getDirtySize());
+        }
+        // 上限未満を確認してから書き込むので、1 つ分までは超え得る。
+        Assert.assertTrue(maxDirtySize < dirtySizeLimit + 2 * bodySize);
+        Assert.assertTrue(instance.getStatistics().getNumOfStalls() > 0);
+        instance.close();
+        Assert.assertEquals(numOfChunks, instance.getStatistics().getNumOfFlushes());
+        LOG.log(Level.SEVERE, "{0}", instance.getStatistics());
+    }
+
+    /**
+     * Storages に渡した統計の記録先に書き戻しキャッシュの統計が記録されるかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testStatisticsThroughStorages() throws Exception {
+        final WriteBackStatistics statistics = new WriteBackStatistics();
+        final Storage instance = Storages.newInstance(new MemoryStorage(), 10, 10, 10, Long.MAX_VALUE / 4, 0, statistics);
+        instance.registerChunk(0, VariableChunk.class, VariableChunk.getParser(), VariableChunk.Id.class, VariableChunk.Id.getParser());
+
+        final VariableChunk chunk = new VariableChunk("a", 1, new byte[] { 1 });
+        instance.forceWrite(chunk);
+        Assert.assertTrue(statistics.getDirtySize() > 0);
+        Assert.assertEquals(chunk, instance.read(chunk.getId()));
+        Assert.assertTrue(statistics.getHitRate() > 0.0);
+        instance.close();
+        Assert.assertEquals(0, statistics.getDirtySize());
+        Assert.assertEquals(1, statistics.getNumOfFlushes());
+    }
+
+    /**
+     * 最初の何回かの書き込みで実行時例外を投げる。
+     */
+    private static final class FailingStorage implements Storage {
+        private final Storage base;
+        private final AtomicInteger numOfFailures;
+
+        private FailingStorage(final Storage base, final int numOfFailures) {
+            this.base = base;
+            this.numOfFailures = new AtomicInteger(numOfFailures);
+        }
+
+        @Override
+        public <C extends Chunk, I extends Chunk.Id<C>> void registerChunk(final long type, final Class<C> chunkClass,
+                final BytesConvertible.Parser<? extends C> chunkParser, final Class<I> idClass, final BytesConvertible.Parser<? extends I> idParser) {
+            this.base.registerChunk(type, chunkClass, chunkParser, idClass, idParser);
+        }
+
+        @Override
+        public TypeRegistry<Chunk> getChunkRegistry() {
+            return this.base.getChunkRegistry();
+        }
+
+        @Override
+        public TypeRegistry<Chunk.Id<?>> getIdRegistry() {
+            return this.base.getIdRegistry();
+        }
+
+        @Override
+        public void lock(final Chunk.Id<?> id) throws InterruptedException {
+            this.base.lock(id);
+        }
+
+        @Override
+        public boolean tryLock(final Chunk.Id<?> id) {
+            return this.base.tryLock(id);
+        }
+
+        @Override
+        public void unlock(final Chunk.Id<?> id) {
+            this.base.unlock(id);
+        }
+
+        @Override
+        public boolean contains(final Chunk.Id<?> id) throws IOException, InterruptedException {
+            return this.base.contains(id);
+        }
+
+        @Override
+        public Storage.Index getIndex(final Chunk.Id<?> id) throws MyRuleException, IOException, InterruptedException {
+            return this.base.getIndex(id);
+        }
+
+        @Override
+        public Map<Chunk.Id<?>, Storage.Index> getIndices(final Address min, final Address max) throws IOException, InterruptedException {
+            return this.base.getIndices(min, max);
+        }
+
+        @Override
+        public <T extends Chunk> T read(final Chunk.Id<T> id) throws MyRuleException, IOException, InterruptedException {
+            return this.base.read(id);
+        }
+
+        @Override
+        public boolean write(final Chunk chunk) throws IOException, InterruptedException {
+            if (this.numOfFailures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Test failure.");
+            }
+            return this.base.write(chunk);
+        }
+
+        @Override
+        public void forceWrite(final Chunk chunk) throws IOException, InterruptedException {
+            this.base.forceWrite(chunk);
+        }
+
+        @Override
+        public boolean delete(final Chunk.Id<?> id) throws IOException, InterruptedException {
+            return this.base.delete(id);
+        }
+
+        @Override
+        public void close() throws MyRuleException, InterruptedException, IOException {
+            this.base.close();
+        }
+    }
+
+    /**
+     * 書き戻しで実行時例外が出ても、書き戻し係が止まらずにやり直すかどうか。
+     * @throws Exception 異常
+     */
+    @Test
+    public void testRuntimeFailure() throws Exception {
+        final int numOfFailures = 3;
+        final MemoryStorage base = new MemoryStorage();
+        final WriteBackStorage instance = new WriteBackStorage(new FailingStorage(base, numOfFailures), 10, 1, 10L);
+        instance.registerChunk(0, VariableChunk.class, VariableChunk.getParser(), VariableChunk.Id.class, VariableChunk.Id.getParser());
+
+        final VariableChunk chunk = new VariableChunk("a", 1, new byte[] { 1 });
+        instance.forceWrite(chunk);
+        final long deadline = System.currentTimeMillis() + 10_000L;
+        while (instance.getStatistics().getNumOfFlushes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(1, instance.getStatistics().getNumOfFlushes());
+        Assert.assertEquals(chunk, base.read(chunk.getId()));
+        instance.close();
+    }
+
+}